@@ -0,0 +1,263 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.Decimals;
+import com.facebook.presto.common.type.NamedTypeSignature;
+import com.facebook.presto.common.type.ParameterKind;
+import com.facebook.presto.common.type.TypeSignature;
+import com.facebook.presto.common.type.TypeSignatureParameter;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import io.airlift.slice.Slice;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.DecimalType.createDecimalType;
+import static com.facebook.presto.common.type.StandardTypes.ARRAY;
+import static com.facebook.presto.common.type.StandardTypes.BIGINT;
+import static com.facebook.presto.common.type.StandardTypes.BOOLEAN;
+import static com.facebook.presto.common.type.StandardTypes.CHAR;
+import static com.facebook.presto.common.type.StandardTypes.DATE;
+import static com.facebook.presto.common.type.StandardTypes.DECIMAL;
+import static com.facebook.presto.common.type.StandardTypes.DOUBLE;
+import static com.facebook.presto.common.type.StandardTypes.INTEGER;
+import static com.facebook.presto.common.type.StandardTypes.JSON;
+import static com.facebook.presto.common.type.StandardTypes.MAP;
+import static com.facebook.presto.common.type.StandardTypes.REAL;
+import static com.facebook.presto.common.type.StandardTypes.ROW;
+import static com.facebook.presto.common.type.StandardTypes.SMALLINT;
+import static com.facebook.presto.common.type.StandardTypes.TINYINT;
+import static com.facebook.presto.common.type.StandardTypes.VARBINARY;
+import static com.facebook.presto.common.type.StandardTypes.VARCHAR;
+import static com.facebook.presto.common.type.TypeSignature.parseTypeSignature;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPage;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static java.lang.Math.toIntExact;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Decodes binary results, i.e. base64 encoded serialized pages, into rows holding the same
+ * values that {@link FixJsonDataUtils} produces for the JSON results. A page is only decoded
+ * once its rows are iterated.
+ * <p>
+ * Only types whose client representation does not depend on session properties of the server
+ * (such as the legacy timestamp semantics) can be decoded; see {@link #create(List)}.
+ */
+final class BinaryDataDecoder
+{
+    private final List<ValueDecoder> decoders;
+    private final PagesSerde pagesSerde = new PagesSerde(new BlockEncodingManager(), Optional.empty(), Optional.empty(), Optional.empty());
+
+    private BinaryDataDecoder(List<ValueDecoder> decoders)
+    {
+        this.decoders = ImmutableList.copyOf(requireNonNull(decoders, "decoders is null"));
+    }
+
+    /**
+     * Returns a decoder for the columns, or empty if any of the column types can only be read from JSON results.
+     */
+    public static Optional<BinaryDataDecoder> create(List<Column> columns)
+    {
+        requireNonNull(columns, "columns is null");
+        ImmutableList.Builder<ValueDecoder> decoders = ImmutableList.builder();
+        for (Column column : columns) {
+            Optional<ValueDecoder> decoder = createDecoder(parseTypeSignature(column.getType()));
+            if (!decoder.isPresent()) {
+                return Optional.empty();
+            }
+            decoders.add(decoder.get());
+        }
+        return Optional.of(new BinaryDataDecoder(decoders.build()));
+    }
+
+    public Iterable<List<Object>> decode(Iterable<String> binaryData)
+    {
+        requireNonNull(binaryData, "binaryData is null");
+        return Iterables.concat(Iterables.transform(binaryData, this::decodePage));
+    }
+
+    /**
+     * Decodes a sequence of serialized pages, such as a segment of the spooled query output.
+     */
+    public Iterable<List<Object>> decodePages(Slice serializedPages)
+    {
+        requireNonNull(serializedPages, "serializedPages is null");
+        return () -> Iterators.concat(Iterators.transform(readSerializedPages(serializedPages.getInput()), page -> decodePage(page).iterator()));
+    }
+
+    private List<List<Object>> decodePage(String encodedPage)
+    {
+        return decodePage(readSerializedPage(wrappedBuffer(Base64.getDecoder().decode(encodedPage)).getInput()));
+    }
+
+    private List<List<Object>> decodePage(SerializedPage serializedPage)
+    {
+        Page page = pagesSerde.deserialize(serializedPage);
+        checkArgument(page.getChannelCount() == decoders.size(), "page/column count mismatch");
+
+        List<List<Object>> rows = new ArrayList<>(page.getPositionCount());
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            List<Object> row = new ArrayList<>(decoders.size());
+            for (int channel = 0; channel < decoders.size(); channel++) {
+                row.add(decoders.get(channel).decode(page.getBlock(channel), position));
+            }
+            rows.add(unmodifiableList(row)); // allow nulls in list
+        }
+        return rows;
+    }
+
+    private static Optional<ValueDecoder> createDecoder(TypeSignature signature)
+    {
+        return createNonNullDecoder(signature)
+                .map(decoder -> (block, position) -> block.isNull(position) ? null : decoder.decode(block, position));
+    }
+
+    private static Optional<ValueDecoder> createNonNullDecoder(TypeSignature signature)
+    {
+        if (signature.isDistinctType()) {
+            return createNonNullDecoder(signature.getDistinctTypeInfo().getBaseType());
+        }
+        if (signature.getTypeSignatureBase().hasTypeName()) {
+            if (signature.getTypeSignatureBase().hasStandardType()) {
+                return createNonNullDecoder(signature.getStandardTypeSignature());
+            }
+            return Optional.empty();
+        }
+        if (signature.isEnum()) {
+            return Optional.empty();
+        }
+
+        List<TypeSignatureParameter> parameters = signature.getParameters();
+        switch (signature.getBase()) {
+            case ARRAY:
+                return createDecoder(signature.getTypeOrNamedTypeParametersAsTypeSignatures().get(0))
+                        .map(elementDecoder -> (block, position) -> {
+                            Block arrayBlock = block.getBlock(position);
+                            List<Object> value = new ArrayList<>(arrayBlock.getPositionCount());
+                            for (int i = 0; i < arrayBlock.getPositionCount(); i++) {
+                                value.add(elementDecoder.decode(arrayBlock, i));
+                            }
+                            return value;
+                        });
+            case MAP: {
+                Optional<ValueDecoder> keyDecoder = createDecoder(signature.getTypeOrNamedTypeParametersAsTypeSignatures().get(0));
+                Optional<ValueDecoder> valueDecoder = createDecoder(signature.getTypeOrNamedTypeParametersAsTypeSignatures().get(1));
+                if (!keyDecoder.isPresent() || !valueDecoder.isPresent()) {
+                    return Optional.empty();
+                }
+                return Optional.of((block, position) -> {
+                    // keys and values alternate in a single map block
+                    Block mapBlock = block.getBlock(position);
+                    Map<Object, Object> value = new HashMap<>();
+                    for (int i = 0; i < mapBlock.getPositionCount(); i += 2) {
+                        value.put(keyDecoder.get().decode(mapBlock, i), valueDecoder.get().decode(mapBlock, i + 1));
+                    }
+                    return value;
+                });
+            }
+            case ROW: {
+                List<String> fieldNames = new ArrayList<>(parameters.size());
+                List<ValueDecoder> fieldDecoders = new ArrayList<>(parameters.size());
+                for (int i = 0; i < parameters.size(); i++) {
+                    TypeSignatureParameter parameter = parameters.get(i);
+                    checkArgument(
+                            parameter.getKind() == ParameterKind.NAMED_TYPE,
+                            "Unexpected parameter [%s] for row type",
+                            parameter);
+                    NamedTypeSignature namedTypeSignature = parameter.getNamedTypeSignature();
+                    Optional<ValueDecoder> fieldDecoder = createDecoder(namedTypeSignature.getTypeSignature());
+                    if (!fieldDecoder.isPresent()) {
+                        return Optional.empty();
+                    }
+                    fieldNames.add(namedTypeSignature.getName().orElse("field" + i));
+                    fieldDecoders.add(fieldDecoder.get());
+                }
+                return Optional.of((block, position) -> {
+                    Block rowBlock = block.getBlock(position);
+                    Map<String, Object> value = new LinkedHashMap<>();
+                    for (int i = 0; i < fieldDecoders.size(); i++) {
+                        value.put(fieldNames.get(i), fieldDecoders.get(i).decode(rowBlock, i));
+                    }
+                    return value;
+                });
+            }
+            case BOOLEAN:
+                return Optional.of((block, position) -> block.getByte(position) != 0);
+            case TINYINT:
+                return Optional.of(Block::getByte);
+            case SMALLINT:
+                return Optional.of(Block::getShort);
+            case INTEGER:
+                return Optional.of(Block::getInt);
+            case BIGINT:
+                return Optional.of(Block::getLong);
+            case REAL:
+                return Optional.of((block, position) -> Float.intBitsToFloat(block.getInt(position)));
+            case DOUBLE:
+                return Optional.of((block, position) -> Double.longBitsToDouble(block.getLong(position)));
+            case VARCHAR:
+            case JSON:
+                return Optional.of((block, position) -> block.getSlice(position, 0, block.getSliceLength(position)).toStringUtf8());
+            case CHAR: {
+                int length = toIntExact(parameters.get(0).getLongLiteral());
+                return Optional.of((block, position) -> {
+                    StringBuilder builder = new StringBuilder(length);
+                    String value = block.getSlice(position, 0, block.getSliceLength(position)).toStringUtf8();
+                    builder.append(value);
+                    for (int i = value.length(); i < length; i++) {
+                        builder.append(' ');
+                    }
+                    return builder.toString();
+                });
+            }
+            case VARBINARY:
+                return Optional.of((block, position) -> block.getSlice(position, 0, block.getSliceLength(position)).getBytes());
+            case DATE:
+                return Optional.of((block, position) -> LocalDate.ofEpochDay(block.getInt(position)).toString());
+            case DECIMAL: {
+                DecimalType type = createDecimalType(toIntExact(parameters.get(0).getLongLiteral()), toIntExact(parameters.get(1).getLongLiteral()));
+                if (type.isShort()) {
+                    return Optional.of((block, position) -> Decimals.toString(block.getLong(position), type.getScale()));
+                }
+                return Optional.of((block, position) -> Decimals.toString(type.getSlice(block, position), type.getScale()));
+            }
+            default:
+                // timestamps, times and plugin types are rendered by the server with session properties
+                return Optional.empty();
+        }
+    }
+
+    private interface ValueDecoder
+    {
+        Object decode(Block block, int position);
+    }
+}
@@ -23,7 +23,9 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.errorprone.annotations.ThreadSafe;
+import io.airlift.slice.Slice;
 import jakarta.annotation.Nullable;
 import okhttp3.Headers;
 import okhttp3.HttpUrl;
@@ -31,7 +33,10 @@ import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okhttp3.Response;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
@@ -41,7 +46,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -74,9 +81,12 @@ import static com.facebook.presto.client.PrestoHeaders.PRESTO_TRANSACTION_ID;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_USER;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.Sets.newConcurrentHashSet;
 import static com.google.common.net.HttpHeaders.ACCEPT_ENCODING;
 import static com.google.common.net.HttpHeaders.USER_AGENT;
+import static com.google.common.util.concurrent.Futures.getUnchecked;
+import static io.airlift.slice.Slices.wrappedBuffer;
 import static java.lang.String.format;
 import static java.net.HttpURLConnection.HTTP_OK;
 import static java.net.HttpURLConnection.HTTP_UNAUTHORIZED;
@@ -117,6 +127,9 @@ class StatementClientV1
     private final boolean validateNextUriSource;
     private final Map<String, List<String>> responseHeaders;
     private final AtomicReference<State> state = new AtomicReference<>(State.RUNNING);
+    private final boolean binaryResults;
+    private final AtomicReference<Optional<BinaryDataDecoder>> binaryDataDecoder = new AtomicReference<>();
+    private final AtomicReference<Future<JsonResponse<QueryResults>>> prefetchedResponse = new AtomicReference<>();
 
     public StatementClientV1(OkHttpClient httpClient, ClientSession session, String query)
     {
@@ -131,6 +144,7 @@ class StatementClientV1
         this.user = session.getUser();
         this.compressionDisabled = session.isCompressionDisabled();
         this.validateNextUriSource = session.validateNextUriSource();
+        this.binaryResults = session.isBinaryResults();
 
         Request request = buildQueryRequest(session, query);
 
@@ -375,7 +389,8 @@ class StatementClientV1
         }
         validateNextUriSource(nextUri, currentStatusInfo().getInfoUri());
 
-        Request request = prepareRequest(HttpUrl.get(nextUri)).build();
+        Request request = prepareNextRequest(nextUri);
+        Future<JsonResponse<QueryResults>> prefetched = prefetchedResponse.getAndSet(null);
 
         Exception cause = null;
         long start = System.nanoTime();
@@ -412,7 +427,15 @@ class StatementClientV1
 
             JsonResponse<QueryResults> response;
             try {
-                response = JsonResponse.execute(QUERY_RESULTS_CODEC, httpClient, request);
+                if (prefetched != null) {
+                    // the first attempt was issued while the previous results were being consumed
+                    Future<JsonResponse<QueryResults>> future = prefetched;
+                    prefetched = null;
+                    response = getUnchecked(future);
+                }
+                else {
+                    response = JsonResponse.execute(QUERY_RESULTS_CODEC, httpClient, request);
+                }
             }
             catch (RuntimeException e) {
                 cause = e;
@@ -421,6 +444,7 @@ class StatementClientV1
 
             if ((response.getStatusCode() == HTTP_OK) && response.hasValue()) {
                 processResponse(response.getHeaders(), response.getValue());
+                prefetchNextResults();
                 return true;
             }
 
@@ -431,14 +455,117 @@ class StatementClientV1
         }
     }
 
-    private void validateNextUriSource(final URI nextUri, final URI infoUri)
+    /**
+     * Requests binary results once the result columns are known to be decodable from them, along
+     * with the segments of the spooled query output, which are in the same format. The server
+     * carries the choice over to the next URIs it returns.
+     */
+    private Request prepareNextRequest(URI nextUri)
+    {
+        HttpUrl url = HttpUrl.get(nextUri);
+        List<Column> columns = currentResults.get().getColumns();
+        if (binaryResults && columns != null && getBinaryDataDecoder(columns).isPresent()) {
+            url = url.newBuilder()
+                    .setQueryParameter("binaryResults", "true")
+                    .setQueryParameter("resultSegments", "true")
+                    .build();
+        }
+        return prepareRequest(url).build();
+    }
+
+    /**
+     * With binary results, fetch the next batch while the current one is being consumed.
+     */
+    private void prefetchNextResults()
     {
-        if (!validateNextUriSource) {
+        QueryResults results = currentResults.get();
+        URI nextUri = results.getNextUri();
+        if (!binaryResults || nextUri == null || results.getColumns() == null || !isValidNextUriSource(nextUri, results.getInfoUri())) {
             return;
         }
 
-        if (nextUri.getHost().equals(infoUri.getHost())
-                && nextUri.getPort() == infoUri.getPort()) {
+        Request request = prepareNextRequest(nextUri);
+        prefetchedResponse.set(CompletableFuture.supplyAsync(
+                () -> JsonResponse.execute(QUERY_RESULTS_CODEC, httpClient, request),
+                httpClient.dispatcher().executorService()));
+    }
+
+    private Optional<BinaryDataDecoder> getBinaryDataDecoder(List<Column> columns)
+    {
+        if (binaryDataDecoder.get() == null) {
+            binaryDataDecoder.compareAndSet(null, BinaryDataDecoder.create(columns));
+        }
+        return binaryDataDecoder.get();
+    }
+
+    private QueryResults decodeBinaryData(QueryResults results)
+    {
+        BinaryDataDecoder decoder = getBinaryDataDecoder(results.getColumns())
+                .orElseThrow(() -> new ClientException("Binary results are not supported for the result types"));
+        return new QueryResults(
+                results.getId(),
+                results.getInfoUri(),
+                results.getPartialCancelUri(),
+                results.getNextUri(),
+                results.getColumns(),
+                decoder.decode(results.getBinaryData()),
+                null,
+                results.getStats(),
+                results.getError(),
+                results.getWarnings(),
+                results.getUpdateType(),
+                results.getUpdateCount());
+    }
+
+    /**
+     * Starts downloading all segments of the results in parallel. The rows of a segment are
+     * available once it has been downloaded.
+     */
+    private QueryResults downloadSegments(QueryResults results)
+    {
+        BinaryDataDecoder decoder = getBinaryDataDecoder(results.getColumns())
+                .orElseThrow(() -> new ClientException("Binary results are not supported for the result types"));
+        results.getSegments().forEach(segment -> validateNextUriSource(segment, results.getInfoUri()));
+        List<Future<Slice>> downloads = results.getSegments().stream()
+                .map(segment -> CompletableFuture.supplyAsync(() -> downloadSegment(segment), httpClient.dispatcher().executorService()))
+                .collect(toImmutableList());
+        return new QueryResults(
+                results.getId(),
+                results.getInfoUri(),
+                results.getPartialCancelUri(),
+                results.getNextUri(),
+                results.getColumns(),
+                Iterables.concat(Iterables.transform(downloads, download -> decoder.decodePages(getUnchecked(download)))),
+                null,
+                results.getStats(),
+                results.getError(),
+                results.getWarnings(),
+                results.getUpdateType(),
+                results.getUpdateCount());
+    }
+
+    private Slice downloadSegment(URI segment)
+    {
+        Request request = prepareRequest(HttpUrl.get(segment)).build();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (response.code() != HTTP_OK || response.body() == null) {
+                throw new ClientException(format("Error downloading result segment at %s returned HTTP %s", segment, response.code()));
+            }
+            return wrappedBuffer(response.body().bytes());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(format("Error downloading result segment at %s", segment), e);
+        }
+    }
+
+    private boolean isValidNextUriSource(URI nextUri, URI infoUri)
+    {
+        return !validateNextUriSource || (nextUri.getHost().equals(infoUri.getHost()) && nextUri.getPort() == infoUri.getPort());
+    }
+
+    private void validateNextUriSource(final URI nextUri, final URI infoUri)
+    {
+        if (isValidNextUriSource(nextUri, infoUri)) {
             return;
         }
         state.compareAndSet(State.RUNNING, State.CLIENT_ERROR);
@@ -506,6 +633,12 @@ class StatementClientV1
             removedSessionFunctions.add(urlDecode(signature));
         }
 
+        if (results.getBinaryData() != null) {
+            results = decodeBinaryData(results);
+        }
+        else if (results.getSegments() != null) {
+            results = downloadSegments(results);
+        }
         currentResults.set(results);
     }
 
@@ -547,6 +680,10 @@ class StatementClientV1
     {
         // If the query is not done, abort the query.
         if (state.compareAndSet(State.RUNNING, State.CLIENT_ABORTED)) {
+            Future<JsonResponse<QueryResults>> prefetched = prefetchedResponse.getAndSet(null);
+            if (prefetched != null) {
+                prefetched.cancel(true);
+            }
             URI uri = currentResults.get().getNextUri();
             if (uri != null) {
                 httpDelete(uri);
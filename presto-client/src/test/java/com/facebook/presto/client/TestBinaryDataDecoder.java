@@ -0,0 +1,211 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.client;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.block.MethodHandleUtil;
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.common.type.MapType;
+import com.facebook.presto.common.type.RowType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.DynamicSliceOutput;
+import org.testng.annotations.Test;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.CharType.createCharType;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DecimalType.createDecimalType;
+import static com.facebook.presto.common.type.Decimals.encodeUnscaledValue;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.JsonType.JSON;
+import static com.facebook.presto.common.type.RealType.REAL;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TimestampType.TIMESTAMP;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.common.type.TypeSignature.parseTypeSignature;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPage;
+import static com.google.common.collect.Lists.newArrayList;
+import static io.airlift.slice.Slices.utf8Slice;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static java.lang.Float.floatToRawIntBits;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestBinaryDataDecoder
+{
+    private static final PagesSerde PAGES_SERDE = new PagesSerde(new BlockEncodingManager(), Optional.empty(), Optional.empty(), Optional.empty());
+
+    @Test
+    public void testDecode()
+    {
+        assertDecoded(BIGINT, builder -> BIGINT.writeLong(builder, 1000), 1000L);
+        assertDecoded(INTEGER, builder -> INTEGER.writeLong(builder, 100), 100);
+        assertDecoded(SMALLINT, builder -> SMALLINT.writeLong(builder, 10), (short) 10);
+        assertDecoded(TINYINT, builder -> TINYINT.writeLong(builder, 1), (byte) 1);
+        assertDecoded(BOOLEAN, builder -> BOOLEAN.writeBoolean(builder, true), true);
+        assertDecoded(DATE, builder -> DATE.writeLong(builder, LocalDate.parse("2017-07-01").toEpochDay()), "2017-07-01");
+        assertDecoded(createDecimalType(3, 2), builder -> createDecimalType(3, 2).writeLong(builder, 215), "2.15");
+        assertDecoded(
+                createDecimalType(25, 3),
+                builder -> createDecimalType(25, 3).writeSlice(builder, encodeUnscaledValue(new BigInteger("-12345678901234567890123"))),
+                "-12345678901234567890.123");
+        assertDecoded(REAL, builder -> REAL.writeLong(builder, floatToRawIntBits(100.23456f)), 100.23456f);
+        assertDecoded(DOUBLE, builder -> DOUBLE.writeDouble(builder, 100.23456), 100.23456);
+        assertDecoded(VARCHAR, builder -> VARCHAR.writeSlice(builder, utf8Slice("test string")), "test string");
+        assertDecoded(createCharType(5), builder -> createCharType(5).writeSlice(builder, utf8Slice("abc")), "abc  ");
+        assertDecoded(JSON, builder -> JSON.writeSlice(builder, utf8Slice("{\"json\": {\"a\": 1}}")), "{\"json\": {\"a\": 1}}");
+
+        ArrayType arrayType = new ArrayType(BIGINT);
+        assertDecoded(arrayType, builder -> {
+            BlockBuilder entry = builder.beginBlockEntry();
+            BIGINT.writeLong(entry, 1);
+            entry.appendNull();
+            BIGINT.writeLong(entry, 4);
+            builder.closeEntry();
+        }, Arrays.asList(1L, null, 4L));
+
+        MapType mapType = new MapType(
+                BIGINT,
+                BIGINT,
+                MethodHandleUtil.methodHandle(TestBinaryDataDecoder.class, "throwUnsupportedOperation"),
+                MethodHandleUtil.methodHandle(TestBinaryDataDecoder.class, "throwUnsupportedOperation"));
+        assertDecoded(mapType, builder -> {
+            BlockBuilder entry = builder.beginBlockEntry();
+            BIGINT.writeLong(entry, 1);
+            BIGINT.writeLong(entry, 3);
+            BIGINT.writeLong(entry, 2);
+            BIGINT.writeLong(entry, 4);
+            builder.closeEntry();
+        }, ImmutableMap.of(1L, 3L, 2L, 4L));
+
+        RowType rowType = RowType.from(ImmutableList.of(RowType.field("foo", BIGINT), RowType.field("bar", new ArrayType(DOUBLE))));
+        assertDecoded(rowType, builder -> {
+            BlockBuilder entry = builder.beginBlockEntry();
+            BIGINT.writeLong(entry, 1);
+            BlockBuilder array = entry.beginBlockEntry();
+            DOUBLE.writeDouble(array, 2.0);
+            entry.closeEntry();
+            builder.closeEntry();
+        }, ImmutableMap.of("foo", 1L, "bar", ImmutableList.of(2.0)));
+    }
+
+    @Test
+    public void testVarbinary()
+    {
+        List<Object> values = decodeSingleColumn(VARBINARY, builder -> VARBINARY.writeSlice(builder, wrappedBuffer(new byte[] {1, 2, 3})));
+        assertTrue(Arrays.equals((byte[]) values.get(0), new byte[] {1, 2, 3}));
+        assertNull(values.get(1));
+    }
+
+    @Test
+    public void testMultiplePages()
+    {
+        List<Column> columns = ImmutableList.of(new Column("a", BIGINT), new Column("b", VARCHAR));
+        BinaryDataDecoder decoder = BinaryDataDecoder.create(columns).get();
+
+        List<List<Object>> rows = newArrayList(decoder.decode(ImmutableList.of(
+                encode(new Page(createBlock(BIGINT, builder -> BIGINT.writeLong(builder, 1)), createBlock(VARCHAR, builder -> VARCHAR.writeSlice(builder, utf8Slice("x"))))),
+                encode(new Page(createBlock(BIGINT, builder -> BIGINT.writeLong(builder, 2)), createBlock(VARCHAR, builder -> VARCHAR.writeSlice(builder, utf8Slice("y"))))))));
+        assertEquals(rows, ImmutableList.of(
+                ImmutableList.of(1L, "x"),
+                Arrays.asList(null, null),
+                ImmutableList.of(2L, "y"),
+                Arrays.asList(null, null)));
+    }
+
+    @Test
+    public void testDecodePages()
+    {
+        BinaryDataDecoder decoder = BinaryDataDecoder.create(ImmutableList.of(new Column("a", BIGINT))).get();
+
+        DynamicSliceOutput output = new DynamicSliceOutput(1024);
+        writeSerializedPage(output, PAGES_SERDE.serialize(new Page(createBlock(BIGINT, builder -> BIGINT.writeLong(builder, 1)))));
+        writeSerializedPage(output, PAGES_SERDE.serialize(new Page(createBlock(BIGINT, builder -> BIGINT.writeLong(builder, 2)))));
+        assertEquals(newArrayList(decoder.decodePages(output.slice())), ImmutableList.of(
+                ImmutableList.of(1L),
+                Arrays.asList((Object) null),
+                ImmutableList.of(2L),
+                Arrays.asList((Object) null)));
+
+        assertEquals(newArrayList(decoder.decodePages(new DynamicSliceOutput(0).slice())), ImmutableList.of());
+    }
+
+    @Test
+    public void testUnsupportedTypes()
+    {
+        assertTrue(BinaryDataDecoder.create(ImmutableList.of(new Column("a", BIGINT))).isPresent());
+        assertFalse(BinaryDataDecoder.create(ImmutableList.of(new Column("a", BIGINT), new Column("b", TIMESTAMP))).isPresent());
+        assertFalse(BinaryDataDecoder.create(ImmutableList.of(new Column("a", new ArrayType(TIMESTAMP)))).isPresent());
+        assertFalse(BinaryDataDecoder.create(ImmutableList.of(new Column("a", parseTypeSignature("ipaddress")))).isPresent());
+        assertFalse(BinaryDataDecoder.create(ImmutableList.of(new Column("a", parseTypeSignature("interval day to second")))).isPresent());
+    }
+
+    private static void assertDecoded(Type type, Consumer<BlockBuilder> writer, Object expected)
+    {
+        List<Object> values = decodeSingleColumn(type, writer);
+        assertEquals(values.get(0), expected);
+        assertNull(values.get(1));
+    }
+
+    /**
+     * Decodes a page with a value written by the writer, followed by a null.
+     */
+    private static List<Object> decodeSingleColumn(Type type, Consumer<BlockBuilder> writer)
+    {
+        BinaryDataDecoder decoder = BinaryDataDecoder.create(ImmutableList.of(new Column("test", type))).get();
+        List<List<Object>> rows = newArrayList(decoder.decode(ImmutableList.of(encode(new Page(createBlock(type, writer))))));
+        assertEquals(rows.size(), 2);
+        return Arrays.asList(rows.get(0).get(0), rows.get(1).get(0));
+    }
+
+    private static Block createBlock(Type type, Consumer<BlockBuilder> writer)
+    {
+        BlockBuilder builder = type.createBlockBuilder(null, 2);
+        writer.accept(builder);
+        builder.appendNull();
+        return builder.build();
+    }
+
+    private static String encode(Page page)
+    {
+        DynamicSliceOutput output = new DynamicSliceOutput(1024);
+        writeSerializedPage(output, PAGES_SERDE.serialize(page));
+        return Base64.getEncoder().encodeToString(output.slice().getBytes());
+    }
+
+    public static void throwUnsupportedOperation()
+    {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -82,11 +82,17 @@ public class RuntimeMetricName
     // Size of the data retrieved by read call to storage
     public static final String STORAGE_READ_DATA_BYTES = "storageReadDataBytes";
     public static final String WRITTEN_FILES_COUNT = "writtenFilesCount";
+    public static final String HASH_AGGREGATION_REHASH_COUNT = "hashAggregationRehashCount";
+    public static final String HASH_AGGREGATION_REHASH_TIME_NANOS = "hashAggregationRehashTimeNanos";
     public static final String HISTORY_OPTIMIZER_QUERY_REGISTRATION_GET_PLAN_NODE_HASHES = "historyOptimizerQueryRegistrationGetPlanNodeHashes";
     public static final String HISTORY_OPTIMIZER_QUERY_REGISTRATION_GET_STATISTICS = "historyOptimizerQueryRegistrationGetStatistics";
     public static final String DIRECTORY_LISTING_CACHE_HIT = "directoryListingCacheHit";
     public static final String DIRECTORY_LISTING_CACHE_MISS = "directoryListingCacheMiss";
     public static final String DIRECTORY_LISTING_TIME_NANOS = "directoryListingTimeNanos";
+    public static final String QUERY_RESULT_CACHE_HIT = "queryResultCacheHit";
+    public static final String QUERY_RESULT_CACHE_MISS = "queryResultCacheMiss";
+    // Size of the serialized result pages served from or stored into the query result cache
+    public static final String QUERY_RESULT_CACHE_BYTES = "queryResultCacheBytes";
     public static final String FILES_READ_COUNT = "filesReadCount";
     public static final String METASTORE_ADD_PARTITIONS_TIME_NANOS = "metastoreAddPartitionsTimeNanos";
     public static final String METASTORE_ALTER_PARTITION_TIME_NANOS = "metastoreAlterPartitionTimeNanos";
@@ -113,6 +119,7 @@ public class RuntimeMetricName
     public static final String DYNAMIC_FILTER_DOMAIN_RANGE_COUNT = "dynamicFilterDomainRangeCount";
     public static final String DYNAMIC_FILTER_COORDINATOR_FALLBACK_TO_RANGE = "dynamicFilterCoordinatorFallbackToRange";
     public static final String DYNAMIC_FILTER_SHORT_CIRCUITED = "dynamicFilterShortCircuited";
+    public static final String DYNAMIC_FILTER_BLOOM_FILTERED_ROWS = "dynamicFilterBloomFilteredRows";
     public static final String DYNAMIC_FILTER_FETCHER_POLLS = "dynamicFilterFetcherPolls";
     public static final String DYNAMIC_FILTER_FETCHER_STOPPED_BY_CLEANUP = "dynamicFilterFetcherStoppedByCleanup";
     public static final String DYNAMIC_FILTER_FETCHER_FINAL_FETCH_COMPLETED = "dynamicFilterFetcherFinalFetchCompleted";
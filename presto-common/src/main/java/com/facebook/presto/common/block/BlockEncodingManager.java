@@ -48,6 +48,8 @@ public final class BlockEncodingManager
         addBlockEncoding(new SingleRowBlockEncoding());
         addBlockEncoding(new RunLengthBlockEncoding());
         addBlockEncoding(new LazyBlockEncoding());
+        addBlockEncoding(new PackedIntArrayBlockEncoding());
+        addBlockEncoding(new PackedLongArrayBlockEncoding());
     }
 
     public void addBlockEncoding(BlockEncoding blockEncoding)
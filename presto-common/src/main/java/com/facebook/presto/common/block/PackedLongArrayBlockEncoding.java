@@ -0,0 +1,85 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.common.block;
+
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+
+import static com.facebook.presto.common.block.EncoderUtil.decodeNullBits;
+import static com.facebook.presto.common.block.EncoderUtil.encodeNullsAsBits;
+
+/**
+ * Same layout as {@link LongArrayBlockEncoding}, except that the non-null values are bit packed
+ * with {@link PackedValues}. Blocks are read back as {@link LongArrayBlock}.
+ */
+public class PackedLongArrayBlockEncoding
+        implements BlockEncoding
+{
+    public static final String NAME = "PACKED_LONG_ARRAY";
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public void writeBlock(BlockEncodingSerde blockEncodingSerde, SliceOutput sliceOutput, Block block)
+    {
+        int positionCount = block.getPositionCount();
+        sliceOutput.appendInt(positionCount);
+
+        encodeNullsAsBits(sliceOutput, block);
+
+        long[] values = new long[positionCount];
+        int valueCount = 0;
+        boolean mayHaveNull = block.mayHaveNull();
+        for (int position = 0; position < positionCount; position++) {
+            if (!mayHaveNull || !block.isNull(position)) {
+                values[valueCount++] = block.getLong(position);
+            }
+        }
+        PackedValues.pack(values, valueCount, Long.BYTES).writeTo(sliceOutput);
+    }
+
+    @Override
+    public Block readBlock(BlockEncodingSerde blockEncodingSerde, SliceInput sliceInput)
+    {
+        int positionCount = sliceInput.readInt();
+
+        boolean[] valueIsNull = decodeNullBits(sliceInput, positionCount).orElse(null);
+
+        int valueCount = positionCount;
+        if (valueIsNull != null) {
+            for (int position = 0; position < positionCount; position++) {
+                if (valueIsNull[position]) {
+                    valueCount--;
+                }
+            }
+        }
+
+        long[] packedValues = new long[positionCount];
+        PackedValues.readValues(sliceInput, packedValues, valueCount, Long.BYTES);
+
+        if (valueIsNull != null) {
+            // spread the non-null values to their positions, starting from the end so that no value is overwritten before it is moved
+            int valueIndex = valueCount - 1;
+            for (int position = positionCount - 1; position >= 0; position--) {
+                packedValues[position] = valueIsNull[position] ? 0 : packedValues[valueIndex--];
+            }
+        }
+
+        return new LongArrayBlock(0, positionCount, valueIsNull, packedValues);
+    }
+}
@@ -0,0 +1,337 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.common.block;
+
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.SliceOutput;
+
+import java.util.Arrays;
+
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static java.lang.Math.toIntExact;
+import static java.lang.String.format;
+
+/**
+ * Bit packed representation of the non-null values of an integer column, used by
+ * {@link PackedLongArrayBlockEncoding} and {@link PackedIntArrayBlockEncoding}.
+ * <p>
+ * The values are analyzed once and packed with whichever of the following is the smallest:
+ * <ul>
+ * <li>frame of reference: the difference to the minimum value</li>
+ * <li>delta: the difference between consecutive values, relative to the minimum difference</li>
+ * <li>dictionary: the index into the distinct values, if there are at most {@link #MAX_DICTIONARY_SIZE}</li>
+ * </ul>
+ * All arithmetic wraps around, so that the original values are restored exactly even if the
+ * differences overflow.
+ */
+public final class PackedValues
+{
+    public static final int MAX_DICTIONARY_SIZE = 256;
+
+    private static final byte FRAME_OF_REFERENCE = 0;
+    private static final byte DELTA = 1;
+    private static final byte DICTIONARY = 2;
+
+    private static final int DICTIONARY_HASH_SIZE = MAX_DICTIONARY_SIZE * 2;
+
+    private final long[] values;
+    private final int count;
+    private final int valueBytes;
+
+    private final byte mode;
+    private final int bitWidth;
+    private final long minValue;
+    private final long minDelta;
+    private final long[] dictionary;
+    private final int dictionarySize;
+    private final long serializedSizeInBytes;
+
+    private PackedValues(long[] values, int count, int valueBytes)
+    {
+        this.values = values;
+        this.count = count;
+        this.valueBytes = valueBytes;
+
+        long minValue = Long.MAX_VALUE;
+        long maxValue = Long.MIN_VALUE;
+        long minDelta = Long.MAX_VALUE;
+        long maxDelta = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            long value = values[i];
+            minValue = Math.min(minValue, value);
+            maxValue = Math.max(maxValue, value);
+            if (i > 0) {
+                long delta = value - values[i - 1];
+                minDelta = Math.min(minDelta, delta);
+                maxDelta = Math.max(maxDelta, delta);
+            }
+        }
+
+        int frameOfReferenceBitWidth = count == 0 ? 0 : bitWidth(maxValue - minValue);
+        long frameOfReferenceSize = SIZE_OF_LONG + SIZE_OF_BYTE + packedSizeInBytes(count, frameOfReferenceBitWidth);
+
+        int deltaBitWidth = count <= 1 ? 0 : bitWidth(maxDelta - minDelta);
+        long deltaSize = SIZE_OF_LONG + SIZE_OF_LONG + SIZE_OF_BYTE + packedSizeInBytes(Math.max(count - 1, 0), deltaBitWidth);
+
+        long[] dictionary = buildDictionary(values, count);
+        int dictionarySize = dictionary == null ? 0 : dictionary.length;
+        int dictionaryBitWidth = dictionarySize <= 1 ? 0 : bitWidth(dictionarySize - 1);
+        long dictionaryEncodedSize = dictionary == null ? Long.MAX_VALUE : SIZE_OF_INT + (long) dictionarySize * valueBytes + SIZE_OF_BYTE + packedSizeInBytes(count, dictionaryBitWidth);
+
+        this.minValue = minValue;
+        this.minDelta = minDelta;
+        if (dictionaryEncodedSize < frameOfReferenceSize && dictionaryEncodedSize < deltaSize) {
+            this.mode = DICTIONARY;
+            this.bitWidth = dictionaryBitWidth;
+            this.dictionary = dictionary;
+            this.dictionarySize = dictionarySize;
+            this.serializedSizeInBytes = SIZE_OF_BYTE + dictionaryEncodedSize;
+        }
+        else if (deltaSize < frameOfReferenceSize) {
+            this.mode = DELTA;
+            this.bitWidth = deltaBitWidth;
+            this.dictionary = null;
+            this.dictionarySize = 0;
+            this.serializedSizeInBytes = SIZE_OF_BYTE + deltaSize;
+        }
+        else {
+            this.mode = FRAME_OF_REFERENCE;
+            this.bitWidth = frameOfReferenceBitWidth;
+            this.dictionary = null;
+            this.dictionarySize = 0;
+            this.serializedSizeInBytes = SIZE_OF_BYTE + frameOfReferenceSize;
+        }
+    }
+
+    /**
+     * Analyzes the first {@code count} entries of {@code values}. The array must not be modified until
+     * the values have been written.
+     *
+     * @param valueBytes the size of a value in the plain encoding, i.e. {@link Long#BYTES} or {@link Integer#BYTES}
+     */
+    public static PackedValues pack(long[] values, int count, int valueBytes)
+    {
+        if (valueBytes != Long.BYTES && valueBytes != Integer.BYTES) {
+            throw new IllegalArgumentException(format("Unsupported value size %s", valueBytes));
+        }
+        return new PackedValues(values, count, valueBytes);
+    }
+
+    public long getSerializedSizeInBytes()
+    {
+        return serializedSizeInBytes;
+    }
+
+    public void writeTo(SliceOutput output)
+    {
+        output.writeByte(mode);
+        switch (mode) {
+            case FRAME_OF_REFERENCE:
+                output.writeLong(minValue);
+                output.writeByte(bitWidth);
+                writeBits(output, bitWidth, count, i -> values[i] - minValue);
+                break;
+            case DELTA:
+                output.writeLong(values[0]);
+                output.writeLong(minDelta);
+                output.writeByte(bitWidth);
+                writeBits(output, bitWidth, count - 1, i -> values[i + 1] - values[i] - minDelta);
+                break;
+            case DICTIONARY:
+                output.writeInt(dictionarySize);
+                for (int i = 0; i < dictionarySize; i++) {
+                    if (valueBytes == Long.BYTES) {
+                        output.writeLong(dictionary[i]);
+                    }
+                    else {
+                        output.writeInt((int) dictionary[i]);
+                    }
+                }
+                output.writeByte(bitWidth);
+                writeBits(output, bitWidth, count, i -> Arrays.binarySearch(dictionary, values[i]));
+                break;
+            default:
+                throw new IllegalStateException("Unknown mode " + mode);
+        }
+    }
+
+    /**
+     * Reads {@code count} values written by {@link #writeTo} into the beginning of {@code values}.
+     */
+    public static void readValues(SliceInput input, long[] values, int count, int valueBytes)
+    {
+        byte mode = input.readByte();
+        switch (mode) {
+            case FRAME_OF_REFERENCE: {
+                long minValue = input.readLong();
+                readBits(input, input.readByte(), count, values);
+                for (int i = 0; i < count; i++) {
+                    values[i] += minValue;
+                }
+                return;
+            }
+            case DELTA: {
+                if (count == 0) {
+                    return;
+                }
+                long firstValue = input.readLong();
+                long minDelta = input.readLong();
+                readBits(input, input.readByte(), count - 1, values);
+                long previous = firstValue;
+                for (int i = 0; i < count - 1; i++) {
+                    long delta = values[i];
+                    values[i] = previous;
+                    previous += delta + minDelta;
+                }
+                values[count - 1] = previous;
+                return;
+            }
+            case DICTIONARY: {
+                int dictionarySize = input.readInt();
+                long[] dictionary = new long[dictionarySize];
+                for (int i = 0; i < dictionarySize; i++) {
+                    dictionary[i] = valueBytes == Long.BYTES ? input.readLong() : input.readInt();
+                }
+                readBits(input, input.readByte(), count, values);
+                for (int i = 0; i < count; i++) {
+                    values[i] = dictionary[toIntExact(values[i])];
+                }
+                return;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown packed values mode " + mode);
+        }
+    }
+
+    /**
+     * Returns the sorted distinct values, or null if there are more than {@link #MAX_DICTIONARY_SIZE}.
+     */
+    private static long[] buildDictionary(long[] values, int count)
+    {
+        long[] hashTable = new long[DICTIONARY_HASH_SIZE];
+        boolean[] used = new boolean[DICTIONARY_HASH_SIZE];
+        long[] distinctValues = new long[MAX_DICTIONARY_SIZE];
+        int distinctCount = 0;
+        for (int i = 0; i < count; i++) {
+            long value = values[i];
+            int slot = (int) (mix(value) & (DICTIONARY_HASH_SIZE - 1));
+            while (used[slot] && hashTable[slot] != value) {
+                slot = (slot + 1) & (DICTIONARY_HASH_SIZE - 1);
+            }
+            if (!used[slot]) {
+                if (distinctCount == MAX_DICTIONARY_SIZE) {
+                    return null;
+                }
+                used[slot] = true;
+                hashTable[slot] = value;
+                distinctValues[distinctCount++] = value;
+            }
+        }
+        long[] dictionary = Arrays.copyOf(distinctValues, distinctCount);
+        Arrays.sort(dictionary);
+        return dictionary;
+    }
+
+    private static long mix(long value)
+    {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static int bitWidth(long unsignedRange)
+    {
+        return Long.SIZE - Long.numberOfLeadingZeros(unsignedRange);
+    }
+
+    private static long packedSizeInBytes(int count, int bitWidth)
+    {
+        return ((long) count * bitWidth + Byte.SIZE - 1) / Byte.SIZE;
+    }
+
+    private static void writeBits(SliceOutput output, int bitWidth, int count, PackedValueSupplier supplier)
+    {
+        if (bitWidth == 0) {
+            return;
+        }
+
+        long mask = bitWidth == Long.SIZE ? -1L : (1L << bitWidth) - 1;
+        long buffer = 0;
+        int bufferedBits = 0;
+        for (int i = 0; i < count; i++) {
+            long value = supplier.get(i) & mask;
+            buffer |= value << bufferedBits;
+            int totalBits = bufferedBits + bitWidth;
+            if (totalBits >= Long.SIZE) {
+                output.writeLong(buffer);
+                totalBits -= Long.SIZE;
+                buffer = totalBits == 0 ? 0 : value >>> (bitWidth - totalBits);
+            }
+            bufferedBits = totalBits;
+        }
+
+        for (int shift = 0; shift < bufferedBits; shift += Byte.SIZE) {
+            output.writeByte((int) (buffer >>> shift));
+        }
+    }
+
+    private static void readBits(SliceInput input, int bitWidth, int count, long[] values)
+    {
+        if (bitWidth == 0) {
+            Arrays.fill(values, 0, count, 0);
+            return;
+        }
+
+        long mask = bitWidth == Long.SIZE ? -1L : (1L << bitWidth) - 1;
+        long remainingBytes = packedSizeInBytes(count, bitWidth);
+        long buffer = 0;
+        int availableBits = 0;
+        for (int i = 0; i < count; i++) {
+            if (availableBits >= bitWidth) {
+                values[i] = buffer & mask;
+                buffer = bitWidth == Long.SIZE ? 0 : buffer >>> bitWidth;
+                availableBits -= bitWidth;
+                continue;
+            }
+
+            long next;
+            int nextBits;
+            if (remainingBytes >= Long.BYTES) {
+                next = input.readLong();
+                nextBits = Long.SIZE;
+                remainingBytes -= Long.BYTES;
+            }
+            else {
+                next = 0;
+                for (int shift = 0; remainingBytes > 0; shift += Byte.SIZE, remainingBytes--) {
+                    next |= (input.readByte() & 0xFFL) << shift;
+                }
+                nextBits = Long.SIZE;
+            }
+
+            values[i] = (buffer | (next << availableBits)) & mask;
+            int consumedBits = bitWidth - availableBits;
+            buffer = consumedBits == Long.SIZE ? 0 : next >>> consumedBits;
+            availableBits = nextBits - consumedBits;
+        }
+    }
+
+    private interface PackedValueSupplier
+    {
+        long get(int index);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.common.block;
+
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.SliceInput;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestPackedArrayBlockEncoding
+{
+    private final BlockEncodingSerde blockEncodingSerde = new TestingBlockEncodingSerde();
+
+    @Test
+    public void testLongRoundTrip()
+    {
+        Random random = new Random(42);
+        for (int positionCount : new int[] {0, 1, 2, 7, 64, 1000}) {
+            // frame of reference
+            assertLongRoundTrip(positionCount, position -> 1_000_000L + random.nextInt(1000), 0.0);
+            // delta
+            assertLongRoundTrip(positionCount, position -> 1_000_000_000_000L + position * 3L, 0.0);
+            // dictionary
+            assertLongRoundTrip(positionCount, position -> random.nextInt(10) * 1_000_000_000L, 0.0);
+            // differences that overflow
+            assertLongRoundTrip(positionCount, position -> random.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE - random.nextInt(1000), 0.0);
+            assertLongRoundTrip(positionCount, position -> random.nextLong(), 0.0);
+            assertLongRoundTrip(positionCount, position -> random.nextInt(1000), 0.3);
+            assertLongRoundTrip(positionCount, position -> 5L, 1.0);
+        }
+    }
+
+    @Test
+    public void testIntRoundTrip()
+    {
+        Random random = new Random(42);
+        for (int positionCount : new int[] {0, 1, 2, 7, 64, 1000}) {
+            assertIntRoundTrip(positionCount, position -> 1_000_000 + random.nextInt(1000), 0.0);
+            assertIntRoundTrip(positionCount, position -> position * 3, 0.0);
+            assertIntRoundTrip(positionCount, position -> random.nextInt(10) - 5, 0.0);
+            assertIntRoundTrip(positionCount, position -> random.nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE, 0.0);
+            assertIntRoundTrip(positionCount, position -> random.nextInt(), 0.3);
+        }
+    }
+
+    @Test
+    public void testPackedSize()
+    {
+        long[] values = new long[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 1_000_000_000_000L + i;
+        }
+        // sorted values are delta packed with no bits per value
+        assertEquals(PackedValues.pack(values, values.length, Long.BYTES).getSerializedSizeInBytes(), 1 + 8 + 8 + 1);
+
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 3) * 1_000_000_000_000L;
+        }
+        // three distinct values take two bits each
+        assertEquals(PackedValues.pack(values, values.length, Long.BYTES).getSerializedSizeInBytes(), 1 + 4 + 3 * 8 + 1 + 250);
+
+        Random random = new Random(42);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextLong();
+        }
+        assertTrue(PackedValues.pack(values, values.length, Long.BYTES).getSerializedSizeInBytes() > values.length * Long.BYTES);
+    }
+
+    private void assertLongRoundTrip(int positionCount, PositionValue value, double nullRate)
+    {
+        Random random = new Random(positionCount);
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, positionCount);
+        for (int position = 0; position < positionCount; position++) {
+            if (random.nextDouble() < nullRate) {
+                blockBuilder.appendNull();
+            }
+            else {
+                BIGINT.writeLong(blockBuilder, value.get(position));
+            }
+        }
+        Block expected = blockBuilder.build();
+
+        Block actual = roundTrip(new PackedLongArrayBlockEncoding(), expected);
+        assertTrue(actual instanceof LongArrayBlock);
+        assertEquals(actual.getPositionCount(), positionCount);
+        for (int position = 0; position < positionCount; position++) {
+            assertEquals(actual.isNull(position), expected.isNull(position));
+            if (!expected.isNull(position)) {
+                assertEquals(actual.getLong(position), expected.getLong(position));
+            }
+        }
+    }
+
+    private void assertIntRoundTrip(int positionCount, PositionValue value, double nullRate)
+    {
+        Random random = new Random(positionCount);
+        BlockBuilder blockBuilder = INTEGER.createBlockBuilder(null, positionCount);
+        for (int position = 0; position < positionCount; position++) {
+            if (random.nextDouble() < nullRate) {
+                blockBuilder.appendNull();
+            }
+            else {
+                INTEGER.writeLong(blockBuilder, (int) value.get(position));
+            }
+        }
+        Block expected = blockBuilder.build();
+
+        Block actual = roundTrip(new PackedIntArrayBlockEncoding(), expected);
+        assertTrue(actual instanceof IntArrayBlock);
+        assertEquals(actual.getPositionCount(), positionCount);
+        for (int position = 0; position < positionCount; position++) {
+            assertEquals(actual.isNull(position), expected.isNull(position));
+            if (!expected.isNull(position)) {
+                assertEquals(actual.getInt(position), expected.getInt(position));
+            }
+        }
+    }
+
+    private Block roundTrip(BlockEncoding encoding, Block block)
+    {
+        DynamicSliceOutput output = new DynamicSliceOutput(1024);
+        encoding.writeBlock(blockEncodingSerde, output, block);
+        SliceInput input = output.slice().getInput();
+        Block result = encoding.readBlock(blockEncodingSerde, input);
+        assertFalse(input.isReadable());
+        return result;
+    }
+
+    private interface PositionValue
+    {
+        long get(int position);
+    }
+}
@@ -55,6 +55,8 @@ public final class TestingBlockEncodingSerde
         addBlockEncoding(new SingleRowBlockEncoding());
         addBlockEncoding(new RunLengthBlockEncoding());
         addBlockEncoding(new LazyBlockEncoding());
+        addBlockEncoding(new PackedIntArrayBlockEncoding());
+        addBlockEncoding(new PackedLongArrayBlockEncoding());
 
         for (BlockEncoding blockEncoding : requireNonNull(blockEncodings, "blockEncodings is null")) {
             addBlockEncoding(blockEncoding);
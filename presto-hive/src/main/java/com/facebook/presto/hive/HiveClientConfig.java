@@ -108,6 +108,9 @@ public class HiveClientConfig
     private DataSize textMaxLineLength = new DataSize(100, MEGABYTE);
     private boolean assumeCanonicalPartitionKeys;
     private double orcDefaultBloomFilterFpp = 0.05;
+    private boolean orcReadAheadEnabled;
+    private DataSize orcReadAheadMaxSize = new DataSize(64, MEGABYTE);
+    private int maxOrcReadAheadThreads = 32;
     private boolean rcfileOptimizedWriterEnabled = true;
     private boolean rcfileWriterValidate;
     private HdfsAuthenticationType hdfsAuthenticationType = HdfsAuthenticationType.NONE;
@@ -194,6 +197,7 @@ public class HiveClientConfig
     private boolean userDefinedTypeEncodingEnabled;
 
     private boolean columnIndexFilterEnabled;
+    private boolean parquetBloomFiltersEnabled;
     private boolean fileSplittable = true;
     private Protocol thriftProtocol = Protocol.BINARY;
     private DataSize thriftBufferSize = new DataSize(128, BYTE);
@@ -221,6 +225,7 @@ public class HiveClientConfig
     private boolean optimizeParsingOfPartitionValues;
     private int optimizeParsingOfPartitionValuesThreshold = 500;
     private boolean symlinkOptimizedReaderEnabled = true;
+    private boolean tableDataVersionEnabled;
 
     @Min(0)
     public int getMaxInitialSplits()
@@ -732,6 +737,48 @@ public class HiveClientConfig
         return this;
     }
 
+    public boolean isOrcReadAheadEnabled()
+    {
+        return orcReadAheadEnabled;
+    }
+
+    @Config("hive.orc.read-ahead-enabled")
+    @ConfigDescription("Read the next ORC stripe in the background while the current stripe is decoded")
+    public HiveClientConfig setOrcReadAheadEnabled(boolean orcReadAheadEnabled)
+    {
+        this.orcReadAheadEnabled = orcReadAheadEnabled;
+        return this;
+    }
+
+    @NotNull
+    @MaxDataSize("1GB")
+    public DataSize getOrcReadAheadMaxSize()
+    {
+        return orcReadAheadMaxSize;
+    }
+
+    @Config("hive.orc.read-ahead-max-size")
+    @ConfigDescription("Maximum size of the data read ahead for an ORC stripe")
+    public HiveClientConfig setOrcReadAheadMaxSize(DataSize orcReadAheadMaxSize)
+    {
+        this.orcReadAheadMaxSize = orcReadAheadMaxSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getMaxOrcReadAheadThreads()
+    {
+        return maxOrcReadAheadThreads;
+    }
+
+    @Config("hive.orc.max-read-ahead-threads")
+    @ConfigDescription("Maximum number of threads reading ORC stripes ahead")
+    public HiveClientConfig setMaxOrcReadAheadThreads(int maxOrcReadAheadThreads)
+    {
+        this.maxOrcReadAheadThreads = maxOrcReadAheadThreads;
+        return this;
+    }
+
     @Deprecated
     public boolean isRcfileOptimizedWriterEnabled()
     {
@@ -1512,6 +1559,19 @@ public class HiveClientConfig
         return this.columnIndexFilterEnabled;
     }
 
+    @Config("hive.parquet.bloom-filters.enabled")
+    @ConfigDescription("Enable pruning of parquet row groups using the bloom filters of the columns")
+    public HiveClientConfig setParquetBloomFiltersEnabled(boolean parquetBloomFiltersEnabled)
+    {
+        this.parquetBloomFiltersEnabled = parquetBloomFiltersEnabled;
+        return this;
+    }
+
+    public boolean isParquetBloomFiltersEnabled()
+    {
+        return parquetBloomFiltersEnabled;
+    }
+
     @Config("hive.size-based-split-weights-enabled")
     public HiveClientConfig setSizeBasedSplitWeightsEnabled(boolean sizeBasedSplitWeightsEnabled)
     {
@@ -1845,4 +1905,18 @@ public class HiveClientConfig
         this.symlinkOptimizedReaderEnabled = symlinkOptimizedReaderEnabled;
         return this;
     }
+
+    public boolean isTableDataVersionEnabled()
+    {
+        return tableDataVersionEnabled;
+    }
+
+    @Config("hive.table-data-version-enabled")
+    @ConfigDescription("Report a data version derived from the metastore parameters of the scanned partitions, which lets the engine cache query results. " +
+            "Only safe when all writes go through the metastore")
+    public HiveClientConfig setTableDataVersionEnabled(boolean tableDataVersionEnabled)
+    {
+        this.tableDataVersionEnabled = tableDataVersionEnabled;
+        return this;
+    }
 }
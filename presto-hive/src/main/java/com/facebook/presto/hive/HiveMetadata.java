@@ -112,6 +112,8 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import io.airlift.slice.Slice;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.LocatedFileStatus;
@@ -231,6 +233,7 @@ import static com.facebook.presto.hive.HiveSessionProperties.isShufflePartitione
 import static com.facebook.presto.hive.HiveSessionProperties.isSortedWriteToTempPathEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isSortedWritingEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isStatisticsEnabled;
+import static com.facebook.presto.hive.HiveSessionProperties.isTableDataVersionEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isUsePageFileForHiveUnsupportedType;
 import static com.facebook.presto.hive.HiveSessionProperties.shouldCreateEmptyBucketFilesForTemporaryTable;
 import static com.facebook.presto.hive.HiveStatisticsUtil.createPartitionStatistics;
@@ -255,6 +258,8 @@ import static com.facebook.presto.hive.HiveTableProperties.ENCRYPT_TABLE;
 import static com.facebook.presto.hive.HiveTableProperties.EXTERNAL_LOCATION_PROPERTY;
 import static com.facebook.presto.hive.HiveTableProperties.ORC_BLOOM_FILTER_COLUMNS;
 import static com.facebook.presto.hive.HiveTableProperties.ORC_BLOOM_FILTER_FPP;
+import static com.facebook.presto.hive.HiveTableProperties.PARQUET_BLOOM_FILTER_COLUMNS;
+import static com.facebook.presto.hive.HiveTableProperties.PARQUET_BLOOM_FILTER_FPP;
 import static com.facebook.presto.hive.HiveTableProperties.PARTITIONED_BY_PROPERTY;
 import static com.facebook.presto.hive.HiveTableProperties.PREFERRED_ORDERING_COLUMNS;
 import static com.facebook.presto.hive.HiveTableProperties.SKIP_FOOTER_LINE_COUNT;
@@ -277,6 +282,8 @@ import static com.facebook.presto.hive.HiveTableProperties.getHeaderSkipCount;
 import static com.facebook.presto.hive.HiveTableProperties.getHiveStorageFormat;
 import static com.facebook.presto.hive.HiveTableProperties.getOrcBloomFilterColumns;
 import static com.facebook.presto.hive.HiveTableProperties.getOrcBloomFilterFpp;
+import static com.facebook.presto.hive.HiveTableProperties.getParquetBloomFilterColumns;
+import static com.facebook.presto.hive.HiveTableProperties.getParquetBloomFilterFpp;
 import static com.facebook.presto.hive.HiveTableProperties.getPartitionedBy;
 import static com.facebook.presto.hive.HiveTableProperties.getPreferredOrderingColumns;
 import static com.facebook.presto.hive.HiveTableProperties.getSingleCharacterProperty;
@@ -380,12 +387,14 @@ import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Predicates.not;
+import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.concat;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Collections.emptyList;
 import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
@@ -406,9 +415,15 @@ public class HiveMetadata
 
     private static final String ORC_BLOOM_FILTER_COLUMNS_KEY = "orc.bloom.filter.columns";
     private static final String ORC_BLOOM_FILTER_FPP_KEY = "orc.bloom.filter.fpp";
+    public static final String PARQUET_BLOOM_FILTER_COLUMNS_KEY = "parquet.bloom.filter.columns";
+    public static final String PARQUET_BLOOM_FILTER_FPP_KEY = "parquet.bloom.filter.fpp";
 
     private static final String PRESTO_TEMPORARY_TABLE_NAME_PREFIX = "__presto_temporary_table_";
 
+    // metastore parameters that change whenever files are added to or replaced in a table or partition through the metastore
+    private static final String TRANSIENT_LAST_DDL_TIME = "transient_lastDdlTime";
+    private static final List<String> DATA_VERSION_PARAMETERS = ImmutableList.of(TRANSIENT_LAST_DDL_TIME, "numFiles", "totalSize", "numRows", "rawDataSize");
+
     // Comma is not a reserved keyword with or without quote
     // See https://cwiki.apache.org/confluence/display/Hive/LanguageManual+DDL#LanguageManualDDL-Keywords,Non-reservedKeywordsandReservedKeywords
     private static final char COMMA = ',';
@@ -771,6 +786,16 @@ public class HiveMetadata
             properties.put(ORC_BLOOM_FILTER_FPP, Double.parseDouble(orcBloomFilterFfp));
         }
 
+        // Parquet format specific properties
+        String parquetBloomFilterColumns = table.get().getParameters().get(PARQUET_BLOOM_FILTER_COLUMNS_KEY);
+        if (parquetBloomFilterColumns != null) {
+            properties.put(PARQUET_BLOOM_FILTER_COLUMNS, Splitter.on(COMMA).trimResults().omitEmptyStrings().splitToList(parquetBloomFilterColumns));
+        }
+        String parquetBloomFilterFpp = table.get().getParameters().get(PARQUET_BLOOM_FILTER_FPP_KEY);
+        if (parquetBloomFilterFpp != null) {
+            properties.put(PARQUET_BLOOM_FILTER_FPP, Double.parseDouble(parquetBloomFilterFpp));
+        }
+
         // Avro specific property
         String avroSchemaUrl = table.get().getParameters().get(AVRO_SCHEMA_URL_KEY);
         if (avroSchemaUrl != null) {
@@ -1331,6 +1356,19 @@ public class HiveMetadata
             tableProperties.put(ORC_BLOOM_FILTER_FPP_KEY, String.valueOf(getOrcBloomFilterFpp(tableMetadata.getProperties())));
         }
 
+        // Parquet format specific properties
+        List<String> parquetBloomFilterColumns = getParquetBloomFilterColumns(tableMetadata.getProperties());
+        if (parquetBloomFilterColumns != null && !parquetBloomFilterColumns.isEmpty()) {
+            if (hiveStorageFormat != PARQUET) {
+                throw new PrestoException(INVALID_TABLE_PROPERTY, format("Cannot specify %s table property for storage format: %s", PARQUET_BLOOM_FILTER_COLUMNS, hiveStorageFormat));
+            }
+            tableProperties.put(PARQUET_BLOOM_FILTER_COLUMNS_KEY, Joiner.on(COMMA).join(parquetBloomFilterColumns));
+            Double parquetBloomFilterFpp = getParquetBloomFilterFpp(tableMetadata.getProperties());
+            if (parquetBloomFilterFpp != null) {
+                tableProperties.put(PARQUET_BLOOM_FILTER_FPP_KEY, String.valueOf(parquetBloomFilterFpp));
+            }
+        }
+
         // Avro specific properties
         String avroSchemaUrl = getAvroSchemaUrl(tableMetadata.getProperties());
         if (avroSchemaUrl != null) {
@@ -3931,6 +3969,63 @@ public class HiveMetadata
         return Sets.intersection(tableHandle.getPredicateColumns().keySet(), relevantColumns).isEmpty() ? NOT_COVERED : COVERED;
     }
 
+    /**
+     * The version is a hash of the metastore parameters of the table and of the partitions selected by the layout,
+     * so a write to a partition the query does not read keeps its cached results. Files written to a table or partition
+     * location without going through the metastore are not detected, which is why this is opt in.
+     */
+    @Override
+    public Optional<String> getTableDataVersion(ConnectorSession session, ConnectorTableHandle tableHandle, Optional<ConnectorTableLayoutHandle> layoutHandle)
+    {
+        if (!isTableDataVersionEnabled(session) || !layoutHandle.isPresent()) {
+            return Optional.empty();
+        }
+        HiveTableHandle hiveTableHandle = (HiveTableHandle) tableHandle;
+        HiveTableLayoutHandle hiveLayoutHandle = (HiveTableLayoutHandle) layoutHandle.get();
+        if (!hiveLayoutHandle.getPartitions().isPresent()) {
+            return Optional.empty();
+        }
+
+        MetastoreContext metastoreContext = getMetastoreContext(session);
+        Optional<Table> table = metastore.getTable(metastoreContext, hiveTableHandle);
+        Hasher hasher = Hashing.sha256().newHasher();
+        if (!table.isPresent() || !putDataVersionParameters(hasher, table.get().getParameters())) {
+            return Optional.empty();
+        }
+
+        List<PartitionNameWithVersion> partitionIds = hiveLayoutHandle.getPartitions().get().getFullyLoadedPartitions().stream()
+                .map(HivePartition::getPartitionId)
+                .filter(partitionId -> !partitionId.equals(UNPARTITIONED_ID))
+                .sorted()
+                .collect(toImmutableList());
+        for (List<PartitionNameWithVersion> batch : Lists.partition(partitionIds, maxPartitionBatchSize)) {
+            Map<String, Optional<Partition>> partitions = metastore.getPartitionsByNames(metastoreContext, hiveTableHandle.getSchemaName(), hiveTableHandle.getTableName(), batch);
+            for (PartitionNameWithVersion partitionId : batch) {
+                Optional<Partition> partition = partitions.getOrDefault(partitionId.getPartitionName(), Optional.empty());
+                if (!partition.isPresent()) {
+                    return Optional.empty();
+                }
+                hasher.putString(partitionId.getPartitionName(), UTF_8).putByte((byte) 0);
+                partitionId.getPartitionVersion().ifPresent(hasher::putLong);
+                if (!putDataVersionParameters(hasher, partition.get().getParameters())) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.of(hasher.hash().toString());
+    }
+
+    private static boolean putDataVersionParameters(Hasher hasher, Map<String, String> parameters)
+    {
+        if (!parameters.containsKey(TRANSIENT_LAST_DDL_TIME)) {
+            return false;
+        }
+        for (String name : DATA_VERSION_PARAMETERS) {
+            hasher.putString(nullToEmpty(parameters.get(name)), UTF_8).putByte((byte) 0);
+        }
+        return true;
+    }
+
     @Override
     public void dropConstraint(ConnectorSession session, ConnectorTableHandle tableHandle, Optional<String> constraintName, Optional<String> columnName)
     {
@@ -21,6 +21,7 @@ import com.facebook.presto.common.Subfield.PathElement;
 import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.NullableValue;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeManager;
 import com.facebook.presto.hive.HiveSplit.BucketConversion;
@@ -373,6 +374,15 @@ public class HivePageSourceProvider
                 .map(filter -> filter.transform(handle -> new Subfield(((HiveColumnHandle) handle).getName())).intersect(layout.getDomainPredicate()))
                 .orElse(layout.getDomainPredicate());
 
+        // the Bloom filters of the dynamic filters are only evaluated on the columns that are read as they are stored
+        Set<String> uncoercedRegularColumns = columnMappings.stream()
+                .filter(mapping -> mapping.getKind() == ColumnMappingKind.REGULAR && !mapping.getCoercionFrom().isPresent())
+                .map(mapping -> mapping.getHiveColumnHandle().getName())
+                .collect(toImmutableSet());
+        Map<String, TupleDomainFilter> dynamicFilterColumnFilters = splitContext.getDynamicFilterColumnFilters().entrySet().stream()
+                .filter(entry -> uncoercedRegularColumns.contains(((HiveColumnHandle) entry.getKey()).getName()))
+                .collect(toImmutableMap(entry -> ((HiveColumnHandle) entry.getKey()).getName(), Map.Entry::getValue));
+
         List<HiveColumnHandle> columnHandles = toColumnHandles(columnMappings, true);
         Optional<byte[]> rowIDPartitionComponent = split.getRowIdPartitionComponent();
         HiveUtil.checkRowIDPartitionComponent(columnHandles, rowIDPartitionComponent);
@@ -382,12 +392,14 @@ public class HivePageSourceProvider
                     session,
                     split.getFileSplit(),
                     split.getStorage(),
+                    layout.getSchemaTableName(),
                     columnHandles,
                     prefilledValues,
                     coercers,
                     bucketAdaptation,
                     outputColumns,
                     domainPredicate,
+                    dynamicFilterColumnFilters,
                     optimizedRemainingPredicate,
                     hiveStorageTimeZone,
                     fileContext,
@@ -58,6 +58,8 @@ public final class HiveSessionProperties
     private static final String ORC_OPTIMIZED_WRITER_FLAT_MAP_WRITER_ENABLED = "orc_optimized_writer_flat_map_writer_enabled";
     private static final String ORC_OPTIMIZED_WRITER_COMPRESSION_LEVEL = "orc_optimized_writer_compression_level";
     private static final String PAGEFILE_WRITER_MAX_STRIPE_SIZE = "pagefile_writer_max_stripe_size";
+    private static final String ORC_READ_AHEAD_ENABLED = "orc_read_ahead_enabled";
+    private static final String ORC_READ_AHEAD_MAX_SIZE = "orc_read_ahead_max_size";
     public static final String HIVE_STORAGE_FORMAT = "hive_storage_format";
     static final String COMPRESSION_CODEC = "compression_codec";
     private static final String ORC_COMPRESSION_CODEC = "orc_compression_codec";
@@ -70,6 +72,7 @@ public final class HiveSessionProperties
     private static final String MAX_SPLIT_SIZE = "max_split_size";
     private static final String MAX_INITIAL_SPLIT_SIZE = "max_initial_split_size";
     private static final String SYMLINK_OPTIMIZED_READER_ENABLED = "symlink_optimized_reader_enabled";
+    private static final String TABLE_DATA_VERSION_ENABLED = "table_data_version_enabled";
     public static final String RCFILE_OPTIMIZED_WRITER_ENABLED = "rcfile_optimized_writer_enabled";
     private static final String RCFILE_OPTIMIZED_WRITER_VALIDATE = "rcfile_optimized_writer_validate";
     private static final String SORTED_WRITING_ENABLED = "sorted_writing_enabled";
@@ -119,6 +122,7 @@ public final class HiveSessionProperties
     private static final String DWRF_WRITER_STRIPE_CACHE_ENABLED = "dwrf_writer_stripe_cache_enabled";
     private static final String DWRF_WRITER_STRIPE_CACHE_SIZE = "dwrf_writer_stripe_cache_size";
     public static final String USE_COLUMN_INDEX_FILTER = "use_column_index_filter";
+    public static final String PARQUET_BLOOM_FILTERS_ENABLED = "parquet_bloom_filters_enabled";
     public static final String SIZE_BASED_SPLIT_WEIGHTS_ENABLED = "size_based_split_weights_enabled";
     public static final String MINIMUM_ASSIGNED_SPLIT_WEIGHT = "minimum_assigned_split_weight";
     private static final String USE_RECORD_PAGE_SOURCE_FOR_CUSTOM_SPLIT = "use_record_page_source_for_custom_split";
@@ -226,6 +230,16 @@ public final class HiveSessionProperties
                         "PAGEFILE: Max stripe size",
                         hiveClientConfig.getPageFileStripeMaxSize(),
                         false),
+                booleanProperty(
+                        ORC_READ_AHEAD_ENABLED,
+                        "ORC: Read the next stripe in the background while the current stripe is decoded",
+                        hiveClientConfig.isOrcReadAheadEnabled(),
+                        false),
+                dataSizeSessionProperty(
+                        ORC_READ_AHEAD_MAX_SIZE,
+                        "ORC: Maximum size of the data read ahead for a stripe",
+                        hiveClientConfig.getOrcReadAheadMaxSize(),
+                        false),
                 stringProperty(
                         HIVE_STORAGE_FORMAT,
                         "Default storage format for new tables or partitions",
@@ -569,6 +583,11 @@ public final class HiveSessionProperties
                         "should use column index statistics filtering",
                         hiveClientConfig.getReadColumnIndexFilter(),
                         false),
+                booleanProperty(
+                        PARQUET_BLOOM_FILTERS_ENABLED,
+                        "Use parquet bloom filters to skip row groups",
+                        hiveClientConfig.isParquetBloomFiltersEnabled(),
+                        false),
                 booleanProperty(
                         SIZE_BASED_SPLIT_WEIGHTS_ENABLED,
                         "Enable estimating split weights based on size in bytes",
@@ -634,6 +653,11 @@ public final class HiveSessionProperties
                         "Experimental: Enable optimized SymlinkTextInputFormat reader",
                         hiveClientConfig.isSymlinkOptimizedReaderEnabled(),
                         false),
+                booleanProperty(
+                        TABLE_DATA_VERSION_ENABLED,
+                        "Report a data version derived from the metastore parameters of the scanned partitions",
+                        hiveClientConfig.isTableDataVersionEnabled(),
+                        false),
                 new PropertyMetadata<>(
                         QUICK_STATS_INLINE_BUILD_TIMEOUT,
                         "Duration that the first query that initiated a quick stats call should wait before failing and returning EMPTY stats. " +
@@ -775,6 +799,16 @@ public final class HiveSessionProperties
         return session.getProperty(PAGEFILE_WRITER_MAX_STRIPE_SIZE, DataSize.class);
     }
 
+    public static boolean isOrcReadAheadEnabled(ConnectorSession session)
+    {
+        return session.getProperty(ORC_READ_AHEAD_ENABLED, Boolean.class);
+    }
+
+    public static DataSize getOrcReadAheadMaxSize(ConnectorSession session)
+    {
+        return session.getProperty(ORC_READ_AHEAD_MAX_SIZE, DataSize.class);
+    }
+
     public static HiveStorageFormat getHiveStorageFormat(ConnectorSession session)
     {
         return HiveStorageFormat.valueOf(session.getProperty(HIVE_STORAGE_FORMAT, String.class).toUpperCase(ENGLISH));
@@ -1096,6 +1130,11 @@ public final class HiveSessionProperties
         return session.getProperty(USE_COLUMN_INDEX_FILTER, Boolean.class);
     }
 
+    public static boolean isParquetBloomFiltersEnabled(ConnectorSession session)
+    {
+        return session.getProperty(PARQUET_BLOOM_FILTERS_ENABLED, Boolean.class);
+    }
+
     public static boolean isSizeBasedSplitWeightsEnabled(ConnectorSession session)
     {
         return session.getProperty(SIZE_BASED_SPLIT_WEIGHTS_ENABLED, Boolean.class);
@@ -1186,4 +1225,9 @@ public final class HiveSessionProperties
     {
         return session.getProperty(SYMLINK_OPTIMIZED_READER_ENABLED, Boolean.class);
     }
+
+    public static boolean isTableDataVersionEnabled(ConnectorSession session)
+    {
+        return session.getProperty(TABLE_DATA_VERSION_ENABLED, Boolean.class);
+    }
 }
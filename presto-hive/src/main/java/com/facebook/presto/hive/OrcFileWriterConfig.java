@@ -20,6 +20,7 @@ import com.facebook.presto.orc.DefaultOrcWriterFlushPolicy;
 import com.facebook.presto.orc.OrcWriterOptions;
 import com.facebook.presto.orc.metadata.DwrfStripeCacheMode;
 import com.facebook.presto.orc.writer.StreamLayoutFactory;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 import java.util.OptionalInt;
@@ -55,6 +56,7 @@ public class OrcFileWriterConfig
     private boolean isStringDictionarySortingEnabled = OrcWriterOptions.DEFAULT_STRING_DICTIONARY_SORTING_ENABLED;
     private boolean isFlatMapWriterEnabled = DEFAULT_FLAT_MAP_WRITER_ENABLED;
     private boolean addHostnameToFileMetadataEnabled = true;
+    private int encodingThreads;
 
     public OrcWriterOptions.Builder toOrcWriterOptionsBuilder()
     {
@@ -296,6 +298,20 @@ public class OrcFileWriterConfig
         return this;
     }
 
+    @Min(0)
+    public int getEncodingThreads()
+    {
+        return encodingThreads;
+    }
+
+    @Config("hive.orc.writer.encoding-threads")
+    @ConfigDescription("Number of threads shared by all ORC/DWRF writers to encode and compress column streams in parallel. 0 encodes on the writing thread.")
+    public OrcFileWriterConfig setEncodingThreads(int encodingThreads)
+    {
+        this.encodingThreads = encodingThreads;
+        return this;
+    }
+
     private static StreamLayoutFactory getStreamLayoutFactory(StreamLayoutType type)
     {
         switch (type) {
@@ -40,6 +40,7 @@ import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import io.airlift.slice.Slice;
+import jakarta.annotation.PreDestroy;
 import jakarta.inject.Inject;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -59,9 +60,11 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 import java.util.stream.IntStream;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcMaxBufferSize;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcMaxMergeDistance;
 import static com.facebook.presto.hive.HiveCommonSessionProperties.getOrcOptimizedWriterValidateMode;
@@ -97,6 +100,7 @@ import static java.lang.Boolean.parseBoolean;
 import static java.lang.String.format;
 import static java.util.Locale.ENGLISH;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static java.util.stream.Collectors.toList;
 import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMNS;
 import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMN_TYPES;
@@ -144,6 +148,8 @@ public class OrcFileWriterFactory
     private final OrcWriterStats stats = new OrcWriterStats();
     private final OrcFileWriterConfig orcFileWriterConfig;
     private final DwrfEncryptionProvider dwrfEncryptionProvider;
+    // shared by all writers, so that the encoding threads are bounded per node rather than per writer
+    private final Optional<ExecutorService> encodingExecutor;
 
     @Inject
     public OrcFileWriterFactory(
@@ -185,6 +191,18 @@ public class OrcFileWriterFactory
         this.readStats = requireNonNull(readStats, "stats is null");
         this.orcFileWriterConfig = requireNonNull(orcFileWriterConfig, "orcFileWriterConfig is null");
         this.dwrfEncryptionProvider = requireNonNull(dwrfEncryptionProvider, "DwrfEncryptionProvider is null").toDwrfEncryptionProvider();
+        if (orcFileWriterConfig.getEncodingThreads() > 0) {
+            this.encodingExecutor = Optional.of(newFixedThreadPool(orcFileWriterConfig.getEncodingThreads(), daemonThreadsNamed("hive-orc-writer-%s")));
+        }
+        else {
+            this.encodingExecutor = Optional.empty();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown()
+    {
+        encodingExecutor.ifPresent(ExecutorService::shutdownNow);
     }
 
     @Managed
@@ -303,7 +321,7 @@ public class OrcFileWriterFactory
         int flatMapKeyLimit = getFlatMapKeyLimit(schema);
         Set<Integer> flattenedColumns = getFlattenedColumns(schema, session);
 
-        return orcFileWriterConfig
+        OrcWriterOptions.Builder builder = orcFileWriterConfig
                 .toOrcWriterOptionsBuilder()
                 .withFlushPolicy(DefaultOrcWriterFlushPolicy.builder()
                         .withStripeMinSize(getOrcOptimizedWriterMinStripeSize(session))
@@ -321,8 +339,9 @@ public class OrcFileWriterFactory
                 .withFlattenedColumns(flattenedColumns)
                 .withMaxFlattenedMapKeyCount(flatMapKeyLimit)
                 .withMapStatisticsEnabled(mapStatisticsEnabled)
-                .withCompressionLevel(getCompressionLevel(session))
-                .build();
+                .withCompressionLevel(getCompressionLevel(session));
+        encodingExecutor.ifPresent(builder::withEncodingExecutor);
+        return builder.build();
     }
 
     private Optional<DwrfWriterEncryption> createDwrfEncryption(Optional<EncryptionInformation> encryptionInformation, List<String> fileColumnNames, List<Type> types)
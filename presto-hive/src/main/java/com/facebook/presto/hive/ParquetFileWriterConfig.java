@@ -14,8 +14,11 @@
 package com.facebook.presto.hive;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.parquet.writer.ParquetWriterOptions;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
 import org.apache.parquet.hadoop.ParquetWriter;
 
 import static com.facebook.airlift.units.DataSize.Unit.BYTE;
@@ -28,6 +31,8 @@ public class ParquetFileWriterConfig
     private DataSize blockSize = new DataSize(ParquetWriter.DEFAULT_BLOCK_SIZE, BYTE);
     private DataSize pageSize = new DataSize(ParquetWriter.DEFAULT_PAGE_SIZE, BYTE);
     private WriterVersion writerVersion = ParquetWriterOptions.DEFAULT_WRITER_VERSION;
+    private double defaultBloomFilterFpp = ParquetWriterOptions.DEFAULT_BLOOM_FILTER_FPP;
+    private DataSize maxBloomFilterSize = ParquetWriterOptions.DEFAULT_MAX_BLOOM_FILTER_SIZE;
 
     public DataSize getBlockSize()
     {
@@ -76,4 +81,32 @@ public class ParquetFileWriterConfig
         this.parquetOptimizedWriterEnabled = parquetOptimizedWriterEnabled;
         return this;
     }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getDefaultBloomFilterFpp()
+    {
+        return defaultBloomFilterFpp;
+    }
+
+    @Config("hive.parquet.writer.default-bloom-filter-fpp")
+    @ConfigDescription("False positive probability of the bloom filters of tables that do not specify parquet_bloom_filter_fpp")
+    public ParquetFileWriterConfig setDefaultBloomFilterFpp(double defaultBloomFilterFpp)
+    {
+        this.defaultBloomFilterFpp = defaultBloomFilterFpp;
+        return this;
+    }
+
+    public DataSize getMaxBloomFilterSize()
+    {
+        return maxBloomFilterSize;
+    }
+
+    @Config("hive.parquet.writer.bloom-filter-max-size")
+    @ConfigDescription("Maximum size of the bloom filter of a column chunk")
+    public ParquetFileWriterConfig setMaxBloomFilterSize(DataSize maxBloomFilterSize)
+    {
+        this.maxBloomFilterSize = maxBloomFilterSize;
+        return this;
+    }
 }
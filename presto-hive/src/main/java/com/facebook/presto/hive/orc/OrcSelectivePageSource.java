@@ -29,7 +29,9 @@ import com.facebook.presto.spi.PrestoException;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
 
+import static com.facebook.airlift.concurrent.MoreFutures.toCompletableFuture;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_BAD_DATA;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_CURSOR_ERROR;
 import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
@@ -107,6 +109,12 @@ public class OrcSelectivePageSource
         return closed;
     }
 
+    @Override
+    public CompletableFuture<?> isBlocked()
+    {
+        return toCompletableFuture(recordReader.isBlocked());
+    }
+
     @Override
     public Page getNextPage()
     {
@@ -21,12 +21,14 @@ import com.facebook.presto.hive.HiveClientConfig;
 import com.facebook.presto.hive.HiveFileWriter;
 import com.facebook.presto.hive.HiveFileWriterFactory;
 import com.facebook.presto.hive.NodeVersion;
+import com.facebook.presto.hive.ParquetFileWriterConfig;
 import com.facebook.presto.hive.metastore.StorageFormat;
 import com.facebook.presto.parquet.writer.ParquetSchemaConverter;
 import com.facebook.presto.parquet.writer.ParquetWriterOptions;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.PrestoException;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -42,12 +44,16 @@ import java.util.Optional;
 import java.util.Properties;
 import java.util.concurrent.Callable;
 
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_UNSUPPORTED_FORMAT;
 import static com.facebook.presto.hive.HiveErrorCode.HIVE_WRITER_OPEN_ERROR;
+import static com.facebook.presto.hive.HiveMetadata.PARQUET_BLOOM_FILTER_COLUMNS_KEY;
+import static com.facebook.presto.hive.HiveMetadata.PARQUET_BLOOM_FILTER_FPP_KEY;
 import static com.facebook.presto.hive.HiveSessionProperties.getParquetWriterBlockSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getParquetWriterPageSize;
 import static com.facebook.presto.hive.HiveSessionProperties.getParquetWriterVersion;
 import static com.facebook.presto.hive.HiveSessionProperties.isParquetOptimizedWriterEnabled;
 import static com.facebook.presto.hive.HiveType.toHiveTypes;
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static org.apache.hadoop.hive.metastore.api.hive_metastoreConstants.META_TABLE_COLUMNS;
@@ -60,19 +66,22 @@ public class ParquetFileWriterFactory
     private final TypeManager typeManager;
     private final DateTimeZone writerTimezone;
     private final NodeVersion nodeVersion;
+    private final ParquetFileWriterConfig parquetFileWriterConfig;
 
     @Inject
     public ParquetFileWriterFactory(
             HdfsEnvironment hdfsEnvironment,
             TypeManager typeManager,
             NodeVersion nodeVersion,
-            HiveClientConfig hiveConfig)
+            HiveClientConfig hiveConfig,
+            ParquetFileWriterConfig parquetFileWriterConfig)
     {
         this(
                 hdfsEnvironment,
                 typeManager,
                 nodeVersion,
-                requireNonNull(hiveConfig, "hiveConfig is null").getDateTimeZone());
+                requireNonNull(hiveConfig, "hiveConfig is null").getDateTimeZone(),
+                parquetFileWriterConfig);
     }
 
     public ParquetFileWriterFactory(
@@ -80,11 +89,22 @@ public class ParquetFileWriterFactory
             TypeManager typeManager,
             NodeVersion nodeVersion,
             DateTimeZone writerTimezone)
+    {
+        this(hdfsEnvironment, typeManager, nodeVersion, writerTimezone, new ParquetFileWriterConfig());
+    }
+
+    public ParquetFileWriterFactory(
+            HdfsEnvironment hdfsEnvironment,
+            TypeManager typeManager,
+            NodeVersion nodeVersion,
+            DateTimeZone writerTimezone,
+            ParquetFileWriterConfig parquetFileWriterConfig)
     {
         this.hdfsEnvironment = requireNonNull(hdfsEnvironment, "hdfsEnvironment is null");
         this.typeManager = requireNonNull(typeManager, "typeManager is null");
         this.writerTimezone = requireNonNull(writerTimezone, "writerTimezone is null");
         this.nodeVersion = requireNonNull(nodeVersion, "nodeVersion is null");
+        this.parquetFileWriterConfig = requireNonNull(parquetFileWriterConfig, "parquetFileWriterConfig is null");
     }
 
     @Override
@@ -109,6 +129,9 @@ public class ParquetFileWriterFactory
                 .setMaxPageSize(getParquetWriterPageSize(session))
                 .setMaxBlockSize(getParquetWriterBlockSize(session))
                 .setWriterVersion(getParquetWriterVersion(session))
+                .setBloomFilterColumns(ImmutableSet.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().split(schema.getProperty(PARQUET_BLOOM_FILTER_COLUMNS_KEY, ""))))
+                .setBloomFilterFpp(getBloomFilterFpp(schema))
+                .setMaxBloomFilterSize(parquetFileWriterConfig.getMaxBloomFilterSize())
                 .build();
 
         CompressionCodecName compressionCodecName = getCompression(conf);
@@ -152,6 +175,20 @@ public class ParquetFileWriterFactory
         }
     }
 
+    private double getBloomFilterFpp(Properties schema)
+    {
+        String fpp = schema.getProperty(PARQUET_BLOOM_FILTER_FPP_KEY);
+        if (fpp == null) {
+            return parquetFileWriterConfig.getDefaultBloomFilterFpp();
+        }
+        try {
+            return Double.parseDouble(fpp);
+        }
+        catch (NumberFormatException e) {
+            throw new PrestoException(HIVE_UNSUPPORTED_FORMAT, format("Invalid Parquet bloom filter false positive probability: %s", fpp));
+        }
+    }
+
     private static CompressionCodecName getCompression(JobConf configuration)
     {
         String compressionName = configuration.get(ParquetOutputFormat.COMPRESSION);
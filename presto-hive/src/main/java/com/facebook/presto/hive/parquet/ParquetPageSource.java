@@ -56,6 +56,9 @@ public class ParquetPageSource
     private final OptionalInt rowPositionColumnIndex;
 
     private int batchId;
+    // the blocks of the page last returned by getNextPage(), and the loaders of its lazy blocks
+    private Block[] batchBlocks;
+    private ParquetBlockLoader[] batchBlockLoaders;
     private long completedPositions;
     private boolean closed;
 
@@ -148,6 +151,7 @@ public class ParquetPageSource
             completedPositions += batchSize;
 
             Block[] blocks = new Block[fields.size()];
+            ParquetBlockLoader[] blockLoaders = new ParquetBlockLoader[fields.size()];
             for (int fieldId = 0; fieldId < blocks.length; fieldId++) {
                 if (isIndexColumn(fieldId)) {
                     blocks[fieldId] = getRowIndexColumn(parquetReader.lastBatchStartRow(), batchSize);
@@ -155,13 +159,16 @@ public class ParquetPageSource
                 else {
                     Optional<Field> field = fields.get(fieldId);
                     if (field.isPresent()) {
-                        blocks[fieldId] = new LazyBlock(batchSize, new ParquetBlockLoader(field.get()));
+                        blockLoaders[fieldId] = new ParquetBlockLoader(field.get());
+                        blocks[fieldId] = new LazyBlock(batchSize, blockLoaders[fieldId]);
                     }
                     else {
                         blocks[fieldId] = RunLengthEncodedBlock.create(types.get(fieldId), null, batchSize);
                     }
                 }
             }
+            batchBlocks = blocks;
+            batchBlockLoaders = blockLoaders;
             return new Page(batchSize, blocks);
         }
         catch (PrestoException e) {
@@ -174,6 +181,20 @@ public class ParquetPageSource
         }
     }
 
+    /**
+     * Returns the values at the given positions, which are in ascending order, of a column of the page
+     * last returned by {@link #getNextPage()}. If the block of the column is not loaded yet, the values
+     * at the other positions are not decoded, and the block cannot be loaded afterwards.
+     */
+    Block getPositions(int channel, int[] positions, int positionCount)
+    {
+        ParquetBlockLoader blockLoader = batchBlockLoaders[channel];
+        if (blockLoader != null && !blockLoader.loaded) {
+            return blockLoader.loadPositions(positions, positionCount);
+        }
+        return batchBlocks[channel].getPositions(positions, 0, positionCount);
+    }
+
     private void closeWithSuppression(Throwable throwable)
     {
         requireNonNull(throwable, "throwable is null");
@@ -223,11 +244,22 @@ public class ParquetPageSource
                 return;
             }
 
+            lazyBlock.setBlock(readBlock(null, 0));
+        }
+
+        public Block loadPositions(int[] positions, int positionCount)
+        {
+            checkState(!loaded, "block is already loaded");
+            return readBlock(positions, positionCount);
+        }
+
+        private Block readBlock(int[] positions, int positionCount)
+        {
             checkState(batchId == expectedBatchId);
 
+            Block block;
             try {
-                Block block = parquetReader.readBlock(field);
-                lazyBlock.setBlock(block);
+                block = positions == null ? parquetReader.readBlock(field) : parquetReader.readBlock(field, positions, positionCount);
             }
             catch (ParquetCorruptionException e) {
                 throw new PrestoException(HIVE_BAD_DATA, e);
@@ -236,6 +268,7 @@ public class ParquetPageSource
                 throw new PrestoException(HIVE_CURSOR_ERROR, e);
             }
             loaded = true;
+            return block;
         }
     }
 
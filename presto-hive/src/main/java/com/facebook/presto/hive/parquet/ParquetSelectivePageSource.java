@@ -0,0 +1,319 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LazyBlock;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.predicate.FilterFunction;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.ConnectorPageSource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static com.facebook.presto.hive.FilteringPageSource.filterBlock;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toCollection;
+
+/**
+ * Evaluates pushed down filters on top of a {@link ParquetPageSource}. Columns of the underlying
+ * page source are loaded lazily, so the filter columns are decoded one at a time, in the order
+ * of the filters. Once a filter has dropped some rows of a batch, the columns of the following
+ * filters, and the columns which are only projected, are read at the remaining rows only: the
+ * Parquet reader skips the values of the other rows rather than decoding them. Projected columns
+ * are not read at all unless the output block is loaded.
+ * <p>
+ * The range filters are applied first, followed by the filter functions. If adaptive filter
+ * reordering is enabled, both are ordered by the time spent per dropped row, so that cheap and
+ * selective filters run first and the columns of the other filters are decoded for fewer batches.
+ */
+public class ParquetSelectivePageSource
+        implements ConnectorPageSource
+{
+    private final ParquetPageSource delegate;
+    // the source of each channel, either the channel of the delegate or a constant value
+    private final int[] delegateChannels;
+    private final Type[] types;
+    private final Object[] constantValues;
+    private final List<FilterWithStats<TupleDomainFilter>> domainFilters;
+    private final List<FilterWithStats<FilterFunction>> filterFunctions;
+    private final int[] outputChannels;
+    private final boolean reorderFilters;
+
+    ParquetSelectivePageSource(
+            ParquetPageSource delegate,
+            int[] delegateChannels,
+            List<Type> types,
+            List<Object> constantValues,
+            List<DomainFilter> domainFilters,
+            List<FilterFunction> filterFunctions,
+            int[] outputChannels,
+            boolean reorderFilters)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.delegateChannels = requireNonNull(delegateChannels, "delegateChannels is null");
+        this.types = requireNonNull(types, "types is null").toArray(new Type[0]);
+        this.constantValues = requireNonNull(constantValues, "constantValues is null").toArray();
+        checkArgument(delegateChannels.length == this.types.length && this.constantValues.length == this.types.length, "delegateChannels, types and constantValues must have the same size");
+        this.domainFilters = requireNonNull(domainFilters, "domainFilters is null").stream()
+                .map(filter -> new FilterWithStats<>(filter.getFilter(), filter.getChannel()))
+                .collect(toCollection(ArrayList::new));
+        this.filterFunctions = requireNonNull(filterFunctions, "filterFunctions is null").stream()
+                .map(function -> new FilterWithStats<>(function, -1))
+                .collect(toCollection(ArrayList::new));
+        this.outputChannels = requireNonNull(outputChannels, "outputChannels is null");
+        this.reorderFilters = reorderFilters;
+    }
+
+    @Override
+    public Page getNextPage()
+    {
+        Page page = delegate.getNextPage();
+        if (page == null || page.getPositionCount() == 0) {
+            return page;
+        }
+
+        int batchSize = page.getPositionCount();
+        // the blocks of the channels which have been read, at the selected positions
+        Block[] blocks = new Block[types.length];
+        int[] positions = indexes(batchSize);
+        int positionCount = batchSize;
+
+        if (reorderFilters) {
+            sortBySelectivity(domainFilters);
+            sortBySelectivity(filterFunctions);
+        }
+
+        for (FilterWithStats<TupleDomainFilter> domainFilter : domainFilters) {
+            int channel = domainFilter.getChannel();
+            Block block = getBlock(page, blocks, channel, positions, positionCount);
+            int[] selectedPositions = indexes(positionCount);
+
+            long start = System.nanoTime();
+            int selectedPositionCount = filterBlock(block, types[channel], domainFilter.getFilter(), selectedPositions, positionCount);
+            domainFilter.update(positionCount, selectedPositionCount, System.nanoTime() - start);
+            if (selectedPositionCount == 0) {
+                return new Page(0);
+            }
+            positionCount = select(blocks, positions, positionCount, selectedPositions, selectedPositionCount);
+        }
+
+        if (!filterFunctions.isEmpty()) {
+            RuntimeException[] errors = new RuntimeException[positionCount];
+            for (FilterWithStats<FilterFunction> filterFunction : filterFunctions) {
+                int[] inputChannels = filterFunction.getFilter().getInputChannels();
+                Block[] inputBlocks = new Block[inputChannels.length];
+                for (int i = 0; i < inputChannels.length; i++) {
+                    inputBlocks[i] = getBlock(page, blocks, inputChannels[i], positions, positionCount);
+                }
+                int[] selectedPositions = indexes(positionCount);
+
+                long start = System.nanoTime();
+                int selectedPositionCount = filterFunction.getFilter().filter(new Page(positionCount, inputBlocks), selectedPositions, positionCount, errors);
+                filterFunction.update(positionCount, selectedPositionCount, System.nanoTime() - start);
+                if (selectedPositionCount == 0) {
+                    return new Page(0);
+                }
+                positionCount = select(blocks, positions, positionCount, selectedPositions, selectedPositionCount);
+            }
+
+            for (int i = 0; i < positionCount; i++) {
+                if (errors[i] != null) {
+                    throw errors[i];
+                }
+            }
+        }
+
+        Block[] outputBlocks = new Block[outputChannels.length];
+        for (int i = 0; i < outputChannels.length; i++) {
+            int channel = outputChannels[i];
+            if (blocks[channel] == null && delegateChannels[channel] >= 0 && positionCount < batchSize) {
+                // columns that are only projected stay lazy, and are decoded at the selected positions only if needed
+                int delegateChannel = delegateChannels[channel];
+                int[] selectedPositions = positions;
+                int selectedPositionCount = positionCount;
+                blocks[channel] = new LazyBlock(positionCount, lazyBlock -> lazyBlock.setBlock(delegate.getPositions(delegateChannel, selectedPositions, selectedPositionCount)));
+            }
+            outputBlocks[i] = getBlock(page, blocks, channel, positions, positionCount);
+        }
+        return new Page(positionCount, outputBlocks);
+    }
+
+    /**
+     * Returns the block of the channel at the selected positions. The columns of the delegate which are
+     * read after some positions have been filtered out are only decoded at the selected positions.
+     */
+    private Block getBlock(Page page, Block[] blocks, int channel, int[] positions, int positionCount)
+    {
+        if (blocks[channel] == null) {
+            int delegateChannel = delegateChannels[channel];
+            if (delegateChannel < 0) {
+                blocks[channel] = RunLengthEncodedBlock.create(types[channel], constantValues[channel], positionCount);
+            }
+            else if (positionCount == page.getPositionCount()) {
+                blocks[channel] = page.getBlock(delegateChannel);
+            }
+            else {
+                blocks[channel] = delegate.getPositions(delegateChannel, positions, positionCount);
+            }
+        }
+        return blocks[channel];
+    }
+
+    /**
+     * Retains the selected positions, given as indexes into the current positions, and the values of the blocks which have been read at these positions.
+     */
+    private static int select(Block[] blocks, int[] positions, int positionCount, int[] selectedPositions, int selectedPositionCount)
+    {
+        if (selectedPositionCount == positionCount) {
+            return positionCount;
+        }
+
+        // blocks may be views which reference the positions, so they are updated before the positions
+        for (int channel = 0; channel < blocks.length; channel++) {
+            if (blocks[channel] != null) {
+                blocks[channel] = blocks[channel].getPositions(selectedPositions, 0, selectedPositionCount);
+            }
+        }
+        for (int i = 0; i < selectedPositionCount; i++) {
+            positions[i] = positions[selectedPositions[i]];
+        }
+        return selectedPositionCount;
+    }
+
+    private static int[] indexes(int count)
+    {
+        int[] indexes = new int[count];
+        for (int i = 0; i < count; i++) {
+            indexes[i] = i;
+        }
+        return indexes;
+    }
+
+    private static void sortBySelectivity(List<? extends FilterWithStats<?>> filters)
+    {
+        if (filters.size() > 1) {
+            filters.sort(Comparator.comparingDouble(FilterWithStats::getElapsedNanosPerDroppedPosition));
+        }
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return delegate.getCompletedBytes();
+    }
+
+    @Override
+    public long getCompletedPositions()
+    {
+        return delegate.getCompletedPositions();
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        return delegate.getReadTimeNanos();
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return delegate.isFinished();
+    }
+
+    @Override
+    public long getSystemMemoryUsage()
+    {
+        return delegate.getSystemMemoryUsage();
+    }
+
+    @Override
+    public RuntimeStats getRuntimeStats()
+    {
+        return delegate.getRuntimeStats();
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        delegate.close();
+    }
+
+    static final class DomainFilter
+    {
+        private final int channel;
+        private final TupleDomainFilter filter;
+
+        DomainFilter(int channel, TupleDomainFilter filter)
+        {
+            this.channel = channel;
+            this.filter = requireNonNull(filter, "filter is null");
+        }
+
+        public int getChannel()
+        {
+            return channel;
+        }
+
+        public TupleDomainFilter getFilter()
+        {
+            return filter;
+        }
+    }
+
+    private static final class FilterWithStats<T>
+    {
+        private final T filter;
+        private final int channel;
+        private long inputPositions;
+        private long outputPositions;
+        private long elapsedNanos;
+
+        private FilterWithStats(T filter, int channel)
+        {
+            this.filter = requireNonNull(filter, "filter is null");
+            this.channel = channel;
+        }
+
+        public T getFilter()
+        {
+            return filter;
+        }
+
+        public int getChannel()
+        {
+            return channel;
+        }
+
+        public void update(int inputPositions, int outputPositions, long elapsedNanos)
+        {
+            this.inputPositions += inputPositions;
+            this.outputPositions += outputPositions;
+            this.elapsedNanos += elapsedNanos;
+        }
+
+        public double getElapsedNanosPerDroppedPosition()
+        {
+            return (double) elapsedNanos / (1 + inputPositions - outputPositions);
+        }
+    }
+}
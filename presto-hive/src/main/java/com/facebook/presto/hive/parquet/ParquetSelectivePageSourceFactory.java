@@ -14,31 +14,63 @@
 package com.facebook.presto.hive.parquet;
 
 import com.facebook.presto.common.Subfield;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.FilterFunction;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.TypeManager;
+import com.facebook.presto.expressions.DefaultRowExpressionTraversalVisitor;
 import com.facebook.presto.hive.BucketAdaptation;
 import com.facebook.presto.hive.EncryptionInformation;
+import com.facebook.presto.hive.FileFormatDataSourceStats;
+import com.facebook.presto.hive.HdfsEnvironment;
 import com.facebook.presto.hive.HiveCoercer;
 import com.facebook.presto.hive.HiveColumnHandle;
+import com.facebook.presto.hive.HiveEmptySplitPageSource;
 import com.facebook.presto.hive.HiveFileContext;
 import com.facebook.presto.hive.HiveFileSplit;
 import com.facebook.presto.hive.HiveSelectivePageSourceFactory;
 import com.facebook.presto.hive.metastore.Storage;
+import com.facebook.presto.hive.parquet.ParquetSelectivePageSource.DomainFilter;
+import com.facebook.presto.parquet.cache.ParquetMetadataSource;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
-import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.SchemaTableName;
+import com.facebook.presto.spi.function.StandardFunctionResolution;
+import com.facebook.presto.spi.relation.InputReferenceExpression;
 import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.RowExpressionService;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import jakarta.inject.Inject;
 import org.apache.hadoop.conf.Configuration;
 import org.joda.time.DateTimeZone;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
-import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
+import static com.facebook.presto.common.predicate.TupleDomainFilterUtils.toFilter;
+import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
+import static com.facebook.presto.expressions.LogicalRowExpressions.TRUE_CONSTANT;
+import static com.facebook.presto.expressions.LogicalRowExpressions.and;
+import static com.facebook.presto.expressions.LogicalRowExpressions.binaryExpression;
+import static com.facebook.presto.expressions.LogicalRowExpressions.extractConjuncts;
+import static com.facebook.presto.expressions.RowExpressionNodeInliner.replaceExpression;
+import static com.facebook.presto.hive.HiveSessionProperties.isAdaptiveFilterReorderingEnabled;
+import static com.facebook.presto.hive.HiveUtil.typedPartitionKey;
+import static com.facebook.presto.hive.parquet.ParquetPageSourceFactory.createParquetPageSource;
+import static com.facebook.presto.spi.relation.SpecialFormExpression.Form.AND;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.util.Objects.requireNonNull;
 
 public class ParquetSelectivePageSourceFactory
         implements HiveSelectivePageSourceFactory
@@ -48,9 +80,28 @@ public class ParquetSelectivePageSourceFactory
             .add("parquet.hive.serde.ParquetHiveSerDe")
             .build();
 
+    private final TypeManager typeManager;
+    private final StandardFunctionResolution functionResolution;
+    private final RowExpressionService rowExpressionService;
+    private final HdfsEnvironment hdfsEnvironment;
+    private final FileFormatDataSourceStats stats;
+    private final ParquetMetadataSource parquetMetadataSource;
+
     @Inject
-    public ParquetSelectivePageSourceFactory()
+    public ParquetSelectivePageSourceFactory(
+            TypeManager typeManager,
+            StandardFunctionResolution functionResolution,
+            RowExpressionService rowExpressionService,
+            HdfsEnvironment hdfsEnvironment,
+            FileFormatDataSourceStats stats,
+            ParquetMetadataSource parquetMetadataSource)
     {
+        this.typeManager = requireNonNull(typeManager, "typeManager is null");
+        this.functionResolution = requireNonNull(functionResolution, "functionResolution is null");
+        this.rowExpressionService = requireNonNull(rowExpressionService, "rowExpressionService is null");
+        this.hdfsEnvironment = requireNonNull(hdfsEnvironment, "hdfsEnvironment is null");
+        this.stats = requireNonNull(stats, "stats is null");
+        this.parquetMetadataSource = requireNonNull(parquetMetadataSource, "parquetMetadataSource is null");
     }
 
     @Override
@@ -59,12 +110,14 @@ public class ParquetSelectivePageSourceFactory
             ConnectorSession session,
             HiveFileSplit fileSplit,
             Storage storage,
+            SchemaTableName tableName,
             List<HiveColumnHandle> columns,
             Map<Integer, String> prefilledValues,
             Map<Integer, HiveCoercer> coercers,
             Optional<BucketAdaptation> bucketAdaptation,
             List<Integer> outputColumns,
             TupleDomain<Subfield> domainPredicate,
+            Map<String, TupleDomainFilter> dynamicFilterColumnFilters,
             RowExpression remainingPredicate,
             DateTimeZone hiveStorageTimeZone,
             HiveFileContext hiveFileContext,
@@ -76,6 +129,142 @@ public class ParquetSelectivePageSourceFactory
             return Optional.empty();
         }
         checkState(!appendRowNumberEnabled, "append row number is not supported for Parquet Reader");
-        throw new PrestoException(NOT_SUPPORTED, "Parquet reader doesn't support filter pushdown yet");
+
+        // Schema evolution, bucket conversion, row IDs and filters on nested subfields are left to the
+        // regular Parquet page source, which applies the same filters on top of the decoded pages
+        if (!coercers.isEmpty() ||
+                bucketAdaptation.isPresent() ||
+                columns.stream().anyMatch(HiveColumnHandle::isRowIdColumnHandle) ||
+                !domainPredicate.getDomains().map(domains -> domains.keySet().stream().allMatch(subfield -> subfield.getPath().isEmpty())).orElse(true)) {
+            return Optional.empty();
+        }
+
+        if (domainPredicate.isNone()) {
+            return Optional.of(new HiveEmptySplitPageSource());
+        }
+
+        Map<String, Integer> channels = new LinkedHashMap<>();
+        Map<Integer, Integer> channelsByHiveColumnIndex = new HashMap<>();
+        List<HiveColumnHandle> physicalColumns = new ArrayList<>();
+        int[] delegateChannels = new int[columns.size()];
+        List<Type> types = new ArrayList<>();
+        List<Object> constantValues = new ArrayList<>();
+        for (int channel = 0; channel < columns.size(); channel++) {
+            HiveColumnHandle column = columns.get(channel);
+            Type type = typeManager.getType(column.getTypeSignature());
+            channels.put(column.getName(), channel);
+            channelsByHiveColumnIndex.put(column.getHiveColumnIndex(), channel);
+            types.add(type);
+            if (prefilledValues.containsKey(column.getHiveColumnIndex())) {
+                delegateChannels[channel] = -1;
+                constantValues.add(typedPartitionKey(session, prefilledValues.get(column.getHiveColumnIndex()), type, column.getName(), hiveStorageTimeZone));
+            }
+            else {
+                delegateChannels[channel] = physicalColumns.size();
+                physicalColumns.add(column);
+                constantValues.add(null);
+            }
+        }
+
+        Map<String, HiveColumnHandle> physicalColumnsByName = physicalColumns.stream()
+                .collect(toImmutableMap(HiveColumnHandle::getName, column -> column));
+        TupleDomain<HiveColumnHandle> effectivePredicate = domainPredicate.transform(subfield -> physicalColumnsByName.get(subfield.getRootName()));
+
+        ImmutableList.Builder<DomainFilter> domainFilters = ImmutableList.builder();
+        for (Map.Entry<Subfield, Domain> entry : domainPredicate.getDomains().get().entrySet()) {
+            domainFilters.add(new DomainFilter(channels.get(entry.getKey().getRootName()), toFilter(entry.getValue())));
+        }
+        // the Bloom filters of the dynamic filters start after the domain filters, which are cheaper to evaluate
+        for (Map.Entry<String, TupleDomainFilter> entry : dynamicFilterColumnFilters.entrySet()) {
+            Integer channel = channels.get(entry.getKey());
+            if (channel != null) {
+                domainFilters.add(new DomainFilter(channel, entry.getValue()));
+            }
+        }
+
+        Map<VariableReferenceExpression, InputReferenceExpression> variableToInput = channels.entrySet().stream()
+                .collect(toImmutableMap(
+                        entry -> new VariableReferenceExpression(Optional.empty(), entry.getKey(), types.get(entry.getValue())),
+                        entry -> new InputReferenceExpression(Optional.empty(), entry.getValue(), types.get(entry.getValue()))));
+        List<FilterFunction> filterFunctions = toFilterFunctions(replaceExpression(remainingPredicate, variableToInput), session);
+
+        ParquetPageSource parquetPageSource = createParquetPageSource(
+                hdfsEnvironment,
+                session,
+                configuration,
+                fileSplit,
+                physicalColumns,
+                tableName,
+                typeManager,
+                functionResolution,
+                effectivePredicate,
+                stats,
+                hiveFileContext,
+                parquetMetadataSource);
+
+        return Optional.of(new ParquetSelectivePageSource(
+                parquetPageSource,
+                delegateChannels,
+                types,
+                constantValues,
+                domainFilters.build(),
+                filterFunctions,
+                outputColumns.stream()
+                        .mapToInt(channelsByHiveColumnIndex::get)
+                        .toArray(),
+                isAdaptiveFilterReorderingEnabled(session)));
+    }
+
+    /**
+     * Split the filter into groups of conjuncts that depend on the same columns, so that
+     * the groups can be evaluated one after another and reordered by their selectivity.
+     */
+    private List<FilterFunction> toFilterFunctions(RowExpression filter, ConnectorSession session)
+    {
+        if (TRUE_CONSTANT.equals(filter)) {
+            return ImmutableList.of();
+        }
+
+        // dynamic filters are part of the domain predicate
+        filter = and(extractDynamicFilters(filter).getStaticConjuncts());
+        if (TRUE_CONSTANT.equals(filter)) {
+            return ImmutableList.of();
+        }
+
+        List<RowExpression> conjuncts = extractConjuncts(filter);
+        if (!isAdaptiveFilterReorderingEnabled(session) || conjuncts.size() == 1) {
+            return ImmutableList.of(toFilterFunction(filter, session));
+        }
+
+        // preserve the user-specified order of conjuncts as the initial order of the filters
+        Map<Set<Integer>, List<RowExpression>> inputsToConjuncts = new LinkedHashMap<>();
+        for (RowExpression conjunct : conjuncts) {
+            ImmutableSet.Builder<Integer> inputs = ImmutableSet.builder();
+            conjunct.accept(new InputReferenceBuilderVisitor(), inputs);
+            inputsToConjuncts.computeIfAbsent(inputs.build(), k -> new ArrayList<>()).add(conjunct);
+        }
+
+        return inputsToConjuncts.values().stream()
+                .map(expressions -> toFilterFunction(binaryExpression(AND, expressions), session))
+                .collect(toImmutableList());
+    }
+
+    private FilterFunction toFilterFunction(RowExpression filter, ConnectorSession session)
+    {
+        return new FilterFunction(
+                session.getSqlFunctionProperties(),
+                rowExpressionService.getDeterminismEvaluator().isDeterministic(filter),
+                rowExpressionService.getPredicateCompiler().compilePredicate(session.getSqlFunctionProperties(), session.getSessionFunctions(), filter).get());
+    }
+
+    private static class InputReferenceBuilderVisitor
+            extends DefaultRowExpressionTraversalVisitor<ImmutableSet.Builder<Integer>>
+    {
+        @Override
+        public Void visitInputReference(InputReferenceExpression input, ImmutableSet.Builder<Integer> builder)
+        {
+            builder.add(input.getField());
+            return null;
+        }
     }
 }
@@ -85,6 +85,9 @@ public class TestHiveClientConfig
                 .setTextMaxLineLength(new DataSize(100, Unit.MEGABYTE))
                 .setAssumeCanonicalPartitionKeys(false)
                 .setOrcDefaultBloomFilterFpp(0.05)
+                .setOrcReadAheadEnabled(false)
+                .setOrcReadAheadMaxSize(new DataSize(64, Unit.MEGABYTE))
+                .setMaxOrcReadAheadThreads(32)
                 .setRcfileOptimizedWriterEnabled(true)
                 .setRcfileWriterValidate(false)
                 .setHdfsAuthenticationType(HdfsAuthenticationType.NONE)
@@ -140,6 +143,7 @@ public class TestHiveClientConfig
                 .setMaterializedViewMissingPartitionsThreshold(100)
                 .setLooseMemoryAccountingEnabled(false)
                 .setReadColumnIndexFilter(false)
+                .setParquetBloomFiltersEnabled(false)
                 .setSizeBasedSplitWeightsEnabled(true)
                 .setDynamicSplitSizesEnabled(false)
                 .setMinimumAssignedSplitWeight(0.05)
@@ -167,7 +171,8 @@ public class TestHiveClientConfig
                 .setOptimizeParsingOfPartitionValues(false)
                 .setOptimizeParsingOfPartitionValuesThreshold(500)
                 .setLegacyTimestampBucketing(false)
-                .setSymlinkOptimizedReaderEnabled(true));
+                .setSymlinkOptimizedReaderEnabled(true)
+                .setTableDataVersionEnabled(false));
     }
 
     @Test
@@ -211,6 +216,9 @@ public class TestHiveClientConfig
                 .put("hive.assume-canonical-partition-keys", "true")
                 .put("hive.text.max-line-length", "13MB")
                 .put("hive.orc.default-bloom-filter-fpp", "0.96")
+                .put("hive.orc.read-ahead-enabled", "true")
+                .put("hive.orc.read-ahead-max-size", "128MB")
+                .put("hive.orc.max-read-ahead-threads", "8")
                 .put("hive.rcfile-optimized-writer.enabled", "false")
                 .put("hive.rcfile.writer.validate", "true")
                 .put("hive.hdfs.authentication.type", "KERBEROS")
@@ -267,6 +275,7 @@ public class TestHiveClientConfig
                 .put("hive.verbose-runtime-stats-enabled", "true")
                 .put("hive.materialized-view-missing-partitions-threshold", "50")
                 .put("hive.parquet-column-index-filter-enabled", "true")
+                .put("hive.parquet.bloom-filters.enabled", "true")
                 .put("hive.size-based-split-weights-enabled", "false")
                 .put("hive.dynamic-split-sizes-enabled", "true")
                 .put("hive.user-defined-type-encoding-enabled", "true")
@@ -295,6 +304,7 @@ public class TestHiveClientConfig
                 .put("hive.optimize-parsing-of-partition-values-threshold", "100")
                 .put("hive.legacy-timestamp-bucketing", "true")
                 .put("hive.experimental.symlink.optimized-reader.enabled", "false")
+                .put("hive.table-data-version-enabled", "true")
                 .build();
 
         HiveClientConfig expected = new HiveClientConfig()
@@ -334,6 +344,9 @@ public class TestHiveClientConfig
                 .setTextMaxLineLength(new DataSize(13, Unit.MEGABYTE))
                 .setAssumeCanonicalPartitionKeys(true)
                 .setOrcDefaultBloomFilterFpp(0.96)
+                .setOrcReadAheadEnabled(true)
+                .setOrcReadAheadMaxSize(new DataSize(128, Unit.MEGABYTE))
+                .setMaxOrcReadAheadThreads(8)
                 .setRcfileOptimizedWriterEnabled(false)
                 .setRcfileWriterValidate(true)
                 .setHdfsAuthenticationType(HdfsAuthenticationType.KERBEROS)
@@ -390,6 +403,7 @@ public class TestHiveClientConfig
                 .setMaterializedViewMissingPartitionsThreshold(50)
                 .setLooseMemoryAccountingEnabled(true)
                 .setReadColumnIndexFilter(true)
+                .setParquetBloomFiltersEnabled(true)
                 .setSizeBasedSplitWeightsEnabled(false)
                 .setDynamicSplitSizesEnabled(true)
                 .setMinimumAssignedSplitWeight(1.0)
@@ -417,7 +431,8 @@ public class TestHiveClientConfig
                 .setOptimizeParsingOfPartitionValues(true)
                 .setOptimizeParsingOfPartitionValuesThreshold(100)
                 .setLegacyTimestampBucketing(true)
-                .setSymlinkOptimizedReaderEnabled(false);
+                .setSymlinkOptimizedReaderEnabled(false)
+                .setTableDataVersionEnabled(true);
 
         ConfigAssertions.assertFullMapping(properties, expected);
     }
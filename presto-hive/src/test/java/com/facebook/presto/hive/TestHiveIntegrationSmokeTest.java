@@ -5868,7 +5868,7 @@ public class TestHiveIntegrationSmokeTest
     }
 
     @Test
-    public void testParquetSelectivePageSourceFails()
+    public void testParquetSelectivePageSource()
     {
         assertUpdate("CREATE TABLE test_parquet_filter_pushdoown (a BIGINT, b BOOLEAN) WITH (format = 'parquet')");
         assertUpdate(getSession(), "INSERT INTO test_parquet_filter_pushdoown VALUES (1, true)", 1);
@@ -5893,9 +5893,21 @@ public class TestHiveIntegrationSmokeTest
                 .setCatalogSessionProperty("hive", "pushdown_filter_enabled", "true")
                 .setCatalogSessionProperty("hive", "parquet_pushdown_filter_enabled", "true")
                 .build();
-        assertQueryFails(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown", "Parquet reader doesn't support filter pushdown yet");
-        assertQueryFails(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = true", "Parquet reader doesn't support filter pushdown yet");
-        assertQueryFails(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = false", "Parquet reader doesn't support filter pushdown yet");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown", "select 1");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = true", "select 1");
+        assertQueryReturnsEmptyResult(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = false");
+
+        assertUpdate("CREATE TABLE test_parquet_selective_reader WITH (format = 'parquet', partitioned_by = ARRAY['ds']) AS " +
+                "SELECT orderkey, custkey, orderstatus, totalprice, comment, '2020-01-0' || cast(orderkey % 3 + 1 AS varchar) ds FROM orders", "SELECT count(*) FROM orders");
+        assertQuery(parquetFilterPushdownSession, "SELECT orderkey, comment FROM test_parquet_selective_reader WHERE custkey < 100", "SELECT orderkey, comment FROM orders WHERE custkey < 100");
+        assertQuery(parquetFilterPushdownSession, "SELECT count(*) FROM test_parquet_selective_reader WHERE orderstatus = 'F' AND totalprice > 100000", "SELECT count(*) FROM orders WHERE orderstatus = 'F' AND totalprice > 100000");
+        assertQuery(parquetFilterPushdownSession, "SELECT orderkey, orderstatus, comment FROM test_parquet_selective_reader WHERE custkey < 500 AND totalprice > 100000",
+                "SELECT orderkey, orderstatus, comment FROM orders WHERE custkey < 500 AND totalprice > 100000");
+        assertQuery(parquetFilterPushdownSession, "SELECT orderkey, ds FROM test_parquet_selective_reader WHERE custkey % 7 = 0 AND orderkey % 5 = 1 AND comment LIKE '%special%'",
+                "SELECT orderkey, '2020-01-0' || cast(orderkey % 3 + 1 AS varchar) FROM orders WHERE custkey % 7 = 0 AND orderkey % 5 = 1 AND comment LIKE '%special%'");
+        assertQuery(parquetFilterPushdownSession, "SELECT orderkey FROM test_parquet_selective_reader WHERE ds = '2020-01-02' AND custkey > 1000", "SELECT orderkey FROM orders WHERE orderkey % 3 = 1 AND custkey > 1000");
+        assertQueryReturnsEmptyResult(parquetFilterPushdownSession, "SELECT orderkey FROM test_parquet_selective_reader WHERE totalprice < 0");
+        assertUpdate("DROP TABLE test_parquet_selective_reader");
     }
 
     @DataProvider(name = "testFormatAndCompressionCodecs")
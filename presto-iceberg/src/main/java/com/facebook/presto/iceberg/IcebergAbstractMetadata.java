@@ -449,6 +449,17 @@ public abstract class IcebergAbstractMetadata
         }
     }
 
+    @Override
+    public Optional<String> getTableDataVersion(ConnectorSession session, ConnectorTableHandle tableHandle, Optional<ConnectorTableLayoutHandle> layoutHandle)
+    {
+        IcebergTableName tableName = ((IcebergTableHandle) tableHandle).getIcebergTableName();
+        // the snapshot is pinned when the handle is resolved, so it identifies the data read by the query
+        if (tableName.getTableType() != DATA) {
+            return Optional.empty();
+        }
+        return tableName.getSnapshotId().map(String::valueOf);
+    }
+
     /**
      * This class implements the default implementation for getTableLayoutForConstraint which will be used in the case of a Java Worker
      */
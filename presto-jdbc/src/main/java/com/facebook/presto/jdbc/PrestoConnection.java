@@ -100,6 +100,7 @@ public class PrestoConnection
     private final WarningsManager warningsManager = new WarningsManager();
     private final List<QueryInterceptor> queryInterceptorInstances;
     private final boolean validateNextUriSource;
+    private final boolean binaryResults;
 
     PrestoConnection(PrestoDriverUri uri, QueryExecutor queryExecutor)
             throws SQLException
@@ -119,6 +120,7 @@ public class PrestoConnection
         this.connectionProperties = uri.getProperties();
         this.queryExecutor = requireNonNull(queryExecutor, "queryExecutor is null");
         this.validateNextUriSource = uri.validateNextUriSource();
+        this.binaryResults = uri.isBinaryResults();
         uri.getClientTags().ifPresent(tags -> clientInfo.put("ClientTags", tags));
 
         timeZoneId.set(uri.getTimeZoneId());
@@ -817,7 +819,8 @@ public class PrestoConnection
                 compressionDisabled,
                 ImmutableMap.of(),
                 customHeaders,
-                validateNextUriSource);
+                validateNextUriSource,
+                binaryResults);
 
         return queryExecutor.startQuery(session, sql);
     }
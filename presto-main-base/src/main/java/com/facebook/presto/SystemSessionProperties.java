@@ -147,6 +147,8 @@ public final class SystemSessionProperties
     public static final String PUSH_TABLE_WRITE_THROUGH_UNION = "push_table_write_through_union";
     public static final String EXECUTION_POLICY = "execution_policy";
     public static final String DICTIONARY_AGGREGATION = "dictionary_aggregation";
+    public static final String AGGREGATION_HASH_PRESIZING_ENABLED = "aggregation_hash_presizing_enabled";
+    public static final String PARTITIONED_AGGREGATION_HASH_ENABLED = "partitioned_aggregation_hash_enabled";
     public static final String PLAN_WITH_TABLE_NODE_PARTITIONING = "plan_with_table_node_partitioning";
     public static final String SPATIAL_JOIN = "spatial_join";
     public static final String SPATIAL_PARTITIONING_TABLE_NAME = "spatial_partitioning_table_name";
@@ -162,11 +164,14 @@ public final class SystemSessionProperties
     public static final String OPTIMIZE_METADATA_QUERIES_IGNORE_STATS = "optimize_metadata_queries_ignore_stats";
     public static final String OPTIMIZE_METADATA_QUERIES_CALL_THRESHOLD = "optimize_metadata_queries_call_threshold";
     public static final String FAST_INEQUALITY_JOINS = "fast_inequality_joins";
+    public static final String OFF_HEAP_JOIN_HASH_ENABLED = "off_heap_join_hash_enabled";
+    public static final String JOIN_BATCH_PROBE_ENABLED = "join_batch_probe_enabled";
     public static final String QUERY_PRIORITY = "query_priority";
     public static final String CONFIDENCE_BASED_BROADCAST_ENABLED = "confidence_based_broadcast_enabled";
     public static final String TREAT_LOW_CONFIDENCE_ZERO_ESTIMATION_AS_UNKNOWN_ENABLED = "treat_low_confidence_zero_estimation_unknown_enabled";
     public static final String SPILL_ENABLED = "spill_enabled";
     public static final String JOIN_SPILL_ENABLED = "join_spill_enabled";
+    public static final String DISTINCT_SPILL_ENABLED = "distinct_spill_enabled";
     public static final String QUERY_MAX_REVOCABLE_MEMORY_PER_NODE = "query_max_revocable_memory_per_node";
     public static final String OPTIMIZE_DISTINCT_AGGREGATIONS = "optimize_mixed_distinct_aggregations";
     public static final String LEGACY_ROW_FIELD_ORDINAL_ACCESS = "legacy_row_field_ordinal_access";
@@ -179,6 +184,8 @@ public final class SystemSessionProperties
     public static final String EXCHANGE_CHECKSUM = "exchange_checksum";
     public static final String LEGACY_TIMESTAMP = "legacy_timestamp";
     public static final String ENABLE_INTERMEDIATE_AGGREGATIONS = "enable_intermediate_aggregations";
+    public static final String ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES = "enable_intermediate_aggregations_for_large_states";
+    public static final String INTERMEDIATE_AGGREGATION_LARGE_STATE_SIZE = "intermediate_aggregation_large_state_size";
     public static final String PARALLELIZE_CHAINED_AGGREGATION = "parallelize_chained_aggregation";
     public static final String PUSH_AGGREGATION_THROUGH_JOIN = "push_aggregation_through_join";
     public static final String PUSH_SEMI_JOIN_THROUGH_UNION = "push_semi_join_through_union";
@@ -227,6 +234,7 @@ public final class SystemSessionProperties
     public static final String PUSHDOWN_SUBFIELDS_FROM_LAMBDA_ENABLED = "pushdown_subfields_from_lambda_enabled";
     public static final String INDEX_LOADER_TIMEOUT = "index_loader_timeout";
     public static final String OPTIMIZED_REPARTITIONING_ENABLED = "optimized_repartitioning";
+    public static final String OPTIMIZED_REPARTITIONING_COLUMNAR_ENCODING_ENABLED = "optimized_repartitioning_columnar_encoding";
     public static final String AGGREGATION_PARTITIONING_MERGING_STRATEGY = "aggregation_partitioning_merging_strategy";
     public static final String LOCAL_EXCHANGE_PARENT_PREFERENCE_STRATEGY = "local_exchange_parent_preference_strategy";
     public static final String LIST_BUILT_IN_FUNCTIONS_ONLY = "list_built_in_functions_only";
@@ -244,6 +252,7 @@ public final class SystemSessionProperties
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT = "dynamic_filtering_max_per_driver_row_count";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE = "dynamic_filtering_max_per_driver_size";
     public static final String DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER = "dynamic_filtering_range_row_limit_per_driver";
+    public static final String DYNAMIC_FILTERING_BLOOM_FILTER_SIZE_PER_DRIVER = "dynamic_filtering_bloom_filter_size_per_driver";
     public static final String DISTRIBUTED_DYNAMIC_FILTER_STRATEGY = "distributed_dynamic_filter_strategy";
     public static final String DISTRIBUTED_DYNAMIC_FILTER_MAX_WAIT_TIME = "distributed_dynamic_filter_max_wait_time";
     public static final String DISTRIBUTED_DYNAMIC_FILTER_MAX_WAIT_EXTENSIONS = "distributed_dynamic_filter_max_wait_extensions";
@@ -251,6 +260,7 @@ public final class SystemSessionProperties
     public static final String DISTRIBUTED_DYNAMIC_FILTER_CARDINALITY_RATIO_THRESHOLD = "distributed_dynamic_filter_cardinality_ratio_threshold";
     public static final String DISTRIBUTED_DYNAMIC_FILTER_ON_REPLICATED_JOINS = "distributed_dynamic_filter_on_replicated_joins";
     public static final String FRAGMENT_RESULT_CACHING_ENABLED = "fragment_result_caching_enabled";
+    public static final String QUERY_RESULT_CACHING_ENABLED = "query_result_caching_enabled";
     public static final String INLINE_SQL_FUNCTIONS = "inline_sql_functions";
     public static final String REMOTE_FUNCTIONS_ENABLED = "remote_functions_enabled";
     public static final String RPC_FUNCTION_OPTIMIZER_ENABLED = "rpc_function_optimizer_enabled";
@@ -267,6 +277,7 @@ public final class SystemSessionProperties
     public static final String MAX_UNACKNOWLEDGED_SPLITS_PER_TASK = "max_unacknowledged_splits_per_task";
     public static final String OPTIMIZE_JOINS_WITH_EMPTY_SOURCES = "optimize_joins_with_empty_sources";
     public static final String SPOOLING_OUTPUT_BUFFER_ENABLED = "spooling_output_buffer_enabled";
+    public static final String SPOOLED_QUERY_OUTPUT_ENABLED = "spooled_query_output_enabled";
     public static final String SPARK_ASSIGN_BUCKET_TO_PARTITION_FOR_PARTITIONED_TABLE_WRITE_ENABLED = "spark_assign_bucket_to_partition_for_partitioned_table_write_enabled";
     public static final String LOG_FORMATTED_QUERY_ENABLED = "log_formatted_query_enabled";
     public static final String LOG_INVOKED_FUNCTION_NAMES_ENABLED = "log_invoked_function_names_enabled";
@@ -772,6 +783,16 @@ public final class SystemSessionProperties
                         "Enable optimization for aggregations on dictionaries",
                         featuresConfig.isDictionaryAggregation(),
                         false),
+                booleanProperty(
+                        AGGREGATION_HASH_PRESIZING_ENABLED,
+                        "Size the hash table of final aggregations from the estimated number of groups",
+                        featuresConfig.isAggregationHashPresizingEnabled(),
+                        false),
+                booleanProperty(
+                        PARTITIONED_AGGREGATION_HASH_ENABLED,
+                        "Use a hash table for bigint aggregations that grows one partition at a time",
+                        featuresConfig.isPartitionedAggregationHashEnabled(),
+                        false),
                 integerProperty(
                         INITIAL_SPLITS_PER_NODE,
                         "The number of splits each node will run per task, initially",
@@ -860,6 +881,16 @@ public final class SystemSessionProperties
                         "Use faster handling of inequality join if it is possible",
                         featuresConfig.isFastInequalityJoins(),
                         false),
+                booleanProperty(
+                        OFF_HEAP_JOIN_HASH_ENABLED,
+                        "Keep the hash table of the join build side in native memory",
+                        featuresConfig.isOffHeapJoinHashEnabled(),
+                        false),
+                booleanProperty(
+                        JOIN_BATCH_PROBE_ENABLED,
+                        "Resolve the join positions of a whole probe page at once",
+                        featuresConfig.isJoinBatchProbeEnabled(),
+                        false),
                 booleanProperty(
                         COLOCATED_JOIN,
                         "Experimental: Use a colocated join when possible",
@@ -904,6 +935,11 @@ public final class SystemSessionProperties
                         "Enable join spilling",
                         featuresConfig.isJoinSpillingEnabled(),
                         false),
+                booleanProperty(
+                        DISTINCT_SPILL_ENABLED,
+                        "Enable mark distinct and distinct limit spilling",
+                        featuresConfig.isDistinctSpillingEnabled(),
+                        false),
                 new PropertyMetadata<>(
                         QUERY_MAX_REVOCABLE_MEMORY_PER_NODE,
                         "Maximum amount of revocable memory a query can use",
@@ -980,6 +1016,16 @@ public final class SystemSessionProperties
                         "Enable the use of intermediate aggregations",
                         featuresConfig.isEnableIntermediateAggregations(),
                         false),
+                booleanProperty(
+                        ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES,
+                        "Enable a tree-shaped merge through intermediate aggregations for global aggregations with large intermediate states",
+                        featuresConfig.isEnableIntermediateAggregationsForLargeStates(),
+                        false),
+                dataSizeProperty(
+                        INTERMEDIATE_AGGREGATION_LARGE_STATE_SIZE,
+                        "Estimated size of the intermediate states of a global aggregation above which they are considered large",
+                        featuresConfig.getIntermediateAggregationLargeStateSize(),
+                        false),
                 booleanProperty(
                         PARALLELIZE_CHAINED_AGGREGATION,
                         "Insert a local round-robin exchange above the inner aggregation in chained aggregations to parallelize the outer PARTIAL across local drivers",
@@ -1260,6 +1306,11 @@ public final class SystemSessionProperties
                         "Experimental: Use optimized repartitioning",
                         featuresConfig.isOptimizedRepartitioningEnabled(),
                         false),
+                booleanProperty(
+                        OPTIMIZED_REPARTITIONING_COLUMNAR_ENCODING_ENABLED,
+                        "Experimental: Bit pack integer columns (frame of reference, delta or dictionary) in pages produced by optimized repartitioning",
+                        featuresConfig.isOptimizedRepartitioningColumnarEncodingEnabled(),
+                        false),
                 new PropertyMetadata<>(
                         AGGREGATION_PARTITIONING_MERGING_STRATEGY,
                         format("Strategy to merge partition preference in aggregation node. Options are %s",
@@ -1376,6 +1427,15 @@ public final class SystemSessionProperties
                         "Maximum number of build-side rows per driver up to which min and max values will be collected for dynamic filtering",
                         featuresConfig.getDynamicFilteringRangeRowLimitPerDriver(),
                         false),
+                new PropertyMetadata<>(
+                        DYNAMIC_FILTERING_BLOOM_FILTER_SIZE_PER_DRIVER,
+                        "Size of the Bloom filter collected per driver for dynamic filtering once the build-side values exceed the limits for an exact filter. Only applied to probe-side table scans in the same task as the join build, 0B disables Bloom filters",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getDynamicFilteringBloomFilterSizePerDriver(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
                 new PropertyMetadata<>(
                         DISTRIBUTED_DYNAMIC_FILTER_STRATEGY,
                         format("When to add distributed dynamic filters to joins for split-level pruning. Value must be one of: %s",
@@ -1426,6 +1486,11 @@ public final class SystemSessionProperties
                         "Enable fragment result caching and read/write leaf fragment result pages from/to cache when applicable",
                         featuresConfig.isFragmentResultCachingEnabled(),
                         false),
+                booleanProperty(
+                        QUERY_RESULT_CACHING_ENABLED,
+                        "Serve repeated deterministic queries over versioned tables from the coordinator query result cache",
+                        featuresConfig.isQueryResultCachingEnabled(),
+                        false),
                 booleanProperty(
                         SKIP_REDUNDANT_SORT,
                         "Skip redundant sort operations",
@@ -1523,6 +1588,11 @@ public final class SystemSessionProperties
                         "Enable spooling output buffer for terminal task",
                         featuresConfig.isSpoolingOutputBufferEnabled(),
                         false),
+                booleanProperty(
+                        SPOOLED_QUERY_OUTPUT_ENABLED,
+                        "Spool the query output on the coordinator, so that the workers do not wait for the client to fetch the results",
+                        featuresConfig.isSpooledQueryOutputEnabled(),
+                        false),
                 booleanProperty(
                         SPARK_ASSIGN_BUCKET_TO_PARTITION_FOR_PARTITIONED_TABLE_WRITE_ENABLED,
                         "Assign bucket to partition map for partitioned table write when adding an exchange",
@@ -2494,6 +2564,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(SPOOLING_OUTPUT_BUFFER_ENABLED, Boolean.class);
     }
 
+    public static boolean isSpooledQueryOutputEnabled(Session session)
+    {
+        return session.getSystemProperty(SPOOLED_QUERY_OUTPUT_ENABLED, Boolean.class);
+    }
+
     public static boolean isSkipRedundantSort(Session session)
     {
         return session.getSystemProperty(SKIP_REDUNDANT_SORT, Boolean.class);
@@ -2701,6 +2776,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DICTIONARY_AGGREGATION, Boolean.class);
     }
 
+    public static boolean isAggregationHashPresizingEnabled(Session session)
+    {
+        return session.getSystemProperty(AGGREGATION_HASH_PRESIZING_ENABLED, Boolean.class);
+    }
+
+    public static boolean isPartitionedAggregationHashEnabled(Session session)
+    {
+        return session.getSystemProperty(PARTITIONED_AGGREGATION_HASH_ENABLED, Boolean.class);
+    }
+
     public static boolean isOptimizeMetadataQueries(Session session)
     {
         return session.getSystemProperty(OPTIMIZE_METADATA_QUERIES, Boolean.class);
@@ -2776,6 +2861,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(FAST_INEQUALITY_JOINS, Boolean.class);
     }
 
+    public static boolean isOffHeapJoinHashEnabled(Session session)
+    {
+        return session.getSystemProperty(OFF_HEAP_JOIN_HASH_ENABLED, Boolean.class);
+    }
+
+    public static boolean isJoinBatchProbeEnabled(Session session)
+    {
+        return session.getSystemProperty(JOIN_BATCH_PROBE_ENABLED, Boolean.class);
+    }
+
     public static JoinReorderingStrategy getJoinReorderingStrategy(Session session)
     {
         Boolean reorderJoins = session.getSystemProperty(REORDER_JOINS, Boolean.class);
@@ -2885,6 +2980,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(JOIN_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
     }
 
+    public static boolean isDistinctSpillingEnabled(Session session)
+    {
+        return session.getSystemProperty(DISTINCT_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
     public static DataSize getQueryMaxRevocableMemoryPerNode(Session session)
     {
         return session.getSystemProperty(QUERY_MAX_REVOCABLE_MEMORY_PER_NODE, DataSize.class);
@@ -2946,6 +3046,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, Boolean.class);
     }
 
+    public static boolean isEnableIntermediateAggregationsForLargeStates(Session session)
+    {
+        return session.getSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, Boolean.class);
+    }
+
+    public static DataSize getIntermediateAggregationLargeStateSize(Session session)
+    {
+        return session.getSystemProperty(INTERMEDIATE_AGGREGATION_LARGE_STATE_SIZE, DataSize.class);
+    }
+
     public static boolean isEnableParallelizeChainedAggregations(Session session)
     {
         return session.getSystemProperty(PARALLELIZE_CHAINED_AGGREGATION, Boolean.class);
@@ -3278,6 +3388,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(OPTIMIZED_REPARTITIONING_ENABLED, Boolean.class);
     }
 
+    public static boolean isOptimizedRepartitioningColumnarEncodingEnabled(Session session)
+    {
+        return session.getSystemProperty(OPTIMIZED_REPARTITIONING_COLUMNAR_ENCODING_ENABLED, Boolean.class);
+    }
+
     public static AggregationPartitioningMergingStrategy getAggregationPartitioningMergingStrategy(Session session)
     {
         return session.getSystemProperty(AGGREGATION_PARTITIONING_MERGING_STRATEGY, AggregationPartitioningMergingStrategy.class);
@@ -3362,6 +3477,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER, Integer.class);
     }
 
+    public static DataSize getDynamicFilteringBloomFilterSizePerDriver(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_BLOOM_FILTER_SIZE_PER_DRIVER, DataSize.class);
+    }
+
     public static DistributedDynamicFilterStrategy getDistributedDynamicFilterStrategy(Session session)
     {
         return session.getSystemProperty(DISTRIBUTED_DYNAMIC_FILTER_STRATEGY, DistributedDynamicFilterStrategy.class);
@@ -3415,6 +3535,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(FRAGMENT_RESULT_CACHING_ENABLED, Boolean.class);
     }
 
+    public static boolean isQueryResultCachingEnabled(Session session)
+    {
+        return session.getSystemProperty(QUERY_RESULT_CACHING_ENABLED, Boolean.class);
+    }
+
     public static boolean isInlineSqlFunctions(Session session)
     {
         return session.getSystemProperty(INLINE_SQL_FUNCTIONS, Boolean.class);
@@ -14,13 +14,23 @@
 package com.facebook.presto.cost;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.units.Duration;
+import com.facebook.airlift.units.MinDuration;
 import com.facebook.presto.spi.function.Description;
 import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 public class HistoryBasedOptimizationConfig
 {
     private int maxLastRunsHistory = 10;
     private double historyMatchingThreshold = 0.1;
+    private String localStoreDirectory;
+    private Duration localStoreFlushInterval = new Duration(1, SECONDS);
+    private int localStoreMaxEntries = 1_000_000;
+    private Duration localStoreEntryTtl = new Duration(30, DAYS);
 
     @Min(1)
     public int getMaxLastRunsHistory()
@@ -49,4 +59,61 @@ public class HistoryBasedOptimizationConfig
         this.historyMatchingThreshold = historyMatchingThreshold;
         return this;
     }
+
+    public String getLocalStoreDirectory()
+    {
+        return localStoreDirectory;
+    }
+
+    @Config("hbo.local-store.directory")
+    @Description("Directory of the embedded historical statistics store, used when no statistics provider plugin is installed")
+    public HistoryBasedOptimizationConfig setLocalStoreDirectory(String localStoreDirectory)
+    {
+        this.localStoreDirectory = localStoreDirectory;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getLocalStoreFlushInterval()
+    {
+        return localStoreFlushInterval;
+    }
+
+    @Config("hbo.local-store.flush-interval")
+    @Description("Interval at which statistics written to the embedded store are appended to its log")
+    public HistoryBasedOptimizationConfig setLocalStoreFlushInterval(Duration localStoreFlushInterval)
+    {
+        this.localStoreFlushInterval = localStoreFlushInterval;
+        return this;
+    }
+
+    @Min(1)
+    public int getLocalStoreMaxEntries()
+    {
+        return localStoreMaxEntries;
+    }
+
+    @Config("hbo.local-store.max-entries")
+    @Description("Maximum number of plan hashes kept in the embedded store, beyond which the least recently updated are evicted")
+    public HistoryBasedOptimizationConfig setLocalStoreMaxEntries(int localStoreMaxEntries)
+    {
+        this.localStoreMaxEntries = localStoreMaxEntries;
+        return this;
+    }
+
+    @NotNull
+    @MinDuration("1ms")
+    public Duration getLocalStoreEntryTtl()
+    {
+        return localStoreEntryTtl;
+    }
+
+    @Config("hbo.local-store.entry-ttl")
+    @Description("Time after which statistics that have not been updated are evicted from the embedded store")
+    public HistoryBasedOptimizationConfig setLocalStoreEntryTtl(Duration localStoreEntryTtl)
+    {
+        this.localStoreEntryTtl = localStoreEntryTtl;
+        return this;
+    }
 }
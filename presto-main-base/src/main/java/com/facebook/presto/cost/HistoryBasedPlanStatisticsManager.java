@@ -30,8 +30,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.google.inject.Inject;
+import jakarta.annotation.PreDestroy;
 
+import java.nio.file.Paths;
 import java.util.List;
+import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.getHistoryOptimizationPlanCanonicalizationStrategies;
 import static java.util.Objects.requireNonNull;
@@ -43,6 +46,7 @@ public class HistoryBasedPlanStatisticsManager
     private final PlanCanonicalInfoProvider planCanonicalInfoProvider;
     private final HistoryBasedOptimizationConfig config;
 
+    private final Optional<LocalHistoryBasedPlanStatisticsProvider> localStatisticsProvider;
     private HistoryBasedPlanStatisticsProvider historyBasedPlanStatisticsProvider = EmptyPlanStatisticsProvider.getInstance();
     private boolean statisticsProviderAdded;
     private final boolean isNativeExecution;
@@ -80,10 +84,30 @@ public class HistoryBasedPlanStatisticsManager
         this.config = requireNonNull(config, "config is null");
         this.isNativeExecution = featuresConfig.isNativeExecutionEnabled();
         this.serverVersion = requireNonNull(nodeVersion, "nodeVersion is null").toString();
+
+        this.localStatisticsProvider = Optional.ofNullable(config.getLocalStoreDirectory())
+                .map(directory -> new LocalHistoryBasedPlanStatisticsProvider(
+                        Paths.get(directory),
+                        config.getLocalStoreFlushInterval(),
+                        config.getLocalStoreMaxEntries(),
+                        config.getLocalStoreEntryTtl()));
+        localStatisticsProvider.ifPresent(provider -> {
+            historyBasedPlanStatisticsProvider = provider;
+            statisticsProviderAdded = true;
+        });
+    }
+
+    @PreDestroy
+    public void stop()
+    {
+        localStatisticsProvider.ifPresent(LocalHistoryBasedPlanStatisticsProvider::close);
     }
 
     public void addHistoryBasedPlanStatisticsProviderFactory(HistoryBasedPlanStatisticsProvider historyBasedPlanStatisticsProvider)
     {
+        if (localStatisticsProvider.isPresent()) {
+            throw new IllegalStateException("historyBasedPlanStatisticsProvider cannot be added when hbo.local-store.directory is set");
+        }
         if (statisticsProviderAdded) {
             throw new IllegalStateException("historyBasedPlanStatisticsProvider can only be set once");
         }
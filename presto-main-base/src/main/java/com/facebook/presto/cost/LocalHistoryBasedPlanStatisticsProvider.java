@@ -0,0 +1,463 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.cost;
+
+import com.facebook.airlift.log.Logger;
+import com.facebook.airlift.units.Duration;
+import com.facebook.drift.codec.ThriftCodec;
+import com.facebook.drift.codec.ThriftCodecManager;
+import com.facebook.drift.protocol.TProtocolException;
+import com.facebook.presto.spi.plan.PlanNodeWithHash;
+import com.facebook.presto.spi.statistics.HistoricalPlanStatistics;
+import com.facebook.presto.spi.statistics.HistoryBasedPlanStatisticsProvider;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.server.thrift.ThriftCodecUtils.fromThrift;
+import static com.facebook.presto.server.thrift.ThriftCodecUtils.toThrift;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * Embedded historical statistics store for deployments without an external statistics provider.
+ * <p>
+ * All statistics are kept in memory, keyed by canonical plan hash, so that lookups during planning
+ * never wait on I/O. Every update is also appended to a log in the store directory, which is replayed
+ * on startup. Updates are serialized by the caller and appended in batches by a background thread.
+ * The log is rewritten with only the live entries once it grows to several times their size.
+ * <p>
+ * Entries that have not been updated within the entry TTL are no longer returned, and the number of
+ * entries is bounded. Expired entries and, above the limit, the least recently updated entries are
+ * evicted when the log is rewritten, which drops them from the log without writing removal records.
+ * <p>
+ * A log record is the key length, the key, the update time, the value length, the Thrift encoded value
+ * and a CRC32 of the key, update time and value. A value length of zero removes the key. A torn record
+ * at the end of the log, left by a crash during an append, is discarded on replay.
+ */
+public class LocalHistoryBasedPlanStatisticsProvider
+        implements HistoryBasedPlanStatisticsProvider
+{
+    private static final Logger log = Logger.get(LocalHistoryBasedPlanStatisticsProvider.class);
+
+    @VisibleForTesting
+    static final String LOG_FILE_NAME = "statistics.log";
+    private static final String COMPACTION_FILE_NAME = "statistics.log.compacting";
+    private static final long MIN_COMPACTION_SIZE_IN_BYTES = 1024 * 1024;
+    private static final int COMPACTION_RATIO = 4;
+    // eviction for the entry limit leaves room for new entries, so that it is not repeated on every flush
+    private static final double EVICTION_TARGET_RATIO = 0.9;
+
+    private final ThriftCodec<HistoricalPlanStatistics> codec = new ThriftCodecManager().getCodec(HistoricalPlanStatistics.class);
+    private final Path directory;
+    private final Path logFile;
+    private final int maxEntries;
+    private final long entryTtlMillis;
+    private final Clock clock;
+    private final Map<String, StoredStatistics> statistics = new ConcurrentHashMap<>();
+    private final AtomicLong liveSizeInBytes = new AtomicLong();
+    private final LinkedBlockingQueue<byte[]> pendingRecords = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService flushExecutor = newSingleThreadScheduledExecutor(daemonThreadsNamed("hbo-local-store-flush"));
+
+    // accessed only by the flush thread once the store is opened
+    private FileChannel logChannel;
+    private long logSizeInBytes;
+    private long nextExpirationMillis;
+
+    public LocalHistoryBasedPlanStatisticsProvider(Path directory, Duration flushInterval, int maxEntries, Duration entryTtl)
+    {
+        this(directory, flushInterval, maxEntries, entryTtl, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    LocalHistoryBasedPlanStatisticsProvider(Path directory, Duration flushInterval, int maxEntries, Duration entryTtl, Clock clock)
+    {
+        checkArgument(maxEntries > 0, "maxEntries must be positive");
+        this.directory = requireNonNull(directory, "directory is null");
+        this.logFile = directory.resolve(LOG_FILE_NAME);
+        this.maxEntries = maxEntries;
+        this.entryTtlMillis = requireNonNull(entryTtl, "entryTtl is null").toMillis();
+        this.clock = requireNonNull(clock, "clock is null");
+        this.nextExpirationMillis = clock.millis() + entryTtlMillis / COMPACTION_RATIO;
+        try {
+            Files.createDirectories(directory);
+            replayLog();
+            logChannel = FileChannel.open(logFile, CREATE, WRITE, APPEND);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed to open historical statistics store in " + directory, e);
+        }
+        long flushIntervalMillis = requireNonNull(flushInterval, "flushInterval is null").toMillis();
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMillis, flushIntervalMillis, MILLISECONDS);
+    }
+
+    @Override
+    public String getName()
+    {
+        return "local";
+    }
+
+    @Override
+    public Map<PlanNodeWithHash, HistoricalPlanStatistics> getStats(List<PlanNodeWithHash> planNodesWithHash, long timeoutInMilliSeconds)
+    {
+        // lookups are served from memory, so they cannot exceed the timeout
+        long expirationMillis = clock.millis() - entryTtlMillis;
+        return planNodesWithHash.stream()
+                .distinct()
+                .collect(toImmutableMap(
+                        planNodeWithHash -> planNodeWithHash,
+                        planNodeWithHash -> planNodeWithHash.getHash()
+                                .map(statistics::get)
+                                .filter(stored -> stored.getUpdateTimeMillis() > expirationMillis)
+                                .map(StoredStatistics::getStatistics)
+                                .orElseGet(HistoricalPlanStatistics::empty)));
+    }
+
+    @Override
+    public void putStats(Map<PlanNodeWithHash, HistoricalPlanStatistics> hashesAndStatistics)
+    {
+        hashesAndStatistics.forEach((planNodeWithHash, historicalPlanStatistics) -> {
+            if (!planNodeWithHash.getHash().isPresent()) {
+                return;
+            }
+            String hash = planNodeWithHash.getHash().get();
+            long updateTimeMillis = clock.millis();
+            byte[] value = historicalPlanStatistics.getLastRunsStatistics().isEmpty() ? new byte[0] : serialize(historicalPlanStatistics);
+            byte[] record = encodeRecord(hash, updateTimeMillis, value);
+            if (value.length == 0) {
+                updateLiveSize(statistics.remove(hash), null);
+            }
+            else {
+                StoredStatistics stored = new StoredStatistics(historicalPlanStatistics, updateTimeMillis, record.length);
+                updateLiveSize(statistics.put(hash, stored), stored);
+            }
+            pendingRecords.add(record);
+        });
+    }
+
+    /**
+     * Appends all pending updates to the log, and compacts the log if it has grown too large,
+     * the store holds too many entries or entries may have expired since the last compaction.
+     */
+    @VisibleForTesting
+    synchronized void flush()
+            throws IOException
+    {
+        List<byte[]> records = new ArrayList<>();
+        pendingRecords.drainTo(records);
+        if (!records.isEmpty()) {
+            ByteBuffer[] buffers = records.stream()
+                    .map(ByteBuffer::wrap)
+                    .toArray(ByteBuffer[]::new);
+            while (buffers[buffers.length - 1].hasRemaining()) {
+                logSizeInBytes += logChannel.write(buffers);
+            }
+        }
+
+        if ((logSizeInBytes > MIN_COMPACTION_SIZE_IN_BYTES && logSizeInBytes > liveSizeInBytes.get() * COMPACTION_RATIO) ||
+                statistics.size() > maxEntries ||
+                clock.millis() >= nextExpirationMillis) {
+            compact();
+        }
+    }
+
+    @VisibleForTesting
+    synchronized void compact()
+            throws IOException
+    {
+        int evictedEntries = evict();
+
+        Path compactionFile = directory.resolve(COMPACTION_FILE_NAME);
+        long compactedSizeInBytes = 0;
+        // updates that race with the snapshot are still pending and are appended to the new log afterwards
+        try (FileChannel channel = FileChannel.open(compactionFile, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, StoredStatistics> entry : statistics.entrySet()) {
+                StoredStatistics stored = entry.getValue();
+                ByteBuffer record = ByteBuffer.wrap(encodeRecord(entry.getKey(), stored.getUpdateTimeMillis(), serialize(stored.getStatistics())));
+                while (record.hasRemaining()) {
+                    compactedSizeInBytes += channel.write(record);
+                }
+            }
+            channel.force(true);
+        }
+        logChannel.close();
+        Files.move(compactionFile, logFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        logChannel = FileChannel.open(logFile, CREATE, WRITE, APPEND);
+        log.debug("Compacted historical statistics log from %s to %s bytes, evicting %s entries", logSizeInBytes, compactedSizeInBytes, evictedEntries);
+        logSizeInBytes = compactedSizeInBytes;
+    }
+
+    /**
+     * Removes the expired entries and, if the store is above its entry limit, the least recently updated ones.
+     * The entries are only dropped from the log when it is rewritten.
+     */
+    private int evict()
+    {
+        long now = clock.millis();
+        long expirationMillis = now - entryTtlMillis;
+        nextExpirationMillis = now + entryTtlMillis / COMPACTION_RATIO;
+
+        int evictedEntries = 0;
+        List<Map.Entry<String, StoredStatistics>> entries = new ArrayList<>(statistics.size());
+        for (Map.Entry<String, StoredStatistics> entry : statistics.entrySet()) {
+            if (entry.getValue().getUpdateTimeMillis() <= expirationMillis) {
+                evictedEntries += evictEntry(entry.getKey(), entry.getValue());
+            }
+            else {
+                entries.add(entry);
+            }
+        }
+
+        if (entries.size() > maxEntries) {
+            entries.sort(Comparator.comparingLong(entry -> entry.getValue().getUpdateTimeMillis()));
+            int excessEntries = entries.size() - (int) (maxEntries * EVICTION_TARGET_RATIO);
+            for (Map.Entry<String, StoredStatistics> entry : entries.subList(0, excessEntries)) {
+                evictedEntries += evictEntry(entry.getKey(), entry.getValue());
+            }
+        }
+        return evictedEntries;
+    }
+
+    private int evictEntry(String hash, StoredStatistics stored)
+    {
+        // an entry updated since the snapshot is kept
+        if (statistics.remove(hash, stored)) {
+            updateLiveSize(stored, null);
+            return 1;
+        }
+        return 0;
+    }
+
+    public void close()
+    {
+        // let a running flush complete, since interrupting it would close the log channel
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(1, MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            synchronized (this) {
+                flush();
+                logChannel.force(true);
+                logChannel.close();
+            }
+        }
+        catch (IOException e) {
+            log.error(e, "Failed to flush historical statistics to %s", logFile);
+        }
+    }
+
+    @VisibleForTesting
+    long getLogSizeInBytes()
+    {
+        return logSizeInBytes;
+    }
+
+    private void flushQuietly()
+    {
+        try {
+            flush();
+        }
+        catch (IOException | RuntimeException e) {
+            log.error(e, "Failed to flush historical statistics to %s", logFile);
+        }
+    }
+
+    private void replayLog()
+            throws IOException
+    {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+
+        long fileSizeInBytes = Files.size(logFile);
+        long validSizeInBytes = 0;
+        // an expired record is older than any other record of its key, so it removes the key
+        long expirationMillis = clock.millis() - entryTtlMillis;
+        int records = 0;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(logFile)))) {
+            while (validSizeInBytes < fileSizeInBytes) {
+                // lengths are checked against the rest of the file, so reads of a valid record never hit the end of the file
+                long remainingBytes = fileSizeInBytes - validSizeInBytes;
+                if (remainingBytes < recordSize(0, 0)) {
+                    break;
+                }
+                int keyLength = input.readInt();
+                if (keyLength < 0 || recordSize(keyLength, 0) > remainingBytes) {
+                    break;
+                }
+                byte[] key = new byte[keyLength];
+                input.readFully(key);
+                long updateTimeMillis = input.readLong();
+                int valueLength = input.readInt();
+                if (valueLength < 0 || recordSize(keyLength, valueLength) > remainingBytes) {
+                    break;
+                }
+                byte[] value = new byte[valueLength];
+                input.readFully(value);
+                if (input.readInt() != checksum(key, updateTimeMillis, value)) {
+                    break;
+                }
+
+                String hash = new String(key, UTF_8);
+                int recordSize = recordSize(keyLength, valueLength);
+                if (valueLength == 0 || updateTimeMillis <= expirationMillis) {
+                    updateLiveSize(statistics.remove(hash), null);
+                }
+                else {
+                    Optional<HistoricalPlanStatistics> historicalPlanStatistics = deserialize(value);
+                    if (historicalPlanStatistics.isPresent()) {
+                        StoredStatistics stored = new StoredStatistics(historicalPlanStatistics.get(), updateTimeMillis, recordSize);
+                        updateLiveSize(statistics.put(hash, stored), stored);
+                    }
+                }
+                validSizeInBytes += recordSize;
+                records++;
+            }
+        }
+
+        if (validSizeInBytes < fileSizeInBytes) {
+            log.warn("Discarding %s bytes of torn records at the end of %s", fileSizeInBytes - validSizeInBytes, logFile);
+            try (FileChannel channel = FileChannel.open(logFile, WRITE)) {
+                channel.truncate(validSizeInBytes);
+            }
+        }
+        logSizeInBytes = validSizeInBytes;
+        log.info("Loaded historical statistics for %s plan hashes from %s records in %s", statistics.size(), records, logFile);
+    }
+
+    private void updateLiveSize(StoredStatistics previous, StoredStatistics current)
+    {
+        long delta = (current == null ? 0 : current.getRecordSizeInBytes()) - (previous == null ? 0 : previous.getRecordSizeInBytes());
+        liveSizeInBytes.addAndGet(delta);
+    }
+
+    private byte[] serialize(HistoricalPlanStatistics historicalPlanStatistics)
+    {
+        try {
+            return toThrift(historicalPlanStatistics, codec);
+        }
+        catch (TProtocolException e) {
+            throw new IllegalArgumentException("Failed to serialize historical statistics", e);
+        }
+    }
+
+    private Optional<HistoricalPlanStatistics> deserialize(byte[] value)
+    {
+        try {
+            return Optional.of(fromThrift(value, codec));
+        }
+        catch (TProtocolException e) {
+            // statistics are only hints, so a record that cannot be read is skipped rather than failing the store
+            log.warn(e, "Skipping unreadable record in %s", logFile);
+            return Optional.empty();
+        }
+    }
+
+    private static byte[] encodeRecord(String hash, long updateTimeMillis, byte[] value)
+    {
+        byte[] key = hash.getBytes(UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(recordSize(key.length, value.length));
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(key.length);
+            output.write(key);
+            output.writeLong(updateTimeMillis);
+            output.writeInt(value.length);
+            output.write(value);
+            output.writeInt(checksum(key, updateTimeMillis, value));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static int recordSize(int keyLength, int valueLength)
+    {
+        return Integer.BYTES + keyLength + Long.BYTES + Integer.BYTES + valueLength + Integer.BYTES;
+    }
+
+    private static int checksum(byte[] key, long updateTimeMillis, byte[] value)
+    {
+        CRC32 crc32 = new CRC32();
+        crc32.update(key);
+        crc32.update(ByteBuffer.allocate(Long.BYTES).putLong(0, updateTimeMillis));
+        crc32.update(value);
+        return (int) crc32.getValue();
+    }
+
+    private static class StoredStatistics
+    {
+        private final HistoricalPlanStatistics statistics;
+        private final long updateTimeMillis;
+        private final int recordSizeInBytes;
+
+        public StoredStatistics(HistoricalPlanStatistics statistics, long updateTimeMillis, int recordSizeInBytes)
+        {
+            this.statistics = requireNonNull(statistics, "statistics is null");
+            this.updateTimeMillis = updateTimeMillis;
+            this.recordSizeInBytes = recordSizeInBytes;
+        }
+
+        public HistoricalPlanStatistics getStatistics()
+        {
+            return statistics;
+        }
+
+        public long getUpdateTimeMillis()
+        {
+            return updateTimeMillis;
+        }
+
+        public int getRecordSizeInBytes()
+        {
+            return recordSizeInBytes;
+        }
+    }
+}
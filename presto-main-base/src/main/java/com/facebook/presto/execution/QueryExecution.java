@@ -23,6 +23,7 @@ import com.facebook.presto.memory.VersionedMemoryPoolId;
 import com.facebook.presto.server.BasicQueryInfo;
 import com.facebook.presto.spi.WarningCollector;
 import com.facebook.presto.spi.analyzer.AnalyzerProvider;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.resourceGroups.ResourceGroupQueryLimits;
 import com.facebook.presto.spi.security.AccessControl;
 import com.facebook.presto.sql.planner.Plan;
@@ -123,6 +124,9 @@ public interface QueryExecution
      * contain the full location set, but may be empty.  Users of this data should keep a private copy of the seen buffers to
      * handle out of order events from the listener.  Once noMoreBufferLocations is set the locations will never change, and
      * it is guaranteed that all previously sent locations are contained in the buffer locations.
+     * <p>
+     * If the result is served from the {@link QueryResultCache}, the cached pages are the complete output and there are no
+     * buffer locations. Otherwise, the result cache key is present if the complete output may be stored in the cache.
      */
     class QueryOutputInfo
     {
@@ -130,13 +134,23 @@ public interface QueryExecution
         private final List<Type> columnTypes;
         private final Map<URI, TaskId> bufferLocations;
         private final boolean noMoreBufferLocations;
-
-        public QueryOutputInfo(List<String> columnNames, List<Type> columnTypes, Map<URI, TaskId> bufferLocations, boolean noMoreBufferLocations)
+        private final Optional<List<SerializedPage>> cachedResult;
+        private final Optional<String> resultCacheKey;
+
+        public QueryOutputInfo(
+                List<String> columnNames,
+                List<Type> columnTypes,
+                Map<URI, TaskId> bufferLocations,
+                boolean noMoreBufferLocations,
+                Optional<List<SerializedPage>> cachedResult,
+                Optional<String> resultCacheKey)
         {
             this.columnNames = ImmutableList.copyOf(requireNonNull(columnNames, "columnNames is null"));
             this.columnTypes = ImmutableList.copyOf(requireNonNull(columnTypes, "columnTypes is null"));
             this.bufferLocations = ImmutableMap.copyOf(requireNonNull(bufferLocations, "bufferLocations is null"));
             this.noMoreBufferLocations = noMoreBufferLocations;
+            this.cachedResult = requireNonNull(cachedResult, "cachedResult is null").map(ImmutableList::copyOf);
+            this.resultCacheKey = requireNonNull(resultCacheKey, "resultCacheKey is null");
         }
 
         public List<String> getColumnNames()
@@ -158,5 +172,15 @@ public interface QueryExecution
         {
             return noMoreBufferLocations;
         }
+
+        public Optional<List<SerializedPage>> getCachedResult()
+        {
+            return cachedResult;
+        }
+
+        public Optional<String> getResultCacheKey()
+        {
+            return resultCacheKey;
+        }
     }
 }
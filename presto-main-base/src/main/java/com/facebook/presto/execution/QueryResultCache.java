@@ -0,0 +1,431 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.airlift.log.Logger;
+import com.facebook.presto.Session;
+import com.facebook.presto.common.QualifiedObjectName;
+import com.facebook.presto.expressions.DefaultRowExpressionTraversalVisitor;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.DistinctLimitNode;
+import com.facebook.presto.spi.plan.FilterNode;
+import com.facebook.presto.spi.plan.JoinNode;
+import com.facebook.presto.spi.plan.LimitNode;
+import com.facebook.presto.spi.plan.MarkDistinctNode;
+import com.facebook.presto.spi.plan.OutputNode;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.ProjectNode;
+import com.facebook.presto.spi.plan.SemiJoinNode;
+import com.facebook.presto.spi.plan.SortNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.plan.TopNNode;
+import com.facebook.presto.spi.plan.TopNRowNumberNode;
+import com.facebook.presto.spi.plan.UnionNode;
+import com.facebook.presto.spi.plan.UnnestNode;
+import com.facebook.presto.spi.plan.ValuesNode;
+import com.facebook.presto.spi.plan.WindowNode;
+import com.facebook.presto.spi.relation.CallExpression;
+import com.facebook.presto.spi.relation.LambdaDefinitionExpression;
+import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.sql.planner.plan.EnforceSingleRowNode;
+import com.facebook.presto.sql.planner.plan.ExchangeNode;
+import com.facebook.presto.sql.planner.plan.GroupIdNode;
+import com.facebook.presto.sql.planner.plan.RowNumberNode;
+import com.facebook.presto.sql.relational.RowExpressionDeterminismEvaluator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import jakarta.inject.Inject;
+import org.weakref.jmx.Managed;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.presto.SystemSessionProperties.isQueryResultCachingEnabled;
+import static com.facebook.presto.metadata.BuiltInTypeAndFunctionNamespaceManager.JAVA_BUILTIN_NAMESPACE;
+import static com.facebook.presto.sql.planner.ExpressionExtractor.extractExpressions;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Coordinator side cache of complete query results, used to serve repeated deterministic queries
+ * without scheduling any tasks.
+ * <p>
+ * A result is keyed on the optimized plan without the transaction handles of the scanned tables, the session
+ * state that affects the result, and the data version reported by the connector for every scanned table. Queries that read a table without a
+ * version, use nondeterministic or session time functions, or contain plan nodes other than plain
+ * relational operators are not cached.
+ * <p>
+ * The lookup is not done straight from the dispatcher: the key needs the optimized plan and the table layouts
+ * chosen by the optimizer, so a hit still pays for parsing, analysis and full planning, and only skips
+ * scheduling and execution.
+ */
+public class QueryResultCache
+{
+    private static final Logger log = Logger.get(QueryResultCache.class);
+
+    private static final Set<Class<? extends PlanNode>> ALLOWED_NODES = ImmutableSet.of(
+            OutputNode.class,
+            TableScanNode.class,
+            ValuesNode.class,
+            FilterNode.class,
+            ProjectNode.class,
+            AggregationNode.class,
+            GroupIdNode.class,
+            MarkDistinctNode.class,
+            JoinNode.class,
+            SemiJoinNode.class,
+            UnionNode.class,
+            UnnestNode.class,
+            WindowNode.class,
+            RowNumberNode.class,
+            TopNRowNumberNode.class,
+            SortNode.class,
+            TopNNode.class,
+            LimitNode.class,
+            DistinctLimitNode.class,
+            EnforceSingleRowNode.class,
+            ExchangeNode.class);
+
+    // deterministic within a query, but not across queries
+    private static final Set<QualifiedObjectName> SESSION_TIME_FUNCTIONS = ImmutableSet.of(
+            QualifiedObjectName.valueOf(JAVA_BUILTIN_NAMESPACE, "now"),
+            QualifiedObjectName.valueOf(JAVA_BUILTIN_NAMESPACE, "current_timestamp"),
+            QualifiedObjectName.valueOf(JAVA_BUILTIN_NAMESPACE, "current_date"),
+            QualifiedObjectName.valueOf(JAVA_BUILTIN_NAMESPACE, "current_time"),
+            QualifiedObjectName.valueOf(JAVA_BUILTIN_NAMESPACE, "localtime"),
+            QualifiedObjectName.valueOf(JAVA_BUILTIN_NAMESPACE, "localtimestamp"));
+
+    private final Metadata metadata;
+    private final ObjectMapper objectMapper;
+    private final RowExpressionDeterminismEvaluator determinismEvaluator;
+    private final long maxEntrySizeInBytes;
+    private final long maxPendingSizeInBytes;
+    private final Cache<String, CachedResult> cache;
+
+    private final AtomicLong sizeInBytes = new AtomicLong();
+    private final AtomicLong pendingSizeInBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong servedBytes = new AtomicLong();
+    private final AtomicLong storedBytes = new AtomicLong();
+
+    @Inject
+    public QueryResultCache(QueryResultCacheConfig config, Metadata metadata, ObjectMapper objectMapper)
+    {
+        requireNonNull(config, "config is null");
+        this.metadata = requireNonNull(metadata, "metadata is null");
+        // the transaction handles of the scanned tables differ from query to query, while the data versions of
+        // the tables stand for what the scans read
+        this.objectMapper = requireNonNull(objectMapper, "objectMapper is null").copy()
+                .addMixIn(TableHandle.class, TableHandleWithoutTransaction.class);
+        this.determinismEvaluator = new RowExpressionDeterminismEvaluator(metadata.getFunctionAndTypeManager());
+        this.maxEntrySizeInBytes = config.getMaxEntrySize().toBytes();
+        this.maxPendingSizeInBytes = config.getMaxPendingSize().toBytes();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxSize().toBytes())
+                .weigher((String key, CachedResult result) -> (int) Math.min(result.getRetainedSizeInBytes(), Integer.MAX_VALUE))
+                .expireAfterWrite(config.getTtl().toMillis(), MILLISECONDS)
+                // a single segment, so that the whole size is available to every entry
+                .concurrencyLevel(1)
+                .removalListener(this::onRemoval)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the key under which the result of the plan is cached, or empty if the result must not be cached.
+     */
+    public Optional<String> getCacheKey(Session session, PlanNode root)
+    {
+        if (!isQueryResultCachingEnabled(session)) {
+            return Optional.empty();
+        }
+        Optional<String> key = createCacheKey(session, root);
+        if (!key.isPresent()) {
+            bypassed.incrementAndGet();
+        }
+        return key;
+    }
+
+    public Optional<List<SerializedPage>> get(String key)
+    {
+        CachedResult result = cache.getIfPresent(key);
+        if (result == null) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+        hits.incrementAndGet();
+        servedBytes.addAndGet(result.getSizeInBytes());
+        return Optional.of(result.getPages());
+    }
+
+    /**
+     * Stores the complete result of a query. Returns false if the result is too large to be cached.
+     */
+    public boolean put(String key, List<SerializedPage> pages)
+    {
+        CachedResult result = new CachedResult(pages);
+        if (result.getSizeInBytes() > maxEntrySizeInBytes) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        sizeInBytes.addAndGet(result.getRetainedSizeInBytes());
+        storedBytes.addAndGet(result.getSizeInBytes());
+        cache.put(key, result);
+        return true;
+    }
+
+    public long getMaxEntrySizeInBytes()
+    {
+        return maxEntrySizeInBytes;
+    }
+
+    /**
+     * Reserves memory for the result pages a running query collects to store them once it has finished.
+     * Returns false, without reserving anything, if the total size of the pages collected by all the
+     * running queries would exceed the limit. The reservation must be released with
+     * {@link #freePendingResult} once the pages are stored or dropped.
+     */
+    public boolean tryReservePendingResult(long bytes)
+    {
+        while (true) {
+            long current = pendingSizeInBytes.get();
+            if (current + bytes > maxPendingSizeInBytes) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            if (pendingSizeInBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void freePendingResult(long bytes)
+    {
+        pendingSizeInBytes.addAndGet(-bytes);
+    }
+
+    @Managed
+    public long getEntryCount()
+    {
+        return cache.size();
+    }
+
+    @Managed
+    public long getSizeInBytes()
+    {
+        return sizeInBytes.get();
+    }
+
+    @Managed
+    public long getPendingSizeInBytes()
+    {
+        return pendingSizeInBytes.get();
+    }
+
+    @Managed
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    @Managed
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    @Managed
+    public long getBypassed()
+    {
+        return bypassed.get();
+    }
+
+    @Managed
+    public long getRejected()
+    {
+        return rejected.get();
+    }
+
+    @Managed
+    public long getEvictions()
+    {
+        return cache.stats().evictionCount();
+    }
+
+    @Managed
+    public long getServedBytes()
+    {
+        return servedBytes.get();
+    }
+
+    @Managed
+    public long getStoredBytes()
+    {
+        return storedBytes.get();
+    }
+
+    private void onRemoval(RemovalNotification<String, CachedResult> notification)
+    {
+        sizeInBytes.addAndGet(-notification.getValue().getRetainedSizeInBytes());
+    }
+
+    private Optional<String> createCacheKey(Session session, PlanNode root)
+    {
+        if (searchFrom(root).where(node -> !ALLOWED_NODES.contains(node.getClass())).matches()) {
+            return Optional.empty();
+        }
+
+        List<RowExpression> expressions = new ArrayList<>(extractExpressions(root));
+        for (AggregationNode node : searchFrom(root).where(AggregationNode.class::isInstance).<AggregationNode>findAll()) {
+            node.getAggregations().values().forEach(aggregation -> expressions.add(aggregation.getCall()));
+        }
+        for (WindowNode node : searchFrom(root).where(WindowNode.class::isInstance).<WindowNode>findAll()) {
+            node.getWindowFunctions().values().forEach(function -> expressions.add(function.getFunctionCall()));
+        }
+        for (RowExpression expression : expressions) {
+            if (!determinismEvaluator.isDeterministic(expression) || containsSessionTimeFunction(expression)) {
+                return Optional.empty();
+            }
+        }
+
+        // the scans are visited in plan order, which the serialized plan fixes
+        List<String> tableVersions = new ArrayList<>();
+        for (TableScanNode node : searchFrom(root).where(TableScanNode.class::isInstance).<TableScanNode>findAll()) {
+            Optional<String> version = metadata.getTableDataVersion(session, node.getTable());
+            if (!version.isPresent()) {
+                return Optional.empty();
+            }
+            tableVersions.add(version.get());
+        }
+
+        String serializedPlan;
+        try {
+            serializedPlan = objectMapper.writeValueAsString(root);
+        }
+        catch (JsonProcessingException e) {
+            log.warn(e, "Cannot serialize plan for query %s", session.getQueryId());
+            return Optional.empty();
+        }
+
+        Hasher hasher = sha256().newHasher()
+                .putString(serializedPlan, UTF_8)
+                .putString(tableVersions.toString(), UTF_8)
+                .putString(session.getUser(), UTF_8)
+                .putString(session.getCatalog().orElse(""), UTF_8)
+                .putString(session.getSchema().orElse(""), UTF_8)
+                .putString(session.getTimeZoneKey().getId(), UTF_8)
+                .putString(session.getLocale().toLanguageTag(), UTF_8)
+                .putString(new TreeMap<>(session.getSystemProperties()).toString(), UTF_8);
+        session.getConnectorProperties().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + new TreeMap<>(entry.getValue()))
+                .sorted()
+                .forEach(properties -> hasher.putString(properties, UTF_8));
+        return Optional.of(hasher.hash().toString());
+    }
+
+    private boolean containsSessionTimeFunction(RowExpression expression)
+    {
+        FunctionAndTypeManager functionAndTypeManager = metadata.getFunctionAndTypeManager();
+        AtomicBoolean found = new AtomicBoolean();
+        expression.accept(new DefaultRowExpressionTraversalVisitor<AtomicBoolean>()
+        {
+            @Override
+            public Void visitCall(CallExpression call, AtomicBoolean context)
+            {
+                if (SESSION_TIME_FUNCTIONS.contains(functionAndTypeManager.getFunctionMetadata(call.getFunctionHandle()).getName())) {
+                    context.set(true);
+                }
+                return super.visitCall(call, context);
+            }
+
+            @Override
+            public Void visitLambda(LambdaDefinitionExpression lambda, AtomicBoolean context)
+            {
+                return lambda.getBody().accept(this, context);
+            }
+        }, found);
+        return found.get();
+    }
+
+    @JsonIgnoreProperties("transaction")
+    private abstract static class TableHandleWithoutTransaction
+    {
+    }
+
+    private static class CachedResult
+    {
+        private final List<SerializedPage> pages;
+        private final long sizeInBytes;
+        private final long retainedSizeInBytes;
+
+        public CachedResult(List<SerializedPage> pages)
+        {
+            requireNonNull(pages, "pages is null");
+            // pages read from the exchange may be views into larger response buffers
+            this.pages = pages.stream()
+                    .map(CachedResult::compact)
+                    .collect(toImmutableList());
+            this.sizeInBytes = this.pages.stream().mapToLong(SerializedPage::getSizeInBytes).sum();
+            this.retainedSizeInBytes = this.pages.stream().mapToLong(SerializedPage::getRetainedSizeInBytes).sum();
+        }
+
+        private static SerializedPage compact(SerializedPage page)
+        {
+            Slice slice = page.getSlice();
+            if (slice.isCompact()) {
+                return page;
+            }
+            return new SerializedPage(Slices.copyOf(slice), page.getPageCodecMarkers(), page.getPositionCount(), page.getUncompressedSizeInBytes(), page.getChecksum());
+        }
+
+        public List<SerializedPage> getPages()
+        {
+            return pages;
+        }
+
+        public long getSizeInBytes()
+        {
+            return sizeInBytes;
+        }
+
+        public long getRetainedSizeInBytes()
+        {
+            return retainedSizeInBytes;
+        }
+    }
+}
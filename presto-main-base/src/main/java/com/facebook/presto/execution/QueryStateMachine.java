@@ -37,6 +37,7 @@ import com.facebook.presto.spi.analyzer.UpdateInfo;
 import com.facebook.presto.spi.connector.ConnectorCommitHandle;
 import com.facebook.presto.spi.function.SqlFunctionId;
 import com.facebook.presto.spi.function.SqlInvokedFunction;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.plan.PlanNode;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spi.resourceGroups.ResourceGroupId;
@@ -565,6 +566,16 @@ public class QueryStateMachine
         outputManager.updateOutputLocations(newExchangeLocations, noMoreExchangeLocations);
     }
 
+    public void setCachedResult(List<SerializedPage> cachedResult)
+    {
+        outputManager.setCachedResult(cachedResult);
+    }
+
+    public void setResultCacheKey(String resultCacheKey)
+    {
+        outputManager.setResultCacheKey(resultCacheKey);
+    }
+
     public void setInputs(List<Input> inputs)
     {
         requireNonNull(inputs, "inputs is null");
@@ -1427,6 +1438,10 @@ public class QueryStateMachine
         private final Map<URI, TaskId> exchangeLocations = new LinkedHashMap<>();
         @GuardedBy("this")
         private boolean noMoreExchangeLocations;
+        @GuardedBy("this")
+        private Optional<List<SerializedPage>> cachedResult = Optional.empty();
+        @GuardedBy("this")
+        private Optional<String> resultCacheKey = Optional.empty();
 
         public QueryOutputManager(Executor executor)
         {
@@ -1464,6 +1479,26 @@ public class QueryStateMachine
             queryOutputInfo.ifPresent(info -> fireStateChanged(info, outputInfoListeners));
         }
 
+        /**
+         * Must be called before the columns are set, so that every listener sees the cached result.
+         */
+        public synchronized void setCachedResult(List<SerializedPage> cachedResult)
+        {
+            requireNonNull(cachedResult, "cachedResult is null");
+            checkState(columnNames == null, "output fields already set");
+            this.cachedResult = Optional.of(ImmutableList.copyOf(cachedResult));
+        }
+
+        /**
+         * Must be called before the columns are set, so that every listener sees the key.
+         */
+        public synchronized void setResultCacheKey(String resultCacheKey)
+        {
+            requireNonNull(resultCacheKey, "resultCacheKey is null");
+            checkState(columnNames == null, "output fields already set");
+            this.resultCacheKey = Optional.of(resultCacheKey);
+        }
+
         public void updateOutputLocations(Map<URI, TaskId> newExchangeLocations, boolean noMoreExchangeLocations)
         {
             requireNonNull(newExchangeLocations, "newExchangeLocations is null");
@@ -1489,7 +1524,7 @@ public class QueryStateMachine
             if (columnNames == null || columnTypes == null) {
                 return Optional.empty();
             }
-            return Optional.of(new QueryOutputInfo(columnNames, columnTypes, exchangeLocations, noMoreExchangeLocations));
+            return Optional.of(new QueryOutputInfo(columnNames, columnTypes, exchangeLocations, noMoreExchangeLocations, cachedResult, resultCacheKey));
         }
 
         private void fireStateChanged(QueryOutputInfo queryOutputInfo, List<Consumer<QueryOutputInfo>> outputInfoListeners)
@@ -44,6 +44,7 @@ import com.facebook.presto.spi.analyzer.AnalyzerProvider;
 import com.facebook.presto.spi.analyzer.QueryAnalysis;
 import com.facebook.presto.spi.analyzer.QueryAnalyzer;
 import com.facebook.presto.spi.function.FunctionKind;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.plan.OutputNode;
 import com.facebook.presto.spi.plan.PartitioningHandle;
 import com.facebook.presto.spi.plan.PlanNode;
@@ -65,6 +66,7 @@ import com.facebook.presto.sql.planner.SplitSourceFactory;
 import com.facebook.presto.sql.planner.SubPlan;
 import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.planner.sanity.PlanChecker;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.errorprone.annotations.ThreadSafe;
@@ -94,6 +96,11 @@ import static com.facebook.presto.common.RuntimeMetricName.GET_CANONICAL_INFO_TI
 import static com.facebook.presto.common.RuntimeMetricName.LOGICAL_PLANNER_TIME_NANOS;
 import static com.facebook.presto.common.RuntimeMetricName.OPTIMIZER_TIME_NANOS;
 import static com.facebook.presto.common.RuntimeMetricName.PLAN_AND_OPTIMIZE_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeMetricName.QUERY_RESULT_CACHE_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.QUERY_RESULT_CACHE_HIT;
+import static com.facebook.presto.common.RuntimeMetricName.QUERY_RESULT_CACHE_MISS;
+import static com.facebook.presto.common.RuntimeUnit.BYTE;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.execution.QueryStateMachine.pruneHistogramsFromStatsAndCosts;
 import static com.facebook.presto.execution.buffer.OutputBuffers.BROADCAST_PARTITION_ID;
 import static com.facebook.presto.execution.buffer.OutputBuffers.createInitialEmptyOutputBuffers;
@@ -142,6 +149,7 @@ public class SqlQueryExecution
     private final PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
     private final AtomicReference<VariableAllocator> variableAllocator = new AtomicReference<>();
     private final PartialResultQueryManager partialResultQueryManager;
+    private final QueryResultCache queryResultCache;
     private final AtomicReference<Optional<ResourceGroupQueryLimits>> resourceGroupQueryLimits = new AtomicReference<>(Optional.empty());
     private final PlanCanonicalInfoProvider planCanonicalInfoProvider;
     private final QueryAnalysis queryAnalysis;
@@ -177,6 +185,7 @@ public class SqlQueryExecution
             PlanChecker planChecker,
             PartialResultQueryManager partialResultQueryManager,
             PlanCanonicalInfoProvider planCanonicalInfoProvider,
+            QueryResultCache queryResultCache,
             AccessControl accessControl,
             String query)
     {
@@ -202,6 +211,7 @@ public class SqlQueryExecution
             this.stateMachine = requireNonNull(stateMachine, "stateMachine is null");
             this.planChecker = requireNonNull(planChecker, "planChecker is null");
             this.planCanonicalInfoProvider = requireNonNull(planCanonicalInfoProvider, "planCanonicalInfoProvider is null");
+            this.queryResultCache = requireNonNull(queryResultCache, "queryResultCache is null");
             this.accessControl = requireNonNull(accessControl, "accessControl is null");
             this.query = requireNonNull(query, "query is null");
             this.analyzerContext = getAnalyzerContext(queryAnalyzer, metadata.getMetadataResolver(stateMachine.getSession()), idAllocator, new VariableAllocator(), stateMachine.getSession(), query);
@@ -503,6 +513,10 @@ public class SqlQueryExecution
 
                 metadata.beginQuery(getSession(), plan.getConnectors());
 
+                if (plan.getResultCacheKey().isPresent() && startFromResultCache(plan.getRoot(), plan.getResultCacheKey().get())) {
+                    return;
+                }
+
                 // plan distribution of query
                 getSession().getRuntimeStats().recordWallAndCpuTime(CREATE_SCHEDULER_TIME_NANOS, () -> createQueryScheduler(plan));
 
@@ -628,8 +642,10 @@ public class SqlQueryExecution
             // record analysis time
             stateMachine.endAnalysis();
 
+            Optional<String> resultCacheKey = queryResultCache.getCacheKey(getSession(), plan.getRoot());
+
             boolean explainAnalyze = queryAnalysis.isExplainAnalyzeQuery();
-            return new PlanRoot(fragmentedPlan, !explainAnalyze, queryAnalysis.extractConnectors());
+            return new PlanRoot(fragmentedPlan, !explainAnalyze, queryAnalysis.extractConnectors(), resultCacheKey);
         }
         catch (StackOverflowError e) {
             throw new PrestoException(NOT_SUPPORTED, "statement is too large (stack overflow during analysis)", e);
@@ -654,6 +670,32 @@ public class SqlQueryExecution
         }
     }
 
+    /**
+     * Completes the query with the cached result if there is one, without creating a scheduler.
+     * Otherwise, passes the key on so that the result can be cached once the query finishes.
+     */
+    private boolean startFromResultCache(SubPlan outputStagePlan, String resultCacheKey)
+    {
+        Optional<List<SerializedPage>> cachedResult = queryResultCache.get(resultCacheKey);
+        if (!cachedResult.isPresent()) {
+            getSession().getRuntimeStats().addMetricValue(QUERY_RESULT_CACHE_MISS, NONE, 1);
+            stateMachine.setResultCacheKey(resultCacheKey);
+            return false;
+        }
+
+        getSession().getRuntimeStats().addMetricValue(QUERY_RESULT_CACHE_HIT, NONE, 1);
+        getSession().getRuntimeStats().addMetricValue(QUERY_RESULT_CACHE_BYTES, BYTE, cachedResult.get().stream().mapToLong(SerializedPage::getSizeInBytes).sum());
+
+        stateMachine.setCachedResult(cachedResult.get());
+        stateMachine.setColumns(((OutputNode) outputStagePlan.getFragment().getRoot()).getColumnNames(), outputStagePlan.getFragment().getTypes());
+        stateMachine.updateOutputLocations(ImmutableMap.of(), true);
+
+        if (stateMachine.transitionToStarting()) {
+            stateMachine.transitionToFinishing();
+        }
+        return true;
+    }
+
     private void createQueryScheduler(PlanRoot plan)
     {
         CloseableSplitSourceProvider splitSourceProvider = new CloseableSplitSourceProvider(splitManager);
@@ -893,12 +935,14 @@ public class SqlQueryExecution
         private final SubPlan root;
         private final boolean summarizeTaskInfos;
         private final Set<ConnectorId> connectors;
+        private final Optional<String> resultCacheKey;
 
-        public PlanRoot(SubPlan root, boolean summarizeTaskInfos, Set<ConnectorId> connectors)
+        public PlanRoot(SubPlan root, boolean summarizeTaskInfos, Set<ConnectorId> connectors, Optional<String> resultCacheKey)
         {
             this.root = requireNonNull(root, "root is null");
             this.summarizeTaskInfos = summarizeTaskInfos;
             this.connectors = ImmutableSet.copyOf(connectors);
+            this.resultCacheKey = requireNonNull(resultCacheKey, "resultCacheKey is null");
         }
 
         public SubPlan getRoot()
@@ -915,6 +959,11 @@ public class SqlQueryExecution
         {
             return connectors;
         }
+
+        public Optional<String> getResultCacheKey()
+        {
+            return resultCacheKey;
+        }
     }
 
     public static class SqlQueryExecutionFactory
@@ -940,6 +989,7 @@ public class SqlQueryExecution
         private final PlanChecker planChecker;
         private final PartialResultQueryManager partialResultQueryManager;
         private final HistoryBasedPlanStatisticsManager historyBasedPlanStatisticsManager;
+        private final QueryResultCache queryResultCache;
 
         @Inject
         SqlQueryExecutionFactory(
@@ -962,7 +1012,8 @@ public class SqlQueryExecution
                 CostCalculator costCalculator,
                 PlanChecker planChecker,
                 PartialResultQueryManager partialResultQueryManager,
-                HistoryBasedPlanStatisticsManager historyBasedPlanStatisticsManager)
+                HistoryBasedPlanStatisticsManager historyBasedPlanStatisticsManager,
+                QueryResultCache queryResultCache)
         {
             requireNonNull(config, "config is null");
             this.schedulerStats = requireNonNull(schedulerStats, "schedulerStats is null");
@@ -986,6 +1037,7 @@ public class SqlQueryExecution
             this.planChecker = requireNonNull(planChecker, "planChecker is null");
             this.partialResultQueryManager = requireNonNull(partialResultQueryManager, "partialResultQueryManager is null");
             this.historyBasedPlanStatisticsManager = requireNonNull(historyBasedPlanStatisticsManager, "historyBasedPlanStatisticsManager is null");
+            this.queryResultCache = requireNonNull(queryResultCache, "queryResultCache is null");
         }
 
         @Override
@@ -1030,6 +1082,7 @@ public class SqlQueryExecution
                     planChecker,
                     partialResultQueryManager,
                     historyBasedPlanStatisticsManager.getPlanCanonicalInfoProvider(),
+                    queryResultCache,
                     accessControl,
                     query);
         }
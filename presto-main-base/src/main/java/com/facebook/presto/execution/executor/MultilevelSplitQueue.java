@@ -14,6 +14,7 @@
 package com.facebook.presto.execution.executor;
 
 import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
 import com.facebook.presto.execution.TaskManagerConfig;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
@@ -27,58 +28,96 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.floorMod;
 import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
+/**
+ * Waiting splits are kept in one or more run queues. With a single run queue all the runner threads
+ * take splits from the same queue. With multiple run queues a split which yields or unblocks is put
+ * back into the queue of the runner which ran it last, and a runner which has nothing to run is woken
+ * up when a split is put into the queue of a busy runner.
+ * <p>
+ * The scheduled time and the waiting split counts of the levels are shared by all the run queues. A
+ * runner takes the next split from its own queue, selecting the level among the levels waiting there
+ * the same way as with a single queue, unless a level waiting only in other run queues is behind its
+ * target scheduled time by more than {@link #STEAL_LEVEL_RATIO_MARGIN} times the selected level of its
+ * own queue. Only then does the runner scan the other run queues, which publish the lowest level
+ * priority waiting at each level, and steal the split with the lowest priority of that level. A runner
+ * whose own queue is empty steals the same way. The level selection thus only deviates from a single
+ * queue within a bounded margin: a level which is not run falls further behind its target while the
+ * other levels run, until the runners of the other run queues steal its splits.
+ */
 @ThreadSafe
 public class MultilevelSplitQueue
 {
     static final int[] LEVEL_THRESHOLD_SECONDS = {0, 1, 10, 60, 300};
     static final long LEVEL_CONTRIBUTION_CAP = SECONDS.toNanos(30);
+    // how much further a level may fall behind its target scheduled time than the levels waiting in a runner's own queue before the runner steals it
+    static final double STEAL_LEVEL_RATIO_MARGIN = 2;
 
-    @GuardedBy("lock")
-    private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits;
+    private final RunQueue[] runQueues;
+    private final AtomicInteger nextRunQueue = new AtomicInteger();
 
     private final AtomicLong[] levelScheduledTime = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
+    private final AtomicInteger[] levelWaitingSplitCount = new AtomicInteger[LEVEL_THRESHOLD_SECONDS.length];
 
     private final AtomicLong[] levelMinPriority;
     private final List<CounterStat> selectedLevelCounters;
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private final Condition notEmpty = lock.newCondition();
+    private final CounterStat stolenSplits = new CounterStat();
+    private final TimeStat lockWaitTime = new TimeStat(NANOSECONDS);
 
     private final double levelTimeMultiplier;
 
     @Inject
     public MultilevelSplitQueue(TaskManagerConfig taskManagerConfig)
     {
-        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue());
+        this(taskManagerConfig.getLevelTimeMultiplier().doubleValue(), taskManagerConfig.isWorkStealingEnabled() ? taskManagerConfig.getMaxWorkerThreads() : 1);
     }
 
     public MultilevelSplitQueue(double levelTimeMultiplier)
     {
+        this(levelTimeMultiplier, 1);
+    }
+
+    public MultilevelSplitQueue(double levelTimeMultiplier, int runQueueCount)
+    {
+        checkArgument(runQueueCount > 0, "runQueueCount must be at least 1");
         this.levelMinPriority = new AtomicLong[LEVEL_THRESHOLD_SECONDS.length];
-        this.levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
         ImmutableList.Builder<CounterStat> counters = ImmutableList.builder();
 
         for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
             levelScheduledTime[i] = new AtomicLong();
+            levelWaitingSplitCount[i] = new AtomicInteger();
             levelMinPriority[i] = new AtomicLong(-1);
-            levelWaitingSplits.add(new PriorityQueue<>());
             counters.add(new CounterStat());
         }
 
+        this.runQueues = new RunQueue[runQueueCount];
+        for (int i = 0; i < runQueueCount; i++) {
+            runQueues[i] = new RunQueue();
+        }
+
         this.selectedLevelCounters = counters.build();
 
         this.levelTimeMultiplier = levelTimeMultiplier;
     }
 
+    public int getRunQueueCount()
+    {
+        return runQueues.length;
+    }
+
     private void addLevelTime(int level, long nanos)
     {
         levelScheduledTime[level].addAndGet(nanos);
@@ -100,53 +139,256 @@ public class MultilevelSplitQueue
 
         split.setReady();
         int level = split.getPriority().getLevel();
-        lock.lock();
-        try {
-            if (levelWaitingSplits.get(level).isEmpty()) {
-                // Accesses to levelScheduledTime are not synchronized, so we have a data race
-                // here - our level time math will be off. However, the staleness is bounded by
-                // the fact that only running splits that complete during this computation
-                // can update the level time. Therefore, this is benign.
-                long level0Time = getLevel0TargetTime();
-                long levelExpectedTime = (long) (level0Time / Math.pow(levelTimeMultiplier, level));
-                long delta = levelExpectedTime - levelScheduledTime[level].get();
-                levelScheduledTime[level].addAndGet(delta);
-            }
+        if (levelWaitingSplitCount[level].getAndIncrement() == 0) {
+            // Accesses to levelScheduledTime are not synchronized, so we have a data race
+            // here - our level time math will be off. However, the staleness is bounded by
+            // the fact that only running splits that complete during this computation
+            // can update the level time. Therefore, this is benign.
+            long level0Time = getLevel0TargetTime();
+            long levelExpectedTime = (long) (level0Time / Math.pow(levelTimeMultiplier, level));
+            long delta = levelExpectedTime - levelScheduledTime[level].get();
+            levelScheduledTime[level].addAndGet(delta);
+        }
 
-            levelWaitingSplits.get(level).offer(split);
-            notEmpty.signal();
+        // splits which have not run yet are spread over the run queues
+        int runQueueIndex = split.getRunQueue();
+        if (runQueueIndex < 0 || runQueueIndex >= runQueues.length) {
+            runQueueIndex = floorMod(nextRunQueue.getAndIncrement(), runQueues.length);
+        }
+
+        RunQueue runQueue = runQueues[runQueueIndex];
+        lock(runQueue);
+        try {
+            runQueue.levelWaitingSplits.get(level).offer(split);
+            runQueue.size++;
+            runQueue.updateLevelHeadPriority(level);
+            runQueue.notEmpty.signal();
         }
         finally {
-            lock.unlock();
+            runQueue.lock.unlock();
+        }
+
+        if (!runQueue.idle) {
+            wakeIdleRunner(runQueueIndex);
         }
     }
 
     public PrioritizedSplitRunner take()
             throws InterruptedException
     {
+        return take(0);
+    }
+
+    /**
+     * Takes the next split for the runner of the given run queue, from its own queue unless another run
+     * queue holds a split of a level which is much further behind, and waits if there are no waiting splits at all.
+     */
+    public PrioritizedSplitRunner take(int runQueueIndex)
+            throws InterruptedException
+    {
+        checkElementIndex(runQueueIndex, runQueues.length, "runQueueIndex");
+        RunQueue runQueue = runQueues[runQueueIndex];
         while (true) {
-            lock.lockInterruptibly();
-            try {
-                PrioritizedSplitRunner result;
-                while ((result = pollSplit()) == null) {
-                    notEmpty.await();
+            PrioritizedSplitRunner result = poll(runQueueIndex);
+            if (result == null) {
+                runQueue.idle = true;
+                try {
+                    // poll again after the runner is marked as idle, so that a split which is offered
+                    // to a busy run queue in the meantime either wakes up this runner or is found here
+                    result = poll(runQueueIndex);
+                    if (result == null) {
+                        awaitSplit(runQueue);
+                        continue;
+                    }
+                }
+                finally {
+                    runQueue.idle = false;
                 }
+            }
+
+            // the split stays with the runner which runs it
+            result.setRunQueue(runQueueIndex);
+
+            if (result.updateLevelPriority()) {
+                offer(result);
+                continue;
+            }
+
+            int selectedLevel = result.getPriority().getLevel();
+            levelMinPriority[selectedLevel].set(result.getPriority().getLevelPriority());
+            selectedLevelCounters.get(selectedLevel).update(1);
 
-                if (result.updateLevelPriority()) {
-                    offer(result);
-                    continue;
+            // this runner may have been woken up for a different split than the one it took,
+            // so pass the wake up on while there are splits waiting for busy runners
+            if (hasSplitsWaitingForBusyRunners()) {
+                wakeIdleRunner(runQueueIndex);
+            }
+
+            return result;
+        }
+    }
+
+    private PrioritizedSplitRunner poll(int runQueueIndex)
+    {
+        RunQueue ownQueue = runQueues[runQueueIndex];
+
+        // select the level among the levels with waiting splits in any run queue, and among the levels
+        // with waiting splits in the runner's own queue, see pollSplit(RunQueue)
+        long targetScheduledTime = getLevel0TargetTime();
+        int selectedLevel = -1;
+        double selectedRatio = 0;
+        int ownLevel = -1;
+        double ownRatio = 0;
+        for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+            if (levelWaitingSplitCount[level].get() > 0) {
+                long levelTime = levelScheduledTime[level].get();
+                double ratio = levelTime == 0 ? 0 : targetScheduledTime / (1.0 * levelTime);
+                if (selectedLevel == -1 || ratio > selectedRatio) {
+                    selectedRatio = ratio;
+                    selectedLevel = level;
+                }
+                if (ownQueue.levelHeadPriority.get(level) != Long.MAX_VALUE && (ownLevel == -1 || ratio > ownRatio)) {
+                    ownRatio = ratio;
+                    ownLevel = level;
                 }
+            }
 
-                int selectedLevel = result.getPriority().getLevel();
-                levelMinPriority[selectedLevel].set(result.getPriority().getLevelPriority());
-                selectedLevelCounters.get(selectedLevel).update(1);
+            targetScheduledTime /= levelTimeMultiplier;
+        }
+        if (selectedLevel == -1) {
+            return null;
+        }
 
+        if (ownLevel != -1 && selectedRatio <= ownRatio * STEAL_LEVEL_RATIO_MARGIN) {
+            PrioritizedSplitRunner result = poll(ownQueue, ownLevel);
+            if (result != null) {
                 return result;
             }
-            finally {
-                lock.unlock();
+        }
+
+        int bestRunQueueIndex = -1;
+        long bestPriority = Long.MAX_VALUE;
+        for (int i = 0; i < runQueues.length; i++) {
+            int index = (runQueueIndex + i) % runQueues.length;
+            long priority = runQueues[index].levelHeadPriority.get(selectedLevel);
+            if (priority < bestPriority) {
+                bestPriority = priority;
+                bestRunQueueIndex = index;
+            }
+        }
+        if (bestRunQueueIndex != -1) {
+            PrioritizedSplitRunner result = poll(runQueues[bestRunQueueIndex], selectedLevel);
+            if (result != null) {
+                if (bestRunQueueIndex != runQueueIndex) {
+                    stolenSplits.update(1);
+                }
+                return result;
             }
         }
+
+        // the split was taken by another runner, or the shared state is not up to date yet
+        PrioritizedSplitRunner result = poll(runQueues[runQueueIndex]);
+        if (result != null) {
+            return result;
+        }
+
+        for (int i = 1; i < runQueues.length; i++) {
+            RunQueue victim = runQueues[(runQueueIndex + i) % runQueues.length];
+            if (victim.size == 0) {
+                continue;
+            }
+            result = poll(victim);
+            if (result != null) {
+                stolenSplits.update(1);
+                return result;
+            }
+        }
+        return null;
+    }
+
+    private PrioritizedSplitRunner poll(RunQueue runQueue)
+    {
+        lock(runQueue);
+        try {
+            return pollSplit(runQueue);
+        }
+        finally {
+            runQueue.lock.unlock();
+        }
+    }
+
+    private PrioritizedSplitRunner poll(RunQueue runQueue, int level)
+    {
+        lock(runQueue);
+        try {
+            return pollSplit(runQueue, level);
+        }
+        finally {
+            runQueue.lock.unlock();
+        }
+    }
+
+    private void awaitSplit(RunQueue runQueue)
+            throws InterruptedException
+    {
+        if (!runQueue.lock.tryLock()) {
+            long start = System.nanoTime();
+            runQueue.lock.lockInterruptibly();
+            lockWaitTime.add(System.nanoTime() - start, NANOSECONDS);
+        }
+        try {
+            while (!runQueue.wakeUp && runQueue.size == 0) {
+                runQueue.notEmpty.await();
+            }
+            runQueue.wakeUp = false;
+        }
+        finally {
+            runQueue.lock.unlock();
+        }
+    }
+
+    private boolean hasSplitsWaitingForBusyRunners()
+    {
+        if (runQueues.length == 1) {
+            return false;
+        }
+        for (RunQueue runQueue : runQueues) {
+            if (runQueue.size > 0 && !runQueue.idle) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void wakeIdleRunner(int busyRunQueueIndex)
+    {
+        for (int i = 1; i < runQueues.length; i++) {
+            RunQueue runQueue = runQueues[(busyRunQueueIndex + i) % runQueues.length];
+            if (runQueue.idle) {
+                lock(runQueue);
+                try {
+                    if (runQueue.idle) {
+                        // claim the runner, so that the next split offered to a busy run queue wakes up another one
+                        runQueue.idle = false;
+                        runQueue.wakeUp = true;
+                        runQueue.notEmpty.signal();
+                        return;
+                    }
+                }
+                finally {
+                    runQueue.lock.unlock();
+                }
+            }
+        }
+    }
+
+    private void lock(RunQueue runQueue)
+    {
+        if (!runQueue.lock.tryLock()) {
+            long start = System.nanoTime();
+            runQueue.lock.lock();
+            lockWaitTime.add(System.nanoTime() - start, NANOSECONDS);
+        }
     }
 
     /**
@@ -157,14 +399,14 @@ public class MultilevelSplitQueue
      * with the objective of minimizing deviation from the target scheduled time. From this level,
      * we pick the split with the lowest priority.
      */
-    @GuardedBy("lock")
-    private PrioritizedSplitRunner pollSplit()
+    @GuardedBy("runQueue.lock")
+    private PrioritizedSplitRunner pollSplit(RunQueue runQueue)
     {
         long targetScheduledTime = getLevel0TargetTime();
         double worstRatio = 1;
         int selectedLevel = -1;
         for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
-            if (!levelWaitingSplits.get(level).isEmpty()) {
+            if (!runQueue.levelWaitingSplits.get(level).isEmpty()) {
                 long levelTime = levelScheduledTime[level].get();
                 double ratio = levelTime == 0 ? 0 : targetScheduledTime / (1.0 * levelTime);
                 if (selectedLevel == -1 || ratio > worstRatio) {
@@ -180,13 +422,24 @@ public class MultilevelSplitQueue
             return null;
         }
 
-        PrioritizedSplitRunner result = levelWaitingSplits.get(selectedLevel).poll();
+        PrioritizedSplitRunner result = pollSplit(runQueue, selectedLevel);
         checkState(result != null, "pollSplit cannot return null");
+        return result;
+    }
 
+    @GuardedBy("runQueue.lock")
+    private PrioritizedSplitRunner pollSplit(RunQueue runQueue, int level)
+    {
+        PrioritizedSplitRunner result = runQueue.levelWaitingSplits.get(level).poll();
+        if (result == null) {
+            return null;
+        }
+        runQueue.size--;
+        runQueue.updateLevelHeadPriority(level);
+        levelWaitingSplitCount[level].decrementAndGet();
         return result;
     }
 
-    @GuardedBy("lock")
     private long getLevel0TargetTime()
     {
         long level0TargetTime = levelScheduledTime[0].get();
@@ -246,27 +499,42 @@ public class MultilevelSplitQueue
     public void remove(PrioritizedSplitRunner split)
     {
         checkArgument(split != null, "split is null");
-        lock.lock();
-        try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.remove(split);
+        for (RunQueue runQueue : runQueues) {
+            lock(runQueue);
+            try {
+                for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+                    if (runQueue.levelWaitingSplits.get(level).remove(split)) {
+                        runQueue.size--;
+                        runQueue.updateLevelHeadPriority(level);
+                        levelWaitingSplitCount[level].decrementAndGet();
+                    }
+                }
+            }
+            finally {
+                runQueue.lock.unlock();
             }
-        }
-        finally {
-            lock.unlock();
         }
     }
 
     public void removeAll(Collection<PrioritizedSplitRunner> splits)
     {
-        lock.lock();
-        try {
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                level.removeAll(splits);
+        for (RunQueue runQueue : runQueues) {
+            lock(runQueue);
+            try {
+                for (int level = 0; level < LEVEL_THRESHOLD_SECONDS.length; level++) {
+                    PriorityQueue<PrioritizedSplitRunner> levelSplits = runQueue.levelWaitingSplits.get(level);
+                    int sizeBefore = levelSplits.size();
+                    if (levelSplits.removeAll(splits)) {
+                        int removed = sizeBefore - levelSplits.size();
+                        runQueue.size -= removed;
+                        runQueue.updateLevelHeadPriority(level);
+                        levelWaitingSplitCount[level].addAndGet(-removed);
+                    }
+                }
+            }
+            finally {
+                runQueue.lock.unlock();
             }
-        }
-        finally {
-            lock.unlock();
         }
     }
 
@@ -278,17 +546,11 @@ public class MultilevelSplitQueue
 
     public int size()
     {
-        lock.lock();
-        try {
-            int total = 0;
-            for (PriorityQueue<PrioritizedSplitRunner> level : levelWaitingSplits) {
-                total += level.size();
-            }
-            return total;
-        }
-        finally {
-            lock.unlock();
+        int total = 0;
+        for (RunQueue runQueue : runQueues) {
+            total += runQueue.size;
         }
+        return total;
     }
 
     public static int computeLevel(long threadUsageNanos)
@@ -373,4 +635,61 @@ public class MultilevelSplitQueue
     {
         return selectedLevelCounters.get(4);
     }
+
+    @Managed
+    public int getRunQueues()
+    {
+        return runQueues.length;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getStolenSplits()
+    {
+        return stolenSplits;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getLockWaitTime()
+    {
+        return lockWaitTime;
+    }
+
+    private static class RunQueue
+    {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+
+        @GuardedBy("lock")
+        private final List<PriorityQueue<PrioritizedSplitRunner>> levelWaitingSplits = new ArrayList<>(LEVEL_THRESHOLD_SECONDS.length);
+
+        // only modified with the lock held, but read without it to find the run queues to steal from
+        private volatile int size;
+
+        // set while the runner of this queue has nothing to run
+        private volatile boolean idle;
+
+        // the level priority of the first split waiting at each level, or Long.MAX_VALUE if there is none,
+        // only modified with the lock held, but read without it to find the run queue to take a split from
+        private final AtomicLongArray levelHeadPriority = new AtomicLongArray(LEVEL_THRESHOLD_SECONDS.length);
+
+        @GuardedBy("lock")
+        private boolean wakeUp;
+
+        private RunQueue()
+        {
+            for (int i = 0; i < LEVEL_THRESHOLD_SECONDS.length; i++) {
+                levelWaitingSplits.add(new PriorityQueue<>());
+                levelHeadPriority.set(i, Long.MAX_VALUE);
+            }
+        }
+
+        @GuardedBy("lock")
+        private void updateLevelHeadPriority(int level)
+        {
+            PrioritizedSplitRunner head = levelWaitingSplits.get(level).peek();
+            levelHeadPriority.set(level, head == null ? Long.MAX_VALUE : head.getPriority().getLevelPriority());
+        }
+    }
 }
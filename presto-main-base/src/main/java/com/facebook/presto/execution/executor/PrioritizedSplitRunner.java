@@ -74,6 +74,9 @@ public class PrioritizedSplitRunner
     private final TimeStat blockedQuantaWallTime;
     private final TimeStat unblockedQuantaWallTime;
 
+    // the run queue of the runner which ran this split last, or -1 if it has not run yet
+    private volatile int runQueue = -1;
+
     PrioritizedSplitRunner(
             TaskHandle taskHandle,
             SplitRunner splitRunner,
@@ -233,6 +236,16 @@ public class PrioritizedSplitRunner
         return Long.compare(workerId, o.workerId);
     }
 
+    public int getRunQueue()
+    {
+        return runQueue;
+    }
+
+    public void setRunQueue(int runQueue)
+    {
+        this.runQueue = runQueue;
+    }
+
     public int getSplitId()
     {
         return splitId;
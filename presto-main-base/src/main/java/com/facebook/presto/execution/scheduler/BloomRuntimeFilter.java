@@ -0,0 +1,326 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.scheduler;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.EquatableValueSet;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.SortedRangeSet;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.predicate.TupleDomainFilter.AbstractTupleDomainFilter;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.common.type.AbstractLongType;
+import com.facebook.presto.common.type.Type;
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.slice.XxHash64;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.common.Utils.nativeValueToBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bloom filter over the join key values of the build side, for keys with too many distinct
+ * values to be shipped as a {@link DomainRuntimeFilter}.
+ *
+ * <p>The filter is split into blocks of {@link #BLOCK_WORDS} words, which is a single cache
+ * line. A value selects one block from its hash and sets one bit in every word of the block,
+ * so that both adding and probing a value touch a single cache line. Values are hashed with
+ * {@link Type#hash}, so the build and probe values must be of the same type. Nulls are never
+ * added and never match, as they never match in an equi-join either.
+ *
+ * <p>Filters of the same size are union-merged by OR-ing their bits. Merging with a
+ * {@link DomainRuntimeFilter} of discrete values adds the values to the filter.
+ *
+ * <p>A filter is mutable while it is being built by a single thread, and must not be modified
+ * once it has been handed over to other threads.
+ *
+ * <p>Bloom filters are only applied by local dynamic filtering, to the table scans on the probe
+ * side of a join in the same task as its build side, such as broadcast joins. The scans pass them
+ * to the connectors with {@link #toTupleDomainFilter}, so that selective readers can skip rows
+ * while decoding, and also apply them to the pages returned by the connectors. Workers do not
+ * report them to the coordinator, so the probe scans of partitioned joins, which run in another
+ * stage, are not filtered by them.
+ *
+ * <p>Wire form: {@code {"@kind": "bloom", "bits": "<base64>"}}.
+ */
+public class BloomRuntimeFilter
+        implements RuntimeFilter
+{
+    public static final String KIND = "bloom";
+
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BloomRuntimeFilter.class).instanceSize();
+
+    private static final int BLOCK_WORDS = 8;
+    private static final long[] SALTS = {
+            0x47b6137b44974d91L,
+            0x8824ad5ba2b7289dL,
+            0x705495c72df1424bL,
+            0x9efc49475c6bfb31L,
+            0x1b2e4f2f0a5d0b67L,
+            0xd0c1b2a3f4e5d6c7L,
+            0x5bd1e9955bd1e995L,
+            0xc6a4a7935bd1e995L};
+
+    // beyond this ratio of set bits the false positive rate is too high for the filter to be worth evaluating
+    private static final double MAX_FILL_RATIO = 0.5;
+
+    private final long[] bits;
+    private final int blockCount;
+
+    /**
+     * Creates an empty filter of at most {@code maxSizeInBytes}, and at least a single block.
+     */
+    public static BloomRuntimeFilter create(long maxSizeInBytes)
+    {
+        long words = Math.max(BLOCK_WORDS, Long.highestOneBit(Math.max(maxSizeInBytes / Long.BYTES, 1)));
+        return new BloomRuntimeFilter(new long[toIntExact(Math.min(words, 1 << 30))]);
+    }
+
+    public static BloomRuntimeFilter fromBytes(byte[] bytes)
+    {
+        requireNonNull(bytes, "bytes is null");
+        checkArgument(bytes.length % Long.BYTES == 0, "Invalid Bloom filter size: %s bytes", bytes.length);
+        long[] bits = new long[bytes.length / Long.BYTES];
+        Slices.wrappedBuffer(bytes).getBytes(0, Slices.wrappedLongArray(bits));
+        return new BloomRuntimeFilter(bits);
+    }
+
+    private BloomRuntimeFilter(long[] bits)
+    {
+        checkArgument(bits.length >= BLOCK_WORDS && Integer.bitCount(bits.length) == 1, "Invalid Bloom filter size: %s words", bits.length);
+        this.bits = bits;
+        this.blockCount = bits.length / BLOCK_WORDS;
+    }
+
+    @JsonValue
+    public Map<String, Object> toJson()
+    {
+        return ImmutableMap.of("@kind", KIND, "bits", toBytes());
+    }
+
+    public byte[] toBytes()
+    {
+        Slice slice = Slices.wrappedLongArray(bits);
+        return slice.getBytes();
+    }
+
+    public int getSizeInBytes()
+    {
+        return bits.length * Long.BYTES;
+    }
+
+    public void add(Type type, Block block, int position)
+    {
+        if (!block.isNull(position)) {
+            addHash(type.hash(block, position));
+        }
+    }
+
+    public void addHash(long hash)
+    {
+        int offset = blockOffset(hash);
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            bits[offset + i] |= bitMask(hash, i);
+        }
+    }
+
+    public boolean mightContain(Type type, Block block, int position)
+    {
+        return !block.isNull(position) && mightContainHash(type.hash(block, position));
+    }
+
+    public boolean mightContainHash(long hash)
+    {
+        int offset = blockOffset(hash);
+        for (int i = 0; i < BLOCK_WORDS; i++) {
+            long mask = bitMask(hash, i);
+            if ((bits[offset + i] & mask) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public RuntimeFilter mergeWith(RuntimeFilter other)
+    {
+        if (other instanceof BloomRuntimeFilter) {
+            long[] otherBits = ((BloomRuntimeFilter) other).bits;
+            checkArgument(otherBits.length == bits.length,
+                    "Cannot merge Bloom filters of different sizes: %s and %s words", bits.length, otherBits.length);
+            long[] merged = new long[bits.length];
+            for (int i = 0; i < merged.length; i++) {
+                merged[i] = bits[i] | otherBits[i];
+            }
+            return new BloomRuntimeFilter(merged);
+        }
+        if (!(other instanceof DomainRuntimeFilter)) {
+            throw new IllegalArgumentException(
+                    "Cannot merge a BloomRuntimeFilter with " + other.getClass().getSimpleName());
+        }
+
+        TupleDomain<String> domain = ((DomainRuntimeFilter) other).getDomain();
+        if (domain.isNone()) {
+            return this;
+        }
+        Map<String, Domain> domains = domain.getDomains().get();
+        Optional<List<Object>> values = domains.size() == 1 ? getDiscreteValues(domains.values().iterator().next()) : Optional.empty();
+        if (!values.isPresent()) {
+            // the union with ranges cannot be represented, so nothing can be filtered
+            return new DomainRuntimeFilter(TupleDomain.all());
+        }
+        Type type = domains.values().iterator().next().getType();
+        BloomRuntimeFilter merged = new BloomRuntimeFilter(bits.clone());
+        for (Object value : values.get()) {
+            merged.addHash(type.hash(nativeValueToBlock(type, value), 0));
+        }
+        return merged;
+    }
+
+    private static Optional<List<Object>> getDiscreteValues(Domain domain)
+    {
+        ValueSet values = domain.getValues();
+        if (values instanceof SortedRangeSet) {
+            ImmutableList.Builder<Object> discreteValues = ImmutableList.builder();
+            for (Range range : values.getRanges().getOrderedRanges()) {
+                if (!range.isSingleValue()) {
+                    return Optional.empty();
+                }
+                discreteValues.add(range.getSingleValue());
+            }
+            return Optional.of(discreteValues.build());
+        }
+        if (values instanceof EquatableValueSet && values.getDiscreteValues().isWhiteList()) {
+            return Optional.of(ImmutableList.copyOf(values.getDiscreteValues().getValues()));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * A Bloom filter cannot be expressed as a {@link TupleDomain}, so it does not constrain
+     * the connector and is only evaluated against the rows read by the table scan.
+     */
+    @Override
+    public TupleDomain<String> toTupleDomain(String column, Type type)
+    {
+        return isNone() ? TupleDomain.none() : TupleDomain.all();
+    }
+
+    /**
+     * Returns the filter as a {@link TupleDomainFilter} for the selective readers of the
+     * connectors, which test the values as they are decoded rather than as blocks. Only the
+     * types whose decoded values hash the same as their blocks are supported.
+     */
+    public Optional<TupleDomainFilter> toTupleDomainFilter(Type type)
+    {
+        if (type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) || type.equals(DATE) || type.equals(VARCHAR)) {
+            return Optional.of(new BloomTupleDomainFilter(this));
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public boolean isAll()
+    {
+        long setBits = 0;
+        for (long word : bits) {
+            setBits += Long.bitCount(word);
+        }
+        return setBits > (long) bits.length * Long.SIZE * MAX_FILL_RATIO;
+    }
+
+    @Override
+    public boolean isNone()
+    {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long estimatedRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(bits);
+    }
+
+    private int blockOffset(long hash)
+    {
+        // the block is selected by the high bits, which are independent of the bits selected within the words
+        return (int) (((hash >>> 32) * blockCount) >>> 32) * BLOCK_WORDS;
+    }
+
+    private static long bitMask(long hash, int word)
+    {
+        return 1L << ((hash * SALTS[word]) >>> 58);
+    }
+
+    private static class BloomTupleDomainFilter
+            extends AbstractTupleDomainFilter
+    {
+        private final BloomRuntimeFilter filter;
+
+        private BloomTupleDomainFilter(BloomRuntimeFilter filter)
+        {
+            super(true, false);
+            this.filter = requireNonNull(filter, "filter is null");
+        }
+
+        @Override
+        public boolean testLong(long value)
+        {
+            // the integer types hash as their value widened to a long
+            return filter.mightContainHash(AbstractLongType.hash(value));
+        }
+
+        @Override
+        public boolean testBytes(byte[] buffer, int offset, int length)
+        {
+            return filter.mightContainHash(XxHash64.hash(Slices.wrappedBuffer(buffer), offset, length));
+        }
+
+        @Override
+        public boolean testLength(int length)
+        {
+            return true;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "BloomTupleDomainFilter{sizeInBytes=" + filter.getSizeInBytes() + "}";
+        }
+    }
+}
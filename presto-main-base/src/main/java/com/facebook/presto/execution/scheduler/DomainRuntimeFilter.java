@@ -57,6 +57,9 @@ public class DomainRuntimeFilter
     @Override
     public RuntimeFilter mergeWith(RuntimeFilter other)
     {
+        if (other instanceof BloomRuntimeFilter) {
+            return other.mergeWith(this);
+        }
         if (!(other instanceof DomainRuntimeFilter)) {
             throw new IllegalArgumentException(
                     "Cannot merge a DomainRuntimeFilter with " + other.getClass().getSimpleName());
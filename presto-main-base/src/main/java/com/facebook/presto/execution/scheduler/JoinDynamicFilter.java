@@ -288,6 +288,10 @@ public class JoinDynamicFilter
         if (filter.estimatedRetainedSizeInBytes() <= maxSizeInBytes) {
             return filter;
         }
+        if (filter instanceof BloomRuntimeFilter) {
+            // a Bloom filter has no smaller representation
+            return new DomainRuntimeFilter(TupleDomain.all());
+        }
         verify(filter instanceof DomainRuntimeFilter,
                 "Cannot collapse oversized %s; add collapse support before introducing new RuntimeFilter types",
                 filter.getClass().getSimpleName());
@@ -402,7 +406,7 @@ public class JoinDynamicFilter
             return TupleDomain.all();
         }
         // type may be null when no probe-column domain has been set; implementations
-        // that need it (e.g. future BloomRuntimeFilter) should handle null gracefully.
+        // that need it should handle null gracefully.
         @javax.annotation.Nullable Type type = probeColumnDomain != null ? probeColumnDomain.getType() : null;
         return mergedConstraint.toTupleDomain(columnName, type);
     }
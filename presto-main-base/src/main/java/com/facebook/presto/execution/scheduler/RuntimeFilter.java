@@ -26,7 +26,7 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
  * <ul>
  *   <li>{@link DomainRuntimeFilter} — a {@link TupleDomain} of discrete values or ranges,
  *       used for all current filter delivery.</li>
- *   <li>Future: {@code BloomRuntimeFilter} — a Bloom filter for high-cardinality keys;
+ *   <li>{@link BloomRuntimeFilter} — a Bloom filter for high-cardinality keys;
  *       handled by {@link RuntimeFilterDeserializer} via {@code @kind: "bloom"}.</li>
  * </ul>
  *
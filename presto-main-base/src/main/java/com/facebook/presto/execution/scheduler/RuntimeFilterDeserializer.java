@@ -36,6 +36,13 @@ public class RuntimeFilterDeserializer
         JsonNode node = mapper.readTree(parser);
         JsonNode kind = node.get("@kind");
 
+        if (kind != null && BloomRuntimeFilter.KIND.equals(kind.asText())) {
+            JsonNode bits = node.get("bits");
+            if (bits == null) {
+                throw new IOException("Missing bits of Bloom RuntimeFilter");
+            }
+            return BloomRuntimeFilter.fromBytes(bits.binaryValue());
+        }
         if (kind != null && !"tupleDomain".equals(kind.asText())) {
             throw new IOException("Unknown RuntimeFilter @kind: " + kind.asText());
         }
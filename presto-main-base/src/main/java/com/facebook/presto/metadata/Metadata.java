@@ -631,6 +631,15 @@ public interface Metadata
         return NOT_APPLICABLE;
     }
 
+    /**
+     * Returns the version of the data read through the specified table handle, or empty if the connector
+     * does not report versions for the table.
+     */
+    default Optional<String> getTableDataVersion(Session session, TableHandle tableHandle)
+    {
+        return Optional.empty();
+    }
+
     void dropBranch(Session session, TableHandle tableHandle, String branchName, boolean branchExists);
 
     void createBranch(Session session,
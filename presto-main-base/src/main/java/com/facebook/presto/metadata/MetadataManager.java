@@ -1797,6 +1797,17 @@ public class MetadataManager
         return metadata.getTableLayoutFilterCoverage(tableHandle.getLayout().get(), relevantPartitionColumns);
     }
 
+    @Override
+    public Optional<String> getTableDataVersion(Session session, TableHandle tableHandle)
+    {
+        requireNonNull(tableHandle, "tableHandle cannot be null");
+
+        ConnectorId connectorId = tableHandle.getConnectorId();
+        CatalogMetadata catalogMetadata = getCatalogMetadata(session, connectorId);
+        ConnectorMetadata metadata = catalogMetadata.getMetadataFor(connectorId);
+        return metadata.getTableDataVersion(session.toConnectorSession(connectorId), tableHandle.getConnectorHandle(), tableHandle.getLayout());
+    }
+
     @Override
     public void dropBranch(Session session, TableHandle tableHandle, String branchName, boolean branchExists)
     {
@@ -133,6 +133,7 @@ public class MetadataManagerStats
     private final AtomicLong renameColumnCalls = new AtomicLong();
     private final AtomicLong normalizeIdentifierCalls = new AtomicLong();
     private final AtomicLong getTableLayoutFilterCoverageCalls = new AtomicLong();
+    private final AtomicLong getTableDataVersionCalls = new AtomicLong();
     private final AtomicLong getTableStatisticsCalls = new AtomicLong();
     private final AtomicLong getCatalogNamesWithConnectorContextCalls = new AtomicLong();
     private final AtomicLong isPushdownSupportedForFilterCalls = new AtomicLong();
@@ -247,6 +248,7 @@ public class MetadataManagerStats
     private final TimeStat renameColumnTime = new TimeStat(TimeUnit.NANOSECONDS);
     private final TimeStat normalizeIdentifierTime = new TimeStat(TimeUnit.NANOSECONDS);
     private final TimeStat getTableLayoutFilterCoverageTime = new TimeStat(TimeUnit.NANOSECONDS);
+    private final TimeStat getTableDataVersionTime = new TimeStat(TimeUnit.NANOSECONDS);
     private final TimeStat getTableStatisticsTime = new TimeStat(TimeUnit.NANOSECONDS);
     private final TimeStat getCatalogNamesWithConnectorContextTime = new TimeStat(TimeUnit.NANOSECONDS);
     private final TimeStat isPushdownSupportedForFilterTime = new TimeStat(TimeUnit.NANOSECONDS);
@@ -425,6 +427,12 @@ public class MetadataManagerStats
         return getTableLayoutFilterCoverageCalls.get();
     }
 
+    @Managed
+    public long getGetTableDataVersionCalls()
+    {
+        return getTableDataVersionCalls.get();
+    }
+
     @Managed
     public long getGetTableStatisticsCalls()
     {
@@ -1712,6 +1720,13 @@ public class MetadataManagerStats
         return getTableLayoutFilterCoverageTime;
     }
 
+    @Managed
+    @Nested
+    public TimeStat getGetTableDataVersionTime()
+    {
+        return getTableDataVersionTime;
+    }
+
     @Managed
     @Nested
     public TimeStat getGetTableStatisticsTime()
@@ -2399,6 +2414,12 @@ public class MetadataManagerStats
         getTableLayoutFilterCoverageTime.add(duration, TimeUnit.NANOSECONDS);
     }
 
+    public void recordGetTableDataVersionCall(long duration)
+    {
+        getTableDataVersionCalls.incrementAndGet();
+        getTableDataVersionTime.add(duration, TimeUnit.NANOSECONDS);
+    }
+
     public void recordGetTableStatisticsCall(long duration)
     {
         getTableStatisticsCalls.incrementAndGet();
@@ -1024,6 +1024,18 @@ public class StatsRecordingMetadataManager
         }
     }
 
+    @Override
+    public Optional<String> getTableDataVersion(Session session, TableHandle tableHandle)
+    {
+        long startTime = System.nanoTime();
+        try {
+            return delegate.getTableDataVersion(session, tableHandle);
+        }
+        finally {
+            stats.recordGetTableDataVersionCall(System.nanoTime() - startTime);
+        }
+    }
+
     @Override
     public void dropBranch(Session session, TableHandle tableHandle, String branchName, boolean branchExists)
     {
@@ -70,6 +70,8 @@ public class BigintGroupByHash
     private int nextGroupId;
     private long hashCollisions;
     private double expectedHashCollisions;
+    private long rehashCount;
+    private long rehashTimeNanos;
 
     // reserve enough memory before rehash
     private final UpdateMemory updateMemory;
@@ -123,6 +125,18 @@ public class BigintGroupByHash
         return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
     }
 
+    @Override
+    public long getRehashCount()
+    {
+        return rehashCount;
+    }
+
+    @Override
+    public long getRehashTimeNanos()
+    {
+        return rehashTimeNanos;
+    }
+
     @Override
     public List<Type> getTypes()
     {
@@ -284,6 +298,7 @@ public class BigintGroupByHash
             return false;
         }
 
+        long start = System.nanoTime();
         expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
 
         int newMask = newCapacity - 1;
@@ -318,6 +333,9 @@ public class BigintGroupByHash
 
         this.valuesByGroupId.ensureCapacity(maxFill);
 
+        rehashCount++;
+        rehashTimeNanos += System.nanoTime() - start;
+
         preallocatedMemoryInBytes = 0;
         // release temporary memory reservation
         updateMemory.update();
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LazyBlock;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Removes the rows of the pages read by a table scan whose join keys are rejected by the
+ * Bloom filters of dynamic filters. Only the blocks of the filtered channels are loaded,
+ * the other lazy blocks stay lazy.
+ */
+public class BloomFilterPageFilter
+{
+    private static final BloomFilterPageFilter EMPTY = new BloomFilterPageFilter(ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
+
+    private final List<Integer> channels;
+    private final List<Type> types;
+    private final List<BloomRuntimeFilter> filters;
+
+    public BloomFilterPageFilter(List<Integer> channels, List<Type> types, List<BloomRuntimeFilter> filters)
+    {
+        this.channels = ImmutableList.copyOf(requireNonNull(channels, "channels is null"));
+        this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+        this.filters = ImmutableList.copyOf(requireNonNull(filters, "filters is null"));
+        checkArgument(channels.size() == types.size() && channels.size() == filters.size(), "channels, types and filters must have the same size");
+    }
+
+    public static BloomFilterPageFilter create(ListMultimap<VariableReferenceExpression, BloomRuntimeFilter> bloomFilters, Map<VariableReferenceExpression, Integer> layout)
+    {
+        if (bloomFilters.isEmpty()) {
+            return EMPTY;
+        }
+        ImmutableList.Builder<Integer> channels = ImmutableList.builder();
+        ImmutableList.Builder<Type> types = ImmutableList.builder();
+        ImmutableList.Builder<BloomRuntimeFilter> filters = ImmutableList.builder();
+        for (Map.Entry<VariableReferenceExpression, BloomRuntimeFilter> entry : bloomFilters.entries()) {
+            // the collector may contain the filters of other table scans of the same plan fragment
+            Integer channel = layout.get(entry.getKey());
+            if (channel != null) {
+                channels.add(channel);
+                types.add(entry.getKey().getType());
+                filters.add(entry.getValue());
+            }
+        }
+        return new BloomFilterPageFilter(channels.build(), types.build(), filters.build());
+    }
+
+    public boolean isEmpty()
+    {
+        return filters.isEmpty();
+    }
+
+    /**
+     * Returns the filters that the selective readers of the connectors can evaluate while
+     * decoding, by channel. A channel with several filters only gets the first one, the page
+     * filter still applies all of them.
+     */
+    public Map<Integer, TupleDomainFilter> getColumnFilters()
+    {
+        Map<Integer, TupleDomainFilter> columnFilters = new HashMap<>();
+        for (int i = 0; i < filters.size(); i++) {
+            if (!columnFilters.containsKey(channels.get(i))) {
+                Optional<TupleDomainFilter> columnFilter = filters.get(i).toTupleDomainFilter(types.get(i));
+                if (columnFilter.isPresent()) {
+                    columnFilters.put(channels.get(i), columnFilter.get());
+                }
+            }
+        }
+        return ImmutableMap.copyOf(columnFilters);
+    }
+
+    public Page filter(Page page)
+    {
+        int positionCount = page.getPositionCount();
+        int[] positions = new int[positionCount];
+        for (int position = 0; position < positionCount; position++) {
+            positions[position] = position;
+        }
+
+        for (int i = 0; i < filters.size() && positionCount > 0; i++) {
+            BloomRuntimeFilter filter = filters.get(i);
+            Type type = types.get(i);
+            Block block = page.getBlock(channels.get(i));
+            int retainedCount = 0;
+            for (int j = 0; j < positionCount; j++) {
+                int position = positions[j];
+                if (filter.mightContain(type, block, position)) {
+                    positions[retainedCount] = position;
+                    retainedCount++;
+                }
+            }
+            positionCount = retainedCount;
+        }
+
+        if (positionCount == page.getPositionCount()) {
+            return page;
+        }
+
+        int retainedPositionCount = positionCount;
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            Block block = page.getBlock(channel);
+            if (block instanceof LazyBlock && !((LazyBlock) block).isLoaded()) {
+                LazyBlock lazyBlock = (LazyBlock) block;
+                blocks[channel] = new LazyBlock(retainedPositionCount, filteredBlock -> filteredBlock.setBlock(lazyBlock.getLoadedBlock().getPositions(positions, 0, retainedPositionCount)));
+            }
+            else {
+                blocks[channel] = block.getPositions(positions, 0, retainedPositionCount);
+            }
+        }
+        return new Page(retainedPositionCount, blocks);
+    }
+}
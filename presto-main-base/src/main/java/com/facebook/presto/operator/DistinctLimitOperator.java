@@ -18,23 +18,35 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.operator.DistinctSpiller.PARTITION_COUNT;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.allAsList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 public class DistinctLimitOperator
@@ -52,6 +64,8 @@ public class DistinctLimitOperator
         private boolean closed;
         private final JoinCompiler joinCompiler;
         private final int timeoutMillis;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public DistinctLimitOperatorFactory(
                 int operatorId,
@@ -74,6 +88,21 @@ public class DistinctLimitOperator
                 Optional<Integer> hashChannel,
                 JoinCompiler joinCompiler,
                 int timeoutMillis)
+        {
+            this(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, timeoutMillis, false, unsupportedPartitioningSpillerFactory());
+        }
+
+        public DistinctLimitOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> sourceTypes,
+                List<Integer> distinctChannels,
+                long limit,
+                Optional<Integer> hashChannel,
+                JoinCompiler joinCompiler,
+                int timeoutMillis,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -85,6 +114,8 @@ public class DistinctLimitOperator
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
             this.timeoutMillis = timeoutMillis;
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -95,7 +126,7 @@ public class DistinctLimitOperator
             List<Type> distinctTypes = distinctChannels.stream()
                     .map(sourceTypes::get)
                     .collect(toImmutableList());
-            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, timeoutMillis);
+            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, timeoutMillis, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -107,20 +138,25 @@ public class DistinctLimitOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, timeoutMillis);
+            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, timeoutMillis, spillEnabled, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
     private Page inputPage;
     private long remainingLimit;
 
     private boolean finishing;
 
+    private final List<Type> distinctTypes;
+    private final Optional<Integer> hashChannel;
+    private final int expectedGroups;
+    private final JoinCompiler joinCompiler;
     private final int[] outputChannels;
-    private final GroupByHash groupByHash;
+    private GroupByHash groupByHash;
     private long nextDistinctId;
 
     // for yield when memory is not available
@@ -128,12 +164,39 @@ public class DistinctLimitOperator
     private Work<GroupByIdBlock> unfinishedWork;
     private final long timeoutMillis;
 
+    // once the hash has been spilled, all input is spilled and the distinct rows are produced one partition at a time when the operator is finishing
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+    // the spilled pages contain the output channels only
+    private final int[] spilledChannels;
+    private Optional<DistinctSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private int unspillPartition;
+    private Iterator<Page> unspilledSeenKeys;
+    private Iterator<Page> unspilledInput;
+
     public DistinctLimitOperator(OperatorContext operatorContext, List<Integer> distinctChannels, List<Type> distinctTypes, long limit, Optional<Integer> hashChannel, JoinCompiler joinCompiler, int timeout)
+    {
+        this(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, timeout, false, unsupportedPartitioningSpillerFactory());
+    }
+
+    public DistinctLimitOperator(
+            OperatorContext operatorContext,
+            List<Integer> distinctChannels,
+            List<Type> distinctTypes,
+            long limit,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            int timeout,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         checkArgument(limit >= 0, "limit must be at least zero");
-        requireNonNull(hashChannel, "hashChannel is null");
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
 
         int[] distinctChannelInts = Ints.toArray(requireNonNull(distinctChannels, "distinctChannels is null"));
         if (hashChannel.isPresent()) {
@@ -143,12 +206,18 @@ public class DistinctLimitOperator
         else {
             outputChannels = distinctChannelInts.clone(); // defensive copy since this is passed into createGroupByHash
         }
+        this.spilledChannels = IntStream.range(0, outputChannels.length).toArray();
 
+        this.distinctTypes = ImmutableList.copyOf(requireNonNull(distinctTypes, "distinctTypes is null"));
+        this.expectedGroups = min((int) limit, 10_000);
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         this.groupByHash = createGroupByHash(
                 distinctTypes,
                 distinctChannelInts,
                 hashChannel,
-                min((int) limit, 10_000),
+                expectedGroups,
                 isDictionaryAggregationEnabled(operatorContext.getSession()),
                 joinCompiler,
                 this::updateMemoryReservation);
@@ -186,13 +255,25 @@ public class DistinctLimitOperator
     @Override
     public boolean isFinished()
     {
-        return finishIfTimedOut() || (!hasUnfinishedInput() && (finishing || remainingLimit == 0));
+        if (!spillInProgress.isDone()) {
+            return false;
+        }
+        return finishIfTimedOut() || (!hasUnfinishedInput() && (remainingLimit == 0 || (finishing && (!spiller.isPresent() || unspillPartition == PARTITION_COUNT))));
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
+        return NOT_BLOCKED;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishIfTimedOut() && !finishing && remainingLimit > 0 && !hasUnfinishedInput();
+        return !finishIfTimedOut() && !finishing && remainingLimit > 0 && !hasUnfinishedInput() && spillInProgress.isDone();
     }
 
     @Override
@@ -204,6 +285,12 @@ public class DistinctLimitOperator
 
         checkState(needsInput());
 
+        if (spiller.isPresent()) {
+            checkSpillSucceeded(spillInProgress);
+            spillInProgress = spiller.get().spillInput(page.extractChannels(outputChannels));
+            return;
+        }
+
         inputPage = page;
         unfinishedWork = groupByHash.getGroupIds(page);
         processUnfinishedWork();
@@ -213,6 +300,10 @@ public class DistinctLimitOperator
     @Override
     public Page getOutput()
     {
+        if (spiller.isPresent()) {
+            return finishing ? unspill() : null;
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             finishIfTimedOut();
             return null;
@@ -222,6 +313,11 @@ public class DistinctLimitOperator
             return null;
         }
 
+        return getDistinctRows(outputChannels);
+    }
+
+    private Page getDistinctRows(int[] channels)
+    {
         verify(inputPage != null);
 
         long resultingPositions = min(groupByIds.getGroupCount() - nextDistinctId, remainingLimit);
@@ -237,7 +333,7 @@ public class DistinctLimitOperator
             }
             verify(distinctCount == distinctPositions.length);
             remainingLimit -= distinctCount;
-            result = inputPage.extractChannels(outputChannels).getPositions(distinctPositions, 0, distinctPositions.length);
+            result = inputPage.extractChannels(channels).getPositions(distinctPositions, 0, distinctPositions.length);
         }
 
         groupByIds = null;
@@ -247,6 +343,107 @@ public class DistinctLimitOperator
         return result;
     }
 
+    /**
+     * Produces the distinct rows of the spilled input one partition at a time. The keys which were produced before
+     * the hash was spilled are added to the hash of the partition first, so that they are not produced again.
+     */
+    private Page unspill()
+    {
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        while (unspillPartition < PARTITION_COUNT && remainingLimit > 0) {
+            if (unfinishedWork != null && !processUnfinishedWork()) {
+                finishIfTimedOut();
+                return null;
+            }
+
+            if (groupByIds != null) {
+                if (inputPage == null) {
+                    // all the keys seen so far have been produced already
+                    nextDistinctId = groupByIds.getGroupCount();
+                    groupByIds = null;
+                    continue;
+                }
+                Page result = getDistinctRows(spilledChannels);
+                if (result != null) {
+                    return result;
+                }
+                continue;
+            }
+
+            if (unspilledInput == null) {
+                groupByHash = createGroupByHash(
+                        distinctTypes,
+                        IntStream.range(0, distinctTypes.size()).toArray(),
+                        hashChannel.map(channel -> distinctTypes.size()),
+                        expectedGroups,
+                        isDictionaryAggregationEnabled(operatorContext.getSession()),
+                        joinCompiler,
+                        this::updateMemoryReservation);
+                nextDistinctId = 0;
+                unspilledSeenKeys = spiller.get().getSpilledSeenKeys(unspillPartition);
+                unspilledInput = spiller.get().getSpilledInput(unspillPartition);
+            }
+
+            if (unspilledSeenKeys.hasNext()) {
+                unfinishedWork = groupByHash.getGroupIds(unspilledSeenKeys.next());
+            }
+            else if (unspilledInput.hasNext()) {
+                inputPage = unspilledInput.next();
+                unfinishedWork = groupByHash.getGroupIds(inputPage);
+            }
+            else {
+                groupByHash = null;
+                unspilledSeenKeys = null;
+                unspilledInput = null;
+                updateMemoryReservation();
+                unspillPartition++;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+
+        if (!spiller.isPresent()) {
+            DistinctSpiller distinctSpiller = new DistinctSpiller(partitioningSpillerFactory, groupByHash.getTypes(), groupByHash.getTypes(), spilledChannels, operatorContext);
+            // the distinct rows of a page which has not been produced yet are produced after unspilling
+            ListenableFuture<?> seenKeysSpilled = distinctSpiller.spillSeenKeys(groupByHash.getGroupValues(toIntExact(nextDistinctId)));
+            ListenableFuture<?> inputSpilled = inputPage == null ? immediateFuture(null) : distinctSpiller.spillInput(inputPage.extractChannels(outputChannels));
+            finishMemoryRevoke = Optional.of(() -> {
+                spiller = Optional.of(distinctSpiller);
+                groupByHash = null;
+                groupByIds = null;
+                unfinishedWork = null;
+                inputPage = null;
+                localRevocableMemoryContext.setBytes(0);
+            });
+            spillInProgress = allAsList(seenKeysSpilled, inputSpilled);
+            return spillInProgress;
+        }
+        else if (operatorContext.getReservedRevocableBytes() == 0) {
+            // Probably stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        throw new IllegalStateException(format("Operator has spilled, but has %s revocable bytes", operatorContext.getReservedRevocableBytes()));
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
     private boolean processUnfinishedWork()
     {
         verify(unfinishedWork != null);
@@ -273,13 +470,39 @@ public class DistinctLimitOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
+        long estimatedSize = groupByHash == null ? 0 : groupByHash.getEstimatedSize();
         // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(groupByHash.getEstimatedSize());
+        if (spillEnabled && !spiller.isPresent()) {
+            // the hash can be spilled until the operator has spilled once
+            localRevocableMemoryContext.setBytes(estimatedSize);
+        }
+        else {
+            localUserMemoryContext.setBytes(estimatedSize);
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
 
+    @Override
+    public void close()
+    {
+        finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
+        groupByHash = null;
+        unspilledSeenKeys = null;
+        unspilledInput = null;
+        if (spiller.isPresent()) {
+            try {
+                spiller.get().close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            spiller = Optional.empty();
+        }
+        localRevocableMemoryContext.setBytes(0);
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.facebook.presto.operator.SpillingUtils.spillPages;
+import static com.google.common.collect.Iterators.singletonIterator;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spills the state of an operator whose output depends on whether the key of a row has been seen
+ * before, such as {@link MarkDistinctOperator} and {@link DistinctLimitOperator}. Once the keys seen
+ * so far have been spilled, all further input has to be spilled as well. The keys and the input are
+ * partitioned on the key, so that each partition can be processed on its own: the seen keys of a
+ * partition are added to an empty hash before the spilled input of the partition.
+ */
+class DistinctSpiller
+        implements Closeable
+{
+    static final int PARTITION_COUNT = 16;
+
+    private final PartitioningSpiller seenKeysSpiller;
+    private final PartitioningSpiller inputSpiller;
+
+    /**
+     * @param keyTypes the types of the pages with the seen keys, which have the key channels first, followed by the optional hash channel
+     * @param inputTypes the types of the input pages
+     * @param inputKeyChannels the key channels of the input pages
+     */
+    DistinctSpiller(
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            List<Type> keyTypes,
+            List<Type> inputTypes,
+            int[] inputKeyChannels,
+            OperatorContext operatorContext)
+    {
+        requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        requireNonNull(operatorContext, "operatorContext is null");
+        List<Type> distinctTypes = ImmutableList.copyOf(keyTypes.subList(0, inputKeyChannels.length));
+
+        this.seenKeysSpiller = partitioningSpillerFactory.create(
+                keyTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(distinctTypes, IntStream.range(0, inputKeyChannels.length).toArray()), PARTITION_COUNT),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+        this.inputSpiller = partitioningSpillerFactory.create(
+                inputTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(distinctTypes, inputKeyChannels), PARTITION_COUNT),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+    }
+
+    public ListenableFuture<?> spillSeenKeys(Iterator<Page> pages)
+    {
+        return spillPages(seenKeysSpiller, pages);
+    }
+
+    public ListenableFuture<?> spillInput(Page page)
+    {
+        return spillPages(inputSpiller, singletonIterator(page));
+    }
+
+    public Iterator<Page> getSpilledSeenKeys(int partition)
+    {
+        return seenKeysSpiller.getSpilledPages(partition);
+    }
+
+    public Iterator<Page> getSpilledInput(int partition)
+    {
+        return inputSpiller.getSpilledPages(partition);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try (Closer closer = Closer.create()) {
+            closer.register(seenKeysSpiller);
+            closer.register(inputSpiller);
+        }
+    }
+}
@@ -21,6 +21,9 @@ import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
+import com.facebook.presto.execution.scheduler.DomainRuntimeFilter;
+import com.facebook.presto.execution.scheduler.RuntimeFilter;
 import com.facebook.presto.operator.aggregation.TypedSet;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.google.common.collect.ImmutableList;
@@ -28,9 +31,11 @@ import com.google.common.collect.ImmutableMap;
 import jakarta.annotation.Nullable;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
+import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.presto.common.predicate.Range.range;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.RealType.REAL;
@@ -45,6 +50,8 @@ import static java.util.stream.Collectors.toSet;
  * The collected pages' value are used for creating a run-time filtering constraint (for probe-side table scan in an inner join).
  * We record all values for the run-time filter only for small build-side pages (which should be the case when using "broadcast" join).
  * For large inputs on build side, we can optionally record the min and max values per channel for orderable types (except Double and Real).
+ * When a runtime filter consumer is provided, the values of large inputs are also added to a Bloom filter per channel (except Double and Real),
+ * and every operator reports one {@link RuntimeFilter} per channel when it finishes.
  */
 public class DynamicFilterSourceOperator
         implements Operator
@@ -90,6 +97,8 @@ public class DynamicFilterSourceOperator
         private final int maxFilterPositionsCount;
         private final DataSize maxFilterSize;
         private final int minMaxCollectionLimit;
+        private final Optional<Consumer<Map<String, RuntimeFilter>>> runtimeFilterConsumer;
+        private final DataSize bloomFilterSize;
 
         private boolean closed;
 
@@ -101,6 +110,20 @@ public class DynamicFilterSourceOperator
                 int maxFilterPositionsCount,
                 DataSize maxFilterSize,
                 int minMaxCollectionLimit)
+        {
+            this(operatorId, planNodeId, dynamicPredicateConsumer, channels, maxFilterPositionsCount, maxFilterSize, minMaxCollectionLimit, Optional.empty(), new DataSize(0, BYTE));
+        }
+
+        public DynamicFilterSourceOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                Consumer<TupleDomain<String>> dynamicPredicateConsumer,
+                List<Channel> channels,
+                int maxFilterPositionsCount,
+                DataSize maxFilterSize,
+                int minMaxCollectionLimit,
+                Optional<Consumer<Map<String, RuntimeFilter>>> runtimeFilterConsumer,
+                DataSize bloomFilterSize)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -115,6 +138,8 @@ public class DynamicFilterSourceOperator
             this.maxFilterPositionsCount = maxFilterPositionsCount;
             this.maxFilterSize = maxFilterSize;
             this.minMaxCollectionLimit = minMaxCollectionLimit;
+            this.runtimeFilterConsumer = requireNonNull(runtimeFilterConsumer, "runtimeFilterConsumer is null");
+            this.bloomFilterSize = requireNonNull(bloomFilterSize, "bloomFilterSize is null");
         }
 
         @Override
@@ -128,7 +153,9 @@ public class DynamicFilterSourceOperator
                     planNodeId,
                     maxFilterPositionsCount,
                     maxFilterSize,
-                    minMaxCollectionLimit);
+                    minMaxCollectionLimit,
+                    runtimeFilterConsumer,
+                    bloomFilterSize);
         }
 
         @Override
@@ -151,6 +178,8 @@ public class DynamicFilterSourceOperator
     private final long maxFilterSizeInBytes;
     private final List<Channel> channels;
     private final List<Integer> minMaxChannels;
+    private final Optional<Consumer<Map<String, RuntimeFilter>>> runtimeFilterConsumer;
+    private final long bloomFilterSizeInBytes;
 
     private boolean finished;
     private Page current;
@@ -167,6 +196,10 @@ public class DynamicFilterSourceOperator
     @Nullable
     private Block[] maxValues;
 
+    // Created when the predicate becomes too large, if a runtime filter consumer is provided.
+    @Nullable
+    private BloomRuntimeFilter[] bloomFilters;
+
     private DynamicFilterSourceOperator(
             OperatorContext context,
             Consumer<TupleDomain<String>> dynamicPredicateConsumer,
@@ -174,7 +207,9 @@ public class DynamicFilterSourceOperator
             PlanNodeId planNodeId,
             int maxFilterPositionsCount,
             DataSize maxFilterSize,
-            int minMaxCollectionLimit)
+            int minMaxCollectionLimit,
+            Optional<Consumer<Map<String, RuntimeFilter>>> runtimeFilterConsumer,
+            DataSize bloomFilterSize)
     {
         this.context = requireNonNull(context, "context is null");
         this.maxFilterPositionsCount = maxFilterPositionsCount;
@@ -182,6 +217,8 @@ public class DynamicFilterSourceOperator
 
         this.dynamicPredicateConsumer = requireNonNull(dynamicPredicateConsumer, "dynamicPredicateConsumer is null");
         this.channels = requireNonNull(channels, "channels is null");
+        this.runtimeFilterConsumer = requireNonNull(runtimeFilterConsumer, "runtimeFilterConsumer is null");
+        this.bloomFilterSizeInBytes = bloomFilterSize.toBytes();
 
         this.blockBuilders = new BlockBuilder[channels.size()];
         this.valueSets = new TypedSet[channels.size()];
@@ -226,6 +263,18 @@ public class DynamicFilterSourceOperator
     {
         verify(!finished, "DynamicFilterSourceOperator: addInput() shouldn't not be called after finish()");
         current = page;
+        if (bloomFilters != null) {
+            for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
+                BloomRuntimeFilter bloomFilter = bloomFilters[channelIndex];
+                if (bloomFilter != null) {
+                    Type type = channels.get(channelIndex).getType();
+                    Block block = page.getBlock(channels.get(channelIndex).getIndex());
+                    for (int position = 0; position < block.getPositionCount(); ++position) {
+                        bloomFilter.add(type, block, position);
+                    }
+                }
+            }
+        }
         if (valueSets == null) {
             // the exact predicate became too large.
             if (minValues == null) {
@@ -267,6 +316,9 @@ public class DynamicFilterSourceOperator
     private void handleTooLargePredicate()
     {
         // The resulting predicate is too large
+        if (runtimeFilterConsumer.isPresent() && bloomFilterSizeInBytes > 0) {
+            createBloomFilters();
+        }
         if (minMaxChannels.isEmpty()) {
             // allow all probe-side values to be read.
             dynamicPredicateConsumer.accept(TupleDomain.all());
@@ -289,6 +341,52 @@ public class DynamicFilterSourceOperator
         blockBuilders = null;
     }
 
+    private void createBloomFilters()
+    {
+        checkState(blockBuilders != null, "blockBuilders is null");
+        bloomFilters = new BloomRuntimeFilter[channels.size()];
+        long bloomFiltersSizeInBytes = 0;
+        for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
+            Type type = channels.get(channelIndex).getType();
+            // Skipping DOUBLE and REAL as values that are equal may have different hashes (e.g. 0.0 and -0.0)
+            if (type.equals(DOUBLE) || type.equals(REAL)) {
+                continue;
+            }
+            BloomRuntimeFilter bloomFilter = BloomRuntimeFilter.create(bloomFilterSizeInBytes);
+            // the distinct values collected so far
+            Block block = blockBuilders[channelIndex].build();
+            for (int position = 0; position < block.getPositionCount(); ++position) {
+                bloomFilter.add(type, block, position);
+            }
+            bloomFilters[channelIndex] = bloomFilter;
+            bloomFiltersSizeInBytes += bloomFilter.estimatedRetainedSizeInBytes();
+        }
+        context.localUserMemoryContext().setBytes(bloomFiltersSizeInBytes);
+    }
+
+    private void reportRuntimeFilters(Map<String, Domain> domains)
+    {
+        if (!runtimeFilterConsumer.isPresent()) {
+            return;
+        }
+        ImmutableMap.Builder<String, RuntimeFilter> runtimeFilters = ImmutableMap.builder();
+        for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
+            String filterId = channels.get(channelIndex).getFilterId();
+            if (domains.containsKey(filterId)) {
+                runtimeFilters.put(filterId, new DomainRuntimeFilter(TupleDomain.withColumnDomains(ImmutableMap.of(filterId, domains.get(filterId)))));
+            }
+            else if (bloomFilters != null && bloomFilters[channelIndex] != null) {
+                runtimeFilters.put(filterId, bloomFilters[channelIndex]);
+            }
+            else {
+                runtimeFilters.put(filterId, new DomainRuntimeFilter(TupleDomain.all()));
+            }
+        }
+        bloomFilters = null;
+        context.localUserMemoryContext().setBytes(0);
+        runtimeFilterConsumer.get().accept(runtimeFilters.build());
+    }
+
     private void handleMinMaxCollectionLimitExceeded()
     {
         // allow all probe-side values to be read.
@@ -360,6 +458,7 @@ public class DynamicFilterSourceOperator
         finished = true;
         ImmutableMap.Builder<String, Domain> domainsBuilder = ImmutableMap.builder();
         if (valueSets == null) {
+            reportRuntimeFilters(ImmutableMap.of());
             if (minValues == null) {
                 // there were too many rows to collect min/max range
                 // dynamicPredicateConsumer was notified with 'all' in handleTooLargePredicate if there are no orderable types,
@@ -395,7 +494,9 @@ public class DynamicFilterSourceOperator
         }
         valueSets = null;
         blockBuilders = null;
-        dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()));
+        Map<String, Domain> domains = domainsBuilder.build();
+        reportRuntimeFilters(domains);
+        dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domains));
     }
 
     private Domain convertToDomain(Type type, Block block)
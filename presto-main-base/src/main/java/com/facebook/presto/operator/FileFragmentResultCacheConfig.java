@@ -39,6 +39,7 @@ public class FileFragmentResultCacheConfig
     private DataSize maxInFlightSize = new DataSize(1, GIGABYTE);
     private DataSize maxSinglePagesSize = new DataSize(500, MEGABYTE);
     private DataSize maxCacheSize = new DataSize(100, GIGABYTE);
+    private DataSize maxSegmentSize = new DataSize(64, MEGABYTE);
 
     private boolean inputDataStatsEnabled;
 
@@ -151,6 +152,20 @@ public class FileFragmentResultCacheConfig
         return this;
     }
 
+    @MinDataSize("1B")
+    public DataSize getMaxSegmentSize()
+    {
+        return maxSegmentSize;
+    }
+
+    @Config("fragment-result-cache.max-segment-size")
+    @ConfigDescription("Size at which a new cache segment file is started. Segments are the unit of eviction")
+    public FileFragmentResultCacheConfig setMaxSegmentSize(DataSize maxSegmentSize)
+    {
+        this.maxSegmentSize = maxSegmentSize;
+        return this;
+    }
+
     public boolean isInputDataStatsEnabled()
     {
         return inputDataStatsEnabled;
@@ -19,45 +19,61 @@ import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.metadata.Split;
 import com.facebook.presto.metadata.Split.SplitIdentifier;
+import com.facebook.presto.operator.FragmentResultCacheSegment.Entry;
 import com.facebook.presto.spi.PrestoException;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.RemovalListener;
-import com.google.common.cache.RemovalNotification;
-import com.google.common.collect.AbstractIterator;
-import io.airlift.slice.InputStreamSliceInput;
-import io.airlift.slice.OutputStreamSliceOutput;
-import io.airlift.slice.SliceOutput;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.slice.XxHash64;
 import jakarta.inject.Inject;
 import org.weakref.jmx.Managed;
 
-import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
+import static com.facebook.presto.operator.FragmentResultCacheSegment.dataFileName;
+import static com.facebook.presto.operator.FragmentResultCacheSegment.indexFileName;
+import static com.facebook.presto.operator.FragmentResultCacheSegment.parseSegmentId;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readPages;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writePages;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.hash.Hashing.murmur3_128;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
-import static java.nio.file.Files.newInputStream;
-import static java.nio.file.Files.newOutputStream;
-import static java.nio.file.StandardOpenOption.APPEND;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static java.lang.Math.toIntExact;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.requireNonNull;
-import static java.util.UUID.randomUUID;
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+/**
+ * Fragment result cache which keeps the cached pages on local disk and survives restarts.
+ * <p>
+ * Entries are appended to segment files (see {@link FragmentResultCacheSegment}), each with an index
+ * which maps the hash of the plan and the split of an entry to its location in the segment. On startup
+ * the indexes of the existing segments are replayed, so the cache is warm right after a restart or
+ * deployment. Cached pages are read through a memory mapping of the segment. When the cache is full,
+ * the segment with the fewest hits is evicted; hit counts are halved on every eviction so that old
+ * popularity fades. An entry which has not been accessed within the TTL is no longer returned, and a
+ * segment is dropped once none of its entries has been accessed within the TTL.
+ */
 public class FileFragmentResultCacheManager
         implements FragmentResultCacheManager
 {
@@ -70,15 +86,25 @@ public class FileFragmentResultCacheManager
     private final long maxSinglePagesBytes;
     // Max on-disk size for this fragment result cache.
     private final long maxCacheBytes;
+    // Size at which a new segment is started.
+    private final long maxSegmentBytes;
+    private final int maxCachedEntries;
+    private final long cacheTtlMillis;
     private final PagesSerdeFactory pagesSerdeFactory;
     private final FragmentCacheStats fragmentCacheStats;
     private final ExecutorService flushExecutor;
     private final ExecutorService removalExecutor;
-
-    private final Cache<CacheKey, CacheEntry> cache;
     private final boolean inputDataStatsEnabled;
 
-    // TODO: Decouple CacheKey by encoding PlanNode and SplitIdentifier separately so we don't have to keep too many objects in memory
+    private final ConcurrentMap<CacheKey, Entry> entries = new ConcurrentHashMap<>();
+    // in the order the segments were created
+    @GuardedBy("this")
+    private final Map<Long, FragmentResultCacheSegment> segments = new LinkedHashMap<>();
+    @GuardedBy("this")
+    private FragmentResultCacheSegment activeSegment;
+    @GuardedBy("this")
+    private long nextSegmentId;
+
     @Inject
     public FileFragmentResultCacheManager(
             FileFragmentResultCacheConfig cacheConfig,
@@ -94,17 +120,14 @@ public class FileFragmentResultCacheManager
         this.maxInFlightBytes = cacheConfig.getMaxInFlightSize().toBytes();
         this.maxSinglePagesBytes = cacheConfig.getMaxSinglePagesSize().toBytes();
         this.maxCacheBytes = cacheConfig.getMaxCacheSize().toBytes();
+        this.maxSegmentBytes = cacheConfig.getMaxSegmentSize().toBytes();
+        this.maxCachedEntries = cacheConfig.getMaxCachedEntries();
+        this.cacheTtlMillis = cacheConfig.getCacheTtl().toMillis();
         // pagesSerde is not thread safe
         this.pagesSerdeFactory = new PagesSerdeFactory(blockEncodingSerde, cacheConfig.getBlockEncodingCompressionCodec());
         this.fragmentCacheStats = requireNonNull(fragmentCacheStats, "fragmentCacheStats is null");
         this.flushExecutor = requireNonNull(flushExecutor, "flushExecutor is null");
         this.removalExecutor = requireNonNull(removalExecutor, "removalExecutor is null");
-        this.cache = CacheBuilder.newBuilder()
-                .maximumSize(cacheConfig.getMaxCachedEntries())
-                .expireAfterAccess(cacheConfig.getCacheTtl().toMillis(), MILLISECONDS)
-                .removalListener(new CacheRemovalListener())
-                .recordStats()
-                .build();
         this.inputDataStatsEnabled = cacheConfig.isInputDataStatsEnabled();
 
         File target = Paths.get(baseDirectory.toUri()).toFile();
@@ -117,20 +140,67 @@ public class FileFragmentResultCacheManager
             }
         }
         else {
-            File[] files = target.listFiles();
-            if (files == null) {
-                return;
+            recoverSegments(target);
+        }
+    }
+
+    private synchronized void recoverSegments(File directory)
+    {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        TreeSet<Long> segmentIds = new TreeSet<>();
+        for (File file : files) {
+            OptionalLong segmentId = parseSegmentId(file.getName());
+            if (segmentId.isPresent()) {
+                segmentIds.add(segmentId.getAsLong());
             }
+            else {
+                // left over from an older version of the cache
+                removalExecutor.submit(() -> tryDeleteFile(file.toPath()));
+            }
+        }
 
-            this.removalExecutor.submit(() -> Arrays.stream(files).forEach(file -> {
-                try {
-                    Files.delete(file.toPath());
-                }
-                catch (IOException e) {
-                    // ignore
+        long expiredBefore = System.currentTimeMillis() - cacheTtlMillis;
+        for (long segmentId : segmentIds) {
+            nextSegmentId = segmentId + 1;
+            Path dataPath = baseDirectory.resolve(dataFileName(segmentId));
+            Path indexPath = baseDirectory.resolve(indexFileName(segmentId));
+            if (!Files.exists(dataPath) || !Files.exists(indexPath)) {
+                removalExecutor.submit(() -> deleteSegmentFiles(dataPath, indexPath));
+                continue;
+            }
+
+            Map<CacheKey, Entry> recoveredEntries = new LinkedHashMap<>();
+            Optional<FragmentResultCacheSegment> recoveredSegment;
+            try {
+                recoveredSegment = FragmentResultCacheSegment.recover(baseDirectory, segmentId, recoveredEntries::put);
+            }
+            catch (IOException | RuntimeException e) {
+                log.warn(e, "Cannot recover fragment result cache segment %s", dataPath);
+                removalExecutor.submit(() -> deleteSegmentFiles(dataPath, indexPath));
+                continue;
+            }
+            if (!recoveredSegment.isPresent()) {
+                log.info("Dropping fragment result cache segment %s written with another format version", dataPath);
+                removalExecutor.submit(() -> deleteSegmentFiles(dataPath, indexPath));
+                continue;
+            }
+            FragmentResultCacheSegment segment = recoveredSegment.get();
+            recoveredEntries.forEach((key, entry) -> {
+                if (entry.getLastAccessMillis() >= expiredBefore && entries.put(key, entry) == null) {
+                    fragmentCacheStats.incrementCacheEntries();
                 }
-            }));
+            });
+            segments.put(segmentId, segment);
+            fragmentCacheStats.addCacheSizeInBytes(segment.getSizeInBytes());
+            if (segment.getLastAccessMillis() < expiredBefore) {
+                removeSegment(segment);
+            }
         }
+        log.info("Recovered %s fragment result cache entries in %s segments", entries.size(), segments.size());
     }
 
     @Override
@@ -139,16 +209,16 @@ public class FileFragmentResultCacheManager
         CacheKey key = new CacheKey(serializedPlan, split.getSplitIdentifier());
         long resultSize = getPagesSize(result);
         if (fragmentCacheStats.getInFlightBytes() + resultSize > maxInFlightBytes ||
-                cache.getIfPresent(key) != null ||
+                entries.containsKey(key) ||
                 resultSize > maxSinglePagesBytes ||
+                resultSize > maxCacheBytes ||
                 // Here we use the logical size resultSize as an estimate for admission control.
-                fragmentCacheStats.getCacheSizeInBytes() + resultSize > maxCacheBytes) {
+                !reserveSpace(resultSize)) {
             return immediateFuture(null);
         }
 
         fragmentCacheStats.addInFlightBytes(resultSize);
-        Path path = baseDirectory.resolve(randomUUID().toString().replaceAll("-", "_"));
-        return flushExecutor.submit(() -> cachePages(key, path, result, resultSize, inputDataSize));
+        return flushExecutor.submit(() -> cachePages(key, result, resultSize, inputDataSize));
     }
 
     private static long getPagesSize(List<Page> pages)
@@ -158,34 +228,130 @@ public class FileFragmentResultCacheManager
                 .sum();
     }
 
-    private void cachePages(CacheKey key, Path path, List<Page> pages, long resultSize, long inputDataSize)
+    /**
+     * Evicts expired segments, and then the least frequently used segments until an entry of the given size fits.
+     */
+    private synchronized boolean reserveSpace(long resultSize)
+    {
+        long expiredBefore = System.currentTimeMillis() - cacheTtlMillis;
+        for (FragmentResultCacheSegment segment : new ArrayList<>(segments.values())) {
+            if (segment.getLastAccessMillis() < expiredBefore) {
+                removeSegment(segment);
+            }
+        }
+
+        while (fragmentCacheStats.getCacheSizeInBytes() + resultSize > maxCacheBytes || entries.size() >= maxCachedEntries) {
+            if (!evictLeastFrequentlyUsedSegment()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @GuardedBy("this")
+    private boolean evictLeastFrequentlyUsedSegment()
+    {
+        FragmentResultCacheSegment victim = null;
+        for (FragmentResultCacheSegment segment : segments.values()) {
+            // the active segment is only evicted when there is nothing else left, and older segments win ties
+            if (victim == null || victim == activeSegment || (segment != activeSegment && segment.getHits() < victim.getHits())) {
+                victim = segment;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        removeSegment(victim);
+        segments.values().forEach(FragmentResultCacheSegment::decayHits);
+        return true;
+    }
+
+    @GuardedBy("this")
+    private void removeSegment(FragmentResultCacheSegment segment)
+    {
+        segments.remove(segment.getId());
+        if (segment == activeSegment) {
+            activeSegment = null;
+        }
+        long sizeInBytes = segment.getSizeInBytes();
+        for (CacheKey key : segment.close()) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.getSegment() == segment && entries.remove(key, entry)) {
+                fragmentCacheStats.incrementCacheRemoval();
+                fragmentCacheStats.decrementCacheEntries();
+            }
+        }
+        fragmentCacheStats.addCacheSizeInBytes(-sizeInBytes);
+        removalExecutor.submit(() -> deleteSegmentFiles(segment.getDataPath(), segment.getIndexPath()));
+    }
+
+    private void cachePages(CacheKey key, List<Page> pages, long resultSize, long inputDataSize)
     {
         if (!inputDataStatsEnabled) {
             inputDataSize = 0;
         }
         try {
-            Files.createFile(path);
-            try (SliceOutput output = new OutputStreamSliceOutput(newOutputStream(path, APPEND))) {
-                writePages(pagesSerdeFactory.createPagesSerde(), output, pages.iterator());
-                long resultPhysicalBytes = output.size();
-                cache.put(key, new CacheEntry(path, resultPhysicalBytes, inputDataSize));
-                fragmentCacheStats.incrementCacheEntries();
-                fragmentCacheStats.addCacheSizeInBytes(resultPhysicalBytes);
-            }
-            catch (UncheckedIOException | IOException e) {
-                log.warn(e, "%s encountered an error while writing to path %s", Thread.currentThread().getName(), path);
-                tryDeleteFile(path);
-            }
+            DynamicSliceOutput output = new DynamicSliceOutput(toIntExact(Math.max(resultSize, SIZE_OF_LONG)));
+            writePages(pagesSerdeFactory.createPagesSerde(), output, pages.iterator());
+            appendEntry(key, output.slice(), inputDataSize);
         }
         catch (UncheckedIOException | IOException e) {
-            log.warn(e, "%s encountered an error while writing to path %s", Thread.currentThread().getName(), path);
-            tryDeleteFile(path);
+            log.warn(e, "%s encountered an error while writing to fragment result cache %s", Thread.currentThread().getName(), baseDirectory);
         }
         finally {
             fragmentCacheStats.addInFlightBytes(-resultSize);
         }
     }
 
+    private synchronized void appendEntry(CacheKey key, Slice data, long inputDataSize)
+            throws IOException
+    {
+        if (entries.containsKey(key)) {
+            return;
+        }
+
+        if (activeSegment != null && activeSegment.getSizeInBytes() >= maxSegmentBytes) {
+            activeSegment.seal();
+            activeSegment = null;
+        }
+        if (activeSegment == null) {
+            activeSegment = FragmentResultCacheSegment.create(baseDirectory, nextSegmentId++);
+            segments.put(activeSegment.getId(), activeSegment);
+            fragmentCacheStats.addCacheSizeInBytes(activeSegment.getSizeInBytes());
+        }
+
+        long sizeBefore = activeSegment.getSizeInBytes();
+        Optional<Entry> entry;
+        try {
+            entry = activeSegment.append(key, data, inputDataSize);
+        }
+        catch (IOException e) {
+            // do not append to a segment which might have a partially written entry
+            activeSegment.seal();
+            throw e;
+        }
+        finally {
+            fragmentCacheStats.addCacheSizeInBytes(activeSegment.getSizeInBytes() - sizeBefore);
+        }
+        checkState(entry.isPresent(), "active segment is sealed");
+        entries.put(key, entry.get());
+        fragmentCacheStats.incrementCacheEntries();
+
+        // admission control only estimates the size of an entry by the logical size of its pages
+        while (fragmentCacheStats.getCacheSizeInBytes() > maxCacheBytes) {
+            if (!evictLeastFrequentlyUsedSegment()) {
+                break;
+            }
+        }
+    }
+
+    private static void deleteSegmentFiles(Path dataPath, Path indexPath)
+    {
+        // the index goes first, so that a segment is never recovered with a partially deleted data file
+        tryDeleteFile(indexPath);
+        tryDeleteFile(dataPath);
+    }
+
     private static void tryDeleteFile(Path path)
     {
         try {
@@ -203,138 +369,137 @@ public class FileFragmentResultCacheManager
     public FragmentCacheResult get(String serializedPlan, Split split)
     {
         CacheKey key = new CacheKey(serializedPlan, split.getSplitIdentifier());
-        CacheEntry cacheEntry = cache.getIfPresent(key);
-        if (cacheEntry == null) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
             fragmentCacheStats.incrementCacheMiss();
             return new FragmentCacheResult(Optional.empty(), 0);
         }
 
+        if (entry.getLastAccessMillis() < System.currentTimeMillis() - cacheTtlMillis) {
+            // the segment is kept until all its entries have expired
+            if (entries.remove(key, entry)) {
+                fragmentCacheStats.incrementCacheRemoval();
+                fragmentCacheStats.decrementCacheEntries();
+            }
+            fragmentCacheStats.incrementCacheMiss();
+            return new FragmentCacheResult(Optional.empty(), 0);
+        }
+
+        FragmentResultCacheSegment segment = entry.getSegment();
         try {
-            InputStream inputStream = newInputStream(cacheEntry.getPath());
-            Iterator<Page> result = readPages(pagesSerdeFactory.createPagesSerde(), new InputStreamSliceInput(inputStream));
+            // the segment might have been evicted in the meantime
+            Optional<Slice> data = segment.read(entry);
+            if (!data.isPresent()) {
+                fragmentCacheStats.incrementCacheMiss();
+                return new FragmentCacheResult(Optional.empty(), 0);
+            }
+            if (XxHash64.hash(data.get()) != entry.getChecksum()) {
+                log.warn("Checksum mismatch for fragment result cache entry in %s at offset %s", segment.getDataPath(), entry.getOffset());
+                removeCorruptedSegment(segment);
+                fragmentCacheStats.incrementCacheMiss();
+                return new FragmentCacheResult(Optional.empty(), 0);
+            }
+            Iterator<Page> result = readPages(pagesSerdeFactory.createPagesSerde(), data.get().getInput());
+            entry.recordAccess();
+            segment.recordHit();
             fragmentCacheStats.incrementCacheHit();
-            return new FragmentCacheResult(Optional.of(closeWhenExhausted(result, inputStream)), cacheEntry.getInputDataSize());
+            return new FragmentCacheResult(Optional.of(result), entry.getInputDataSize());
         }
         catch (UncheckedIOException | IOException e) {
-            log.error(e, "read path %s error", cacheEntry.getPath());
+            log.error(e, "read path %s error", segment.getDataPath());
             // there might be a chance the file has been deleted. We would return cache miss in this case.
             fragmentCacheStats.incrementCacheMiss();
             return new FragmentCacheResult(Optional.empty(), 0);
         }
     }
 
-    @Managed
-    public void invalidateAllCache()
+    private synchronized void removeCorruptedSegment(FragmentResultCacheSegment segment)
     {
-        cache.invalidateAll();
+        if (segments.get(segment.getId()) == segment) {
+            removeSegment(segment);
+        }
     }
 
-    private static <T> Iterator<T> closeWhenExhausted(Iterator<T> iterator, Closeable resource)
+    @Managed
+    public synchronized void invalidateAllCache()
     {
-        requireNonNull(iterator, "iterator is null");
-        requireNonNull(resource, "resource is null");
+        new ArrayList<>(segments.values()).forEach(this::removeSegment);
+    }
 
-        return new AbstractIterator<T>()
-        {
-            @Override
-            protected T computeNext()
-            {
-                if (iterator.hasNext()) {
-                    return iterator.next();
-                }
-                try {
-                    resource.close();
-                }
-                catch (IOException e) {
-                    throw new UncheckedIOException(e);
-                }
-                return endOfData();
-            }
-        };
+    @Managed
+    public synchronized int getSegmentCount()
+    {
+        return segments.size();
     }
 
+    /**
+     * Identifies a cache entry by a 128 bit hash of the plan and the split. The split is identified by the
+     * string form of its connector provided identifier, which has to be stable across restarts for
+     * recovered entries to be found.
+     */
     public static class CacheKey
     {
-        private final String serializedPlan;
-        private final SplitIdentifier splitIdentifier;
+        private final long planHashHigh;
+        private final long planHashLow;
+        private final String splitKey;
 
         public CacheKey(String serializedPlan, SplitIdentifier splitIdentifier)
         {
-            this.serializedPlan = requireNonNull(serializedPlan, "serializedPlan is null");
-            this.splitIdentifier = requireNonNull(splitIdentifier, "splitIdentifier is null");
-        }
-
-        public String getSerializedPlan()
-        {
-            return serializedPlan;
+            this(hashPlan(serializedPlan), splitIdentifier.getConnectorId() + "/" + splitIdentifier.getSplitIdentifier());
         }
 
-        public SplitIdentifier getSplitIdentifier()
+        private CacheKey(Slice planHash, String splitKey)
         {
-            return splitIdentifier;
+            this(planHash.getLong(0), planHash.getLong(SIZE_OF_LONG), splitKey);
         }
 
-        @Override
-        public boolean equals(Object o)
+        public CacheKey(long planHashHigh, long planHashLow, String splitKey)
         {
-            if (this == o) {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass()) {
-                return false;
-            }
-            CacheKey cacheKey = (CacheKey) o;
-            return Objects.equals(serializedPlan, cacheKey.serializedPlan) &&
-                    Objects.equals(splitIdentifier, cacheKey.splitIdentifier);
+            this.planHashHigh = planHashHigh;
+            this.planHashLow = planHashLow;
+            this.splitKey = requireNonNull(splitKey, "splitKey is null");
         }
 
-        @Override
-        public int hashCode()
+        private static Slice hashPlan(String serializedPlan)
         {
-            return Objects.hash(serializedPlan, splitIdentifier);
+            requireNonNull(serializedPlan, "serializedPlan is null");
+            return Slices.wrappedBuffer(murmur3_128().hashString(serializedPlan, UTF_8).asBytes());
         }
-    }
 
-    private static class CacheEntry
-    {
-        private final Path path;
-        private final long resultBytes;
-        private final long inputDataSize;
-
-        public Path getPath()
+        public long getPlanHashHigh()
         {
-            return path;
+            return planHashHigh;
         }
 
-        public long getResultBytes()
+        public long getPlanHashLow()
         {
-            return resultBytes;
+            return planHashLow;
         }
 
-        public long getInputDataSize()
+        public String getSplitKey()
         {
-            return inputDataSize;
+            return splitKey;
         }
 
-        public CacheEntry(Path path, long resultBytes, long inputDataSize)
+        @Override
+        public boolean equals(Object o)
         {
-            this.path = requireNonNull(path, "path is null");
-            this.resultBytes = resultBytes;
-            this.inputDataSize = inputDataSize;
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            CacheKey cacheKey = (CacheKey) o;
+            return planHashHigh == cacheKey.planHashHigh &&
+                    planHashLow == cacheKey.planHashLow &&
+                    Objects.equals(splitKey, cacheKey.splitKey);
         }
-    }
 
-    private class CacheRemovalListener
-            implements RemovalListener<CacheKey, CacheEntry>
-    {
         @Override
-        public void onRemoval(RemovalNotification<CacheKey, CacheEntry> notification)
+        public int hashCode()
         {
-            CacheEntry cacheEntry = notification.getValue();
-            removalExecutor.submit(() -> tryDeleteFile(cacheEntry.getPath()));
-            fragmentCacheStats.incrementCacheRemoval();
-            fragmentCacheStats.decrementCacheEntries();
-            fragmentCacheStats.addCacheSizeInBytes(-cacheEntry.getResultBytes());
+            return Objects.hash(planHashHigh, planHashLow, splitKey);
         }
     }
 }
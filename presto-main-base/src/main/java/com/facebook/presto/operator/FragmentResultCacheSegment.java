@@ -0,0 +1,426 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.operator.FileFragmentResultCacheManager.CacheKey;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.Slice;
+import io.airlift.slice.SliceInput;
+import io.airlift.slice.Slices;
+import io.airlift.slice.XxHash64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Append only file holding the serialized pages of fragment result cache entries, together with an
+ * index file that maps the plan hash and split of every entry to its location in the data file.
+ * <p>
+ * An index record is only written once the data it points to has been written, and carries a
+ * checksum of that data, so a segment that was being written when the process stopped is recovered
+ * up to its last complete entry. Entries are never removed from a segment individually; the whole
+ * segment is dropped on eviction.
+ * <p>
+ * Both files start with a header holding {@link #FORMAT_VERSION}, so that segments written by a
+ * version of the cache with a different layout are not recovered.
+ */
+final class FragmentResultCacheSegment
+{
+    private static final String FILE_PREFIX = "segment_";
+    private static final String DATA_SUFFIX = ".data";
+    private static final String INDEX_SUFFIX = ".index";
+
+    // "FRCS"
+    private static final int FORMAT_MAGIC = 0x46524353;
+    // must be incremented on every change to the layout of the data or the index file
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 2 * SIZE_OF_INT;
+
+    private final long id;
+    private final Path dataPath;
+    private final Path indexPath;
+    private final FileChannel dataChannel;
+    private final FileChannel indexChannel;
+    private final List<CacheKey> keys = new ArrayList<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private volatile long lastAccessMillis;
+
+    private long dataSize;
+    private long indexSize;
+    private boolean sealed;
+    private boolean closed;
+
+    private FragmentResultCacheSegment(long id, Path dataPath, Path indexPath, FileChannel dataChannel, FileChannel indexChannel, long dataSize, long indexSize, long lastAccessMillis)
+    {
+        this.id = id;
+        this.dataPath = requireNonNull(dataPath, "dataPath is null");
+        this.indexPath = requireNonNull(indexPath, "indexPath is null");
+        this.dataChannel = requireNonNull(dataChannel, "dataChannel is null");
+        this.indexChannel = requireNonNull(indexChannel, "indexChannel is null");
+        this.dataSize = dataSize;
+        this.indexSize = indexSize;
+        this.lastAccessMillis = lastAccessMillis;
+    }
+
+    public static FragmentResultCacheSegment create(Path directory, long id)
+            throws IOException
+    {
+        Path dataPath = directory.resolve(dataFileName(id));
+        Path indexPath = directory.resolve(indexFileName(id));
+        FileChannel dataChannel = FileChannel.open(dataPath, CREATE_NEW, READ, WRITE);
+        FileChannel indexChannel = null;
+        try {
+            indexChannel = FileChannel.open(indexPath, CREATE_NEW, WRITE);
+            writeFully(dataChannel, header().toByteBuffer(), 0);
+            writeFully(indexChannel, header().toByteBuffer(), 0);
+            return new FragmentResultCacheSegment(id, dataPath, indexPath, dataChannel, indexChannel, HEADER_SIZE, HEADER_SIZE, System.currentTimeMillis());
+        }
+        catch (IOException e) {
+            dataChannel.close();
+            if (indexChannel != null) {
+                indexChannel.close();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a segment written before a restart and passes every complete entry of its index to
+     * {@code recoveredEntries}. The recovered segment is sealed. Returns empty if the segment was
+     * written with another format version.
+     */
+    public static Optional<FragmentResultCacheSegment> recover(Path directory, long id, RecoveredEntryConsumer recoveredEntries)
+            throws IOException
+    {
+        Path dataPath = directory.resolve(dataFileName(id));
+        Path indexPath = directory.resolve(indexFileName(id));
+        Slice index = Slices.wrappedBuffer(Files.readAllBytes(indexPath));
+        if (!hasCurrentHeader(index)) {
+            return Optional.empty();
+        }
+        FileChannel dataChannel = FileChannel.open(dataPath, READ);
+        long dataSize = dataChannel.size();
+
+        FragmentResultCacheSegment segment;
+        try {
+            if (dataSize < HEADER_SIZE || !hasCurrentHeader(Slices.wrappedBuffer(dataChannel.map(READ_ONLY, 0, HEADER_SIZE)))) {
+                dataChannel.close();
+                return Optional.empty();
+            }
+            segment = new FragmentResultCacheSegment(id, dataPath, indexPath, dataChannel, FileChannel.open(indexPath, READ), dataSize, index.length(), Files.getLastModifiedTime(dataPath).toMillis());
+        }
+        catch (IOException e) {
+            dataChannel.close();
+            throw e;
+        }
+        segment.sealed = true;
+
+        SliceInput input = index.getInput();
+        input.skipBytes(HEADER_SIZE);
+        while (input.available() >= SIZE_OF_INT) {
+            int recordLength = input.readInt();
+            if (input.available() < recordLength) {
+                // the process stopped while this record was written
+                break;
+            }
+            long planHashHigh = input.readLong();
+            long planHashLow = input.readLong();
+            String splitKey = input.readSlice(input.readInt()).toStringUtf8();
+            Entry entry = new Entry(segment, input.readLong(), input.readLong(), input.readLong(), input.readLong(), input.readLong());
+            if (entry.getOffset() + entry.getLength() > dataSize) {
+                break;
+            }
+            CacheKey key = new CacheKey(planHashHigh, planHashLow, splitKey);
+            segment.keys.add(key);
+            recoveredEntries.accept(key, entry);
+        }
+        return Optional.of(segment);
+    }
+
+    private static Slice header()
+    {
+        Slice header = Slices.allocate(HEADER_SIZE);
+        header.setInt(0, FORMAT_MAGIC);
+        header.setInt(SIZE_OF_INT, FORMAT_VERSION);
+        return header;
+    }
+
+    private static boolean hasCurrentHeader(Slice data)
+    {
+        return data.length() >= HEADER_SIZE && data.getInt(0) == FORMAT_MAGIC && data.getInt(SIZE_OF_INT) == FORMAT_VERSION;
+    }
+
+    /**
+     * Returns the id of the segment with the given data or index file name.
+     */
+    public static OptionalLong parseSegmentId(String fileName)
+    {
+        String suffix;
+        if (fileName.endsWith(DATA_SUFFIX)) {
+            suffix = DATA_SUFFIX;
+        }
+        else if (fileName.endsWith(INDEX_SUFFIX)) {
+            suffix = INDEX_SUFFIX;
+        }
+        else {
+            return OptionalLong.empty();
+        }
+        if (!fileName.startsWith(FILE_PREFIX)) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(fileName.substring(FILE_PREFIX.length(), fileName.length() - suffix.length())));
+        }
+        catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    public static String dataFileName(long id)
+    {
+        return format("%s%06d%s", FILE_PREFIX, id, DATA_SUFFIX);
+    }
+
+    public static String indexFileName(long id)
+    {
+        return format("%s%06d%s", FILE_PREFIX, id, INDEX_SUFFIX);
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    /**
+     * Appends the serialized pages of an entry to the data file and records it in the index.
+     * Returns empty if the segment has been sealed or closed in the meantime.
+     */
+    public synchronized Optional<Entry> append(CacheKey key, Slice data, long inputDataSize)
+            throws IOException
+    {
+        if (sealed || closed) {
+            return Optional.empty();
+        }
+
+        long offset = dataSize;
+        writeFully(dataChannel, data.toByteBuffer(), offset);
+        dataSize += data.length();
+
+        Entry entry = new Entry(this, offset, data.length(), XxHash64.hash(data), inputDataSize, System.currentTimeMillis());
+        Slice splitKey = Slices.utf8Slice(key.getSplitKey());
+        int recordLength = 2 * SIZE_OF_LONG + SIZE_OF_INT + splitKey.length() + 5 * SIZE_OF_LONG;
+        DynamicSliceOutput record = new DynamicSliceOutput(SIZE_OF_INT + recordLength);
+        record.writeInt(recordLength);
+        record.writeLong(key.getPlanHashHigh());
+        record.writeLong(key.getPlanHashLow());
+        record.writeInt(splitKey.length());
+        record.writeBytes(splitKey);
+        record.writeLong(entry.getOffset());
+        record.writeLong(entry.getLength());
+        record.writeLong(entry.getChecksum());
+        record.writeLong(entry.getInputDataSize());
+        record.writeLong(entry.getLastAccessMillis());
+        writeFully(indexChannel, record.slice().toByteBuffer(), indexSize);
+        indexSize += record.size();
+
+        keys.add(key);
+        recordAccess();
+        return Optional.of(entry);
+    }
+
+    /**
+     * Maps the data of an entry into memory. Returns empty if the segment has been closed.
+     */
+    public synchronized Optional<Slice> read(Entry entry)
+            throws IOException
+    {
+        if (closed) {
+            return Optional.empty();
+        }
+        if (entry.getLength() == 0) {
+            return Optional.of(Slices.EMPTY_SLICE);
+        }
+        return Optional.of(Slices.wrappedBuffer(dataChannel.map(READ_ONLY, entry.getOffset(), entry.getLength())));
+    }
+
+    public synchronized void seal()
+    {
+        sealed = true;
+    }
+
+    public synchronized boolean isSealed()
+    {
+        return sealed;
+    }
+
+    /**
+     * Closes the segment and returns the keys of all its entries. The files are left in place.
+     */
+    public synchronized List<CacheKey> close()
+    {
+        if (closed) {
+            return new ArrayList<>();
+        }
+        closed = true;
+        sealed = true;
+        try {
+            dataChannel.close();
+            indexChannel.close();
+        }
+        catch (IOException e) {
+            // ignore
+        }
+        return new ArrayList<>(keys);
+    }
+
+    public synchronized long getSizeInBytes()
+    {
+        return dataSize + indexSize;
+    }
+
+    public synchronized int getEntryCount()
+    {
+        return keys.size();
+    }
+
+    public Path getDataPath()
+    {
+        return dataPath;
+    }
+
+    public Path getIndexPath()
+    {
+        return indexPath;
+    }
+
+    public void recordHit()
+    {
+        hits.incrementAndGet();
+        recordAccess();
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * Halves the hit count, so that segments which were popular a long time ago eventually become
+     * eligible for eviction.
+     */
+    public void decayHits()
+    {
+        hits.updateAndGet(value -> value >> 1);
+    }
+
+    public long getLastAccessMillis()
+    {
+        return lastAccessMillis;
+    }
+
+    private void recordAccess()
+    {
+        lastAccessMillis = System.currentTimeMillis();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException
+    {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public interface RecoveredEntryConsumer
+    {
+        void accept(CacheKey key, Entry entry);
+    }
+
+    public static class Entry
+    {
+        private final FragmentResultCacheSegment segment;
+        private final long offset;
+        private final long length;
+        private final long checksum;
+        private final long inputDataSize;
+        private volatile long lastAccessMillis;
+
+        public Entry(FragmentResultCacheSegment segment, long offset, long length, long checksum, long inputDataSize, long lastAccessMillis)
+        {
+            this.segment = requireNonNull(segment, "segment is null");
+            this.offset = offset;
+            this.length = length;
+            this.checksum = checksum;
+            this.inputDataSize = inputDataSize;
+            this.lastAccessMillis = lastAccessMillis;
+        }
+
+        public FragmentResultCacheSegment getSegment()
+        {
+            return segment;
+        }
+
+        public long getOffset()
+        {
+            return offset;
+        }
+
+        public long getLength()
+        {
+            return length;
+        }
+
+        public long getChecksum()
+        {
+            return checksum;
+        }
+
+        public long getInputDataSize()
+        {
+            return inputDataSize;
+        }
+
+        /**
+         * Returns the time the entry was last read, or written if it has not been read since. Reads
+         * are not persisted, so a recovered entry starts from the time it was written.
+         */
+        public long getLastAccessMillis()
+        {
+            return lastAccessMillis;
+        }
+
+        public void recordAccess()
+        {
+            lastAccessMillis = System.currentTimeMillis();
+        }
+    }
+}
@@ -21,14 +21,17 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.UpdateMemory.NOOP;
+import static com.google.common.base.Preconditions.checkArgument;
 
 public interface GroupByHash
 {
@@ -51,8 +54,24 @@ public interface GroupByHash
             boolean processDictionary,
             JoinCompiler joinCompiler,
             UpdateMemory updateMemory)
+    {
+        return createGroupByHash(hashTypes, hashChannels, inputHashChannel, expectedSize, processDictionary, false, joinCompiler, updateMemory);
+    }
+
+    static GroupByHash createGroupByHash(
+            List<? extends Type> hashTypes,
+            int[] hashChannels,
+            Optional<Integer> inputHashChannel,
+            int expectedSize,
+            boolean processDictionary,
+            boolean partitioned,
+            JoinCompiler joinCompiler,
+            UpdateMemory updateMemory)
     {
         if (hashTypes.size() == 1 && hashTypes.get(0).equals(BIGINT) && hashChannels.length == 1) {
+            if (partitioned) {
+                return new PartitionedBigintGroupByHash(hashChannels[0], inputHashChannel.isPresent(), expectedSize, updateMemory);
+            }
             return new BigintGroupByHash(hashChannels[0], inputHashChannel.isPresent(), expectedSize, updateMemory);
         }
         return new MultiChannelGroupByHash(hashTypes, hashChannels, inputHashChannel, expectedSize, processDictionary, joinCompiler, updateMemory);
@@ -64,6 +83,19 @@ public interface GroupByHash
 
     double getExpectedHashCollisions();
 
+    /**
+     * Number of times (part of) the hash table was reallocated and its entries reinserted to make room for more groups.
+     */
+    default long getRehashCount()
+    {
+        return 0;
+    }
+
+    default long getRehashTimeNanos()
+    {
+        return 0;
+    }
+
     List<Type> getTypes();
 
     int getGroupCount();
@@ -74,6 +106,34 @@ public interface GroupByHash
 
     List<Page> getBufferedPages();
 
+    /**
+     * Returns the values of the groups with an id less than {@code groupCount}, laid out like {@link #getTypes()}.
+     */
+    default Iterator<Page> getGroupValues(int groupCount)
+    {
+        checkArgument(groupCount <= getGroupCount(), "groupCount is greater than the number of groups");
+        return new AbstractIterator<Page>()
+        {
+            private final PageBuilder pageBuilder = new PageBuilder(getTypes());
+            private int groupId;
+
+            @Override
+            protected Page computeNext()
+            {
+                pageBuilder.reset();
+                while (!pageBuilder.isFull() && groupId < groupCount) {
+                    appendValuesTo(groupId, pageBuilder, 0);
+                    pageBuilder.declarePosition();
+                    groupId++;
+                }
+                if (pageBuilder.isEmpty()) {
+                    return endOfData();
+                }
+                return pageBuilder.build();
+            }
+        };
+    }
+
     Work<GroupByIdBlock> getGroupIds(Page page);
 
     boolean contains(int position, Page page, int[] hashChannels);
@@ -574,6 +574,7 @@ public class HashAggregationOperator
         outputPages = null;
         if (aggregationBuilder != null) {
             aggregationBuilder.recordHashCollisions(hashCollisionsCounter);
+            aggregationBuilder.recordRehashes(operatorContext.getRuntimeStats());
             aggregationBuilder.close();
             // aggregationBuilder.close() will release all memory reserved in memory accounting.
             // The reference must be set to null afterwards to avoid unaccounted memory.
@@ -48,6 +48,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
@@ -412,6 +413,7 @@ public class HashBuilderOperator
         }
         else if (state == State.LOOKUP_SOURCE_BUILT) {
             finishMemoryRevoke = Optional.of(() -> {
+                // the lookup source factory no longer hands out lookup sources of the spilled partition
                 lookupSourceFactory.setPartitionSpilledLookupSourceHandle(partitionIndex, spilledLookupSourceHandle);
                 lookupSourceNotNeeded = Optional.empty();
                 index.clear();
@@ -420,7 +422,7 @@ public class HashBuilderOperator
                 localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
                 localRevocableMemoryContext.setBytes(0);
                 lookupSourceChecksum = OptionalLong.of(lookupSourceSupplier.checksum());
-                lookupSourceSupplier = null;
+                closeLookupSourceSupplier();
                 state = State.INPUT_SPILLED;
             });
             return spillIndex();
@@ -547,7 +549,7 @@ public class HashBuilderOperator
         index.clear();
         localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
-        lookupSourceSupplier = null;
+        closeLookupSourceSupplier();
         close();
     }
 
@@ -635,6 +637,7 @@ public class HashBuilderOperator
         index.clear();
         localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
 
+        closeLookupSourceSupplier();
         close();
         spilledLookupSourceHandle.setDisposeCompleted();
     }
@@ -650,6 +653,17 @@ public class HashBuilderOperator
         return partition;
     }
 
+    /**
+     * Must only be called once the probe side no longer uses the lookup source.
+     */
+    private void closeLookupSourceSupplier()
+    {
+        if (lookupSourceSupplier != null) {
+            lookupSourceSupplier.close();
+            lookupSourceSupplier = null;
+        }
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -674,7 +688,11 @@ public class HashBuilderOperator
             return;
         }
         // close() can be called in any state, due for example to query failure, and must clean resource up unconditionally
-        lookupSourceSupplier = null;
+        if (lookupSourceSupplier != null) {
+            // probe drivers may use the lookup source until the lookup source factory is destroyed
+            lookupSourceFactoryDestroyed.addListener(lookupSourceSupplier::close, directExecutor());
+            lookupSourceSupplier = null;
+        }
         unspillInProgress = Optional.empty();
         state = State.CLOSED;
         finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
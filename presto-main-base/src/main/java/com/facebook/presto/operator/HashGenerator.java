@@ -19,6 +19,17 @@ public interface HashGenerator
 {
     long hashPosition(int position, Page page);
 
+    /**
+     * Computes the hashes of the {@code positionCount} entries of {@code positions} starting at {@code offset}
+     * into {@code hashes}, which is indexed the same way as {@code positions}.
+     */
+    default void hashPositions(Page page, int[] positions, int offset, int positionCount, long[] hashes)
+    {
+        for (int i = offset; i < offset + positionCount; i++) {
+            hashes[i] = hashPosition(positions[i], page);
+        }
+    }
+
     default int getPartition(int partitionCount, int position, Page page)
     {
         long rawHash = hashPosition(position, page);
@@ -19,17 +19,26 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.airlift.concurrent.MoreFutures.tryGetFutureValue;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.operator.SetBuilderOperator.SetSupplier.SPILL_PARTITION_COUNT;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class HashSemiJoinOperator
@@ -46,9 +55,22 @@ public class HashSemiJoinOperator
         private final List<Type> probeTypes;
         private final int probeJoinChannel;
         private final Optional<Integer> probeJoinHashChannel;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
         private boolean closed;
 
         public HashSemiJoinOperatorFactory(int operatorId, PlanNodeId planNodeId, SetSupplier setSupplier, List<? extends Type> probeTypes, int probeJoinChannel, Optional<Integer> probeJoinHashChannel)
+        {
+            this(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, unsupportedPartitioningSpillerFactory());
+        }
+
+        public HashSemiJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                SetSupplier setSupplier,
+                List<? extends Type> probeTypes,
+                int probeJoinChannel,
+                Optional<Integer> probeJoinHashChannel,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -57,6 +79,8 @@ public class HashSemiJoinOperator
             checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
             this.probeJoinChannel = probeJoinChannel;
             this.probeJoinHashChannel = probeJoinHashChannel;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            setSupplier.probeFactoryCreated();
         }
 
         @Override
@@ -64,31 +88,57 @@ public class HashSemiJoinOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, HashSemiJoinOperator.class.getSimpleName());
-            return new HashSemiJoinOperator(operatorContext, setSupplier, probeJoinChannel, probeJoinHashChannel);
+            return new HashSemiJoinOperator(operatorContext, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, partitioningSpillerFactory);
         }
 
         @Override
         public void noMoreOperators()
         {
+            if (closed) {
+                return;
+            }
             closed = true;
+            setSupplier.probeFactoryClosed();
         }
 
         @Override
         public OperatorFactory duplicate()
         {
-            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel);
+            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, partitioningSpillerFactory);
         }
     }
 
+    private final SetSupplier setSupplier;
+    private final List<Type> probeTypes;
     private final int probeJoinChannel;
     private final ListenableFuture<ChannelSet> channelSetFuture;
     private final Optional<Integer> probeHashChannel;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
     private ChannelSet channelSet;
     private Page outputPage;
     private boolean finishing;
+    private boolean closed;
+
+    // used when the set has been spilled, see SetSupplier
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private int lastFinishedStep = -2;
+    private ChannelSet partitionSet;
+    private Iterator<Page> spilledPages;
 
     public HashSemiJoinOperator(OperatorContext operatorContext, SetSupplier channelSetFuture, int probeJoinChannel, Optional<Integer> probeHashChannel)
+    {
+        this(operatorContext, channelSetFuture, ImmutableList.of(), probeJoinChannel, probeHashChannel, unsupportedPartitioningSpillerFactory());
+    }
+
+    public HashSemiJoinOperator(
+            OperatorContext operatorContext,
+            SetSupplier channelSetFuture,
+            List<Type> probeTypes,
+            int probeJoinChannel,
+            Optional<Integer> probeHashChannel,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
@@ -96,9 +146,13 @@ public class HashSemiJoinOperator
         requireNonNull(channelSetFuture, "hashProvider is null");
         checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
 
+        this.setSupplier = channelSetFuture;
         this.channelSetFuture = channelSetFuture.getChannelSet();
+        this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
         this.probeJoinChannel = probeJoinChannel;
         this.probeHashChannel = probeHashChannel;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        setSupplier.probeOperatorCreated();
     }
 
     @Override
@@ -116,13 +170,22 @@ public class HashSemiJoinOperator
     @Override
     public boolean isFinished()
     {
-        return finishing && outputPage == null;
+        return finishing && outputPage == null && (!spiller.isPresent() || lastFinishedStep == SPILL_PARTITION_COUNT - 1);
     }
 
     @Override
     public ListenableFuture<?> isBlocked()
     {
-        return channelSetFuture;
+        if (!setSupplier.getSetBuilt().isDone()) {
+            return setSupplier.getSetBuilt();
+        }
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
+        if (finishing && spiller.isPresent() && spilledPages == null && lastFinishedStep >= -1 && lastFinishedStep < SPILL_PARTITION_COUNT - 1) {
+            return setSupplier.getPartitionBuilt(lastFinishedStep + 1);
+        }
+        return NOT_BLOCKED;
     }
 
     @Override
@@ -132,6 +195,10 @@ public class HashSemiJoinOperator
             return false;
         }
 
+        if (setSupplier.isSpilled()) {
+            return spillInProgress.isDone();
+        }
+
         if (channelSet == null) {
             channelSet = tryGetFutureValue(channelSetFuture).orElse(null);
         }
@@ -143,11 +210,19 @@ public class HashSemiJoinOperator
     {
         requireNonNull(page, "page is null");
         checkState(!finishing, "Operator is finishing");
-        // use an effectively-final local variable instead of the non-final instance field inside of the loop
-        ChannelSet channelSet = this.channelSet;
-        checkState(channelSet != null, "Set has not been built yet");
         checkState(outputPage == null, "Operator still has pending output");
 
+        if (setSupplier.isSpilled()) {
+            spillInput(page);
+            return;
+        }
+
+        checkState(channelSet != null, "Set has not been built yet");
+        outputPage = semiJoin(page, channelSet, channelSet.isEmpty(), channelSet.containsNull());
+    }
+
+    private Page semiJoin(Page page, ChannelSet channelSet, boolean setEmpty, boolean setContainsNull)
+    {
         // create the block builder for the new boolean column
         // we know the exact size required for the block
         BlockBuilder blockBuilder = BOOLEAN.createFixedSizeBlockBuilder(page.getPositionCount());
@@ -159,7 +234,7 @@ public class HashSemiJoinOperator
         // update hashing strategy to use probe cursor
         for (int position = 0; position < page.getPositionCount(); position++) {
             if (probeJoinNulls != null && probeJoinNulls.isNull(position)) {
-                if (channelSet.isEmpty()) {
+                if (setEmpty) {
                     BOOLEAN.writeBoolean(blockBuilder, false);
                 }
                 else {
@@ -175,7 +250,7 @@ public class HashSemiJoinOperator
                 else {
                     contains = channelSet.contains(position, probeJoinPage);
                 }
-                if (!contains && channelSet.containsNull()) {
+                if (!contains && setContainsNull) {
                     blockBuilder.appendNull();
                 }
                 else {
@@ -185,14 +260,92 @@ public class HashSemiJoinOperator
         }
 
         // add the new boolean column to the page
-        outputPage = page.appendColumn(blockBuilder.build());
+        return page.appendColumn(blockBuilder.build());
+    }
+
+    private void spillInput(Page page)
+    {
+        checkState(spillInProgress.isDone(), "Previous spill still in progress");
+        checkSpillSucceeded(spillInProgress);
+
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(partitioningSpillerFactory.create(
+                    probeTypes,
+                    setSupplier.createSpillPartitionGenerator(probeJoinChannel),
+                    operatorContext.getSpillContext().newLocalSpillContext(),
+                    operatorContext.aggregateSystemMemoryContext()));
+        }
+        spillInProgress = spiller.get().partitionAndSpill(page, partition -> true).getSpillingFuture();
     }
 
     @Override
     public Page getOutput()
     {
+        if (outputPage == null && finishing && spiller.isPresent()) {
+            outputPage = processSpilledPartitions();
+        }
         Page result = outputPage;
         outputPage = null;
         return result;
     }
+
+    /**
+     * Probes the spilled input one partition at a time, once the set of the partition has been rebuilt.
+     */
+    private Page processSpilledPartitions()
+    {
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        if (lastFinishedStep < -1) {
+            // all input has been spilled
+            finishStep();
+        }
+        while (lastFinishedStep < SPILL_PARTITION_COUNT - 1) {
+            int partition = lastFinishedStep + 1;
+            if (spilledPages == null) {
+                if (!setSupplier.getPartitionBuilt(partition).isDone()) {
+                    return null;
+                }
+                partitionSet = setSupplier.getPartitionSet(partition);
+                spilledPages = spiller.get().getSpilledPages(partition);
+            }
+            if (spilledPages.hasNext()) {
+                // null semantics depend on the whole set rather than on the partition
+                return semiJoin(spilledPages.next(), partitionSet, setSupplier.isSpilledSetEmpty(), setSupplier.spilledSetContainsNull());
+            }
+            spilledPages = null;
+            partitionSet = null;
+            finishStep();
+        }
+        return null;
+    }
+
+    private void finishStep()
+    {
+        lastFinishedStep++;
+        setSupplier.probeStepFinished(lastFinishedStep);
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        spilledPages = null;
+        partitionSet = null;
+        setSupplier.probeOperatorClosed(lastFinishedStep);
+        spiller.ifPresent(partitioningSpiller -> {
+            try {
+                partitioningSpiller.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
 }
@@ -78,6 +78,20 @@ public class InterpretedHashGenerator
         return result;
     }
 
+    @Override
+    public void hashPositions(Page page, int[] positions, int offset, int positionCount, long[] hashes)
+    {
+        // Note: this must logically match hashPosition(position, Page page), but hashes one column at a time
+        Arrays.fill(hashes, offset, offset + positionCount, INITIAL_HASH_VALUE);
+        for (int i = 0; i < hashChannelTypes.length; i++) {
+            Type type = hashChannelTypes[i];
+            Block block = page.getBlock(hashChannels == null ? i : hashChannels[i]);
+            for (int j = offset; j < offset + positionCount; j++) {
+                hashes[j] = CombineHashFunction.getHash(hashes[j], TypeUtils.hashPosition(type, block, positions[j]));
+            }
+        }
+    }
+
     public long hashPosition(int position, IntFunction<Block> blockProvider)
     {
         // Note: this code is duplicated for performance but must logically match hashPosition(position, Page page)
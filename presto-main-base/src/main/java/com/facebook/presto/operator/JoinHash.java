@@ -28,7 +28,7 @@ public final class JoinHash
         implements LookupSource
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(JoinHash.class).instanceSize();
-    private final PagesHash pagesHash;
+    private final JoinPagesHash pagesHash;
 
     // we unwrap Optional<JoinFilterFunction> to actual verifier or null in constructor for performance reasons
     // we do quick check for `filterFunction == null` in `isJoinPositionEligible` to avoid calls to applyFilterFunction
@@ -40,7 +40,12 @@ public final class JoinHash
     @Nullable
     private final PositionLinks positionLinks;
 
-    public JoinHash(PagesHash pagesHash, Optional<JoinFilterFunction> filterFunction, Optional<PositionLinks> positionLinks)
+    // scratch arrays used by getJoinPositions
+    private long[] batchHashes = new long[0];
+    private int[] batchSlots = new int[0];
+    private int[] batchAddressIndexes = new int[0];
+
+    public JoinHash(JoinPagesHash pagesHash, Optional<JoinFilterFunction> filterFunction, Optional<PositionLinks> positionLinks)
     {
         this.pagesHash = requireNonNull(pagesHash, "pagesHash is null");
         this.filterFunction = requireNonNull(filterFunction, "filterFunction can not be null").orElse(null);
@@ -91,6 +96,33 @@ public final class JoinHash
         return startJoinPosition(addressIndex, position, allChannelsPage);
     }
 
+    @Override
+    public void getJoinPositions(int[] positions, int offset, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        if (batchSlots.length < positionCount) {
+            batchSlots = new int[positionCount];
+            batchAddressIndexes = new int[positionCount];
+        }
+
+        long[] hashes = rawHashes;
+        if (hashes == null) {
+            // indexed the same way as positions
+            if (batchHashes.length < offset + positionCount) {
+                batchHashes = new long[offset + positionCount];
+            }
+            hashes = batchHashes;
+            for (int i = offset; i < offset + positionCount; i++) {
+                hashes[i] = pagesHash.hashRow(positions[i], hashChannelsPage);
+            }
+        }
+
+        pagesHash.getAddressIndexes(positions, offset, positionCount, hashChannelsPage, hashes, batchSlots, batchAddressIndexes);
+        for (int i = 0; i < positionCount; i++) {
+            int position = positions[offset + i];
+            joinPositions[position] = startJoinPosition(batchAddressIndexes[i], position, allChannelsPage);
+        }
+    }
+
     private long startJoinPosition(int currentJoinPosition, int probePosition, Page allProbeChannelsPage)
     {
         if (currentJoinPosition == -1) {
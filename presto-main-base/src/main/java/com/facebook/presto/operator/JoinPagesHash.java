@@ -0,0 +1,49 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+
+/**
+ * Hash table over the positions of the build side of a join, which {@link JoinHash} probes.
+ * {@code JoinCompiler} loads a separate copy of {@link JoinHash} for each implementation, so
+ * that the calls of each copy only ever reach one implementation.
+ */
+public interface JoinPagesHash
+{
+    int getChannelCount();
+
+    int getPositionCount();
+
+    long getInMemorySizeInBytes();
+
+    int getAddressIndex(int position, Page hashChannelsPage);
+
+    int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash);
+
+    long hashRow(int position, Page hashChannelsPage);
+
+    /**
+     * Batch version of {@link #getAddressIndex(int, Page, long)} for the {@code positionCount} positions
+     * starting at {@code offset}.
+     *
+     * @param rawHashes hashes of the positions, indexed the same way as {@code positions}
+     * @param slots scratch array of at least {@code positionCount} entries
+     * @param addressIndexes output array of at least {@code positionCount} entries, indexed from 0
+     */
+    void getAddressIndexes(int[] positions, int offset, int positionCount, Page hashChannelsPage, long[] rawHashes, int[] slots, int[] addressIndexes);
+
+    void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset);
+}
@@ -39,9 +39,37 @@ public class JoinProbe
         }
 
         public JoinProbe createJoinProbe(Page page)
+        {
+            return createJoinProbe(page, null);
+        }
+
+        /**
+         * @param batchProbeBuffers if not null, join positions are resolved for the whole page with a single call
+         * into the lookup source instead of one position at a time, using these buffers
+         */
+        public JoinProbe createJoinProbe(Page page, @Nullable BatchProbeBuffers batchProbeBuffers)
         {
             Page probePage = page.getLoadedPage(probeJoinChannels);
-            return new JoinProbe(probeOutputChannels, page, probePage, probeHashChannel >= 0 ? page.getBlock(probeHashChannel).getLoadedBlock() : null);
+            return new JoinProbe(probeOutputChannels, page, probePage, probeHashChannel >= 0 ? page.getBlock(probeHashChannel).getLoadedBlock() : null, batchProbeBuffers);
+        }
+    }
+
+    /**
+     * Arrays used by batch probes, reused for the pages of an operator. They belong to one probe at a time.
+     */
+    public static class BatchProbeBuffers
+    {
+        private int[] positions = new int[0];
+        private long[] rawHashes = new long[0];
+        private long[] joinPositions = new long[0];
+
+        private void ensureCapacity(int positionCount)
+        {
+            if (positions.length < positionCount) {
+                positions = new int[positionCount];
+                rawHashes = new long[positionCount];
+                joinPositions = new long[positionCount];
+            }
         }
     }
 
@@ -52,11 +80,17 @@ public class JoinProbe
     @Nullable
     private final Block probeHashBlock;
     private final boolean probeMayHaveNull;
+    // join positions resolved in batch are held in joinPositions, indexed by probe position, and are valid for batchLookupSource only
+    @Nullable
+    private final BatchProbeBuffers batchProbeBuffers;
 
     private int position = -1;
     private int nullRowCount;
 
-    private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock)
+    @Nullable
+    private LookupSource batchLookupSource;
+
+    private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock, @Nullable BatchProbeBuffers batchProbeBuffers)
     {
         this.probeOutputChannels = probeOutputChannels;
         this.positionCount = page.getPositionCount();
@@ -64,6 +98,10 @@ public class JoinProbe
         this.probePage = probePage;
         this.probeHashBlock = probeHashBlock;
         this.probeMayHaveNull = probeMayHaveNull(probePage);
+        this.batchProbeBuffers = batchProbeBuffers;
+        if (batchProbeBuffers != null) {
+            batchProbeBuffers.ensureCapacity(positionCount);
+        }
     }
 
     public int[] getOutputChannels()
@@ -82,6 +120,12 @@ public class JoinProbe
             ++nullRowCount;
             return -1;
         }
+        if (batchProbeBuffers != null) {
+            if (lookupSource != batchLookupSource) {
+                resolveJoinPositions(lookupSource);
+            }
+            return batchProbeBuffers.joinPositions[position];
+        }
         if (probeHashBlock != null) {
             long rawHash = BIGINT.getLong(probeHashBlock, position);
             return lookupSource.getJoinPosition(position, probePage, page, rawHash);
@@ -99,7 +143,37 @@ public class JoinProbe
         return page;
     }
 
+    /**
+     * Resolves the join positions of the current and all the remaining positions of the page at once
+     */
+    private void resolveJoinPositions(LookupSource lookupSource)
+    {
+        int[] positions = batchProbeBuffers.positions;
+        int batchPositionCount = 0;
+        for (int currentPosition = position; currentPosition < positionCount; currentPosition++) {
+            if (!probeMayHaveNull || !rowContainsNull(currentPosition)) {
+                positions[batchPositionCount++] = currentPosition;
+            }
+        }
+
+        long[] rawHashes = null;
+        if (probeHashBlock != null) {
+            rawHashes = batchProbeBuffers.rawHashes;
+            for (int i = 0; i < batchPositionCount; i++) {
+                rawHashes[i] = BIGINT.getLong(probeHashBlock, positions[i]);
+            }
+        }
+
+        lookupSource.getJoinPositions(positions, 0, batchPositionCount, probePage, page, rawHashes, batchProbeBuffers.joinPositions);
+        batchLookupSource = lookupSource;
+    }
+
     private boolean currentRowContainsNull()
+    {
+        return rowContainsNull(position);
+    }
+
+    private boolean rowContainsNull(int position)
     {
         for (int i = 0; i < probePage.getChannelCount(); i++) {
             if (probePage.getBlock(i).isNull(position)) {
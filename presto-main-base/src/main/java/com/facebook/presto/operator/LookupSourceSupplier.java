@@ -30,4 +30,10 @@ public interface LookupSourceSupplier
     long getPositionIsNullCount();
 
     long getPositionCount();
+
+    /**
+     * Releases the memory of this supplier which is kept outside of the Java heap.
+     * Must only be called once the lookup sources created by this supplier are no longer used.
+     */
+    default void close() {}
 }
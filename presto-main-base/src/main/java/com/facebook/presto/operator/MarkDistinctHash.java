@@ -23,12 +23,14 @@ import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.toIntExact;
 
 public class MarkDistinctHash
 {
@@ -66,6 +68,20 @@ public class MarkDistinctHash
         return groupByHash.getBufferedPages();
     }
 
+    public List<Type> getTypes()
+    {
+        return groupByHash.getTypes();
+    }
+
+    /**
+     * Returns the values of the rows which have been marked as distinct, followed by the hash if the hash channel is present.
+     * Values added by a page which has not been fully marked yet are left out.
+     */
+    public Iterator<Page> getMarkedDistinctValues()
+    {
+        return groupByHash.getGroupValues(toIntExact(nextDistinctId));
+    }
+
     private Block processNextGroupIds(GroupByIdBlock ids)
     {
         int positions = ids.getPositionCount();
@@ -85,6 +85,8 @@ public class MultiChannelGroupByHash
     private DictionaryLookBack dictionaryLookBack;
     private long hashCollisions;
     private double expectedHashCollisions;
+    private long rehashCount;
+    private long rehashTimeNanos;
 
     // reserve enough memory before rehash
     private final UpdateMemory updateMemory;
@@ -191,6 +193,18 @@ public class MultiChannelGroupByHash
         return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
     }
 
+    @Override
+    public long getRehashCount()
+    {
+        return rehashCount;
+    }
+
+    @Override
+    public long getRehashTimeNanos()
+    {
+        return rehashTimeNanos;
+    }
+
     @Override
     public List<Type> getTypes()
     {
@@ -396,6 +410,7 @@ public class MultiChannelGroupByHash
             return false;
         }
 
+        long start = System.nanoTime();
         expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
 
         int newMask = newCapacity - 1;
@@ -437,6 +452,9 @@ public class MultiChannelGroupByHash
         this.groupIdsByHash = newValue;
         groupAddressByGroupId.ensureCapacity(maxFill);
 
+        rehashCount++;
+        rehashTimeNanos += System.nanoTime() - start;
+
         preallocatedMemoryInBytes = 0;
         // release temporary memory reservation
         updateMemory.update();
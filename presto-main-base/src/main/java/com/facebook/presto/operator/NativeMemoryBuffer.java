@@ -0,0 +1,126 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.openjdk.jol.info.ClassLayout;
+import sun.misc.Unsafe;
+
+import java.lang.ref.Cleaner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.facebook.presto.util.UnsafeAccess.getUnsafe;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Fixed size block of memory allocated outside of the Java heap.
+ * <p>
+ * Accessors do not perform range checks, and must not be used after the buffer is
+ * closed. The memory is released by {@link #close()}. Buffers which are not closed,
+ * for example when a query fails, are released once they become unreachable.
+ */
+public final class NativeMemoryBuffer
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(NativeMemoryBuffer.class).instanceSize();
+    private static final Cleaner CLEANER = Cleaner.create();
+    private static final Unsafe unsafe = getUnsafe();
+    private static final AtomicLong unclosedBytes = new AtomicLong();
+
+    private final long address;
+    private final long sizeInBytes;
+    private final Cleaner.Cleanable cleanable;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public NativeMemoryBuffer(long sizeInBytes)
+    {
+        checkArgument(sizeInBytes >= 0, "sizeInBytes is negative");
+        this.sizeInBytes = sizeInBytes;
+        this.address = unsafe.allocateMemory(Math.max(sizeInBytes, 1));
+        unclosedBytes.addAndGet(sizeInBytes);
+        this.cleanable = CLEANER.register(this, new Deallocator(address));
+    }
+
+    /**
+     * Returns the size of the buffers which are not closed, including those released once they became unreachable.
+     */
+    @VisibleForTesting
+    static long getUnclosedBytes()
+    {
+        return unclosedBytes.get();
+    }
+
+    public long getSizeInBytes()
+    {
+        return sizeInBytes;
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeInBytes;
+    }
+
+    public void fill(byte value)
+    {
+        unsafe.setMemory(address, sizeInBytes, value);
+    }
+
+    public int getInt(long index)
+    {
+        return unsafe.getInt(address + index * Integer.BYTES);
+    }
+
+    public void setInt(long index, int value)
+    {
+        unsafe.putInt(address + index * Integer.BYTES, value);
+    }
+
+    public long getLong(long index)
+    {
+        return unsafe.getLong(address + index * Long.BYTES);
+    }
+
+    public void setLong(long index, long value)
+    {
+        unsafe.putLong(address + index * Long.BYTES, value);
+    }
+
+    /**
+     * Frees the memory. Calling this method more than once has no effect.
+     */
+    public void close()
+    {
+        if (closed.compareAndSet(false, true)) {
+            cleanable.clean();
+            unclosedBytes.addAndGet(-sizeInBytes);
+        }
+    }
+
+    private static class Deallocator
+            implements Runnable
+    {
+        private final long address;
+
+        private Deallocator(long address)
+        {
+            this.address = address;
+        }
+
+        @Override
+        public void run()
+        {
+            unsafe.freeMemory(address);
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.airlift.units.DataSize;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.AdaptiveLongBigArray;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.facebook.airlift.units.DataSize.Unit.KILOBYTE;
+import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
+import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Variant of {@link PagesHash} which keeps the open addressing slot table and the
+ * precomputed hashes of the build positions in native memory, so that very large
+ * build sides do not put pressure on the garbage collector. Full 64 bit hashes are
+ * kept instead of the single byte kept by {@link PagesHash}, which makes the key
+ * comparison against the build blocks necessary only for actual matches.
+ */
+// This implementation assumes arrays used in the hash are always a power of 2
+public final class OffHeapPagesHash
+        implements JoinPagesHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(OffHeapPagesHash.class).instanceSize();
+    private static final DataSize CACHE_SIZE = new DataSize(128, KILOBYTE);
+    private static final byte EMPTY_SLOT_BYTE = (byte) -1;
+
+    private final AdaptiveLongBigArray addresses;
+    private final int positionCount;
+    private final PagesHashStrategy pagesHashStrategy;
+
+    private final int channelCount;
+    private final int mask;
+    // slot -> build position, -1 marks an empty slot
+    private final NativeMemoryBuffer key;
+    // build position -> full hash
+    private final NativeMemoryBuffer positionToHashes;
+    private final long size;
+
+    private final long hashCollisions;
+    private final double expectedHashCollisions;
+    private final long positionIsNullCount;
+
+    public OffHeapPagesHash(
+            AdaptiveLongBigArray addresses,
+            int positionCount,
+            PagesHashStrategy pagesHashStrategy,
+            PositionLinks.FactoryBuilder positionLinks)
+    {
+        this.addresses = requireNonNull(addresses, "addresses is null");
+        this.positionCount = positionCount;
+        this.pagesHashStrategy = requireNonNull(pagesHashStrategy, "pagesHashStrategy is null");
+        this.channelCount = pagesHashStrategy.getChannelCount();
+
+        int hashSize = HashCommon.arraySize(positionCount, 0.75f);
+
+        mask = hashSize - 1;
+        key = new NativeMemoryBuffer((long) hashSize * Integer.BYTES);
+        key.fill(EMPTY_SLOT_BYTE);
+
+        positionToHashes = new NativeMemoryBuffer((long) positionCount * Long.BYTES);
+
+        // Hashes are extracted in batches, so that the blocks of a batch are still in cache when the batch is indexed
+        int positionsInStep = Math.min(positionCount + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
+        long hashCollisionsLocal = 0;
+        long positionIsNullCountLocal = 0;
+
+        for (int step = 0; step * positionsInStep < positionCount; step++) {
+            int stepBeginPosition = step * positionsInStep;
+            int stepEndPosition = Math.min((step + 1) * positionsInStep, positionCount);
+
+            for (int position = stepBeginPosition; position < stepEndPosition; position++) {
+                positionToHashes.setLong(position, readHashPosition(position));
+            }
+
+            // index pages
+            for (int position = stepBeginPosition; position < stepEndPosition; position++) {
+                int realPosition = position;
+                if (isPositionNull(realPosition)) {
+                    ++positionIsNullCountLocal;
+                    continue;
+                }
+
+                long hash = positionToHashes.getLong(realPosition);
+                int pos = getHashPosition(hash, mask);
+
+                // look for an empty slot or a slot containing this key
+                int currentKey;
+                while ((currentKey = key.getInt(pos)) != -1) {
+                    if (hash == positionToHashes.getLong(currentKey) && positionEqualsPositionIgnoreNulls(currentKey, realPosition)) {
+                        // found a slot for this key
+                        // link the new key position to the current key position
+                        realPosition = positionLinks.link(realPosition, currentKey);
+
+                        // key[pos] updated outside of this loop
+                        break;
+                    }
+                    // increment position and mask to handler wrap around
+                    pos = (pos + 1) & mask;
+                    hashCollisionsLocal++;
+                }
+
+                key.setInt(pos, realPosition);
+            }
+        }
+
+        size = addresses.getRetainedSizeInBytes() + pagesHashStrategy.getSizeInBytes() +
+                key.getRetainedSizeInBytes() + positionToHashes.getRetainedSizeInBytes();
+        hashCollisions = hashCollisionsLocal;
+        expectedHashCollisions = estimateNumberOfHashCollisions(positionCount, hashSize);
+        positionIsNullCount = positionIsNullCountLocal;
+    }
+
+    @Override
+    public final int getChannelCount()
+    {
+        return channelCount;
+    }
+
+    @Override
+    public int getPositionCount()
+    {
+        return positionCount;
+    }
+
+    @Override
+    public long getInMemorySizeInBytes()
+    {
+        return INSTANCE_SIZE + size;
+    }
+
+    public void close()
+    {
+        key.close();
+        positionToHashes.close();
+    }
+
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions;
+    }
+
+    public long getPositionIsNullCount()
+    {
+        return positionIsNullCount;
+    }
+
+    @Override
+    public int getAddressIndex(int position, Page hashChannelsPage)
+    {
+        return getAddressIndex(position, hashChannelsPage, pagesHashStrategy.hashRow(position, hashChannelsPage));
+    }
+
+    @Override
+    public int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash)
+    {
+        int pos = getHashPosition(rawHash, mask);
+
+        int currentKey;
+        while ((currentKey = key.getInt(pos)) != -1) {
+            if (positionEqualsCurrentRowIgnoreNulls(currentKey, rawHash, rightPosition, hashChannelsPage)) {
+                return currentKey;
+            }
+            // increment position and mask to handler wrap around
+            pos = (pos + 1) & mask;
+        }
+        return -1;
+    }
+
+    @Override
+    public long hashRow(int position, Page hashChannelsPage)
+    {
+        return pagesHashStrategy.hashRow(position, hashChannelsPage);
+    }
+
+    /**
+     * Batch version of {@link #getAddressIndex(int, Page, long)}. The hash table slots of all the positions are
+     * computed and loaded in separate loops before any key is compared, so that the cache misses on the hash table
+     * for different probe positions are independent of each other and can be overlapped.
+     */
+    @Override
+    public void getAddressIndexes(int[] positions, int offset, int positionCount, Page hashChannelsPage, long[] rawHashes, int[] slots, int[] addressIndexes)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            slots[i] = getHashPosition(rawHashes[offset + i], mask);
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            addressIndexes[i] = key.getInt(slots[i]);
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            int pos = slots[i];
+            int currentKey = addressIndexes[i];
+            while (currentKey != -1 && !positionEqualsCurrentRowIgnoreNulls(currentKey, rawHashes[offset + i], positions[offset + i], hashChannelsPage)) {
+                // increment position and mask to handler wrap around
+                pos = (pos + 1) & mask;
+                currentKey = key.getInt(pos);
+            }
+            addressIndexes[i] = currentKey;
+        }
+    }
+
+    @Override
+    public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        long pageAddress = addresses.get(toIntExact(position));
+        int blockIndex = decodeSliceIndex(pageAddress);
+        int blockPosition = decodePosition(pageAddress);
+
+        pagesHashStrategy.appendTo(blockIndex, blockPosition, pageBuilder, outputChannelOffset);
+    }
+
+    private boolean isPositionNull(int position)
+    {
+        long pageAddress = addresses.get(position);
+        int blockIndex = decodeSliceIndex(pageAddress);
+        int blockPosition = decodePosition(pageAddress);
+
+        return pagesHashStrategy.isPositionNull(blockIndex, blockPosition);
+    }
+
+    private long readHashPosition(int position)
+    {
+        long pageAddress = addresses.get(position);
+        int blockIndex = decodeSliceIndex(pageAddress);
+        int blockPosition = decodePosition(pageAddress);
+
+        return pagesHashStrategy.hashPosition(blockIndex, blockPosition);
+    }
+
+    private boolean positionEqualsCurrentRowIgnoreNulls(int leftPosition, long rawHash, int rightPosition, Page rightPage)
+    {
+        if (positionToHashes.getLong(leftPosition) != rawHash) {
+            return false;
+        }
+
+        long pageAddress = addresses.get(leftPosition);
+        int blockIndex = decodeSliceIndex(pageAddress);
+        int blockPosition = decodePosition(pageAddress);
+
+        return pagesHashStrategy.positionEqualsRowIgnoreNulls(blockIndex, blockPosition, rightPosition, rightPage);
+    }
+
+    private boolean positionEqualsPositionIgnoreNulls(int leftPosition, int rightPosition)
+    {
+        long leftPageAddress = addresses.get(leftPosition);
+        int leftBlockIndex = decodeSliceIndex(leftPageAddress);
+        int leftBlockPosition = decodePosition(leftPageAddress);
+
+        long rightPageAddress = addresses.get(rightPosition);
+        int rightBlockIndex = decodeSliceIndex(rightPageAddress);
+        int rightBlockPosition = decodePosition(rightPageAddress);
+
+        return pagesHashStrategy.positionEqualsPositionIgnoreNulls(leftBlockIndex, leftBlockPosition, rightBlockIndex, rightBlockPosition);
+    }
+
+    private static int getHashPosition(long rawHash, long mask)
+    {
+        // Avalanches the bits of a long integer by applying the finalisation step of MurmurHash3.
+        // See PagesHash#getHashPosition
+        rawHash ^= rawHash >>> 33;
+        rawHash *= 0xff51afd7ed558ccdL;
+        rawHash ^= rawHash >>> 33;
+        rawHash *= 0xc4ceb9fe1a85ec53L;
+        rawHash ^= rawHash >>> 33;
+
+        return (int) (rawHash & mask);
+    }
+}
@@ -32,6 +32,7 @@ import static java.util.Objects.requireNonNull;
 
 // This implementation assumes arrays used in the hash are always a power of 2
 public final class PagesHash
+        implements JoinPagesHash
 {
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(PagesHash.class).instanceSize();
     private static final DataSize CACHE_SIZE = new DataSize(128, KILOBYTE);
@@ -131,16 +132,19 @@ public final class PagesHash
         positionIsNullCount = positionIsNullCountLocal;
     }
 
+    @Override
     public final int getChannelCount()
     {
         return channelCount;
     }
 
+    @Override
     public int getPositionCount()
     {
         return positionCount;
     }
 
+    @Override
     public long getInMemorySizeInBytes()
     {
         return INSTANCE_SIZE + size;
@@ -161,11 +165,13 @@ public final class PagesHash
         return positionIsNullCount;
     }
 
+    @Override
     public int getAddressIndex(int position, Page hashChannelsPage)
     {
         return getAddressIndex(position, hashChannelsPage, pagesHashStrategy.hashRow(position, hashChannelsPage));
     }
 
+    @Override
     public int getAddressIndex(int rightPosition, Page hashChannelsPage, long rawHash)
     {
         int pos = getHashPosition(rawHash, mask);
@@ -180,6 +186,41 @@ public final class PagesHash
         return -1;
     }
 
+    @Override
+    public long hashRow(int position, Page hashChannelsPage)
+    {
+        return pagesHashStrategy.hashRow(position, hashChannelsPage);
+    }
+
+    /**
+     * Batch version of {@link #getAddressIndex(int, Page, long)}. The hash table slots of all the positions are
+     * computed and loaded in separate loops before any key is compared, so that the cache misses on the hash table
+     * for different probe positions are independent of each other and can be overlapped.
+     */
+    @Override
+    public void getAddressIndexes(int[] positions, int offset, int positionCount, Page hashChannelsPage, long[] rawHashes, int[] slots, int[] addressIndexes)
+    {
+        for (int i = 0; i < positionCount; i++) {
+            slots[i] = getHashPosition(rawHashes[offset + i], mask);
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            addressIndexes[i] = key[slots[i]];
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            int pos = slots[i];
+            int currentKey = addressIndexes[i];
+            while (currentKey != -1 && !positionEqualsCurrentRowIgnoreNulls(currentKey, (byte) rawHashes[offset + i], positions[offset + i], hashChannelsPage)) {
+                // increment position and mask to handler wrap around
+                pos = (pos + 1) & mask;
+                currentKey = key[pos];
+            }
+            addressIndexes[i] = currentKey;
+        }
+    }
+
+    @Override
     public void appendTo(long position, PageBuilder pageBuilder, int outputChannelOffset)
     {
         long pageAddress = addresses.get(toIntExact(position));
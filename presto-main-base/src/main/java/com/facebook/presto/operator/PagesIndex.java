@@ -54,6 +54,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.facebook.airlift.units.DataSize.Unit.BYTE;
+import static com.facebook.presto.SystemSessionProperties.isOffHeapJoinHashEnabled;
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
@@ -514,6 +515,17 @@ public class PagesIndex
                 sortChannel,
                 functionAndTypeManager);
 
+        if (isOffHeapJoinHashEnabled(session)) {
+            return new OffHeapJoinHashSupplier(
+                    session,
+                    hashStrategy,
+                    valueAddresses,
+                    positionCount,
+                    channels,
+                    filterFunctionFactory,
+                    sortChannel,
+                    searchFunctionFactories);
+        }
         return new JoinHashSupplier(
                 session,
                 hashStrategy,
@@ -0,0 +1,585 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.LongBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.BigintType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
+import com.facebook.presto.type.BigintOperators;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static io.airlift.slice.SizeOf.sizeOfObjectArray;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Integer.numberOfTrailingZeros;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Variant of {@link BigintGroupByHash} which splits the hash table into partitions selected by the
+ * high bits of the hash of the value. A full partition is rehashed on its own until it reaches
+ * {@link #MAX_PARTITION_CAPACITY} slots, after which it is split in two by one more bit of the hash.
+ * Growing the table never touches more than one partition, so the time and the temporary memory
+ * of a single rehash do not depend on the number of groups.
+ */
+public class PartitionedBigintGroupByHash
+        implements GroupByHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(PartitionedBigintGroupByHash.class).instanceSize();
+
+    @VisibleForTesting
+    static final int MAX_PARTITION_CAPACITY = 1 << 16;
+    private static final int MAX_DIRECTORY_DEPTH = 16;
+
+    private static final float FILL_RATIO = 0.75f;
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT);
+    private static final List<Type> TYPES_WITH_RAW_HASH = ImmutableList.of(BIGINT, BIGINT);
+
+    private final int hashChannel;
+    private final boolean outputRawHash;
+
+    // partition of each prefix of directoryDepth bits of the hash, a partition of a smaller depth owns a contiguous range of entries
+    private Partition[] directory;
+    private int directoryDepth;
+    private int hashCapacity;
+    private long partitionsSizeInBytes;
+
+    // partition that has reached its fill limit, but could not grow yet
+    private Partition fullPartition;
+
+    // groupId for the null value
+    private int nullGroupId = -1;
+
+    // reverse index from the groupId back to the value
+    private final LongBigArray valuesByGroupId;
+
+    private int nextGroupId;
+    private long hashCollisions;
+    private double expectedHashCollisions;
+    private long rehashCount;
+    private long rehashTimeNanos;
+
+    // reserve enough memory before rehash
+    private final UpdateMemory updateMemory;
+    private long preallocatedMemoryInBytes;
+    private long currentPageSizeInBytes;
+
+    public PartitionedBigintGroupByHash(int hashChannel, boolean outputRawHash, int expectedSize, UpdateMemory updateMemory)
+    {
+        checkArgument(hashChannel >= 0, "hashChannel must be at least zero");
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+
+        this.hashChannel = hashChannel;
+        this.outputRawHash = outputRawHash;
+
+        int expectedCapacity = arraySize(expectedSize, FILL_RATIO);
+        int partitionCapacity = min(expectedCapacity, MAX_PARTITION_CAPACITY);
+        directoryDepth = min(numberOfTrailingZeros(expectedCapacity / partitionCapacity), MAX_DIRECTORY_DEPTH);
+        directory = new Partition[1 << directoryDepth];
+        for (int i = 0; i < directory.length; i++) {
+            directory[i] = new Partition(partitionCapacity, directoryDepth);
+            partitionsSizeInBytes += directory[i].getRetainedSizeInBytes();
+        }
+        hashCapacity = partitionCapacity * directory.length;
+
+        valuesByGroupId = new LongBigArray();
+        valuesByGroupId.ensureCapacity(expectedSize);
+
+        // This interface is used for actively reserving memory (push model) for rehash.
+        // The caller can also query memory usage on this object (pull model)
+        this.updateMemory = requireNonNull(updateMemory, "updateMemory is null");
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return INSTANCE_SIZE +
+                sizeOf(directory) +
+                partitionsSizeInBytes +
+                valuesByGroupId.sizeOf() +
+                preallocatedMemoryInBytes;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        double partitionsExpectedHashCollisions = 0;
+        for (int i = 0; i < directory.length; i++) {
+            if (i == 0 || directory[i] != directory[i - 1]) {
+                partitionsExpectedHashCollisions += estimateNumberOfHashCollisions(directory[i].size, directory[i].getCapacity());
+            }
+        }
+        return expectedHashCollisions + partitionsExpectedHashCollisions;
+    }
+
+    @Override
+    public long getRehashCount()
+    {
+        return rehashCount;
+    }
+
+    @Override
+    public long getRehashTimeNanos()
+    {
+        return rehashTimeNanos;
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        return outputRawHash ? TYPES_WITH_RAW_HASH : TYPES;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        checkArgument(groupId >= 0, "groupId is negative");
+        BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset);
+        if (groupId == nullGroupId) {
+            blockBuilder.appendNull();
+        }
+        else {
+            BIGINT.writeLong(blockBuilder, valuesByGroupId.get(groupId));
+        }
+
+        if (outputRawHash) {
+            BlockBuilder hashBlockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset + 1);
+            if (groupId == nullGroupId) {
+                BIGINT.writeLong(hashBlockBuilder, NULL_HASH_CODE);
+            }
+            else {
+                BIGINT.writeLong(hashBlockBuilder, BigintOperators.hashCode(valuesByGroupId.get(groupId)));
+            }
+        }
+    }
+
+    @Override
+    public Work<?> addPage(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new AddPageWork(page.getBlock(hashChannel));
+    }
+
+    @Override
+    public List<Page> getBufferedPages()
+    {
+        throw new UnsupportedOperationException("PartitionedBigintGroupByHash does not support getBufferedPages");
+    }
+
+    @Override
+    public Work<GroupByIdBlock> getGroupIds(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new GetGroupIdsWork(page.getBlock(hashChannel));
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels)
+    {
+        Block block = page.getBlock(hashChannel);
+        if (block.isNull(position)) {
+            return nullGroupId >= 0;
+        }
+
+        long value = BIGINT.getLong(block, position);
+        long hash = murmurHash3(value);
+        Partition partition = directory[getPartitionIndex(hash)];
+        int hashPosition = (int) hash & partition.mask;
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            int groupId = partition.groupIds[hashPosition];
+            if (groupId == -1) {
+                return false;
+            }
+            else if (value == partition.values[hashPosition]) {
+                return true;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & partition.mask;
+        }
+    }
+
+    @Override
+    public long getRawHash(int groupId)
+    {
+        return BigintType.hash(valuesByGroupId.get(groupId));
+    }
+
+    @VisibleForTesting
+    @Override
+    public int getCapacity()
+    {
+        return hashCapacity;
+    }
+
+    @VisibleForTesting
+    int getPartitionCount()
+    {
+        int partitionCount = 0;
+        for (int i = 0; i < directory.length; i++) {
+            if (i == 0 || directory[i] != directory[i - 1]) {
+                partitionCount++;
+            }
+        }
+        return partitionCount;
+    }
+
+    private int putIfAbsent(int position, Block block)
+    {
+        if (block.isNull(position)) {
+            if (nullGroupId < 0) {
+                // set null group id
+                nullGroupId = nextGroupId++;
+                valuesByGroupId.ensureCapacity(nextGroupId);
+            }
+
+            return nullGroupId;
+        }
+
+        long value = BIGINT.getLong(block, position);
+        long hash = murmurHash3(value);
+        Partition partition = directory[getPartitionIndex(hash)];
+        int hashPosition = (int) hash & partition.mask;
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            int groupId = partition.groupIds[hashPosition];
+            if (groupId == -1) {
+                break;
+            }
+
+            if (value == partition.values[hashPosition]) {
+                return groupId;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & partition.mask;
+            hashCollisions++;
+        }
+
+        return addNewGroup(partition, hashPosition, value);
+    }
+
+    private int addNewGroup(Partition partition, int hashPosition, long value)
+    {
+        // record group id in hash
+        int groupId = nextGroupId++;
+
+        partition.values[hashPosition] = value;
+        partition.groupIds[hashPosition] = groupId;
+        partition.size++;
+        valuesByGroupId.ensureCapacity(nextGroupId);
+        valuesByGroupId.set(groupId, value);
+
+        // grow the partition, if necessary
+        if (partition.isFull()) {
+            fullPartition = partition;
+            tryGrow();
+        }
+        return groupId;
+    }
+
+    private boolean tryGrow()
+    {
+        while (fullPartition != null) {
+            if (!tryGrow(fullPartition)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tryGrow(Partition partition)
+    {
+        boolean split = partition.getCapacity() >= MAX_PARTITION_CAPACITY;
+        if (split && partition.depth == MAX_DIRECTORY_DEPTH) {
+            throw new PrestoException(GENERIC_INSUFFICIENT_RESOURCES, "Size of hash table cannot exceed 4 billion entries");
+        }
+        boolean growDirectory = split && partition.depth == directoryDepth;
+
+        // An estimate of how much extra memory is needed before we can go ahead and grow the partition.
+        // Both a split and a rehash allocate twice the capacity of the partition, a split may also need to double the directory.
+        // The size of the current page is included as well.
+        preallocatedMemoryInBytes = partition.getCapacity() * 2L * (Long.BYTES + Integer.BYTES) +
+                (growDirectory ? sizeOfObjectArray(directory.length * 2) : 0) +
+                currentPageSizeInBytes;
+        if (!updateMemory.update()) {
+            // reserved memory but has exceeded the limit
+            return false;
+        }
+
+        long start = System.nanoTime();
+        expectedHashCollisions += estimateNumberOfHashCollisions(partition.size, partition.getCapacity());
+
+        if (growDirectory) {
+            Partition[] newDirectory = new Partition[directory.length * 2];
+            for (int i = 0; i < newDirectory.length; i++) {
+                newDirectory[i] = directory[i >> 1];
+            }
+            directory = newDirectory;
+            directoryDepth++;
+        }
+
+        fullPartition = null;
+        if (split) {
+            Partition low = new Partition(partition.getCapacity(), partition.depth + 1);
+            Partition high = new Partition(partition.getCapacity(), partition.depth + 1);
+            int splitShift = Long.SIZE - 1 - partition.depth;
+            for (int i = 0; i < partition.getCapacity(); i++) {
+                if (partition.groupIds[i] != -1) {
+                    long value = partition.values[i];
+                    Partition target = ((murmurHash3(value) >>> splitShift) & 1) == 0 ? low : high;
+                    insert(target, value, partition.groupIds[i]);
+                }
+            }
+
+            int directoryShift = directoryDepth - partition.depth - 1;
+            for (int i = 0; i < directory.length; i++) {
+                if (directory[i] == partition) {
+                    directory[i] = ((i >>> directoryShift) & 1) == 0 ? low : high;
+                }
+            }
+            partitionsSizeInBytes += low.getRetainedSizeInBytes() + high.getRetainedSizeInBytes() - partition.getRetainedSizeInBytes();
+
+            // all the values of the partition can share the next bit of their hash
+            if (low.isFull()) {
+                fullPartition = low;
+            }
+            else if (high.isFull()) {
+                fullPartition = high;
+            }
+        }
+        else {
+            Partition grown = new Partition(partition.getCapacity() * 2, partition.depth);
+            for (int i = 0; i < partition.getCapacity(); i++) {
+                if (partition.groupIds[i] != -1) {
+                    insert(grown, partition.values[i], partition.groupIds[i]);
+                }
+            }
+
+            for (int i = 0; i < directory.length; i++) {
+                if (directory[i] == partition) {
+                    directory[i] = grown;
+                }
+            }
+            partitionsSizeInBytes += grown.getRetainedSizeInBytes() - partition.getRetainedSizeInBytes();
+        }
+        hashCapacity += partition.getCapacity();
+
+        rehashCount++;
+        rehashTimeNanos += System.nanoTime() - start;
+
+        preallocatedMemoryInBytes = 0;
+        // release temporary memory reservation
+        updateMemory.update();
+        return true;
+    }
+
+    private void insert(Partition partition, long value, int groupId)
+    {
+        // find an empty slot for the value
+        int hashPosition = (int) murmurHash3(value) & partition.mask;
+        while (partition.groupIds[hashPosition] != -1) {
+            hashPosition = (hashPosition + 1) & partition.mask;
+            hashCollisions++;
+        }
+
+        // record the mapping
+        partition.values[hashPosition] = value;
+        partition.groupIds[hashPosition] = groupId;
+        partition.size++;
+    }
+
+    private boolean needGrow()
+    {
+        return fullPartition != null;
+    }
+
+    private int getPartitionIndex(long hash)
+    {
+        if (directoryDepth == 0) {
+            return 0;
+        }
+        return (int) (hash >>> (Long.SIZE - directoryDepth));
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        checkArgument(hashSize > 0, "hashSize must be greater than 0");
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        checkArgument(hashSize > maxFill, "hashSize must be larger than maxFill");
+        return maxFill;
+    }
+
+    private static final class Partition
+    {
+        private static final int INSTANCE_SIZE = ClassLayout.parseClass(Partition.class).instanceSize();
+
+        // number of leading hash bits shared by all the values of the partition
+        private final int depth;
+        private final int mask;
+        private final int maxFill;
+        private final long[] values;
+        private final int[] groupIds;
+        private int size;
+
+        private Partition(int capacity, int depth)
+        {
+            this.depth = depth;
+            this.mask = capacity - 1;
+            this.maxFill = calculateMaxFill(capacity);
+            this.values = new long[capacity];
+            this.groupIds = new int[capacity];
+            Arrays.fill(groupIds, -1);
+        }
+
+        private int getCapacity()
+        {
+            return values.length;
+        }
+
+        private boolean isFull()
+        {
+            return size >= maxFill;
+        }
+
+        private long getRetainedSizeInBytes()
+        {
+            return INSTANCE_SIZE + sizeOf(values) + sizeOf(groupIds);
+        }
+    }
+
+    private class AddPageWork
+            implements Work<Void>
+    {
+        private final Block block;
+
+        private int lastPosition;
+
+        public AddPageWork(Block block)
+        {
+            this.block = requireNonNull(block, "block is null");
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = block.getPositionCount();
+            checkState(lastPosition <= positionCount, "position count out of bound");
+
+            // needGrow() == true indicates a partition has reached its capacity boundary and has to grow.
+            // We can only proceed if tryGrow() successfully grew it.
+            if (needGrow() && !tryGrow()) {
+                return false;
+            }
+
+            // putIfAbsent will grow the partitions automatically, unless there isn't enough memory to do so.
+            while (lastPosition < positionCount && !needGrow()) {
+                // get the group for the current row
+                putIfAbsent(lastPosition, block);
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class GetGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final BlockBuilder blockBuilder;
+        private final Block block;
+
+        private boolean finished;
+        private int lastPosition;
+
+        public GetGroupIdsWork(Block block)
+        {
+            this.block = requireNonNull(block, "block is null");
+            // we know the exact size required for the block
+            this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(block.getPositionCount());
+        }
+
+        @Override
+        public boolean process()
+        {
+            int positionCount = block.getPositionCount();
+            checkState(lastPosition <= positionCount, "position count out of bound");
+            checkState(!finished);
+
+            // needGrow() == true indicates a partition has reached its capacity boundary and has to grow.
+            // We can only proceed if tryGrow() successfully grew it.
+            if (needGrow() && !tryGrow()) {
+                return false;
+            }
+
+            // putIfAbsent will grow the partitions automatically, unless there isn't enough memory to do so.
+            while (lastPosition < positionCount && !needGrow()) {
+                // output the group id for this row
+                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, block));
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(lastPosition == block.getPositionCount(), "process has not yet finished");
+            checkState(!finished, "result has produced");
+            finished = true;
+            return new GroupByIdBlock(nextGroupId, blockBuilder.build());
+        }
+    }
+}
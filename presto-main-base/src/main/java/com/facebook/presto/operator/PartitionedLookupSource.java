@@ -83,6 +83,14 @@ public class PartitionedLookupSource
     @Nullable
     private final OuterPositionTracker outerPositionTracker;
 
+    // scratch arrays used by getJoinPositions
+    private final int[] partitionOffsets;
+    private final int[] partitionEnds;
+    private long[] batchHashes = new long[0];
+    private int[] batchPartitions = new int[0];
+    private int[] partitionedPositions = new int[0];
+    private long[] partitionedHashes = new long[0];
+
     private boolean closed;
 
     private PartitionedLookupSource(List<? extends LookupSource> lookupSources, List<Type> hashChannelTypes, Optional<OuterPositionTracker> outerPositionTracker)
@@ -96,6 +104,8 @@ public class PartitionedLookupSource
         this.partitionMask = lookupSources.size() - 1;
         this.shiftSize = numberOfTrailingZeros(lookupSources.size()) + 1;
         this.outerPositionTracker = outerPositionTracker.orElse(null);
+        this.partitionOffsets = new int[lookupSources.size() + 1];
+        this.partitionEnds = new int[lookupSources.size()];
     }
 
     @Override
@@ -134,8 +144,69 @@ public class PartitionedLookupSource
     public long getJoinPosition(int position, Page hashChannelsPage, Page allChannelsPage, long rawHash)
     {
         int partition = partitionGenerator.getPartition(rawHash);
-        LookupSource lookupSource = lookupSources[partition];
-        long joinPosition = lookupSource.getJoinPosition(position, hashChannelsPage, allChannelsPage, rawHash);
+        return encodeJoinPosition(partition, lookupSources[partition].getJoinPosition(position, hashChannelsPage, allChannelsPage, rawHash));
+    }
+
+    @Override
+    public void getJoinPositions(int[] positions, int offset, int positionCount, Page hashChannelsPage, Page allChannelsPage, @Nullable long[] rawHashes, long[] joinPositions)
+    {
+        long[] hashes = rawHashes;
+        if (hashes == null) {
+            // indexed the same way as positions
+            if (batchHashes.length < offset + positionCount) {
+                batchHashes = new long[offset + positionCount];
+            }
+            hashes = batchHashes;
+            partitionGenerator.getRawHashes(hashChannelsPage, positions, offset, positionCount, hashes);
+        }
+
+        if (lookupSources.length == 1) {
+            getPartitionJoinPositions(0, positions, offset, positionCount, hashChannelsPage, allChannelsPage, hashes, joinPositions);
+            return;
+        }
+
+        // group the positions by partition, so that each partition is probed with a single batch
+        if (batchPartitions.length < positionCount) {
+            batchPartitions = new int[positionCount];
+            partitionedPositions = new int[positionCount];
+            partitionedHashes = new long[positionCount];
+        }
+        Arrays.fill(partitionOffsets, 0);
+        for (int i = 0; i < positionCount; i++) {
+            int partition = partitionGenerator.getPartition(hashes[offset + i]);
+            batchPartitions[i] = partition;
+            partitionOffsets[partition + 1]++;
+        }
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            partitionOffsets[partition + 1] += partitionOffsets[partition];
+            partitionEnds[partition] = partitionOffsets[partition];
+        }
+        for (int i = 0; i < positionCount; i++) {
+            int index = partitionEnds[batchPartitions[i]]++;
+            partitionedPositions[index] = positions[offset + i];
+            partitionedHashes[index] = hashes[offset + i];
+        }
+
+        for (int partition = 0; partition < lookupSources.length; partition++) {
+            int start = partitionOffsets[partition];
+            int count = partitionOffsets[partition + 1] - start;
+            if (count > 0) {
+                getPartitionJoinPositions(partition, partitionedPositions, start, count, hashChannelsPage, allChannelsPage, partitionedHashes, joinPositions);
+            }
+        }
+    }
+
+    private void getPartitionJoinPositions(int partition, int[] positions, int offset, int positionCount, Page hashChannelsPage, Page allChannelsPage, long[] rawHashes, long[] joinPositions)
+    {
+        lookupSources[partition].getJoinPositions(positions, offset, positionCount, hashChannelsPage, allChannelsPage, rawHashes, joinPositions);
+        for (int i = offset; i < offset + positionCount; i++) {
+            int position = positions[i];
+            joinPositions[position] = encodeJoinPosition(partition, joinPositions[position]);
+        }
+    }
+
+    private long encodeJoinPosition(int partition, long joinPosition)
+    {
         if (joinPosition < 0) {
             return joinPosition;
         }
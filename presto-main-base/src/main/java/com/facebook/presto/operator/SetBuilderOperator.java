@@ -14,34 +14,93 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.ChannelSet.ChannelSetBuilder;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.errorprone.annotations.ThreadSafe;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
 import jakarta.annotation.Nullable;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
 
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
+import static com.facebook.presto.operator.SpillingUtils.spillPages;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
 public class SetBuilderOperator
         implements Operator
 {
+    /**
+     * Hands the set over from the build side to the probe side. If the set is spilled, it is split into
+     * {@link #SPILL_PARTITION_COUNT} hash partitions and the build and all the probe operators step through
+     * the partitions together: in step -1 the probe operators spill their input, in step {@code p} they
+     * probe partition {@code p}. The set of a partition is rebuilt once every probe operator has finished
+     * the previous step, so only one partition of the set is in memory at any time.
+     */
     public static class SetSupplier
     {
+        static final int SPILL_PARTITION_COUNT = 16;
+
         private final Type type;
         private final SettableFuture<ChannelSet> channelSetFuture = SettableFuture.create();
+        private final SettableFuture<?> setBuiltFuture = SettableFuture.create();
+
+        // partitionRequested[p] is completed when the build may rebuild partition p, partitionRequested[SPILL_PARTITION_COUNT] when it is done
+        private final List<SettableFuture<?>> partitionRequested;
+        private final List<SettableFuture<?>> partitionBuilt;
+
+        private volatile boolean spilled;
+        private volatile boolean spilledSetContainsNull;
+        private volatile boolean spilledSetEmpty;
+
+        @GuardedBy("this")
+        private int activeProbeFactories;
+        @GuardedBy("this")
+        private int probeOperators;
+        @GuardedBy("this")
+        private int pendingProbeOperators;
+        @GuardedBy("this")
+        private int currentStep = -1;
+        @GuardedBy("this")
+        private ChannelSet partitionSet;
 
         public SetSupplier(Type type)
         {
             this.type = requireNonNull(type, "type is null");
+
+            ImmutableList.Builder<SettableFuture<?>> partitionRequested = ImmutableList.builder();
+            ImmutableList.Builder<SettableFuture<?>> partitionBuilt = ImmutableList.builder();
+            for (int partition = 0; partition < SPILL_PARTITION_COUNT; partition++) {
+                partitionRequested.add(SettableFuture.create());
+                partitionBuilt.add(SettableFuture.create());
+            }
+            partitionRequested.add(SettableFuture.create());
+            this.partitionRequested = partitionRequested.build();
+            this.partitionBuilt = partitionBuilt.build();
         }
 
         public Type getType()
@@ -54,10 +113,141 @@ public class SetBuilderOperator
             return channelSetFuture;
         }
 
+        /**
+         * Completed when either the in memory set is available or the set has been spilled.
+         */
+        public ListenableFuture<?> getSetBuilt()
+        {
+            return setBuiltFuture;
+        }
+
+        public boolean isSpilled()
+        {
+            return spilled;
+        }
+
         void setChannelSet(ChannelSet channelSet)
         {
             boolean wasSet = channelSetFuture.set(requireNonNull(channelSet, "channelSet is null"));
             checkState(wasSet, "ChannelSet already set");
+            setBuiltFuture.set(null);
+        }
+
+        void setSpilled(boolean containsNull, boolean empty)
+        {
+            synchronized (this) {
+                checkState(!setBuiltFuture.isDone(), "ChannelSet already set");
+                spilledSetContainsNull = containsNull;
+                spilledSetEmpty = empty;
+                spilled = true;
+                maybeAdvance();
+            }
+            setBuiltFuture.set(null);
+        }
+
+        boolean spilledSetContainsNull()
+        {
+            return spilledSetContainsNull;
+        }
+
+        boolean isSpilledSetEmpty()
+        {
+            return spilledSetEmpty;
+        }
+
+        /**
+         * Partitions the pages of the spilled set and the spilled probe pages on the given key channel.
+         */
+        LocalPartitionGenerator createSpillPartitionGenerator(int keyChannel)
+        {
+            return new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(type), new int[] {keyChannel}), SPILL_PARTITION_COUNT);
+        }
+
+        ListenableFuture<?> getPartitionRequested(int partition)
+        {
+            return partitionRequested.get(partition);
+        }
+
+        synchronized int getRequestedPartition()
+        {
+            return currentStep;
+        }
+
+        void setPartitionSet(int partition, ChannelSet channelSet)
+        {
+            synchronized (this) {
+                checkState(partition == currentStep, "Partition %s was not requested", partition);
+                partitionSet = requireNonNull(channelSet, "channelSet is null");
+            }
+            partitionBuilt.get(partition).set(null);
+        }
+
+        synchronized void releasePartitionSet()
+        {
+            partitionSet = null;
+        }
+
+        ListenableFuture<?> getPartitionBuilt(int partition)
+        {
+            return partitionBuilt.get(partition);
+        }
+
+        synchronized ChannelSet getPartitionSet(int partition)
+        {
+            checkState(partition == currentStep && partitionBuilt.get(partition).isDone(), "Partition %s is not built", partition);
+            return partitionSet;
+        }
+
+        synchronized void probeFactoryCreated()
+        {
+            activeProbeFactories++;
+        }
+
+        synchronized void probeFactoryClosed()
+        {
+            activeProbeFactories--;
+            maybeAdvance();
+        }
+
+        synchronized void probeOperatorCreated()
+        {
+            probeOperators++;
+            pendingProbeOperators++;
+        }
+
+        synchronized void probeStepFinished(int step)
+        {
+            checkState(step == currentStep, "Step %s finished, but current step is %s", step, currentStep);
+            pendingProbeOperators--;
+            maybeAdvance();
+        }
+
+        synchronized void probeOperatorClosed(int lastFinishedStep)
+        {
+            probeOperators--;
+            if (lastFinishedStep < currentStep) {
+                pendingProbeOperators--;
+            }
+            maybeAdvance();
+        }
+
+        @GuardedBy("this")
+        private void maybeAdvance()
+        {
+            if (!spilled || activeProbeFactories > 0 || pendingProbeOperators > 0 || currentStep == SPILL_PARTITION_COUNT) {
+                return;
+            }
+            if (probeOperators == 0) {
+                // nothing is left to probe the remaining partitions
+                while (currentStep < SPILL_PARTITION_COUNT) {
+                    currentStep++;
+                    partitionRequested.get(currentStep).set(null);
+                }
+                return;
+            }
+            currentStep++;
+            pendingProbeOperators = probeOperators;
+            partitionRequested.get(currentStep).set(null);
         }
     }
 
@@ -72,6 +262,8 @@ public class SetBuilderOperator
         private final int expectedPositions;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public SetBuilderOperatorFactory(
                 int operatorId,
@@ -81,15 +273,45 @@ public class SetBuilderOperator
                 Optional<Integer> hashChannel,
                 int expectedPositions,
                 JoinCompiler joinCompiler)
+        {
+            this(operatorId, planNodeId, type, setChannel, hashChannel, expectedPositions, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+        }
+
+        public SetBuilderOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                Type type,
+                int setChannel,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
+        {
+            this(operatorId, planNodeId, new SetSupplier(requireNonNull(type, "type is null")), setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
+        }
+
+        private SetBuilderOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                SetSupplier setProvider,
+                int setChannel,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
             Preconditions.checkArgument(setChannel >= 0, "setChannel is negative");
-            this.setProvider = new SetSupplier(requireNonNull(type, "type is null"));
+            this.setProvider = requireNonNull(setProvider, "setProvider is null");
             this.setChannel = setChannel;
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         public SetSupplier getSetProvider()
@@ -102,7 +324,7 @@ public class SetBuilderOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, SetBuilderOperator.class.getSimpleName());
-            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
 
         @Override
@@ -114,20 +336,63 @@ public class SetBuilderOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, partitioningSpillerFactory);
         }
     }
 
+    private enum State
+    {
+        /**
+         * Input is added to the in memory set
+         */
+        CONSUMING_INPUT,
+
+        /**
+         * The set has been spilled, new input is spilled as well
+         */
+        SPILLING_INPUT,
+
+        /**
+         * All input has been spilled, waiting for the probe side to request the next partition
+         */
+        INPUT_SPILLED,
+
+        /**
+         * The set of the requested partition is being rebuilt from the spilled pages
+         */
+        INPUT_UNSPILLING,
+
+        FINISHED
+    }
+
     private final OperatorContext operatorContext;
     private final SetSupplier setSupplier;
     private final int[] sourceChannels;
+    private final Optional<Integer> channelSetHashChannel;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
+
+    private State state = State.CONSUMING_INPUT;
+    private ChannelSetBuilder channelSetBuilder;
 
-    private final ChannelSetBuilder channelSetBuilder;
+    // tracked for the whole input, since a spilled set is only rebuilt one partition at a time
+    private boolean inputContainsNull;
+    private boolean inputEmpty = true;
 
-    private boolean finished;
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Optional<Runnable> finishMemoryRevoke = Optional.empty();
+    private int unspillPartition;
+    private Iterator<Page> unspilledPages;
 
     @Nullable
     private Work<?> unfinishedWork;  // The pending work for current page.
+    @Nullable
+    private Page unfinishedPage;
 
     public SetBuilderOperator(
             OperatorContext operatorContext,
@@ -136,6 +401,19 @@ public class SetBuilderOperator
             Optional<Integer> hashChannel,
             int expectedPositions,
             JoinCompiler joinCompiler)
+    {
+        this(operatorContext, setSupplier, setChannel, hashChannel, expectedPositions, joinCompiler, false, unsupportedPartitioningSpillerFactory());
+    }
+
+    public SetBuilderOperator(
+            OperatorContext operatorContext,
+            SetSupplier setSupplier,
+            int setChannel,
+            Optional<Integer> hashChannel,
+            int expectedPositions,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.setSupplier = requireNonNull(setSupplier, "setProvider is null");
@@ -148,13 +426,22 @@ public class SetBuilderOperator
         }
 
         // Set builder is has a single channel which goes in channel 0, if hash is present, add a hashBlock to channel 1
-        Optional<Integer> channelSetHashChannel = hashChannel.isPresent() ? Optional.of(1) : Optional.empty();
+        this.channelSetHashChannel = hashChannel.isPresent() ? Optional.of(1) : Optional.empty();
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
+
+        // the in memory set can be spilled, so it is accounted as revocable memory
         this.channelSetBuilder = new ChannelSetBuilder(
                 setSupplier.getType(),
                 channelSetHashChannel,
                 expectedPositions,
-                requireNonNull(operatorContext, "operatorContext is null"),
-                requireNonNull(joinCompiler, "joinCompiler is null"));
+                operatorContext,
+                spillEnabled ? localRevocableMemoryContext : localUserMemoryContext,
+                joinCompiler);
     }
 
     @Override
@@ -166,29 +453,139 @@ public class SetBuilderOperator
     @Override
     public void finish()
     {
-        if (finished) {
+        if (finishMemoryRevoke.isPresent()) {
             return;
         }
 
+        switch (state) {
+            case CONSUMING_INPUT:
+                finishInput();
+                return;
+
+            case SPILLING_INPUT:
+                finishSpilledInput();
+                return;
+
+            case INPUT_SPILLED:
+                startUnspilling();
+                return;
+
+            case INPUT_UNSPILLING:
+                unspillPartition();
+                return;
+
+            case FINISHED:
+                return;
+        }
+        throw new IllegalStateException("Unhandled state: " + state);
+    }
+
+    private void finishInput()
+    {
         ChannelSet channelSet = channelSetBuilder.build();
+        if (spillEnabled) {
+            // the set is handed over to the probe side, so it can no longer be revoked
+            localUserMemoryContext.setBytes(channelSetBuilder.getEstimatedSize());
+            localRevocableMemoryContext.setBytes(0);
+        }
         setSupplier.setChannelSet(channelSet);
         operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
-        finished = true;
+        state = State.FINISHED;
+    }
+
+    private void finishSpilledInput()
+    {
+        if (!spillInProgress.isDone()) {
+            return;
+        }
+        checkSpillSucceeded(spillInProgress);
+        setSupplier.setSpilled(inputContainsNull, inputEmpty);
+        state = State.INPUT_SPILLED;
+    }
+
+    private void startUnspilling()
+    {
+        int requestedPartition = setSupplier.getRequestedPartition();
+        if (requestedPartition < unspillPartition) {
+            return;
+        }
+
+        // the probe side is done with the previous partition
+        setSupplier.releasePartitionSet();
+        channelSetBuilder = null;
+        localUserMemoryContext.setBytes(0);
+
+        if (requestedPartition == SetSupplier.SPILL_PARTITION_COUNT) {
+            closeSpiller();
+            state = State.FINISHED;
+            return;
+        }
+
+        verify(requestedPartition == unspillPartition, "Requested partition %s, but expected %s", requestedPartition, unspillPartition);
+        channelSetBuilder = new ChannelSetBuilder(
+                setSupplier.getType(),
+                channelSetHashChannel,
+                expectedPositions,
+                operatorContext,
+                localUserMemoryContext,
+                joinCompiler);
+        unspilledPages = getSpiller().getSpilledPages(unspillPartition);
+        state = State.INPUT_UNSPILLING;
+        unspillPartition();
+    }
+
+    private void unspillPartition()
+    {
+        if (unfinishedWork != null && !processUnfinishedWork()) {
+            return;
+        }
+        while (unspilledPages.hasNext()) {
+            unfinishedWork = channelSetBuilder.addPage(unspilledPages.next());
+            if (!processUnfinishedWork()) {
+                return;
+            }
+        }
+
+        ChannelSet channelSet = channelSetBuilder.build();
+        operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
+        setSupplier.setPartitionSet(unspillPartition, channelSet);
+        unspilledPages = null;
+        unspillPartition++;
+        state = State.INPUT_SPILLED;
     }
 
     @Override
     public boolean isFinished()
     {
-        return finished;
+        return state == State.FINISHED;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        switch (state) {
+            case SPILLING_INPUT:
+                return spillInProgress;
+
+            case INPUT_SPILLED:
+                return setSupplier.getPartitionRequested(unspillPartition);
+
+            default:
+                return NOT_BLOCKED;
+        }
     }
 
     @Override
     public boolean needsInput()
     {
+        if (state == State.SPILLING_INPUT) {
+            return spillInProgress.isDone();
+        }
+
         // Since SetBuilderOperator doesn't produce any output, the getOutput()
         // method may never be called. We need to handle any unfinished work
         // before addInput() can be called again.
-        return !finished && (unfinishedWork == null || processUnfinishedWork());
+        return state == State.CONSUMING_INPUT && (unfinishedWork == null || processUnfinishedWork());
     }
 
     @Override
@@ -197,16 +594,108 @@ public class SetBuilderOperator
         requireNonNull(page, "page is null");
         checkState(!isFinished(), "Operator is already finished");
 
-        unfinishedWork = channelSetBuilder.addPage(page.extractChannels(sourceChannels));
+        Page setPage = page.extractChannels(sourceChannels);
+        if (spillEnabled) {
+            updateInputNulls(setPage.getBlock(0));
+        }
+
+        if (state == State.SPILLING_INPUT) {
+            spillInProgress = spillPages(getSpiller(), Iterators.singletonIterator(setPage));
+            return;
+        }
+
+        checkState(state == State.CONSUMING_INPUT, "Operator is not consuming input");
+        unfinishedPage = setPage;
+        unfinishedWork = channelSetBuilder.addPage(setPage);
         processUnfinishedWork();
     }
 
+    private void updateInputNulls(Block block)
+    {
+        if (block.getPositionCount() == 0) {
+            return;
+        }
+        inputEmpty = false;
+        if (inputContainsNull || !block.mayHaveNull()) {
+            return;
+        }
+        for (int position = 0; position < block.getPositionCount(); position++) {
+            if (block.isNull(position)) {
+                inputContainsNull = true;
+                return;
+            }
+        }
+    }
+
     @Override
     public Page getOutput()
     {
         return null;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        checkState(spillEnabled, "Spill not enabled, no revokable memory should be reserved");
+
+        if (state == State.CONSUMING_INPUT) {
+            Iterator<Page> pages = channelSetBuilder.getDistinctValues();
+            if (unfinishedWork != null) {
+                // the page may have been partially added, the duplicates are removed when the partition is rebuilt
+                pages = Iterators.concat(pages, Iterators.singletonIterator(unfinishedPage));
+            }
+            finishMemoryRevoke = Optional.of(() -> {
+                channelSetBuilder = null;
+                unfinishedWork = null;
+                unfinishedPage = null;
+                localRevocableMemoryContext.setBytes(0);
+                state = State.SPILLING_INPUT;
+            });
+            spillInProgress = spillPages(getSpiller(), pages);
+            return spillInProgress;
+        }
+        else if (operatorContext.getReservedRevocableBytes() == 0) {
+            // Probably stale revoking request
+            finishMemoryRevoke = Optional.of(() -> {});
+            return immediateFuture(null);
+        }
+
+        throw new IllegalStateException(format("State %s can not have revocable memory, but has %s revocable bytes", state, operatorContext.getReservedRevocableBytes()));
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        checkState(finishMemoryRevoke.isPresent(), "Cannot finish unknown revoking");
+        finishMemoryRevoke.get().run();
+        finishMemoryRevoke = Optional.empty();
+    }
+
+    private PartitioningSpiller getSpiller()
+    {
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(partitioningSpillerFactory.create(
+                    channelSetHashChannel.isPresent() ? ImmutableList.of(setSupplier.getType(), BIGINT) : ImmutableList.of(setSupplier.getType()),
+                    setSupplier.createSpillPartitionGenerator(0),
+                    operatorContext.getSpillContext().newLocalSpillContext(),
+                    operatorContext.aggregateSystemMemoryContext()));
+        }
+        return spiller.get();
+    }
+
+    private void closeSpiller()
+    {
+        spiller.ifPresent(partitioningSpiller -> {
+            try {
+                partitioningSpiller.close();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        spiller = Optional.empty();
+    }
+
     private boolean processUnfinishedWork()
     {
         // Processes the unfinishedWork for this page by adding the data to the hash table. If this page
@@ -215,12 +704,31 @@ public class SetBuilderOperator
         boolean done = unfinishedWork.process();
         if (done) {
             unfinishedWork = null;
+            unfinishedPage = null;
         }
         // We need to update the memory reservation again since the page builder memory may also be increasing.
         channelSetBuilder.updateMemoryReservation();
         return done;
     }
 
+    @Override
+    public void close()
+    {
+        // close() can be called in any state, due for example to query failure, and must clean resource up unconditionally
+        finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
+        unspilledPages = null;
+        try (Closer closer = Closer.create()) {
+            spiller.ifPresent(closer::register);
+            if (spillEnabled) {
+                closer.register(() -> localRevocableMemoryContext.setBytes(0));
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        spiller = Optional.empty();
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -14,6 +14,7 @@
 package com.facebook.presto.operator.aggregation.builder;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.operator.HashCollisionsCounter;
 import com.facebook.presto.operator.Work;
 import com.facebook.presto.operator.WorkProcessor;
@@ -32,6 +33,8 @@ public interface HashAggregationBuilder
 
     void recordHashCollisions(HashCollisionsCounter hashCollisionsCounter);
 
+    void recordRehashes(RuntimeStats runtimeStats);
+
     @Override
     void close();
 
@@ -16,6 +16,7 @@ package com.facebook.presto.operator.aggregation.builder;
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
@@ -48,6 +49,11 @@ import java.util.OptionalLong;
 import java.util.function.Consumer;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isPartitionedAggregationHashEnabled;
+import static com.facebook.presto.common.RuntimeMetricName.HASH_AGGREGATION_REHASH_COUNT;
+import static com.facebook.presto.common.RuntimeMetricName.HASH_AGGREGATION_REHASH_TIME_NANOS;
+import static com.facebook.presto.common.RuntimeUnit.NANO;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -172,6 +178,7 @@ public class InMemoryHashAggregationBuilder
                 hashChannel,
                 expectedGroups,
                 isDictionaryAggregationEnabled(operatorContext.getSession()),
+                isPartitionedAggregationHashEnabled(operatorContext.getSession()),
                 joinCompiler,
                 updateMemory);
         this.operatorContext = operatorContext;
@@ -237,6 +244,20 @@ public class InMemoryHashAggregationBuilder
         hashCollisionsCounter.recordHashCollision(groupByHash.getHashCollisions(), groupByHash.getExpectedHashCollisions());
     }
 
+    @Override
+    public void recordRehashes(RuntimeStats runtimeStats)
+    {
+        recordRehashes(runtimeStats, groupByHash.getRehashCount(), groupByHash.getRehashTimeNanos());
+    }
+
+    static void recordRehashes(RuntimeStats runtimeStats, long rehashCount, long rehashTimeNanos)
+    {
+        if (rehashCount > 0) {
+            runtimeStats.addMetricValue(HASH_AGGREGATION_REHASH_COUNT, NONE, rehashCount);
+            runtimeStats.addMetricValue(HASH_AGGREGATION_REHASH_TIME_NANOS, NANO, rehashTimeNanos);
+        }
+    }
+
     public long getHashCollisions()
     {
         return groupByHash.getHashCollisions();
@@ -247,6 +268,16 @@ public class InMemoryHashAggregationBuilder
         return groupByHash.getExpectedHashCollisions();
     }
 
+    public long getRehashCount()
+    {
+        return groupByHash.getRehashCount();
+    }
+
+    public long getRehashTimeNanos()
+    {
+        return groupByHash.getRehashTimeNanos();
+    }
+
     @Override
     public ListenableFuture<?> startMemoryRevoke()
     {
@@ -15,6 +15,7 @@ package com.facebook.presto.operator.aggregation.builder;
 
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashCollisionsCounter;
@@ -70,6 +71,8 @@ public class SpillableHashAggregationBuilder
 
     private long hashCollisions;
     private double expectedHashCollisions;
+    private long rehashCount;
+    private long rehashTimeNanos;
     private Boolean producingOutput = Boolean.FALSE;
 
     public SpillableHashAggregationBuilder(
@@ -141,6 +144,17 @@ public class SpillableHashAggregationBuilder
         expectedHashCollisions = 0;
     }
 
+    @Override
+    public void recordRehashes(RuntimeStats runtimeStats)
+    {
+        if (hashAggregationBuilder != null) {
+            hashAggregationBuilder.recordRehashes(runtimeStats);
+        }
+        InMemoryHashAggregationBuilder.recordRehashes(runtimeStats, rehashCount, rehashTimeNanos);
+        rehashCount = 0;
+        rehashTimeNanos = 0;
+    }
+
     @Override
     public boolean isFull()
     {
@@ -325,6 +339,8 @@ public class SpillableHashAggregationBuilder
         if (hashAggregationBuilder != null) {
             hashCollisions += hashAggregationBuilder.getHashCollisions();
             expectedHashCollisions += hashAggregationBuilder.getExpectedHashCollisions();
+            rehashCount += hashAggregationBuilder.getRehashCount();
+            rehashTimeNanos += hashAggregationBuilder.getRehashTimeNanos();
             hashAggregationBuilder.close();
         }
 
@@ -14,6 +14,7 @@
 package com.facebook.presto.operator.aggregation.partial;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.LongArrayBlock;
@@ -112,6 +113,11 @@ public class SkipAggregationBuilder
     {
     }
 
+    @Override
+    public void recordRehashes(RuntimeStats runtimeStats)
+    {
+    }
+
     @Override
     public void close()
     {
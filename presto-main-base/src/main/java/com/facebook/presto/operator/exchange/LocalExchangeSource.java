@@ -19,20 +19,24 @@ import com.facebook.presto.operator.WorkProcessor.ProcessState;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.errorprone.annotations.ThreadSafe;
-import com.google.errorprone.annotations.concurrent.GuardedBy;
-import jakarta.annotation.Nullable;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
-import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Buffer between the sinks of a local exchange and a single reader. Adding and removing
+ * pages does not take a lock. A reader that finds the buffer empty registers a future,
+ * and only the first page added afterwards completes it, so a burst of pages causes at
+ * most one wakeup.
+ */
 @ThreadSafe
 public class LocalExchangeSource
 {
@@ -40,14 +44,14 @@ public class LocalExchangeSource
 
     private final Consumer<LocalExchangeSource> onFinish;
 
-    private final BlockingQueue<PageReference> buffer = new LinkedBlockingDeque<>();
+    private final Queue<PageReference> buffer = new ConcurrentLinkedQueue<>();
     private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicInteger bufferedPages = new AtomicInteger();
 
-    @Nullable
-    @GuardedBy("this")
-    private SettableFuture<?> notEmptyFuture; // null indicates no callback present
+    // null indicates no callback present
+    private final AtomicReference<SettableFuture<?>> notEmptyFuture = new AtomicReference<>();
 
-    private volatile boolean finishing;
+    private final AtomicBoolean finishing = new AtomicBoolean();
 
     public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish)
     {
@@ -58,42 +62,33 @@ public class LocalExchangeSource
     {
         // This must be lock free to assure task info creation is fast
         // Note: the stats my be internally inconsistent
-        return new LocalExchangeBufferInfo(bufferedBytes.get(), buffer.size());
+        return new LocalExchangeBufferInfo(bufferedBytes.get(), bufferedPages.get());
     }
 
     void addPage(PageReference pageReference)
     {
-        checkNotHoldsLock();
-
-        boolean added = false;
-        SettableFuture<?> notEmptyFuture = null;
-        long retainedSizeInBytes = pageReference.getRetainedSizeInBytes();
-        synchronized (this) {
-            // ignore pages after finish
-            if (!finishing) {
-                // buffered bytes must be updated before adding to the buffer to assure
-                // the count does not go negative
-                bufferedBytes.addAndGet(retainedSizeInBytes);
-                buffer.add(pageReference);
-                added = true;
-            }
-
-            // we just added a page (or we are finishing) so we are not empty
-            if (this.notEmptyFuture != null) {
-                notEmptyFuture = this.notEmptyFuture;
-                this.notEmptyFuture = null;
-            }
-        }
-
-        if (!added) {
-            // dereference the page outside of lock
+        // ignore pages after finish
+        if (finishing.get()) {
             pageReference.removePage();
+            return;
         }
 
-        // notify readers outside of lock since this may result in a callback
-        if (notEmptyFuture != null) {
-            notEmptyFuture.set(null);
+        // buffered bytes must be updated before adding to the buffer to assure
+        // the count does not go negative
+        bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
+        bufferedPages.incrementAndGet();
+        buffer.add(pageReference);
+
+        // A close() racing with this method may have drained the buffer before the page
+        // was added. Either the drain or this check sees the page, and whichever removes
+        // it from the buffer releases it.
+        if (finishing.get() && buffer.remove(pageReference)) {
+            releasePage(pageReference);
+            checkFinished();
         }
+
+        // we just added a page (or we are finishing) so we are not empty
+        notifyReader();
     }
 
     public WorkProcessor<Page> pages()
@@ -119,19 +114,13 @@ public class LocalExchangeSource
 
     public Page removePage()
     {
-        checkNotHoldsLock();
-
-        // NOTE: there is no need to acquire a lock here. The buffer is concurrent
-        // and buffered bytes is not expected to be consistent with the buffer (only
-        // best effort).
+        // NOTE: buffered bytes is not expected to be consistent with the buffer (only best effort).
         PageReference pageReference = buffer.poll();
         if (pageReference == null) {
             return null;
         }
 
-        // dereference the page outside of lock, since may trigger a callback
-        Page page = pageReference.removePage();
-        bufferedBytes.addAndGet(-page.getRetainedSizeInBytes());
+        Page page = releasePage(pageReference);
 
         checkFinished();
 
@@ -140,105 +129,92 @@ public class LocalExchangeSource
 
     public ListenableFuture<?> waitForReading()
     {
-        checkNotHoldsLock();
-
         //  Fast path, definitely not blocked
-        if (finishing || !buffer.isEmpty()) {
+        if (finishing.get() || !buffer.isEmpty()) {
             return NOT_BLOCKED;
         }
 
-        synchronized (this) {
-            // re-check after synchronizing
-            if (finishing || !buffer.isEmpty()) {
-                return NOT_BLOCKED;
+        // if we need to block readers, and the current future is complete, create a new one
+        SettableFuture<?> future = notEmptyFuture.get();
+        while (future == null) {
+            SettableFuture<?> newFuture = SettableFuture.create();
+            if (notEmptyFuture.compareAndSet(null, newFuture)) {
+                future = newFuture;
             }
-            // if we need to block readers, and the current future is complete, create a new one
-            if (notEmptyFuture == null) {
-                notEmptyFuture = SettableFuture.create();
+            else {
+                future = notEmptyFuture.get();
             }
-            return notEmptyFuture;
         }
+
+        // re-check after publishing the future, since a page added before that did not complete it
+        if (finishing.get() || !buffer.isEmpty()) {
+            notifyReader();
+            return NOT_BLOCKED;
+        }
+        return future;
     }
 
     public boolean isFinished()
     {
-        // Common case fast-path without synchronizing
-        if (!finishing) {
-            return false;
-        }
-        synchronized (this) {
-            // Synchronize to ensure effects of an in-flight close() or finish() are observed
-            return finishing && buffer.isEmpty();
-        }
+        return finishing.get() && buffer.isEmpty();
     }
 
     public void finish()
     {
-        checkNotHoldsLock();
-
-        SettableFuture<?> notEmptyFuture;
-        synchronized (this) {
-            if (finishing) {
-                return;
-            }
-            finishing = true;
-
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
+        if (!finishing.compareAndSet(false, true)) {
+            return;
         }
 
-        // notify readers outside of lock since this may result in a callback
-        if (notEmptyFuture != null) {
-            notEmptyFuture.set(null);
-        }
+        notifyReader();
 
         checkFinished();
     }
 
     public void close()
     {
-        checkNotHoldsLock();
+        finishing.set(true);
 
-        List<PageReference> remainingPages = new ArrayList<>();
-        SettableFuture<?> notEmptyFuture;
-        synchronized (this) {
-            finishing = true;
+        // free all the remaining pages
+        PageReference pageReference;
+        while ((pageReference = buffer.poll()) != null) {
+            releasePage(pageReference);
+        }
 
-            buffer.drainTo(remainingPages);
-            bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
+        notifyReader();
 
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
-        }
+        // this fires the finished event, unless a concurrent addPage still has to remove its
+        // page, in which case that call fires it
+        checkFinished();
+    }
 
-        // free all the remaining pages
-        remainingPages.forEach(PageReference::removePage);
+    private Page releasePage(PageReference pageReference)
+    {
+        // dereference the page, since may trigger a callback
+        Page page = pageReference.removePage();
+        bufferedBytes.addAndGet(-page.getRetainedSizeInBytes());
+        bufferedPages.decrementAndGet();
+        return page;
+    }
 
-        // notify readers outside of lock since this may result in a callback
-        if (notEmptyFuture != null) {
-            notEmptyFuture.set(null);
+    private void notifyReader()
+    {
+        // common case fast-path without a write when no reader is waiting
+        if (notEmptyFuture.get() == null) {
+            return;
+        }
+        SettableFuture<?> future = notEmptyFuture.getAndSet(null);
+        if (future != null) {
+            future.set(null);
         }
-
-        // this will always fire the finished event
-        checkState(isFinished(), "Expected buffer to be finished");
-        checkFinished();
     }
 
     private void checkFinished()
     {
-        checkNotHoldsLock();
-
         if (isFinished()) {
-            // notify finish listener outside of lock, since it may make a callback
             // NOTE: due the race in this method, the onFinish may be called multiple times
             // it is expected that the implementer handles this (which is why this source
             // is passed to the function)
             onFinish.accept(this);
         }
     }
-
-    private void checkNotHoldsLock()
-    {
-        checkState(!Thread.holdsLock(this), "Can not execute this method while holding the lock");
-    }
 }
@@ -51,6 +51,11 @@ public class LocalPartitionGenerator
         return hashGenerator.hashPosition(position, page);
     }
 
+    public void getRawHashes(Page page, int[] positions, int offset, int positionCount, long[] rawHashes)
+    {
+        hashGenerator.hashPositions(page, positions, offset, positionCount, rawHashes);
+    }
+
     public int getPartition(long rawHash)
     {
         return processRawHash(rawHash) & hashMask;
@@ -37,6 +37,7 @@ class PartitioningExchanger
     private final int[] partitioningChannels;
     private final Optional<Integer> hashChannel;
     private final IntArrayList[] partitionAssignments;
+    private final Page[] partitionPages;
     private final PageReleasedListener onPageReleased;
 
     public PartitioningExchanger(
@@ -57,6 +58,7 @@ class PartitioningExchanger
         for (int i = 0; i < partitionAssignments.length; i++) {
             partitionAssignments[i] = new IntArrayList();
         }
+        partitionPages = new Page[partitions.size()];
     }
 
     @Override
@@ -75,11 +77,21 @@ class PartitioningExchanger
         }
 
         // build a page for each partition
+        long retainedSizeInBytes = 0;
         for (int partition = 0; partition < buffers.size(); partition++) {
             IntArrayList positions = partitionAssignments[partition];
             if (!positions.isEmpty()) {
-                Page pageSplit = page.copyPositions(positions.elements(), 0, positions.size());
-                memoryManager.updateMemoryUsage(pageSplit.getRetainedSizeInBytes());
+                partitionPages[partition] = page.copyPositions(positions.elements(), 0, positions.size());
+                retainedSizeInBytes += partitionPages[partition].getRetainedSizeInBytes();
+            }
+        }
+
+        // account for all the pages at once, since the memory manager is shared by all the sinks
+        memoryManager.updateMemoryUsage(retainedSizeInBytes);
+        for (int partition = 0; partition < buffers.size(); partition++) {
+            Page pageSplit = partitionPages[partition];
+            if (pageSplit != null) {
+                partitionPages[partition] = null;
                 buffers.get(partition).accept(new PageReference(pageSplit, 1, onPageReleased));
             }
         }
@@ -135,6 +135,15 @@ public abstract class AbstractBlockEncodingBuffer
     }
 
     public static BlockEncodingBuffer createBlockEncodingBuffers(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator, boolean isNested)
+    {
+        return createBlockEncodingBuffers(decodedBlockNode, bufferAllocator, isNested, false);
+    }
+
+    /**
+     * @param packValues whether BIGINT and INTEGER like columns are bit packed when that makes them smaller.
+     * The receiving side decodes them transparently through the PACKED_LONG_ARRAY and PACKED_INT_ARRAY block encodings.
+     */
+    public static BlockEncodingBuffer createBlockEncodingBuffers(DecodedBlockNode decodedBlockNode, ArrayAllocator bufferAllocator, boolean isNested, boolean packValues)
     {
         requireNonNull(decodedBlockNode, "decodedBlockNode is null");
         requireNonNull(bufferAllocator, "bufferAllocator is null");
@@ -158,7 +167,7 @@ public abstract class AbstractBlockEncodingBuffer
         verify(!(decodedBlock instanceof RunLengthEncodedBlock), "Nested RLEs and dictionaries are not supported");
 
         if (decodedBlock instanceof LongArrayBlock) {
-            return new LongArrayBlockEncodingBuffer(bufferAllocator, isNested);
+            return new LongArrayBlockEncodingBuffer(bufferAllocator, isNested, packValues);
         }
 
         if (decodedBlock instanceof Int128ArrayBlock) {
@@ -166,7 +175,7 @@ public abstract class AbstractBlockEncodingBuffer
         }
 
         if (decodedBlock instanceof IntArrayBlock) {
-            return new IntArrayBlockEncodingBuffer(bufferAllocator, isNested);
+            return new IntArrayBlockEncodingBuffer(bufferAllocator, isNested, packValues);
         }
 
         if (decodedBlock instanceof ShortArrayBlock) {
@@ -29,6 +29,8 @@ package com.facebook.presto.operator.repartition;
 
 import com.facebook.presto.common.block.ArrayAllocator;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.PackedIntArrayBlockEncoding;
+import com.facebook.presto.common.block.PackedValues;
 import com.google.common.annotations.VisibleForTesting;
 import io.airlift.slice.SliceOutput;
 import org.openjdk.jol.info.ClassLayout;
@@ -36,6 +38,7 @@ import org.openjdk.jol.info.ClassLayout;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.LARGE;
 import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
 import static com.facebook.presto.common.array.Arrays.ensureCapacity;
+import static com.facebook.presto.operator.UncheckedByteArrays.getIntUnchecked;
 import static com.facebook.presto.operator.UncheckedByteArrays.setIntUnchecked;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static io.airlift.slice.SizeOf.SIZE_OF_INT;
@@ -49,15 +52,25 @@ public class IntArrayBlockEncodingBuffer
     static final int POSITION_SIZE = Integer.BYTES + Byte.BYTES;
 
     private static final String NAME = "INT_ARRAY";
+    private static final String PACKED_NAME = PackedIntArrayBlockEncoding.NAME;
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(IntArrayBlockEncodingBuffer.class).instanceSize();
 
+    // Whether the values are bit packed when that is smaller than the plain encoding
+    private final boolean packValues;
+
     private byte[] valuesBuffer;
     private int valuesBufferIndex;
     private int estimatedValueBufferMaxCapacity;
 
     public IntArrayBlockEncodingBuffer(ArrayAllocator bufferAllocator, boolean isNested)
+    {
+        this(bufferAllocator, isNested, false);
+    }
+
+    public IntArrayBlockEncodingBuffer(ArrayAllocator bufferAllocator, boolean isNested, boolean packValues)
     {
         super(bufferAllocator, isNested);
+        this.packValues = packValues;
     }
 
     @Override
@@ -82,6 +95,22 @@ public class IntArrayBlockEncodingBuffer
     @Override
     public void serializeTo(SliceOutput output)
     {
+        if (packValues && valuesBufferIndex > 0) {
+            long[] values = new long[valuesBufferIndex / Integer.BYTES];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getIntUnchecked(valuesBuffer, i * Integer.BYTES);
+            }
+
+            PackedValues packedValues = PackedValues.pack(values, values.length, Integer.BYTES);
+            if (PACKED_NAME.length() + packedValues.getSerializedSizeInBytes() < NAME.length() + valuesBufferIndex) {
+                writeLengthPrefixedString(output, PACKED_NAME);
+                output.writeInt(bufferedPositionCount);
+                serializeNullsTo(output);
+                packedValues.writeTo(output);
+                return;
+            }
+        }
+
         writeLengthPrefixedString(output, NAME);
 
         output.writeInt(bufferedPositionCount);
@@ -15,6 +15,8 @@ package com.facebook.presto.operator.repartition;
 
 import com.facebook.presto.common.block.ArrayAllocator;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.PackedLongArrayBlockEncoding;
+import com.facebook.presto.common.block.PackedValues;
 import com.google.common.annotations.VisibleForTesting;
 import io.airlift.slice.SliceOutput;
 import org.openjdk.jol.info.ClassLayout;
@@ -22,6 +24,7 @@ import org.openjdk.jol.info.ClassLayout;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.LARGE;
 import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
 import static com.facebook.presto.common.array.Arrays.ensureCapacity;
+import static com.facebook.presto.operator.UncheckedByteArrays.getLongUnchecked;
 import static com.facebook.presto.operator.UncheckedByteArrays.setLongUnchecked;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static io.airlift.slice.SizeOf.SIZE_OF_INT;
@@ -35,15 +38,25 @@ public class LongArrayBlockEncodingBuffer
     static final int POSITION_SIZE = Long.BYTES + Byte.BYTES;
 
     private static final String NAME = "LONG_ARRAY";
+    private static final String PACKED_NAME = PackedLongArrayBlockEncoding.NAME;
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(LongArrayBlockEncodingBuffer.class).instanceSize();
 
+    // Whether the values are bit packed when that is smaller than the plain encoding
+    private final boolean packValues;
+
     private byte[] valuesBuffer;
     private int valuesBufferIndex;
     private int estimatedValueBufferMaxCapacity;
 
     public LongArrayBlockEncodingBuffer(ArrayAllocator bufferAllocator, boolean isNested)
+    {
+        this(bufferAllocator, isNested, false);
+    }
+
+    public LongArrayBlockEncodingBuffer(ArrayAllocator bufferAllocator, boolean isNested, boolean packValues)
     {
         super(bufferAllocator, isNested);
+        this.packValues = packValues;
     }
 
     @Override
@@ -68,6 +81,22 @@ public class LongArrayBlockEncodingBuffer
     @Override
     public void serializeTo(SliceOutput output)
     {
+        if (packValues && valuesBufferIndex > 0) {
+            long[] values = new long[valuesBufferIndex / Long.BYTES];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = getLongUnchecked(valuesBuffer, i * Long.BYTES);
+            }
+
+            PackedValues packedValues = PackedValues.pack(values, values.length, Long.BYTES);
+            if (PACKED_NAME.length() + packedValues.getSerializedSizeInBytes() < NAME.length() + valuesBufferIndex) {
+                writeLengthPrefixedString(output, PACKED_NAME);
+                output.writeInt(bufferedPositionCount);
+                serializeNullsTo(output);
+                packedValues.writeTo(output);
+                return;
+            }
+        }
+
         writeLengthPrefixedString(output, NAME);
 
         output.writeInt(bufferedPositionCount);
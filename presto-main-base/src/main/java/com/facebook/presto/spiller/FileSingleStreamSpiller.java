@@ -20,6 +20,7 @@ import com.facebook.presto.operator.SpillContext;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.page.PagesSerdeUtil;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.spiller.SpillCipher;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
@@ -30,28 +31,50 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.airlift.slice.InputStreamSliceInput;
 import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.Slice;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_SPILL_FAILURE;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.PAGE_METADATA_SIZE;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPage;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPage;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
 import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
+import static com.facebook.presto.util.UnsafeAccess.unmap;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Iterators.transform;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static com.google.common.util.concurrent.MoreExecutors.newSequentialExecutor;
+import static io.airlift.slice.SizeOf.SIZE_OF_BYTE;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
 import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.util.Objects.requireNonNull;
 
 @NotThreadSafe
@@ -60,6 +83,11 @@ public class FileSingleStreamSpiller
 {
     @VisibleForTesting
     static final int BUFFER_SIZE = 4 * 1024;
+    @VisibleForTesting
+    static final long MAX_MAPPED_REGION_SIZE = 1024 * 1024 * 1024;
+
+    // offset of the sizeInBytes field in the serialized page metadata, see PagesSerdeUtil#readSerializedPage
+    private static final int PAGE_SIZE_IN_BYTES_OFFSET = SIZE_OF_INT + SIZE_OF_BYTE + SIZE_OF_INT;
 
     private final FileHolder targetFile;
     private final Closer closer = Closer.create();
@@ -68,8 +96,12 @@ public class FileSingleStreamSpiller
     private final SpillContext localSpillContext;
     private final LocalMemoryContext memoryContext;
     private final Optional<SpillCipher> spillCipher;
+    private final boolean mmapReadEnabled;
+    private final long mappedRegionSize;
+    private final int readAheadPages;
 
     private final ListeningExecutorService executor;
+    private final Executor readAheadExecutor;
 
     private boolean writable = true;
     private boolean committed;
@@ -85,6 +117,40 @@ public class FileSingleStreamSpiller
             LocalMemoryContext memoryContext,
             Optional<SpillCipher> spillCipher)
     {
+        this(serde, executor, spillPath, spillerStats, spillContext, memoryContext, spillCipher, false, 0, directExecutor());
+    }
+
+    public FileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            Path spillPath,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            boolean mmapReadEnabled,
+            int readAheadPages,
+            Executor readAheadExecutor)
+    {
+        this(serde, executor, spillPath, spillerStats, spillContext, memoryContext, spillCipher, mmapReadEnabled, MAX_MAPPED_REGION_SIZE, readAheadPages, readAheadExecutor);
+    }
+
+    @VisibleForTesting
+    FileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            Path spillPath,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            boolean mmapReadEnabled,
+            long mappedRegionSize,
+            int readAheadPages,
+            Executor readAheadExecutor)
+    {
+        checkArgument(mappedRegionSize > 0 && mappedRegionSize <= MAX_MAPPED_REGION_SIZE, "mappedRegionSize must be between 1 and %s", MAX_MAPPED_REGION_SIZE);
+        checkArgument(readAheadPages >= 0, "readAheadPages is negative");
         this.serde = requireNonNull(serde, "serde is null");
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats is null");
@@ -93,6 +159,10 @@ public class FileSingleStreamSpiller
         this.spillCipher = requireNonNull(spillCipher, "spillCipher is null");
         checkState(!spillCipher.isPresent() || !spillCipher.get().isDestroyed(), "spillCipher is already destroyed");
         this.spillCipher.ifPresent(cipher -> closer.register(cipher::destroy));
+        this.mmapReadEnabled = mmapReadEnabled;
+        this.mappedRegionSize = mappedRegionSize;
+        this.readAheadPages = readAheadPages;
+        this.readAheadExecutor = requireNonNull(readAheadExecutor, "readAheadExecutor is null");
         // HACK!
         // The writePages() method is called in a separate thread pool and it's possible that
         // these spiller thread can run concurrently with the close() method.
@@ -181,9 +251,25 @@ public class FileSingleStreamSpiller
             }
 
             checkState(committed, "Cannot read pages since spill file is not committed");
-            InputStream input = closer.register(targetFile.newInputStream());
-            Iterator<Page> deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE));
+            Closeable input;
+            Iterator<Page> deserializedPages;
+            if (mmapReadEnabled) {
+                MappedSerializedPageIterator serializedPages = closer.register(new MappedSerializedPageIterator(targetFile.newFileChannel(READ), mappedRegionSize));
+                input = serializedPages;
+                deserializedPages = transform(serializedPages, serde::deserialize);
+            }
+            else {
+                InputStream inputStream = closer.register(targetFile.newInputStream());
+                input = inputStream;
+                deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(inputStream, BUFFER_SIZE));
+            }
             Iterator<Page> compactPages = transform(deserializedPages, Page::compact);
+            if (readAheadPages > 0) {
+                ReadAheadIterator readAheadIterator = closer.register(new ReadAheadIterator(compactPages, readAheadPages, readAheadExecutor));
+                // pages that have been read ahead are held by the spiller until they are consumed
+                memoryContext.setBytes(BUFFER_SIZE + (long) readAheadPages * DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+                compactPages = readAheadIterator;
+            }
             spillerStats.addToTotalSpilledBytesRead(getSpilledPagesInMemorySize());
             return closeWhenExhausted(compactPages, input);
         }
@@ -210,7 +296,173 @@ public class FileSingleStreamSpiller
         checkState(spillInProgress.isDone(), "spill in progress");
     }
 
-    private static <T> Iterator<T> closeWhenExhausted(Iterator<T> iterator, Closeable resource)
+    /**
+     * Reads the serialized pages of a spill file through read only memory mapped regions of the file,
+     * which avoids a read call for every buffer of the file. A page never spans two regions, so a new region
+     * is mapped starting at the first page which does not fit entirely within the current one, and the
+     * current region is unmapped at that point, so that deleted spill files do not hold on to disk space
+     * until the regions are garbage collected.
+     * <p>
+     * Since a region may be unmapped while the pages read from it are still in use, each page is copied
+     * to the heap before it is returned, and no returned page references the mapped memory.
+     */
+    static class MappedSerializedPageIterator
+            extends AbstractIterator<SerializedPage>
+            implements Closeable
+    {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final long regionSize;
+
+        private MappedByteBuffer mappedRegion;
+        private Slice region;
+        private long regionOffset;
+        private long position;
+
+        public MappedSerializedPageIterator(FileChannel channel, long regionSize)
+                throws IOException
+        {
+            this.channel = requireNonNull(channel, "channel is null");
+            this.fileSize = channel.size();
+            this.regionSize = regionSize;
+        }
+
+        /**
+         * Returns the offset in the file of the next page.
+         */
+        public long getPosition()
+        {
+            return position;
+        }
+
+        @Override
+        protected SerializedPage computeNext()
+        {
+            if (position >= fileSize) {
+                return endOfData();
+            }
+
+            try {
+                ensureMapped(PAGE_METADATA_SIZE);
+                int sizeInBytes = region.getInt(toIntExact(position - regionOffset) + PAGE_SIZE_IN_BYTES_OFFSET);
+                long pageLength = PAGE_METADATA_SIZE + (long) sizeInBytes;
+                ensureMapped(pageLength);
+
+                SerializedPage page = readSerializedPage(region.slice(toIntExact(position - regionOffset), toIntExact(pageLength)).getInput());
+                position += pageLength;
+                return new SerializedPage(Slices.copyOf(page.getSlice()), page.getPageCodecMarkers(), page.getPositionCount(), page.getUncompressedSizeInBytes(), page.getChecksum());
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void ensureMapped(long length)
+                throws IOException
+        {
+            if (region != null && position + length <= regionOffset + region.length()) {
+                return;
+            }
+            if (position + length > fileSize) {
+                throw new PrestoException(GENERIC_SPILL_FAILURE, format("Spill file is truncated: expected %s bytes at offset %s, but file size is %s", length, position, fileSize));
+            }
+            checkState(length <= MAX_MAPPED_REGION_SIZE, "Spilled page of %s bytes exceeds the maximum mapped region size", length);
+            long mappedLength = min(max(length, regionSize), fileSize - position);
+            unmapRegion();
+            mappedRegion = channel.map(READ_ONLY, position, mappedLength);
+            region = Slices.wrappedBuffer(mappedRegion);
+            regionOffset = position;
+        }
+
+        private void unmapRegion()
+        {
+            if (mappedRegion != null) {
+                region = null;
+                unmap(mappedRegion);
+                mappedRegion = null;
+            }
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            unmapRegion();
+            channel.close();
+        }
+    }
+
+    /**
+     * Prepares the next {@code readAheadPages} pages of the source iterator on an executor, while the
+     * consumer processes the current one. The source is only accessed by one task at a time, in order.
+     * Once the iterator is exhausted or closed, no read of the source is in progress, so the file it
+     * reads can be closed and deleted.
+     */
+    static class ReadAheadIterator
+            extends AbstractIterator<Page>
+            implements Closeable
+    {
+        private final Iterator<Page> source;
+        private final int readAheadPages;
+        private final Executor executor;
+        private final Deque<ListenableFuture<Optional<Page>>> pendingPages = new ArrayDeque<>();
+        private final ReentrantLock sourceLock = new ReentrantLock();
+        private volatile boolean closed;
+        private boolean sourceExhausted;
+
+        public ReadAheadIterator(Iterator<Page> source, int readAheadPages, Executor executor)
+        {
+            this.source = requireNonNull(source, "source is null");
+            this.readAheadPages = readAheadPages;
+            this.executor = newSequentialExecutor(requireNonNull(executor, "executor is null"));
+        }
+
+        @Override
+        protected Page computeNext()
+        {
+            while (!sourceExhausted && pendingPages.size() < readAheadPages) {
+                pendingPages.add(Futures.submit(this::readNext, executor));
+            }
+            if (pendingPages.isEmpty()) {
+                return endOfData();
+            }
+
+            Optional<Page> page = getFutureValue(pendingPages.poll());
+            if (!page.isPresent()) {
+                close();
+                return endOfData();
+            }
+            return page.get();
+        }
+
+        private Optional<Page> readNext()
+        {
+            sourceLock.lock();
+            try {
+                if (closed || !source.hasNext()) {
+                    return Optional.empty();
+                }
+                return Optional.of(source.next());
+            }
+            finally {
+                sourceLock.unlock();
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+            sourceExhausted = true;
+            pendingPages.forEach(future -> future.cancel(true));
+            pendingPages.clear();
+            // wait for a read which is still in progress
+            sourceLock.lock();
+            sourceLock.unlock();
+        }
+    }
+
+    static <T> Iterator<T> closeWhenExhausted(Iterator<T> iterator, Closeable resource)
     {
         requireNonNull(iterator, "iterator is null");
         requireNonNull(resource, "resource is null");
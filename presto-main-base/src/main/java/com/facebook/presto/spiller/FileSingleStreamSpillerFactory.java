@@ -40,7 +40,11 @@ import java.util.Optional;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.spi.StandardErrorCode.OUT_OF_SPILL_SPACE;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static java.lang.Math.max;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.nio.file.Files.createDirectories;
 import static java.nio.file.Files.delete;
@@ -61,11 +65,18 @@ public class FileSingleStreamSpillerFactory
     private static final String SPILL_FILE_GLOB = "spill*.bin";
 
     private final ListeningExecutorService executor;
+    private final ListeningExecutorService readAheadExecutor;
+    private final ListeningExecutorService writeExecutor;
     private final PagesSerdeFactory serdeFactory;
     private final List<Path> spillPaths;
     private final SpillerStats spillerStats;
     private final double maxUsedSpaceThreshold;
     private final boolean spillEncryptionEnabled;
+    private final boolean spillMmapReadEnabled;
+    private final int spillReadAheadPages;
+    private final boolean spillStripingEnabled;
+    private final int spillStripeExtentSize;
+    private final int spillMaxPendingWrites;
     private int roundRobinIndex;
 
     @Inject
@@ -79,8 +90,7 @@ public class FileSingleStreamSpillerFactory
                 spillerStats,
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths(),
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillMaxUsedSpaceThreshold(),
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").getSpillCompressionCodec(),
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled());
+                nodeSpillConfig);
     }
 
     @VisibleForTesting
@@ -93,7 +103,31 @@ public class FileSingleStreamSpillerFactory
             CompressionCodec spillCompressionCodec,
             boolean spillEncryptionEnabled)
     {
-        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionCodec);
+        this(
+                executor,
+                blockEncodingSerde,
+                spillerStats,
+                spillPaths,
+                maxUsedSpaceThreshold,
+                new NodeSpillConfig()
+                        .setSpillCompressionCodec(spillCompressionCodec)
+                        .setSpillEncryptionEnabled(spillEncryptionEnabled));
+    }
+
+    @VisibleForTesting
+    public FileSingleStreamSpillerFactory(
+            ListeningExecutorService executor,
+            BlockEncodingSerde blockEncodingSerde,
+            SpillerStats spillerStats,
+            List<Path> spillPaths,
+            double maxUsedSpaceThreshold,
+            NodeSpillConfig nodeSpillConfig)
+    {
+        requireNonNull(nodeSpillConfig, "nodeSpillConfig is null");
+        checkArgument(nodeSpillConfig.getSpillReadAheadPages() >= 0, "spillReadAheadPages is negative");
+        checkArgument(nodeSpillConfig.getSpillReadAheadThreads() > 0, "spillReadAheadThreads must be positive");
+        checkArgument(nodeSpillConfig.getSpillMaxPendingWrites() > 0, "spillMaxPendingWrites must be positive");
+        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), nodeSpillConfig.getSpillCompressionCodec());
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
         requireNonNull(spillPaths, "spillPaths is null");
@@ -112,7 +146,16 @@ public class FileSingleStreamSpillerFactory
             }
         });
         this.maxUsedSpaceThreshold = maxUsedSpaceThreshold;
-        this.spillEncryptionEnabled = spillEncryptionEnabled;
+        this.spillEncryptionEnabled = nodeSpillConfig.isSpillEncryptionEnabled();
+        this.spillMmapReadEnabled = nodeSpillConfig.isSpillMmapReadEnabled();
+        this.spillReadAheadPages = nodeSpillConfig.getSpillReadAheadPages();
+        this.spillStripingEnabled = nodeSpillConfig.isSpillStripingEnabled();
+        this.spillStripeExtentSize = toIntExact(nodeSpillConfig.getSpillStripeExtentSize().toBytes());
+        this.spillMaxPendingWrites = nodeSpillConfig.getSpillMaxPendingWrites();
+        // reading ahead also deserializes the pages, and is shared by all the unspilling operators of the node
+        this.readAheadExecutor = listeningDecorator(newFixedThreadPool(nodeSpillConfig.getSpillReadAheadThreads(), daemonThreadsNamed("binary-spiller-read-ahead-%s")));
+        // one writer per spill path keeps all the disks busy, see StripedFileSingleStreamSpiller
+        this.writeExecutor = listeningDecorator(newFixedThreadPool(max(spillPaths.size(), 1), daemonThreadsNamed("binary-spiller-writer-%s")));
         this.roundRobinIndex = 0;
     }
 
@@ -126,6 +169,8 @@ public class FileSingleStreamSpillerFactory
     public void destroy()
     {
         executor.shutdownNow();
+        readAheadExecutor.shutdownNow();
+        writeExecutor.shutdownNow();
     }
 
     private static void cleanupOldSpillFiles(Path path)
@@ -154,7 +199,33 @@ public class FileSingleStreamSpillerFactory
             spillCipher = Optional.of(new AesSpillCipher());
         }
         PagesSerde serde = serdeFactory.createPagesSerdeForSpill(spillCipher);
-        return new FileSingleStreamSpiller(serde, executor, getNextSpillPath(), spillerStats, spillContext, memoryContext, spillCipher);
+        if (spillStripingEnabled && spillPaths.size() > 1) {
+            return new StripedFileSingleStreamSpiller(
+                    serde,
+                    executor,
+                    writeExecutor,
+                    getStripeSpillPaths(),
+                    spillerStats,
+                    spillContext,
+                    memoryContext,
+                    spillCipher,
+                    spillStripeExtentSize,
+                    spillMaxPendingWrites,
+                    spillMmapReadEnabled,
+                    spillReadAheadPages,
+                    readAheadExecutor);
+        }
+        return new FileSingleStreamSpiller(
+                serde,
+                executor,
+                getNextSpillPath(),
+                spillerStats,
+                spillContext,
+                memoryContext,
+                spillCipher,
+                spillMmapReadEnabled,
+                spillReadAheadPages,
+                readAheadExecutor);
     }
 
     private synchronized Path getNextSpillPath()
@@ -174,6 +245,17 @@ public class FileSingleStreamSpillerFactory
         throw new PrestoException(OUT_OF_SPILL_SPACE, "No free space available for spill");
     }
 
+    private List<Path> getStripeSpillPaths()
+    {
+        List<Path> paths = spillPaths.stream()
+                .filter(this::hasEnoughDiskSpace)
+                .collect(toImmutableList());
+        if (paths.isEmpty()) {
+            throw new PrestoException(OUT_OF_SPILL_SPACE, "No free space available for spill");
+        }
+        return paths;
+    }
+
     private boolean hasEnoughDiskSpace(Path path)
     {
         try {
@@ -14,8 +14,10 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.CompressionCodec;
+import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
 
 public class NodeSpillConfig
@@ -27,6 +29,12 @@ public class NodeSpillConfig
 
     private CompressionCodec spillCompressionCodec = CompressionCodec.NONE;
     private boolean spillEncryptionEnabled;
+    private boolean spillMmapReadEnabled;
+    private int spillReadAheadPages;
+    private int spillReadAheadThreads = 8;
+    private boolean spillStripingEnabled;
+    private DataSize spillStripeExtentSize = new DataSize(1, DataSize.Unit.MEGABYTE);
+    private int spillMaxPendingWrites = 2;
 
     @NotNull
     public DataSize getMaxSpillPerNode()
@@ -91,6 +99,88 @@ public class NodeSpillConfig
         return this;
     }
 
+    public boolean isSpillMmapReadEnabled()
+    {
+        return spillMmapReadEnabled;
+    }
+
+    @Config("experimental.spill-mmap-read-enabled")
+    @ConfigDescription("Read spill files through memory mapping instead of buffered streams")
+    public NodeSpillConfig setSpillMmapReadEnabled(boolean spillMmapReadEnabled)
+    {
+        this.spillMmapReadEnabled = spillMmapReadEnabled;
+        return this;
+    }
+
+    @Min(0)
+    public int getSpillReadAheadPages()
+    {
+        return spillReadAheadPages;
+    }
+
+    @Config("experimental.spill-read-ahead-pages")
+    @ConfigDescription("Number of pages deserialized ahead of the consumer when reading spill files. 0 disables read ahead")
+    public NodeSpillConfig setSpillReadAheadPages(int spillReadAheadPages)
+    {
+        this.spillReadAheadPages = spillReadAheadPages;
+        return this;
+    }
+
+    @Min(1)
+    public int getSpillReadAheadThreads()
+    {
+        return spillReadAheadThreads;
+    }
+
+    @Config("experimental.spill-read-ahead-threads")
+    @ConfigDescription("Number of threads of the node shared by all spill readers to read pages ahead")
+    public NodeSpillConfig setSpillReadAheadThreads(int spillReadAheadThreads)
+    {
+        this.spillReadAheadThreads = spillReadAheadThreads;
+        return this;
+    }
+
+    public boolean isSpillStripingEnabled()
+    {
+        return spillStripingEnabled;
+    }
+
+    @Config("experimental.spill-striping-enabled")
+    @ConfigDescription("Stripe each spill stream across all spill paths instead of writing it to a single path")
+    public NodeSpillConfig setSpillStripingEnabled(boolean spillStripingEnabled)
+    {
+        this.spillStripingEnabled = spillStripingEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getSpillStripeExtentSize()
+    {
+        return spillStripeExtentSize;
+    }
+
+    @Config("experimental.spill-stripe-extent-size")
+    @ConfigDescription("Amount of data written to one spill path before moving to the next one when striping is enabled")
+    public NodeSpillConfig setSpillStripeExtentSize(DataSize spillStripeExtentSize)
+    {
+        this.spillStripeExtentSize = spillStripeExtentSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getSpillMaxPendingWrites()
+    {
+        return spillMaxPendingWrites;
+    }
+
+    @Config("experimental.spill-max-pending-writes")
+    @ConfigDescription("Maximum number of extents of a striped spill stream waiting to be written to each spill path before spilling blocks")
+    public NodeSpillConfig setSpillMaxPendingWrites(int spillMaxPendingWrites)
+    {
+        this.spillMaxPendingWrites = spillMaxPendingWrites;
+        return this;
+    }
+
     @NotNull
     public DataSize getTempStorageBufferSize()
     {
@@ -0,0 +1,80 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Write statistics of a single spill path, used by striped spillers.
+ */
+public class SpillerDiskStats
+{
+    private final CounterStat writtenBytes = new CounterStat();
+    private final TimeStat writeTime = new TimeStat();
+    private final AtomicLong queuedWrites = new AtomicLong();
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    @Managed
+    @Nested
+    public CounterStat getWrittenBytes()
+    {
+        return writtenBytes;
+    }
+
+    @Managed
+    @Nested
+    public TimeStat getWriteTime()
+    {
+        return writeTime;
+    }
+
+    @Managed
+    public long getQueuedWrites()
+    {
+        return queuedWrites.get();
+    }
+
+    @Managed
+    public long getQueuedBytes()
+    {
+        return queuedBytes.get();
+    }
+
+    public void writeQueued(long bytes)
+    {
+        queuedWrites.incrementAndGet();
+        queuedBytes.addAndGet(bytes);
+    }
+
+    public void writeFinished(long bytes, long writeNanos)
+    {
+        queuedWrites.decrementAndGet();
+        queuedBytes.addAndGet(-bytes);
+        writtenBytes.update(bytes);
+        writeTime.add(writeNanos, NANOSECONDS);
+    }
+
+    public void writeFailed(long bytes)
+    {
+        queuedWrites.decrementAndGet();
+        queuedBytes.addAndGet(-bytes);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import jakarta.annotation.PreDestroy;
+import jakarta.inject.Inject;
+import org.weakref.jmx.JmxException;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNames;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+public final class SpillerDiskStatsExporter
+{
+    private final MBeanExporter exporter;
+    @GuardedBy("this")
+    private final List<String> objectNames = new ArrayList<>();
+
+    @Inject
+    public SpillerDiskStatsExporter(SpillerStats spillerStats, FeaturesConfig featuresConfig, MBeanExporter exporter)
+    {
+        requireNonNull(spillerStats, "spillerStats is null");
+        this.exporter = requireNonNull(exporter, "exporter is null");
+        for (Path spillPath : requireNonNull(featuresConfig, "featuresConfig is null").getSpillerSpillPaths()) {
+            export(spillPath, spillerStats.getDiskStats(spillPath));
+        }
+    }
+
+    private synchronized void export(Path spillPath, SpillerDiskStats diskStats)
+    {
+        try {
+            String objectName = ObjectNames.builder(SpillerDiskStats.class, spillPath.toString()).build();
+            exporter.export(objectName, diskStats);
+            objectNames.add(objectName);
+        }
+        catch (JmxException e) {
+            // ignored
+        }
+    }
+
+    @PreDestroy
+    public synchronized void destroy()
+    {
+        for (String objectName : objectNames) {
+            try {
+                exporter.unexport(objectName);
+            }
+            catch (JmxException e) {
+                // ignored
+            }
+        }
+        objectNames.clear();
+    }
+}
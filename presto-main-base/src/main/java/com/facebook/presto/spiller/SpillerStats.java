@@ -15,12 +15,16 @@ package com.facebook.presto.spiller;
 
 import org.weakref.jmx.Managed;
 
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class SpillerStats
 {
     protected final AtomicLong totalSpilledBytes = new AtomicLong();
     protected final AtomicLong totalSpilledBytesRead = new AtomicLong();
+    private final Map<Path, SpillerDiskStats> diskStats = new ConcurrentHashMap<>();
 
     @Managed
     public long getTotalSpilledBytes()
@@ -34,6 +38,27 @@ public class SpillerStats
         return totalSpilledBytesRead.get();
     }
 
+    @Managed
+    public long getQueuedSpillWrites()
+    {
+        return diskStats.values().stream()
+                .mapToLong(SpillerDiskStats::getQueuedWrites)
+                .sum();
+    }
+
+    @Managed
+    public long getQueuedSpillBytes()
+    {
+        return diskStats.values().stream()
+                .mapToLong(SpillerDiskStats::getQueuedBytes)
+                .sum();
+    }
+
+    public SpillerDiskStats getDiskStats(Path spillPath)
+    {
+        return diskStats.computeIfAbsent(spillPath, path -> new SpillerDiskStats());
+    }
+
     public void addToTotalSpilledBytes(long delta)
     {
         totalSpilledBytes.addAndGet(delta);
@@ -0,0 +1,485 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.airlift.concurrent.NotThreadSafe;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.SpillContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.PagesSerdeUtil;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.spiller.SpillCipher;
+import com.facebook.presto.spiller.FileSingleStreamSpiller.MappedSerializedPageIterator;
+import com.facebook.presto.spiller.FileSingleStreamSpiller.ReadAheadIterator;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.slice.DynamicSliceOutput;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.Slice;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_SPILL_FAILURE;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPage;
+import static com.facebook.presto.spiller.FileSingleStreamSpiller.BUFFER_SIZE;
+import static com.facebook.presto.spiller.FileSingleStreamSpiller.MAX_MAPPED_REGION_SIZE;
+import static com.facebook.presto.spiller.FileSingleStreamSpiller.closeWhenExhausted;
+import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_PREFIX;
+import static com.facebook.presto.spiller.FileSingleStreamSpillerFactory.SPILL_FILE_SUFFIX;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Iterators.transform;
+import static com.google.common.util.concurrent.MoreExecutors.newSequentialExecutor;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spiller which stripes a single stream of pages across files on several spill paths.
+ * <p>
+ * Serialized pages are collected into extents of about {@code extentSize} bytes, which never split a page.
+ * Extent {@code i} is appended to the file on spill path {@code i % spillPaths.size()} by a writer
+ * dedicated to that path, so that the writes to different paths proceed in parallel. At most
+ * {@code maxPendingWritesPerPath} extents per spill path may be waiting to be written, after which
+ * spilling blocks until a write completes. When reading, the extents are read back in order, alternating
+ * between the files, either through streams or through memory mapped regions of the files, and optionally
+ * ahead of the consumer as in {@link FileSingleStreamSpiller}.
+ */
+@NotThreadSafe
+public class StripedFileSingleStreamSpiller
+        implements SingleStreamSpiller
+{
+    private final List<FileHolder> targetFiles;
+    private final List<SpillerDiskStats> diskStats;
+    private final List<Executor> diskWriters;
+    private final Closer closer = Closer.create();
+    private final PagesSerde serde;
+    private final SpillerStats spillerStats;
+    private final SpillContext localSpillContext;
+    private final LocalMemoryContext memoryContext;
+    private final int extentSize;
+    private final int maxPendingWrites;
+    private final Semaphore pendingWrites;
+    private final boolean mmapReadEnabled;
+    private final int readAheadPages;
+
+    private final ListeningExecutorService executor;
+    private final Executor readAheadExecutor;
+
+    // lengths of the extents in the order in which they were spilled
+    private final IntArrayList extentLengths = new IntArrayList();
+
+    private boolean writable = true;
+    private boolean committed;
+    private volatile long spilledPagesInMemorySize;
+    private ListenableFuture<?> spillInProgress = Futures.immediateFuture(null);
+
+    public StripedFileSingleStreamSpiller(
+            PagesSerde serde,
+            ListeningExecutorService executor,
+            Executor writeExecutor,
+            List<Path> spillPaths,
+            SpillerStats spillerStats,
+            SpillContext spillContext,
+            LocalMemoryContext memoryContext,
+            Optional<SpillCipher> spillCipher,
+            int extentSize,
+            int maxPendingWritesPerPath,
+            boolean mmapReadEnabled,
+            int readAheadPages,
+            Executor readAheadExecutor)
+    {
+        requireNonNull(spillPaths, "spillPaths is null");
+        requireNonNull(writeExecutor, "writeExecutor is null");
+        requireNonNull(spillCipher, "spillCipher is null");
+        checkArgument(!spillPaths.isEmpty(), "spillPaths is empty");
+        checkArgument(extentSize > 0, "extentSize must be positive");
+        checkArgument(maxPendingWritesPerPath > 0, "maxPendingWritesPerPath must be positive");
+        checkArgument(readAheadPages >= 0, "readAheadPages is negative");
+        this.serde = requireNonNull(serde, "serde is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.spillerStats = requireNonNull(spillerStats, "spillerStats is null");
+        this.localSpillContext = spillContext.newLocalSpillContext();
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        this.extentSize = extentSize;
+        this.maxPendingWrites = maxPendingWritesPerPath * spillPaths.size();
+        this.pendingWrites = new Semaphore(maxPendingWrites);
+        this.mmapReadEnabled = mmapReadEnabled;
+        this.readAheadPages = readAheadPages;
+        this.readAheadExecutor = requireNonNull(readAheadExecutor, "readAheadExecutor is null");
+        checkState(!spillCipher.isPresent() || !spillCipher.get().isDestroyed(), "spillCipher is already destroyed");
+        spillCipher.ifPresent(cipher -> closer.register(cipher::destroy));
+
+        ImmutableList.Builder<FileHolder> targetFiles = ImmutableList.builder();
+        ImmutableList.Builder<SpillerDiskStats> diskStats = ImmutableList.builder();
+        ImmutableList.Builder<Executor> diskWriters = ImmutableList.builder();
+        for (Path spillPath : spillPaths) {
+            try {
+                targetFiles.add(closer.register(new FileHolder(Files.createTempFile(spillPath, SPILL_FILE_PREFIX, SPILL_FILE_SUFFIX))));
+            }
+            catch (IOException e) {
+                try {
+                    closer.close();
+                }
+                catch (IOException closeException) {
+                    e.addSuppressed(closeException);
+                }
+                throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to create spill file: %s", e.getMessage()), e);
+            }
+            diskStats.add(spillerStats.getDiskStats(spillPath));
+            // extents of one file must be appended in order
+            diskWriters.add(newSequentialExecutor(writeExecutor));
+        }
+        this.targetFiles = targetFiles.build();
+        this.diskStats = diskStats.build();
+        this.diskWriters = diskWriters.build();
+    }
+
+    @Override
+    public ListenableFuture<?> spill(Iterator<Page> pageIterator)
+    {
+        requireNonNull(pageIterator, "pageIterator is null");
+        checkNoSpillInProgress();
+        // See FileSingleStreamSpiller for why the memory is reserved before the spilling thread allocates it.
+        // The extent being filled and the extents waiting to be written may be held at the same time. The
+        // reservation is only made once pages are spilled, since spillers are often created for partitions
+        // which are never spilled to, and is released once the spill completes.
+        memoryContext.setBytes((long) (maxPendingWrites + 1) * extentSize);
+        spillInProgress = executor.submit(() -> writePages(pageIterator));
+        return spillInProgress;
+    }
+
+    @Override
+    public long getSpilledPagesInMemorySize()
+    {
+        return spilledPagesInMemorySize;
+    }
+
+    @Override
+    public Iterator<Page> getSpilledPages()
+    {
+        checkNoSpillInProgress();
+        return readPages();
+    }
+
+    @Override
+    public ListenableFuture<List<Page>> getAllSpilledPages()
+    {
+        return executor.submit(() -> ImmutableList.copyOf(getSpilledPages()));
+    }
+
+    @Override
+    public void commit()
+    {
+        committed = true;
+    }
+
+    private void writePages(Iterator<Page> pageIterator)
+    {
+        try {
+            checkState(writable, "Spilling no longer allowed. The spiller has been made non-writable on first read for subsequent reads to be consistent");
+            checkState(!committed, "Spilling no longer allowed. Spill file is already committed");
+            writeExtents(pageIterator);
+        }
+        finally {
+            // no extent is held once the writes are done
+            memoryContext.setBytes(0);
+        }
+    }
+
+    private void writeExtents(Iterator<Page> pageIterator)
+    {
+        List<ListenableFuture<?>> writes = new ArrayList<>();
+        DynamicSliceOutput extent = new DynamicSliceOutput(extentSize);
+        try {
+            while (pageIterator.hasNext()) {
+                Page page = pageIterator.next();
+                spilledPagesInMemorySize += page.getSizeInBytes();
+                // page serialization requires  page.getSizeInBytes() + Integer.BYTES to fit in an integer
+                for (Page splitPage : splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES)) {
+                    SerializedPage serializedPage = serde.serialize(splitPage);
+                    long pageSize = serializedPage.getSizeInBytes();
+                    localSpillContext.updateBytes(pageSize);
+                    spillerStats.addToTotalSpilledBytes(pageSize);
+                    writeSerializedPage(extent, serializedPage);
+                    if (extent.size() >= extentSize) {
+                        writes.add(writeExtent(extent.slice()));
+                        extent = new DynamicSliceOutput(extentSize);
+                    }
+                }
+            }
+            if (extent.size() > 0) {
+                writes.add(writeExtent(extent.slice()));
+            }
+        }
+        catch (InterruptedException e) {
+            PrestoException exception = new PrestoException(GENERIC_SPILL_FAILURE, "Interrupted while spilling pages", e);
+            awaitWrites(writes, exception);
+            Thread.currentThread().interrupt();
+            throw exception;
+        }
+        catch (RuntimeException e) {
+            awaitWrites(writes, e);
+            throw e;
+        }
+        // the spill is complete only once all the extents are on disk
+        awaitWrites(writes);
+    }
+
+    /**
+     * Waits for all the writes to finish, even after one of them failed, so that the files are not closed while
+     * they are written to. Rethrows the first write failure.
+     */
+    private static void awaitWrites(List<ListenableFuture<?>> writes)
+    {
+        getFutureValue(Futures.successfulAsList(writes));
+        getFutureValue(Futures.allAsList(writes));
+    }
+
+    private static void awaitWrites(List<ListenableFuture<?>> writes, Throwable failure)
+    {
+        try {
+            awaitWrites(writes);
+        }
+        catch (RuntimeException e) {
+            if (e != failure) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
+    private ListenableFuture<?> writeExtent(Slice data)
+            throws InterruptedException
+    {
+        // blocks the spilling thread until there is room in the write queue
+        pendingWrites.acquire();
+        int disk = extentLengths.size() % targetFiles.size();
+        extentLengths.add(data.length());
+        SpillerDiskStats stats = diskStats.get(disk);
+        stats.writeQueued(data.length());
+        ListenableFuture<?> write;
+        try {
+            write = Futures.submit(() -> {
+                long start = System.nanoTime();
+                try (OutputStream output = targetFiles.get(disk).newOutputStream(APPEND)) {
+                    data.getBytes(0, output, data.length());
+                }
+                catch (IOException e) {
+                    stats.writeFailed(data.length());
+                    throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to spill pages: %s", e.getMessage()), e);
+                }
+                catch (RuntimeException e) {
+                    stats.writeFailed(data.length());
+                    throw e;
+                }
+                stats.writeFinished(data.length(), System.nanoTime() - start);
+            }, diskWriters.get(disk));
+        }
+        catch (RuntimeException e) {
+            pendingWrites.release();
+            stats.writeFailed(data.length());
+            throw e;
+        }
+        write.addListener(pendingWrites::release, Runnable::run);
+        return write;
+    }
+
+    private Iterator<Page> readPages()
+    {
+        checkState(writable, "Repeated reads are disallowed to prevent potential resource leaks");
+        writable = false;
+
+        try {
+            if (!committed) {
+                commit();
+            }
+
+            checkState(committed, "Cannot read pages since spill file is not committed");
+            Closeable input;
+            Iterator<Page> deserializedPages;
+            if (mmapReadEnabled) {
+                List<MappedSerializedPageIterator> files = new ArrayList<>();
+                for (FileHolder targetFile : targetFiles) {
+                    files.add(closer.register(new MappedSerializedPageIterator(targetFile.newFileChannel(READ), MAX_MAPPED_REGION_SIZE)));
+                }
+                input = () -> {
+                    try (Closer filesCloser = Closer.create()) {
+                        files.forEach(filesCloser::register);
+                    }
+                };
+                deserializedPages = transform(new StripedSerializedPageIterator(files, extentLengths), serde::deserialize);
+            }
+            else {
+                List<InputStream> inputs = new ArrayList<>();
+                for (FileHolder targetFile : targetFiles) {
+                    inputs.add(closer.register(targetFile.newInputStream()));
+                }
+                StripedInputStream inputStream = new StripedInputStream(inputs, extentLengths);
+                input = inputStream;
+                deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(inputStream, BUFFER_SIZE));
+            }
+            Iterator<Page> compactPages = transform(deserializedPages, Page::compact);
+            // the extents are on disk, and only the read buffer and the pages read ahead are held from now on
+            memoryContext.setBytes(BUFFER_SIZE + (long) readAheadPages * DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+            if (readAheadPages > 0) {
+                compactPages = closer.register(new ReadAheadIterator(compactPages, readAheadPages, readAheadExecutor));
+            }
+            spillerStats.addToTotalSpilledBytesRead(getSpilledPagesInMemorySize());
+            return closeWhenExhausted(compactPages, input);
+        }
+        catch (IOException e) {
+            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to read spilled pages: %s", e.getMessage()), e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        closer.register(localSpillContext);
+        closer.register(() -> memoryContext.setBytes(0));
+        try {
+            closer.close();
+        }
+        catch (IOException e) {
+            throw new PrestoException(GENERIC_SPILL_FAILURE, format("Failed to close spiller: %s", e.getMessage()), e);
+        }
+    }
+
+    private void checkNoSpillInProgress()
+    {
+        checkState(spillInProgress.isDone(), "spill in progress");
+    }
+
+    /**
+     * Returns the serialized pages of the extents of the striped files in the order in which they were spilled.
+     */
+    private static class StripedSerializedPageIterator
+            extends AbstractIterator<SerializedPage>
+    {
+        private final List<MappedSerializedPageIterator> files;
+        private final IntArrayList extentLengths;
+
+        private int nextExtent;
+        private MappedSerializedPageIterator currentFile;
+        private long extentEnd;
+
+        public StripedSerializedPageIterator(List<MappedSerializedPageIterator> files, IntArrayList extentLengths)
+        {
+            this.files = ImmutableList.copyOf(requireNonNull(files, "files is null"));
+            this.extentLengths = requireNonNull(extentLengths, "extentLengths is null");
+        }
+
+        @Override
+        protected SerializedPage computeNext()
+        {
+            while (currentFile == null || currentFile.getPosition() >= extentEnd) {
+                if (nextExtent == extentLengths.size()) {
+                    return endOfData();
+                }
+                currentFile = files.get(nextExtent % files.size());
+                extentEnd = currentFile.getPosition() + extentLengths.getInt(nextExtent);
+                nextExtent++;
+            }
+            if (!currentFile.hasNext()) {
+                throw new PrestoException(GENERIC_SPILL_FAILURE, "Spill file is shorter than the spilled extents");
+            }
+            return currentFile.next();
+        }
+    }
+
+    /**
+     * Concatenates the extents of the striped files in the order in which they were spilled.
+     */
+    private static class StripedInputStream
+            extends InputStream
+    {
+        private final List<InputStream> inputs;
+        private final IntArrayList extentLengths;
+
+        private int nextExtent;
+        private InputStream currentInput;
+        private int remainingInExtent;
+
+        public StripedInputStream(List<InputStream> inputs, IntArrayList extentLengths)
+        {
+            this.inputs = ImmutableList.copyOf(requireNonNull(inputs, "inputs is null"));
+            this.extentLengths = requireNonNull(extentLengths, "extentLengths is null");
+        }
+
+        @Override
+        public int read()
+                throws IOException
+        {
+            byte[] buffer = new byte[1];
+            int read = read(buffer, 0, 1);
+            return read < 0 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length)
+                throws IOException
+        {
+            if (length == 0) {
+                return 0;
+            }
+            while (remainingInExtent == 0) {
+                if (nextExtent == extentLengths.size()) {
+                    return -1;
+                }
+                currentInput = inputs.get(nextExtent % inputs.size());
+                remainingInExtent = extentLengths.getInt(nextExtent);
+                nextExtent++;
+            }
+            int read = currentInput.read(buffer, offset, min(length, remainingInExtent));
+            if (read < 0) {
+                throw new EOFException("Spill file is shorter than the spilled extents");
+            }
+            remainingInExtent -= read;
+            return read;
+        }
+
+        @Override
+        public void close()
+                throws IOException
+        {
+            try (Closer closer = Closer.create()) {
+                inputs.forEach(closer::register);
+            }
+        }
+    }
+}
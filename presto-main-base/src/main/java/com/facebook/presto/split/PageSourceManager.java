@@ -73,7 +73,7 @@ public class PageSourceManager
                     split.getTransactionHandle(),
                     split.getConnectorSplit(),
                     split.getLifespan(),
-                    new SplitContext(split.getSplitContext().isCacheable(), dynamicFilter.get().get()));
+                    new SplitContext(split.getSplitContext().isCacheable(), dynamicFilter.get().get(), split.getSplitContext().getDynamicFilterColumnFilters()));
         }
 
         ConnectorSession connectorSession = session.toConnectorSession(split.getConnectorId());
@@ -20,6 +20,7 @@ import com.facebook.airlift.configuration.LegacyConfig;
 import com.facebook.airlift.units.DataSize;
 import com.facebook.airlift.units.Duration;
 import com.facebook.airlift.units.MaxDataSize;
+import com.facebook.airlift.units.MinDataSize;
 import com.facebook.presto.CompressionCodec;
 import com.facebook.presto.common.function.OperatorType;
 import com.facebook.presto.common.resourceGroups.QueryType;
@@ -43,6 +44,7 @@ import java.nio.file.Paths;
 import java.util.List;
 import java.util.stream.Stream;
 
+import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.airlift.units.DataSize.Unit.KILOBYTE;
 import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
 import static com.facebook.presto.spi.StandardErrorCode.INVALID_SESSION_PROPERTY;
@@ -96,6 +98,8 @@ public class FeaturesConfig
     private int concurrentLifespansPerTask;
     private boolean spatialJoinsEnabled = true;
     private boolean fastInequalityJoins = true;
+    private boolean offHeapJoinHashEnabled;
+    private boolean joinBatchProbeEnabled;
     private TaskSpillingStrategy taskSpillingStrategy = ORDER_BY_CREATE_TIME;
     private boolean queryLimitSpillEnabled;
     private SingleStreamSpillerChoice singleStreamSpillerChoice = SingleStreamSpillerChoice.LOCAL_FILE;
@@ -128,6 +132,8 @@ public class FeaturesConfig
     private int optimizeMetadataQueriesCallThreshold = 100;
     private boolean optimizeHashGeneration = true;
     private boolean enableIntermediateAggregations;
+    private boolean enableIntermediateAggregationsForLargeStates;
+    private DataSize intermediateAggregationLargeStateSize = new DataSize(64, KILOBYTE);
     private boolean enableParallelizeChainedAggregations;
     private boolean optimizeCaseExpressionPredicate;
     private boolean pushTableWriteThroughUnion = true;
@@ -142,8 +148,11 @@ public class FeaturesConfig
     private boolean logInvokedFunctionNamesEnabled;
 
     private boolean dictionaryAggregation;
+    private boolean aggregationHashPresizingEnabled;
+    private boolean partitionedAggregationHashEnabled;
     private boolean spillEnabled;
     private boolean joinSpillingEnabled = true;
+    private boolean distinctSpillingEnabled = true;
     private List<Path> spillerSpillPaths = ImmutableList.of();
     private int spillerThreads = 4;
     private double spillMaxUsedSpaceThreshold = 0.9;
@@ -192,6 +201,7 @@ public class FeaturesConfig
     private int dynamicFilteringMaxPerDriverRowCount = 100;
     private DataSize dynamicFilteringMaxPerDriverSize = new DataSize(10, KILOBYTE);
     private int dynamicFilteringRangeRowLimitPerDriver;
+    private DataSize dynamicFilteringBloomFilterSizePerDriver = new DataSize(0, BYTE);
     private DistributedDynamicFilterStrategy distributedDynamicFilterStrategy = DistributedDynamicFilterStrategy.DISABLED;
     private Duration distributedDynamicFilterMaxWaitTime = new Duration(2, SECONDS);
     private int distributedDynamicFilterMaxWaitExtensions = 2;
@@ -200,6 +210,7 @@ public class FeaturesConfig
     private boolean distributedDynamicFilterOnReplicatedJoins;
 
     private boolean fragmentResultCachingEnabled;
+    private boolean queryResultCachingEnabled;
 
     private DataSize filterAndProjectMinOutputPageSize = new DataSize(500, KILOBYTE);
     private int filterAndProjectMinOutputPageRowCount = 256;
@@ -210,6 +221,7 @@ public class FeaturesConfig
     private boolean jsonSerdeCodeGenerationEnabled;
     private int maxConcurrentMaterializations = 3;
     private boolean optimizedRepartitioningEnabled;
+    private boolean optimizedRepartitioningColumnarEncodingEnabled;
 
     private boolean pushdownSubfieldsEnabled;
     private boolean pushdownSubfieldsFromLambdaEnabled;
@@ -237,6 +249,9 @@ public class FeaturesConfig
     private boolean spoolingOutputBufferEnabled;
     private DataSize spoolingOutputBufferThreshold = new DataSize(8, MEGABYTE);
     private String spoolingOutputBufferTempStorage = "local";
+    private boolean spooledQueryOutputEnabled;
+    private DataSize spooledQueryOutputSegmentSize = new DataSize(16, MEGABYTE);
+    private String spooledQueryOutputTempStorage = "local";
 
     private String warnOnNoTableLayoutFilter = "";
 
@@ -815,6 +830,32 @@ public class FeaturesConfig
         return fastInequalityJoins;
     }
 
+    @Config("off-heap-join-hash-enabled")
+    @ConfigDescription("Keep the hash table of the join build side in native memory")
+    public FeaturesConfig setOffHeapJoinHashEnabled(boolean offHeapJoinHashEnabled)
+    {
+        this.offHeapJoinHashEnabled = offHeapJoinHashEnabled;
+        return this;
+    }
+
+    public boolean isOffHeapJoinHashEnabled()
+    {
+        return offHeapJoinHashEnabled;
+    }
+
+    @Config("join-batch-probe-enabled")
+    @ConfigDescription("Resolve the join positions of a whole probe page at once")
+    public FeaturesConfig setJoinBatchProbeEnabled(boolean joinBatchProbeEnabled)
+    {
+        this.joinBatchProbeEnabled = joinBatchProbeEnabled;
+        return this;
+    }
+
+    public boolean isJoinBatchProbeEnabled()
+    {
+        return joinBatchProbeEnabled;
+    }
+
     public JoinReorderingStrategy getJoinReorderingStrategy()
     {
         return joinReorderingStrategy;
@@ -1339,6 +1380,32 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isAggregationHashPresizingEnabled()
+    {
+        return aggregationHashPresizingEnabled;
+    }
+
+    @Config("aggregation-hash-presizing-enabled")
+    @ConfigDescription("Size the hash table of final aggregations from the estimated number of groups")
+    public FeaturesConfig setAggregationHashPresizingEnabled(boolean aggregationHashPresizingEnabled)
+    {
+        this.aggregationHashPresizingEnabled = aggregationHashPresizingEnabled;
+        return this;
+    }
+
+    public boolean isPartitionedAggregationHashEnabled()
+    {
+        return partitionedAggregationHashEnabled;
+    }
+
+    @Config("partitioned-aggregation-hash-enabled")
+    @ConfigDescription("Use a hash table for bigint aggregations that grows one partition at a time")
+    public FeaturesConfig setPartitionedAggregationHashEnabled(boolean partitionedAggregationHashEnabled)
+    {
+        this.partitionedAggregationHashEnabled = partitionedAggregationHashEnabled;
+        return this;
+    }
+
     public boolean isConfidenceBasedBroadcastEnabled()
     {
         return confidenceBasedBroadcastEnabled;
@@ -1399,6 +1466,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isDistinctSpillingEnabled()
+    {
+        return distinctSpillingEnabled;
+    }
+
+    @Config("experimental.distinct-spill-enabled")
+    @ConfigDescription("Enable mark distinct and distinct limit spilling if spill is enabled")
+    public FeaturesConfig setDistinctSpillingEnabled(boolean distinctSpillingEnabled)
+    {
+        this.distinctSpillingEnabled = distinctSpillingEnabled;
+        return this;
+    }
+
     public boolean isIterativeOptimizerEnabled()
     {
         return iterativeOptimizerEnabled;
@@ -1677,6 +1757,20 @@ public class FeaturesConfig
         return this;
     }
 
+    @MaxDataSize("64MB")
+    public DataSize getDynamicFilteringBloomFilterSizePerDriver()
+    {
+        return dynamicFilteringBloomFilterSizePerDriver;
+    }
+
+    @Config("dynamic-filtering-bloom-filter-size-per-driver")
+    @ConfigDescription("Size of the Bloom filter collected per driver for dynamic filtering once the build-side values exceed the limits for an exact filter. Only applied to probe-side table scans in the same task as the join build, 0B disables Bloom filters")
+    public FeaturesConfig setDynamicFilteringBloomFilterSizePerDriver(DataSize dynamicFilteringBloomFilterSizePerDriver)
+    {
+        this.dynamicFilteringBloomFilterSizePerDriver = dynamicFilteringBloomFilterSizePerDriver;
+        return this;
+    }
+
     public DistributedDynamicFilterStrategy getDistributedDynamicFilterStrategy()
     {
         return distributedDynamicFilterStrategy;
@@ -1771,6 +1865,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isQueryResultCachingEnabled()
+    {
+        return queryResultCachingEnabled;
+    }
+
+    @Config("query-result-cache.enabled")
+    @ConfigDescription("Serve repeated deterministic queries over versioned tables from the coordinator query result cache")
+    public FeaturesConfig setQueryResultCachingEnabled(boolean queryResultCachingEnabled)
+    {
+        this.queryResultCachingEnabled = queryResultCachingEnabled;
+        return this;
+    }
+
     public boolean isOptimizeMixedDistinctAggregations()
     {
         return optimizeMixedDistinctAggregations;
@@ -1819,6 +1926,33 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isEnableIntermediateAggregationsForLargeStates()
+    {
+        return enableIntermediateAggregationsForLargeStates;
+    }
+
+    @Config("optimizer.enable-intermediate-aggregations-for-large-states")
+    @ConfigDescription("Merge large intermediate states of global aggregations through a tree of intermediate aggregations")
+    public FeaturesConfig setEnableIntermediateAggregationsForLargeStates(boolean enableIntermediateAggregationsForLargeStates)
+    {
+        this.enableIntermediateAggregationsForLargeStates = enableIntermediateAggregationsForLargeStates;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getIntermediateAggregationLargeStateSize()
+    {
+        return intermediateAggregationLargeStateSize;
+    }
+
+    @Config("optimizer.intermediate-aggregation-large-state-size")
+    @ConfigDescription("Estimated size of the intermediate states of a global aggregation above which they are considered large")
+    public FeaturesConfig setIntermediateAggregationLargeStateSize(DataSize intermediateAggregationLargeStateSize)
+    {
+        this.intermediateAggregationLargeStateSize = intermediateAggregationLargeStateSize;
+        return this;
+    }
+
     public boolean isEnableParallelizeChainedAggregations()
     {
         return enableParallelizeChainedAggregations;
@@ -2171,6 +2305,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isOptimizedRepartitioningColumnarEncodingEnabled()
+    {
+        return optimizedRepartitioningColumnarEncodingEnabled;
+    }
+
+    @Config("experimental.optimized-repartitioning-columnar-encoding")
+    @ConfigDescription("Experimental: Bit pack integer columns in pages produced by optimized repartitioning")
+    public FeaturesConfig setOptimizedRepartitioningColumnarEncodingEnabled(boolean optimizedRepartitioningColumnarEncodingEnabled)
+    {
+        this.optimizedRepartitioningColumnarEncodingEnabled = optimizedRepartitioningColumnarEncodingEnabled;
+        return this;
+    }
+
     public boolean isListBuiltInFunctionsOnly()
     {
         return listBuiltInFunctionsOnly;
@@ -2440,6 +2587,47 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isSpooledQueryOutputEnabled()
+    {
+        return spooledQueryOutputEnabled;
+    }
+
+    @Config("spooled-query-output-enabled")
+    @ConfigDescription("Spool the query output on the coordinator, so that the workers do not wait for the client to fetch the results")
+    public FeaturesConfig setSpooledQueryOutputEnabled(boolean spooledQueryOutputEnabled)
+    {
+        this.spooledQueryOutputEnabled = spooledQueryOutputEnabled;
+        return this;
+    }
+
+    @MinDataSize("1MB")
+    public DataSize getSpooledQueryOutputSegmentSize()
+    {
+        return spooledQueryOutputSegmentSize;
+    }
+
+    @Config("spooled-query-output-segment-size")
+    @ConfigDescription("Size of the segments the spooled query output is written in, and that clients can download")
+    public FeaturesConfig setSpooledQueryOutputSegmentSize(DataSize spooledQueryOutputSegmentSize)
+    {
+        this.spooledQueryOutputSegmentSize = spooledQueryOutputSegmentSize;
+        return this;
+    }
+
+    @NotNull
+    public String getSpooledQueryOutputTempStorage()
+    {
+        return spooledQueryOutputTempStorage;
+    }
+
+    @Config("spooled-query-output-temp-storage")
+    @ConfigDescription("Temporary storage the spooled query output is written to")
+    public FeaturesConfig setSpooledQueryOutputTempStorage(String spooledQueryOutputTempStorage)
+    {
+        this.spooledQueryOutputTempStorage = spooledQueryOutputTempStorage;
+        return this;
+    }
+
     public boolean isPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled()
     {
         return prestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled;
@@ -43,6 +43,8 @@ import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.operator.JoinHash;
 import com.facebook.presto.operator.JoinHashSupplier;
 import com.facebook.presto.operator.LookupSourceSupplier;
+import com.facebook.presto.operator.OffHeapJoinHashSupplier;
+import com.facebook.presto.operator.OffHeapPagesHash;
 import com.facebook.presto.operator.PagesHash;
 import com.facebook.presto.operator.PagesHashStrategy;
 import com.facebook.presto.spi.function.JavaScalarFunctionImplementation;
@@ -65,6 +67,7 @@ import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.stream.IntStream;
 
+import static com.facebook.presto.SystemSessionProperties.isOffHeapJoinHashEnabled;
 import static com.facebook.presto.bytecode.Access.FINAL;
 import static com.facebook.presto.bytecode.Access.PRIVATE;
 import static com.facebook.presto.bytecode.Access.PUBLIC;
@@ -174,7 +177,14 @@ public class JoinCompiler
                 JoinHash.class,
                 PagesHash.class);
 
-        return new LookupSourceSupplierFactory(joinHashSupplierClass, new PagesHashStrategyFactory(pagesHashStrategyClass));
+        Class<? extends LookupSourceSupplier> offHeapJoinHashSupplierClass = IsolatedClass.isolateClass(
+                new DynamicClassLoader(getClass().getClassLoader()),
+                LookupSourceSupplier.class,
+                OffHeapJoinHashSupplier.class,
+                JoinHash.class,
+                OffHeapPagesHash.class);
+
+        return new LookupSourceSupplierFactory(joinHashSupplierClass, offHeapJoinHashSupplierClass, new PagesHashStrategyFactory(pagesHashStrategyClass));
     }
 
     private static FieldDefinition generateInstanceSize(ClassDefinition definition)
@@ -885,13 +895,23 @@ public class JoinCompiler
     public static class LookupSourceSupplierFactory
     {
         private final Constructor<? extends LookupSourceSupplier> constructor;
+        private final Constructor<? extends LookupSourceSupplier> offHeapConstructor;
         private final PagesHashStrategyFactory pagesHashStrategyFactory;
 
-        public LookupSourceSupplierFactory(Class<? extends LookupSourceSupplier> joinHashSupplierClass, PagesHashStrategyFactory pagesHashStrategyFactory)
+        public LookupSourceSupplierFactory(
+                Class<? extends LookupSourceSupplier> joinHashSupplierClass,
+                Class<? extends LookupSourceSupplier> offHeapJoinHashSupplierClass,
+                PagesHashStrategyFactory pagesHashStrategyFactory)
         {
             this.pagesHashStrategyFactory = pagesHashStrategyFactory;
+            this.constructor = getSupplierConstructor(joinHashSupplierClass);
+            this.offHeapConstructor = getSupplierConstructor(offHeapJoinHashSupplierClass);
+        }
+
+        private static Constructor<? extends LookupSourceSupplier> getSupplierConstructor(Class<? extends LookupSourceSupplier> supplierClass)
+        {
             try {
-                constructor = joinHashSupplierClass.getConstructor(Session.class, PagesHashStrategy.class, AdaptiveLongBigArray.class, int.class, List.class, Optional.class, Optional.class, List.class);
+                return supplierClass.getConstructor(Session.class, PagesHashStrategy.class, AdaptiveLongBigArray.class, int.class, List.class, Optional.class, Optional.class, List.class);
             }
             catch (NoSuchMethodException e) {
                 throw new RuntimeException(e);
@@ -909,8 +929,9 @@ public class JoinCompiler
                 List<JoinFilterFunctionFactory> searchFunctionFactories)
         {
             PagesHashStrategy pagesHashStrategy = pagesHashStrategyFactory.createPagesHashStrategy(channels, hashChannel);
+            Constructor<? extends LookupSourceSupplier> supplierConstructor = isOffHeapJoinHashEnabled(session) ? offHeapConstructor : constructor;
             try {
-                return constructor.newInstance(session, pagesHashStrategy, addresses, positionCount, channels, filterFunctionFactory, sortChannel, searchFunctionFactories);
+                return supplierConstructor.newInstance(session, pagesHashStrategy, addresses, positionCount, channels, filterFunctionFactory, sortChannel, searchFunctionFactories);
             }
             catch (ReflectiveOperationException e) {
                 throw new RuntimeException(e);
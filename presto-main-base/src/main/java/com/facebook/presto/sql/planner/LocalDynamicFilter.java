@@ -15,6 +15,9 @@ package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
+import com.facebook.presto.execution.scheduler.RuntimeFilter;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterExtractResult;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
 import com.facebook.presto.spi.plan.AbstractJoinNode;
@@ -29,15 +32,18 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
+import static com.facebook.presto.common.function.OperatorType.EQUAL;
 import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toMap;
 
@@ -49,6 +55,9 @@ public class LocalDynamicFilter
     // Mapping from dynamic filter ID to its build channel indices.
     private final Map<String, Integer> buildChannels;
 
+    // Mapping from dynamic filter ID to the type of its build channel.
+    private final Map<String, Type> buildTypes;
+
     private final SettableFuture<TupleDomain<VariableReferenceExpression>> resultFuture;
 
     // Number of build-side partitions to be collected.
@@ -57,13 +66,26 @@ public class LocalDynamicFilter
     // The resulting predicates from each build-side partition.
     private final List<TupleDomain<String>> partitions;
 
+    private final SettableFuture<Map<VariableReferenceExpression, BloomRuntimeFilter>> bloomFilterResultFuture;
+
+    // The union of the runtime filters of the build-side partitions collected so far, by dynamic filter ID.
+    private final Map<String, RuntimeFilter> runtimeFilters = new HashMap<>();
+    private int runtimeFilterPartitions;
+
     public LocalDynamicFilter(Multimap<String, DynamicFilterPlaceholder> probeVariables, Map<String, Integer> buildChannels, int partitionCount)
+    {
+        this(probeVariables, buildChannels, ImmutableMap.of(), partitionCount);
+    }
+
+    public LocalDynamicFilter(Multimap<String, DynamicFilterPlaceholder> probeVariables, Map<String, Integer> buildChannels, Map<String, Type> buildTypes, int partitionCount)
     {
         this.probeVariables = requireNonNull(probeVariables, "probeVariables is null");
         this.buildChannels = requireNonNull(buildChannels, "buildChannels is null");
+        this.buildTypes = requireNonNull(buildTypes, "buildTypes is null");
         verify(probeVariables.keySet().equals(buildChannels.keySet()), "probeVariables and buildChannels must have same keys");
 
         this.resultFuture = SettableFuture.create();
+        this.bloomFilterResultFuture = SettableFuture.create();
 
         this.partitionCount = partitionCount;
         this.partitions = new ArrayList<>(partitionCount);
@@ -83,6 +105,41 @@ public class LocalDynamicFilter
         }
     }
 
+    private synchronized void addRuntimeFilters(Map<String, RuntimeFilter> partition)
+    {
+        // Called concurrently by each DynamicFilterSourceOperator instance (when collection is over).
+        verify(runtimeFilterPartitions < partitionCount);
+        for (Map.Entry<String, RuntimeFilter> entry : partition.entrySet()) {
+            runtimeFilters.merge(entry.getKey(), entry.getValue(), RuntimeFilter::mergeWith);
+        }
+        runtimeFilterPartitions++;
+        if (runtimeFilterPartitions == partitionCount) {
+            verify(bloomFilterResultFuture.set(convertBloomFilters()), "dynamic filter Bloom filters are provided more than once");
+            runtimeFilters.clear();
+        }
+    }
+
+    private Map<VariableReferenceExpression, BloomRuntimeFilter> convertBloomFilters()
+    {
+        // Only filters that exceeded the limits for an exact predicate on some partition are Bloom filters,
+        // the others are fully represented by the resulting TupleDomain.
+        Map<VariableReferenceExpression, BloomRuntimeFilter> bloomFilters = new HashMap<>();
+        for (Map.Entry<String, RuntimeFilter> entry : runtimeFilters.entrySet()) {
+            RuntimeFilter filter = entry.getValue();
+            if (!(filter instanceof BloomRuntimeFilter) || filter.isAll()) {
+                continue;
+            }
+            for (DynamicFilterPlaceholder placeholder : probeVariables.get(entry.getKey())) {
+                // A Bloom filter can only be evaluated for equality with a probe value of the same type as the build values
+                if (placeholder.getOperator() == EQUAL && placeholder.getInput().getType().equals(buildTypes.get(entry.getKey()))) {
+                    // a probe variable constrained by several dynamic filters is filtered by one of them
+                    bloomFilters.putIfAbsent((VariableReferenceExpression) placeholder.getInput(), (BloomRuntimeFilter) filter);
+                }
+            }
+        }
+        return ImmutableMap.copyOf(bloomFilters);
+    }
+
     private TupleDomain<VariableReferenceExpression> convertTupleDomain(TupleDomain<String> result)
     {
         if (result.isNone()) {
@@ -143,7 +200,9 @@ public class LocalDynamicFilter
         if (buildChannels.isEmpty()) {
             return Optional.empty();
         }
-        return Optional.of(new LocalDynamicFilter(probeVariables, buildChannels, partitionCount));
+        Map<String, Type> buildTypes = buildChannels.keySet().stream()
+                .collect(toImmutableMap(filterId -> filterId, filterId -> planNode.getDynamicFilters().get(filterId).getType()));
+        return Optional.of(new LocalDynamicFilter(probeVariables, buildChannels, buildTypes, partitionCount));
     }
 
     public Map<String, Integer> getBuildChannels()
@@ -161,6 +220,20 @@ public class LocalDynamicFilter
         return this::addPartition;
     }
 
+    /**
+     * Completes with the Bloom filters of the probe variables once every build-side partition has
+     * provided its runtime filters through {@link #getRuntimeFilterConsumer()}.
+     */
+    public ListenableFuture<Map<VariableReferenceExpression, BloomRuntimeFilter>> getBloomFilterResultFuture()
+    {
+        return bloomFilterResultFuture;
+    }
+
+    public Consumer<Map<String, RuntimeFilter>> getRuntimeFilterConsumer()
+    {
+        return this::addRuntimeFilters;
+    }
+
     @Override
     public String toString()
     {
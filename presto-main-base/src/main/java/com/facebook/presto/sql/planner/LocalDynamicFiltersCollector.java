@@ -14,10 +14,16 @@
 package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
 import com.google.errorprone.annotations.ThreadSafe;
 import com.google.errorprone.annotations.concurrent.GuardedBy;
 
+import java.util.Map;
+
 @ThreadSafe
 public class LocalDynamicFiltersCollector
 {
@@ -28,9 +34,16 @@ public class LocalDynamicFiltersCollector
     @GuardedBy ("this")
     private TupleDomain<VariableReferenceExpression> predicate;
 
+    /**
+     * Bloom filters of dynamic filters whose values exceeded the limits for an exact predicate.
+     */
+    @GuardedBy ("this")
+    private ListMultimap<VariableReferenceExpression, BloomRuntimeFilter> bloomFilters;
+
     public LocalDynamicFiltersCollector()
     {
         this.predicate = TupleDomain.all();
+        this.bloomFilters = ImmutableListMultimap.of();
     }
 
     public synchronized TupleDomain<VariableReferenceExpression> getPredicate()
@@ -42,4 +55,17 @@ public class LocalDynamicFiltersCollector
     {
         this.predicate = this.predicate.intersect(predicate);
     }
+
+    public synchronized ListMultimap<VariableReferenceExpression, BloomRuntimeFilter> getBloomFilters()
+    {
+        return bloomFilters;
+    }
+
+    public synchronized void addBloomFilters(Map<VariableReferenceExpression, BloomRuntimeFilter> bloomFilters)
+    {
+        this.bloomFilters = ImmutableListMultimap.<VariableReferenceExpression, BloomRuntimeFilter>builder()
+                .putAll(this.bloomFilters)
+                .putAll(Multimaps.forMap(bloomFilters))
+                .build();
+    }
 }
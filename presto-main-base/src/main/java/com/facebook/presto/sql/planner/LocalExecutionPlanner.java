@@ -27,6 +27,7 @@ import com.facebook.presto.common.function.SqlFunctionProperties;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeSignature;
+import com.facebook.presto.cost.PlanNodeStatsEstimate;
 import com.facebook.presto.execution.ExplainAnalyzeContext;
 import com.facebook.presto.execution.FragmentResultCacheContext;
 import com.facebook.presto.execution.StageExecutionId;
@@ -54,6 +55,7 @@ import com.facebook.presto.metadata.FunctionAndTypeManager;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.operator.AggregationOperator.AggregationOperatorFactory;
 import com.facebook.presto.operator.AssignUniqueIdOperator;
+import com.facebook.presto.operator.BloomFilterPageFilter;
 import com.facebook.presto.operator.DeleteOperator.DeleteOperatorFactory;
 import com.facebook.presto.operator.DevNullOperator.DevNullOperatorFactory;
 import com.facebook.presto.operator.DriverFactory;
@@ -273,23 +275,29 @@ import java.util.stream.IntStream;
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
 import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationRowsReductionRatioThreshold;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringBloomFilterSizePerDriver;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringRangeRowLimitPerDriver;
 import static com.facebook.presto.SystemSessionProperties.getExchangeCompressionCodec;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageRowCount;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageSize;
+import static com.facebook.presto.SystemSessionProperties.getHashPartitionCount;
 import static com.facebook.presto.SystemSessionProperties.getIndexLoaderTimeout;
+import static com.facebook.presto.SystemSessionProperties.getQueryMaxMemoryPerNode;
 import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.getTaskPartitionedWriterCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskWriterCount;
 import static com.facebook.presto.SystemSessionProperties.isAdaptivePartialAggregationEnabled;
+import static com.facebook.presto.SystemSessionProperties.isAggregationHashPresizingEnabled;
+import static com.facebook.presto.SystemSessionProperties.isDistinctSpillingEnabled;
 import static com.facebook.presto.SystemSessionProperties.isEnableDynamicFiltering;
 import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnabled;
 import static com.facebook.presto.SystemSessionProperties.isJoinSpillingEnabled;
 import static com.facebook.presto.SystemSessionProperties.isNativeExecutionEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOptimizeCommonSubExpressions;
 import static com.facebook.presto.SystemSessionProperties.isOptimizeJoinProbeForEmptyBuildRuntimeEnabled;
+import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningColumnarEncodingEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningEnabled;
 import static com.facebook.presto.SystemSessionProperties.isQuickDistinctLimitEnabled;
 import static com.facebook.presto.SystemSessionProperties.isSpillEnabled;
@@ -372,6 +380,10 @@ import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.MoreCollectors.onlyElement;
 import static com.google.common.collect.Range.closedOpen;
+import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -409,6 +421,15 @@ public class LocalExecutionPlanner
     private final boolean tableFinishOperatorMemoryTrackingEnabled;
     private final StandaloneSpillerFactory standaloneSpillerFactory;
     private static final TypeSignature SPHERICAL_GEOGRAPHY_TYPE_SIGNATURE = parseTypeSignature("SphericalGeography");
+    private static final int DEFAULT_EXPECTED_GROUPS = 10_000;
+    // bounds the memory allocated upfront when the estimate is off
+    private static final int MAX_PRESIZED_EXPECTED_GROUPS = 1_000_000;
+    // upper bound of the hash table bytes per presized group: a slot of a group id and a long, at most two slots per group after
+    // rounding the capacity up to a power of two, plus the group's value or address
+    private static final int PRESIZED_BYTES_PER_GROUP = 40;
+    // the presized hash tables of all drivers of an aggregation take at most this fraction of the per node query memory limit,
+    // since the memory is allocated before the operator reserves it
+    private static final double MAX_PRESIZED_MEMORY_FRACTION = 0.1;
 
     @Inject
     public LocalExecutionPlanner(
@@ -571,7 +592,7 @@ public class LocalExecutionPlanner
         }
 
         if (isOptimizedRepartitioningEnabled(taskContext.getSession())) {
-            return new OptimizedPartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize);
+            return new OptimizedPartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize, isOptimizedRepartitioningColumnarEncodingEnabled(taskContext.getSession()));
         }
         else {
             return new PartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize);
@@ -1423,7 +1444,9 @@ public class LocalExecutionPlanner
                     node.getLimit(),
                     hashChannel,
                     joinCompiler,
-                    node.getTimeoutMillis());
+                    node.getTimeoutMillis(),
+                    !isNativeExecutionEnabled(session) && isDistinctSpillingEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
 
@@ -1505,7 +1528,15 @@ public class LocalExecutionPlanner
 
             List<Integer> channels = getChannelsForVariables(node.getDistinctVariables(), source.getLayout());
             Optional<Integer> hashChannel = node.getHashVariable().map(variableChannelGetter(source));
-            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(context.getNextOperatorId(), node.getId(), source.getTypes(), channels, hashChannel, joinCompiler);
+            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    source.getTypes(),
+                    channels,
+                    hashChannel,
+                    joinCompiler,
+                    !isNativeExecutionEnabled(session) && isDistinctSpillingEnabled(session),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, makeLayout(node), context, source);
         }
 
@@ -1621,6 +1652,7 @@ public class LocalExecutionPlanner
 
             Optional<List<DynamicFilterPlaceholder>> dynamicFilters = extractDynamicFilterResult.map(DynamicFilterExtractResult::getDynamicConjuncts);
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier = Optional.empty();
+            Optional<Supplier<BloomFilterPageFilter>> bloomFilterSupplier = Optional.empty();
             if (dynamicFilters.isPresent() && !dynamicFilters.get().isEmpty() && sourceNode instanceof TableScanNode) {
                 TableScanNode tableScanNode = (TableScanNode) sourceNode;
                 LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
@@ -1628,6 +1660,10 @@ public class LocalExecutionPlanner
                     TupleDomain<VariableReferenceExpression> predicate = collector.getPredicate();
                     return predicate.transform(tableScanNode.getAssignments()::get);
                 });
+                if (isBloomFilterEnabled(session)) {
+                    Map<VariableReferenceExpression, Integer> scanLayout = ImmutableMap.copyOf(sourceLayout);
+                    bloomFilterSupplier = Optional.of(() -> BloomFilterPageFilter.create(collector.getBloomFilters(), scanLayout));
+                }
             }
 
             // compiler uses inputs instead of variables, so rewrite the expressions first
@@ -1671,6 +1707,7 @@ public class LocalExecutionPlanner
                             columns,
                             projections.stream().map(RowExpression::getType).collect(toImmutableList()),
                             dynamicFilterSupplier,
+                            bloomFilterSupplier,
                             getFilterAndProjectMinOutputPageSize(session),
                             getFilterAndProjectMinOutputPageRowCount(session));
 
@@ -2599,7 +2636,14 @@ public class LocalExecutionPlanner
                     filterBuildChannels,
                     getDynamicFilteringMaxPerDriverRowCount(context.getSession()),
                     getDynamicFilteringMaxPerDriverSize(context.getSession()),
-                    getDynamicFilteringRangeRowLimitPerDriver(context.getSession()));
+                    getDynamicFilteringRangeRowLimitPerDriver(context.getSession()),
+                    isBloomFilterEnabled(context.getSession()) ? Optional.of(dynamicFilter.getRuntimeFilterConsumer()) : Optional.empty(),
+                    getDynamicFilteringBloomFilterSizePerDriver(context.getSession()));
+        }
+
+        private boolean isBloomFilterEnabled(Session session)
+        {
+            return getDynamicFilteringBloomFilterSizePerDriver(session).toBytes() > 0;
         }
 
         private Optional<LocalDynamicFilter> createDynamicFilter(PhysicalOperation buildSource, AbstractJoinNode node, LocalExecutionPlanContext context, int partitionCount)
@@ -2620,6 +2664,9 @@ public class LocalExecutionPlanner
                         // Intersect dynamic filters' predicates when they become ready,
                         // in order to support multiple join nodes in the same plan fragment.
                         addSuccessCallback(filter.getResultFuture(), collector::intersect);
+                        if (isBloomFilterEnabled(context.getSession())) {
+                            addSuccessCallback(filter.getBloomFilterResultFuture(), collector::addBloomFilters);
+                        }
                         return filter;
                     });
         }
@@ -2758,6 +2805,11 @@ public class LocalExecutionPlanner
             Optional<Integer> buildHashChannel = node.getFilteringSourceHashVariable().map(variableChannelGetter(buildSource));
             Optional<Integer> probeHashChannel = node.getSourceHashVariable().map(variableChannelGetter(probeSource));
 
+            // the spilled set is probed in steps which all probe operators take together, so the number of probe operators must be known up front
+            boolean spillEnabled = isSpillEnabled(context.getSession())
+                    && isJoinSpillingEnabled(context.getSession())
+                    && buildSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION;
+
             SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
                     buildContext.getNextOperatorId(),
                     node.getId(),
@@ -2765,7 +2817,9 @@ public class LocalExecutionPlanner
                     buildChannel,
                     buildHashChannel,
                     10_000,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    partitioningSpillerFactory);
 
             ImmutableList.Builder<OperatorFactory> factoriesBuilder = ImmutableList.builder();
             factoriesBuilder.addAll(buildSource.getOperatorFactories());
@@ -2792,7 +2846,14 @@ public class LocalExecutionPlanner
                     .put(node.getSemiJoinOutput(), probeSource.getLayout().size())
                     .build();
 
-            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(context.getNextOperatorId(), node.getId(), setProvider, probeSource.getTypes(), probeChannel, probeHashChannel);
+            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    setProvider,
+                    probeSource.getTypes(),
+                    probeChannel,
+                    probeHashChannel,
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, outputMappings, context, probeSource);
         }
 
@@ -3564,12 +3625,35 @@ public class LocalExecutionPlanner
                     context,
                     0,
                     mappings,
-                    10_000,
+                    getExpectedGroups(node, context),
                     Optional.of(maxPartialAggregationMemorySize),
                     node.getStep().isOutputPartial());
             return new PhysicalOperation(operatorFactory, mappings.build(), context, source);
         }
 
+        private int getExpectedGroups(AggregationNode node, LocalExecutionPlanContext context)
+        {
+            // partial aggregations are flushed when they reach their memory limit, so the total number of groups does not matter
+            if (!isAggregationHashPresizingEnabled(session) || node.getStep().isOutputPartial()) {
+                return DEFAULT_EXPECTED_GROUPS;
+            }
+
+            double outputRowCount = fragment.getStatsAndCosts()
+                    .map(statsAndCosts -> statsAndCosts.getStats().get(node.getId()))
+                    .map(PlanNodeStatsEstimate::getOutputRowCount)
+                    .orElse(NaN);
+            if (isNaN(outputRowCount)) {
+                return DEFAULT_EXPECTED_GROUPS;
+            }
+
+            // the groups are spread over the tasks of the stage and the drivers of each task
+            int taskCount = fragment.getPartitioning().isSingleNode() ? 1 : getHashPartitionCount(session);
+            int driverCount = context.getDriverInstanceCount().orElse(getTaskConcurrency(session));
+            double groupsPerDriver = outputRowCount / taskCount / driverCount;
+            double reservableGroupsPerDriver = getQueryMaxMemoryPerNode(session).toBytes() * MAX_PRESIZED_MEMORY_FRACTION / driverCount / PRESIZED_BYTES_PER_GROUP;
+            return (int) max(DEFAULT_EXPECTED_GROUPS, min(groupsPerDriver, min(reservableGroupsPerDriver, MAX_PRESIZED_EXPECTED_GROUPS)));
+        }
+
         private OperatorFactory createHashAggregationOperatorFactory(
                 PlanNodeId planNodeId,
                 Map<VariableReferenceExpression, Aggregation> aggregations,
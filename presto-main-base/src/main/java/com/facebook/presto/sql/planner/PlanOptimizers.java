@@ -1214,7 +1214,7 @@ public class PlanOptimizers
                 statsCalculator,
                 costCalculator,
                 ImmutableSet.of(
-                        new AddIntermediateAggregations(),
+                        new AddIntermediateAggregations(metadata.getFunctionAndTypeManager()),
                         new RemoveRedundantIdentityProjections())));
 
         builder.add(
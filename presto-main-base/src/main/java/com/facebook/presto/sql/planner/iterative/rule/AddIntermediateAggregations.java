@@ -14,15 +14,25 @@
 package com.facebook.presto.sql.planner.iterative.rule;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.common.type.FixedWidthType;
+import com.facebook.presto.common.type.MapType;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.cost.PlanNodeStatsEstimate;
+import com.facebook.presto.cost.StatsProvider;
 import com.facebook.presto.matching.Captures;
 import com.facebook.presto.matching.Pattern;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.operator.aggregation.ApproximateSetAggregation;
+import com.facebook.presto.operator.aggregation.DefaultApproximateCountDistinctAggregation;
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.plan.AggregationNode;
 import com.facebook.presto.spi.plan.AggregationNode.Aggregation;
 import com.facebook.presto.spi.plan.PlanNode;
 import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
 import com.facebook.presto.spi.plan.ProjectNode;
 import com.facebook.presto.spi.relation.CallExpression;
+import com.facebook.presto.spi.relation.ConstantExpression;
 import com.facebook.presto.spi.relation.RowExpression;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
 import com.facebook.presto.sql.planner.TypeProvider;
@@ -31,18 +41,27 @@ import com.facebook.presto.sql.planner.iterative.Rule;
 import com.facebook.presto.sql.planner.plan.ExchangeNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+import static com.facebook.presto.SystemSessionProperties.getIntermediateAggregationLargeStateSize;
 import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.isEnableIntermediateAggregations;
+import static com.facebook.presto.SystemSessionProperties.isEnableIntermediateAggregationsForLargeStates;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.StandardTypes.HYPER_LOG_LOG;
 import static com.facebook.presto.matching.Pattern.empty;
+import static com.facebook.presto.operator.aggregation.HyperLogLogUtils.standardErrorToBuckets;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.FINAL;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.INTERMEDIATE;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
 import static com.facebook.presto.sql.planner.optimizations.AggregationNodeUtils.extractAggregationUniqueVariables;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_STREAMING;
+import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.GATHER;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.gatheringExchange;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.roundRobinExchange;
 import static com.facebook.presto.sql.planner.plan.Patterns.Aggregation.groupingColumns;
@@ -51,6 +70,9 @@ import static com.facebook.presto.sql.planner.plan.Patterns.aggregation;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.MoreCollectors.onlyElement;
+import static java.lang.Double.NaN;
+import static java.lang.Double.isNaN;
+import static java.util.Objects.requireNonNull;
 
 /**
  * Adds INTERMEDIATE aggregations between an un-grouped FINAL aggregation and its preceding
@@ -74,6 +96,27 @@ import static com.google.common.collect.MoreCollectors.onlyElement;
  *               - Aggregation (PARTIAL)
  * </pre>
  * <p>
+ * When {@code enable_intermediate_aggregations_for_large_states} is set, the rule also applies to
+ * aggregations whose intermediate states are estimated to be at least
+ * {@code intermediate_aggregation_large_state_size} per row, even if {@code enable_intermediate_aggregations}
+ * is not set. For those, the
+ * states of all the tasks are first merged in parallel by an additional distributed stage, so that
+ * the FINAL aggregation only combines one state per task of that stage:
+ * <pre>
+ * - Aggregation (FINAL)
+ *   - LocalExchange (GATHER)
+ *     - Aggregation (INTERMEDIATE)
+ *       - LocalExchange (ARBITRARY)
+ *         - RemoteExchange (GATHER)
+ *           - Aggregation (INTERMEDIATE)
+ *             - LocalExchange (GATHER)
+ *               - Aggregation (INTERMEDIATE)
+ *                 - LocalExchange (ARBITRARY)
+ *                   - RemoteExchange (ARBITRARY)
+ *                     - Aggregation (INTERMEDIATE)
+ *                       - LocalExchange (GATHER)
+ *                         - Aggregation (PARTIAL)
+ * </pre>
  */
 public class AddIntermediateAggregations
         implements Rule<AggregationNode>
@@ -85,6 +128,22 @@ public class AddIntermediateAggregations
             // Only consider aggregations without ORDER BY clause
             .matching(node -> !node.hasOrderings());
 
+    // default accuracy of approx_percentile
+    private static final double DEFAULT_PERCENTILE_ACCURACY = 0.01;
+    // a serialized quantile digest node holds its flags, its level, a long value and a double count
+    private static final int QUANTILE_DIGEST_NODE_SIZE = 18;
+    // the compression factor of a quantile digest is at most the number of levels of a 64-bit value divided by the accuracy
+    private static final int QUANTILE_DIGEST_MAX_LEVELS = 64;
+    // a dense HyperLogLog holds 4 bits per bucket and a few bytes of header
+    private static final int HYPER_LOG_LOG_HEADER_SIZE = 5;
+
+    private final FunctionAndTypeManager functionAndTypeManager;
+
+    public AddIntermediateAggregations(FunctionAndTypeManager functionAndTypeManager)
+    {
+        this.functionAndTypeManager = requireNonNull(functionAndTypeManager, "functionAndTypeManager is null");
+    }
+
     @Override
     public Pattern<AggregationNode> getPattern()
     {
@@ -94,7 +153,7 @@ public class AddIntermediateAggregations
     @Override
     public boolean isEnabled(Session session)
     {
-        return isEnableIntermediateAggregations(session);
+        return isEnableIntermediateAggregations(session) || isEnableIntermediateAggregationsForLargeStates(session);
     }
 
     @Override
@@ -105,6 +164,11 @@ public class AddIntermediateAggregations
         Session session = context.getSession();
         TypeProvider types = TypeProvider.viewOf(context.getVariableAllocator().getVariables());
 
+        boolean largeStates = isEnableIntermediateAggregationsForLargeStates(session) && hasLargeIntermediateStates(aggregation, context);
+        if (!isEnableIntermediateAggregations(session) && !largeStates) {
+            return Result.empty();
+        }
+
         Optional<PlanNode> rewrittenSource = recurseToPartial(lookup.resolve(aggregation.getSource()), lookup, idAllocator, types);
 
         if (!rewrittenSource.isPresent()) {
@@ -113,6 +177,10 @@ public class AddIntermediateAggregations
 
         PlanNode source = rewrittenSource.get();
 
+        if (largeStates) {
+            source = addDistributedIntermediate(aggregation, source, idAllocator, session, types);
+        }
+
         if (getTaskConcurrency(session) > 1) {
             Map<VariableReferenceExpression, Aggregation> variableToAggregations = inputsAsOutputs(aggregation.getAggregations(), types);
 
@@ -120,24 +188,217 @@ public class AddIntermediateAggregations
                 return Result.empty();
             }
 
-            source = roundRobinExchange(idAllocator.getNextId(), LOCAL, source);
-            source = new AggregationNode(
-                    aggregation.getSourceLocation(),
-                    idAllocator.getNextId(),
-                    source,
-                    variableToAggregations,
-                    aggregation.getGroupingSets(),
-                    aggregation.getPreGroupedVariables(),
-                    INTERMEDIATE,
-                    aggregation.getHashVariable(),
-                    aggregation.getGroupIdVariable(),
-                    aggregation.getAggregationId());
-            source = gatheringExchange(idAllocator.getNextId(), LOCAL, source);
+            source = addParallelIntermediate(aggregation, variableToAggregations, source, idAllocator);
         }
 
         return Result.ofPlanNode(aggregation.replaceChildren(ImmutableList.of(source)));
     }
 
+    /**
+     * Intermediate states are considered large if their estimated size per row reaches the configured
+     * threshold. The size is estimated from the intermediate type of the aggregation function:
+     * <ul>
+     * <li>states of a fixed width type have that width</li>
+     * <li>the sketches of approx_percentile, approx_set, approx_distinct and merge of HyperLogLogs are sized
+     * from the accuracy or maximum standard error of the PARTIAL aggregation, since the intermediate values
+     * they exchange have no statistics</li>
+     * <li>states of other types use the size estimate of the intermediate values, if there is one</li>
+     * <li>otherwise, states which collect the input values (arrays and maps, e.g. the states of array_agg,
+     * map_agg or set_agg) are assumed to hold a value for each input row of the PARTIAL aggregations</li>
+     * </ul>
+     * States without any size estimate are not considered large.
+     */
+    private boolean hasLargeIntermediateStates(AggregationNode aggregation, Context context)
+    {
+        StatsProvider statsProvider = context.getStatsProvider();
+        PlanNodeStatsEstimate sourceStats = statsProvider.getStats(aggregation.getSource());
+        Optional<AggregationNode> partial = findPartial(context.getLookup().resolve(aggregation.getSource()), context.getLookup());
+        double partialInputRowCount = partial
+                .map(node -> statsProvider.getStats(node.getSource()).getOutputRowCount())
+                .orElse(NaN);
+        double stateSize = 0;
+        for (Aggregation value : aggregation.getAggregations().values()) {
+            Type intermediateType = functionAndTypeManager.getAggregateFunctionImplementation(value.getFunctionHandle()).getIntermediateType();
+            if (intermediateType instanceof FixedWidthType) {
+                stateSize += ((FixedWidthType) intermediateType).getFixedSize();
+                continue;
+            }
+            double averageRowSize = getSketchSize(value, partial, context.getLookup());
+            if (!isNaN(averageRowSize)) {
+                stateSize += averageRowSize;
+                continue;
+            }
+            if (!value.getArguments().isEmpty() && value.getArguments().get(0) instanceof VariableReferenceExpression) {
+                averageRowSize = sourceStats.getVariableStatistics((VariableReferenceExpression) value.getArguments().get(0)).getAverageRowSize();
+            }
+            if (isNaN(averageRowSize) && (intermediateType instanceof ArrayType || intermediateType instanceof MapType)) {
+                averageRowSize = partialInputRowCount * getMinimumValueSize(intermediateType);
+            }
+            if (!isNaN(averageRowSize)) {
+                stateSize += averageRowSize;
+            }
+        }
+        return stateSize >= getIntermediateAggregationLargeStateSize(context.getSession()).toBytes();
+    }
+
+    /**
+     * Returns an upper bound of the serialized size of the sketch kept by an approximate aggregation, or NaN if the
+     * aggregation does not keep a known sketch. The accuracy is taken from the arguments of the matching PARTIAL
+     * aggregation when it is a constant, and is the function's default otherwise.
+     */
+    private double getSketchSize(Aggregation aggregation, Optional<AggregationNode> partial, Lookup lookup)
+    {
+        String name = functionAndTypeManager.getFunctionMetadata(aggregation.getFunctionHandle()).getName().getObjectName();
+        List<RowExpression> arguments = findPartialArguments(aggregation, partial);
+        switch (name) {
+            case "approx_percentile": {
+                // the accuracy follows the value, the optional bigint weight and the percentile
+                boolean hasWeight = arguments.size() > 2 && arguments.get(1).getType().equals(BIGINT);
+                int accuracyIndex = hasWeight ? 3 : 2;
+                double accuracy = getConstantDouble(arguments, accuracyIndex, partial, lookup)
+                        .filter(value -> value > 0 && value < 1)
+                        .orElse(DEFAULT_PERCENTILE_ACCURACY);
+                return QUANTILE_DIGEST_MAX_LEVELS / accuracy * QUANTILE_DIGEST_NODE_SIZE;
+            }
+            case "approx_set":
+                return getHyperLogLogSize(getConstantDouble(arguments, 1, partial, lookup).orElse(ApproximateSetAggregation.DEFAULT_STANDARD_ERROR));
+            case "approx_distinct":
+                return getHyperLogLogSize(getConstantDouble(arguments, 1, partial, lookup).orElse(DefaultApproximateCountDistinctAggregation.DEFAULT_STANDARD_ERROR));
+            case "merge":
+                // the error of merged HyperLogLogs is not known, assume they were built by approx_set
+                if (aggregation.getCall().getType().getTypeSignature().getBase().equals(HYPER_LOG_LOG)) {
+                    return getHyperLogLogSize(ApproximateSetAggregation.DEFAULT_STANDARD_ERROR);
+                }
+                return NaN;
+            default:
+                return NaN;
+        }
+    }
+
+    private static double getHyperLogLogSize(double maxStandardError)
+    {
+        try {
+            return standardErrorToBuckets(maxStandardError) / 2 + HYPER_LOG_LOG_HEADER_SIZE;
+        }
+        catch (PrestoException e) {
+            // an invalid standard error fails the query when the aggregation runs
+            return NaN;
+        }
+    }
+
+    /**
+     * Returns the arguments of the PARTIAL aggregation producing the intermediate state consumed by the given aggregation
+     */
+    private static List<RowExpression> findPartialArguments(Aggregation aggregation, Optional<AggregationNode> partial)
+    {
+        if (!partial.isPresent() || aggregation.getArguments().size() != 1 || !(aggregation.getArguments().get(0) instanceof VariableReferenceExpression)) {
+            return ImmutableList.of();
+        }
+        Aggregation partialAggregation = partial.get().getAggregations().get((VariableReferenceExpression) aggregation.getArguments().get(0));
+        if (partialAggregation == null || !partialAggregation.getFunctionHandle().equals(aggregation.getFunctionHandle())) {
+            return ImmutableList.of();
+        }
+        return partialAggregation.getArguments();
+    }
+
+    private static Optional<Double> getConstantDouble(List<RowExpression> arguments, int index, Optional<AggregationNode> partial, Lookup lookup)
+    {
+        if (index >= arguments.size()) {
+            return Optional.empty();
+        }
+        RowExpression argument = arguments.get(index);
+        if (argument instanceof VariableReferenceExpression && partial.isPresent()) {
+            // constant arguments are usually projected below the PARTIAL aggregation
+            PlanNode source = lookup.resolve(partial.get().getSource());
+            if (source instanceof ProjectNode) {
+                argument = ((ProjectNode) source).getAssignments().getMap().getOrDefault(argument, argument);
+            }
+        }
+        if (argument instanceof ConstantExpression && ((ConstantExpression) argument).getValue() instanceof Double) {
+            return Optional.of((Double) ((ConstantExpression) argument).getValue());
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<AggregationNode> findPartial(PlanNode node, Lookup lookup)
+    {
+        if (node instanceof AggregationNode && ((AggregationNode) node).getStep() == PARTIAL) {
+            return Optional.of((AggregationNode) node);
+        }
+        if ((node instanceof ExchangeNode || node instanceof ProjectNode) && node.getSources().size() == 1) {
+            return findPartial(lookup.resolve(node.getSources().get(0)), lookup);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns a lower bound of the size of an element of an array or an entry of a map
+     */
+    private static long getMinimumValueSize(Type type)
+    {
+        long size = 0;
+        for (Type valueType : type.getTypeParameters()) {
+            size += valueType instanceof FixedWidthType ? ((FixedWidthType) valueType).getFixedSize() : 1;
+        }
+        return size;
+    }
+
+    /**
+     * Replace the source of the remote GATHER exchange feeding the FINAL aggregation with a round-robin
+     * remote exchange into a distributed stage that merges the states with INTERMEDIATE aggregations.
+     */
+    private static PlanNode addDistributedIntermediate(AggregationNode aggregation, PlanNode source, PlanNodeIdAllocator idAllocator, Session session, TypeProvider types)
+    {
+        if (!(source instanceof ExchangeNode)) {
+            return source;
+        }
+        ExchangeNode exchange = (ExchangeNode) source;
+        if (exchange.getScope() != REMOTE_STREAMING || exchange.getType() != GATHER || exchange.getSources().size() != 1 || exchange.getOrderingScheme().isPresent()) {
+            return source;
+        }
+
+        Map<VariableReferenceExpression, Aggregation> variableToAggregations = inputsAsOutputs(aggregation.getAggregations(), types);
+        if (variableToAggregations.isEmpty()
+                || !exchange.getInputs().get(0).equals(exchange.getOutputVariables())
+                || !ImmutableSet.copyOf(exchange.getOutputVariables()).equals(variableToAggregations.keySet())) {
+            return source;
+        }
+
+        PlanNode merge = roundRobinExchange(idAllocator.getNextId(), REMOTE_STREAMING, exchange.getSources().get(0));
+        if (getTaskConcurrency(session) > 1) {
+            merge = addParallelIntermediate(aggregation, variableToAggregations, merge, idAllocator);
+        }
+        merge = new AggregationNode(
+                aggregation.getSourceLocation(),
+                idAllocator.getNextId(),
+                merge,
+                variableToAggregations,
+                aggregation.getGroupingSets(),
+                aggregation.getPreGroupedVariables(),
+                INTERMEDIATE,
+                aggregation.getHashVariable(),
+                aggregation.getGroupIdVariable(),
+                aggregation.getAggregationId());
+        return exchange.replaceChildren(ImmutableList.of(merge));
+    }
+
+    private static PlanNode addParallelIntermediate(AggregationNode aggregation, Map<VariableReferenceExpression, Aggregation> variableToAggregations, PlanNode source, PlanNodeIdAllocator idAllocator)
+    {
+        source = roundRobinExchange(idAllocator.getNextId(), LOCAL, source);
+        source = new AggregationNode(
+                aggregation.getSourceLocation(),
+                idAllocator.getNextId(),
+                source,
+                variableToAggregations,
+                aggregation.getGroupingSets(),
+                aggregation.getPreGroupedVariables(),
+                INTERMEDIATE,
+                aggregation.getHashVariable(),
+                aggregation.getGroupIdVariable(),
+                aggregation.getAggregationId());
+        return gatheringExchange(idAllocator.getNextId(), LOCAL, source);
+    }
+
     /**
      * Recurse through a series of preceding ExchangeNodes and ProjectNodes to find the preceding PARTIAL aggregation
      */
@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.util;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.nio.MappedByteBuffer;
+
+import static java.util.Objects.requireNonNull;
+
+public final class UnsafeAccess
+{
+    private static final Unsafe unsafe;
+
+    static {
+        try {
+            // fetch theUnsafe object
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = (Unsafe) field.get(null);
+            if (unsafe == null) {
+                throw new RuntimeException("Unsafe access not available");
+            }
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private UnsafeAccess() {}
+
+    public static Unsafe getUnsafe()
+    {
+        return unsafe;
+    }
+
+    /**
+     * Unmaps the buffer without waiting for it to be garbage collected. The buffer, and any
+     * view of it, must not be accessed afterwards.
+     */
+    public static void unmap(MappedByteBuffer buffer)
+    {
+        unsafe.invokeCleaner(requireNonNull(buffer, "buffer is null"));
+    }
+}
@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.cost;
 
+import com.facebook.airlift.units.Duration;
 import com.facebook.presto.Session;
 import com.facebook.presto.common.plan.PlanCanonicalizationStrategy;
 import com.google.common.collect.ImmutableMap;
@@ -27,6 +28,8 @@ import static com.facebook.airlift.configuration.testing.ConfigAssertions.record
 import static com.facebook.presto.SystemSessionProperties.HISTORY_BASED_OPTIMIZATION_PLAN_CANONICALIZATION_STRATEGY;
 import static com.facebook.presto.cost.HistoryBasedPlanStatisticsManager.historyBasedPlanCanonicalizationStrategyList;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 
 public class TestHistoryBasedOptimizationConfig
@@ -36,7 +39,11 @@ public class TestHistoryBasedOptimizationConfig
     {
         assertRecordedDefaults(recordDefaults(HistoryBasedOptimizationConfig.class)
                 .setMaxLastRunsHistory(10)
-                .setHistoryMatchingThreshold(0.1));
+                .setHistoryMatchingThreshold(0.1)
+                .setLocalStoreDirectory(null)
+                .setLocalStoreFlushInterval(new Duration(1, SECONDS))
+                .setLocalStoreMaxEntries(1_000_000)
+                .setLocalStoreEntryTtl(new Duration(30, DAYS)));
     }
 
     @Test
@@ -45,11 +52,19 @@ public class TestHistoryBasedOptimizationConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("hbo.max-last-runs-history", "50")
                 .put("hbo.history-matching-threshold", "0.2")
+                .put("hbo.local-store.directory", "/var/presto/hbo")
+                .put("hbo.local-store.flush-interval", "10s")
+                .put("hbo.local-store.max-entries", "1000")
+                .put("hbo.local-store.entry-ttl", "7d")
                 .build();
 
         HistoryBasedOptimizationConfig expected = new HistoryBasedOptimizationConfig()
                 .setMaxLastRunsHistory(50)
-                .setHistoryMatchingThreshold(0.2);
+                .setHistoryMatchingThreshold(0.2)
+                .setLocalStoreDirectory("/var/presto/hbo")
+                .setLocalStoreFlushInterval(new Duration(10, SECONDS))
+                .setLocalStoreMaxEntries(1000)
+                .setLocalStoreEntryTtl(new Duration(7, DAYS));
 
         assertFullMapping(properties, expected);
     }
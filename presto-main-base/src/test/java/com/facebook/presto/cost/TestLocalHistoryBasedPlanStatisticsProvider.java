@@ -0,0 +1,302 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.cost;
+
+import com.facebook.airlift.units.Duration;
+import com.facebook.presto.spi.QueryId;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.plan.PlanNodeWithHash;
+import com.facebook.presto.spi.plan.ValuesNode;
+import com.facebook.presto.spi.statistics.Estimate;
+import com.facebook.presto.spi.statistics.HistoricalPlanStatistics;
+import com.facebook.presto.spi.statistics.HistoricalPlanStatisticsEntry;
+import com.facebook.presto.spi.statistics.HistoricalPlanStatisticsEntryInfo;
+import com.facebook.presto.spi.statistics.JoinNodeStatistics;
+import com.facebook.presto.spi.statistics.PartialAggregationStatistics;
+import com.facebook.presto.spi.statistics.PlanStatistics;
+import com.facebook.presto.spi.statistics.TableWriterNodeStatistics;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static com.facebook.presto.cost.LocalHistoryBasedPlanStatisticsProvider.LOG_FILE_NAME;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestLocalHistoryBasedPlanStatisticsProvider
+{
+    private static final Duration FLUSH_INTERVAL = new Duration(1, HOURS);
+    private static final Duration ENTRY_TTL = new Duration(1, DAYS);
+    private static final ValuesNode VALUES = new ValuesNode(Optional.empty(), new PlanNodeId("values"), ImmutableList.of(), ImmutableList.of(), Optional.empty());
+
+    private Path directory;
+    private TestingClock clock;
+
+    @BeforeMethod
+    public void setUp()
+            throws IOException
+    {
+        directory = Files.createTempDirectory("hbo-local-store");
+        clock = new TestingClock();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        deleteRecursively(directory, ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testPutAndGet()
+    {
+        LocalHistoryBasedPlanStatisticsProvider provider = createProvider();
+        try {
+            provider.putStats(ImmutableMap.of(planNode("a"), statistics(10), planNode(null), statistics(20)));
+            assertEquals(provider.getStats(ImmutableList.of(planNode("a"), planNode("b"), planNode(null)), 0), ImmutableMap.of(
+                    planNode("a"), statistics(10),
+                    planNode("b"), HistoricalPlanStatistics.empty(),
+                    planNode(null), HistoricalPlanStatistics.empty()));
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testReplay()
+            throws IOException
+    {
+        LocalHistoryBasedPlanStatisticsProvider provider = createProvider();
+        provider.putStats(ImmutableMap.of(planNode("a"), statistics(10), planNode("b"), statistics(20)));
+        provider.flush();
+        provider.putStats(ImmutableMap.of(planNode("a"), statistics(30), planNode("b"), HistoricalPlanStatistics.empty(), planNode("c"), statistics(40)));
+        provider.close();
+
+        provider = createProvider();
+        try {
+            assertEquals(provider.getStats(ImmutableList.of(planNode("a"), planNode("b"), planNode("c")), 0), ImmutableMap.of(
+                    planNode("a"), statistics(30),
+                    planNode("b"), HistoricalPlanStatistics.empty(),
+                    planNode("c"), statistics(40)));
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testTornRecord()
+            throws IOException
+    {
+        LocalHistoryBasedPlanStatisticsProvider provider = createProvider();
+        provider.putStats(ImmutableMap.of(planNode("a"), statistics(10)));
+        provider.flush();
+        long validSize = provider.getLogSizeInBytes();
+        provider.putStats(ImmutableMap.of(planNode("b"), statistics(20)));
+        provider.close();
+
+        // simulate a crash in the middle of the second append
+        Path logFile = directory.resolve(LOG_FILE_NAME);
+        try (FileChannel channel = FileChannel.open(logFile, WRITE)) {
+            channel.truncate(Files.size(logFile) - 3);
+        }
+
+        provider = createProvider();
+        try {
+            assertEquals(provider.getStats(ImmutableList.of(planNode("a"), planNode("b")), 0), ImmutableMap.of(
+                    planNode("a"), statistics(10),
+                    planNode("b"), HistoricalPlanStatistics.empty()));
+            assertEquals(provider.getLogSizeInBytes(), validSize);
+            assertEquals(Files.size(logFile), validSize);
+
+            // the store remains writable after discarding the torn record
+            provider.putStats(ImmutableMap.of(planNode("b"), statistics(50)));
+        }
+        finally {
+            provider.close();
+        }
+
+        provider = createProvider();
+        try {
+            assertEquals(provider.getStats(ImmutableList.of(planNode("b")), 0), ImmutableMap.of(planNode("b"), statistics(50)));
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testCompaction()
+            throws IOException
+    {
+        LocalHistoryBasedPlanStatisticsProvider provider = createProvider();
+        for (int i = 0; i < 100; i++) {
+            provider.putStats(ImmutableMap.of(planNode("a"), statistics(i), planNode("b"), statistics(-i)));
+            provider.flush();
+        }
+        provider.putStats(ImmutableMap.of(planNode("b"), HistoricalPlanStatistics.empty()));
+        provider.flush();
+        long uncompactedSize = provider.getLogSizeInBytes();
+
+        provider.compact();
+        assertTrue(provider.getLogSizeInBytes() < uncompactedSize / 100);
+        assertEquals(Files.size(directory.resolve(LOG_FILE_NAME)), provider.getLogSizeInBytes());
+        provider.close();
+
+        provider = createProvider();
+        try {
+            assertEquals(provider.getStats(ImmutableList.of(planNode("a"), planNode("b")), 0), ImmutableMap.of(
+                    planNode("a"), statistics(99),
+                    planNode("b"), HistoricalPlanStatistics.empty()));
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testEntryTtl()
+            throws IOException
+    {
+        LocalHistoryBasedPlanStatisticsProvider provider = createProvider();
+        provider.putStats(ImmutableMap.of(planNode("a"), statistics(10)));
+        clock.advance(ENTRY_TTL.toMillis() / 2);
+        provider.putStats(ImmutableMap.of(planNode("b"), statistics(20)));
+        clock.advance(ENTRY_TTL.toMillis() / 2);
+        assertEquals(provider.getStats(ImmutableList.of(planNode("a"), planNode("b")), 0), ImmutableMap.of(
+                planNode("a"), HistoricalPlanStatistics.empty(),
+                planNode("b"), statistics(20)));
+
+        // the expired entry is dropped from the log by the compaction of the flush
+        provider.flush();
+        long compactedSize = provider.getLogSizeInBytes();
+        provider.close();
+
+        provider = createProvider();
+        try {
+            assertEquals(provider.getLogSizeInBytes(), compactedSize);
+            assertEquals(provider.getStats(ImmutableList.of(planNode("b")), 0), ImmutableMap.of(planNode("b"), statistics(20)));
+
+            // entries expire on replay as well
+            provider.close();
+            clock.advance(ENTRY_TTL.toMillis());
+            provider = createProvider();
+            assertEquals(provider.getStats(ImmutableList.of(planNode("b")), 0), ImmutableMap.of(planNode("b"), HistoricalPlanStatistics.empty()));
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    @Test
+    public void testMaxEntries()
+            throws IOException
+    {
+        LocalHistoryBasedPlanStatisticsProvider provider = new LocalHistoryBasedPlanStatisticsProvider(directory, FLUSH_INTERVAL, 10, ENTRY_TTL, clock);
+        for (int i = 0; i < 11; i++) {
+            provider.putStats(ImmutableMap.of(planNode("hash" + i), statistics(i)));
+            clock.advance(1);
+        }
+        // updating an entry makes it the most recently updated one
+        provider.putStats(ImmutableMap.of(planNode("hash0"), statistics(100)));
+        provider.flush();
+        provider.close();
+
+        provider = new LocalHistoryBasedPlanStatisticsProvider(directory, FLUSH_INTERVAL, 10, ENTRY_TTL, clock);
+        try {
+            // eviction makes room for new entries, down to 9 entries
+            ImmutableMap.Builder<PlanNodeWithHash, HistoricalPlanStatistics> expected = ImmutableMap.builder();
+            ImmutableList.Builder<PlanNodeWithHash> planNodes = ImmutableList.builder();
+            for (int i = 0; i < 11; i++) {
+                planNodes.add(planNode("hash" + i));
+                expected.put(planNode("hash" + i), i == 0 ? statistics(100) : i < 3 ? HistoricalPlanStatistics.empty() : statistics(i));
+            }
+            assertEquals(provider.getStats(planNodes.build(), 0), expected.build());
+        }
+        finally {
+            provider.close();
+        }
+    }
+
+    private LocalHistoryBasedPlanStatisticsProvider createProvider()
+    {
+        return new LocalHistoryBasedPlanStatisticsProvider(directory, FLUSH_INTERVAL, 1000, ENTRY_TTL, clock);
+    }
+
+    private static PlanNodeWithHash planNode(String hash)
+    {
+        return new PlanNodeWithHash(VALUES, Optional.ofNullable(hash));
+    }
+
+    private static HistoricalPlanStatistics statistics(double rowCount)
+    {
+        return new HistoricalPlanStatistics(ImmutableList.of(new HistoricalPlanStatisticsEntry(
+                new PlanStatistics(Estimate.of(rowCount), Estimate.of(rowCount * 8), 1, JoinNodeStatistics.empty(), TableWriterNodeStatistics.empty(), PartialAggregationStatistics.empty()),
+                ImmutableList.of(new PlanStatistics(Estimate.of(1000), Estimate.unknown(), 1, JoinNodeStatistics.empty(), TableWriterNodeStatistics.empty(), PartialAggregationStatistics.empty())),
+                new HistoricalPlanStatisticsEntryInfo(HistoricalPlanStatisticsEntryInfo.WorkerType.JAVA, QueryId.valueOf("test"), "test"))));
+    }
+
+    private static class TestingClock
+            extends Clock
+    {
+        private long millis = 1_000_000;
+
+        public void advance(long deltaMillis)
+        {
+            millis += deltaMillis;
+        }
+
+        @Override
+        public long millis()
+        {
+            return millis;
+        }
+
+        @Override
+        public Instant instant()
+        {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone()
+        {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone)
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.airlift.json.JsonObjectMapperProvider;
+import com.facebook.airlift.units.DataSize;
+import com.facebook.presto.Session;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.TestingBlockEncodingSerde;
+import com.facebook.presto.common.block.TestingBlockJsonSerde;
+import com.facebook.presto.metadata.AbstractMockMetadata;
+import com.facebook.presto.metadata.FunctionAndTypeManager;
+import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.WarningCollector;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.plan.Assignments;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.facebook.presto.sql.planner.iterative.rule.test.PlanBuilder;
+import com.facebook.presto.testing.LocalQueryRunner;
+import com.facebook.presto.testing.TestingMetadata.TestingColumnHandle;
+import com.facebook.presto.testing.TestingMetadata.TestingTableHandle;
+import com.facebook.presto.testing.TestingTransactionHandle;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.Slices;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static com.facebook.airlift.units.DataSize.Unit.BYTE;
+import static com.facebook.presto.SystemSessionProperties.QUERY_RESULT_CACHING_ENABLED;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestQueryResultCache
+{
+    private static final Session SESSION = testSessionBuilder()
+            .setSystemProperty(QUERY_RESULT_CACHING_ENABLED, "true")
+            .build();
+
+    private final MetadataManager metadataManager = createTestMetadataManager();
+    private final ObjectMapper objectMapper;
+
+    public TestQueryResultCache()
+    {
+        TestingBlockEncodingSerde blockEncodingSerde = new TestingBlockEncodingSerde();
+        this.objectMapper = new JsonObjectMapperProvider().get()
+                .registerModule(new SimpleModule()
+                        .addSerializer(Block.class, new TestingBlockJsonSerde.Serializer(blockEncodingSerde)));
+    }
+
+    @Test
+    public void testGetAndPut()
+    {
+        QueryResultCache cache = createCache(metadataManager, new QueryResultCacheConfig());
+        assertFalse(cache.get("key").isPresent());
+
+        List<SerializedPage> pages = ImmutableList.of(page(10), page(20));
+        assertTrue(cache.put("key", pages));
+        Optional<List<SerializedPage>> cached = cache.get("key");
+        assertTrue(cached.isPresent());
+        assertEquals(cached.get().size(), 2);
+        assertEquals(cached.get().get(1).getSlice(), pages.get(1).getSlice());
+
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 1);
+        assertEquals(cache.getEntryCount(), 1);
+        assertEquals(cache.getStoredBytes(), 30);
+        assertEquals(cache.getServedBytes(), 30);
+        assertTrue(cache.getSizeInBytes() >= 30);
+    }
+
+    @Test
+    public void testSizeLimits()
+    {
+        QueryResultCache cache = createCache(metadataManager, new QueryResultCacheConfig()
+                .setMaxSize(new DataSize(1000, BYTE))
+                .setMaxEntrySize(new DataSize(600, BYTE)));
+
+        assertFalse(cache.put("large", ImmutableList.of(page(601))));
+        assertEquals(cache.getRejected(), 1);
+        assertFalse(cache.get("large").isPresent());
+
+        // the cache can not hold both entries
+        assertTrue(cache.put("first", ImmutableList.of(page(500))));
+        assertTrue(cache.put("second", ImmutableList.of(page(500))));
+        assertEquals(cache.getEntryCount(), 1);
+        assertEquals(cache.getEvictions(), 1);
+        assertTrue(cache.get("second").isPresent());
+        assertTrue(cache.getSizeInBytes() < 1000);
+    }
+
+    @Test
+    public void testPendingResultLimit()
+    {
+        QueryResultCache cache = createCache(metadataManager, new QueryResultCacheConfig()
+                .setMaxPendingSize(new DataSize(1000, BYTE)));
+
+        assertTrue(cache.tryReservePendingResult(600));
+        assertFalse(cache.tryReservePendingResult(600));
+        assertEquals(cache.getPendingSizeInBytes(), 600);
+        assertEquals(cache.getRejected(), 1);
+
+        cache.freePendingResult(600);
+        assertTrue(cache.tryReservePendingResult(1000));
+        assertEquals(cache.getPendingSizeInBytes(), 1000);
+        cache.freePendingResult(1000);
+        assertEquals(cache.getPendingSizeInBytes(), 0);
+    }
+
+    @Test
+    public void testCacheKey()
+    {
+        QueryResultCache cache = createCache(metadataManager, new QueryResultCacheConfig());
+
+        Optional<String> key = cache.getCacheKey(SESSION, plan(p -> p.project(
+                Assignments.of(p.variable("x", DOUBLE), p.rowExpression("1E0")),
+                p.values(p.variable("a")))));
+        assertTrue(key.isPresent());
+        assertEquals(cache.getCacheKey(SESSION, plan(p -> p.project(
+                Assignments.of(p.variable("x", DOUBLE), p.rowExpression("1E0")),
+                p.values(p.variable("a"))))), key);
+
+        // different plan
+        assertNotEquals(cache.getCacheKey(SESSION, plan(p -> p.project(
+                Assignments.of(p.variable("x", DOUBLE), p.rowExpression("2E0")),
+                p.values(p.variable("a"))))), key);
+
+        // different session
+        Session otherSession = Session.builder(SESSION)
+                .setSystemProperty("hash_partition_count", "7")
+                .build();
+        Optional<String> otherKey = cache.getCacheKey(otherSession, plan(p -> p.project(
+                Assignments.of(p.variable("x", DOUBLE), p.rowExpression("1E0")),
+                p.values(p.variable("a")))));
+        assertTrue(otherKey.isPresent());
+        assertNotEquals(otherKey, key);
+
+        // disabled
+        assertFalse(cache.getCacheKey(testSessionBuilder().build(), plan(p -> p.values(p.variable("a")))).isPresent());
+        assertEquals(cache.getBypassed(), 0);
+    }
+
+    @Test
+    public void testNondeterministicQuery()
+    {
+        QueryResultCache cache = createCache(metadataManager, new QueryResultCacheConfig());
+
+        assertFalse(cache.getCacheKey(SESSION, plan(p -> p.project(
+                Assignments.of(p.variable("x", DOUBLE), p.rowExpression("random()")),
+                p.values(p.variable("a"))))).isPresent());
+        assertFalse(cache.getCacheKey(SESSION, plan(p -> p.project(
+                Assignments.of(p.variable("x", DOUBLE), p.rowExpression("cast(to_unixtime(now()) AS double)")),
+                p.values(p.variable("a"))))).isPresent());
+        assertEquals(cache.getBypassed(), 2);
+    }
+
+    @Test
+    public void testTableVersions()
+    {
+        VersionedMetadata metadata = new VersionedMetadata(metadataManager);
+        QueryResultCache cache = createCache(metadata, new QueryResultCacheConfig());
+        TableHandle table = new TableHandle(new ConnectorId("test"), new TestingTableHandle(), TestingTransactionHandle.create(), Optional.empty());
+        Function<PlanBuilder, PlanNode> scan = p -> {
+            VariableReferenceExpression a = p.variable("a", BIGINT);
+            return p.tableScan(table, ImmutableList.of(a), ImmutableMap.of(a, new TestingColumnHandle("a")));
+        };
+
+        // unversioned tables are not cached
+        metadata.version = Optional.empty();
+        assertFalse(cache.getCacheKey(SESSION, plan(scan)).isPresent());
+
+        metadata.version = Optional.of("1");
+        Optional<String> key = cache.getCacheKey(SESSION, plan(scan));
+        assertTrue(key.isPresent());
+        assertEquals(cache.getCacheKey(SESSION, plan(scan)), key);
+
+        metadata.version = Optional.of("2");
+        Optional<String> newKey = cache.getCacheKey(SESSION, plan(scan));
+        assertTrue(newKey.isPresent());
+        assertNotEquals(newKey, key);
+    }
+
+    @Test
+    public void testSeparateTransactions()
+    {
+        try (LocalQueryRunner queryRunner = new LocalQueryRunner(SESSION)) {
+            VersionedMetadata metadata = new VersionedMetadata(queryRunner.getMetadata());
+            metadata.version = Optional.of("1");
+            QueryResultCache cache = createCache(metadata, new QueryResultCacheConfig());
+            // the table handles of system tables hold the id of the transaction
+            String sql = "SELECT count(*) FROM system.runtime.nodes";
+
+            Optional<String> key = queryRunner.inTransaction(session -> cache.getCacheKey(session, queryRunner.createPlan(session, sql, WarningCollector.NOOP).getRoot()));
+            assertTrue(key.isPresent());
+            assertTrue(cache.put(key.get(), ImmutableList.of(page(10))));
+
+            Optional<String> secondKey = queryRunner.inTransaction(session -> cache.getCacheKey(session, queryRunner.createPlan(session, sql, WarningCollector.NOOP).getRoot()));
+            assertEquals(secondKey, key);
+            assertTrue(cache.get(secondKey.get()).isPresent());
+            assertEquals(cache.getHits(), 1);
+        }
+    }
+
+    private QueryResultCache createCache(Metadata metadata, QueryResultCacheConfig config)
+    {
+        return new QueryResultCache(config, metadata, objectMapper);
+    }
+
+    private PlanNode plan(Function<PlanBuilder, PlanNode> source)
+    {
+        PlanBuilder p = new PlanBuilder(SESSION, new PlanNodeIdAllocator(), metadataManager);
+        PlanNode node = source.apply(p);
+        return p.output(ImmutableList.of("column"), ImmutableList.of(node.getOutputVariables().get(0)), node);
+    }
+
+    private static SerializedPage page(int size)
+    {
+        return new SerializedPage(Slices.allocate(size), (byte) 0, 1, size, 0);
+    }
+
+    private static class VersionedMetadata
+            extends AbstractMockMetadata
+    {
+        private final Metadata metadata;
+        private Optional<String> version = Optional.empty();
+
+        public VersionedMetadata(Metadata metadata)
+        {
+            this.metadata = metadata;
+        }
+
+        @Override
+        public FunctionAndTypeManager getFunctionAndTypeManager()
+        {
+            return metadata.getFunctionAndTypeManager();
+        }
+
+        @Override
+        public Optional<String> getTableDataVersion(Session session, TableHandle tableHandle)
+        {
+            return version;
+        }
+    }
+}
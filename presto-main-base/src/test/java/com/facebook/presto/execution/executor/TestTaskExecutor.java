@@ -13,6 +13,8 @@
  */
 package com.facebook.presto.execution.executor;
 
+import com.facebook.airlift.stats.CounterStat;
+import com.facebook.airlift.stats.TimeStat;
 import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.airlift.units.Duration;
 import com.facebook.presto.execution.SplitRunner;
@@ -29,6 +31,7 @@ import org.testng.annotations.Test;
 import java.util.Arrays;
 import java.util.List;
 import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
@@ -42,6 +45,7 @@ import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracki
 import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_CONTRIBUTION_CAP;
 import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_THRESHOLD_SECONDS;
 import static com.google.common.collect.MoreCollectors.onlyElement;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -340,6 +344,135 @@ public class TestTaskExecutor
         }
     }
 
+    @Test(timeOut = 30_000)
+    public void testWorkStealing()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 2);
+        TestingTicker ticker = new TestingTicker();
+        TaskHandle handle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        PrioritizedSplitRunner split0 = createSplitRunner(handle, ticker);
+        PrioritizedSplitRunner split1 = createSplitRunner(handle, ticker);
+
+        // a split stays with the runner which took it last
+        split0.setRunQueue(0);
+        splitQueue.offer(split0);
+        assertEquals(splitQueue.take(0), split0);
+        assertEquals(split0.getRunQueue(), 0);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 0);
+
+        // a runner without waiting splits steals from the other run queues
+        splitQueue.offer(split0);
+        splitQueue.offer(split1);
+        assertEquals(split1.getRunQueue(), -1);
+        assertEquals(splitQueue.size(), 2);
+        assertEquals(splitQueue.take(1), split0);
+        assertEquals(split0.getRunQueue(), 1);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+        splitQueue.take(0);
+        assertEquals(splitQueue.size(), 0);
+
+        // an idle runner is woken up for a split offered to the run queue of a busy runner
+        ExecutorService executor = newSingleThreadExecutor();
+        try {
+            Future<PrioritizedSplitRunner> stolen = executor.submit(() -> splitQueue.take(1));
+            split1.setRunQueue(0);
+            splitQueue.offer(split1);
+            assertEquals(stolen.get(10, SECONDS), split1);
+            assertEquals(splitQueue.getStolenSplits().getTotalCount(), 2);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWorkStealingPrefersOwnRunQueue()
+            throws Exception
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2, 3);
+        TestingTicker ticker = new TestingTicker();
+        TaskHandle level4Handle = new TaskHandle(new TaskId("test", 0, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        level4Handle.addScheduledNanos(SECONDS.toNanos(LEVEL_THRESHOLD_SECONDS[4]));
+        TaskHandle level0Handle = new TaskHandle(new TaskId("test", 1, 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+
+        // runners 0 and 2 hold level 4 work in their own queues
+        PrioritizedSplitRunner level4Split0 = createSplitRunner(level4Handle, ticker);
+        PrioritizedSplitRunner level4Split2 = createSplitRunner(level4Handle, ticker);
+        assertEquals(level4Split0.getPriority().getLevel(), 4);
+        level4Split0.setRunQueue(0);
+        splitQueue.offer(level4Split0);
+        level4Split2.setRunQueue(2);
+        splitQueue.offer(level4Split2);
+        chargeLevel4(splitQueue);
+
+        // a level 0 split is offered to the queue of busy runner 1
+        PrioritizedSplitRunner level0Split = createSplitRunner(level0Handle, ticker);
+        assertEquals(level0Split.getPriority().getLevel(), 0);
+        level0Split.setRunQueue(1);
+        splitQueue.offer(level0Split);
+
+        // both levels are at their target scheduled time, so the runner keeps to its own queue
+        assertEquals(splitQueue.take(0), level4Split0);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 0);
+
+        // level 4 runs until level 0 is behind its target by more than the margin
+        chargeLevel4(splitQueue);
+        chargeLevel4(splitQueue);
+
+        // the next runner steals the level 0 split rather than running its own level 4 split
+        assertEquals(splitQueue.take(2), level0Split);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+        assertEquals(splitQueue.take(2), level4Split2);
+        assertEquals(splitQueue.getStolenSplits().getTotalCount(), 1);
+        assertEquals(splitQueue.size(), 0);
+    }
+
+    private static void chargeLevel4(MultilevelSplitQueue splitQueue)
+    {
+        long scheduledNanos = SECONDS.toNanos(LEVEL_THRESHOLD_SECONDS[4]);
+        splitQueue.updatePriority(new Priority(4, scheduledNanos), SECONDS.toNanos(20), scheduledNanos);
+    }
+
+    @Test(invocationCount = 10, timeOut = 30_000)
+    public void testTasksCompleteWithWorkStealing()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(4, 8, 3, 4, TASK_FAIR, new MultilevelSplitQueue(2, 4), ticker);
+        taskExecutor.start();
+
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+
+            // the jobs only advance while all of them are running at the same time
+            Phaser beginPhaser = new Phaser();
+            Phaser endPhaser = new Phaser();
+            ImmutableList.Builder<TestingJob> jobs = ImmutableList.builder();
+            for (int i = 0; i < 4; i++) {
+                jobs.add(new TestingJob(ticker, new Phaser(), beginPhaser, endPhaser, 10, 0));
+            }
+            for (ListenableFuture<?> future : taskExecutor.enqueueSplits(taskHandle, true, jobs.build())) {
+                future.get(10, SECONDS);
+            }
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
+    private static PrioritizedSplitRunner createSplitRunner(TaskHandle handle, TestingTicker ticker)
+    {
+        return new PrioritizedSplitRunner(
+                handle,
+                new TestingJob(ticker, new Phaser(), new Phaser(), new Phaser(), 1, 0),
+                ticker,
+                new CounterStat(),
+                new CounterStat(),
+                new TimeStat(),
+                new TimeStat());
+    }
+
     @Test
     public void testLevelContributionCap()
     {
@@ -14,14 +14,27 @@
 package com.facebook.presto.execution.scheduler;
 
 import com.facebook.airlift.json.JsonCodec;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.predicate.ValueSet;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.Slice;
 import org.testng.annotations.Test;
 
 import static com.facebook.airlift.json.JsonCodec.jsonCodec;
+import static com.facebook.presto.block.BlockAssertions.createIntsBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.common.type.VarcharType.createVarcharType;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertThrows;
@@ -123,7 +136,123 @@ public class TestRuntimeFilter
     @Test
     public void testUnknownKindRejected()
     {
+        assertThrows(Exception.class, () ->
+                CODEC.fromJson("{\"@kind\":\"histogram\"}"));
+        // a Bloom filter without bits
         assertThrows(Exception.class, () ->
                 CODEC.fromJson("{\"@kind\":\"bloom\"}"));
     }
+
+    @Test
+    public void testBloomNoFalseNegatives()
+    {
+        BloomRuntimeFilter filter = BloomRuntimeFilter.create(4096);
+        assertTrue(filter.isNone());
+        Block values = createLongSequenceBlock(0, 1000);
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            filter.add(BIGINT, values, position);
+        }
+        assertFalse(filter.isNone());
+        assertFalse(filter.isAll());
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            assertTrue(filter.mightContain(BIGINT, values, position));
+        }
+        assertFalse(filter.mightContain(BIGINT, createLongsBlock((Long) null), 0));
+
+        int falsePositives = 0;
+        Block otherValues = createLongSequenceBlock(1000, 11000);
+        for (int position = 0; position < otherValues.getPositionCount(); position++) {
+            if (filter.mightContain(BIGINT, otherValues, position)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testBloomMerge()
+    {
+        BloomRuntimeFilter a = BloomRuntimeFilter.create(1024);
+        a.add(BIGINT, createLongsBlock(1L), 0);
+        BloomRuntimeFilter b = BloomRuntimeFilter.create(1024);
+        b.add(BIGINT, createLongsBlock(2L), 0);
+
+        BloomRuntimeFilter merged = (BloomRuntimeFilter) a.mergeWith(b);
+        assertTrue(merged.mightContain(BIGINT, createLongsBlock(1L), 0));
+        assertTrue(merged.mightContain(BIGINT, createLongsBlock(2L), 0));
+
+        // discrete values are added to the Bloom filter, in both directions
+        DomainRuntimeFilter values = new DomainRuntimeFilter(
+                TupleDomain.withColumnDomains(ImmutableMap.of("k", Domain.multipleValues(BIGINT, ImmutableList.of(3L, 4L)))));
+        BloomRuntimeFilter withValues = (BloomRuntimeFilter) values.mergeWith(a);
+        assertTrue(withValues.mightContain(BIGINT, createLongsBlock(1L), 0));
+        assertTrue(withValues.mightContain(BIGINT, createLongsBlock(3L), 0));
+        assertTrue(withValues.mightContain(BIGINT, createLongsBlock(4L), 0));
+
+        assertEquals(a.mergeWith(new DomainRuntimeFilter(TupleDomain.none())), a);
+        assertTrue(a.mergeWith(new DomainRuntimeFilter(TupleDomain.all())).isAll());
+        // the union with a range cannot be represented
+        DomainRuntimeFilter range = new DomainRuntimeFilter(
+                TupleDomain.withColumnDomains(ImmutableMap.of("k", Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 0L, true, 10L, true)), false))));
+        assertTrue(a.mergeWith(range).isAll());
+
+        assertThrows(IllegalArgumentException.class, () -> a.mergeWith(BloomRuntimeFilter.create(2048)));
+    }
+
+    @Test
+    public void testBloomJsonRoundTrip()
+    {
+        BloomRuntimeFilter original = BloomRuntimeFilter.create(1024);
+        Block values = createLongSequenceBlock(0, 100);
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            original.add(BIGINT, values, position);
+        }
+
+        String json = jsonCodec(BloomRuntimeFilter.class).toJson(original);
+        assertTrue(json.contains("\"@kind\" : \"bloom\""), json);
+        RuntimeFilter decoded = CODEC.fromJson(json);
+
+        assertTrue(decoded instanceof BloomRuntimeFilter);
+        assertEquals(((BloomRuntimeFilter) decoded).toBytes(), original.toBytes());
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            assertTrue(((BloomRuntimeFilter) decoded).mightContain(BIGINT, values, position));
+        }
+        assertTrue(decoded.toTupleDomain("k", BIGINT).isAll());
+    }
+
+    @Test
+    public void testBloomTupleDomainFilter()
+    {
+        BloomRuntimeFilter longs = BloomRuntimeFilter.create(1024);
+        longs.add(BIGINT, createLongsBlock(-5L), 0);
+        longs.add(BIGINT, createLongsBlock(42L), 0);
+        TupleDomainFilter longFilter = longs.toTupleDomainFilter(BIGINT).get();
+        assertTrue(longFilter.testLong(-5));
+        assertTrue(longFilter.testLong(42));
+        assertFalse(longFilter.testNull());
+        assertTrue(longFilter.isDeterministic());
+
+        // the readers decode integers as longs, which must hash as the integer blocks
+        BloomRuntimeFilter ints = BloomRuntimeFilter.create(1024);
+        ints.add(INTEGER, createIntsBlock(-7), 0);
+        assertTrue(ints.toTupleDomainFilter(INTEGER).get().testLong(-7));
+
+        BloomRuntimeFilter strings = BloomRuntimeFilter.create(1024);
+        strings.add(VARCHAR, createStringsBlock("apple"), 0);
+        TupleDomainFilter stringFilter = strings.toTupleDomainFilter(VARCHAR).get();
+        Slice apple = VARCHAR.getSlice(createStringsBlock("xxapple"), 0);
+        assertTrue(stringFilter.testLength(5));
+        assertTrue(stringFilter.testBytes(apple.getBytes(), 2, 5));
+
+        int falsePositives = 0;
+        for (long value = 1000; value < 11000; value++) {
+            if (longFilter.testLong(value)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 100, "false positives: " + falsePositives);
+
+        assertFalse(longs.toTupleDomainFilter(DOUBLE).isPresent());
+        assertFalse(strings.toTupleDomainFilter(createVarcharType(10)).isPresent());
+    }
 }
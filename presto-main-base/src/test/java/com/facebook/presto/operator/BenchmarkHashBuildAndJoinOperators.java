@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.Lifespan;
@@ -53,10 +54,12 @@ import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.units.DataSize.Unit.GIGABYTE;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
-import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.JOIN_BATCH_PROBE_ENABLED;
+import static com.facebook.presto.SystemSessionProperties.OFF_HEAP_JOIN_HASH_ENABLED;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
@@ -96,6 +99,9 @@ public class BenchmarkHashBuildAndJoinOperators
         @Param({"1", "5"})
         protected int buildRowsRepetition = 1;
 
+        @Param({"false", "true"})
+        protected boolean offHeapJoinHash;
+
         protected ExecutorService executor;
         protected ScheduledExecutorService scheduledExecutor;
         protected List<Page> buildPages;
@@ -127,7 +133,13 @@ public class BenchmarkHashBuildAndJoinOperators
 
         public TaskContext createTaskContext()
         {
-            return TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION, new DataSize(2, GIGABYTE));
+            return TestingTaskContext.createTaskContext(executor, scheduledExecutor, createSessionBuilder().build(), new DataSize(2, GIGABYTE));
+        }
+
+        protected Session.SessionBuilder createSessionBuilder()
+        {
+            return testSessionBuilder()
+                    .setSystemProperty(OFF_HEAP_JOIN_HASH_ENABLED, String.valueOf(offHeapJoinHash));
         }
 
         public OptionalInt getHashChannel()
@@ -182,6 +194,9 @@ public class BenchmarkHashBuildAndJoinOperators
         @Param({"bigint", "all"})
         protected String outputColumns = "bigint";
 
+        @Param({"false", "true"})
+        protected boolean batchProbe;
+
         protected List<Page> probePages;
         protected List<Integer> outputChannels;
 
@@ -211,6 +226,13 @@ public class BenchmarkHashBuildAndJoinOperators
             initializeProbePages();
         }
 
+        @Override
+        protected Session.SessionBuilder createSessionBuilder()
+        {
+            return super.createSessionBuilder()
+                    .setSystemProperty(JOIN_BATCH_PROBE_ENABLED, String.valueOf(batchProbe));
+        }
+
         public JoinBridgeManager<PartitionedLookupSourceFactory> getLookupSourceFactory()
         {
             return lookupSourceFactory;
@@ -0,0 +1,96 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LazyBlock;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.facebook.presto.block.BlockAssertions.assertBlockEquals;
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestBloomFilterPageFilter
+{
+    private static final VariableReferenceExpression KEY = new VariableReferenceExpression(Optional.empty(), "key", BIGINT);
+    private static final VariableReferenceExpression OTHER = new VariableReferenceExpression(Optional.empty(), "other", BIGINT);
+
+    @Test
+    public void testFilter()
+    {
+        BloomRuntimeFilter bloomFilter = BloomRuntimeFilter.create(1024);
+        Block buildValues = createLongsBlock(2L, 5L, 7L);
+        for (int position = 0; position < buildValues.getPositionCount(); position++) {
+            bloomFilter.add(BIGINT, buildValues, position);
+        }
+
+        BloomFilterPageFilter filter = BloomFilterPageFilter.create(
+                ImmutableListMultimap.of(KEY, bloomFilter, OTHER, bloomFilter),
+                ImmutableMap.of(KEY, 1));
+        assertFalse(filter.isEmpty());
+
+        Block values = createLongSequenceBlock(100, 110);
+        LazyBlock lazyValues = new LazyBlock(10, block -> block.setBlock(values));
+        Page page = new Page(lazyValues, createLongSequenceBlock(0, 10));
+
+        Page filtered = filter.filter(page);
+        // the Bloom filter has no false negatives, but may have false positives
+        assertTrue(filtered.getPositionCount() >= 3 && filtered.getPositionCount() < 10);
+        assertFalse(lazyValues.isLoaded());
+        for (long key : new long[] {2L, 5L, 7L}) {
+            boolean found = false;
+            for (int position = 0; position < filtered.getPositionCount(); position++) {
+                if (BIGINT.getLong(filtered.getBlock(1), position) == key) {
+                    assertEquals(BIGINT.getLong(filtered.getBlock(0), position), 100 + key);
+                    found = true;
+                }
+            }
+            assertTrue(found, "missing key " + key);
+        }
+    }
+
+    @Test
+    public void testNoFilteredRows()
+    {
+        BloomRuntimeFilter bloomFilter = BloomRuntimeFilter.create(1024);
+        Block values = createLongSequenceBlock(0, 10);
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            bloomFilter.add(BIGINT, values, position);
+        }
+        BloomFilterPageFilter filter = BloomFilterPageFilter.create(ImmutableListMultimap.of(KEY, bloomFilter), ImmutableMap.of(KEY, 0));
+
+        Page page = new Page(values);
+        assertSame(filter.filter(page), page);
+        assertBlockEquals(BIGINT, filter.filter(page).getBlock(0), values);
+    }
+
+    @Test
+    public void testOtherTableScan()
+    {
+        BloomFilterPageFilter filter = BloomFilterPageFilter.create(ImmutableListMultimap.of(OTHER, BloomRuntimeFilter.create(1024)), ImmutableMap.of(KEY, 0));
+        assertTrue(filter.isEmpty());
+    }
+}
@@ -27,8 +27,11 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
@@ -41,11 +44,17 @@ import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.TestMarkDistinctOperator.createPartitioningSpillerFactory;
+import static com.facebook.presto.operator.TestMarkDistinctOperator.runWithMemoryRevoke;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDistinctLimitOperator
@@ -167,4 +176,70 @@ public class TestDistinctLimitOperator
         assertGreaterThan(result.getMaxReservedBytes(), 20L << 20);
         assertEquals(result.getOutput().stream().mapToInt(Page::getPositionCount).sum(), 6_000 * 600);
     }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testSpill(boolean hashEnabled)
+            throws Exception
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 50)
+                .addSequencePage(100, 100)
+                .build();
+
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            // all the distinct values
+            Set<Long> values = runWithSpill(rowPagesBuilder, input, 1_000, spillPath);
+            assertEquals(values.size(), 200);
+            for (long value = 0; value < 200; value++) {
+                assertTrue(values.contains(value));
+            }
+
+            // the values of the first page are produced before the spill
+            values = runWithSpill(rowPagesBuilder, input, 120, spillPath);
+            assertEquals(values.size(), 120);
+            for (long value = 0; value < 100; value++) {
+                assertTrue(values.contains(value));
+            }
+            assertTrue(values.stream().allMatch(value -> value < 200));
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    private Set<Long> runWithSpill(RowPagesBuilder rowPagesBuilder, List<Page> input, long limit, Path spillPath)
+            throws Exception
+    {
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                rowPagesBuilder.getTypes(),
+                Ints.asList(0),
+                limit,
+                rowPagesBuilder.getHashChannel(),
+                joinCompiler,
+                0,
+                true,
+                createPartitioningSpillerFactory(spillPath));
+
+        Set<Long> values = new HashSet<>();
+        int rows = 0;
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            // spill while the distinct rows of the second page are pending
+            for (Page page : runWithMemoryRevoke(operator, input, 2)) {
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    values.add(BIGINT.getLong(page.getBlock(0), position));
+                    rows++;
+                }
+            }
+        }
+        assertEquals(rows, values.size());
+        return values;
+    }
 }
@@ -21,6 +21,9 @@ import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.ValueSet;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
+import com.facebook.presto.execution.scheduler.DomainRuntimeFilter;
+import com.facebook.presto.execution.scheduler.RuntimeFilter;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
@@ -29,9 +32,12 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.IntStream;
@@ -69,6 +75,7 @@ import static io.airlift.slice.Slices.utf8Slice;
 import static java.lang.Float.floatToRawIntBits;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDynamicFilterSourceOperator
@@ -537,4 +544,54 @@ public class TestDynamicFilterSourceOperator
                         new Page(createLongSequenceBlock(0, maxPositionsCount + 1))),
                 ImmutableList.of(TupleDomain.all()));
     }
+
+    @Test
+    public void testCollectBloomFilters()
+    {
+        List<Map<String, RuntimeFilter>> runtimeFilters = new ArrayList<>();
+        OperatorFactory operatorFactory = new DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory(
+                0,
+                new PlanNodeId("PLAN_NODE_ID"),
+                this::consumePredicate,
+                ImmutableList.of(channel(0, BIGINT), channel(1, DOUBLE)),
+                10,
+                new DataSize(10, KILOBYTE),
+                0,
+                Optional.of(runtimeFilters::add),
+                new DataSize(1, KILOBYTE));
+
+        // exceeds the limits of an exact filter
+        verifyPassthrough(createOperator(operatorFactory),
+                ImmutableList.of(BIGINT, DOUBLE),
+                new Page(createLongSequenceBlock(0, 50), createDoubleSequenceBlock(0, 50)),
+                new Page(createLongSequenceBlock(50, 100), createDoubleSequenceBlock(50, 100)));
+        // fits into an exact filter
+        verifyPassthrough(createOperator(operatorFactory),
+                ImmutableList.of(BIGINT, DOUBLE),
+                new Page(createLongsBlock(1L, 1000L), createDoublesBlock(1.0, 2.0)));
+        operatorFactory.noMoreOperators();
+
+        assertEquals(partitions.build(), ImmutableList.of(
+                TupleDomain.all(),
+                TupleDomain.withColumnDomains(ImmutableMap.of(
+                        "0", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 1000L)),
+                        "1", Domain.multipleValues(DOUBLE, ImmutableList.of(1.0, 2.0))))));
+
+        assertEquals(runtimeFilters.size(), 2);
+        BloomRuntimeFilter bloomFilter = (BloomRuntimeFilter) runtimeFilters.get(0).get("0");
+        Block values = createLongSequenceBlock(0, 100);
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            assertTrue(bloomFilter.mightContain(BIGINT, values, position));
+        }
+        // Bloom filters are not collected for doubles
+        assertTrue(runtimeFilters.get(0).get("1").isAll());
+        assertEquals(
+                ((DomainRuntimeFilter) runtimeFilters.get(1).get("0")).getDomain(),
+                TupleDomain.withColumnDomains(ImmutableMap.of("0", Domain.multipleValues(BIGINT, ImmutableList.of(1L, 1000L)))));
+
+        // the union contains the values of both partitions
+        BloomRuntimeFilter merged = (BloomRuntimeFilter) runtimeFilters.get(0).get("0").mergeWith(runtimeFilters.get(1).get("0"));
+        assertTrue(merged.mightContain(BIGINT, createLongsBlock(1000L), 0));
+        assertTrue(merged.mightContain(BIGINT, createLongsBlock(99L), 0));
+    }
 }
@@ -43,6 +43,7 @@ public class TestFileFragmentResultCacheConfig
                 .setMaxInFlightSize(new DataSize(1, GIGABYTE))
                 .setMaxSinglePagesSize(new DataSize(500, MEGABYTE))
                 .setMaxCacheSize(new DataSize(100, GIGABYTE))
+                .setMaxSegmentSize(new DataSize(64, MEGABYTE))
                 .setInputDataStatsEnabled(false));
     }
 
@@ -59,6 +60,7 @@ public class TestFileFragmentResultCacheConfig
                 .put("fragment-result-cache.max-in-flight-size", "2GB")
                 .put("fragment-result-cache.max-single-pages-size", "200MB")
                 .put("fragment-result-cache.max-cache-size", "200GB")
+                .put("fragment-result-cache.max-segment-size", "16MB")
                 .put("fragment-result-cache.input-data-stats-enabled", "true")
                 .build();
 
@@ -71,6 +73,7 @@ public class TestFileFragmentResultCacheConfig
                 .setMaxInFlightSize(new DataSize(2, GIGABYTE))
                 .setMaxSinglePagesSize(new DataSize(200, MEGABYTE))
                 .setMaxCacheSize(new DataSize(200, GIGABYTE))
+                .setMaxSegmentSize(new DataSize(16, MEGABYTE))
                 .setInputDataStatsEnabled(true);
 
         assertFullMapping(properties, expected);
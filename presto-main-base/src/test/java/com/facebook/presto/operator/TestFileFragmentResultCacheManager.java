@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.airlift.units.DataSize;
+import com.facebook.airlift.units.Duration;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.TestingBlockEncodingSerde;
 import com.facebook.presto.metadata.Split;
@@ -23,6 +24,7 @@ import com.facebook.presto.spi.HostAddress;
 import com.facebook.presto.spi.NodeProvider;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
 import com.facebook.presto.spi.schedule.NodeSelectionStrategy;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.Test;
@@ -31,6 +33,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Iterator;
 import java.util.List;
@@ -41,12 +44,16 @@ import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.spi.schedule.NodeSelectionStrategy.NO_PREFERENCE;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.toIntExact;
 import static java.nio.file.Files.createTempDirectory;
+import static java.nio.file.StandardOpenOption.APPEND;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNull;
@@ -121,7 +128,7 @@ public class TestFileFragmentResultCacheManager
         assertEquals(stats.getCacheMiss(), 1);
         assertEquals(stats.getCacheHit(), 1);
         assertEquals(stats.getCacheEntries(), 1);
-        assertEquals(stats.getCacheSizeInBytes(), 0);
+        assertEquals(stats.getCacheSizeInBytes(), getCachePhysicalSize(cacheDirectory));
 
         // Test non-empty page. Current cache status: { (plan1, split1) -> [] }
         List<Page> pages = ImmutableList.of(new Page(createStringsBlock("plan-1-split-2")));
@@ -164,58 +171,166 @@ public class TestFileFragmentResultCacheManager
     {
         List<Page> pages = ImmutableList.of(new Page(createStringsBlock("plan-1-split-2")));
 
+        // Every entry has the same size and gets its own segment
         URI cacheDirectory = getNewCacheDirectory("testMaxCacheSize");
         FragmentCacheStats stats = new FragmentCacheStats();
-        FileFragmentResultCacheConfig config = new FileFragmentResultCacheConfig();
-        config.setMaxCacheSize(new DataSize(71, DataSize.Unit.BYTE));
-        FileFragmentResultCacheManager cacheManager = fileFragmentResultCacheManager(stats, config, cacheDirectory);
-
-        // Put one cache entry.
+        FileFragmentResultCacheManager cacheManager = fileFragmentResultCacheManager(stats, new FileFragmentResultCacheConfig().setMaxSegmentSize(new DataSize(1, BYTE)), cacheDirectory);
         cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1, pages, INPUT_DATA_SIZE_1).get();
-        FragmentCacheResult fragmentCacheResult = cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1);
-        Optional<Iterator<Page>> result = fragmentCacheResult.getPages();
-        assertTrue(result.isPresent());
-        assertPagesEqual(result.get(), pages.iterator());
-        assertEquals(fragmentCacheResult.getInputDataSize(), INPUT_DATA_SIZE_1);
-        assertEquals(stats.getCacheMiss(), 0);
-        assertEquals(stats.getCacheHit(), 1);
-        assertEquals(stats.getCacheEntries(), 1);
-        assertEquals(stats.getCacheSizeInBytes(), getCachePhysicalSize(cacheDirectory));
+        long entrySize = stats.getCacheSizeInBytes();
+        assertTrue(entrySize > 0);
+        cacheManager.invalidateAllCache();
+        cleanupCacheDirectory(cacheDirectory);
 
-        // Trying to add another cache entry which will fail due to total size limit.
-        assertNull(cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2, pages, INPUT_DATA_SIZE_2).get());
-        fragmentCacheResult = cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2);
-        result = fragmentCacheResult.getPages();
-        assertFalse(result.isPresent());
-        assertEquals(fragmentCacheResult.getInputDataSize(), 0);
-        assertEquals(stats.getCacheMiss(), 1);
-        assertEquals(stats.getCacheHit(), 1);
-        assertEquals(stats.getCacheEntries(), 1);
-        assertEquals(stats.getCacheSizeInBytes(), getCachePhysicalSize(cacheDirectory));
+        cacheDirectory = getNewCacheDirectory("testMaxCacheSize");
+        stats = new FragmentCacheStats();
+        FileFragmentResultCacheConfig config = new FileFragmentResultCacheConfig()
+                .setMaxSegmentSize(new DataSize(1, BYTE))
+                .setMaxCacheSize(new DataSize(entrySize * 2 + entrySize / 2, BYTE));
+        cacheManager = fileFragmentResultCacheManager(stats, config, cacheDirectory);
 
-        // Adding an empty page is fine.
-        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_1, ImmutableList.of(), 0).get();
-        fragmentCacheResult = cacheManager.get(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_1);
-        result = fragmentCacheResult.getPages();
-        assertTrue(result.isPresent());
-        assertEquals(fragmentCacheResult.getInputDataSize(), 0);
-        assertFalse(result.get().hasNext());
-        assertEquals(stats.getCacheMiss(), 1);
-        assertEquals(stats.getCacheHit(), 2);
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1, pages, INPUT_DATA_SIZE_1).get();
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2, pages, INPUT_DATA_SIZE_2).get();
         assertEquals(stats.getCacheEntries(), 2);
-        assertEquals(stats.getCacheSizeInBytes(), getCachePhysicalSize(cacheDirectory));
+        assertEquals(cacheManager.getSegmentCount(), 2);
+        assertEquals(stats.getCacheSizeInBytes(), entrySize * 2);
+
+        // (plan1, split1) is used more often than (plan1, split2)
+        for (int i = 0; i < 2; i++) {
+            FragmentCacheResult fragmentCacheResult = cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1);
+            assertTrue(fragmentCacheResult.getPages().isPresent());
+            assertPagesEqual(fragmentCacheResult.getPages().get(), pages.iterator());
+        }
+
+        // Adding a third entry evicts the least frequently used one
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_1, pages, INPUT_DATA_SIZE_1).get();
+        assertEquals(stats.getCacheEntries(), 2);
+        assertEquals(stats.getCacheRemoval(), 1);
+        assertTrue(cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1).getPages().isPresent());
+        assertFalse(cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2).getPages().isPresent());
+        FragmentCacheResult fragmentCacheResult = cacheManager.get(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_1);
+        assertTrue(fragmentCacheResult.getPages().isPresent());
+        assertPagesEqual(fragmentCacheResult.getPages().get(), pages.iterator());
+        assertEquals(stats.getCacheSizeInBytes(), entrySize * 2);
+
+        // Results larger than the whole cache are not admitted, and do not evict anything
+        List<Page> largePages = ImmutableList.of(new Page(createStringsBlock(Strings.repeat("x", toIntExact(entrySize * 3)))));
+        assertNull(cacheManager.put(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_2, largePages, INPUT_DATA_SIZE_2).get());
+        assertFalse(cacheManager.get(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_2).getPages().isPresent());
+        assertEquals(stats.getCacheEntries(), 2);
+        assertEquals(stats.getCacheRemoval(), 1);
 
         // Test cache invalidation
         cacheManager.invalidateAllCache();
-        assertEquals(stats.getCacheMiss(), 1);
-        assertEquals(stats.getCacheHit(), 2);
         assertEquals(stats.getCacheEntries(), 0);
-        assertEquals(stats.getCacheRemoval(), 2);
+        assertEquals(stats.getCacheRemoval(), 3);
         assertEquals(stats.getCacheSizeInBytes(), 0);
+        assertEquals(cacheManager.getSegmentCount(), 0);
+
+        cleanupCacheDirectory(cacheDirectory);
+    }
+
+    @Test(timeOut = 30_000)
+    public void testRecovery()
+            throws Exception
+    {
+        URI cacheDirectory = getNewCacheDirectory("testRecovery");
+        List<Page> pages1 = ImmutableList.of(new Page(createStringsBlock("plan-1-split-1")));
+        List<Page> pages2 = ImmutableList.of(new Page(createStringsBlock("plan-2-split-2")), new Page(createStringsBlock("plan-2-split-2", "second page")));
+
+        FragmentCacheStats stats = new FragmentCacheStats();
+        FileFragmentResultCacheManager cacheManager = fileFragmentResultCacheManager(stats, new FileFragmentResultCacheConfig().setMaxSegmentSize(new DataSize(1, BYTE)), cacheDirectory);
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1, pages1, INPUT_DATA_SIZE_1).get();
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_2, pages2, INPUT_DATA_SIZE_2).get();
+        long cacheSize = stats.getCacheSizeInBytes();
+
+        // An entry whose index record was not completely written before a crash, and a file of an older version of the cache
+        Path lastIndex = Paths.get(cacheDirectory).resolve(FragmentResultCacheSegment.indexFileName(1));
+        Files.write(lastIndex, new byte[] {0, 0, 1, 0, 42}, APPEND);
+        Path legacyFile = Paths.get(cacheDirectory).resolve("a_legacy_cache_file");
+        Files.write(legacyFile, new byte[] {1, 2, 3});
+        // A segment written with another format version
+        Path otherVersionData = Paths.get(cacheDirectory).resolve(FragmentResultCacheSegment.dataFileName(7));
+        Path otherVersionIndex = Paths.get(cacheDirectory).resolve(FragmentResultCacheSegment.indexFileName(7));
+        Files.write(otherVersionData, new byte[] {'F', 'R', 'C', 'S', 0, 0, 0, 0, 1, 2, 3});
+        Files.write(otherVersionIndex, new byte[] {'F', 'R', 'C', 'S', 0, 0, 0, 0});
+
+        // Restart
+        FragmentCacheStats recoveredStats = new FragmentCacheStats();
+        FileFragmentResultCacheManager recoveredCacheManager = fileFragmentResultCacheManager(recoveredStats, new FileFragmentResultCacheConfig(), cacheDirectory);
+        assertEquals(recoveredStats.getCacheEntries(), 2);
+        assertEquals(recoveredStats.getCacheSizeInBytes(), cacheSize + 5);
+        assertEquals(recoveredCacheManager.getSegmentCount(), 2);
+
+        FragmentCacheResult fragmentCacheResult = recoveredCacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1);
+        assertTrue(fragmentCacheResult.getPages().isPresent());
+        assertPagesEqual(fragmentCacheResult.getPages().get(), pages1.iterator());
+        assertEquals(fragmentCacheResult.getInputDataSize(), INPUT_DATA_SIZE_1);
+        fragmentCacheResult = recoveredCacheManager.get(SERIALIZED_PLAN_FRAGMENT_2, SPLIT_2);
+        assertTrue(fragmentCacheResult.getPages().isPresent());
+        assertPagesEqual(fragmentCacheResult.getPages().get(), pages2.iterator());
+        assertEquals(fragmentCacheResult.getInputDataSize(), INPUT_DATA_SIZE_2);
+        assertFalse(recoveredCacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2).getPages().isPresent());
+
+        // New entries go to a new segment
+        recoveredCacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2, pages1, INPUT_DATA_SIZE_1).get();
+        assertEquals(recoveredCacheManager.getSegmentCount(), 3);
+        assertTrue(recoveredCacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2).getPages().isPresent());
+
+        recoveredCacheManager.invalidateAllCache();
+        assertEquals(recoveredStats.getCacheEntries(), 0);
+        assertEquals(recoveredStats.getCacheSizeInBytes(), 0);
+
+        // Wait for the removal of all the files
+        while (Paths.get(cacheDirectory).toFile().list().length > 0) {
+            Thread.sleep(10);
+        }
+        assertFalse(Files.exists(legacyFile));
+        assertFalse(Files.exists(otherVersionData));
+        assertFalse(Files.exists(otherVersionIndex));
+
+        // Nothing is recovered after invalidation
+        FragmentCacheStats emptyStats = new FragmentCacheStats();
+        fileFragmentResultCacheManager(emptyStats, new FileFragmentResultCacheConfig(), cacheDirectory);
+        assertEquals(emptyStats.getCacheEntries(), 0);
 
         cleanupCacheDirectory(cacheDirectory);
     }
 
+    @Test(timeOut = 30_000)
+    public void testEntryTtl()
+            throws Exception
+    {
+        URI cacheDirectory = getNewCacheDirectory("testEntryTtl");
+        List<Page> pages = ImmutableList.of(new Page(createStringsBlock("plan-1-split-1")));
+        FragmentCacheStats stats = new FragmentCacheStats();
+        FileFragmentResultCacheManager cacheManager = fileFragmentResultCacheManager(stats, new FileFragmentResultCacheConfig().setCacheTtl(new Duration(1, SECONDS)), cacheDirectory);
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1, pages, INPUT_DATA_SIZE_1).get();
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2, pages, INPUT_DATA_SIZE_2).get();
+        assertEquals(cacheManager.getSegmentCount(), 1);
+
+        // Reading an entry extends its lifetime
+        Thread.sleep(600);
+        assertTrue(cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1).getPages().isPresent());
+        Thread.sleep(600);
+
+        // The entry which was not read has expired, although its segment has not
+        assertFalse(cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2).getPages().isPresent());
+        assertEquals(stats.getCacheEntries(), 1);
+        assertEquals(stats.getCacheRemoval(), 1);
+        FragmentCacheResult fragmentCacheResult = cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_1);
+        assertTrue(fragmentCacheResult.getPages().isPresent());
+        assertPagesEqual(fragmentCacheResult.getPages().get(), pages.iterator());
+        assertEquals(cacheManager.getSegmentCount(), 1);
+
+        // An expired entry can be cached again
+        cacheManager.put(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2, pages, INPUT_DATA_SIZE_2).get();
+        assertTrue(cacheManager.get(SERIALIZED_PLAN_FRAGMENT_1, SPLIT_2).getPages().isPresent());
+        assertEquals(stats.getCacheEntries(), 2);
+
+        cacheManager.invalidateAllCache();
+        cleanupCacheDirectory(cacheDirectory);
+    }
+
     private static void assertPagesEqual(Iterator<Page> pages1, Iterator<Page> pages2)
     {
         while (pages1.hasNext() && pages2.hasNext()) {
@@ -474,4 +474,119 @@ public class TestGroupByHash
         assertEquals(currentQuota.get(), 10 * 2);
         assertEquals(currentQuota.get() / 3 / 2, yields);
     }
+
+    @Test(dataProvider = "dataType")
+    public void testRehashCount(Type type)
+    {
+        int length = 100_000;
+        Block valuesBlock = type == VARCHAR ? createStringSequenceBlock(0, length) : createLongSequenceBlock(0, length);
+        Block hashBlock = getHashBlock(ImmutableList.of(type), valuesBlock);
+        Page page = new Page(valuesBlock, hashBlock);
+
+        GroupByHash groupByHash = createGroupByHash(ImmutableList.of(type), new int[] {0}, Optional.of(1), 1, false, JOIN_COMPILER, UpdateMemory.NOOP);
+        groupByHash.addPage(page).process();
+        // the rehash count is 17 = log2(100_000 / 0.75)
+        assertEquals(groupByHash.getRehashCount(), 17);
+
+        // a hash table sized for the expected number of groups is never rehashed
+        groupByHash = createGroupByHash(ImmutableList.of(type), new int[] {0}, Optional.of(1), length, false, JOIN_COMPILER, UpdateMemory.NOOP);
+        groupByHash.addPage(page).process();
+        assertEquals(groupByHash.getGroupCount(), length);
+        assertEquals(groupByHash.getRehashCount(), 0);
+    }
+
+    @Test
+    public void testPartitionedBigintGroupByHash()
+    {
+        int length = 1_000_000;
+        Block valuesBlock = createLongSequenceBlock(0, length);
+        Block hashBlock = getHashBlock(ImmutableList.of(BIGINT), valuesBlock);
+        Page page = new Page(valuesBlock, hashBlock);
+
+        GroupByHash groupByHash = createGroupByHash(ImmutableList.of(BIGINT), new int[] {0}, Optional.of(1), 1, false, true, JOIN_COMPILER, UpdateMemory.NOOP);
+        assertTrue(groupByHash instanceof PartitionedBigintGroupByHash);
+        groupByHash.addPage(page).process();
+        assertEquals(groupByHash.getGroupCount(), length);
+        assertTrue(((PartitionedBigintGroupByHash) groupByHash).getPartitionCount() > 1);
+        assertTrue(groupByHash.getCapacity() > length);
+
+        // the partitions are split instead of being rehashed once they reach their maximum capacity
+        assertTrue(groupByHash.getRehashCount() > log2(PartitionedBigintGroupByHash.MAX_PARTITION_CAPACITY, RoundingMode.FLOOR));
+
+        // the group ids follow the order in which the values were added
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+        assertTrue(work.process());
+        GroupByIdBlock groupIds = work.getResult();
+        assertEquals(groupIds.getGroupCount(), length);
+        for (int position = 0; position < length; position++) {
+            assertEquals(groupIds.getGroupId(position), position);
+            assertTrue(groupByHash.contains(position, page, CONTAINS_CHANNELS));
+        }
+
+        Block nullBlock = createLongsBlock((Long) null, (long) length);
+        Page nullPage = new Page(nullBlock, getHashBlock(ImmutableList.of(BIGINT), nullBlock));
+        assertFalse(groupByHash.contains(0, nullPage, CONTAINS_CHANNELS));
+        assertFalse(groupByHash.contains(1, nullPage, CONTAINS_CHANNELS));
+        groupByHash.addPage(nullPage).process();
+        assertEquals(groupByHash.getGroupCount(), length + 2);
+        assertTrue(groupByHash.contains(0, nullPage, CONTAINS_CHANNELS));
+        assertTrue(groupByHash.contains(1, nullPage, CONTAINS_CHANNELS));
+
+        PageBuilder pageBuilder = new PageBuilder(groupByHash.getTypes());
+        pageBuilder.declarePosition();
+        groupByHash.appendValuesTo(length, pageBuilder, 0);
+        pageBuilder.declarePosition();
+        groupByHash.appendValuesTo(length + 1, pageBuilder, 0);
+        pageBuilder.declarePosition();
+        groupByHash.appendValuesTo(42, pageBuilder, 0);
+        Block outputBlock = pageBuilder.build().getBlock(0);
+        assertTrue(outputBlock.isNull(0));
+        assertEquals(BIGINT.getLong(outputBlock, 1), length);
+        assertEquals(BIGINT.getLong(outputBlock, 2), 42);
+    }
+
+    @Test
+    public void testPartitionedBigintGroupByHashMemoryReservationYield()
+    {
+        int length = 1_000_000;
+        Block valuesBlock = createLongSequenceBlock(0, length);
+        Block hashBlock = getHashBlock(ImmutableList.of(BIGINT), valuesBlock);
+        Page page = new Page(valuesBlock, hashBlock);
+        AtomicInteger currentQuota = new AtomicInteger(0);
+        AtomicInteger allowedQuota = new AtomicInteger(6);
+        UpdateMemory updateMemory = () -> {
+            if (currentQuota.get() < allowedQuota.get()) {
+                currentQuota.getAndIncrement();
+                return true;
+            }
+            return false;
+        };
+        int yields = 0;
+
+        GroupByHash groupByHash = createGroupByHash(ImmutableList.of(BIGINT), new int[] {0}, Optional.of(1), 1, false, true, JOIN_COMPILER, updateMemory);
+        boolean finish = false;
+        Work<GroupByIdBlock> getGroupIdsWork = groupByHash.getGroupIds(page);
+        while (!finish) {
+            finish = getGroupIdsWork.process();
+            if (!finish) {
+                assertEquals(currentQuota.get(), allowedQuota.get());
+                // assert if we are blocked, we are going to be blocked again without changing allowedQuota
+                assertFalse(getGroupIdsWork.process());
+                assertEquals(currentQuota.get(), allowedQuota.get());
+                yields++;
+                allowedQuota.getAndAdd(6);
+            }
+        }
+
+        // assert there is not anything missing
+        assertEquals(length, groupByHash.getGroupCount());
+        GroupByIdBlock groupIds = getGroupIdsWork.getResult();
+        assertEquals(length, groupIds.getPositionCount());
+        for (int position = 0; position < length; position++) {
+            assertEquals(groupIds.getGroupId(position), position);
+        }
+        // updateMemory is called twice every time a partition grows, and we yield for every 3 of them
+        assertEquals(currentQuota.get(), groupByHash.getRehashCount() * 2);
+        assertEquals(currentQuota.get() / 3 / 2, yields);
+    }
 }
@@ -17,7 +17,9 @@ import com.facebook.airlift.units.DataSize;
 import com.facebook.airlift.units.DataSize.Unit;
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.ByteArrayBlock;
@@ -65,8 +67,10 @@ import static com.facebook.airlift.units.DataSize.succinctBytes;
 import static com.facebook.airlift.units.DataSize.succinctDataSize;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.PARTITIONED_AGGREGATION_HASH_ENABLED;
 import static com.facebook.presto.block.BlockAssertions.createLongRepeatBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.common.RuntimeMetricName.HASH_AGGREGATION_REHASH_COUNT;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
@@ -82,6 +86,7 @@ import static com.facebook.presto.operator.OperatorAssertion.toPages;
 import static com.facebook.presto.operator.aggregation.GenericAccumulatorFactory.generateAccumulatorFactory;
 import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.base.Strings.nullToEmpty;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -89,6 +94,7 @@ import static com.google.common.collect.MoreCollectors.onlyElement;
 import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
 import static io.airlift.slice.SizeOf.SIZE_OF_DOUBLE;
 import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.util.Collections.emptyIterator;
 import static java.util.concurrent.Executors.newCachedThreadPool;
@@ -391,6 +397,51 @@ public class TestHashAggregationOperator
         toPages(operatorFactory, driverContext, input, revokeMemoryWhenAddingPages);
     }
 
+    @Test
+    public void testPartitionedHashAggregation()
+    {
+        Session session = testSessionBuilder()
+                .setSystemProperty(PARTITIONED_AGGREGATION_HASH_ENABLED, "true")
+                .build();
+        DriverContext driverContext = TestingTaskContext.builder(executor, scheduledExecutor, session)
+                .build()
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+
+        List<Page> input = rowPagesBuilder(BIGINT)
+                .addSequencePage(200_000, 0)
+                .addSequencePage(200_000, 100_000)
+                .build();
+
+        HashAggregationOperatorFactory operatorFactory = new HashAggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(0),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                Step.SINGLE,
+                ImmutableList.of(generateAccumulatorFactory(COUNT, ImmutableList.of(0), Optional.empty())),
+                Optional.empty(),
+                Optional.empty(),
+                1,
+                Optional.of(new DataSize(16, MEGABYTE)),
+                joinCompiler,
+                false);
+
+        long[] groupsByCount = new long[3];
+        for (Page page : toPages(operatorFactory, driverContext, input)) {
+            for (int position = 0; position < page.getPositionCount(); position++) {
+                groupsByCount[toIntExact(BIGINT.getLong(page.getBlock(1), position))]++;
+            }
+        }
+        assertEquals(groupsByCount[1], 200_000);
+        assertEquals(groupsByCount[2], 100_000);
+
+        RuntimeStats runtimeStats = driverContext.getOperatorContexts().get(0).getRuntimeStats();
+        assertGreaterThan(runtimeStats.getMetric(HASH_AGGREGATION_REHASH_COUNT).getSum(), 0L);
+    }
+
     @Test(dataProvider = "dataType")
     public void testMemoryReservationYield(Type type)
     {
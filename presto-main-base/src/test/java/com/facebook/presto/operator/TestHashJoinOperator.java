@@ -77,6 +77,8 @@ import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.JOIN_BATCH_PROBE_ENABLED;
+import static com.facebook.presto.SystemSessionProperties.OFF_HEAP_JOIN_HASH_ENABLED;
 import static com.facebook.presto.SystemSessionProperties.QUERY_MAX_MEMORY_PER_NODE;
 import static com.facebook.presto.SystemSessionProperties.getQueryMaxMemoryPerNode;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -788,6 +790,132 @@ public class TestHashJoinOperator
         assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
     }
 
+    @Test(dataProvider = "hashJoinTestValues")
+    public void testInnerJoinWithOffHeapJoinHash(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+    {
+        Session session = testSessionBuilder().setSystemProperty(OFF_HEAP_JOIN_HASH_ENABLED, "true").build();
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, session);
+
+        // build factory
+        List<Type> buildTypes = ImmutableList.of(VARCHAR, BIGINT);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .row("a", 1L)
+                .row(null, 2L)
+                .row("b", 3L)
+                .row("a", 4L)
+                .addSequencePage(1000, 100, 0);
+        BuildSideSetup buildSideSetup = setupBuildSide(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty(), false, SINGLE_STREAM_SPILLER_FACTORY);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactory = buildSideSetup.getLookupSourceFactoryManager();
+
+        // probe factory
+        List<Type> probeTypes = ImmutableList.of(VARCHAR);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .row("a")
+                .row((String) null)
+                .row("c")
+                .row("1099")
+                .row("b")
+                .build();
+        OperatorFactory joinOperatorFactory = innerJoinOperatorFactory(lookupSourceFactory, probePages, PARTITIONING_SPILLER_FACTORY);
+
+        // build drivers and operators
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        buildLookupSource(buildSideSetup);
+
+        // expected
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), Stream.concat(probeTypes.stream(), buildTypes.stream()).collect(toImmutableList()))
+                .row("a", "a", 4L)
+                .row("a", "a", 1L)
+                .row("1099", "1099", 999L)
+                .row("b", "b", 3L)
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
+    }
+
+    @Test
+    public void testOffHeapJoinHashFreedWhenLookupSourceFactoryDestroyed()
+    {
+        Session session = testSessionBuilder().setSystemProperty(OFF_HEAP_JOIN_HASH_ENABLED, "true").build();
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, session);
+        long unclosedBytes = NativeMemoryBuffer.getUnclosedBytes();
+
+        RowPagesBuilder buildPages = rowPagesBuilder(ImmutableList.of(BIGINT))
+                .addSequencePage(1000, 0);
+        BuildSideSetup buildSideSetup = setupBuildSide(false, taskContext, Ints.asList(0), buildPages, Optional.empty(), false, SINGLE_STREAM_SPILLER_FACTORY);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactoryManager = buildSideSetup.getLookupSourceFactoryManager();
+        OperatorFactory joinOperatorFactory = innerJoinOperatorFactory(lookupSourceFactoryManager, rowPagesBuilder(ImmutableList.of(BIGINT)), PARTITIONING_SPILLER_FACTORY);
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        ListenableFuture<LookupSourceProvider> lookupSourceProvider = lookupSourceFactoryManager.getJoinBridge(Lifespan.taskWide()).createLookupSourceProvider();
+        while (!lookupSourceProvider.isDone()) {
+            for (Driver buildDriver : buildSideSetup.getBuildDrivers()) {
+                buildDriver.process();
+            }
+        }
+        assertTrue(NativeMemoryBuffer.getUnclosedBytes() > unclosedBytes);
+
+        // the build operators are closed, for example on query failure, while probe operators may still hold the lookup source
+        for (Driver buildDriver : buildSideSetup.getBuildDrivers()) {
+            buildDriver.close();
+        }
+        getFutureValue(lookupSourceProvider).close();
+        assertTrue(NativeMemoryBuffer.getUnclosedBytes() > unclosedBytes);
+
+        // the lookup source factory is destroyed once the probe side is done
+        joinOperatorFactory.noMoreOperators(Lifespan.taskWide());
+        assertEquals(NativeMemoryBuffer.getUnclosedBytes(), unclosedBytes);
+    }
+
+    @Test(dataProvider = "hashJoinTestValues")
+    public void testInnerJoinWithBatchProbe(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
+    {
+        Session session = testSessionBuilder().setSystemProperty(JOIN_BATCH_PROBE_ENABLED, "true").build();
+        TaskContext taskContext = TestingTaskContext.createTaskContext(executor, scheduledExecutor, session);
+
+        // build factory
+        List<Type> buildTypes = ImmutableList.of(VARCHAR, BIGINT);
+        RowPagesBuilder buildPages = rowPagesBuilder(buildHashEnabled, Ints.asList(0), buildTypes)
+                .row("a", 1L)
+                .row(null, 2L)
+                .row("b", 3L)
+                .row("a", 4L)
+                .addSequencePage(1000, 100, 0);
+        BuildSideSetup buildSideSetup = setupBuildSide(parallelBuild, taskContext, Ints.asList(0), buildPages, Optional.empty(), false, SINGLE_STREAM_SPILLER_FACTORY);
+        JoinBridgeManager<PartitionedLookupSourceFactory> lookupSourceFactory = buildSideSetup.getLookupSourceFactoryManager();
+
+        // probe factory
+        List<Type> probeTypes = ImmutableList.of(VARCHAR);
+        RowPagesBuilder probePages = rowPagesBuilder(probeHashEnabled, Ints.asList(0), probeTypes);
+        List<Page> probeInput = probePages
+                .row("a")
+                .row((String) null)
+                .row("c")
+                .row("1099")
+                .row("b")
+                // the buffers of the batch probe are reused for a smaller page
+                .pageBreak()
+                .row("1050")
+                .row("d")
+                .build();
+        OperatorFactory joinOperatorFactory = innerJoinOperatorFactory(lookupSourceFactory, probePages, PARTITIONING_SPILLER_FACTORY);
+
+        // build drivers and operators
+        instantiateBuildDrivers(buildSideSetup, taskContext);
+        buildLookupSource(buildSideSetup);
+
+        // expected
+        MaterializedResult expected = MaterializedResult.resultBuilder(taskContext.getSession(), Stream.concat(probeTypes.stream(), buildTypes.stream()).collect(toImmutableList()))
+                .row("a", "a", 4L)
+                .row("a", "a", 1L)
+                .row("1099", "1099", 999L)
+                .row("b", "b", 3L)
+                .row("1050", "1050", 950L)
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), probeInput, expected, true, getHashChannels(probePages, buildPages));
+    }
+
     @Test(dataProvider = "hashJoinTestValues")
     public void testInnerJoinWithNullOnBothSides(boolean parallelBuild, boolean probeHashEnabled, boolean buildHashEnabled)
     {
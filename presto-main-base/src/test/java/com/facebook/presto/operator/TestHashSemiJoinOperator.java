@@ -17,10 +17,18 @@ import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.HashSemiJoinOperator.HashSemiJoinOperatorFactory;
 import com.facebook.presto.operator.SetBuilderOperator.SetBuilderOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.FileSingleStreamSpillerFactory;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
+import com.facebook.presto.spiller.NodeSpillConfig;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.facebook.presto.spiller.SpillerStats;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
@@ -30,12 +38,17 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThanOrEqual;
 import static com.facebook.airlift.units.DataSize.Unit.BYTE;
@@ -50,10 +63,15 @@ import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOpera
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.lang.String.format;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static java.util.stream.Stream.concat;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestHashSemiJoinOperator
@@ -83,6 +101,12 @@ public class TestHashSemiJoinOperator
         return new Object[][] {{true}, {false}};
     }
 
+    @DataProvider
+    public static Object[][] spillValues()
+    {
+        return new Object[][] {{true, true}, {true, false}, {false, true}, {false, false}};
+    }
+
     @DataProvider
     public Object[][] dataType()
     {
@@ -422,6 +446,133 @@ public class TestHashSemiJoinOperator
         OperatorAssertion.assertOperatorEquals(joinOperatorFactory, driverContext, probeInput, expected, hashEnabled, ImmutableList.of(probeTypes.size()));
     }
 
+    @Test(dataProvider = "spillValues")
+    public void testSpill(boolean hashEnabled, boolean buildContainsNull)
+            throws Exception
+    {
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            FeaturesConfig featuresConfig = new FeaturesConfig()
+                    .setSpillerSpillPaths(spillPath.toString())
+                    .setSpillMaxUsedSpaceThreshold(1.0);
+            PartitioningSpillerFactory partitioningSpillerFactory = new GenericPartitioningSpillerFactory(
+                    new FileSingleStreamSpillerFactory(new BlockEncodingManager(), new SpillerStats(), featuresConfig, new NodeSpillConfig()));
+
+            // build
+            DriverContext buildDriverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+            RowPagesBuilder buildPages = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+            for (long value = 0; value < 100; value += 2) {
+                buildPages.row(value);
+                if (value % 20 == 0) {
+                    buildPages.pageBreak();
+                }
+            }
+            if (buildContainsNull) {
+                buildPages.row((Object) null);
+            }
+            SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
+                    0,
+                    new PlanNodeId("test"),
+                    BIGINT,
+                    0,
+                    buildPages.getHashChannel(),
+                    10,
+                    new JoinCompiler(createTestMetadataManager()),
+                    true,
+                    partitioningSpillerFactory);
+            Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(buildDriverContext);
+            Iterator<Page> buildInput = buildPages.build().iterator();
+
+            // probe
+            RowPagesBuilder probePages = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+            List<Page> probeInput = probePages
+                    .addSequencePage(60, 0)
+                    .row((Object) null)
+                    .addSequencePage(60, 60)
+                    .build();
+            HashSemiJoinOperatorFactory joinOperatorFactory = new HashSemiJoinOperatorFactory(
+                    1,
+                    new PlanNodeId("test"),
+                    setBuilderOperatorFactory.getSetProvider(),
+                    probePages.getTypes(),
+                    0,
+                    hashEnabled ? Optional.of(1) : Optional.empty(),
+                    partitioningSpillerFactory);
+            PipelineContext probePipelineContext = taskContext.addPipelineContext(1, true, true, false);
+            List<Operator> joinOperators = ImmutableList.of(
+                    joinOperatorFactory.createOperator(probePipelineContext.addDriverContext()),
+                    joinOperatorFactory.createOperator(probePipelineContext.addDriverContext()));
+            joinOperatorFactory.noMoreOperators();
+            List<Iterator<Page>> joinInputs = ImmutableList.of(
+                    probeInput.subList(0, probeInput.size() / 2).iterator(),
+                    probeInput.subList(probeInput.size() / 2, probeInput.size()).iterator());
+
+            List<String> actual = new ArrayList<>();
+            for (int loops = 0; !setBuilderOperator.isFinished() || joinOperators.stream().anyMatch(operator -> !operator.isFinished()); loops++) {
+                assertTrue(loops < 10_000, "Semi join did not finish");
+
+                if (!setBuilderOperator.isFinished() && setBuilderOperator.isBlocked().isDone()) {
+                    if (buildInput.hasNext()) {
+                        if (setBuilderOperator.needsInput()) {
+                            setBuilderOperator.addInput(buildInput.next());
+                        }
+                        if (!buildInput.hasNext()) {
+                            // spill the set once all but the last build page has been added
+                            getFutureValue(setBuilderOperator.startMemoryRevoke());
+                            setBuilderOperator.finishMemoryRevoke();
+                        }
+                    }
+                    else {
+                        setBuilderOperator.finish();
+                    }
+                }
+
+                for (int i = 0; i < joinOperators.size(); i++) {
+                    Operator joinOperator = joinOperators.get(i);
+                    if (joinOperator.isFinished() || !joinOperator.isBlocked().isDone()) {
+                        continue;
+                    }
+                    if (!joinInputs.get(i).hasNext()) {
+                        joinOperator.finish();
+                    }
+                    else if (joinOperator.needsInput()) {
+                        joinOperator.addInput(joinInputs.get(i).next());
+                    }
+                    Page output = joinOperator.getOutput();
+                    if (output != null) {
+                        for (int position = 0; position < output.getPositionCount(); position++) {
+                            Block result = output.getBlock(output.getChannelCount() - 1);
+                            actual.add(format("%s:%s", output.getBlock(0).isNull(position) ? null : BIGINT.getLong(output.getBlock(0), position), result.isNull(position) ? null : BOOLEAN.getBoolean(result, position)));
+                        }
+                    }
+                }
+            }
+            assertTrue(setBuilderOperatorFactory.getSetProvider().isSpilled());
+            setBuilderOperator.close();
+            joinOperators.forEach(operator -> {
+                try {
+                    operator.close();
+                }
+                catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            List<String> expected = new ArrayList<>();
+            for (long value = 0; value < 120; value++) {
+                boolean contains = value < 100 && value % 2 == 0;
+                // a value which is not found may still be equal to the null in the set
+                expected.add(format("%s:%s", value, contains ? "true" : (buildContainsNull ? "null" : "false")));
+            }
+            // a null probe value never matches a non empty set
+            expected.add("null:null");
+            assertEqualsIgnoreOrder(actual, expected);
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
     @Test(dataProvider = "hashEnabledValues", expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Query exceeded per-node user memory limit of.*")
     public void testMemoryLimit(boolean hashEnabled)
     {
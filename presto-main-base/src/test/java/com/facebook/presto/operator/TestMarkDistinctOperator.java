@@ -16,11 +16,18 @@ package com.facebook.presto.operator;
 import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.MarkDistinctOperator.MarkDistinctOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.FileSingleStreamSpillerFactory;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
+import com.facebook.presto.spiller.NodeSpillConfig;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.facebook.presto.spiller.SpillerStats;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
@@ -30,12 +37,17 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.airlift.testing.Assertions.assertInstanceOf;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
@@ -48,6 +60,9 @@ import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOpera
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.base.Throwables.throwIfUnchecked;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
@@ -187,4 +202,96 @@ public class TestMarkDistinctOperator
         }
         assertEquals(count, 6_000 * 600);
     }
+
+    @Test(dataProvider = "hashEnabledValues")
+    public void testSpill(boolean hashEnabled)
+            throws Exception
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 0)
+                .addSequencePage(100, 50)
+                .build();
+
+        List<String> expected = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            expected.add(i + ":true");
+            expected.add(i + ":false");
+        }
+        for (long i = 50; i < 150; i++) {
+            expected.add(i + ":" + (i >= 100));
+        }
+
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            OperatorFactory operatorFactory = new MarkDistinctOperatorFactory(
+                    0,
+                    new PlanNodeId("test"),
+                    rowPagesBuilder.getTypes(),
+                    ImmutableList.of(0),
+                    rowPagesBuilder.getHashChannel(),
+                    joinCompiler,
+                    true,
+                    createPartitioningSpillerFactory(spillPath));
+
+            int maskChannel = rowPagesBuilder.getTypes().size();
+            List<String> actual = new ArrayList<>();
+            try (Operator operator = operatorFactory.createOperator(driverContext)) {
+                // spill while the second page is being marked
+                for (Page page : runWithMemoryRevoke(operator, input, 2)) {
+                    for (int position = 0; position < page.getPositionCount(); position++) {
+                        actual.add(BIGINT.getLong(page.getBlock(0), position) + ":" + BOOLEAN.getBoolean(page.getBlock(maskChannel), position));
+                    }
+                }
+            }
+            assertEqualsIgnoreOrder(actual, expected);
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    static PartitioningSpillerFactory createPartitioningSpillerFactory(Path spillPath)
+    {
+        FeaturesConfig featuresConfig = new FeaturesConfig()
+                .setSpillerSpillPaths(spillPath.toString())
+                .setSpillMaxUsedSpaceThreshold(1.0);
+        return new GenericPartitioningSpillerFactory(
+                new FileSingleStreamSpillerFactory(new BlockEncodingManager(), new SpillerStats(), featuresConfig, new NodeSpillConfig()));
+    }
+
+    /**
+     * Drives the operator through the input and revokes its memory right after the given number of pages has been added.
+     */
+    static List<Page> runWithMemoryRevoke(Operator operator, List<Page> input, int revokeAfterPages)
+    {
+        List<Page> output = new ArrayList<>();
+        Iterator<Page> iterator = input.iterator();
+        int addedPages = 0;
+        for (int loops = 0; !operator.isFinished(); loops++) {
+            assertTrue(loops < 10_000, "Operator did not finish");
+            getFutureValue(operator.isBlocked());
+            if (operator.needsInput()) {
+                if (iterator.hasNext()) {
+                    operator.addInput(iterator.next());
+                    addedPages++;
+                    if (addedPages == revokeAfterPages) {
+                        assertGreaterThan(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+                        getFutureValue(operator.startMemoryRevoke());
+                        operator.finishMemoryRevoke();
+                        assertEquals(operator.getOperatorContext().getReservedRevocableBytes(), 0L);
+                    }
+                }
+                else {
+                    operator.finish();
+                }
+            }
+            Page page = operator.getOutput();
+            if (page != null) {
+                output.add(page);
+            }
+        }
+        return output;
+    }
 }
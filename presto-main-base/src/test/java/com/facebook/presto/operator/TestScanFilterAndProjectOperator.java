@@ -20,7 +20,9 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.LazyBlock;
 import com.facebook.presto.common.block.LazyBlockLoader;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
 import com.facebook.presto.execution.ScheduledSplit;
+import com.facebook.presto.execution.scheduler.BloomRuntimeFilter;
 import com.facebook.presto.metadata.FunctionAndTypeManager;
 import com.facebook.presto.metadata.Metadata;
 import com.facebook.presto.metadata.MetadataManager;
@@ -33,6 +35,7 @@ import com.facebook.presto.operator.project.PageProjectionWithOutputs;
 import com.facebook.presto.operator.project.TestPageProcessor.LazyPagePageProjection;
 import com.facebook.presto.operator.project.TestPageProcessor.SelectAllFilter;
 import com.facebook.presto.operator.scalar.AbstractTestFunctions;
+import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorId;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorTableHandle;
@@ -42,17 +45,23 @@ import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
 import com.facebook.presto.sql.gen.ExpressionCompiler;
 import com.facebook.presto.sql.gen.PageFunctionCompiler;
 import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.TestingMetadata.TestingColumnHandle;
 import com.facebook.presto.testing.TestingSplit;
 import com.facebook.presto.testing.TestingTransactionHandle;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterators;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -63,6 +72,7 @@ import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.airlift.units.DataSize.Unit.KILOBYTE;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.toValues;
 import static com.facebook.presto.common.function.OperatorType.EQUAL;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
@@ -146,6 +156,60 @@ public class TestScanFilterAndProjectOperator
         assertEquals(actual, expected);
     }
 
+    @Test
+    public void testBloomFilterColumnFilters()
+    {
+        Page input = rowPagesBuilder(BIGINT).addSequencePage(100, 0).build().get(0);
+        DriverContext driverContext = newDriverContext();
+
+        BloomRuntimeFilter bloomFilter = BloomRuntimeFilter.create(1024);
+        for (long value = 0; value < 10; value++) {
+            bloomFilter.add(BIGINT, createLongsBlock(value), 0);
+        }
+        VariableReferenceExpression key = new VariableReferenceExpression(Optional.empty(), "key", BIGINT);
+        BloomFilterPageFilter pageFilter = BloomFilterPageFilter.create(ImmutableListMultimap.of(key, bloomFilter), ImmutableMap.of(key, 0));
+
+        ColumnHandle column = new TestingColumnHandle("key");
+        List<Map<ColumnHandle, TupleDomainFilter>> columnFilters = new ArrayList<>();
+        List<RowExpression> projections = ImmutableList.of(field(0, BIGINT));
+        ScanFilterAndProjectOperator.ScanFilterAndProjectOperatorFactory factory = new ScanFilterAndProjectOperator.ScanFilterAndProjectOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                new PlanNodeId("0"),
+                (session, split, table, columns, runtimeStats) -> {
+                    columnFilters.add(split.getSplitContext().getDynamicFilterColumnFilters());
+                    return new FixedPageSource(ImmutableList.of(input));
+                },
+                expressionCompiler.compileCursorProcessor(driverContext.getSession().getSqlFunctionProperties(), Optional.empty(), projections, "key"),
+                expressionCompiler.compilePageProcessor(driverContext.getSession().getSqlFunctionProperties(), Optional.empty(), projections),
+                TESTING_TABLE_HANDLE,
+                ImmutableList.of(column),
+                ImmutableList.of(BIGINT),
+                Optional.empty(),
+                Optional.of(() -> pageFilter),
+                new DataSize(0, BYTE),
+                0);
+
+        SourceOperator operator = factory.createOperator(driverContext);
+        operator.addSplit(
+                new ScheduledSplit(
+                        0,
+                        operator.getSourceId(),
+                        new Split(new ConnectorId("test"), TestingTransactionHandle.create(), TestingSplit.createLocalSplit())));
+        operator.noMoreSplits();
+
+        // the page source ignores the column filters, the rows are still filtered by the operator
+        MaterializedResult actual = toMaterializedResult(driverContext.getSession(), ImmutableList.of(BIGINT), toPages(operator));
+        assertTrue(actual.getRowCount() >= 10 && actual.getRowCount() < 100, "rows: " + actual.getRowCount());
+
+        assertEquals(columnFilters.size(), 1);
+        TupleDomainFilter columnFilter = columnFilters.get(0).get(column);
+        assertNotNull(columnFilter);
+        for (long value = 0; value < 10; value++) {
+            assertTrue(columnFilter.testLong(value));
+        }
+    }
+
     @Test
     public void testPageSourceMergeOutput()
     {
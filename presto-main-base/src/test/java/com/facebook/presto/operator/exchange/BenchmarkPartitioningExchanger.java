@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.exchange;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.operator.PrecomputedHashGenerator;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.VerboseMode;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Measures the throughput of a partitioned local exchange where every driver writes
+ * through its own {@link PartitioningExchanger} to all the sources, and every source
+ * is drained by its own reader.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(3)
+@Warmup(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class BenchmarkPartitioningExchanger
+{
+    private static final int PAGES_PER_DRIVER = 50;
+    private static final int POSITIONS_PER_PAGE = 1024;
+    private static final long MAX_BUFFERED_BYTES = 32 * 1024 * 1024;
+
+    @State(Scope.Thread)
+    public static class BenchmarkContext
+    {
+        @Param({"32", "64", "128"})
+        private int drivers = 32;
+
+        private ExecutorService executor;
+        private Page page;
+
+        @Setup
+        public void setup()
+        {
+            executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+
+            Random random = new Random(42);
+            BlockBuilder hashes = BIGINT.createBlockBuilder(null, POSITIONS_PER_PAGE);
+            BlockBuilder values = BIGINT.createBlockBuilder(null, POSITIONS_PER_PAGE);
+            for (int position = 0; position < POSITIONS_PER_PAGE; position++) {
+                BIGINT.writeLong(hashes, random.nextLong());
+                BIGINT.writeLong(values, position);
+            }
+            page = new Page(values.build(), hashes.build());
+        }
+
+        @TearDown
+        public void cleanup()
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public long exchange(BenchmarkContext context)
+            throws Exception
+    {
+        int drivers = context.drivers;
+        List<LocalExchangeSource> sources = new ArrayList<>();
+        for (int i = 0; i < drivers; i++) {
+            sources.add(new LocalExchangeSource(source -> {}));
+        }
+        List<Consumer<PageReference>> buffers = sources.stream()
+                .map(source -> (Consumer<PageReference>) source::addPage)
+                .collect(toImmutableList());
+        LocalExchangeMemoryManager memoryManager = new LocalExchangeMemoryManager(MAX_BUFFERED_BYTES);
+
+        List<Future<?>> producers = new ArrayList<>();
+        for (int driver = 0; driver < drivers; driver++) {
+            PartitioningExchanger exchanger = new PartitioningExchanger(
+                    buffers,
+                    memoryManager,
+                    new LocalPartitionGenerator(new PrecomputedHashGenerator(0), drivers),
+                    ImmutableList.of(0),
+                    Optional.of(1));
+            producers.add(context.executor.submit(() -> {
+                for (int i = 0; i < PAGES_PER_DRIVER; i++) {
+                    exchanger.waitForWriting().get();
+                    exchanger.accept(context.page);
+                }
+                return null;
+            }));
+        }
+
+        List<Future<Long>> consumers = new ArrayList<>();
+        for (LocalExchangeSource source : sources) {
+            consumers.add(context.executor.submit(() -> {
+                long positions = 0;
+                while (!source.isFinished()) {
+                    Page page = source.removePage();
+                    if (page == null) {
+                        source.waitForReading().get();
+                    }
+                    else {
+                        positions += page.getPositionCount();
+                    }
+                }
+                return positions;
+            }));
+        }
+
+        for (Future<?> producer : producers) {
+            producer.get();
+        }
+        sources.forEach(LocalExchangeSource::finish);
+
+        long positions = 0;
+        for (Future<Long> consumer : consumers) {
+            positions += consumer.get();
+        }
+        return positions;
+    }
+
+    @Test
+    public void testBenchmark()
+            throws Exception
+    {
+        BenchmarkContext context = new BenchmarkContext();
+        context.setup();
+
+        assertEquals(exchange(context), (long) context.drivers * PAGES_PER_DRIVER * POSITIONS_PER_PAGE);
+
+        context.cleanup();
+    }
+
+    public static void main(String[] args)
+            throws RunnerException
+    {
+        Options options = new OptionsBuilder()
+                .verbosity(VerboseMode.NORMAL)
+                .include(".*" + BenchmarkPartitioningExchanger.class.getSimpleName() + ".*")
+                .build();
+
+        new Runner(options).run();
+    }
+}
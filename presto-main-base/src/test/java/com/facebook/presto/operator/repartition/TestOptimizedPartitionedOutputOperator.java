@@ -75,6 +75,7 @@ import static com.facebook.presto.block.BlockAssertions.Encoding.DICTIONARY;
 import static com.facebook.presto.block.BlockAssertions.Encoding.RUN_LENGTH;
 import static com.facebook.presto.block.BlockAssertions.createLongDictionaryBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createMapType;
 import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
@@ -99,9 +100,11 @@ import static com.facebook.presto.operator.PageAssertions.mergePages;
 import static com.facebook.presto.operator.PageAssertions.updateBlockTypesWithHashBlockAndNullBlock;
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.facebook.presto.tpch.TpchMetadata.TINY_SCHEMA_NAME;
+import static java.lang.String.format;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestOptimizedPartitionedOutputOperator
 {
@@ -561,6 +564,32 @@ public class TestOptimizedPartitionedOutputOperator
         testReplicatedMultiplePages(ImmutableList.of(withDefaultFieldNames(ImmutableList.of(new ArrayType(VARCHAR), createMapType(VARCHAR, withDefaultFieldNames(ImmutableList.of(VARCHAR, VARCHAR)))))));
     }
 
+    @Test
+    public void testPartitionedWithPackedValues()
+    {
+        testPartitionedWithPackedValues(ImmutableList.of(BIGINT));
+        testPartitionedWithPackedValues(ImmutableList.of(INTEGER));
+        testPartitionedWithPackedValues(ImmutableList.of(BIGINT, INTEGER, VARCHAR));
+
+        // Values whose differences overflow
+        Page page = new Page(
+                createRandomLongsBlock(5, 0.0f),
+                createLongsBlock(Long.MIN_VALUE, Long.MAX_VALUE, 0L, Long.MIN_VALUE, Long.MAX_VALUE));
+        testPartitioned(ImmutableList.of(BIGINT, BIGINT), ImmutableList.of(page), new DataSize(128, MEGABYTE), true);
+
+        // Sorted values are delta packed, and low cardinality values are dictionary packed
+        page = new Page(
+                createRandomLongsBlock(POSITION_COUNT, 0.0f),
+                createLongSequenceBlock(1_000_000_000, 1_000_000_000 + POSITION_COUNT),
+                createLongDictionaryBlock(0, POSITION_COUNT));
+        List<Type> types = ImmutableList.of(BIGINT, BIGINT, BIGINT);
+        testPartitioned(types, ImmutableList.of(page), new DataSize(1, KILOBYTE), true);
+
+        long plainSize = testPartitioned(types, ImmutableList.of(page), new DataSize(128, MEGABYTE), false);
+        long packedSize = testPartitioned(types, ImmutableList.of(page), new DataSize(128, MEGABYTE), true);
+        assertTrue(packedSize < plainSize, format("packed size %s is not smaller than plain size %s", packedSize, plainSize));
+    }
+
     @Test
     public void testEmptyPage()
     {
@@ -666,6 +695,18 @@ public class TestOptimizedPartitionedOutputOperator
         testPartitioned(types, pages, new DataSize(1, KILOBYTE));
     }
 
+    private void testPartitionedWithPackedValues(List<Type> targetTypes)
+    {
+        List<Type> types = updateBlockTypesWithHashBlockAndNullBlock(targetTypes, true, false);
+        Page page = PageAssertions.createPageWithRandomData(targetTypes, POSITION_COUNT, true, false, 0.2f, 0.2f, false, ImmutableList.of());
+        testPartitioned(types, ImmutableList.of(page), new DataSize(128, MEGABYTE), true);
+        testPartitioned(types, ImmutableList.of(page), new DataSize(1, KILOBYTE), true);
+
+        page = PageAssertions.createPageWithRandomData(targetTypes, POSITION_COUNT, true, false, 0.2f, 0.2f, true, ImmutableList.of(DICTIONARY, RUN_LENGTH));
+        testPartitioned(types, ImmutableList.of(page), new DataSize(128, MEGABYTE), true);
+        testPartitioned(types, ImmutableList.of(page), new DataSize(1, KILOBYTE), true);
+    }
+
     private void testReplicatedSinglePage(List<Type> targetTypes)
     {
         // Add a block that only contain null as the last block to force replicating all rows.
@@ -689,15 +730,23 @@ public class TestOptimizedPartitionedOutputOperator
 
     private void testPartitionedForZeroBlocks(List<Type> types, List<Page> pages, DataSize maxMemory)
     {
-        testPartitioned(types, pages, maxMemory, ImmutableList.of(), new InterpretedHashGenerator(ImmutableList.of(), new int[0]));
+        testPartitioned(types, pages, maxMemory, ImmutableList.of(), new InterpretedHashGenerator(ImmutableList.of(), new int[0]), false);
     }
 
     private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory)
     {
-        testPartitioned(types, pages, maxMemory, ImmutableList.of(0), new PrecomputedHashGenerator(0));
+        testPartitioned(types, pages, maxMemory, false);
     }
 
-    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator)
+    private long testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, boolean packValues)
+    {
+        return testPartitioned(types, pages, maxMemory, ImmutableList.of(0), new PrecomputedHashGenerator(0), packValues);
+    }
+
+    /**
+     * @return the total size of the serialized pages
+     */
+    private long testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator, boolean packValues)
     {
         TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
         PartitionFunction partitionFunction = new LocalPartitionGenerator(hashGenerator, PARTITION_COUNT);
@@ -707,7 +756,8 @@ public class TestOptimizedPartitionedOutputOperator
                 partitionFunction,
                 outputBuffer,
                 OptionalInt.empty(),
-                maxMemory);
+                maxMemory,
+                packValues);
 
         Map<Integer, List<Page>> expectedPageList = new HashMap<>();
 
@@ -739,6 +789,8 @@ public class TestOptimizedPartitionedOutputOperator
             int key = entry.getKey();
             assertPageEquals(types, actualPages.get(key), entry.getValue());
         }
+
+        return outputBuffer.getSerializedSizeInBytes();
     }
 
     private void testReplicated(List<Type> types, List<Page> pages, DataSize maxMemory)
@@ -897,6 +949,18 @@ public class TestOptimizedPartitionedOutputOperator
             PartitionedOutputBuffer buffer,
             OptionalInt nullChannel,
             DataSize maxMemory)
+    {
+        return createOptimizedPartitionedOutputOperator(types, partitionChannel, partitionFunction, buffer, nullChannel, maxMemory, false);
+    }
+
+    private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator(
+            List<Type> types,
+            List<Integer> partitionChannel,
+            PartitionFunction partitionFunction,
+            PartitionedOutputBuffer buffer,
+            OptionalInt nullChannel,
+            DataSize maxMemory,
+            boolean packValues)
     {
         PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.NONE);
 
@@ -907,7 +971,7 @@ public class TestOptimizedPartitionedOutputOperator
                 false,
                 nullChannel);
 
-        OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory);
+        OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory, packValues);
 
         return (OptimizedPartitionedOutputOperator) operatorFactory
                 .createOutputOperator(0, new PlanNodeId("plan-node-0"), types, Function.identity(), Optional.of(outputPartitioning), serdeFactory)
@@ -956,6 +1020,7 @@ public class TestOptimizedPartitionedOutputOperator
             extends PartitionedOutputBuffer
     {
         private final Map<Integer, List<Page>> pages = new HashMap<>();
+        private long serializedSizeInBytes;
 
         public TestingPartitionedOutputBuffer(
                 String taskInstanceId,
@@ -972,6 +1037,7 @@ public class TestOptimizedPartitionedOutputOperator
         public void enqueue(Lifespan lifespan, int partitionNumber, List<SerializedPage> pages)
         {
             this.pages.computeIfAbsent(partitionNumber, k -> new ArrayList<>());
+            pages.forEach(page -> serializedSizeInBytes += page.getSizeInBytes());
             pages.stream().map(PAGES_SERDE::deserialize).forEach(this.pages.get(partitionNumber)::add);
         }
 
@@ -979,5 +1045,10 @@ public class TestOptimizedPartitionedOutputOperator
         {
             return pages;
         }
+
+        public long getSerializedSizeInBytes()
+        {
+            return serializedSizeInBytes;
+        }
     }
 }
@@ -18,9 +18,11 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.PageAssertions;
 import com.facebook.presto.spi.page.PageCodecMarker;
+import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.page.PagesSerdeUtil;
 import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
@@ -28,16 +30,24 @@ import com.google.common.collect.Iterators;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.OutputStreamSliceOutput;
+import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
@@ -48,6 +58,7 @@ import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.lang.Double.doubleToLongBits;
 import static java.nio.file.Files.newInputStream;
+import static java.nio.file.StandardOpenOption.READ;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -85,17 +96,134 @@ public class TestFileSingleStreamSpiller
     public void testSpillCompression(CompressionCodec codec)
             throws Exception
     {
-        assertSpill(codec, false);
+        assertSpill(codec, false, false, 0);
     }
 
     @Test(dataProvider = "testCompressionCodec")
     public void testSpillEncryptionWithCompression(CompressionCodec codec)
             throws Exception
     {
-        assertSpill(codec, true);
+        assertSpill(codec, true, false, 0);
     }
 
-    private void assertSpill(CompressionCodec compressionCodec, boolean encryption)
+    @Test(dataProvider = "testCompressionCodec")
+    public void testMappedSpillWithCompression(CompressionCodec codec)
+            throws Exception
+    {
+        assertSpill(codec, false, true, 0);
+        assertSpill(codec, true, true, 0);
+    }
+
+    @Test(dataProvider = "testCompressionCodec")
+    public void testReadAhead(CompressionCodec codec)
+            throws Exception
+    {
+        assertSpill(codec, false, false, 2);
+        assertSpill(codec, false, true, 2);
+    }
+
+    @Test
+    public void testMappedReadAcrossRegions()
+            throws Exception
+    {
+        File spillPath = tempDirectory.toPath().resolve(UUID.randomUUID().toString()).toFile();
+        spillPath.mkdirs();
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.NONE).createPagesSerde();
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        for (int readAheadPages : new int[] {0, 1, 3}) {
+            // regions smaller than a page force a new mapping for every page
+            for (long mappedRegionSize : new long[] {1, 100, 1000, 1024 * 1024}) {
+                FileSingleStreamSpiller spiller = new FileSingleStreamSpiller(
+                        serde,
+                        executor,
+                        spillPath.toPath(),
+                        new SpillerStats(),
+                        new TestingSpillContext(),
+                        memoryContext,
+                        Optional.empty(),
+                        true,
+                        mappedRegionSize,
+                        readAheadPages,
+                        executor);
+
+                List<Page> pages = new ArrayList<>();
+                for (int i = 0; i < 20; i++) {
+                    pages.add(buildPage(i, i % 5 + 1));
+                }
+                spiller.spill(pages.iterator()).get();
+
+                List<Page> spilledPages = ImmutableList.copyOf(spiller.getSpilledPages());
+                assertEquals(spilledPages.size(), pages.size());
+                for (int i = 0; i < pages.size(); i++) {
+                    PageAssertions.assertPageEquals(TYPES, spilledPages.get(i), pages.get(i));
+                }
+                spiller.close();
+                assertEquals(listFiles(spillPath.toPath()).size(), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMappedPagesOutliveRegion()
+            throws Exception
+    {
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.NONE).createPagesSerde();
+        File spillFile = new File(tempDirectory, UUID.randomUUID().toString());
+        List<Page> pages = new ArrayList<>();
+        try (SliceOutput output = new OutputStreamSliceOutput(new FileOutputStream(spillFile))) {
+            for (int i = 0; i < 10; i++) {
+                pages.add(buildPage(i, i % 5 + 1));
+                PagesSerdeUtil.writeSerializedPage(output, serde.serialize(pages.get(i)));
+            }
+        }
+
+        // every page is mapped in a region of its own, which is unmapped once the next page is read
+        List<SerializedPage> serializedPages;
+        try (FileSingleStreamSpiller.MappedSerializedPageIterator iterator = new FileSingleStreamSpiller.MappedSerializedPageIterator(FileChannel.open(spillFile.toPath(), READ), 1)) {
+            serializedPages = ImmutableList.copyOf(iterator);
+        }
+        assertEquals(serializedPages.size(), pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            PageAssertions.assertPageEquals(TYPES, serde.deserialize(serializedPages.get(i)), pages.get(i));
+        }
+    }
+
+    @Test
+    public void testCloseWhileReadingAhead()
+            throws Exception
+    {
+        File spillPath = tempDirectory.toPath().resolve(UUID.randomUUID().toString()).toFile();
+        spillPath.mkdirs();
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.NONE).createPagesSerde();
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        FileSingleStreamSpiller spiller = new FileSingleStreamSpiller(
+                serde,
+                executor,
+                spillPath.toPath(),
+                new SpillerStats(),
+                new TestingSpillContext(),
+                memoryContext,
+                Optional.empty(),
+                true,
+                100,
+                3,
+                executor);
+
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            pages.add(buildPage(i, i % 5 + 1));
+        }
+        spiller.spill(pages.iterator()).get();
+
+        Iterator<Page> spilledPages = spiller.getSpilledPages();
+        PageAssertions.assertPageEquals(TYPES, spilledPages.next(), pages.get(0));
+        // the pending reads are cancelled and awaited, and the regions unmapped, before the file is deleted
+        spiller.close();
+        assertEquals(listFiles(spillPath.toPath()).size(), 0);
+        assertEquals(memoryContext.getBytes(), 0);
+    }
+
+    private void assertSpill(CompressionCodec compressionCodec, boolean encryption, boolean mmapReadEnabled, int readAheadPages)
             throws Exception
     {
         File spillPath = tempDirectory.toPath().resolve(UUID.randomUUID().toString()).toFile();
@@ -105,8 +233,11 @@ public class TestFileSingleStreamSpiller
                 new SpillerStats(),
                 ImmutableList.of(spillPath.toPath()),
                 1.0,
-                compressionCodec,
-                encryption);
+                new NodeSpillConfig()
+                        .setSpillCompressionCodec(compressionCodec)
+                        .setSpillEncryptionEnabled(encryption)
+                        .setSpillMmapReadEnabled(mmapReadEnabled)
+                        .setSpillReadAheadPages(readAheadPages));
         LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
         SingleStreamSpiller singleStreamSpiller = spillerFactory.create(TYPES, new TestingSpillContext(), memoryContext);
         assertTrue(singleStreamSpiller instanceof FileSingleStreamSpiller);
@@ -134,7 +265,7 @@ public class TestFileSingleStreamSpiller
         // assertEquals(memoryContext.getBytes(), 0);
 
         Iterator<Page> spilledPagesIterator = spiller.getSpilledPages();
-        assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE);
+        assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE + (long) readAheadPages * DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
         ImmutableList<Page> spilledPages = ImmutableList.copyOf(spilledPagesIterator);
         // The spillers release their memory reservations when they are closed, therefore at this point
         // they will have non-zero memory reservation.
@@ -162,4 +293,19 @@ public class TestFileSingleStreamSpiller
 
         return new Page(col1.build(), col2.build(), col3.build());
     }
+
+    private Page buildPage(int seed, int positionCount)
+    {
+        BlockBuilder col1 = BIGINT.createBlockBuilder(null, positionCount);
+        BlockBuilder col2 = DOUBLE.createBlockBuilder(null, positionCount);
+        BlockBuilder col3 = VARBINARY.createBlockBuilder(null, positionCount);
+
+        for (int i = 0; i < positionCount; i++) {
+            BIGINT.writeLong(col1, seed * 100L + i);
+            DOUBLE.writeDouble(col2, seed + i / 10.0);
+            VARBINARY.writeSlice(col3, Slices.utf8Slice("value " + seed + " " + i));
+        }
+
+        return new Page(col1.build(), col2.build(), col3.build());
+    }
 }
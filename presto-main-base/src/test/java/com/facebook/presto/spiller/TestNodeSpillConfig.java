@@ -38,6 +38,12 @@ public class TestNodeSpillConfig
                 .setQueryMaxSpillPerNode(new DataSize(100, GIGABYTE))
                 .setSpillCompressionCodec(CompressionCodec.NONE)
                 .setSpillEncryptionEnabled(false)
+                .setSpillMmapReadEnabled(false)
+                .setSpillReadAheadPages(0)
+                .setSpillReadAheadThreads(8)
+                .setSpillStripingEnabled(false)
+                .setSpillStripeExtentSize(new DataSize(1, MEGABYTE))
+                .setSpillMaxPendingWrites(2)
                 .setTempStorageBufferSize(new DataSize(4, KILOBYTE)));
     }
 
@@ -50,6 +56,12 @@ public class TestNodeSpillConfig
                 .put("experimental.query-max-spill-per-node", "15 MB")
                 .put("experimental.spill-compression-codec", "LZ4")
                 .put("experimental.spill-encryption-enabled", "true")
+                .put("experimental.spill-mmap-read-enabled", "true")
+                .put("experimental.spill-read-ahead-pages", "4")
+                .put("experimental.spill-read-ahead-threads", "16")
+                .put("experimental.spill-striping-enabled", "true")
+                .put("experimental.spill-stripe-extent-size", "8MB")
+                .put("experimental.spill-max-pending-writes", "6")
                 .put("experimental.temp-storage-buffer-size", "24MB")
                 .build();
 
@@ -59,6 +71,12 @@ public class TestNodeSpillConfig
                 .setQueryMaxSpillPerNode(new DataSize(15, MEGABYTE))
                 .setSpillCompressionCodec(CompressionCodec.LZ4)
                 .setSpillEncryptionEnabled(true)
+                .setSpillMmapReadEnabled(true)
+                .setSpillReadAheadPages(4)
+                .setSpillReadAheadThreads(16)
+                .setSpillStripingEnabled(true)
+                .setSpillStripeExtentSize(new DataSize(8, MEGABYTE))
+                .setSpillMaxPendingWrites(6)
                 .setTempStorageBufferSize(new DataSize(24, MEGABYTE));
 
         assertFullMapping(properties, expected);
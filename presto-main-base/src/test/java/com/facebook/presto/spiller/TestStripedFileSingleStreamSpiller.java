@@ -0,0 +1,209 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.spiller;
+
+import com.facebook.presto.CompressionCodec;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.buffer.PagesSerdeFactory;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.PageAssertions;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import io.airlift.slice.Slices;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.google.common.collect.Iterators.transform;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.MoreFiles.listFiles;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestStripedFileSingleStreamSpiller
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    private final ListeningExecutorService executor = listeningDecorator(newCachedThreadPool());
+    private final File tempDirectory = Files.createTempDir();
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws Exception
+    {
+        executor.shutdown();
+        deleteRecursively(tempDirectory.toPath(), ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testStripedSpill()
+            throws Exception
+    {
+        for (int extentSize : new int[] {1, 1000, 100_000}) {
+            for (int maxPendingWrites : new int[] {1, 4}) {
+                assertStripedSpill(extentSize, maxPendingWrites, false, 0);
+            }
+        }
+    }
+
+    @Test
+    public void testMappedReadAndReadAhead()
+            throws Exception
+    {
+        for (int extentSize : new int[] {1, 1000, 100_000}) {
+            assertStripedSpill(extentSize, 2, true, 0);
+            assertStripedSpill(extentSize, 2, false, 3);
+            assertStripedSpill(extentSize, 2, true, 3);
+        }
+    }
+
+    @Test
+    public void testSingleExtent()
+            throws Exception
+    {
+        List<Path> spillPaths = createSpillPaths(3);
+        SpillerStats spillerStats = new SpillerStats();
+        StripedFileSingleStreamSpiller spiller = createSpiller(spillPaths, spillerStats, newSimpleAggregatedMemoryContext().newLocalMemoryContext("test"), 1024 * 1024, 2, false, 0);
+
+        Page page = buildPage(0, 10);
+        spiller.spill(page).get();
+
+        assertTrue(spillerStats.getDiskStats(spillPaths.get(0)).getWrittenBytes().getTotalCount() > 0);
+        assertEquals(spillerStats.getDiskStats(spillPaths.get(1)).getWrittenBytes().getTotalCount(), 0);
+        assertEquals(spillerStats.getDiskStats(spillPaths.get(2)).getWrittenBytes().getTotalCount(), 0);
+
+        List<Page> spilledPages = ImmutableList.copyOf(spiller.getSpilledPages());
+        assertEquals(spilledPages.size(), 1);
+        PageAssertions.assertPageEquals(TYPES, spilledPages.get(0), page);
+        spiller.close();
+    }
+
+    private void assertStripedSpill(int extentSize, int maxPendingWritesPerPath, boolean mmapReadEnabled, int readAheadPages)
+            throws Exception
+    {
+        List<Path> spillPaths = createSpillPaths(3);
+        SpillerStats spillerStats = new SpillerStats();
+        LocalMemoryContext memoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext("test");
+        StripedFileSingleStreamSpiller spiller = createSpiller(spillPaths, spillerStats, memoryContext, extentSize, maxPendingWritesPerPath, mmapReadEnabled, readAheadPages);
+        // memory is only reserved once pages are spilled
+        assertEquals(memoryContext.getBytes(), 0);
+
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            pages.add(buildPage(i, i % 7 + 1));
+        }
+        // memory is reserved while pages are spilled, and released once they are written
+        long reservedBytes = (long) (maxPendingWritesPerPath * spillPaths.size() + 1) * extentSize;
+        spiller.spill(transform(pages.subList(0, 20).iterator(), page -> {
+            assertEquals(memoryContext.getBytes(), reservedBytes);
+            return page;
+        })).get();
+        assertEquals(memoryContext.getBytes(), 0);
+        spiller.spill(pages.subList(20, 50).iterator()).get();
+        assertEquals(memoryContext.getBytes(), 0);
+
+        for (Path spillPath : spillPaths) {
+            assertEquals(listFiles(spillPath).size(), 1);
+            SpillerDiskStats diskStats = spillerStats.getDiskStats(spillPath);
+            assertEquals(diskStats.getQueuedWrites(), 0);
+            assertEquals(diskStats.getQueuedBytes(), 0);
+            if (extentSize < 1000) {
+                // every page fills an extent, so all the paths are written to
+                assertTrue(diskStats.getWrittenBytes().getTotalCount() > 0);
+            }
+        }
+        assertEquals(spillerStats.getQueuedSpillWrites(), 0);
+
+        Iterator<Page> spilledPagesIterator = spiller.getSpilledPages();
+        assertEquals(memoryContext.getBytes(), FileSingleStreamSpiller.BUFFER_SIZE + (long) readAheadPages * DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
+        List<Page> spilledPages = ImmutableList.copyOf(spilledPagesIterator);
+        assertEquals(spilledPages.size(), pages.size());
+        for (int i = 0; i < pages.size(); i++) {
+            PageAssertions.assertPageEquals(TYPES, spilledPages.get(i), pages.get(i));
+        }
+
+        spiller.close();
+        for (Path spillPath : spillPaths) {
+            assertEquals(listFiles(spillPath).size(), 0);
+        }
+        assertEquals(memoryContext.getBytes(), 0);
+    }
+
+    private StripedFileSingleStreamSpiller createSpiller(
+            List<Path> spillPaths,
+            SpillerStats spillerStats,
+            LocalMemoryContext memoryContext,
+            int extentSize,
+            int maxPendingWritesPerPath,
+            boolean mmapReadEnabled,
+            int readAheadPages)
+    {
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), CompressionCodec.NONE).createPagesSerde();
+        return new StripedFileSingleStreamSpiller(
+                serde,
+                executor,
+                executor,
+                spillPaths,
+                spillerStats,
+                new TestingSpillContext(),
+                memoryContext,
+                Optional.empty(),
+                extentSize,
+                maxPendingWritesPerPath,
+                mmapReadEnabled,
+                readAheadPages,
+                executor);
+    }
+
+    private List<Path> createSpillPaths(int count)
+    {
+        ImmutableList.Builder<Path> spillPaths = ImmutableList.builder();
+        for (int i = 0; i < count; i++) {
+            File spillPath = tempDirectory.toPath().resolve(UUID.randomUUID().toString()).toFile();
+            assertTrue(spillPath.mkdirs());
+            spillPaths.add(spillPath.toPath());
+        }
+        return spillPaths.build();
+    }
+
+    private static Page buildPage(int seed, int positionCount)
+    {
+        BlockBuilder col1 = BIGINT.createBlockBuilder(null, positionCount);
+        BlockBuilder col2 = VARCHAR.createBlockBuilder(null, positionCount);
+        for (int i = 0; i < positionCount; i++) {
+            BIGINT.writeLong(col1, seed * 100L + i);
+            VARCHAR.writeSlice(col2, Slices.utf8Slice("value " + seed + " " + i));
+        }
+        return new Page(col1.build(), col2.build());
+    }
+}
@@ -40,6 +40,7 @@ import java.util.Map;
 
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertFullMapping;
 import static com.facebook.airlift.configuration.testing.ConfigAssertions.assertRecordedDefaults;
+import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.airlift.units.DataSize.Unit.GIGABYTE;
 import static com.facebook.airlift.units.DataSize.Unit.KILOBYTE;
 import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
@@ -79,6 +80,8 @@ public class TestFeaturesConfig
                 .setMaxFailedTaskPercentage(0.3)
                 .setConcurrentLifespansPerTask(0)
                 .setFastInequalityJoins(true)
+                .setOffHeapJoinHashEnabled(false)
+                .setJoinBatchProbeEnabled(false)
                 .setColocatedJoinsEnabled(true)
                 .setSpatialJoinsEnabled(true)
                 .setJoinReorderingStrategy(JoinReorderingStrategy.AUTOMATIC)
@@ -107,12 +110,15 @@ public class TestFeaturesConfig
                 .setOptimizeHashGeneration(true)
                 .setPushTableWriteThroughUnion(true)
                 .setDictionaryAggregation(false)
+                .setAggregationHashPresizingEnabled(false)
+                .setPartitionedAggregationHashEnabled(false)
                 .setConfidenceBasedBroadcastEnabled(false)
                 .setRetryQueryWithHistoryBasedOptimizationEnabled(false)
                 .setTreatLowConfidenceZeroEstimationAsUnknownEnabled(false)
                 .setAggregationPartitioningMergingStrategy(LEGACY)
                 .setSpillEnabled(false)
                 .setJoinSpillingEnabled(true)
+                .setDistinctSpillingEnabled(true)
                 .setSpillerSpillPaths("")
                 .setSpillerThreads(4)
                 .setSpillMaxUsedSpaceThreshold(0.9)
@@ -131,6 +137,7 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(100)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(10, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(0)
+                .setDynamicFilteringBloomFilterSizePerDriver(new DataSize(0, BYTE))
                 .setDistributedDynamicFilterStrategy(DistributedDynamicFilterStrategy.DISABLED)
                 .setDistributedDynamicFilterMaxWaitTime(new Duration(2, SECONDS))
                 .setDistributedDynamicFilterMaxWaitExtensions(2)
@@ -138,6 +145,7 @@ public class TestFeaturesConfig
                 .setDistributedDynamicFilterCardinalityRatioThreshold(0.1)
                 .setDistributedDynamicFilterOnReplicatedJoins(false)
                 .setFragmentResultCachingEnabled(false)
+                .setQueryResultCachingEnabled(false)
                 .setEnableStatsCalculator(true)
                 .setEnableStatsCollectionForTemporaryTable(false)
                 .setIgnoreStatsCalculatorFailures(true)
@@ -146,6 +154,8 @@ public class TestFeaturesConfig
                 .setExchangeCompressionCodec(CompressionCodec.NONE)
                 .setExchangeChecksumEnabled(false)
                 .setEnableIntermediateAggregations(false)
+                .setEnableIntermediateAggregationsForLargeStates(false)
+                .setIntermediateAggregationLargeStateSize(new DataSize(64, KILOBYTE))
                 .setEnableParallelizeChainedAggregations(false)
                 .setPushAggregationThroughJoin(true)
                 .setPushPartialAggregationThroughJoin(false)
@@ -185,6 +195,7 @@ public class TestFeaturesConfig
                 .setPushdownDereferenceEnabled(false)
                 .setIndexLoaderTimeout(new Duration(20, SECONDS))
                 .setOptimizedRepartitioningEnabled(false)
+                .setOptimizedRepartitioningColumnarEncodingEnabled(false)
                 .setListBuiltInFunctionsOnly(true)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.AUTOMATIC)
                 .setExperimentalFunctionsEnabled(false)
@@ -207,6 +218,9 @@ public class TestFeaturesConfig
                 .setSpoolingOutputBufferEnabled(false)
                 .setSpoolingOutputBufferThreshold(new DataSize(8, MEGABYTE))
                 .setSpoolingOutputBufferTempStorage("local")
+                .setSpooledQueryOutputEnabled(false)
+                .setSpooledQueryOutputSegmentSize(new DataSize(16, MEGABYTE))
+                .setSpooledQueryOutputTempStorage("local")
                 .setPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled(false)
                 .setPartialResultsEnabled(false)
                 .setPartialResultsCompletionRatioThreshold(0.5)
@@ -342,7 +356,9 @@ public class TestFeaturesConfig
                 .put("dynamic-filtering-max-per-driver-row-count", "256")
                 .put("dynamic-filtering-max-per-driver-size", "64kB")
                 .put("dynamic-filtering-range-row-limit-per-driver", "1000")
+                .put("dynamic-filtering-bloom-filter-size-per-driver", "1MB")
                 .put("fragment-result-cache.enabled", "true")
+                .put("query-result-cache.enabled", "true")
                 .put("experimental.enable-stats-calculator", "false")
                 .put("experimental.enable-stats-collection-for-temporary-table", "true")
                 .put("optimizer.ignore-stats-calculator-failures", "false")
@@ -359,6 +375,8 @@ public class TestFeaturesConfig
                 .put("max-failed-task-percentage", "0.8")
                 .put("concurrent-lifespans-per-task", "1")
                 .put("fast-inequality-joins", "false")
+                .put("off-heap-join-hash-enabled", "true")
+                .put("join-batch-probe-enabled", "true")
                 .put("colocated-joins-enabled", "false")
                 .put("spatial-joins-enabled", "false")
                 .put("optimizer.join-reordering-strategy", "NONE")
@@ -388,6 +406,8 @@ public class TestFeaturesConfig
                 .put("optimizer.optimize-mixed-distinct-aggregations", "true")
                 .put("optimizer.push-table-write-through-union", "false")
                 .put("optimizer.dictionary-aggregation", "true")
+                .put("aggregation-hash-presizing-enabled", "true")
+                .put("partitioned-aggregation-hash-enabled", "true")
                 .put("optimizer.confidence-based-broadcast", "true")
                 .put("optimizer.retry-query-with-history-based-optimization", "true")
                 .put("optimizer.treat-low-confidence-zero-estimation-as-unknown", "true")
@@ -406,6 +426,7 @@ public class TestFeaturesConfig
                 .put("optimizer.local-exchange-parent-preference-strategy", "automatic")
                 .put("experimental.spill-enabled", "true")
                 .put("experimental.join-spill-enabled", "false")
+                .put("experimental.distinct-spill-enabled", "false")
                 .put("experimental.spiller-spill-path", "/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .put("experimental.spiller-threads", "42")
                 .put("experimental.spiller-max-used-space-threshold", "0.8")
@@ -419,6 +440,8 @@ public class TestFeaturesConfig
                 .put("exchange.compression-codec", "LZ4")
                 .put("exchange.checksum-enabled", "true")
                 .put("optimizer.enable-intermediate-aggregations", "true")
+                .put("optimizer.enable-intermediate-aggregations-for-large-states", "true")
+                .put("optimizer.intermediate-aggregation-large-state-size", "1MB")
                 .put("optimizer.parallelize-chained-aggregation", "true")
                 .put("optimizer.force-single-node-output", "false")
                 .put("pages-index.eager-compaction-enabled", "true")
@@ -446,6 +469,7 @@ public class TestFeaturesConfig
                 .put("experimental.pushdown-dereference-enabled", "true")
                 .put("index-loader-timeout", "10s")
                 .put("experimental.optimized-repartitioning", "true")
+                .put("experimental.optimized-repartitioning-columnar-encoding", "true")
                 .put("list-built-in-functions-only", "false")
                 .put("partitioning-precision-strategy", "PREFER_EXACT_PARTITIONING")
                 .put("experimental-functions-enabled", "true")
@@ -468,6 +492,9 @@ public class TestFeaturesConfig
                 .put("spooling-output-buffer-enabled", "true")
                 .put("spooling-output-buffer-threshold", "16MB")
                 .put("spooling-output-buffer-temp-storage", "tempfs")
+                .put("spooled-query-output-enabled", "true")
+                .put("spooled-query-output-segment-size", "64MB")
+                .put("spooled-query-output-temp-storage", "tempfs")
                 .put("spark.assign-bucket-to-partition-for-partitioned-table-write-enabled", "true")
                 .put("partial-results-enabled", "true")
                 .put("partial-results-completion-ratio-threshold", "0.9")
@@ -605,6 +632,7 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(256)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(64, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(1000)
+                .setDynamicFilteringBloomFilterSizePerDriver(new DataSize(1, MEGABYTE))
                 .setDistributedDynamicFilterStrategy(DistributedDynamicFilterStrategy.COST_BASED)
                 .setDistributedDynamicFilterMaxWaitTime(new Duration(5, SECONDS))
                 .setDistributedDynamicFilterMaxWaitExtensions(3)
@@ -612,6 +640,7 @@ public class TestFeaturesConfig
                 .setDistributedDynamicFilterCardinalityRatioThreshold(0.2)
                 .setDistributedDynamicFilterOnReplicatedJoins(true)
                 .setFragmentResultCachingEnabled(true)
+                .setQueryResultCachingEnabled(true)
                 .setEnableStatsCalculator(false)
                 .setEnableStatsCollectionForTemporaryTable(true)
                 .setIgnoreStatsCalculatorFailures(false)
@@ -627,6 +656,8 @@ public class TestFeaturesConfig
                 .setMaxFailedTaskPercentage(0.8)
                 .setConcurrentLifespansPerTask(1)
                 .setFastInequalityJoins(false)
+                .setOffHeapJoinHashEnabled(true)
+                .setJoinBatchProbeEnabled(true)
                 .setColocatedJoinsEnabled(false)
                 .setSpatialJoinsEnabled(false)
                 .setJoinReorderingStrategy(NONE)
@@ -656,6 +687,8 @@ public class TestFeaturesConfig
                 .setOptimizeMixedDistinctAggregations(true)
                 .setPushTableWriteThroughUnion(false)
                 .setDictionaryAggregation(true)
+                .setAggregationHashPresizingEnabled(true)
+                .setPartitionedAggregationHashEnabled(true)
                 .setConfidenceBasedBroadcastEnabled(true)
                 .setRetryQueryWithHistoryBasedOptimizationEnabled(true)
                 .setTreatLowConfidenceZeroEstimationAsUnknownEnabled(true)
@@ -672,6 +705,7 @@ public class TestFeaturesConfig
                 .setPushProjectionThroughCrossJoin(true)
                 .setSpillEnabled(true)
                 .setJoinSpillingEnabled(false)
+                .setDistinctSpillingEnabled(false)
                 .setSpillerSpillPaths("/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .setSpillerThreads(42)
                 .setSpillMaxUsedSpaceThreshold(0.8)
@@ -685,6 +719,8 @@ public class TestFeaturesConfig
                 .setExchangeCompressionCodec(CompressionCodec.LZ4)
                 .setExchangeChecksumEnabled(true)
                 .setEnableIntermediateAggregations(true)
+                .setEnableIntermediateAggregationsForLargeStates(true)
+                .setIntermediateAggregationLargeStateSize(new DataSize(1, MEGABYTE))
                 .setEnableParallelizeChainedAggregations(true)
                 .setForceSingleNodeOutput(false)
                 .setPagesIndexEagerCompactionEnabled(true)
@@ -714,6 +750,7 @@ public class TestFeaturesConfig
                 .setPushdownDereferenceEnabled(true)
                 .setIndexLoaderTimeout(new Duration(10, SECONDS))
                 .setOptimizedRepartitioningEnabled(true)
+                .setOptimizedRepartitioningColumnarEncodingEnabled(true)
                 .setListBuiltInFunctionsOnly(false)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.PREFER_EXACT_PARTITIONING)
                 .setExperimentalFunctionsEnabled(true)
@@ -737,6 +774,9 @@ public class TestFeaturesConfig
                 .setSpoolingOutputBufferEnabled(true)
                 .setSpoolingOutputBufferThreshold(new DataSize(16, MEGABYTE))
                 .setSpoolingOutputBufferTempStorage("tempfs")
+                .setSpooledQueryOutputEnabled(true)
+                .setSpooledQueryOutputSegmentSize(new DataSize(64, MEGABYTE))
+                .setSpooledQueryOutputTempStorage("tempfs")
                 .setPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled(true)
                 .setPartialResultsEnabled(true)
                 .setPartialResultsCompletionRatioThreshold(0.9)
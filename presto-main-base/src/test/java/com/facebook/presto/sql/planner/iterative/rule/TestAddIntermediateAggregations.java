@@ -13,7 +13,12 @@
  */
 package com.facebook.presto.sql.planner.iterative.rule;
 
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.cost.PlanNodeStatsEstimate;
 import com.facebook.presto.spi.plan.AggregationNode;
+import com.facebook.presto.spi.plan.Assignments;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spi.relation.CallExpression;
 import com.facebook.presto.sql.planner.assertions.ExpectedValueProvider;
 import com.facebook.presto.sql.planner.assertions.PlanMatchPattern;
 import com.facebook.presto.sql.planner.iterative.rule.test.BaseRuleTest;
@@ -26,8 +31,12 @@ import org.testng.annotations.Test;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.ENABLE_INTERMEDIATE_AGGREGATIONS;
+import static com.facebook.presto.SystemSessionProperties.ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES;
+import static com.facebook.presto.SystemSessionProperties.INTERMEDIATE_AGGREGATION_LARGE_STATE_SIZE;
 import static com.facebook.presto.SystemSessionProperties.TASK_CONCURRENCY;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.FINAL;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.INTERMEDIATE;
 import static com.facebook.presto.spi.plan.AggregationNode.Step.PARTIAL;
@@ -42,6 +51,7 @@ import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.LOCAL;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Scope.REMOTE_STREAMING;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.GATHER;
 import static com.facebook.presto.sql.planner.plan.ExchangeNode.Type.REPARTITION;
+import static com.facebook.presto.sql.relational.Expressions.constant;
 
 public class TestAddIntermediateAggregations
         extends BaseRuleTest
@@ -51,7 +61,7 @@ public class TestAddIntermediateAggregations
     {
         ExpectedValueProvider<FunctionCall> aggregationPattern = PlanMatchPattern.functionCall("count", false, ImmutableList.of(anySymbol()));
 
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "true")
                 .setSystemProperty(TASK_CONCURRENCY, "4")
                 .on(p -> p.aggregation(af -> {
@@ -109,7 +119,7 @@ public class TestAddIntermediateAggregations
         ExpectedValueProvider<FunctionCall> rawInputCount = PlanMatchPattern.functionCall("count", false, ImmutableList.of());
         ExpectedValueProvider<FunctionCall> partialInputCount = PlanMatchPattern.functionCall("count", false, ImmutableList.of(anySymbol()));
 
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "true")
                 .setSystemProperty(TASK_CONCURRENCY, "4")
                 .on(p -> p.aggregation(af -> {
@@ -163,7 +173,7 @@ public class TestAddIntermediateAggregations
     {
         ExpectedValueProvider<FunctionCall> aggregationPattern = PlanMatchPattern.functionCall("count", false, ImmutableList.of(anySymbol()));
 
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "true")
                 .setSystemProperty(TASK_CONCURRENCY, "4")
                 .on(p -> p.aggregation(af -> {
@@ -219,7 +229,7 @@ public class TestAddIntermediateAggregations
     @Test
     public void testSessionDisable()
     {
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "false")
                 .setSystemProperty(TASK_CONCURRENCY, "4")
                 .on(p -> p.aggregation(af -> {
@@ -243,7 +253,7 @@ public class TestAddIntermediateAggregations
     {
         ExpectedValueProvider<FunctionCall> aggregationPattern = PlanMatchPattern.functionCall("count", false, ImmutableList.of(anySymbol()));
 
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "true")
                 .setSystemProperty(TASK_CONCURRENCY, "1")
                 .on(p -> p.aggregation(af -> {
@@ -285,7 +295,7 @@ public class TestAddIntermediateAggregations
     @Test
     public void testWithGroups()
     {
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "true")
                 .setSystemProperty(TASK_CONCURRENCY, "4")
                 .on(p -> p.aggregation(af -> {
@@ -308,7 +318,7 @@ public class TestAddIntermediateAggregations
     {
         ExpectedValueProvider<FunctionCall> aggregationPattern = PlanMatchPattern.functionCall("count", false, ImmutableList.of(anySymbol()));
 
-        tester().assertThat(new AddIntermediateAggregations())
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
                 .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, "true")
                 .setSystemProperty(TASK_CONCURRENCY, "4")
                 .on(p -> p.aggregation(af -> {
@@ -357,4 +367,266 @@ public class TestAddIntermediateAggregations
                                                                                                 PARTIAL,
                                                                                                 values(ImmutableMap.of("a", 0))))))))))));
     }
+
+    @Test
+    public void testLargeStates()
+    {
+        ExpectedValueProvider<FunctionCall> aggregationPattern = PlanMatchPattern.functionCall("array_agg", false, ImmutableList.of(anySymbol()));
+
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
+                .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, "true")
+                .setSystemProperty(TASK_CONCURRENCY, "1")
+                .overrideStats("values", PlanNodeStatsEstimate.builder()
+                        .setOutputRowCount(100_000)
+                        .build())
+                .on(p -> p.aggregation(af -> {
+                    p.variable("a", BIGINT);
+                    p.variable("b", new ArrayType(BIGINT));
+                    p.variable("c", new ArrayType(BIGINT));
+                    CallExpression partial = (CallExpression) p.rowExpression("array_agg(a)");
+                    af.globalGrouping()
+                            .step(AggregationNode.Step.FINAL)
+                            .addAggregation(
+                                    p.variable("c", new ArrayType(BIGINT)),
+                                    new CallExpression(partial.getDisplayName(), partial.getFunctionHandle(), partial.getType(), ImmutableList.of(p.variable("b", new ArrayType(BIGINT)))))
+                            .source(
+                                    p.gatheringExchange(
+                                            ExchangeNode.Scope.REMOTE_STREAMING,
+                                            p.aggregation(ap -> ap.globalGrouping()
+                                                    .step(AggregationNode.Step.PARTIAL)
+                                                    .addAggregation(p.variable("b", new ArrayType(BIGINT)), partial)
+                                                    .source(
+                                                            p.values(new PlanNodeId("values"), p.variable("a", BIGINT))))));
+                }))
+                .matches(
+                        aggregation(
+                                globalAggregation(),
+                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                ImmutableMap.of(),
+                                Optional.empty(),
+                                FINAL,
+                                exchange(REMOTE_STREAMING, GATHER,
+                                        aggregation(
+                                                globalAggregation(),
+                                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                                ImmutableMap.of(),
+                                                Optional.empty(),
+                                                INTERMEDIATE,
+                                                exchange(REMOTE_STREAMING, REPARTITION,
+                                                        aggregation(
+                                                                globalAggregation(),
+                                                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                                                ImmutableMap.of(),
+                                                                Optional.empty(),
+                                                                INTERMEDIATE,
+                                                                exchange(LOCAL, GATHER,
+                                                                        aggregation(
+                                                                                globalAggregation(),
+                                                                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                                                                ImmutableMap.of(),
+                                                                                Optional.empty(),
+                                                                                PARTIAL,
+                                                                                values(ImmutableMap.of("a", 0))))))))));
+    }
+
+    @Test
+    public void testLargeApproxPercentileStates()
+    {
+        ExpectedValueProvider<FunctionCall> finalPattern = PlanMatchPattern.functionCall("approx_percentile", false, ImmutableList.of(anySymbol()));
+        ExpectedValueProvider<FunctionCall> partialPattern = PlanMatchPattern.functionCall("approx_percentile", false, ImmutableList.of(anySymbol(), anySymbol()));
+
+        // the digests of the default accuracy exceed the default threshold even without statistics
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
+                .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, "true")
+                .setSystemProperty(TASK_CONCURRENCY, "1")
+                .on(p -> p.aggregation(af -> {
+                    p.variable("a", DOUBLE);
+                    p.variable("p", DOUBLE);
+                    CallExpression partial = (CallExpression) p.rowExpression("approx_percentile(a, p)");
+                    af.globalGrouping()
+                            .step(AggregationNode.Step.FINAL)
+                            .addAggregation(
+                                    p.variable("c", DOUBLE),
+                                    new CallExpression(partial.getDisplayName(), partial.getFunctionHandle(), partial.getType(), ImmutableList.of(p.variable("b", VARBINARY))))
+                            .source(
+                                    p.gatheringExchange(
+                                            ExchangeNode.Scope.REMOTE_STREAMING,
+                                            p.aggregation(ap -> ap.globalGrouping()
+                                                    .step(AggregationNode.Step.PARTIAL)
+                                                    .addAggregation(p.variable("b", VARBINARY), partial)
+                                                    .source(
+                                                            p.values(p.variable("a", DOUBLE), p.variable("p", DOUBLE))))));
+                }))
+                .matches(
+                        aggregation(
+                                globalAggregation(),
+                                ImmutableMap.of(Optional.empty(), finalPattern),
+                                ImmutableMap.of(),
+                                Optional.empty(),
+                                FINAL,
+                                exchange(REMOTE_STREAMING, GATHER,
+                                        aggregation(
+                                                globalAggregation(),
+                                                ImmutableMap.of(Optional.empty(), finalPattern),
+                                                ImmutableMap.of(),
+                                                Optional.empty(),
+                                                INTERMEDIATE,
+                                                exchange(REMOTE_STREAMING, REPARTITION,
+                                                        aggregation(
+                                                                globalAggregation(),
+                                                                ImmutableMap.of(Optional.empty(), finalPattern),
+                                                                ImmutableMap.of(),
+                                                                Optional.empty(),
+                                                                INTERMEDIATE,
+                                                                exchange(LOCAL, GATHER,
+                                                                        aggregation(
+                                                                                globalAggregation(),
+                                                                                ImmutableMap.of(Optional.empty(), partialPattern),
+                                                                                ImmutableMap.of(),
+                                                                                Optional.empty(),
+                                                                                PARTIAL,
+                                                                                values(ImmutableMap.of("a", 0, "p", 1))))))))));
+    }
+
+    @Test
+    public void testSmallApproxPercentileStates()
+    {
+        // a low accuracy keeps the digests small
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
+                .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, "true")
+                .setSystemProperty(TASK_CONCURRENCY, "1")
+                .on(p -> p.aggregation(af -> {
+                    p.variable("a", DOUBLE);
+                    p.variable("p", DOUBLE);
+                    p.variable("accuracy", DOUBLE);
+                    CallExpression partial = (CallExpression) p.rowExpression("approx_percentile(a, p, accuracy)");
+                    af.globalGrouping()
+                            .step(AggregationNode.Step.FINAL)
+                            .addAggregation(
+                                    p.variable("c", DOUBLE),
+                                    new CallExpression(partial.getDisplayName(), partial.getFunctionHandle(), partial.getType(), ImmutableList.of(p.variable("b", VARBINARY))))
+                            .source(
+                                    p.gatheringExchange(
+                                            ExchangeNode.Scope.REMOTE_STREAMING,
+                                            p.aggregation(ap -> ap.globalGrouping()
+                                                    .step(AggregationNode.Step.PARTIAL)
+                                                    .addAggregation(p.variable("b", VARBINARY), partial)
+                                                    .source(
+                                                            p.project(
+                                                                    Assignments.builder()
+                                                                            .put(p.variable("a", DOUBLE), p.variable("a", DOUBLE))
+                                                                            .put(p.variable("p", DOUBLE), constant(0.5, DOUBLE))
+                                                                            .put(p.variable("accuracy", DOUBLE), constant(0.1, DOUBLE))
+                                                                            .build(),
+                                                                    p.values(p.variable("a", DOUBLE)))))));
+                }))
+                .doesNotFire();
+    }
+
+    @Test
+    public void testLargeApproxSetStates()
+    {
+        ExpectedValueProvider<FunctionCall> aggregationPattern = PlanMatchPattern.functionCall("approx_set", false, ImmutableList.of(anySymbol()));
+
+        // HyperLogLogs of the default standard error take about 2kB
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
+                .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, "true")
+                .setSystemProperty(INTERMEDIATE_AGGREGATION_LARGE_STATE_SIZE, "1kB")
+                .setSystemProperty(TASK_CONCURRENCY, "1")
+                .on(p -> p.aggregation(af -> {
+                    p.variable("a", BIGINT);
+                    CallExpression partial = (CallExpression) p.rowExpression("approx_set(a)");
+                    af.globalGrouping()
+                            .step(AggregationNode.Step.FINAL)
+                            .addAggregation(
+                                    p.variable("c", partial.getType()),
+                                    new CallExpression(partial.getDisplayName(), partial.getFunctionHandle(), partial.getType(), ImmutableList.of(p.variable("b", VARBINARY))))
+                            .source(
+                                    p.gatheringExchange(
+                                            ExchangeNode.Scope.REMOTE_STREAMING,
+                                            p.aggregation(ap -> ap.globalGrouping()
+                                                    .step(AggregationNode.Step.PARTIAL)
+                                                    .addAggregation(p.variable("b", VARBINARY), partial)
+                                                    .source(
+                                                            p.values(p.variable("a", BIGINT))))));
+                }))
+                .matches(
+                        aggregation(
+                                globalAggregation(),
+                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                ImmutableMap.of(),
+                                Optional.empty(),
+                                FINAL,
+                                exchange(REMOTE_STREAMING, GATHER,
+                                        aggregation(
+                                                globalAggregation(),
+                                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                                ImmutableMap.of(),
+                                                Optional.empty(),
+                                                INTERMEDIATE,
+                                                exchange(REMOTE_STREAMING, REPARTITION,
+                                                        aggregation(
+                                                                globalAggregation(),
+                                                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                                                ImmutableMap.of(),
+                                                                Optional.empty(),
+                                                                INTERMEDIATE,
+                                                                exchange(LOCAL, GATHER,
+                                                                        aggregation(
+                                                                                globalAggregation(),
+                                                                                ImmutableMap.of(Optional.empty(), aggregationPattern),
+                                                                                ImmutableMap.of(),
+                                                                                Optional.empty(),
+                                                                                PARTIAL,
+                                                                                values(ImmutableMap.of("a", 0))))))))));
+    }
+
+    @Test
+    public void testLargeStatesWithoutStatistics()
+    {
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
+                .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, "true")
+                .setSystemProperty(TASK_CONCURRENCY, "1")
+                .on(p -> p.aggregation(af -> {
+                    p.variable("a", VARBINARY);
+                    p.variable("b", VARBINARY);
+                    p.variable("c", VARBINARY);
+                    af.globalGrouping()
+                            .step(AggregationNode.Step.FINAL)
+                            .addAggregation(p.variable("c", VARBINARY), p.rowExpression("arbitrary(b)"))
+                            .source(
+                                    p.gatheringExchange(
+                                            ExchangeNode.Scope.REMOTE_STREAMING,
+                                            p.aggregation(ap -> ap.globalGrouping()
+                                                    .step(AggregationNode.Step.PARTIAL)
+                                                    .addAggregation(p.variable("b", VARBINARY), p.rowExpression("arbitrary(a)"))
+                                                    .source(
+                                                            p.values(p.variable("a", VARBINARY))))));
+                }))
+                .doesNotFire();
+    }
+
+    @Test
+    public void testSmallStatesWithLargeStatesEnabled()
+    {
+        tester().assertThat(new AddIntermediateAggregations(getFunctionManager()))
+                .setSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS_FOR_LARGE_STATES, "true")
+                .setSystemProperty(TASK_CONCURRENCY, "4")
+                .on(p -> p.aggregation(af -> {
+                    p.variable("a", BIGINT);
+                    p.variable("b", BIGINT);
+                    af.globalGrouping()
+                            .step(AggregationNode.Step.FINAL)
+                            .addAggregation(p.variable("c"), p.rowExpression("count(b)"))
+                            .source(
+                                    p.gatheringExchange(
+                                            ExchangeNode.Scope.REMOTE_STREAMING,
+                                            p.aggregation(ap -> ap.globalGrouping()
+                                                    .step(AggregationNode.Step.PARTIAL)
+                                                    .addAggregation(p.variable("b"), p.rowExpression("count(a)"))
+                                                    .source(
+                                                            p.values(p.variable("a"))))));
+                }))
+                .doesNotFire();
+    }
 }
@@ -39,12 +39,14 @@ import jakarta.ws.rs.container.Suspended;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import jakarta.ws.rs.core.UriInfo;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
 
 import static com.facebook.airlift.http.server.AsyncResponseHandler.bindAsyncResponse;
 import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
+import static com.facebook.presto.PrestoMediaTypes.PRESTO_PAGES;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_PREFIX_URL;
 import static com.facebook.presto.server.protocol.QueryResourceUtil.abortIfPrefixUrlInvalid;
 import static com.facebook.presto.server.protocol.QueryResourceUtil.toResponse;
@@ -106,6 +108,7 @@ public class ExecutingStatementResource
             @QueryParam("maxWait") Duration maxWait,
             @QueryParam("targetResultSize") DataSize targetResultSize,
             @DefaultValue("false") @QueryParam("binaryResults") boolean binaryResults,
+            @DefaultValue("false") @QueryParam("resultSegments") boolean resultSegments,
             @HeaderParam(X_FORWARDED_PROTO) String proto,
             @HeaderParam(PRESTO_PREFIX_URL) String xPrestoPrefixUrl,
             @Context UriInfo uriInfo,
@@ -132,7 +135,7 @@ public class ExecutingStatementResource
                 acquirePermitAsync,
                 acquirePermitTimeSeconds -> {
                     queryRateLimiter.addRateLimiterBlockTime(new Duration(acquirePermitTimeSeconds, SECONDS));
-                    return query.waitForResults(token, uriInfo, effectiveFinalProto, wait, effectiveFinalTargetResultSize, binaryResults);
+                    return query.waitForResults(token, uriInfo, effectiveFinalProto, wait, effectiveFinalTargetResultSize, binaryResults, resultSegments);
                 },
                 responseExecutor);
         long durationUntilExpirationMs = queryManager.getDurationUntilExpirationInMillis(queryId);
@@ -143,6 +146,19 @@ public class ExecutingStatementResource
         bindAsyncResponse(asyncResponse, queryResultsFuture, responseExecutor);
     }
 
+    @GET
+    @Path("/v1/statement/executing/{queryId}/segments/{segment}")
+    @Produces(PRESTO_PAGES)
+    public Response getResultSegment(
+            @PathParam("queryId") QueryId queryId,
+            @PathParam("segment") int segment,
+            @QueryParam("slug") String slug)
+    {
+        Query query = queryProvider.getQuery(queryId, slug);
+        StreamingOutput output = outputStream -> query.writeResultSegment(segment, outputStream);
+        return Response.ok(output).build();
+    }
+
     @DELETE
     @Path("/v1/statement/executing/{queryId}/{token}")
     @Produces(MediaType.APPLICATION_JSON)
@@ -18,12 +18,18 @@ import com.facebook.airlift.log.Logger;
 import com.facebook.presto.Session;
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.execution.QueryManager;
+import com.facebook.presto.execution.QueryResultCache;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.memory.context.SimpleLocalMemoryContext;
 import com.facebook.presto.operator.ExchangeClient;
 import com.facebook.presto.operator.ExchangeClientSupplier;
 import com.facebook.presto.server.ForStatementResource;
 import com.facebook.presto.server.RetryConfig;
 import com.facebook.presto.spi.QueryId;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
+import com.facebook.presto.storage.TempStorageManager;
 import com.facebook.presto.transaction.TransactionManager;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -39,12 +45,16 @@ import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.concurrent.Threads.threadsNamed;
+import static com.facebook.presto.SystemSessionProperties.isSpooledQueryOutputEnabled;
 import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
 import static jakarta.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
@@ -60,9 +70,15 @@ public class LocalQueryProvider
     private final ScheduledExecutorService timeoutExecutor;
     private final RetryCircuitBreaker retryCircuitBreaker;
     private final RetryConfig retryConfig;
+    private final QueryResultCache queryResultCache;
+    private final TempStorageManager tempStorageManager;
+    private final String spooledOutputTempStorage;
+    private final long spooledOutputSegmentSize;
 
     private final ConcurrentMap<QueryId, Query> queries = new ConcurrentHashMap<>();
     private final ScheduledExecutorService queryPurger = newSingleThreadScheduledExecutor(threadsNamed("execution-query-purger"));
+    // writes the spooled output to storage, which blocks, away from the threads producing the results
+    private final ExecutorService spoolingExecutor = newCachedThreadPool(daemonThreadsNamed("spooled-query-output-%s"));
 
     @Inject
     public LocalQueryProvider(
@@ -73,7 +89,10 @@ public class LocalQueryProvider
             @ForStatementResource BoundedExecutor responseExecutor,
             @ForStatementResource ScheduledExecutorService timeoutExecutor,
             RetryCircuitBreaker retryCircuitBreaker,
-            RetryConfig retryConfig)
+            RetryConfig retryConfig,
+            QueryResultCache queryResultCache,
+            TempStorageManager tempStorageManager,
+            FeaturesConfig featuresConfig)
     {
         this.queryManager = requireNonNull(queryManager, "queryManager is null");
         this.transactionManager = requireNonNull(transactionManager, "transactionManager is null");
@@ -83,6 +102,11 @@ public class LocalQueryProvider
         this.timeoutExecutor = requireNonNull(timeoutExecutor, "timeoutExecutor is null");
         this.retryCircuitBreaker = requireNonNull(retryCircuitBreaker, "retryCircuitBreaker is null");
         this.retryConfig = requireNonNull(retryConfig, "retryConfig is null");
+        this.queryResultCache = requireNonNull(queryResultCache, "queryResultCache is null");
+        this.tempStorageManager = requireNonNull(tempStorageManager, "tempStorageManager is null");
+        requireNonNull(featuresConfig, "featuresConfig is null");
+        this.spooledOutputTempStorage = featuresConfig.getSpooledQueryOutputTempStorage();
+        this.spooledOutputSegmentSize = featuresConfig.getSpooledQueryOutputSegmentSize().toBytes();
     }
 
     @PostConstruct
@@ -98,7 +122,11 @@ public class LocalQueryProvider
                             }
                             catch (NoSuchElementException e) {
                                 // query is no longer registered
-                                queries.remove(entry.getKey());
+                                Query query = queries.remove(entry.getKey());
+                                if (query != null) {
+                                    // remove the spooled output
+                                    query.dispose();
+                                }
                             }
                         }
                     }
@@ -115,6 +143,7 @@ public class LocalQueryProvider
     public void stop()
     {
         queryPurger.shutdownNow();
+        spoolingExecutor.shutdownNow();
     }
 
     public Query getQuery(QueryId queryId, String slug)
@@ -150,18 +179,22 @@ public class LocalQueryProvider
         }
 
         query = queries.computeIfAbsent(queryId, id -> {
-            ExchangeClient exchangeClient = exchangeClientSupplier.get(new SimpleLocalMemoryContext(newSimpleAggregatedMemoryContext(), LocalQueryProvider.class.getSimpleName()));
+            AggregatedMemoryContext queryMemoryContext = newSimpleAggregatedMemoryContext();
+            ExchangeClient exchangeClient = exchangeClientSupplier.get(new SimpleLocalMemoryContext(queryMemoryContext, LocalQueryProvider.class.getSimpleName()));
             return Query.create(
                     session,
                     slug,
                     queryManager,
                     transactionManager,
                     exchangeClient,
+                    createSpooledOutput(session, queryMemoryContext.newLocalMemoryContext(SpooledQueryOutput.class.getSimpleName())),
+                    spoolingExecutor,
                     responseExecutor,
                     timeoutExecutor,
                     blockEncodingSerde,
                     retryCircuitBreaker,
                     retryConfig,
+                    queryResultCache,
                     retryUrl,
                     retryExpirationEpochTime,
                     isRetryQuery);
@@ -169,6 +202,20 @@ public class LocalQueryProvider
         return query;
     }
 
+    private Optional<SpooledQueryOutput> createSpooledOutput(Session session, LocalMemoryContext memoryContext)
+    {
+        if (!isSpooledQueryOutputEnabled(session)) {
+            return Optional.empty();
+        }
+        TempDataOperationContext context = new TempDataOperationContext(
+                session.getSource(),
+                session.getQueryId().toString(),
+                session.getClientInfo(),
+                Optional.of(session.getClientTags()),
+                session.getIdentity());
+        return Optional.of(new SpooledQueryOutput(tempStorageManager.getTempStorage(spooledOutputTempStorage), context, spooledOutputSegmentSize, memoryContext));
+    }
+
     public void cancel(QueryId queryId, String slug)
     {
         Query query = queries.get(queryId);
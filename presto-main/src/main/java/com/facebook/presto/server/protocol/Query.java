@@ -32,6 +32,7 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.QueryExecution;
 import com.facebook.presto.execution.QueryInfo;
 import com.facebook.presto.execution.QueryManager;
+import com.facebook.presto.execution.QueryResultCache;
 import com.facebook.presto.execution.QueryState;
 import com.facebook.presto.execution.StageInfo;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
@@ -53,6 +54,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.errorprone.annotations.ThreadSafe;
@@ -63,8 +65,14 @@ import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.UriBuilder;
 import jakarta.ws.rs.core.UriInfo;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -76,6 +84,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addTimeout;
+import static com.facebook.presto.CompressionCodec.NONE;
 import static com.facebook.presto.SystemSessionProperties.getExchangeCompressionCodec;
 import static com.facebook.presto.SystemSessionProperties.getQueryRetryLimit;
 import static com.facebook.presto.SystemSessionProperties.getQueryRetryMaxExecutionTime;
@@ -84,15 +93,18 @@ import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnab
 import static com.facebook.presto.SystemSessionProperties.retryQueryWithHistoryBasedOptimizationEnabled;
 import static com.facebook.presto.SystemSessionProperties.trackHistoryBasedPlanStatisticsEnabled;
 import static com.facebook.presto.SystemSessionProperties.useHistoryBasedPlanStatisticsEnabled;
+import static com.facebook.presto.common.RuntimeMetricName.QUERY_RESULT_CACHE_HIT;
 import static com.facebook.presto.execution.QueryState.FAILED;
 import static com.facebook.presto.execution.QueryState.WAITING_FOR_PREREQUISITES;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
+import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPage;
 import static com.facebook.presto.util.Failures.toFailure;
 import static com.facebook.presto.util.QueryInfoUtils.toStatementStats;
 import static com.google.common.base.MoreObjects.firstNonNull;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.lang.String.format;
@@ -104,6 +116,8 @@ class Query
 {
     private static final Logger log = Logger.get(Query.class);
     private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    // limits the data a client downloads for a single result
+    private static final int MAX_RESULT_SEGMENTS = 4;
     private static Optional<QueryId> originalBeforeRetryQueryId = Optional.empty();
     private static Optional<Integer> previousQueryTopLevelPlanHash = Optional.empty();
     private static Optional<QueryError> previousQueryFailureError = Optional.empty();
@@ -123,9 +137,16 @@ class Query
     private final Executor resultsProcessorExecutor;
     private final ScheduledExecutorService timeoutExecutor;
 
+    private final Optional<SpooledQueryOutput> spooledOutput;
+    private final Executor spoolingExecutor;
+    // only used by spoolOutput, which does not run concurrently with itself
+    private final PagesSerde spoolingSerde;
+
     private final PagesSerde serde;
+    private final PagesSerde binaryResultsSerde;
     private final RetryCircuitBreaker retryCircuitBreaker;
     private final RetryConfig retryConfig;
+    private final QueryResultCache queryResultCache;
 
     @GuardedBy("this")
     private OptionalLong nextToken = OptionalLong.of(0);
@@ -178,6 +199,24 @@ class Query
     @GuardedBy("this")
     private Map<SqlFunctionId, SqlInvokedFunction> addedSessionFunctions = ImmutableMap.of();
 
+    // the complete output of a query served from the result cache, not yet returned to the client
+    @GuardedBy("this")
+    private Deque<SerializedPage> cachedResultPages;
+
+    @GuardedBy("this")
+    private Optional<String> resultCacheKey = Optional.empty();
+
+    // the output returned so far, while it may still be stored in the result cache
+    @GuardedBy("this")
+    private List<SerializedPage> resultPagesToCache;
+
+    @GuardedBy("this")
+    private long resultBytesToCache;
+
+    // memory reserved in the result cache for the pages collected in resultPagesToCache
+    @GuardedBy("this")
+    private long resultRetainedBytesToCache;
+
     @GuardedBy("this")
     private Set<SqlFunctionId> removedSessionFunctions = ImmutableSet.of();
 
@@ -187,11 +226,14 @@ class Query
             QueryManager queryManager,
             TransactionManager transactionManager,
             ExchangeClient exchangeClient,
+            Optional<SpooledQueryOutput> spooledOutput,
+            Executor spoolingExecutor,
             Executor dataProcessorExecutor,
             ScheduledExecutorService timeoutExecutor,
             BlockEncodingSerde blockEncodingSerde,
             RetryCircuitBreaker retryCircuitBreaker,
             RetryConfig retryConfig,
+            QueryResultCache queryResultCache,
             Optional<URI> retryUrl,
             OptionalLong retryExpirationEpochTime,
             boolean isRetryQuery)
@@ -205,11 +247,14 @@ class Query
                 queryManager,
                 transactionManager,
                 exchangeClient,
+                spooledOutput,
+                spoolingExecutor,
                 dataProcessorExecutor,
                 timeoutExecutor,
                 blockEncodingSerde,
                 retryCircuitBreaker,
-                retryConfig);
+                retryConfig,
+                queryResultCache);
 
         result.queryManager.addOutputInfoListener(result.getQueryId(), result::setQueryOutputInfo);
 
@@ -220,6 +265,10 @@ class Query
             }
         });
 
+        if (spooledOutput.isPresent()) {
+            spoolingExecutor.execute(result::spoolOutput);
+        }
+
         return result;
     }
 
@@ -232,11 +281,14 @@ class Query
             QueryManager queryManager,
             TransactionManager transactionManager,
             ExchangeClient exchangeClient,
+            Optional<SpooledQueryOutput> spooledOutput,
+            Executor spoolingExecutor,
             Executor resultsProcessorExecutor,
             ScheduledExecutorService timeoutExecutor,
             BlockEncodingSerde blockEncodingSerde,
             RetryCircuitBreaker retryCircuitBreaker,
-            RetryConfig retryConfig)
+            RetryConfig retryConfig,
+            QueryResultCache queryResultCache)
     {
         requireNonNull(session, "session is null");
         requireNonNull(slug, "slug is null");
@@ -245,11 +297,14 @@ class Query
         requireNonNull(queryManager, "queryManager is null");
         requireNonNull(transactionManager, "transactionManager is null");
         requireNonNull(exchangeClient, "exchangeClient is null");
+        requireNonNull(spooledOutput, "spooledOutput is null");
+        requireNonNull(spoolingExecutor, "spoolingExecutor is null");
         requireNonNull(resultsProcessorExecutor, "resultsProcessorExecutor is null");
         requireNonNull(timeoutExecutor, "timeoutExecutor is null");
         requireNonNull(blockEncodingSerde, "serde is null");
         requireNonNull(retryCircuitBreaker, "retryCircuitBreaker is null");
         requireNonNull(retryConfig, "retryConfig is null");
+        requireNonNull(queryResultCache, "queryResultCache is null");
 
         this.queryManager = queryManager;
         this.transactionManager = transactionManager;
@@ -261,12 +316,17 @@ class Query
         this.retryExpirationEpochTime = retryExpirationEpochTime;
         this.isRetryQuery = isRetryQuery;
         this.exchangeClient = exchangeClient;
+        this.spooledOutput = spooledOutput;
+        this.spoolingExecutor = spoolingExecutor;
         this.resultsProcessorExecutor = resultsProcessorExecutor;
         this.timeoutExecutor = timeoutExecutor;
 
         this.serde = new PagesSerdeFactory(blockEncodingSerde, getExchangeCompressionCodec(session), isExchangeChecksumEnabled(session)).createPagesSerde();
+        this.binaryResultsSerde = new PagesSerdeFactory(blockEncodingSerde, NONE, false).createPagesSerde();
+        this.spoolingSerde = new PagesSerdeFactory(blockEncodingSerde, getExchangeCompressionCodec(session), isExchangeChecksumEnabled(session)).createPagesSerde();
         this.retryCircuitBreaker = retryCircuitBreaker;
         this.retryConfig = retryConfig;
+        this.queryResultCache = queryResultCache;
     }
 
     public void cancel()
@@ -277,7 +337,9 @@ class Query
 
     public synchronized void dispose()
     {
+        stopCachingResult();
         exchangeClient.close();
+        spooledOutput.ifPresent(SpooledQueryOutput::close);
     }
 
     public QueryId getQueryId()
@@ -353,6 +415,15 @@ class Query
     }
 
     public synchronized ListenableFuture<QueryResults> waitForResults(long token, UriInfo uriInfo, String scheme, Duration wait, DataSize targetResultSize, boolean binaryResults)
+    {
+        return waitForResults(token, uriInfo, scheme, wait, targetResultSize, binaryResults, false);
+    }
+
+    /**
+     * @param resultSegments hand out whole segments of the spooled output as URIs, rather than
+     * returning the pages in the results, if possible. Requires binary results.
+     */
+    public synchronized ListenableFuture<QueryResults> waitForResults(long token, UriInfo uriInfo, String scheme, Duration wait, DataSize targetResultSize, boolean binaryResults, boolean resultSegments)
     {
         // before waiting, check if this request has already been processed and cached
         Optional<QueryResults> cachedResult = getCachedResult(token);
@@ -368,11 +439,16 @@ class Query
                 timeoutExecutor);
 
         // when state changes, fetch the next result
-        return Futures.transform(futureStateChange, ignored -> getNextResultWithRetry(token, uriInfo, scheme, targetResultSize, binaryResults), resultsProcessorExecutor);
+        return Futures.transform(futureStateChange, ignored -> getNextResultWithRetry(token, uriInfo, scheme, targetResultSize, binaryResults, resultSegments), resultsProcessorExecutor);
     }
 
     private synchronized ListenableFuture<?> getFutureStateChange()
     {
+        // if the spooled output has not been read entirely, wait for data
+        if (spooledOutput.isPresent() && !spooledOutput.get().isFinished()) {
+            return spooledOutput.get().isBlocked();
+        }
+
         // if the exchange client is open, wait for data
         if (!exchangeClient.isClosed()) {
             return exchangeClient.isBlocked();
@@ -421,9 +497,9 @@ class Query
         return Optional.empty();
     }
 
-    private synchronized QueryResults getNextResultWithRetry(long token, UriInfo uriInfo, String scheme, DataSize targetResultSize, boolean binaryResults)
+    private synchronized QueryResults getNextResultWithRetry(long token, UriInfo uriInfo, String scheme, DataSize targetResultSize, boolean binaryResults, boolean resultSegments)
     {
-        QueryResults queryResults = getNextResult(token, uriInfo, scheme, targetResultSize, binaryResults);
+        QueryResults queryResults = getNextResult(token, uriInfo, scheme, targetResultSize, binaryResults, resultSegments);
 
         if (queryResults.getError() == null) {
             return queryResults;
@@ -481,7 +557,7 @@ class Query
                 queryResults.getUpdateCount());
     }
 
-    private synchronized QueryResults getNextResult(long token, UriInfo uriInfo, String scheme, DataSize targetResultSize, boolean binaryResults)
+    private synchronized QueryResults getNextResult(long token, UriInfo uriInfo, String scheme, DataSize targetResultSize, boolean binaryResults, boolean resultSegments)
     {
         // check if the result for the token have already been created
         Optional<QueryResults> cachedResult = getCachedResult(token);
@@ -504,14 +580,21 @@ class Query
         // the pages will be lost.
         Iterable<List<Object>> data = null;
         List<String> binaryData = null;
+        List<URI> segments = null;
         try {
             long rows = 0;
             long bytes = 0;
             long targetResultBytes = targetResultSize.toBytes();
-            if (binaryResults) {
+            if (binaryResults && resultSegments) {
+                segments = takeResultSegments(scheme, uriInfo);
+            }
+            if (segments != null) {
+                hasProducedResult = true;
+            }
+            else if (binaryResults) {
                 ImmutableList.Builder<String> pages = ImmutableList.builder();
                 while (bytes < targetResultBytes) {
-                    SerializedPage serializedPage = exchangeClient.pollPage();
+                    SerializedPage serializedPage = pollPage();
                     if (serializedPage == null) {
                         break;
                     }
@@ -519,6 +602,11 @@ class Query
                     rows += serializedPage.getPositionCount();
                     bytes += serializedPage.getSizeInBytes();
 
+                    // clients do not ship the exchange compression codecs, and the response is compressed anyway
+                    if (COMPRESSED.isSet(serializedPage.getPageCodecMarkers())) {
+                        serializedPage = binaryResultsSerde.serialize(serde.deserialize(serializedPage));
+                    }
+
                     DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1000);
                     writeSerializedPage(sliceOutput, serializedPage);
 
@@ -533,7 +621,7 @@ class Query
             else {
                 ImmutableList.Builder<RowIterable> pages = ImmutableList.builder();
                 while (bytes < targetResultBytes) {
-                    SerializedPage serializedPage = exchangeClient.pollPage();
+                    SerializedPage serializedPage = pollPage();
                     if (serializedPage == null) {
                         break;
                     }
@@ -575,9 +663,13 @@ class Query
         }
 
         closeExchangeClientIfNecessary(queryInfo);
+        cacheResultIfComplete(queryInfo);
+
+        // queries served from the result cache have no output stage, but their output arrives with the output info
+        boolean servedFromResultCache = queryInfo.getQueryStats().getRuntimeStats().getMetric(QUERY_RESULT_CACHE_HIT) != null;
 
         // for queries with no output, return a fake result for clients that require it
-        if ((queryInfo.getState() == QueryState.FINISHED) && !queryInfo.getOutputStage().isPresent()) {
+        if ((queryInfo.getState() == QueryState.FINISHED) && !queryInfo.getOutputStage().isPresent() && !servedFromResultCache) {
             columns = ImmutableList.of(new Column("result", BooleanType.BOOLEAN));
             data = ImmutableSet.of(ImmutableList.of(true));
         }
@@ -587,7 +679,10 @@ class Query
         // (1) the query is not done AND the query state is not FAILED
         //   OR
         // (2)there is more data to send (due to buffering)
-        if ((!queryInfo.isFinalQueryInfo() && queryInfo.getState() != FAILED) || !exchangeClient.isClosed()) {
+        //   OR
+        // (3)the query is served from the result cache, and the cached output has not been sent entirely
+        if ((!queryInfo.isFinalQueryInfo() && queryInfo.getState() != FAILED) || !isOutputComplete() ||
+                (servedFromResultCache && queryInfo.getState() != FAILED && (cachedResultPages == null || !cachedResultPages.isEmpty()))) {
             nextToken = OptionalLong.of(token + 1);
         }
         else {
@@ -596,7 +691,7 @@ class Query
 
         URI nextResultsUri = null;
         if (nextToken.isPresent()) {
-            nextResultsUri = createNextResultsUri(scheme, uriInfo, nextToken.getAsLong(), binaryResults);
+            nextResultsUri = createNextResultsUri(scheme, uriInfo, nextToken.getAsLong(), binaryResults, resultSegments);
         }
 
         // update catalog, schema, and path
@@ -631,6 +726,7 @@ class Query
                 columns,
                 data,
                 binaryData,
+                segments,
                 toStatementStats(queryInfo),
                 toQueryError(queryInfo),
                 queryInfo.getWarnings(),
@@ -644,6 +740,130 @@ class Query
         return queryResults;
     }
 
+    /**
+     * Returns the URIs of the next segments of the spooled output, or null if there are none. The pages
+     * before the start of a segment are returned in the results.
+     */
+    private synchronized List<URI> takeResultSegments(String scheme, UriInfo uriInfo)
+    {
+        if (!spooledOutput.isPresent() || cachedResultPages != null) {
+            return null;
+        }
+
+        List<Integer> segments = spooledOutput.get().takeSegments(MAX_RESULT_SEGMENTS);
+        if (segments.isEmpty()) {
+            return null;
+        }
+
+        // the output handed out as segments is never seen by the coordinator again
+        stopCachingResult();
+        return segments.stream()
+                .map(segment -> createSegmentUri(scheme, uriInfo, segment))
+                .collect(toImmutableList());
+    }
+
+    private synchronized SerializedPage pollPage()
+    {
+        if (cachedResultPages != null) {
+            return cachedResultPages.poll();
+        }
+
+        SerializedPage page = spooledOutput.isPresent() ? spooledOutput.get().pollPage() : exchangeClient.pollPage();
+        if (page != null && resultPagesToCache != null) {
+            resultBytesToCache += page.getSizeInBytes();
+            if (resultBytesToCache > queryResultCache.getMaxEntrySizeInBytes() || !queryResultCache.tryReservePendingResult(page.getRetainedSizeInBytes())) {
+                // too large to be cached, or the results collected by the running queries use too much memory
+                stopCachingResult();
+            }
+            else {
+                resultPagesToCache.add(page);
+                resultRetainedBytesToCache += page.getRetainedSizeInBytes();
+            }
+        }
+        return page;
+    }
+
+    private synchronized void cacheResultIfComplete(QueryInfo queryInfo)
+    {
+        if (resultPagesToCache == null) {
+            return;
+        }
+        // the exchange client is closed once the last page has been returned, or if the query failed
+        if (isOutputComplete() && queryInfo.getState() == QueryState.FINISHED) {
+            queryResultCache.put(resultCacheKey.get(), resultPagesToCache);
+            stopCachingResult();
+        }
+        else if (queryInfo.getState() == FAILED) {
+            stopCachingResult();
+        }
+    }
+
+    private synchronized void stopCachingResult()
+    {
+        resultPagesToCache = null;
+        queryResultCache.freePendingResult(resultRetainedBytesToCache);
+        resultRetainedBytesToCache = 0;
+    }
+
+    private synchronized boolean isOutputComplete()
+    {
+        return exchangeClient.isClosed() && (!spooledOutput.isPresent() || spooledOutput.get().isFinished());
+    }
+
+    /**
+     * Moves the pages from the exchange client to the spooled output as soon as they arrive,
+     * until the exchange client is closed. Runs on the spooling executor, as writing a segment
+     * to storage blocks.
+     * <p>
+     * Pages are spooled uncompressed, because clients download the segments as they are stored.
+     */
+    private void spoolOutput()
+    {
+        SpooledQueryOutput output = spooledOutput.get();
+        try {
+            while (true) {
+                SerializedPage page = exchangeClient.pollPage();
+                if (page == null) {
+                    break;
+                }
+                if (COMPRESSED.isSet(page.getPageCodecMarkers())) {
+                    page = binaryResultsSerde.serialize(spoolingSerde.deserialize(page));
+                }
+                output.addPage(page);
+            }
+        }
+        catch (RuntimeException e) {
+            log.error(e, "Failed to spool the output of query %s", queryId);
+            queryManager.failQuery(queryId, e);
+            exchangeClient.close();
+            output.setNoMorePages();
+            return;
+        }
+
+        if (exchangeClient.isClosed()) {
+            output.setNoMorePages();
+            return;
+        }
+        exchangeClient.isBlocked().addListener(this::spoolOutput, spoolingExecutor);
+    }
+
+    /**
+     * Writes a segment of the spooled output, handed out in the results, as a sequence of uncompressed pages.
+     */
+    public void writeResultSegment(int segment, OutputStream output)
+            throws IOException
+    {
+        Optional<InputStream> inputStream = spooledOutput.flatMap(spooled -> spooled.openSegment(segment));
+        if (!inputStream.isPresent()) {
+            throw new WebApplicationException(Response.Status.NOT_FOUND);
+        }
+
+        // the pages are stored uncompressed
+        try (InputStream input = inputStream.get()) {
+            ByteStreams.copy(input, output);
+        }
+    }
+
     private synchronized void closeExchangeClientIfNecessary(QueryInfo queryInfo)
     {
         // Close the exchange client if the query has failed, or if the query
@@ -669,6 +889,14 @@ class Query
             }
             columns = list.build();
             types = outputInfo.getColumnTypes();
+
+            if (outputInfo.getCachedResult().isPresent()) {
+                cachedResultPages = new ArrayDeque<>(outputInfo.getCachedResult().get());
+            }
+            else if (outputInfo.getResultCacheKey().isPresent()) {
+                resultCacheKey = outputInfo.getResultCacheKey();
+                resultPagesToCache = new ArrayList<>();
+            }
         }
 
         outputInfo.getBufferLocations().forEach(exchangeClient::addLocation);
@@ -685,7 +913,7 @@ class Query
         return Futures.transformAsync(queryManager.getStateChange(queryId, currentState), this::queryDoneFuture, directExecutor());
     }
 
-    private synchronized URI createNextResultsUri(String scheme, UriInfo uriInfo, long nextToken, boolean binaryResults)
+    private synchronized URI createNextResultsUri(String scheme, UriInfo uriInfo, long nextToken, boolean binaryResults, boolean resultSegments)
     {
         UriBuilder uri = uriInfo.getBaseUriBuilder()
                 .scheme(scheme)
@@ -697,6 +925,9 @@ class Query
         if (binaryResults) {
             uri.queryParam("binaryResults", "true");
         }
+        if (resultSegments) {
+            uri.queryParam("resultSegments", "true");
+        }
         Optional<DataSize> targetResultSize = getTargetResultSize(session);
         if (targetResultSize.isPresent()) {
             uri = uri.queryParam("targetResultSize", targetResultSize.get());
@@ -704,6 +935,19 @@ class Query
         return uri.build();
     }
 
+    private URI createSegmentUri(String scheme, UriInfo uriInfo, int segment)
+    {
+        return uriInfo.getBaseUriBuilder()
+                .scheme(scheme)
+                .replacePath("/v1/statement/executing")
+                .path(queryId.toString())
+                .path("segments")
+                .path(String.valueOf(segment))
+                .replaceQuery("")
+                .queryParam("slug", slug)
+                .build();
+    }
+
     private synchronized URI createRetryUri(String scheme, UriInfo uriInfo)
     {
         // Check if we have external retry URL information
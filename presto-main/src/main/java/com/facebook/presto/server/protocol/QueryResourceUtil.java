@@ -73,6 +73,7 @@ import static com.facebook.presto.execution.QueryState.QUEUED;
 import static com.facebook.presto.execution.QueryState.WAITING_FOR_PREREQUISITES;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static jakarta.ws.rs.core.MediaType.TEXT_PLAIN_TYPE;
 import static java.lang.String.format;
 import static java.util.Collections.unmodifiableList;
@@ -174,6 +175,7 @@ public final class QueryResourceUtil
                 queryResults.getColumns(),
                 queryResultsData,
                 queryResults.getBinaryData(),
+                prependUris(queryResults.getSegments(), xPrestoPrefixUri),
                 queryResults.getStats(),
                 queryResults.getError(),
                 queryResults.getWarnings(),
@@ -220,6 +222,16 @@ public final class QueryResourceUtil
         return backendUri;
     }
 
+    private static List<URI> prependUris(List<URI> backendUris, String xPrestoPrefixUrl)
+    {
+        if (backendUris == null) {
+            return null;
+        }
+        return backendUris.stream()
+                .map(uri -> prependUri(uri, xPrestoPrefixUrl))
+                .collect(toImmutableList());
+    }
+
     private static String urlEncode(String value)
     {
         try {
@@ -0,0 +1,363 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server.protocol;
+
+import com.facebook.airlift.log.Logger;
+import com.facebook.presto.common.io.DataOutput;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.page.PageDataOutput;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spi.storage.TempDataSink;
+import com.facebook.presto.spi.storage.TempStorage;
+import com.facebook.presto.spi.storage.TempStorageHandle;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.errorprone.annotations.ThreadSafe;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
+import io.airlift.slice.InputStreamSliceInput;
+import io.airlift.slice.SliceInput;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.spi.StandardErrorCode.SPOOLING_STORAGE_ERROR;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.IntStream.range;
+
+/**
+ * The output of a query, drained from the exchange client as fast as the workers produce it and
+ * written to {@link TempStorage} in segments of roughly {@code segmentSizeInBytes}, so that the
+ * output stage does not wait for the client to fetch the results.
+ * <p>
+ * The pages of the last segment are kept in memory until the segment is full, and are charged to
+ * the memory context of the output. The output is read back page by page with {@link #pollPage()},
+ * or handed out as whole segments with {@link #takeSegments(int)}, which clients download with
+ * {@link #openSegment(int)}.
+ */
+@ThreadSafe
+class SpooledQueryOutput
+        implements Closeable
+{
+    private static final Logger log = Logger.get(SpooledQueryOutput.class);
+
+    private final TempStorage tempStorage;
+    private final TempDataOperationContext tempDataOperationContext;
+    private final long segmentSizeInBytes;
+    private final LocalMemoryContext memoryContext;
+
+    @GuardedBy("this")
+    private final List<Segment> segments = new ArrayList<>();
+
+    // pages of the segment being filled
+    @GuardedBy("this")
+    private final List<SerializedPage> bufferedPages = new ArrayList<>();
+
+    @GuardedBy("this")
+    private long bufferedBytes;
+
+    @GuardedBy("this")
+    private long bufferedRetainedBytes;
+
+    // the read position, i.e. the number of pages of segment readSegment that have been read,
+    // where segment segments.size() are the buffered pages
+    @GuardedBy("this")
+    private int readSegment;
+
+    @GuardedBy("this")
+    private int readPage;
+
+    @GuardedBy("this")
+    private SliceInput segmentInput;
+
+    @GuardedBy("this")
+    private Iterator<SerializedPage> segmentPages;
+
+    @GuardedBy("this")
+    private SettableFuture<?> blocked = SettableFuture.create();
+
+    @GuardedBy("this")
+    private boolean noMorePages;
+
+    @GuardedBy("this")
+    private boolean closed;
+
+    public SpooledQueryOutput(TempStorage tempStorage, TempDataOperationContext tempDataOperationContext, long segmentSizeInBytes, LocalMemoryContext memoryContext)
+    {
+        checkArgument(segmentSizeInBytes > 0, "segmentSizeInBytes must be positive");
+        this.tempStorage = requireNonNull(tempStorage, "tempStorage is null");
+        this.tempDataOperationContext = requireNonNull(tempDataOperationContext, "tempDataOperationContext is null");
+        this.segmentSizeInBytes = segmentSizeInBytes;
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+    }
+
+    /**
+     * Adds a page to the output. Pages must be added by a single thread.
+     */
+    public void addPage(SerializedPage page)
+    {
+        requireNonNull(page, "page is null");
+        List<SerializedPage> segmentPages;
+        synchronized (this) {
+            checkState(!noMorePages, "noMorePages is already set");
+            if (closed) {
+                return;
+            }
+            bufferedPages.add(page);
+            bufferedBytes += page.getSizeInBytes();
+            bufferedRetainedBytes += page.getRetainedSizeInBytes();
+            memoryContext.setBytes(bufferedRetainedBytes);
+            segmentPages = bufferedBytes >= segmentSizeInBytes ? ImmutableList.copyOf(bufferedPages) : null;
+        }
+
+        // the buffered pages remain readable while they are written
+        if (segmentPages != null) {
+            commitSegment(segmentPages, write(segmentPages));
+        }
+        notifyBlocked();
+    }
+
+    public void setNoMorePages()
+    {
+        synchronized (this) {
+            noMorePages = true;
+        }
+        notifyBlocked();
+    }
+
+    /**
+     * Returns a future that completes once there is output to read, or all of it has been read.
+     */
+    public synchronized ListenableFuture<?> isBlocked()
+    {
+        if (closed || noMorePages || readSegment < segments.size() || readPage < bufferedPages.size()) {
+            return immediateFuture(null);
+        }
+        return blocked;
+    }
+
+    /**
+     * Returns true once all pages have been added and read.
+     */
+    public synchronized boolean isFinished()
+    {
+        return noMorePages && readSegment == segments.size() && readPage == bufferedPages.size();
+    }
+
+    /**
+     * Returns the next page of the output, or null if no page is available.
+     */
+    public synchronized SerializedPage pollPage()
+    {
+        if (closed) {
+            return null;
+        }
+
+        if (readSegment == segments.size()) {
+            if (readPage == bufferedPages.size()) {
+                return null;
+            }
+            return bufferedPages.get(readPage++);
+        }
+
+        if (segmentPages == null) {
+            Optional<InputStream> inputStream = openSegment(readSegment);
+            checkState(inputStream.isPresent(), "segment %s is not available", readSegment);
+            segmentInput = new InputStreamSliceInput(inputStream.get());
+            segmentPages = readSerializedPages(segmentInput);
+            for (int page = 0; page < readPage; page++) {
+                segmentPages.next();
+            }
+        }
+        SerializedPage page = segmentPages.next();
+        readPage++;
+        if (readPage == segments.get(readSegment).getPageCount()) {
+            advanceToNextSegment();
+        }
+        return page;
+    }
+
+    /**
+     * Hands out up to {@code maxSegments} segments that follow the read position, and moves the
+     * read position past them. Returns no segments if the read position is within a segment.
+     */
+    public synchronized List<Integer> takeSegments(int maxSegments)
+    {
+        if (closed || readPage != 0) {
+            return ImmutableList.of();
+        }
+        int end = min(segments.size(), readSegment + maxSegments);
+        List<Integer> result = range(readSegment, end).boxed().collect(toImmutableList());
+        readSegment = end;
+        return result;
+    }
+
+    /**
+     * Opens a segment previously handed out by {@link #takeSegments(int)}, or returns empty if the
+     * segment does not exist.
+     */
+    public Optional<InputStream> openSegment(int segment)
+    {
+        TempStorageHandle handle;
+        synchronized (this) {
+            if (closed || segment < 0 || segment >= segments.size()) {
+                return Optional.empty();
+            }
+            handle = segments.get(segment).getHandle();
+        }
+        try {
+            return Optional.of(tempStorage.open(tempDataOperationContext, handle));
+        }
+        catch (IOException e) {
+            throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read query output segment", e);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        List<Segment> removedSegments;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            closeSegmentInput();
+            removedSegments = ImmutableList.copyOf(segments);
+            bufferedPages.clear();
+            bufferedBytes = 0;
+            bufferedRetainedBytes = 0;
+            memoryContext.setBytes(0);
+        }
+
+        for (Segment segment : removedSegments) {
+            try {
+                tempStorage.remove(tempDataOperationContext, segment.getHandle());
+            }
+            catch (IOException | RuntimeException e) {
+                log.error(e, "Failed to remove query output segment from TempStorage");
+            }
+        }
+        notifyBlocked();
+    }
+
+    private TempStorageHandle write(List<SerializedPage> pages)
+    {
+        List<DataOutput> dataOutputs = pages.stream()
+                .map(PageDataOutput::new)
+                .collect(toImmutableList());
+        try {
+            TempDataSink dataSink = tempStorage.create(tempDataOperationContext);
+            try {
+                dataSink.write(dataOutputs);
+                return dataSink.commit();
+            }
+            catch (IOException | RuntimeException e) {
+                dataSink.rollback();
+                throw e;
+            }
+        }
+        catch (IOException e) {
+            throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to write query output segment", e);
+        }
+    }
+
+    private void commitSegment(List<SerializedPage> pages, TempStorageHandle handle)
+    {
+        synchronized (this) {
+            if (!closed) {
+                segments.add(new Segment(handle, pages.size()));
+                bufferedPages.subList(0, pages.size()).clear();
+                bufferedBytes = bufferedPages.stream().mapToLong(SerializedPage::getSizeInBytes).sum();
+                bufferedRetainedBytes = bufferedPages.stream().mapToLong(SerializedPage::getRetainedSizeInBytes).sum();
+                memoryContext.setBytes(bufferedRetainedBytes);
+                if (readSegment == segments.size() - 1 && readPage == pages.size()) {
+                    advanceToNextSegment();
+                }
+                return;
+            }
+        }
+
+        // the output was closed while the segment was written
+        try {
+            tempStorage.remove(tempDataOperationContext, handle);
+        }
+        catch (IOException | RuntimeException e) {
+            log.error(e, "Failed to remove query output segment from TempStorage");
+        }
+    }
+
+    @GuardedBy("this")
+    private void advanceToNextSegment()
+    {
+        closeSegmentInput();
+        readSegment++;
+        readPage = 0;
+    }
+
+    @GuardedBy("this")
+    private void closeSegmentInput()
+    {
+        if (segmentInput != null) {
+            segmentInput.close();
+        }
+        segmentInput = null;
+        segmentPages = null;
+    }
+
+    private void notifyBlocked()
+    {
+        SettableFuture<?> future;
+        synchronized (this) {
+            future = blocked;
+            blocked = SettableFuture.create();
+        }
+        future.set(null);
+    }
+
+    private static class Segment
+    {
+        private final TempStorageHandle handle;
+        private final int pageCount;
+
+        public Segment(TempStorageHandle handle, int pageCount)
+        {
+            this.handle = requireNonNull(handle, "handle is null");
+            this.pageCount = pageCount;
+        }
+
+        public TempStorageHandle getHandle()
+        {
+            return handle;
+        }
+
+        public int getPageCount()
+        {
+            return pageCount;
+        }
+    }
+}
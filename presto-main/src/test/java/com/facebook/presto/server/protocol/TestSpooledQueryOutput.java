@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server.protocol;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.facebook.presto.spi.security.Identity;
+import com.facebook.presto.spi.storage.TempDataOperationContext;
+import com.facebook.presto.spiller.LocalTempStorage;
+import com.facebook.presto.testing.TestingTempStorageManager;
+import com.google.common.collect.ImmutableList;
+import io.airlift.slice.InputStreamSliceInput;
+import org.testng.annotations.Test;
+
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.execution.buffer.TestingPagesSerdeFactory.testingPagesSerde;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPages;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TestSpooledQueryOutput
+{
+    private static final PagesSerde PAGES_SERDE = testingPagesSerde();
+
+    @Test
+    public void testReadBack()
+    {
+        SpooledQueryOutput output = createSpooledQueryOutput(2);
+        assertFalse(output.isBlocked().isDone());
+        assertNull(output.pollPage());
+
+        // the pages of a segment are readable while it is filled
+        output.addPage(createPage(0));
+        assertTrue(output.isBlocked().isDone());
+        assertPage(output.pollPage(), 0);
+        assertFalse(output.isBlocked().isDone());
+
+        // the remaining pages of a full segment are read from storage
+        for (int i = 1; i < 5; i++) {
+            output.addPage(createPage(i));
+        }
+        output.setNoMorePages();
+        for (int i = 1; i < 5; i++) {
+            assertFalse(output.isFinished());
+            assertPage(output.pollPage(), i);
+        }
+        assertNull(output.pollPage());
+        assertTrue(output.isFinished());
+        assertTrue(output.isBlocked().isDone());
+        output.close();
+    }
+
+    @Test
+    public void testTakeSegments()
+            throws Exception
+    {
+        SpooledQueryOutput output = createSpooledQueryOutput(3);
+        for (int i = 0; i < 8; i++) {
+            output.addPage(createPage(i));
+        }
+
+        // segments are only handed out from the start of a segment
+        assertPage(output.pollPage(), 0);
+        assertEquals(output.takeSegments(10), ImmutableList.of());
+        assertPage(output.pollPage(), 1);
+        assertPage(output.pollPage(), 2);
+
+        assertEquals(output.takeSegments(1), ImmutableList.of(1));
+        assertEquals(output.takeSegments(10), ImmutableList.of());
+        assertSegment(output, 0, 0, 1, 2);
+        assertSegment(output, 1, 3, 4, 5);
+        assertFalse(output.openSegment(2).isPresent());
+
+        // the pages of the last segment are returned once all pages are added
+        output.setNoMorePages();
+        assertFalse(output.isFinished());
+        assertPage(output.pollPage(), 6);
+        assertPage(output.pollPage(), 7);
+        assertTrue(output.isFinished());
+
+        output.close();
+        assertFalse(output.openSegment(0).isPresent());
+        assertNull(output.pollPage());
+    }
+
+    @Test
+    public void testMemoryAccounting()
+    {
+        AggregatedMemoryContext memoryContext = newSimpleAggregatedMemoryContext();
+        SpooledQueryOutput output = createSpooledQueryOutput(2, memoryContext);
+
+        SerializedPage page = createPage(0);
+        output.addPage(page);
+        assertEquals(memoryContext.getBytes(), page.getRetainedSizeInBytes());
+
+        // the pages of a segment are released once it is written
+        output.addPage(createPage(1));
+        assertEquals(memoryContext.getBytes(), 0);
+
+        page = createPage(2);
+        output.addPage(page);
+        assertEquals(memoryContext.getBytes(), page.getRetainedSizeInBytes());
+
+        output.close();
+        assertEquals(memoryContext.getBytes(), 0);
+    }
+
+    private static SpooledQueryOutput createSpooledQueryOutput(int pagesPerSegment)
+    {
+        return createSpooledQueryOutput(pagesPerSegment, newSimpleAggregatedMemoryContext());
+    }
+
+    private static SpooledQueryOutput createSpooledQueryOutput(int pagesPerSegment, AggregatedMemoryContext memoryContext)
+    {
+        return new SpooledQueryOutput(
+                new TestingTempStorageManager().getTempStorage(LocalTempStorage.NAME),
+                new TempDataOperationContext(Optional.empty(), "test_query", Optional.empty(), Optional.empty(), new Identity("test", Optional.empty())),
+                createPage(0).getSizeInBytes() * pagesPerSegment,
+                memoryContext.newLocalMemoryContext(SpooledQueryOutput.class.getSimpleName()));
+    }
+
+    private static void assertSegment(SpooledQueryOutput output, int segment, int... expectedPages)
+            throws Exception
+    {
+        try (InputStream inputStream = output.openSegment(segment).get()) {
+            Iterator<SerializedPage> pages = readSerializedPages(new InputStreamSliceInput(inputStream));
+            for (int expected : expectedPages) {
+                assertPage(pages.next(), expected);
+            }
+            assertFalse(pages.hasNext());
+        }
+    }
+
+    private static SerializedPage createPage(int value)
+    {
+        return PAGES_SERDE.serialize(new Page(createLongSequenceBlock(value, value + 10)));
+    }
+
+    private static void assertPage(SerializedPage serializedPage, int expected)
+    {
+        Page page = PAGES_SERDE.deserialize(serializedPage);
+        List<Long> values = ImmutableList.of(page.getBlock(0).getLong(0), page.getBlock(0).getLong(9));
+        assertEquals(values, ImmutableList.of((long) expected, (long) expected + 9));
+    }
+}
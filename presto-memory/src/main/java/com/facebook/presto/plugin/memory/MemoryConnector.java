@@ -19,9 +19,14 @@ import com.facebook.presto.spi.connector.ConnectorPageSinkProvider;
 import com.facebook.presto.spi.connector.ConnectorPageSourceProvider;
 import com.facebook.presto.spi.connector.ConnectorSplitManager;
 import com.facebook.presto.spi.connector.ConnectorTransactionHandle;
+import com.facebook.presto.spi.session.PropertyMetadata;
 import com.facebook.presto.spi.transaction.IsolationLevel;
 import jakarta.inject.Inject;
 
+import java.util.List;
+
+import static com.facebook.presto.plugin.memory.MemoryTableProperties.TABLE_PROPERTIES;
+
 public class MemoryConnector
         implements Connector
 {
@@ -72,4 +77,10 @@ public class MemoryConnector
     {
         return pageSinkProvider;
     }
+
+    @Override
+    public List<PropertyMetadata<?>> getTableProperties()
+    {
+        return TABLE_PROPERTIES;
+    }
 }
@@ -57,7 +57,9 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
+import static com.facebook.presto.plugin.memory.MemoryTableProperties.getSortedBy;
 import static com.facebook.presto.spi.StandardErrorCode.ALREADY_EXISTS;
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_TABLE_PROPERTY;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_FOUND;
 import static com.facebook.presto.spi.StandardErrorCode.SCHEMA_NOT_EMPTY;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -187,7 +189,7 @@ public class MemoryMetadata
                 .map(column -> column.toColumnMetadata(normalizeIdentifier(session, column.getName())))
                 .collect(toImmutableList());
 
-        return new ConnectorTableMetadata(memoryTableHandle.toSchemaTableName(), columns);
+        return new ConnectorTableMetadata(memoryTableHandle.toSchemaTableName(), columns, memoryTableHandle.getTableProperties());
     }
 
     @Override
@@ -224,7 +226,8 @@ public class MemoryMetadata
                 newTableName.getSchemaName(),
                 newTableName.getTableName(),
                 oldTableHandle.getTableId(),
-                oldTableHandle.getColumnHandles());
+                oldTableHandle.getColumnHandles(),
+                oldTableHandle.getSortedBy());
         tableIds.remove(oldTableHandle.toSchemaTableName());
         tableIds.put(newTableName, oldTableHandle.getTableId());
         tables.remove(oldTableHandle.getTableId());
@@ -243,6 +246,7 @@ public class MemoryMetadata
     {
         checkSchemaExists(tableMetadata.getTable().getSchemaName());
         checkTableNotExists(tableMetadata.getTable());
+        checkSortedByColumns(tableMetadata);
         long nextId = nextTableId.getAndIncrement();
         Set<Node> nodes = nodeManager.getRequiredWorkerNodes();
         checkState(!nodes.isEmpty(), "No Memory nodes available");
@@ -265,6 +269,21 @@ public class MemoryMetadata
         }
     }
 
+    private static void checkSortedByColumns(ConnectorTableMetadata tableMetadata)
+    {
+        Map<String, ColumnMetadata> columns = tableMetadata.getColumns().stream()
+                .collect(toMap(ColumnMetadata::getName, Function.identity()));
+        for (String sortedBy : getSortedBy(tableMetadata.getProperties())) {
+            ColumnMetadata column = columns.get(sortedBy);
+            if (column == null) {
+                throw new PrestoException(INVALID_TABLE_PROPERTY, format("Sorting column [%s] does not exist", sortedBy));
+            }
+            if (!column.getType().isOrderable()) {
+                throw new PrestoException(INVALID_TABLE_PROPERTY, format("Sorting column [%s] of type %s is not orderable", sortedBy, column.getType()));
+            }
+        }
+    }
+
     private void checkTableNotExists(SchemaTableName tableName)
     {
         if (tables.values().stream()
@@ -405,7 +424,7 @@ public class MemoryMetadata
         List<MemoryDataFragment> expectedFragments = ImmutableList.copyOf(
                 tableDataFragments.get(memoryTableHandle.getTableId()).values());
 
-        MemoryTableLayoutHandle layoutHandle = new MemoryTableLayoutHandle(memoryTableHandle, expectedFragments);
+        MemoryTableLayoutHandle layoutHandle = new MemoryTableLayoutHandle(memoryTableHandle, expectedFragments, constraint.getSummary());
         return new ConnectorTableLayoutResult(getTableLayout(session, layoutHandle), constraint.getSummary());
     }
 
@@ -14,6 +14,10 @@
 package com.facebook.presto.plugin.memory;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.IntBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorPageSink;
@@ -28,11 +32,15 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.slice.Slice;
 import jakarta.inject.Inject;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.CompletableFuture.completedFuture;
 
@@ -67,7 +75,7 @@ public class MemoryPageSinkProvider
 
         pagesStore.cleanUp(memoryOutputTableHandle.getActiveTableIds());
         pagesStore.initialize(tableId);
-        return new MemoryPageSink(pagesStore, currentHostAddress, tableId);
+        return createPageSink(tableHandle);
     }
 
     @Override
@@ -85,7 +93,22 @@ public class MemoryPageSinkProvider
             pagesStore.clearTable(tableId);
         }
         pagesStore.initialize(tableId);
-        return new MemoryPageSink(pagesStore, currentHostAddress, tableId);
+        return createPageSink(tableHandle);
+    }
+
+    private ConnectorPageSink createPageSink(MemoryTableHandle tableHandle)
+    {
+        List<Type> columnTypes = tableHandle.getColumnHandles().stream()
+                .map(MemoryColumnHandle::getColumnType)
+                .collect(toImmutableList());
+        List<Integer> sortChannels = tableHandle.getSortedBy().stream()
+                .map(column -> tableHandle.getColumnHandles().stream()
+                        .filter(handle -> handle.getName().equals(column))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown sorting column: " + column))
+                        .getColumnIndex())
+                .collect(toImmutableList());
+        return new MemoryPageSink(pagesStore, currentHostAddress, tableHandle.getTableId(), columnTypes, sortChannels);
     }
 
     private static class MemoryPageSink
@@ -94,19 +117,37 @@ public class MemoryPageSinkProvider
         private final MemoryPagesStore pagesStore;
         private final HostAddress currentHostAddress;
         private final long tableId;
+        private final List<Type> columnTypes;
+        private final List<Integer> sortChannels;
+        private final List<Page> bufferedPages = new ArrayList<>();
+        // reserved in the pages store until the buffered pages are stored
+        private long bufferedBytes;
+        private long bufferedRows;
         private long addedRows;
 
-        public MemoryPageSink(MemoryPagesStore pagesStore, HostAddress currentHostAddress, long tableId)
+        public MemoryPageSink(MemoryPagesStore pagesStore, HostAddress currentHostAddress, long tableId, List<Type> columnTypes, List<Integer> sortChannels)
         {
             this.pagesStore = requireNonNull(pagesStore, "pagesStore is null");
             this.currentHostAddress = requireNonNull(currentHostAddress, "currentHostAddress is null");
             this.tableId = tableId;
+            this.columnTypes = ImmutableList.copyOf(requireNonNull(columnTypes, "columnTypes is null"));
+            this.sortChannels = ImmutableList.copyOf(requireNonNull(sortChannels, "sortChannels is null"));
         }
 
         @Override
         public CompletableFuture<?> appendPage(Page page)
         {
-            pagesStore.add(tableId, page);
+            if (sortChannels.isEmpty()) {
+                pagesStore.add(tableId, page, columnTypes);
+            }
+            else {
+                // sorted tables are written when the sink finishes, so that the zone maps of the pages are narrow
+                long sizeInBytes = page.getRetainedSizeInBytes();
+                pagesStore.reserveUnstored(sizeInBytes);
+                bufferedPages.add(page);
+                bufferedBytes += sizeInBytes;
+                bufferedRows += page.getPositionCount();
+            }
             addedRows += page.getPositionCount();
             return NOT_BLOCKED;
         }
@@ -114,12 +155,98 @@ public class MemoryPageSinkProvider
         @Override
         public CompletableFuture<Collection<Slice>> finish()
         {
+            try {
+                if (!bufferedPages.isEmpty()) {
+                    storeSortedPages();
+                }
+            }
+            finally {
+                releaseBufferedPages();
+            }
             return completedFuture(ImmutableList.of(new MemoryDataFragment(currentHostAddress, addedRows).toSlice()));
         }
 
         @Override
         public void abort()
         {
+            releaseBufferedPages();
+        }
+
+        @Override
+        public long getSystemMemoryUsage()
+        {
+            return bufferedBytes;
+        }
+
+        private void releaseBufferedPages()
+        {
+            bufferedPages.clear();
+            pagesStore.releaseUnstored(bufferedBytes);
+            bufferedBytes = 0;
+            bufferedRows = 0;
+        }
+
+        private void storeSortedPages()
+        {
+            // sort row numbers, and look up the page and position of a row in parallel arrays
+            int rowCount = toIntExact(bufferedRows);
+            int[] rowPages = new int[rowCount];
+            int[] rowPositions = new int[rowCount];
+            IntBigArray sortedRows = new IntBigArray();
+            sortedRows.ensureCapacity(rowCount);
+            int row = 0;
+            for (int pageIndex = 0; pageIndex < bufferedPages.size(); pageIndex++) {
+                for (int position = 0; position < bufferedPages.get(pageIndex).getPositionCount(); position++) {
+                    rowPages[row] = pageIndex;
+                    rowPositions[row] = position;
+                    sortedRows.set(row, row);
+                    row++;
+                }
+            }
+            sortedRows.sort(0, rowCount, (left, right) -> compareRows(
+                    bufferedPages.get(rowPages[left]), rowPositions[left],
+                    bufferedPages.get(rowPages[right]), rowPositions[right]));
+
+            PageBuilder pageBuilder = new PageBuilder(columnTypes);
+            for (int index = 0; index < rowCount; index++) {
+                int sortedRow = sortedRows.get(index);
+                Page page = bufferedPages.get(rowPages[sortedRow]);
+                int position = rowPositions[sortedRow];
+                pageBuilder.declarePosition();
+                for (int channel = 0; channel < columnTypes.size(); channel++) {
+                    columnTypes.get(channel).appendTo(page.getBlock(channel), position, pageBuilder.getBlockBuilder(channel));
+                }
+                if (pageBuilder.isFull()) {
+                    pagesStore.add(tableId, pageBuilder.build(), columnTypes);
+                    pageBuilder.reset();
+                }
+            }
+            if (!pageBuilder.isEmpty()) {
+                pagesStore.add(tableId, pageBuilder.build(), columnTypes);
+            }
+        }
+
+        private int compareRows(Page leftPage, int leftPosition, Page rightPage, int rightPosition)
+        {
+            for (int channel : sortChannels) {
+                Type type = columnTypes.get(channel);
+                Block left = leftPage.getBlock(channel);
+                Block right = rightPage.getBlock(channel);
+                boolean leftIsNull = left.isNull(leftPosition);
+                boolean rightIsNull = right.isNull(rightPosition);
+                if (leftIsNull || rightIsNull) {
+                    if (leftIsNull != rightIsNull) {
+                        // nulls last
+                        return leftIsNull ? 1 : -1;
+                    }
+                    continue;
+                }
+                int result = type.compareTo(left, leftPosition, right, rightPosition);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return 0;
         }
     }
 }
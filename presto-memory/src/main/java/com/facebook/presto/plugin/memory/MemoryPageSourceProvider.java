@@ -14,10 +14,13 @@
 package com.facebook.presto.plugin.memory;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.spi.ColumnHandle;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.ConnectorSplit;
+import com.facebook.presto.spi.ConnectorTableLayoutHandle;
 import com.facebook.presto.spi.FixedPageSource;
 import com.facebook.presto.spi.SplitContext;
 import com.facebook.presto.spi.connector.ConnectorPageSourceProvider;
@@ -47,6 +50,28 @@ public final class MemoryPageSourceProvider
             ConnectorSplit split,
             List<ColumnHandle> columns,
             SplitContext splitContext)
+    {
+        return createPageSource(split, columns, splitContext.getDynamicFilterPredicate().orElse(TupleDomain.all()));
+    }
+
+    @Override
+    public ConnectorPageSource createPageSource(
+            ConnectorTransactionHandle transactionHandle,
+            ConnectorSession session,
+            ConnectorSplit split,
+            ConnectorTableLayoutHandle layout,
+            List<ColumnHandle> columns,
+            SplitContext splitContext,
+            RuntimeStats runtimeStats)
+    {
+        TupleDomain<ColumnHandle> constraint = ((MemoryTableLayoutHandle) layout).getConstraint();
+        if (splitContext.getDynamicFilterPredicate().isPresent()) {
+            constraint = constraint.intersect(splitContext.getDynamicFilterPredicate().get());
+        }
+        return createPageSource(split, columns, constraint);
+    }
+
+    private ConnectorPageSource createPageSource(ConnectorSplit split, List<ColumnHandle> columns, TupleDomain<ColumnHandle> constraint)
     {
         MemorySplit memorySplit = (MemorySplit) split;
         long tableId = memorySplit.getTableHandle().getTableId();
@@ -62,7 +87,8 @@ public final class MemoryPageSourceProvider
                 partNumber,
                 totalParts,
                 columnIndexes,
-                expectedRows);
+                expectedRows,
+                constraint.transform(column -> ((MemoryColumnHandle) column).getColumnIndex()));
 
         return new FixedPageSource(pages);
     }
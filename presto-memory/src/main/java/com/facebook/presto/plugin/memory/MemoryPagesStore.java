@@ -15,33 +15,39 @@ package com.facebook.presto.plugin.memory;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.PrestoException;
 import com.google.common.collect.ImmutableList;
 import com.google.errorprone.annotations.ThreadSafe;
 import com.google.errorprone.annotations.concurrent.GuardedBy;
 import jakarta.inject.Inject;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.facebook.presto.plugin.memory.MemoryErrorCode.MEMORY_LIMIT_EXCEEDED;
 import static com.facebook.presto.plugin.memory.MemoryErrorCode.MISSING_DATA;
 import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
 
+/**
+ * Stores the pages of the memory tables on a worker. Each table is an append only list of
+ * pages with a zone map per page. Writers to the same table are serialized on the table,
+ * while readers never block and see a consistent prefix of the pages appended so far.
+ */
 @ThreadSafe
 public class MemoryPagesStore
 {
     private final long maxBytes;
+    private final AtomicLong currentBytes = new AtomicLong();
 
-    @GuardedBy("this")
-    private long currentBytes;
-
-    private final Map<Long, TableData> tables = new HashMap<>();
+    private final Map<Long, TableData> tables = new ConcurrentHashMap<>();
 
     @Inject
     public MemoryPagesStore(MemoryConfig config)
@@ -49,73 +55,99 @@ public class MemoryPagesStore
         this.maxBytes = config.getMaxDataPerNode().toBytes();
     }
 
-    public synchronized void initialize(long tableId)
+    public void initialize(long tableId)
     {
-        if (!tables.containsKey(tableId)) {
-            tables.put(tableId, new TableData());
-        }
+        tables.computeIfAbsent(tableId, id -> new TableData());
     }
 
-    public synchronized void add(Long tableId, Page page)
+    public void add(Long tableId, Page page)
     {
-        if (!contains(tableId)) {
+        add(tableId, page, ImmutableList.of());
+    }
+
+    /**
+     * @param columnTypes types of the columns of the page, used to build the zone map of the page
+     */
+    public void add(Long tableId, Page page, List<Type> columnTypes)
+    {
+        TableData tableData = tables.get(tableId);
+        if (tableData == null) {
             throw new PrestoException(MISSING_DATA, "Failed to find table on a worker.");
         }
 
         page.compact();
 
-        long newSize = currentBytes + page.getRetainedSizeInBytes();
-        if (maxBytes < newSize) {
-            throw new PrestoException(MEMORY_LIMIT_EXCEEDED, format("Memory limit [%d] for memory connector exceeded", maxBytes));
+        long retainedSizeInBytes = page.getRetainedSizeInBytes();
+        reserve(retainedSizeInBytes);
+        if (!tableData.add(new StoredPage(page, ZoneMap.create(page, columnTypes), retainedSizeInBytes))) {
+            // the table was dropped or cleared concurrently
+            currentBytes.addAndGet(-retainedSizeInBytes);
+            throw new PrestoException(MISSING_DATA, "Failed to find table on a worker.");
         }
-        currentBytes = newSize;
-
-        TableData tableData = tables.get(tableId);
-        tableData.add(page);
     }
 
-    public synchronized List<Page> getPages(
+    public List<Page> getPages(
             Long tableId,
             int partNumber,
             int totalParts,
             List<Integer> columnIndexes,
             long expectedRows)
     {
-        if (!contains(tableId)) {
+        return getPages(tableId, partNumber, totalParts, columnIndexes, expectedRows, TupleDomain.all());
+    }
+
+    /**
+     * @param predicate predicate on the column indexes of the table; pages whose zone map does not
+     * match the predicate are skipped, the remaining pages are returned unfiltered
+     */
+    public List<Page> getPages(
+            Long tableId,
+            int partNumber,
+            int totalParts,
+            List<Integer> columnIndexes,
+            long expectedRows,
+            TupleDomain<Integer> predicate)
+    {
+        TableData tableData = tables.get(tableId);
+        if (tableData == null) {
             throw new PrestoException(MISSING_DATA, "Failed to find table on a worker.");
         }
-        TableData tableData = tables.get(tableId);
-        if (tableData.getRows() < expectedRows) {
+        List<StoredPage> pages = tableData.getPages();
+        long rows = 0;
+        for (StoredPage page : pages) {
+            rows += page.getPage().getPositionCount();
+        }
+        if (rows < expectedRows) {
             throw new PrestoException(MISSING_DATA,
-                    format("Expected to find [%s] rows on a worker, but found [%s].", expectedRows, tableData.getRows()));
+                    format("Expected to find [%s] rows on a worker, but found [%s].", expectedRows, rows));
         }
 
         ImmutableList.Builder<Page> partitionedPages = ImmutableList.builder();
 
-        for (int i = partNumber; i < tableData.getPages().size(); i += totalParts) {
-            partitionedPages.add(getColumns(tableData.getPages().get(i), columnIndexes));
+        for (int i = partNumber; i < pages.size(); i += totalParts) {
+            StoredPage page = pages.get(i);
+            if (predicate.isAll() || page.getZoneMap().mightMatch(predicate)) {
+                partitionedPages.add(getColumns(page.getPage(), columnIndexes));
+            }
         }
 
         return partitionedPages.build();
     }
 
-    public synchronized boolean contains(Long tableId)
+    public boolean contains(Long tableId)
     {
         return tables.containsKey(tableId);
     }
 
-    public synchronized void clearTable(Long tableId)
+    public void clearTable(Long tableId)
     {
         TableData tableData = tables.get(tableId);
-        if (tableData != null) {
-            for (Page page : tableData.getPages()) {
-                currentBytes -= page.getRetainedSizeInBytes();
-            }
-            tables.put(tableId, new TableData());
+        if (tableData != null && tables.replace(tableId, tableData, new TableData())) {
+            release(tableData);
         }
     }
 
-    public synchronized void cleanUp(Set<Long> activeTableIds)
+    public void cleanUp(Set<Long> activeTableIds)
     {
         // We have to remember that there might be some race conditions when there are two tables created at once.
         // That can lead to a situation when MemoryPagesStore already knows about a newer second table on some worker
@@ -131,18 +163,46 @@ public class MemoryPagesStore
         }
         long latestTableId = Collections.max(activeTableIds);
 
-        for (Iterator<Map.Entry<Long, TableData>> tableDataIterator = tables.entrySet().iterator(); tableDataIterator.hasNext(); ) {
-            Map.Entry<Long, TableData> tablePagesEntry = tableDataIterator.next();
-            Long tableId = tablePagesEntry.getKey();
-            if (tableId < latestTableId && !activeTableIds.contains(tableId)) {
-                for (Page removedPage : tablePagesEntry.getValue().getPages()) {
-                    currentBytes -= removedPage.getRetainedSizeInBytes();
-                }
-                tableDataIterator.remove();
+        for (Map.Entry<Long, TableData> tableDataEntry : tables.entrySet()) {
+            Long tableId = tableDataEntry.getKey();
+            if (tableId < latestTableId && !activeTableIds.contains(tableId) && tables.remove(tableId, tableDataEntry.getValue())) {
+                release(tableDataEntry.getValue());
             }
         }
     }
 
+    /**
+     * Reserves memory for pages which a page sink holds before storing them, like the pages of a sorted table.
+     */
+    public void reserveUnstored(long bytes)
+    {
+        reserve(bytes);
+    }
+
+    public void releaseUnstored(long bytes)
+    {
+        currentBytes.addAndGet(-bytes);
+    }
+
+    private void reserve(long bytes)
+    {
+        while (true) {
+            long current = currentBytes.get();
+            long newSize = current + bytes;
+            if (maxBytes < newSize) {
+                throw new PrestoException(MEMORY_LIMIT_EXCEEDED, format("Memory limit [%d] for memory connector exceeded", maxBytes));
+            }
+            if (currentBytes.compareAndSet(current, newSize)) {
+                return;
+            }
+        }
+    }
+
+    private void release(TableData tableData)
+    {
+        currentBytes.addAndGet(-tableData.close());
+    }
+
     private static Page getColumns(Page page, List<Integer> columnIndexes)
     {
         Block[] outputBlocks = new Block[columnIndexes.size()];
@@ -154,25 +214,78 @@ public class MemoryPagesStore
         return new Page(page.getPositionCount(), outputBlocks);
     }
 
+    private static final class StoredPage
+    {
+        private final Page page;
+        private final ZoneMap zoneMap;
+        private final long retainedSizeInBytes;
+
+        private StoredPage(Page page, ZoneMap zoneMap, long retainedSizeInBytes)
+        {
+            this.page = requireNonNull(page, "page is null");
+            this.zoneMap = requireNonNull(zoneMap, "zoneMap is null");
+            this.retainedSizeInBytes = retainedSizeInBytes;
+        }
+
+        public Page getPage()
+        {
+            return page;
+        }
+
+        public ZoneMap getZoneMap()
+        {
+            return zoneMap;
+        }
+
+        public long getRetainedSizeInBytes()
+        {
+            return retainedSizeInBytes;
+        }
+    }
+
     private static final class TableData
     {
-        private final List<Page> pages = new ArrayList<>();
-        private long rows;
+        // Appended pages are written to the array before the count is published,
+        // so a reader that reads the count first never sees an unset entry.
+        @GuardedBy("this")
+        private StoredPage[] pages = new StoredPage[16];
+        private volatile StoredPage[] publishedPages = pages;
+        private volatile int pageCount;
 
-        public void add(Page page)
+        @GuardedBy("this")
+        private long retainedSizeInBytes;
+        @GuardedBy("this")
+        private boolean closed;
+
+        public synchronized boolean add(StoredPage page)
         {
-            pages.add(page);
-            rows += page.getPositionCount();
+            if (closed) {
+                return false;
+            }
+            int count = pageCount;
+            if (count == pages.length) {
+                pages = Arrays.copyOf(pages, count * 2);
+                publishedPages = pages;
+            }
+            pages[count] = page;
+            retainedSizeInBytes += page.getRetainedSizeInBytes();
+            pageCount = count + 1;
+            return true;
         }
 
-        private List<Page> getPages()
+        public List<StoredPage> getPages()
         {
-            return pages;
+            int count = pageCount;
+            return Collections.unmodifiableList(Arrays.asList(publishedPages).subList(0, count));
         }
 
-        private long getRows()
+        /**
+         * Rejects further pages and returns the size of the stored pages.
+         */
+        public synchronized long close()
         {
-            return rows;
+            closed = true;
+            return retainedSizeInBytes;
         }
     }
 }
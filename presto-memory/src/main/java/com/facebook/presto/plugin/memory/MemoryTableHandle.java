@@ -18,10 +18,14 @@ import com.facebook.presto.spi.ConnectorTableMetadata;
 import com.facebook.presto.spi.SchemaTableName;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
+import static com.facebook.presto.plugin.memory.MemoryTableProperties.SORTED_BY_PROPERTY;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
@@ -34,6 +38,7 @@ public final class MemoryTableHandle
     private final String tableName;
     private final Long tableId;
     private final List<MemoryColumnHandle> columnHandles;
+    private final List<String> sortedBy;
 
     public MemoryTableHandle(
             String connectorId,
@@ -44,7 +49,18 @@ public final class MemoryTableHandle
                 tableMetadata.getTable().getSchemaName(),
                 tableMetadata.getTable().getTableName(),
                 tableId,
-                MemoryColumnHandle.extractColumnHandles(tableMetadata.getColumns()));
+                MemoryColumnHandle.extractColumnHandles(tableMetadata.getColumns()),
+                MemoryTableProperties.getSortedBy(tableMetadata.getProperties()));
+    }
+
+    public MemoryTableHandle(
+            String connectorId,
+            String schemaName,
+            String tableName,
+            Long tableId,
+            List<MemoryColumnHandle> columnHandles)
+    {
+        this(connectorId, schemaName, tableName, tableId, columnHandles, ImmutableList.of());
     }
 
     @JsonCreator
@@ -53,13 +69,15 @@ public final class MemoryTableHandle
             @JsonProperty("schemaName") String schemaName,
             @JsonProperty("tableName") String tableName,
             @JsonProperty("tableId") Long tableId,
-            @JsonProperty("columnHandles") List<MemoryColumnHandle> columnHandles)
+            @JsonProperty("columnHandles") List<MemoryColumnHandle> columnHandles,
+            @JsonProperty("sortedBy") List<String> sortedBy)
     {
         this.connectorId = requireNonNull(connectorId, "connectorId is null");
         this.schemaName = requireNonNull(schemaName, "schemaName is null");
         this.tableName = requireNonNull(tableName, "tableName is null");
         this.tableId = requireNonNull(tableId, "tableId is null");
         this.columnHandles = requireNonNull(columnHandles, "columnHandles is null");
+        this.sortedBy = ImmutableList.copyOf(requireNonNull(sortedBy, "sortedBy is null"));
     }
 
     @JsonProperty
@@ -92,11 +110,26 @@ public final class MemoryTableHandle
         return columnHandles;
     }
 
+    @JsonProperty
+    public List<String> getSortedBy()
+    {
+        return sortedBy;
+    }
+
     public ConnectorTableMetadata toTableMetadata()
     {
         return new ConnectorTableMetadata(
                 toSchemaTableName(),
-                columnHandles.stream().map(MemoryColumnHandle::toColumnMetadata).collect(toList()));
+                columnHandles.stream().map(MemoryColumnHandle::toColumnMetadata).collect(toList()),
+                getTableProperties());
+    }
+
+    public Map<String, Object> getTableProperties()
+    {
+        if (sortedBy.isEmpty()) {
+            return ImmutableMap.of();
+        }
+        return ImmutableMap.of(SORTED_BY_PROPERTY, sortedBy);
     }
 
     public SchemaTableName toSchemaTableName()
@@ -133,6 +166,7 @@ public final class MemoryTableHandle
                 .add("tableName", tableName)
                 .add("tableId", tableId)
                 .add("columnHandles", columnHandles)
+                .add("sortedBy", sortedBy)
                 .toString();
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.plugin.memory;
+
+import com.facebook.presto.common.type.ArrayType;
+import com.facebook.presto.spi.session.PropertyMetadata;
+import com.google.common.collect.ImmutableList;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Locale.ENGLISH;
+
+public final class MemoryTableProperties
+{
+    public static final String SORTED_BY_PROPERTY = "sorted_by";
+
+    public static final List<PropertyMetadata<?>> TABLE_PROPERTIES = ImmutableList.of(
+            new PropertyMetadata<>(
+                    SORTED_BY_PROPERTY,
+                    "Columns by which the rows written by each writer are sorted",
+                    new ArrayType(VARCHAR),
+                    List.class,
+                    ImmutableList.of(),
+                    false,
+                    value -> ((Collection<?>) value).stream()
+                            .map(name -> ((String) name).toLowerCase(ENGLISH))
+                            .collect(toImmutableList()),
+                    value -> value));
+
+    private MemoryTableProperties() {}
+
+    @SuppressWarnings("unchecked")
+    public static List<String> getSortedBy(Map<String, Object> tableProperties)
+    {
+        List<String> sortedBy = (List<String>) tableProperties.get(SORTED_BY_PROPERTY);
+        return sortedBy == null ? ImmutableList.of() : ImmutableList.copyOf(sortedBy);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.plugin.memory;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.common.type.Type;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.RealType.REAL;
+import static com.facebook.presto.common.type.TypeUtils.readNativeValue;
+import static java.lang.Float.intBitsToFloat;
+
+/**
+ * Per column value domains of a stored page, used to skip pages that cannot contain
+ * rows matching a predicate. Orderable scalar columns record the minimum and maximum
+ * value, other columns only whether they contain nulls and non-null values. Structural
+ * types such as arrays and rows are not ranged, as their values may contain nulls,
+ * which cannot be compared.
+ */
+final class ZoneMap
+{
+    private final Domain[] columnDomains;
+
+    private ZoneMap(Domain[] columnDomains)
+    {
+        this.columnDomains = columnDomains;
+    }
+
+    /**
+     * @param columnTypes types of the leading columns of the page; columns without a type are not indexed
+     */
+    public static ZoneMap create(Page page, List<Type> columnTypes)
+    {
+        Domain[] columnDomains = new Domain[Math.min(columnTypes.size(), page.getChannelCount())];
+        for (int channel = 0; channel < columnDomains.length; channel++) {
+            columnDomains[channel] = computeDomain(columnTypes.get(channel), page.getBlock(channel), page.getPositionCount());
+        }
+        return new ZoneMap(columnDomains);
+    }
+
+    public boolean mightMatch(TupleDomain<Integer> predicate)
+    {
+        if (predicate.isNone()) {
+            return false;
+        }
+        for (Map.Entry<Integer, Domain> entry : predicate.getDomains().get().entrySet()) {
+            int channel = entry.getKey();
+            if (channel < columnDomains.length && !entry.getValue().overlaps(columnDomains[channel])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Domain computeDomain(Type type, Block block, int positionCount)
+    {
+        if (positionCount == 0) {
+            return Domain.none(type);
+        }
+
+        boolean hasNull = false;
+        boolean hasValue = false;
+        boolean hasRange = type.isOrderable() && type.getTypeParameters().isEmpty();
+        int minPosition = -1;
+        int maxPosition = -1;
+        for (int position = 0; position < positionCount; position++) {
+            if (block.isNull(position)) {
+                hasNull = true;
+                continue;
+            }
+            hasValue = true;
+            if (!hasRange) {
+                continue;
+            }
+            if (isNaN(type, block, position)) {
+                // NaN is not ordered relative to other values, so no range can describe the column
+                hasRange = false;
+                continue;
+            }
+            if (minPosition < 0 || type.compareTo(block, position, block, minPosition) < 0) {
+                minPosition = position;
+            }
+            if (maxPosition < 0 || type.compareTo(block, position, block, maxPosition) > 0) {
+                maxPosition = position;
+            }
+        }
+
+        if (!hasValue) {
+            return Domain.onlyNull(type);
+        }
+        if (!hasRange) {
+            return hasNull ? Domain.all(type) : Domain.notNull(type);
+        }
+        Range range = Range.range(type, readNativeValue(type, block, minPosition), true, readNativeValue(type, block, maxPosition), true);
+        return Domain.create(ValueSet.ofRanges(range), hasNull);
+    }
+
+    private static boolean isNaN(Type type, Block block, int position)
+    {
+        if (type.equals(DOUBLE)) {
+            return Double.isNaN(DOUBLE.getDouble(block, position));
+        }
+        if (type.equals(REAL)) {
+            return Float.isNaN(intBitsToFloat((int) REAL.getLong(block, position)));
+        }
+        return false;
+    }
+}
@@ -16,6 +16,11 @@ package com.facebook.presto.plugin.memory;
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.predicate.Domain;
+import com.facebook.presto.common.predicate.Range;
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.common.type.ArrayType;
 import com.facebook.presto.spi.ConnectorInsertTableHandle;
 import com.facebook.presto.spi.ConnectorOutputTableHandle;
 import com.facebook.presto.spi.ConnectorPageSink;
@@ -25,15 +30,21 @@ import com.facebook.presto.spi.PageSinkContext;
 import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.testing.TestingConnectorSession;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.List;
+
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.plugin.memory.MemoryErrorCode.MEMORY_LIMIT_EXCEEDED;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 @Test(singleThreaded = true)
 public class TestMemoryPagesStore
@@ -119,6 +130,106 @@ public class TestMemoryPagesStore
         insertToTable(0L, createOneMegaBytePage(), 0L);
     }
 
+    @Test
+    public void testZoneMapPruning()
+    {
+        createTable(0L, 0L);
+        pagesStore.add(0L, createBigintPage(1, 10), ImmutableList.of(BIGINT));
+        pagesStore.add(0L, createBigintPage(11, 20), ImmutableList.of(BIGINT));
+        pagesStore.add(0L, createBigintPage(21, 30), ImmutableList.of(BIGINT));
+
+        assertEquals(getPages(TupleDomain.all()).size(), 3);
+        assertEquals(getPages(TupleDomain.none()).size(), 0);
+        assertEquals(getPages(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.singleValue(BIGINT, 15L)))).size(), 1);
+        assertEquals(getPages(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.create(ValueSet.ofRanges(Range.range(BIGINT, 5L, true, 11L, true)), false)))).size(), 2);
+        assertEquals(getPages(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.singleValue(BIGINT, 42L)))).size(), 0);
+        assertEquals(getPages(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.onlyNull(BIGINT)))).size(), 0);
+
+        // a column without a type is not indexed, so the page can not be skipped
+        pagesStore.add(0L, createBigintPage(31, 40), ImmutableList.of());
+        assertEquals(getPages(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.singleValue(BIGINT, 42L)))).size(), 1);
+    }
+
+    @Test
+    public void testZoneMapOfStructuralTypes()
+    {
+        // arrays with null elements cannot be compared, so no range is recorded
+        ArrayType arrayType = new ArrayType(BIGINT);
+        BlockBuilder blockBuilder = arrayType.createBlockBuilder(null, 2);
+        BlockBuilder elementBuilder = blockBuilder.beginBlockEntry();
+        BIGINT.writeLong(elementBuilder, 1L);
+        elementBuilder.appendNull();
+        blockBuilder.closeEntry();
+        elementBuilder = blockBuilder.beginBlockEntry();
+        BIGINT.writeLong(elementBuilder, 2L);
+        blockBuilder.closeEntry();
+        ZoneMap zoneMap = ZoneMap.create(new Page(blockBuilder.build()), ImmutableList.of(arrayType));
+
+        assertTrue(zoneMap.mightMatch(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.notNull(arrayType)))));
+        assertFalse(zoneMap.mightMatch(TupleDomain.withColumnDomains(ImmutableMap.of(0, Domain.onlyNull(arrayType)))));
+    }
+
+    @Test
+    public void testSortedTable()
+    {
+        ConnectorPageSink pageSink = createSortedTablePageSink();
+        pageSink.appendPage(createBigintPage(31, 40));
+        pageSink.appendPage(createBigintPage(1, 30));
+        assertTrue(pageSink.getSystemMemoryUsage() > 0);
+        pageSink.finish();
+        assertEquals(pageSink.getSystemMemoryUsage(), 0);
+
+        List<Page> pages = getPages(TupleDomain.all());
+        assertEquals(pages.size(), 1);
+        Page page = pages.get(0);
+        assertEquals(page.getPositionCount(), 40);
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            assertEquals(BIGINT.getLong(page.getBlock(0), position), position + 1);
+        }
+    }
+
+    @Test
+    public void testSortedTableMemoryLimitExceeded()
+    {
+        // the pages buffered for sorting count towards the memory limit
+        ConnectorPageSink pageSink = createSortedTablePageSink();
+        pageSink.appendPage(createBigintPage(1, 50_000));
+        pageSink.appendPage(createBigintPage(50_001, 100_000));
+        try {
+            pageSink.appendPage(createBigintPage(100_001, 150_000));
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), MEMORY_LIMIT_EXCEEDED.toErrorCode());
+        }
+
+        // the buffered pages are released on abort
+        pageSink.abort();
+        assertEquals(pageSink.getSystemMemoryUsage(), 0);
+        insertToTable(0L, createBigintPage(1, 100_000), 0L);
+    }
+
+    private ConnectorPageSink createSortedTablePageSink()
+    {
+        MemoryTableHandle table = new MemoryTableHandle(
+                "test",
+                "schema",
+                "sorted",
+                0L,
+                ImmutableList.of(new MemoryColumnHandle("value", BIGINT, 0)),
+                ImmutableList.of("value"));
+        return pageSinkProvider.createPageSink(
+                MemoryTransactionHandle.INSTANCE,
+                SESSION,
+                new MemoryOutputTableHandle(table, ImmutableSet.of(0L)),
+                PageSinkContext.defaultContext());
+    }
+
+    private List<Page> getPages(TupleDomain<Integer> predicate)
+    {
+        return pagesStore.getPages(0L, 0, 1, ImmutableList.of(0), 0, predicate);
+    }
+
     private void insertToTable(long tableId, Long... activeTableIds)
     {
         insertToTable(tableId, createPage(), activeTableIds);
@@ -176,6 +287,15 @@ public class TestMemoryPagesStore
         return new Page(0, blockBuilder.build());
     }
 
+    private static Page createBigintPage(long from, long to)
+    {
+        BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, toIntExact(to - from + 1));
+        for (long value = to; value >= from; value--) {
+            BIGINT.writeLong(blockBuilder, value);
+        }
+        return new Page(blockBuilder.build());
+    }
+
     private static Page createOneMegaBytePage()
     {
         BlockBuilder blockBuilder = BIGINT.createFixedSizeBlockBuilder(POSITIONS_PER_PAGE);
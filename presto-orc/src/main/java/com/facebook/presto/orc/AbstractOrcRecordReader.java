@@ -35,6 +35,7 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.slice.Slice;
 import org.joda.time.DateTimeZone;
 import org.openjdk.jol.info.ClassLayout;
@@ -53,6 +54,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.orc.AbstractOrcRecordReader.LinearProbeRangeFinder.createTinyStripesRangeFinder;
@@ -64,6 +66,7 @@ import static com.facebook.presto.orc.OrcWriteValidation.WriteChecksumBuilder.cr
 import static com.facebook.presto.orc.metadata.OrcType.OrcTypeKind.STRUCT;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateVoidFuture;
 import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
@@ -78,6 +81,8 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(AbstractOrcRecordReader.class).instanceSize();
 
     private final OrcDataSource orcDataSource;
+    private final Optional<ReadAheadOrcDataSource> readAheadDataSource;
+    private final long maxReadAheadBytes;
 
     private final T[] streamReaders;
 
@@ -135,6 +140,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             long splitLength,
             List<OrcType> types,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             Optional<EncryptionLibrary> encryptionLibrary,
             Map<Integer, Integer> dwrfEncryptionGroupMap,
             Map<Integer, Slice> columnToIntermediateKeyMap,
@@ -145,6 +151,8 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             DataSize maxMergeDistance,
             DataSize tinyStripeThreshold,
             DataSize maxBlockSize,
+            Optional<Executor> readAheadExecutor,
+            DataSize maxReadAheadSize,
             OrcAggregatedMemoryContext systemMemoryUsage,
             Optional<OrcWriteValidation> writeValidation,
             int initialBatchSize,
@@ -161,6 +169,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         requireNonNull(orcDataSource, "orcDataSource is null");
         requireNonNull(types, "types is null");
         requireNonNull(decompressor, "decompressor is null");
+        requireNonNull(readAheadDecompressor, "readAheadDecompressor is null");
         requireNonNull(encryptionLibrary, "encryptionLibrary is null");
         requireNonNull(dwrfEncryptionGroupMap, "dwrfEncryptionGroupMap is null");
         requireNonNull(columnToIntermediateKeyMap, "columnToIntermediateKeyMap is null");
@@ -226,6 +235,22 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         this.stripeFilePositions = stripeFilePositions.build();
 
         orcDataSource = wrapWithCacheIfTinyStripes(orcDataSource, this.stripes, maxMergeDistance, tinyStripeThreshold, systemMemoryUsage);
+        requireNonNull(readAheadExecutor, "readAheadExecutor is null");
+        // tiny stripes are already read in a few large requests by the caching data source
+        if (readAheadExecutor.isPresent() && !(orcDataSource instanceof CachingOrcDataSource)) {
+            ReadAheadOrcDataSource readAheadDataSource = new ReadAheadOrcDataSource(
+                    orcDataSource,
+                    readAheadExecutor.get(),
+                    maxMergeDistance,
+                    systemMemoryUsage.newOrcLocalMemoryContext(ReadAheadOrcDataSource.class.getSimpleName()));
+            this.readAheadDataSource = Optional.of(readAheadDataSource);
+            orcDataSource = readAheadDataSource;
+        }
+        else {
+            this.readAheadDataSource = Optional.empty();
+        }
+        // the ranges read ahead are merged into arrays of at most this size
+        this.maxReadAheadBytes = min(requireNonNull(maxReadAheadSize, "maxReadAheadSize is null").toBytes(), Integer.MAX_VALUE);
         this.orcDataSource = orcDataSource;
         this.splitLength = splitLength;
 
@@ -245,6 +270,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         stripeReader = new StripeReader(
                 orcDataSource,
                 decompressor,
+                readAheadDecompressor,
                 types,
                 includedOrcColumns,
                 rowsInRowGroup,
@@ -449,6 +475,39 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         return new CachingOrcDataSource(dataSource, createTinyStripesRangeFinder(stripes, maxMergeDistance, tinyStripeThreshold), systemMemoryContext.newOrcLocalMemoryContext(CachingOrcDataSource.class.getSimpleName()));
     }
 
+    /**
+     * Returns a future that is done when the next batch can be read without waiting for the
+     * stripe that is being read ahead. Until the first call, or when read ahead is disabled,
+     * stripes are read synchronously.
+     */
+    public ListenableFuture<?> isBlocked()
+    {
+        if (!readAheadDataSource.isPresent() || rowGroups == null || rowGroups.hasNext() || nextRowInGroup < currentGroupRowCount) {
+            return immediateVoidFuture();
+        }
+        if (currentStripe < 0) {
+            // start reading the first stripe without waiting for the first batch
+            readAheadStripe(0);
+        }
+        return readAheadDataSource.get().getReadAheadFuture();
+    }
+
+    private void readAheadStripe(int stripeIndex)
+    {
+        if (stripeIndex >= stripes.size()) {
+            return;
+        }
+        StripeInformation stripe = stripes.get(stripeIndex);
+        if (stripe.getTotalLength() > 0) {
+            // only the footer and the streams of the included columns are read, and nothing more
+            // if the row indexes show that no row group of the stripe matches the predicate
+            readAheadDataSource.get().readAhead(
+                    new DiskRange(stripe.getOffset(), toIntExact(stripe.getTotalLength())),
+                    maxReadAheadBytes,
+                    dataSource -> stripeReader.getReadAheadRanges(stripe, dataSource));
+        }
+    }
+
     /**
      * Return the row position relative to the start of the file.
      */
@@ -657,8 +716,20 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             dwrfEncryptionInfo = Optional.of(createDwrfEncryptionInfo(encryptionLibrary.get(), stripeDecryptionKeyMetadata, intermediateKeyMetadata, dwrfEncryptionGroupMap));
         }
 
-        SharedBuffer sharedDecompressionBuffer = new SharedBuffer(currentStripeSystemMemoryContext.newOrcLocalMemoryContext("sharedDecompressionBuffer"));
-        Stripe stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext, dwrfEncryptionInfo, sharedDecompressionBuffer);
+        if (readAheadDataSource.isPresent()) {
+            // the next stripe is read while this one is decoded
+            readAheadDataSource.get().startStripe(stripeInformation.getOffset());
+            readAheadStripe(currentStripe + 1);
+        }
+
+        Stripe stripe;
+        if (isCurrentStripeSkipped()) {
+            stripe = null;
+        }
+        else {
+            SharedBuffer sharedDecompressionBuffer = new SharedBuffer(currentStripeSystemMemoryContext.newOrcLocalMemoryContext("sharedDecompressionBuffer"));
+            stripe = stripeReader.readStripe(stripeInformation, currentStripeSystemMemoryContext, dwrfEncryptionInfo, sharedDecompressionBuffer);
+        }
         if (stripe != null) {
             ZoneId timezone = stripe.getTimezone();
             for (StreamReader column : streamReaders) {
@@ -672,6 +743,16 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         fileIntrospector.ifPresent(introspector -> introspector.onStripe(stripeInformation, stripe));
     }
 
+    private boolean isCurrentStripeSkipped()
+    {
+        // readStripe would return null for a stripe without matching row groups, but it reads the
+        // stripe first, so the stripe is only skipped if its row indexes are not validated or inspected
+        return readAheadDataSource.isPresent()
+                && readAheadDataSource.get().isCurrentStripeSkipped()
+                && !writeValidation.isPresent()
+                && !fileIntrospector.isPresent();
+    }
+
     @VisibleForTesting
     public static List<byte[]> getDecryptionKeyMetadata(int currentStripe, List<StripeInformation> stripes)
     {
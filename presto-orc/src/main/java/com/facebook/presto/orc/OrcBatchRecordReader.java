@@ -54,6 +54,7 @@ public class OrcBatchRecordReader
             long splitLength,
             List<OrcType> types,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             Optional<EncryptionLibrary> encryptionLibrary,
             Map<Integer, Integer> dwrfEncryptionGroupMap,
             Map<Integer, Slice> intermediateKeyMetadata,
@@ -91,6 +92,7 @@ public class OrcBatchRecordReader
                 splitLength,
                 types,
                 decompressor,
+                readAheadDecompressor,
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 intermediateKeyMetadata,
@@ -101,6 +103,8 @@ public class OrcBatchRecordReader
                 options.getMaxMergeDistance(),
                 options.getTinyStripeThreshold(),
                 options.getMaxBlockSize(),
+                options.getReadAheadExecutor(),
+                options.getMaxReadAheadSize(),
                 systemMemoryUsage,
                 writeValidation,
                 initialBatchSize,
@@ -388,6 +388,7 @@ public class OrcReader
                 length,
                 footer.getTypes(),
                 decompressor,
+                createReadAheadDecompressor(),
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 columnsToIntermediateKeys,
@@ -442,6 +443,7 @@ public class OrcReader
                 length,
                 footer.getTypes(),
                 decompressor,
+                createReadAheadDecompressor(),
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 columnsToIntermediateKeys,
@@ -461,6 +463,16 @@ public class OrcReader
                 fileModificationTime);
     }
 
+    private Optional<OrcDecompressor> createReadAheadDecompressor()
+    {
+        // the read-ahead decompresses the row indexes of the next stripe on the read-ahead executor while
+        // the record reader decompresses the current stripe, and decompressors are not thread safe
+        if (!orcReaderOptions.getReadAheadExecutor().isPresent()) {
+            return Optional.empty();
+        }
+        return createOrcDecompressor(orcDataSource.getId(), compressionKind, bufferSize, orcReaderOptions.isOrcZstdJniDecompressionEnabled());
+    }
+
     private static OrcDataSource wrapWithCacheIfTiny(OrcDataSource dataSource, DataSize maxCacheSize, OrcAggregatedMemoryContext systemMemoryContext)
     {
         if (dataSource instanceof CachingOrcDataSource) {
@@ -15,13 +15,18 @@ package com.facebook.presto.orc;
 
 import com.facebook.airlift.units.DataSize;
 
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
 import static com.facebook.airlift.units.DataSize.Unit.GIGABYTE;
+import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static java.util.Objects.requireNonNull;
 
 public class OrcReaderOptions
 {
     private static final DataSize DEFAULT_MAX_SLICE_SIZE = new DataSize(1, GIGABYTE);
+    private static final DataSize DEFAULT_MAX_READ_AHEAD_SIZE = new DataSize(64, MEGABYTE);
     private final DataSize maxMergeDistance;
     private final DataSize tinyStripeThreshold;
     private final DataSize maxBlockSize;
@@ -32,6 +37,10 @@ public class OrcReaderOptions
     // slice reader will throw if the slice size is larger than this value
     private final DataSize maxSliceSize;
     private final boolean resetAllReaders;
+    // if present, the next stripe is read on this executor while the current stripe is decoded
+    private final Optional<Executor> readAheadExecutor;
+    // stripes whose included streams are larger than this are not read ahead
+    private final DataSize maxReadAheadSize;
 
     /**
      * Read column statistics for flat map columns. Usually there are quite a
@@ -48,7 +57,9 @@ public class OrcReaderOptions
             boolean appendRowNumber,
             boolean readMapStatistics,
             DataSize maxSliceSize,
-            boolean resetAllReaders)
+            boolean resetAllReaders,
+            Optional<Executor> readAheadExecutor,
+            DataSize maxReadAheadSize)
     {
         this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
         this.maxBlockSize = requireNonNull(maxBlockSize, "maxBlockSize is null");
@@ -59,6 +70,8 @@ public class OrcReaderOptions
         this.readMapStatistics = readMapStatistics;
         this.maxSliceSize = maxSliceSize;
         this.resetAllReaders = resetAllReaders;
+        this.readAheadExecutor = requireNonNull(readAheadExecutor, "readAheadExecutor is null");
+        this.maxReadAheadSize = requireNonNull(maxReadAheadSize, "maxReadAheadSize is null");
     }
 
     public DataSize getMaxMergeDistance()
@@ -106,6 +119,16 @@ public class OrcReaderOptions
         return resetAllReaders;
     }
 
+    public Optional<Executor> getReadAheadExecutor()
+    {
+        return readAheadExecutor;
+    }
+
+    public DataSize getMaxReadAheadSize()
+    {
+        return maxReadAheadSize;
+    }
+
     @Override
     public String toString()
     {
@@ -119,6 +142,8 @@ public class OrcReaderOptions
                 .add("readMapStatistics", readMapStatistics)
                 .add("maxSliceSize", maxSliceSize)
                 .add("resetAllReaders", resetAllReaders)
+                .add("readAheadEnabled", readAheadExecutor.isPresent())
+                .add("maxReadAheadSize", maxReadAheadSize)
                 .toString();
     }
 
@@ -138,6 +163,8 @@ public class OrcReaderOptions
         private boolean readMapStatistics;
         private DataSize maxSliceSize = DEFAULT_MAX_SLICE_SIZE;
         private boolean resetAllReaders;
+        private Optional<Executor> readAheadExecutor = Optional.empty();
+        private DataSize maxReadAheadSize = DEFAULT_MAX_READ_AHEAD_SIZE;
 
         private Builder() {}
 
@@ -195,6 +222,18 @@ public class OrcReaderOptions
             return this;
         }
 
+        public Builder withReadAheadExecutor(Executor readAheadExecutor)
+        {
+            this.readAheadExecutor = Optional.of(requireNonNull(readAheadExecutor, "readAheadExecutor is null"));
+            return this;
+        }
+
+        public Builder withMaxReadAheadSize(DataSize maxReadAheadSize)
+        {
+            this.maxReadAheadSize = requireNonNull(maxReadAheadSize, "maxReadAheadSize is null");
+            return this;
+        }
+
         public OrcReaderOptions build()
         {
             return new OrcReaderOptions(
@@ -206,7 +245,9 @@ public class OrcReaderOptions
                     appendRowNumber,
                     readMapStatistics,
                     maxSliceSize,
-                    resetAllReaders);
+                    resetAllReaders,
+                    readAheadExecutor,
+                    maxReadAheadSize);
         }
     }
 }
@@ -172,6 +172,7 @@ public class OrcSelectiveRecordReader
             long length,
             List<OrcType> types,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             Optional<EncryptionLibrary> encryptionLibrary,
             Map<Integer, Integer> dwrfEncryptionGroupMap,
             Map<Integer, Slice> intermediateKeyMetadata,
@@ -213,6 +214,7 @@ public class OrcSelectiveRecordReader
                 length,
                 types,
                 decompressor,
+                readAheadDecompressor,
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 intermediateKeyMetadata,
@@ -223,6 +225,8 @@ public class OrcSelectiveRecordReader
                 options.getMaxMergeDistance(),
                 options.getTinyStripeThreshold(),
                 options.getMaxBlockSize(),
+                options.getReadAheadExecutor(),
+                options.getMaxReadAheadSize(),
                 systemMemoryUsage,
                 writeValidation,
                 initialBatchSize,
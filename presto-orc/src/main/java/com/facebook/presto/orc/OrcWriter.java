@@ -15,6 +15,7 @@ package com.facebook.presto.orc;
 
 import com.facebook.airlift.units.DataSize;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.io.DataOutput;
 import com.facebook.presto.common.io.DataSink;
 import com.facebook.presto.common.type.Type;
@@ -41,6 +42,7 @@ import com.facebook.presto.orc.stream.StreamDataOutput;
 import com.facebook.presto.orc.writer.ColumnWriter;
 import com.facebook.presto.orc.writer.CompressionBufferPool;
 import com.facebook.presto.orc.writer.CompressionBufferPool.LastUsedCompressionBufferPool;
+import com.facebook.presto.orc.writer.CompressionBufferPool.SharedCompressionBufferPool;
 import com.facebook.presto.orc.writer.DictionaryColumnWriter;
 import com.facebook.presto.orc.writer.StreamLayout;
 import com.google.common.annotations.VisibleForTesting;
@@ -50,6 +52,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
@@ -62,6 +66,7 @@ import org.openjdk.jol.info.ClassLayout;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -72,6 +77,9 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.OptionalLong;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -94,9 +102,14 @@ import static com.facebook.presto.orc.metadata.statistics.ColumnStatistics.merge
 import static com.facebook.presto.orc.writer.ColumnWriters.createColumnWriter;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Throwables.throwIfInstanceOf;
+import static com.google.common.base.Throwables.throwIfUnchecked;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.Futures.immediateVoidFuture;
+import static com.google.common.util.concurrent.Futures.successfulAsList;
 import static io.airlift.slice.Slices.utf8Slice;
 import static java.lang.Integer.min;
 import static java.lang.Math.toIntExact;
@@ -142,6 +155,8 @@ public class OrcWriter
     @Nullable
     private final OrcWriteValidation.OrcWriteValidationBuilder validationBuilder;
     private final CompressionBufferPool compressionBufferPool;
+    // present if the column streams are encoded in parallel and stripes are written in the background
+    private final Optional<Executor> encodingExecutor;
 
     private int stripeRowCount;
     private int rowGroupRowCount;
@@ -151,6 +166,11 @@ public class OrcWriter
     private long previouslyRecordedSizeInBytes;
     private boolean closed;
 
+    // at most one stripe is written in the background, while the next stripe is encoded
+    private ListenableFuture<?> pendingStripeWrite = immediateVoidFuture();
+    private long pendingStripeEndOffset;
+    private long pendingStripeRetainedBytes;
+
     private long numberOfRows;
     private long stripeRawSize;
     private long rawSize;
@@ -211,7 +231,9 @@ public class OrcWriter
         this.dataSink = requireNonNull(dataSink, "dataSink is null");
         this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
         this.orcEncoding = requireNonNull(orcEncoding, "orcEncoding is null");
-        this.compressionBufferPool = new LastUsedCompressionBufferPool();
+        // the encryptors are shared by the column writers of an encryption group, so encrypted files are encoded serially
+        this.encodingExecutor = requireNonNull(encryption, "encryption is null").isPresent() ? Optional.empty() : options.getEncodingExecutor();
+        this.compressionBufferPool = encodingExecutor.isPresent() ? new SharedCompressionBufferPool() : new LastUsedCompressionBufferPool();
 
         requireNonNull(columnNames, "columnNames is null");
         requireNonNull(inputOrcTypes, "inputOrcTypes is null");
@@ -377,6 +399,9 @@ public class OrcWriter
      */
     public long getWrittenBytes()
     {
+        if (!pendingStripeWrite.isDone()) {
+            return pendingStripeEndOffset;
+        }
         return dataSink.size();
     }
 
@@ -393,6 +418,7 @@ public class OrcWriter
         return INSTANCE_SIZE +
                 columnWritersRetainedBytes +
                 closedStripesRetainedBytes +
+                pendingStripeRetainedBytes +
                 dataSink.getRetainedSizeInBytes() +
                 compressionBufferPool.getRetainedBytes() +
                 (validationBuilder == null ? 0 : validationBuilder.getRetainedSize());
@@ -446,10 +472,26 @@ public class OrcWriter
 
         // write chunks
         bufferedBytes = 0;
-        for (int channel = 0; channel < chunk.getChannelCount(); channel++) {
-            ColumnWriter writer = columnWriters.get(channel);
-            stripeRawSize += writer.writeBlock(chunk.getBlock(channel));
-            bufferedBytes += writer.getBufferedBytes();
+        if (isParallelEncoding()) {
+            List<Callable<Long>> tasks = new ArrayList<>(chunk.getChannelCount());
+            for (int channel = 0; channel < chunk.getChannelCount(); channel++) {
+                ColumnWriter writer = columnWriters.get(channel);
+                Block block = chunk.getBlock(channel);
+                tasks.add(() -> writer.writeBlock(block));
+            }
+            for (long blockRawSize : runOnEncodingExecutor(tasks)) {
+                stripeRawSize += blockRawSize;
+            }
+            for (ColumnWriter writer : columnWriters) {
+                bufferedBytes += writer.getBufferedBytes();
+            }
+        }
+        else {
+            for (int channel = 0; channel < chunk.getChannelCount(); channel++) {
+                ColumnWriter writer = columnWriters.get(channel);
+                stripeRawSize += writer.writeBlock(chunk.getBlock(channel));
+                bufferedBytes += writer.getBufferedBytes();
+            }
         }
 
         // update stats
@@ -486,6 +528,9 @@ public class OrcWriter
     private void flushStripe(FlushReason flushReason)
             throws IOException
     {
+        // the offset of the stripe is only known once the previous stripe is in the data sink
+        waitForPendingStripeWrite();
+
         List<DataOutput> outputData = new ArrayList<>();
         long stripeStartOffset = dataSink.size();
         // add header to first stripe (this is not required but nice to have)
@@ -505,7 +550,12 @@ public class OrcWriter
             }
 
             // write all data
-            dataSink.write(outputData);
+            if (encodingExecutor.isPresent() && flushReason != CLOSED) {
+                writeInBackground(outputData);
+            }
+            else {
+                dataSink.write(outputData);
+            }
         }
         finally {
             // open next stripe
@@ -519,6 +569,7 @@ public class OrcWriter
     }
 
     private void flushColumnWriters(FlushReason flushReason)
+            throws IOException
     {
         if (stripeRowCount == 0) {
             verify(flushReason == CLOSED, "An empty stripe is not allowed");
@@ -532,7 +583,93 @@ public class OrcWriter
             dictionaryCompressionOptimizer.finalOptimize(bufferedBytes);
         }
 
-        columnWriters.forEach(ColumnWriter::close);
+        if (isParallelEncoding()) {
+            // closing a column writer writes out and compresses its dictionary
+            runOnEncodingExecutor(columnWriters.stream()
+                    .map(columnWriter -> (Callable<Void>) () -> {
+                        columnWriter.close();
+                        return null;
+                    })
+                    .collect(toImmutableList()));
+        }
+        else {
+            columnWriters.forEach(ColumnWriter::close);
+        }
+    }
+
+    private boolean isParallelEncoding()
+    {
+        return encodingExecutor.isPresent() && columnWriters.size() > 1;
+    }
+
+    /**
+     * Runs the tasks on the encoding executor and waits for all of them to finish, even if one
+     * fails, so that no column writer is still in use when this method returns.
+     */
+    private <T> List<T> runOnEncodingExecutor(List<Callable<T>> tasks)
+            throws IOException
+    {
+        List<ListenableFuture<T>> futures = tasks.stream()
+                .map(task -> Futures.submit(task, encodingExecutor.get()))
+                .collect(toImmutableList());
+        try {
+            successfulAsList(futures).get();
+            List<T> results = new ArrayList<>(futures.size());
+            for (ListenableFuture<T> future : futures) {
+                results.add(getDone(future));
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while encoding stripe");
+        }
+        catch (ExecutionException e) {
+            throwIfInstanceOf(e.getCause(), IOException.class);
+            throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void writeInBackground(List<DataOutput> outputData)
+    {
+        // the buffers of the column writers are reused for the next stripe, so the stripe is copied first
+        long stripeSize = outputData.stream()
+                .mapToLong(DataOutput::size)
+                .sum();
+        DynamicSliceOutput output = new DynamicSliceOutput(toIntExact(stripeSize));
+        outputData.forEach(data -> data.writeData(output));
+        Slice stripe = output.slice();
+
+        pendingStripeEndOffset = dataSink.size() + stripeSize;
+        pendingStripeRetainedBytes = stripe.getRetainedSize();
+        pendingStripeWrite = Futures.submit(() -> {
+            dataSink.write(ImmutableList.of(createDataOutput(stripe)));
+            return null;
+        }, encodingExecutor.get());
+    }
+
+    private void waitForPendingStripeWrite()
+            throws IOException
+    {
+        try {
+            pendingStripeWrite.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing stripe");
+        }
+        catch (ExecutionException e) {
+            throwIfInstanceOf(e.getCause(), IOException.class);
+            throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+        finally {
+            if (pendingStripeWrite.isDone()) {
+                pendingStripeRetainedBytes = 0;
+            }
+        }
     }
 
     /**
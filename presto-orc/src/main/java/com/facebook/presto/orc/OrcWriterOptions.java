@@ -22,6 +22,7 @@ import com.google.common.collect.ImmutableSet;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import static com.facebook.airlift.units.DataSize.Unit.BYTE;
 import static com.facebook.airlift.units.DataSize.Unit.KILOBYTE;
@@ -80,6 +81,12 @@ public class OrcWriterOptions
     private final boolean lazyOutputBuffer;
     private final boolean verifyCompression;
 
+    /**
+     * If present, the column streams are encoded and compressed on this executor, and stripes
+     * are written to the data sink while the next stripe is being encoded.
+     */
+    private final Optional<Executor> encodingExecutor;
+
     /**
      * Contains indexes of columns (not nodes!) for which writer should use flattened encoding, e.g. flat maps.
      */
@@ -109,7 +116,8 @@ public class OrcWriterOptions
             int maxFlattenedMapKeyCount,
             boolean resetOutputBuffer,
             boolean lazyOutputBuffer,
-            boolean verifyCompression)
+            boolean verifyCompression,
+            Optional<Executor> encodingExecutor)
     {
         requireNonNull(flushPolicy, "flushPolicy is null");
         checkArgument(rowGroupMaxRowCount >= 1, "rowGroupMaxRowCount must be at least 1");
@@ -124,6 +132,7 @@ public class OrcWriterOptions
         requireNonNull(streamLayoutFactory, "streamLayoutFactory is null");
         requireNonNull(dwrfWriterOptions, "dwrfWriterOptions is null");
         requireNonNull(flattenedColumns, "flattenedColumns is null");
+        requireNonNull(encodingExecutor, "encodingExecutor is null");
         checkArgument(maxFlattenedMapKeyCount > 0, "maxFlattenedMapKeyCount must be positive: %s", maxFlattenedMapKeyCount);
 
         this.flushPolicy = flushPolicy;
@@ -150,6 +159,7 @@ public class OrcWriterOptions
         this.resetOutputBuffer = resetOutputBuffer;
         this.lazyOutputBuffer = lazyOutputBuffer;
         this.verifyCompression = verifyCompression;
+        this.encodingExecutor = encodingExecutor;
     }
 
     public OrcWriterFlushPolicy getFlushPolicy()
@@ -272,6 +282,11 @@ public class OrcWriterOptions
         return verifyCompression;
     }
 
+    public Optional<Executor> getEncodingExecutor()
+    {
+        return encodingExecutor;
+    }
+
     @Override
     public String toString()
     {
@@ -298,6 +313,7 @@ public class OrcWriterOptions
                 .add("resetOutputBuffer", resetOutputBuffer)
                 .add("lazyOutputBuffer", lazyOutputBuffer)
                 .add("verifyCompression", verifyCompression)
+                .add("encodingExecutor", encodingExecutor.isPresent())
                 .toString();
     }
 
@@ -339,6 +355,7 @@ public class OrcWriterOptions
         private boolean resetOutputBuffer = DEFAULT_RESET_OUTPUT_BUFFER;
         private boolean lazyOutputBuffer = DEFAULT_LAZY_OUTPUT_BUFFER;
         private boolean verifyCompression = DEFAULT_VERIFY_COMPRESSION;
+        private Optional<Executor> encodingExecutor = Optional.empty();
 
         public Builder withFlushPolicy(OrcWriterFlushPolicy flushPolicy)
         {
@@ -498,6 +515,12 @@ public class OrcWriterOptions
             return this;
         }
 
+        public Builder withEncodingExecutor(Executor encodingExecutor)
+        {
+            this.encodingExecutor = Optional.of(requireNonNull(encodingExecutor, "encodingExecutor is null"));
+            return this;
+        }
+
         public OrcWriterOptions build()
         {
             Optional<DwrfStripeCacheOptions> dwrfWriterOptions;
@@ -532,7 +555,8 @@ public class OrcWriterOptions
                     maxFlattenedMapKeyCount,
                     resetOutputBuffer,
                     lazyOutputBuffer,
-                    verifyCompression);
+                    verifyCompression,
+                    encodingExecutor);
         }
     }
 }
@@ -0,0 +1,459 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.airlift.units.DataSize;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.slice.Slice;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.airlift.units.DataSize.succinctBytes;
+import static com.facebook.presto.orc.OrcDataSourceUtils.getDiskRangeSlice;
+import static com.facebook.presto.orc.OrcDataSourceUtils.mergeAdjacentDiskRanges;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateVoidFuture;
+import static com.google.common.util.concurrent.Futures.submit;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the next stripe of a file in the background while the current stripe is decoded.
+ * A {@link StripeRangeSelector} reads the stripe metadata it needs, such as the stripe footer
+ * and row indexes, and selects the ranges of the stripe to read, or finds that the stripe has no
+ * rows to read. The metadata and the selected ranges are buffered, and reads that fall within a
+ * buffered range are served from memory.
+ * All other reads go directly to the underlying data source, which therefore must support
+ * concurrent positional reads.
+ * <p>
+ * Apart from the background reads, this class is not thread safe.
+ */
+public class ReadAheadOrcDataSource
+        implements OrcDataSource
+{
+    private final OrcDataSource dataSource;
+    private final Executor executor;
+    private final DataSize maxMergeDistance;
+    private final OrcLocalMemoryContext systemMemoryContext;
+
+    // the stripe being decoded, and the stripe being read ahead
+    private ReadAhead currentStripe;
+    private ReadAhead nextStripe;
+
+    public ReadAheadOrcDataSource(OrcDataSource dataSource, Executor executor, DataSize maxMergeDistance, OrcLocalMemoryContext systemMemoryContext)
+    {
+        this.dataSource = requireNonNull(dataSource, "dataSource is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
+        this.systemMemoryContext = requireNonNull(systemMemoryContext, "systemMemoryContext is null");
+    }
+
+    @Override
+    public OrcDataSourceId getId()
+    {
+        return dataSource.getId();
+    }
+
+    @Override
+    public long getReadBytes()
+    {
+        return dataSource.getReadBytes();
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        return dataSource.getReadTimeNanos();
+    }
+
+    @Override
+    public long getSize()
+    {
+        return dataSource.getSize();
+    }
+
+    /**
+     * Starts reading the stripe at {@code stripeRange} in the background. The ranges chosen by
+     * {@code rangeSelector} are only read if, together with the metadata read to select them,
+     * they fit in {@code maxReadAheadBytes}. Only one stripe can be read ahead at a time.
+     *
+     * @return a future that is done when the read has finished, successfully or not
+     */
+    public ListenableFuture<?> readAhead(DiskRange stripeRange, long maxReadAheadBytes, StripeRangeSelector rangeSelector)
+    {
+        requireNonNull(stripeRange, "stripeRange is null");
+        requireNonNull(rangeSelector, "rangeSelector is null");
+        if (nextStripe != null) {
+            checkState(nextStripe.getStripeRange().equals(stripeRange), "stripe %s is already being read ahead", nextStripe.getStripeRange());
+            return nextStripe.getFinishedFuture();
+        }
+        nextStripe = new ReadAhead(stripeRange, min(stripeRange.getLength(), maxReadAheadBytes));
+        updateMemoryUsage();
+        nextStripe.start(rangeSelector);
+        // the read may already have finished when it runs in the calling thread
+        updateMemoryUsage();
+        return nextStripe.getFinishedFuture();
+    }
+
+    /**
+     * Returns a future that is done when the stripe being read ahead is available, or a done
+     * future if there is no such stripe.
+     */
+    public ListenableFuture<?> getReadAheadFuture()
+    {
+        if (nextStripe == null) {
+            return immediateVoidFuture();
+        }
+        return nextStripe.getFinishedFuture();
+    }
+
+    /**
+     * Called before the stripe starting at {@code stripeOffset} is read. The stripe read ahead,
+     * if any, becomes the current stripe, and the buffers of the previous stripe are released.
+     */
+    public void startStripe(long stripeOffset)
+    {
+        checkState(nextStripe == null || nextStripe.getStripeRange().getOffset() == stripeOffset, "stripe %s was read ahead, but stripe at offset %s was started", nextStripe, stripeOffset);
+        currentStripe = nextStripe;
+        nextStripe = null;
+        updateMemoryUsage();
+    }
+
+    /**
+     * Returns whether the read ahead of the current stripe found that the stripe has no rows to
+     * read, in which case the stripe need not be read at all.
+     */
+    public boolean isCurrentStripeSkipped()
+    {
+        return currentStripe != null && currentStripe.isSkipped();
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer)
+            throws IOException
+    {
+        readFully(position, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
+            throws IOException
+    {
+        Slice slice = getBufferedSlice(new DiskRange(position, bufferLength));
+        if (slice == null) {
+            dataSource.readFully(position, buffer, bufferOffset, bufferLength);
+            return;
+        }
+        slice.getBytes(0, buffer, bufferOffset, bufferLength);
+    }
+
+    @Override
+    public <K> Map<K, OrcDataSourceInput> readFully(Map<K, DiskRange> diskRanges)
+            throws IOException
+    {
+        ImmutableMap.Builder<K, OrcDataSourceInput> slices = ImmutableMap.builder();
+        Map<K, DiskRange> remainingRanges = new LinkedHashMap<>();
+        for (Map.Entry<K, DiskRange> entry : diskRanges.entrySet()) {
+            DiskRange diskRange = entry.getValue();
+            Slice slice = getBufferedSlice(diskRange);
+            if (slice == null) {
+                remainingRanges.put(entry.getKey(), diskRange);
+            }
+            else {
+                slices.put(entry.getKey(), new OrcDataSourceInput(slice.getInput(), diskRange.getLength()));
+            }
+        }
+        if (!remainingRanges.isEmpty()) {
+            slices.putAll(dataSource.readFully(remainingRanges));
+        }
+        return slices.build();
+    }
+
+    private Slice getBufferedSlice(DiskRange diskRange)
+    {
+        ReadAhead readAhead = null;
+        if (currentStripe != null && currentStripe.getStripeRange().contains(diskRange)) {
+            readAhead = currentStripe;
+        }
+        else if (nextStripe != null && nextStripe.getStripeRange().contains(diskRange)) {
+            readAhead = nextStripe;
+        }
+        if (readAhead == null) {
+            return null;
+        }
+        boolean wasFinished = readAhead.isFinished();
+        Slice slice = readAhead.getSlice(diskRange);
+        if (!wasFinished) {
+            // the buffers of a finished read are accounted by their actual size
+            updateMemoryUsage();
+        }
+        return slice;
+    }
+
+    private void updateMemoryUsage()
+    {
+        long bytes = 0;
+        if (currentStripe != null) {
+            bytes += currentStripe.getRetainedSizeInBytes();
+        }
+        if (nextStripe != null) {
+            bytes += nextStripe.getRetainedSizeInBytes();
+        }
+        systemMemoryContext.setBytes(bytes);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        // closing the underlying data source while a read is in progress is not safe for all
+        // file systems, so wait for the read ahead to finish first
+        if (nextStripe != null) {
+            getFutureValue(nextStripe.getFinishedFuture());
+        }
+        currentStripe = null;
+        nextStripe = null;
+        systemMemoryContext.close();
+        dataSource.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return dataSource.toString();
+    }
+
+    public interface StripeRangeSelector
+    {
+        /**
+         * Returns the ranges of the stripe to read ahead, or empty if the stripe has no rows to
+         * read. The metadata needed to select them is read from {@code dataSource}, which buffers
+         * it along with the selected ranges.
+         */
+        Optional<List<DiskRange>> selectRanges(OrcDataSource dataSource)
+                throws IOException;
+    }
+
+    private class ReadAhead
+    {
+        private final DiskRange stripeRange;
+        private final long maxBufferedBytes;
+        // written by the background read, and only read once the finished future is done
+        private final Map<DiskRange, byte[]> buffers = new HashMap<>();
+        private final SettableFuture<Void> finishedFuture = SettableFuture.create();
+        private volatile long bufferedBytes;
+        private volatile boolean skipped;
+
+        public ReadAhead(DiskRange stripeRange, long maxBufferedBytes)
+        {
+            this.stripeRange = requireNonNull(stripeRange, "stripeRange is null");
+            this.maxBufferedBytes = maxBufferedBytes;
+        }
+
+        public void start(StripeRangeSelector rangeSelector)
+        {
+            ListenableFuture<?> readFuture = submit(() -> {
+                read(rangeSelector);
+                return null;
+            }, executor);
+            // the finished future does not fail or propagate cancellation, so that it can be
+            // handed out as a blocked future; ranges that were not buffered are read again
+            // from the underlying data source, which reports any failure
+            readFuture.addListener(() -> finishedFuture.set(null), directExecutor());
+        }
+
+        private void read(StripeRangeSelector rangeSelector)
+                throws IOException
+        {
+            Optional<List<DiskRange>> selectedRanges = rangeSelector.selectRanges(new BufferingDataSource(this));
+            if (!selectedRanges.isPresent()) {
+                skipped = true;
+                return;
+            }
+            ImmutableList.Builder<DiskRange> remainingRanges = ImmutableList.builder();
+            for (DiskRange diskRange : selectedRanges.get()) {
+                if (getBuffer(diskRange) == null) {
+                    remainingRanges.add(diskRange);
+                }
+            }
+            List<DiskRange> ranges = remainingRanges.build();
+            if (ranges.isEmpty()) {
+                return;
+            }
+
+            List<DiskRange> mergedRanges = mergeAdjacentDiskRanges(ranges, maxMergeDistance, succinctBytes(maxBufferedBytes));
+            long readBytes = mergedRanges.stream()
+                    .mapToLong(DiskRange::getLength)
+                    .sum();
+            if (bufferedBytes + readBytes > maxBufferedBytes) {
+                // too large to read ahead, so the stripe is read when it is decoded
+                return;
+            }
+            for (DiskRange diskRange : mergedRanges) {
+                byte[] buffer = new byte[diskRange.getLength()];
+                dataSource.readFully(diskRange.getOffset(), buffer);
+                addBuffer(diskRange, buffer);
+            }
+        }
+
+        private void addBuffer(DiskRange diskRange, byte[] buffer)
+        {
+            buffers.put(diskRange, buffer);
+            bufferedBytes += buffer.length;
+        }
+
+        private Map.Entry<DiskRange, byte[]> getBuffer(DiskRange diskRange)
+        {
+            for (Map.Entry<DiskRange, byte[]> buffer : buffers.entrySet()) {
+                if (buffer.getKey().contains(diskRange)) {
+                    return buffer;
+                }
+            }
+            return null;
+        }
+
+        public DiskRange getStripeRange()
+        {
+            return stripeRange;
+        }
+
+        public ListenableFuture<?> getFinishedFuture()
+        {
+            return finishedFuture;
+        }
+
+        public boolean isFinished()
+        {
+            return finishedFuture.isDone();
+        }
+
+        public boolean isSkipped()
+        {
+            getFutureValue(finishedFuture);
+            return skipped;
+        }
+
+        public long getRetainedSizeInBytes()
+        {
+            // until the read has finished, the most it may buffer is accounted
+            return isFinished() ? bufferedBytes : maxBufferedBytes;
+        }
+
+        public Slice getSlice(DiskRange diskRange)
+        {
+            getFutureValue(finishedFuture);
+            if (getBuffer(diskRange) == null) {
+                return null;
+            }
+            return getDiskRangeSlice(diskRange, buffers);
+        }
+
+        @Override
+        public String toString()
+        {
+            return stripeRange.toString();
+        }
+    }
+
+    /**
+     * Reads from the underlying data source on behalf of a {@link StripeRangeSelector}, and
+     * buffers what was read for the stripe being read ahead.
+     */
+    private class BufferingDataSource
+            implements OrcDataSource
+    {
+        private final ReadAhead readAhead;
+
+        public BufferingDataSource(ReadAhead readAhead)
+        {
+            this.readAhead = requireNonNull(readAhead, "readAhead is null");
+        }
+
+        @Override
+        public OrcDataSourceId getId()
+        {
+            return dataSource.getId();
+        }
+
+        @Override
+        public long getReadBytes()
+        {
+            return dataSource.getReadBytes();
+        }
+
+        @Override
+        public long getReadTimeNanos()
+        {
+            return dataSource.getReadTimeNanos();
+        }
+
+        @Override
+        public long getSize()
+        {
+            return dataSource.getSize();
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer)
+                throws IOException
+        {
+            readFully(position, buffer, 0, buffer.length);
+        }
+
+        @Override
+        public void readFully(long position, byte[] buffer, int bufferOffset, int bufferLength)
+                throws IOException
+        {
+            DiskRange diskRange = new DiskRange(position, bufferLength);
+            byte[] rangeBuffer = new byte[bufferLength];
+            dataSource.readFully(position, rangeBuffer);
+            readAhead.addBuffer(diskRange, rangeBuffer);
+            System.arraycopy(rangeBuffer, 0, buffer, bufferOffset, bufferLength);
+        }
+
+        @Override
+        public <K> Map<K, OrcDataSourceInput> readFully(Map<K, DiskRange> diskRanges)
+                throws IOException
+        {
+            if (diskRanges.isEmpty()) {
+                return ImmutableMap.of();
+            }
+            Map<DiskRange, byte[]> buffers = new HashMap<>();
+            for (DiskRange mergedRange : mergeAdjacentDiskRanges(diskRanges.values(), maxMergeDistance, succinctBytes(Integer.MAX_VALUE))) {
+                byte[] buffer = new byte[mergedRange.getLength()];
+                dataSource.readFully(mergedRange.getOffset(), buffer);
+                readAhead.addBuffer(mergedRange, buffer);
+                buffers.put(mergedRange, buffer);
+            }
+
+            ImmutableMap.Builder<K, OrcDataSourceInput> slices = ImmutableMap.builder();
+            for (Map.Entry<K, DiskRange> entry : diskRanges.entrySet()) {
+                Slice slice = getDiskRangeSlice(entry.getValue(), buffers);
+                slices.put(entry.getKey(), new OrcDataSourceInput(slice.getInput(), entry.getValue().getLength()));
+            }
+            return slices.build();
+        }
+    }
+}
@@ -62,6 +62,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
 
+import static com.facebook.presto.orc.NoopOrcAggregatedMemoryContext.NOOP_ORC_AGGREGATED_MEMORY_CONTEXT;
 import static com.facebook.presto.orc.NoopOrcLocalMemoryContext.NOOP_ORC_LOCAL_MEMORY_CONTEXT;
 import static com.facebook.presto.orc.checkpoint.Checkpoints.getDictionaryStreamCheckpoint;
 import static com.facebook.presto.orc.checkpoint.Checkpoints.getStreamCheckpoints;
@@ -88,6 +89,7 @@ public class StripeReader
 {
     private final OrcDataSource orcDataSource;
     private final Optional<OrcDecompressor> decompressor;
+    private final Optional<OrcDecompressor> readAheadDecompressor;
     private final List<OrcType> types;
     private final HiveWriterVersion hiveWriterVersion;
     private final Set<Integer> includedOrcColumns;
@@ -106,6 +108,7 @@ public class StripeReader
     public StripeReader(
             OrcDataSource orcDataSource,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             List<OrcType> types,
             Set<Integer> includedOrcColumns,
             int rowsInRowGroup,
@@ -123,6 +126,7 @@ public class StripeReader
     {
         this.orcDataSource = requireNonNull(orcDataSource, "orcDataSource is null");
         this.decompressor = requireNonNull(decompressor, "decompressor is null");
+        this.readAheadDecompressor = requireNonNull(readAheadDecompressor, "readAheadDecompressor is null");
         this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
         this.includedOrcColumns = requireNonNull(includedOrcColumns, "includedColumns is null");
         this.rowsInRowGroup = rowsInRowGroup;
@@ -304,6 +308,48 @@ public class StripeReader
                 timezone);
     }
 
+    /**
+     * Returns the ranges of the file that {@link #readStripe} reads for the included columns of the stripe, reading
+     * the stripe footer and, when {@code readStripe} selects row groups, the row indexes from {@code dataSource}.
+     * Returns empty if no row group matches the predicate, in which case {@code readStripe} would return null.
+     * Streams of encrypted columns are not returned, and only the row indexes of unencrypted columns are used to
+     * select the row groups. This method is called concurrently with the other methods of this reader, and uses
+     * a decompressor of its own.
+     */
+    public Optional<List<DiskRange>> getReadAheadRanges(StripeInformation stripe, OrcDataSource dataSource)
+            throws IOException
+    {
+        checkState(readAheadDecompressor.isPresent() == decompressor.isPresent(), "readAheadDecompressor is missing");
+        StripeId stripeId = new StripeId(dataSource.getId(), stripe.getOffset());
+        StripeFooter stripeFooter = readStripeFooter(dataSource, readAheadDecompressor, stripeId, stripe, NOOP_ORC_AGGREGATED_MEMORY_CONTEXT);
+
+        Map<StreamId, Stream> includedStreams = new HashMap<>();
+        boolean hasRowGroupDictionary = addIncludedStreams(stripeFooter.getColumnEncodings(), stripeFooter.getStreams(), includedStreams);
+        Map<StreamId, DiskRange> diskRanges = Maps.filterKeys(getDiskRanges(ImmutableList.of(stripeFooter.getStreams())), Predicates.in(includedStreams.keySet()));
+
+        if ((stripe.getNumberOfRows() > rowsInRowGroup) || hasRowGroupDictionary) {
+            // row group statistics of encrypted columns are missing, which only makes the selection less selective
+            Map<StreamId, Stream> indexStreams = Maps.filterValues(includedStreams, StripeReader::isIndexStream);
+            Map<StreamId, OrcInputStream> streamsData = readDiskRanges(
+                    dataSource,
+                    readAheadDecompressor,
+                    stripeId,
+                    Maps.filterKeys(diskRanges, Predicates.in(indexStreams.keySet())),
+                    NOOP_ORC_AGGREGATED_MEMORY_CONTEXT,
+                    Optional.empty(),
+                    new SharedBuffer(NOOP_ORC_LOCAL_MEMORY_CONTEXT));
+            if (selectRowGroups(stripe, readColumnIndexes(indexStreams, streamsData, stripeId)).isEmpty()) {
+                return Optional.empty();
+            }
+        }
+
+        ImmutableList.Builder<DiskRange> ranges = ImmutableList.builder();
+        for (DiskRange diskRange : diskRanges.values()) {
+            ranges.add(new DiskRange(stripe.getOffset() + diskRange.getOffset(), diskRange.getLength()));
+        }
+        return Optional.of(ranges.build());
+    }
+
     private StripeEncryptionGroup getStripeEncryptionGroup(DwrfDataEncryptor decryptor, Slice encryptedGroup, Collection<Integer> columns, OrcAggregatedMemoryContext systemMemoryUsage)
             throws IOException
     {
@@ -357,6 +403,19 @@ public class StripeReader
             Optional<DwrfEncryptionInfo> decryptors,
             SharedBuffer sharedDecompressionBuffer)
             throws IOException
+    {
+        return readDiskRanges(orcDataSource, decompressor, stripeId, diskRanges, systemMemoryUsage, decryptors, sharedDecompressionBuffer);
+    }
+
+    private Map<StreamId, OrcInputStream> readDiskRanges(
+            OrcDataSource orcDataSource,
+            Optional<OrcDecompressor> decompressor,
+            StripeId stripeId,
+            Map<StreamId, DiskRange> diskRanges,
+            OrcAggregatedMemoryContext systemMemoryUsage,
+            Optional<DwrfEncryptionInfo> decryptors,
+            SharedBuffer sharedDecompressionBuffer)
+            throws IOException
     {
         //
         // Note: this code does not use the Java 8 stream APIs to avoid any extra object allocation
@@ -496,6 +555,12 @@ public class StripeReader
 
     public StripeFooter readStripeFooter(StripeId stripeId, StripeInformation stripe, OrcAggregatedMemoryContext systemMemoryUsage)
             throws IOException
+    {
+        return readStripeFooter(orcDataSource, decompressor, stripeId, stripe, systemMemoryUsage);
+    }
+
+    private StripeFooter readStripeFooter(OrcDataSource orcDataSource, Optional<OrcDecompressor> decompressor, StripeId stripeId, StripeInformation stripe, OrcAggregatedMemoryContext systemMemoryUsage)
+            throws IOException
     {
         long footerOffset = stripe.getOffset() + stripe.getIndexLength() + stripe.getDataLength();
         int footerLength = toIntExact(stripe.getFooterLength());
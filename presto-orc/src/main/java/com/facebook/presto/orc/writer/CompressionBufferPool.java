@@ -14,8 +14,13 @@
 package com.facebook.presto.orc.writer;
 
 import com.facebook.airlift.concurrent.NotThreadSafe;
+import com.google.errorprone.annotations.ThreadSafe;
+import com.google.errorprone.annotations.concurrent.GuardedBy;
 import org.openjdk.jol.info.ClassLayout;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 import static io.airlift.slice.SizeOf.sizeOf;
 import static java.util.Objects.requireNonNull;
 
@@ -58,4 +63,47 @@ public interface CompressionBufferPool
             return INSTANCE_SIZE + sizeOf(lastUsed);
         }
     }
+
+    /**
+     * Pool shared by the column writers of a file that are encoded on several threads.
+     * Holds at most one buffer per concurrently compressing thread.
+     */
+    @ThreadSafe
+    class SharedCompressionBufferPool
+            implements CompressionBufferPool
+    {
+        private static final int INSTANCE_SIZE = ClassLayout.parseClass(SharedCompressionBufferPool.class).instanceSize();
+
+        @GuardedBy("this")
+        private final Deque<byte[]> buffers = new ArrayDeque<>();
+        @GuardedBy("this")
+        private long buffersRetainedBytes;
+
+        @Override
+        public synchronized byte[] checkOut(int length)
+        {
+            byte[] buffer = buffers.pollFirst();
+            if (buffer == null) {
+                return new byte[length];
+            }
+            buffersRetainedBytes -= sizeOf(buffer);
+            if (buffer.length < length) {
+                return new byte[length];
+            }
+            return buffer;
+        }
+
+        @Override
+        public synchronized void checkIn(byte[] buffer)
+        {
+            buffers.addFirst(requireNonNull(buffer, "buffer is null"));
+            buffersRetainedBytes += sizeOf(buffer);
+        }
+
+        @Override
+        public synchronized long getRetainedBytes()
+        {
+            return INSTANCE_SIZE + buffersRetainedBytes;
+        }
+    }
 }
@@ -41,12 +41,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThanOrEqual;
 import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.orc.DwrfEncryptionProvider.NO_ENCRYPTION;
 import static com.facebook.presto.orc.NoOpOrcWriterStats.NOOP_WRITER_STATS;
@@ -59,6 +62,7 @@ import static com.facebook.presto.orc.TestingOrcPredicate.ORC_STRIPE_SIZE;
 import static com.facebook.presto.orc.metadata.CompressionKind.NONE;
 import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
 import static com.facebook.presto.orc.metadata.CompressionKind.ZSTD;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 
@@ -226,6 +230,107 @@ public class TestOrcWriter
         }
     }
 
+    @Test(dataProvider = "compressionLevels")
+    public void testParallelEncoding(OrcEncoding encoding, CompressionKind kind, OptionalInt level)
+            throws IOException
+    {
+        ExecutorService executor = newFixedThreadPool(4, daemonThreadsNamed("test-orc-writer-%s"));
+        try {
+            TempFile tempFile = new TempFile();
+            OrcWriter writer = new OrcWriter(
+                    new OutputStreamDataSink(new FileOutputStream(tempFile.getFile())),
+                    ImmutableList.of("test1", "test2", "test3"),
+                    ImmutableList.of(VARCHAR, BIGINT, VARCHAR),
+                    encoding,
+                    kind,
+                    Optional.empty(),
+                    NO_ENCRYPTION,
+                    OrcWriterOptions.builder()
+                            .withFlushPolicy(DefaultOrcWriterFlushPolicy.builder()
+                                    .withStripeMinSize(new DataSize(0, MEGABYTE))
+                                    .withStripeMaxSize(new DataSize(32, MEGABYTE))
+                                    .withStripeMaxRowCount(10_000)
+                                    .build())
+                            .withRowGroupMaxRowCount(ORC_ROW_GROUP_SIZE)
+                            .withCompressionLevel(level)
+                            .withEncodingExecutor(executor)
+                            .build(),
+                    ImmutableMap.of(),
+                    HIVE_STORAGE_TIME_ZONE,
+                    true,
+                    OrcWriteValidationMode.BOTH,
+                    NOOP_WRITER_STATS);
+
+            int entries = 65536;
+            BlockBuilder dictionaryBlockBuilder = VARCHAR.createBlockBuilder(null, entries);
+            BlockBuilder bigintBlockBuilder = BIGINT.createBlockBuilder(null, entries);
+            BlockBuilder directBlockBuilder = VARCHAR.createBlockBuilder(null, entries);
+            for (int i = 0; i < entries; i++) {
+                VARCHAR.writeString(dictionaryBlockBuilder, "value_" + (i % 100));
+                BIGINT.writeLong(bigintBlockBuilder, i);
+                VARCHAR.writeString(directBlockBuilder, "value_" + i);
+            }
+            writer.write(new Page(dictionaryBlockBuilder.build(), bigintBlockBuilder.build(), directBlockBuilder.build()));
+            writer.close();
+
+            writer.validate(new FileOrcDataSource(
+                    tempFile.getFile(),
+                    new DataSize(1, MEGABYTE),
+                    new DataSize(1, MEGABYTE),
+                    new DataSize(1, MEGABYTE),
+                    true));
+            assertEquals(writer.getFileRowCount(), entries);
+            assertEquals(writer.getWrittenBytes(), tempFile.getFile().length());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Dummy exception from mocked instance")
+    public void testParallelEncodingWriteFailure()
+            throws IOException
+    {
+        ExecutorService executor = newFixedThreadPool(2, daemonThreadsNamed("test-orc-writer-%s"));
+        try {
+            OrcWriter writer = new OrcWriter(
+                    new MockDataSink(),
+                    ImmutableList.of("test1", "test2"),
+                    ImmutableList.of(VARCHAR, VARCHAR),
+                    ORC,
+                    NONE,
+                    Optional.empty(),
+                    NO_ENCRYPTION,
+                    OrcWriterOptions.builder()
+                            .withFlushPolicy(DefaultOrcWriterFlushPolicy.builder()
+                                    .withStripeMinSize(new DataSize(0, MEGABYTE))
+                                    .withStripeMaxSize(new DataSize(32, MEGABYTE))
+                                    .withStripeMaxRowCount(10)
+                                    .build())
+                            .withRowGroupMaxRowCount(ORC_ROW_GROUP_SIZE)
+                            .withEncodingExecutor(executor)
+                            .build(),
+                    ImmutableMap.of(),
+                    HIVE_STORAGE_TIME_ZONE,
+                    false,
+                    null,
+                    NOOP_WRITER_STATS);
+
+            BlockBuilder blockBuilder = VARCHAR.createBlockBuilder(null, 100);
+            for (int i = 0; i < 100; i++) {
+                VARCHAR.writeString(blockBuilder, "value_" + i);
+            }
+            Block block = blockBuilder.build();
+
+            // the failed background write of a stripe is reported by a later flush
+            writer.write(new Page(block, block));
+            writer.close();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     public static class MockDataSink
             implements DataSink
     {
@@ -0,0 +1,454 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.airlift.units.DataSize;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.orc.cache.StorageOrcFileTailSource;
+import com.facebook.presto.orc.metadata.CompressionKind;
+import com.facebook.presto.orc.metadata.StripeInformation;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.units.DataSize.Unit.BYTE;
+import static com.facebook.airlift.units.DataSize.Unit.MEGABYTE;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.orc.DwrfEncryptionProvider.NO_ENCRYPTION;
+import static com.facebook.presto.orc.NoopOrcAggregatedMemoryContext.NOOP_ORC_AGGREGATED_MEMORY_CONTEXT;
+import static com.facebook.presto.orc.OrcEncoding.ORC;
+import static com.facebook.presto.orc.OrcReader.INITIAL_BATCH_SIZE;
+import static com.facebook.presto.orc.OrcTester.HIVE_STORAGE_TIME_ZONE;
+import static com.facebook.presto.orc.OrcTester.createOrcWriter;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZSTD;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static java.lang.Math.toIntExact;
+import static java.lang.String.format;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+public class TestReadAheadOrcDataSource
+{
+    private static final int POSITION_COUNT = 50_000;
+    private static final int STRIPE_MAX_ROW_COUNT = 10_000;
+    private static final int ROW_GROUP_MAX_ROW_COUNT = 1_000;
+    // the stripes match, but none of their row groups do
+    private static final OrcPredicate NO_MATCHING_ROW_GROUPS = (numberOfRows, statistics) -> numberOfRows > ROW_GROUP_MAX_ROW_COUNT;
+
+    private TempFile tempFile;
+    private ExecutorService executor;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-read-ahead-%s"));
+        tempFile = new TempFile();
+        OrcWriterOptions writerOptions = OrcWriterOptions.builder()
+                .withFlushPolicy(DefaultOrcWriterFlushPolicy.builder()
+                        .withStripeMaxRowCount(STRIPE_MAX_ROW_COUNT)
+                        .build())
+                .build();
+        OrcWriter writer = createOrcWriter(tempFile.getFile(), ORC, ZLIB, Optional.empty(), ImmutableList.of(BIGINT), writerOptions, new NoOpOrcWriterStats());
+        for (int start = 0; start < POSITION_COUNT; start += STRIPE_MAX_ROW_COUNT) {
+            BlockBuilder blockBuilder = BIGINT.createBlockBuilder(null, STRIPE_MAX_ROW_COUNT);
+            for (int position = start; position < start + STRIPE_MAX_ROW_COUNT; position++) {
+                BIGINT.writeLong(blockBuilder, position);
+            }
+            writer.write(new Page(blockBuilder.build()));
+        }
+        writer.close();
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws Exception
+    {
+        tempFile.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReadAhead()
+            throws IOException
+    {
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(NoopOrcDataSource.INSTANCE);
+        ReadAheadOrcDataSource dataSource = new ReadAheadOrcDataSource(
+                testingOrcDataSource,
+                directExecutor(),
+                new DataSize(10, BYTE),
+                systemMemoryContext.newOrcLocalMemoryContext(ReadAheadOrcDataSource.class.getSimpleName()));
+        assertTrue(dataSource.getReadAheadFuture().isDone());
+
+        // the metadata read to select the ranges is buffered, close ranges are merged, and buffered ranges are not read again
+        ListenableFuture<?> future = dataSource.readAhead(new DiskRange(10, 100), 1000, orcDataSource -> {
+            orcDataSource.readFully(100, new byte[10]);
+            return Optional.of(ImmutableList.of(new DiskRange(10, 20), new DiskRange(35, 20), new DiskRange(80, 10), new DiskRange(100, 5)));
+        });
+        assertTrue(future.isDone());
+        assertEquals(testingOrcDataSource.getReadRanges(), ImmutableList.of(new DiskRange(100, 10), new DiskRange(10, 45), new DiskRange(80, 10)));
+        assertEquals(systemMemoryContext.getBytes(), 65);
+
+        // a stripe that is already being read ahead is not read again
+        assertSame(dataSource.readAhead(new DiskRange(10, 100), 1000, orcDataSource -> Optional.of(ImmutableList.of(new DiskRange(10, 100)))), future);
+        assertEquals(testingOrcDataSource.getReadCount(), 3);
+
+        // reads within the buffered ranges are served from memory
+        dataSource.startStripe(10);
+        assertFalse(dataSource.isCurrentStripeSkipped());
+        dataSource.readFully(20, new byte[30]);
+        dataSource.readFully(100, new byte[5]);
+        assertEquals(testingOrcDataSource.getReadCount(), 3);
+
+        // other reads within the stripe go to the underlying data source
+        dataSource.readFully(60, new byte[10]);
+        assertEquals(testingOrcDataSource.getReadCount(), 4);
+        assertEquals(testingOrcDataSource.getLastReadRanges(), ImmutableList.of(new DiskRange(60, 10)));
+
+        // ranges larger than the limit are not read ahead
+        dataSource.readAhead(new DiskRange(110, 50), 40, orcDataSource -> Optional.of(ImmutableList.of(new DiskRange(110, 50))));
+        assertEquals(testingOrcDataSource.getReadCount(), 4);
+        assertEquals(systemMemoryContext.getBytes(), 65);
+        dataSource.startStripe(110);
+        assertFalse(dataSource.isCurrentStripeSkipped());
+        assertEquals(systemMemoryContext.getBytes(), 0);
+        dataSource.readFully(110, new byte[50]);
+        assertEquals(testingOrcDataSource.getReadCount(), 5);
+
+        // when the stripe has no rows to read, only the metadata is buffered, and the stripe is skipped
+        dataSource.readAhead(new DiskRange(160, 100), 1000, orcDataSource -> {
+            orcDataSource.readFully(250, new byte[10]);
+            return Optional.empty();
+        });
+        assertEquals(testingOrcDataSource.getReadCount(), 6);
+        assertEquals(systemMemoryContext.getBytes(), 10);
+        dataSource.startStripe(160);
+        assertTrue(dataSource.isCurrentStripeSkipped());
+
+        dataSource.close();
+        assertEquals(systemMemoryContext.getBytes(), 0);
+    }
+
+    @Test
+    public void testIntegration()
+            throws IOException
+    {
+        TestingOrcDataSource orcDataSource = new TestingOrcDataSource(
+                new FileOrcDataSource(tempFile.getFile(), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), true));
+        OrcReader orcReader = new OrcReader(
+                orcDataSource,
+                ORC,
+                new StorageOrcFileTailSource(),
+                new StorageStripeMetadataSource(),
+                NOOP_ORC_AGGREGATED_MEMORY_CONTEXT,
+                OrcReaderOptions.builder()
+                        .withMaxMergeDistance(new DataSize(1, MEGABYTE))
+                        // stripes that are not tiny are read ahead instead of cached
+                        .withTinyStripeThreshold(new DataSize(1, BYTE))
+                        .withMaxBlockSize(new DataSize(1, MEGABYTE))
+                        .withReadAheadExecutor(executor)
+                        .build(),
+                false,
+                NO_ENCRYPTION,
+                DwrfKeyProvider.EMPTY,
+                new RuntimeStats());
+        List<StripeInformation> stripes = orcReader.getFooter().getStripes();
+        assertEquals(stripes.size(), POSITION_COUNT / STRIPE_MAX_ROW_COUNT);
+        int footerReads = orcDataSource.getReadRanges().size();
+
+        OrcBatchRecordReader recordReader = orcReader.createBatchRecordReader(
+                ImmutableMap.of(0, BIGINT),
+                OrcPredicate.TRUE,
+                HIVE_STORAGE_TIME_ZONE,
+                new TestingHiveOrcAggregatedMemoryContext(),
+                INITIAL_BATCH_SIZE);
+        int position = 0;
+        while (true) {
+            getFutureValue(recordReader.isBlocked());
+            int batchSize = recordReader.nextBatch();
+            if (batchSize <= 0) {
+                break;
+            }
+            Block block = recordReader.readBlock(0);
+            for (int i = 0; i < batchSize; i++) {
+                assertEquals(BIGINT.getLong(block, i), position);
+                position++;
+            }
+        }
+        recordReader.close();
+        assertEquals(position, POSITION_COUNT);
+
+        // every stripe is read with a request for its footer and a request for its streams
+        List<DiskRange> readRanges = orcDataSource.getReadRanges();
+        assertEquals(
+                readRanges.subList(footerReads, readRanges.size()),
+                stripes.stream()
+                        .flatMap(stripe -> Stream.of(
+                                new DiskRange(stripe.getOffset() + stripe.getIndexLength() + stripe.getDataLength(), toIntExact(stripe.getFooterLength())),
+                                new DiskRange(stripe.getOffset(), toIntExact(stripe.getIndexLength() + stripe.getDataLength()))))
+                        .collect(toImmutableList()));
+    }
+
+    @Test
+    public void testExcludedColumnsAreNotRead()
+            throws Exception
+    {
+        try (TempFile file = new TempFile()) {
+            writeTwoColumnFile(file, ZLIB);
+            TestingOrcDataSource orcDataSource = createDataSource(file);
+            OrcReader orcReader = createOrcReader(orcDataSource);
+            long stripesLength = orcReader.getFooter().getStripes().stream()
+                    .mapToLong(StripeInformation::getTotalLength)
+                    .sum();
+            int footerReads = orcDataSource.getReadRanges().size();
+
+            // only the small sequential column is read
+            assertEquals(readAll(orcReader, OrcPredicate.TRUE), POSITION_COUNT);
+            long readBytes = orcDataSource.getReadRanges().subList(footerReads, orcDataSource.getReadRanges().size()).stream()
+                    .mapToLong(DiskRange::getLength)
+                    .sum();
+            assertTrue(readBytes < stripesLength / 4, format("read %s of %s bytes", readBytes, stripesLength));
+        }
+    }
+
+    @Test
+    public void testStripesWithoutMatchingRowGroupsAreNotRead()
+            throws Exception
+    {
+        try (TempFile file = new TempFile()) {
+            writeTwoColumnFile(file, ZLIB);
+            TestingOrcDataSource orcDataSource = createDataSource(file);
+            OrcReader orcReader = createOrcReader(orcDataSource);
+            List<StripeInformation> stripes = orcReader.getFooter().getStripes();
+            int footerReads = orcDataSource.getReadRanges().size();
+
+            assertEquals(readAll(orcReader, NO_MATCHING_ROW_GROUPS), 0);
+            assertDataNotRead(orcDataSource.getReadRanges().subList(footerReads, orcDataSource.getReadRanges().size()), stripes);
+        }
+    }
+
+    @Test
+    public void testSelectiveReader()
+            throws Exception
+    {
+        try (TempFile file = new TempFile()) {
+            writeTwoColumnFile(file, ZLIB);
+            TestingOrcDataSource orcDataSource = createDataSource(file);
+            OrcReader orcReader = createOrcReader(orcDataSource);
+            List<StripeInformation> stripes = orcReader.getFooter().getStripes();
+
+            assertEquals(readAllSelective(orcReader, OrcPredicate.TRUE), POSITION_COUNT);
+
+            int reads = orcDataSource.getReadRanges().size();
+            assertEquals(readAllSelective(orcReader, NO_MATCHING_ROW_GROUPS), 0);
+            assertDataNotRead(orcDataSource.getReadRanges().subList(reads, orcDataSource.getReadRanges().size()), stripes);
+        }
+    }
+
+    @Test
+    public void testConcurrentDecompression()
+            throws Exception
+    {
+        try (TempFile file = new TempFile()) {
+            // small row groups make large row indexes, which the read-ahead decompresses on the executor while
+            // the record reader decompresses the current stripe
+            writeTwoColumnFile(file, ZSTD, 10);
+            OrcReader orcReader = createOrcReader(createDataSource(file), executor);
+            for (int i = 0; i < 200; i++) {
+                OrcBatchRecordReader recordReader = orcReader.createBatchRecordReader(
+                        ImmutableMap.of(0, BIGINT, 1, BIGINT),
+                        OrcPredicate.TRUE,
+                        HIVE_STORAGE_TIME_ZONE,
+                        new TestingHiveOrcAggregatedMemoryContext(),
+                        INITIAL_BATCH_SIZE);
+                Random random = new Random(42);
+                int position = 0;
+                while (true) {
+                    getFutureValue(recordReader.isBlocked());
+                    int batchSize = recordReader.nextBatch();
+                    if (batchSize <= 0) {
+                        break;
+                    }
+                    Block sequence = recordReader.readBlock(0);
+                    Block randomValues = recordReader.readBlock(1);
+                    for (int j = 0; j < batchSize; j++) {
+                        assertEquals(BIGINT.getLong(sequence, j), position);
+                        assertEquals(BIGINT.getLong(randomValues, j), random.nextLong());
+                        position++;
+                    }
+                }
+                recordReader.close();
+                assertEquals(position, POSITION_COUNT);
+            }
+        }
+    }
+
+    private static void assertDataNotRead(List<DiskRange> readRanges, List<StripeInformation> stripes)
+    {
+        // only the footers and the index areas are read
+        for (DiskRange readRange : readRanges) {
+            for (StripeInformation stripe : stripes) {
+                long dataOffset = stripe.getOffset() + stripe.getIndexLength();
+                assertTrue(readRange.getEnd() <= dataOffset || readRange.getOffset() >= dataOffset + stripe.getDataLength(), "data read: " + readRange);
+            }
+        }
+    }
+
+    private static void writeTwoColumnFile(TempFile file, CompressionKind compression)
+            throws IOException
+    {
+        writeTwoColumnFile(file, compression, ROW_GROUP_MAX_ROW_COUNT);
+    }
+
+    private static void writeTwoColumnFile(TempFile file, CompressionKind compression, int rowGroupMaxRowCount)
+            throws IOException
+    {
+        OrcWriterOptions writerOptions = OrcWriterOptions.builder()
+                .withFlushPolicy(DefaultOrcWriterFlushPolicy.builder()
+                        .withStripeMaxRowCount(STRIPE_MAX_ROW_COUNT)
+                        .build())
+                .withRowGroupMaxRowCount(rowGroupMaxRowCount)
+                .build();
+        OrcWriter writer = createOrcWriter(file.getFile(), ORC, compression, Optional.empty(), ImmutableList.of(BIGINT, BIGINT), writerOptions, new NoOpOrcWriterStats());
+        Random random = new Random(42);
+        for (int start = 0; start < POSITION_COUNT; start += STRIPE_MAX_ROW_COUNT) {
+            BlockBuilder sequence = BIGINT.createBlockBuilder(null, STRIPE_MAX_ROW_COUNT);
+            BlockBuilder randomValues = BIGINT.createBlockBuilder(null, STRIPE_MAX_ROW_COUNT);
+            for (int position = start; position < start + STRIPE_MAX_ROW_COUNT; position++) {
+                BIGINT.writeLong(sequence, position);
+                BIGINT.writeLong(randomValues, random.nextLong());
+            }
+            writer.write(new Page(sequence.build(), randomValues.build()));
+        }
+        writer.close();
+    }
+
+    private static TestingOrcDataSource createDataSource(TempFile file)
+            throws IOException
+    {
+        return new TestingOrcDataSource(new FileOrcDataSource(file.getFile(), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), new DataSize(1, MEGABYTE), true));
+    }
+
+    private static OrcReader createOrcReader(OrcDataSource orcDataSource)
+            throws IOException
+    {
+        // the stripes are read ahead in the calling thread, so the reads are in a deterministic order
+        return createOrcReader(orcDataSource, directExecutor());
+    }
+
+    private static OrcReader createOrcReader(OrcDataSource orcDataSource, Executor readAheadExecutor)
+            throws IOException
+    {
+        return new OrcReader(
+                orcDataSource,
+                ORC,
+                new StorageOrcFileTailSource(),
+                new StorageStripeMetadataSource(),
+                NOOP_ORC_AGGREGATED_MEMORY_CONTEXT,
+                OrcReaderOptions.builder()
+                        .withMaxMergeDistance(new DataSize(1, MEGABYTE))
+                        .withTinyStripeThreshold(new DataSize(1, BYTE))
+                        .withMaxBlockSize(new DataSize(1, MEGABYTE))
+                        .withReadAheadExecutor(readAheadExecutor)
+                        .build(),
+                false,
+                NO_ENCRYPTION,
+                DwrfKeyProvider.EMPTY,
+                new RuntimeStats());
+    }
+
+    private static int readAll(OrcReader orcReader, OrcPredicate predicate)
+            throws IOException
+    {
+        OrcBatchRecordReader recordReader = orcReader.createBatchRecordReader(
+                ImmutableMap.of(0, BIGINT),
+                predicate,
+                HIVE_STORAGE_TIME_ZONE,
+                new TestingHiveOrcAggregatedMemoryContext(),
+                INITIAL_BATCH_SIZE);
+        int positions = 0;
+        while (true) {
+            getFutureValue(recordReader.isBlocked());
+            int batchSize = recordReader.nextBatch();
+            if (batchSize <= 0) {
+                break;
+            }
+            Block block = recordReader.readBlock(0);
+            for (int i = 0; i < batchSize; i++) {
+                assertEquals(BIGINT.getLong(block, i), recordReader.getFilePosition() + i);
+            }
+            positions += batchSize;
+        }
+        recordReader.close();
+        return positions;
+    }
+
+    private static int readAllSelective(OrcReader orcReader, OrcPredicate predicate)
+            throws IOException
+    {
+        OrcSelectiveRecordReader recordReader = orcReader.createSelectiveRecordReader(
+                ImmutableMap.of(0, BIGINT),
+                ImmutableList.of(0),
+                ImmutableMap.of(),
+                ImmutableList.of(),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                predicate,
+                0,
+                orcReader.getOrcDataSource().getSize(),
+                HIVE_STORAGE_TIME_ZONE,
+                new TestingHiveOrcAggregatedMemoryContext(),
+                Optional.empty(),
+                INITIAL_BATCH_SIZE);
+        int positions = 0;
+        while (true) {
+            getFutureValue(recordReader.isBlocked());
+            Page page = recordReader.getNextPage();
+            if (page == null) {
+                break;
+            }
+            Block block = page.getBlock(0);
+            for (int i = 0; i < page.getPositionCount(); i++) {
+                assertEquals(BIGINT.getLong(block, i), positions + i);
+            }
+            positions += page.getPositionCount();
+        }
+        recordReader.close();
+        return positions;
+    }
+}
@@ -13,11 +13,25 @@
  */
 package com.facebook.presto.parquet;
 
+import org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.format.BloomFilterHeader;
+import org.apache.parquet.format.Util;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Optional;
+
 import static java.util.Objects.requireNonNull;
 
 public abstract class AbstractParquetDataSource
         implements ParquetDataSource
 {
+    // Thrift encoded bloom filter headers are a few bytes. The bitset (at least 32 bytes) and the
+    // file footer follow the header, so reading this much never goes past the end of the file.
+    private static final int MAX_BLOOM_FILTER_HEADER_SIZE = 64;
+
     private final ParquetDataSourceId id;
     private long readTimeNanos;
     private long readBytes;
@@ -63,5 +77,44 @@ public abstract class AbstractParquetDataSource
         readTimeNanos += currentReadTimeNanos;
     }
 
+    @Override
+    public Optional<BloomFilter> readBloomFilter(ColumnChunkMetaData column)
+            throws IOException
+    {
+        long offset = column.getBloomFilterOffset();
+        if (offset < 0) {
+            return Optional.empty();
+        }
+
+        // older writers do not record the length, in which case the header is read first
+        int length = column.getBloomFilterLength();
+        byte[] buffer = new byte[length > 0 ? length : MAX_BLOOM_FILTER_HEADER_SIZE];
+        readFully(offset, buffer);
+        ByteArrayInputStream input = new ByteArrayInputStream(buffer);
+        BloomFilterHeader header = Util.readBloomFilterHeader(input);
+        int headerSize = buffer.length - input.available();
+
+        int numBytes = header.getNumBytes();
+        if (!header.getAlgorithm().isSetBLOCK() ||
+                !header.getHash().isSetXXHASH() ||
+                !header.getCompression().isSetUNCOMPRESSED() ||
+                numBytes <= 0 ||
+                numBytes > BlockSplitBloomFilter.UPPER_BOUND_BYTES) {
+            return Optional.empty();
+        }
+
+        byte[] bitset = new byte[numBytes];
+        if (length > 0) {
+            if (headerSize + numBytes > length) {
+                throw new ParquetCorruptionException("Bloom filter of column %s is larger than its declared length %s", column.getPath(), length);
+            }
+            System.arraycopy(buffer, headerSize, bitset, 0, numBytes);
+        }
+        else {
+            readFully(offset + headerSize, bitset);
+        }
+        return Optional.of(new BlockSplitBloomFilter(bitset));
+    }
+
     protected abstract void readInternal(long position, byte[] buffer, int bufferOffset, int bufferLength);
 }
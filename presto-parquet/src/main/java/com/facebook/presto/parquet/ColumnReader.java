@@ -30,5 +30,16 @@ public interface ColumnReader
 
     ColumnChunk readNext(Optional<DateTimeZone> timezone);
 
+    /**
+     * Reads the values of the next batch at the given positions, which are in ascending order, only.
+     * Readers of columns which are not nested skip the values at the other positions rather than
+     * decoding them, and the others read the whole batch. The returned chunk has no levels.
+     */
+    default ColumnChunk readNext(Optional<DateTimeZone> timezone, int[] positions, int positionCount)
+    {
+        ColumnChunk columnChunk = readNext(timezone);
+        return new ColumnChunk(columnChunk.getBlock().getPositions(positions, 0, positionCount), new int[0], new int[0]);
+    }
+
     long getRetainedSizeInBytes();
 }
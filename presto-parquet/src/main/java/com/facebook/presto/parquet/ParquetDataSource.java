@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.parquet;
 
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import org.apache.parquet.internal.column.columnindex.ColumnIndex;
 import org.apache.parquet.internal.column.columnindex.OffsetIndex;
@@ -38,6 +39,11 @@ public interface ParquetDataSource
 
     Optional<OffsetIndex> readOffsetIndex(ColumnChunkMetaData column) throws IOException;
 
+    /**
+     * Reads the split block bloom filter of the column chunk, if the writer stored one in a supported format.
+     */
+    Optional<BloomFilter> readBloomFilter(ColumnChunkMetaData column) throws IOException;
+
     @Override
     default void close()
             throws IOException
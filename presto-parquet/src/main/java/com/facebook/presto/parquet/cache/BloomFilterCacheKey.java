@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.cache;
+
+import com.facebook.presto.parquet.ParquetDataSourceId;
+
+import java.util.Objects;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
+
+public class BloomFilterCacheKey
+{
+    private final ParquetDataSourceId sourceId;
+    private final long modificationTime;
+    private final long offset;
+
+    public BloomFilterCacheKey(ParquetDataSourceId sourceId, long modificationTime, long offset)
+    {
+        this.sourceId = requireNonNull(sourceId, "sourceId is null");
+        this.modificationTime = modificationTime;
+        this.offset = offset;
+    }
+
+    public ParquetDataSourceId getSourceId()
+    {
+        return sourceId;
+    }
+
+    public long getModificationTime()
+    {
+        return modificationTime;
+    }
+
+    public long getOffset()
+    {
+        return offset;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        BloomFilterCacheKey that = (BloomFilterCacheKey) o;
+        return modificationTime == that.modificationTime &&
+                offset == that.offset &&
+                Objects.equals(sourceId, that.sourceId);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(sourceId, modificationTime, offset);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("sourceId", sourceId)
+                .add("modificationTime", modificationTime)
+                .add("offset", offset)
+                .toString();
+    }
+}
@@ -298,7 +298,7 @@ public final class MetadataReader
 
     public static ColumnChunkMetaData buildColumnChunkMetaData(ColumnMetaData metaData, ColumnPath columnPath, PrimitiveType type)
     {
-        return ColumnChunkMetaData.get(
+        ColumnChunkMetaData column = ColumnChunkMetaData.get(
                 columnPath,
                 type,
                 CompressionCodecName.fromParquet(metaData.codec),
@@ -310,6 +310,13 @@ public final class MetadataReader
                 metaData.num_values,
                 metaData.total_compressed_size,
                 metaData.total_uncompressed_size);
+        if (metaData.isSetBloom_filter_offset()) {
+            column.setBloomFilterOffset(metaData.getBloom_filter_offset());
+        }
+        if (metaData.isSetBloom_filter_length()) {
+            column.setBloomFilterLength(metaData.getBloom_filter_length());
+        }
+        return column;
     }
 
     private static ColumnPath getPath(ColumnMetaData metaData)
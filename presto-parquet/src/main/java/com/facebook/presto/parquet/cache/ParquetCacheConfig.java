@@ -28,6 +28,8 @@ public class ParquetCacheConfig
     private boolean metadataCacheEnabled;
     private DataSize metadataCacheSize = new DataSize(0, BYTE);
     private Duration metadataCacheTtlSinceLastAccess = new Duration(0, SECONDS);
+    private boolean bloomFilterCacheEnabled;
+    private DataSize bloomFilterCacheSize = new DataSize(0, BYTE);
 
     public boolean isMetadataCacheEnabled()
     {
@@ -69,4 +71,31 @@ public class ParquetCacheConfig
         this.metadataCacheTtlSinceLastAccess = metadataCacheTtlSinceLastAccess;
         return this;
     }
+
+    public boolean isBloomFilterCacheEnabled()
+    {
+        return bloomFilterCacheEnabled;
+    }
+
+    @Config("parquet.bloom-filter-cache-enabled")
+    @ConfigDescription("Enable cache for parquet bloom filters, used together with the metadata cache")
+    public ParquetCacheConfig setBloomFilterCacheEnabled(boolean bloomFilterCacheEnabled)
+    {
+        this.bloomFilterCacheEnabled = bloomFilterCacheEnabled;
+        return this;
+    }
+
+    @MinDataSize("0B")
+    public DataSize getBloomFilterCacheSize()
+    {
+        return bloomFilterCacheSize;
+    }
+
+    @Config("parquet.bloom-filter-cache-size")
+    @ConfigDescription("Size of the parquet bloom filter cache. Entries expire with the metadata cache TTL")
+    public ParquetCacheConfig setBloomFilterCacheSize(DataSize bloomFilterCacheSize)
+    {
+        this.bloomFilterCacheSize = bloomFilterCacheSize;
+        return this;
+    }
 }
@@ -76,6 +76,11 @@ public abstract class AbstractColumnReader
     private PrimitiveIterator.OfLong indexIterator;
     private long currentRow;
     private long targetRow;
+    // the positions of the batch to read, or null to read all of them, see readNext(Optional, int[], int)
+    private int[] selectedPositions;
+    private int selectedPositionCount;
+    private int nextSelectedPosition;
+    private int batchPosition;
 
     public AbstractColumnReader(RichColumnDescriptor columnDescriptor)
     {
@@ -132,11 +137,33 @@ public abstract class AbstractColumnReader
 
     @Override
     public ColumnChunk readNext(Optional<DateTimeZone> timezone)
+    {
+        return readNext(null, nextBatchSize);
+    }
+
+    @Override
+    public ColumnChunk readNext(Optional<DateTimeZone> timezone, int[] positions, int positionCount)
+    {
+        if (columnDescriptor.getMaxRepetitionLevel() > 0) {
+            return ColumnReader.super.readNext(timezone, positions, positionCount);
+        }
+        ColumnChunk columnChunk = readNext(positions, positionCount);
+        return new ColumnChunk(columnChunk.getBlock(), new int[0], new int[0]);
+    }
+
+    /**
+     * Reads the values of the next batch at the given positions, or all the values if positions is null.
+     */
+    private ColumnChunk readNext(int[] positions, int positionCount)
     {
         IntList definitionLevels = new IntArrayList();
         IntList repetitionLevels = new IntArrayList();
         seek();
-        BlockBuilder blockBuilder = field.getType().createBlockBuilder(null, nextBatchSize);
+        BlockBuilder blockBuilder = field.getType().createBlockBuilder(null, positionCount);
+        selectedPositions = positions;
+        selectedPositionCount = positionCount;
+        nextSelectedPosition = 0;
+        batchPosition = 0;
         int valueCount = 0;
         while (valueCount < nextBatchSize) {
             if (page == null) {
@@ -151,6 +178,7 @@ public abstract class AbstractColumnReader
             valueCount += valuesToRead;
         }
 
+        selectedPositions = null;
         readOffset = 0;
         nextBatchSize = 0;
         return new ColumnChunk(blockBuilder.build(), definitionLevels.toIntArray(), repetitionLevels.toIntArray());
@@ -168,9 +196,16 @@ public abstract class AbstractColumnReader
     private void readValues(BlockBuilder blockBuilder, int valuesToRead, Type type, IntList definitionLevels, IntList repetitionLevels)
     {
         processValues(valuesToRead, ignored -> {
-            readValue(blockBuilder, type);
-            definitionLevels.add(definitionLevel);
-            repetitionLevels.add(repetitionLevel);
+            if (selectedPositions == null || (nextSelectedPosition < selectedPositionCount && selectedPositions[nextSelectedPosition] == batchPosition)) {
+                readValue(blockBuilder, type);
+                definitionLevels.add(definitionLevel);
+                repetitionLevels.add(repetitionLevel);
+                nextSelectedPosition++;
+            }
+            else {
+                skipValue();
+            }
+            batchPosition++;
         }, indexIterator != null);
     }
 
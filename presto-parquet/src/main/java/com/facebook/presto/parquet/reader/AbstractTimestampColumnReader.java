@@ -37,6 +37,13 @@ public abstract class AbstractTimestampColumnReader
         return super.readNext(timezone);
     }
 
+    @Override
+    public ColumnChunk readNext(Optional<DateTimeZone> timezone, int[] positions, int positionCount)
+    {
+        this.timezone = timezone;
+        return super.readNext(timezone, positions, positionCount);
+    }
+
     @Override
     protected void readValue(BlockBuilder blockBuilder, Type type)
     {
@@ -335,6 +335,15 @@ public class ParquetReader
 
     private ColumnChunk readPrimitive(PrimitiveField field)
             throws IOException
+    {
+        return readPrimitive(field, null, batchSize);
+    }
+
+    /**
+     * Reads the values of the current batch at the given positions, or all the values if positions is null.
+     */
+    private ColumnChunk readPrimitive(PrimitiveField field, int[] positions, int positionCount)
+            throws IOException
     {
         ColumnDescriptor columnDescriptor = field.getDescriptor();
 
@@ -398,7 +407,7 @@ public class ParquetReader
             }
         }
 
-        ColumnChunk columnChunk = columnReader.readNext(timezone);
+        ColumnChunk columnChunk = positions == null ? columnReader.readNext(timezone) : columnReader.readNext(timezone, positions, positionCount);
         columnChunk = typeCoercion(columnChunk, field.getDescriptor().getPrimitiveType().getPrimitiveTypeName(), field.getType());
 
         if (enableVerification) {
@@ -408,7 +417,7 @@ public class ParquetReader
         }
 
         // update max size per primitive column chunk
-        long bytesPerCell = columnChunk.getBlock().getSizeInBytes() / batchSize;
+        long bytesPerCell = columnChunk.getBlock().getSizeInBytes() / max(positionCount, 1);
         if (maxBytesPerCell[fieldId] < bytesPerCell) {
             // update batch size
             maxCombinedBytesPerRow = maxCombinedBytesPerRow - maxBytesPerCell[fieldId] + bytesPerCell;
@@ -545,6 +554,22 @@ public class ParquetReader
         return readColumnChunk(field).getBlock();
     }
 
+    /**
+     * Reads the values of the current batch at the given positions, which are in ascending order. The values
+     * of a primitive column at the other positions are skipped rather than decoded, if the column reader supports it.
+     */
+    public Block readBlock(Field field, int[] positions, int positionCount)
+            throws IOException
+    {
+        if (!(field instanceof PrimitiveField) || enableVerification) {
+            return readBlock(field).getPositions(positions, 0, positionCount);
+        }
+
+        ColumnChunk columnChunk = readPrimitive((PrimitiveField) field, positions, positionCount);
+        parquetReaderMemoryContext.setBytes(getRetainedSizeInBytes());
+        return columnChunk.getBlock();
+    }
+
     private ColumnChunk readVariant(VariantField field)
             throws IOException
     {
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.writer;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.io.api.Binary;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.log;
+import static java.lang.Math.min;
+
+/**
+ * Collects the distinct value hashes of a column chunk, so that the bloom filter can be sized
+ * for the actual number of distinct values once the chunk is complete. A column chunk with more
+ * distinct values than a filter of the maximum size can hold gets no bloom filter.
+ */
+class BloomFilterBuilder
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(BloomFilterBuilder.class).instanceSize();
+
+    // the hash functions do not depend on the size of the bitset
+    private static final BloomFilter HASHER = new BlockSplitBloomFilter(BlockSplitBloomFilter.LOWER_BOUND_BYTES);
+
+    private final double fpp;
+    private final int maxBytes;
+    private final int maxDistinctValues;
+
+    private LongOpenHashSet hashes = new LongOpenHashSet();
+    private boolean overflow;
+
+    public BloomFilterBuilder(double fpp, int maxBytes)
+    {
+        checkArgument(fpp > 0.0 && fpp < 1.0, "fpp must be between 0 and 1");
+        checkArgument(maxBytes >= BlockSplitBloomFilter.LOWER_BOUND_BYTES, "maxBytes must be at least %s", BlockSplitBloomFilter.LOWER_BOUND_BYTES);
+        this.fpp = fpp;
+        this.maxBytes = min(maxBytes, BlockSplitBloomFilter.UPPER_BOUND_BYTES);
+        this.maxDistinctValues = (int) min(Integer.MAX_VALUE, -(this.maxBytes * 8.0) * log(2) * log(2) / log(fpp));
+    }
+
+    public void add(int value)
+    {
+        addHash(HASHER.hash(value));
+    }
+
+    public void add(long value)
+    {
+        addHash(HASHER.hash(value));
+    }
+
+    public void add(float value)
+    {
+        addHash(HASHER.hash(value));
+    }
+
+    public void add(double value)
+    {
+        addHash(HASHER.hash(value));
+    }
+
+    public void add(Binary value)
+    {
+        addHash(HASHER.hash(value));
+    }
+
+    private void addHash(long hash)
+    {
+        if (overflow) {
+            return;
+        }
+        hashes.add(hash);
+        if (hashes.size() > maxDistinctValues) {
+            overflow = true;
+            hashes = new LongOpenHashSet();
+        }
+    }
+
+    public Optional<BloomFilter> build()
+    {
+        if (overflow || hashes.isEmpty()) {
+            return Optional.empty();
+        }
+        int numBytes = BlockSplitBloomFilter.optimalNumOfBits(hashes.size(), fpp) / 8;
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(min(numBytes, maxBytes), maxBytes);
+        LongIterator iterator = hashes.iterator();
+        while (iterator.hasNext()) {
+            bloomFilter.insertHash(iterator.nextLong());
+        }
+        return Optional.of(bloomFilter);
+    }
+
+    public void reset()
+    {
+        hashes = new LongOpenHashSet();
+        overflow = false;
+    }
+
+    public long getRetainedBytes()
+    {
+        // the open hash set keeps one long per slot, at a load factor of at least one half
+        return INSTANCE_SIZE + hashes.size() * 2L * Long.BYTES;
+    }
+}
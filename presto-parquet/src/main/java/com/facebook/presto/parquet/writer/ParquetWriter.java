@@ -25,12 +25,23 @@ import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
 import org.apache.parquet.column.ParquetProperties;
 import org.apache.parquet.column.ParquetProperties.Builder;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.format.BloomFilterAlgorithm;
+import org.apache.parquet.format.BloomFilterCompression;
+import org.apache.parquet.format.BloomFilterHash;
+import org.apache.parquet.format.BloomFilterHeader;
+import org.apache.parquet.format.ColumnIndex;
 import org.apache.parquet.format.ColumnMetaData;
 import org.apache.parquet.format.FileMetaData;
 import org.apache.parquet.format.KeyValue;
+import org.apache.parquet.format.OffsetIndex;
+import org.apache.parquet.format.PageLocation;
 import org.apache.parquet.format.RowGroup;
 import org.apache.parquet.format.SchemaElement;
+import org.apache.parquet.format.SplitBlockAlgorithm;
+import org.apache.parquet.format.Uncompressed;
 import org.apache.parquet.format.Util;
+import org.apache.parquet.format.XxHash;
 import org.apache.parquet.format.converter.ParquetMetadataConverter;
 import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.apache.parquet.hadoop.metadata.ParquetMetadata;
@@ -41,8 +52,10 @@ import org.openjdk.jol.info.ClassLayout;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static com.facebook.presto.parquet.writer.ParquetDataOutput.createDataOutput;
 import static com.facebook.presto.parquet.writer.ParquetWriterOptions.DEFAULT_MAX_PAGE_SIZE;
@@ -85,6 +98,8 @@ public class ParquetWriter
     private final int chunkMaxLogicalBytes;
 
     private ImmutableList.Builder<RowGroup> rowGroupBuilder = ImmutableList.builder();
+    // page indexes and bloom filters are written after all row groups, right before the footer
+    private final List<ColumnChunkIndexes> columnChunkIndexes = new ArrayList<>();
 
     private int rows;
     private boolean closed;
@@ -125,7 +140,7 @@ public class ParquetWriter
         }
         ParquetProperties parquetProperties = parquetPropertiesBuilder.build();
         CompressionCodecName compressionCodecName = getCompressionCodecName(compressionCodecClass);
-        this.columnWriters = ParquetWriters.getColumnWriters(messageType, primitiveTypes, parquetProperties, compressionCodecName);
+        this.columnWriters = ParquetWriters.getColumnWriters(messageType, primitiveTypes, parquetProperties, compressionCodecName, writerOption);
 
         this.chunkMaxLogicalBytes = max(1, CHUNK_MAX_BYTES / 2);
 
@@ -214,6 +229,7 @@ public class ParquetWriter
         columnWriters.forEach(ColumnWriter::close);
 
         flush();
+        writeIndexes();
         writeFooter();
         outputStream.close();
     }
@@ -222,6 +238,9 @@ public class ParquetWriter
     //
     // MAGIC
     // variable: Data
+    // variable: Bloom filters
+    // variable: Column indexes
+    // variable: Offset indexes
     // variable: Metadata
     // 4 bytes: MetadataLength
     // MAGIC
@@ -246,7 +265,14 @@ public class ParquetWriter
         List<ColumnMetaData> metadatas = bufferDataList.stream()
                 .map(BufferData::getMetaData)
                 .collect(toImmutableList());
-        updateRowGroups(updateColumnMetadataOffset(metadatas, stripeStartOffset));
+        List<ColumnMetaData> columnMetaData = updateColumnMetadataOffset(metadatas, stripeStartOffset);
+        List<org.apache.parquet.format.ColumnChunk> columnChunks = updateRowGroups(columnMetaData);
+        for (int i = 0; i < bufferDataList.size(); i++) {
+            BufferData bufferData = bufferDataList.get(i);
+            if (bufferData.getColumnIndex().isPresent() || bufferData.getOffsetIndex().isPresent() || bufferData.getBloomFilter().isPresent()) {
+                columnChunkIndexes.add(new ColumnChunkIndexes(columnChunks.get(i), columnMetaData.get(i).getData_page_offset(), bufferData));
+            }
+        }
 
         // flush pages
         bufferDataList.stream()
@@ -255,6 +281,43 @@ public class ParquetWriter
                 .forEach(data -> data.writeData(outputStream));
     }
 
+    private void writeIndexes()
+            throws IOException
+    {
+        for (ColumnChunkIndexes indexes : columnChunkIndexes) {
+            if (indexes.getBloomFilter().isPresent()) {
+                BloomFilter bloomFilter = indexes.getBloomFilter().get();
+                long offset = outputStream.longSize();
+                BloomFilterHeader header = new BloomFilterHeader(
+                        bloomFilter.getBitsetSize(),
+                        BloomFilterAlgorithm.BLOCK(new SplitBlockAlgorithm()),
+                        BloomFilterHash.XXHASH(new XxHash()),
+                        BloomFilterCompression.UNCOMPRESSED(new Uncompressed()));
+                Util.writeBloomFilterHeader(header, outputStream);
+                bloomFilter.writeTo(outputStream);
+                indexes.getColumnChunk().getMeta_data().setBloom_filter_offset(offset);
+                indexes.getColumnChunk().getMeta_data().setBloom_filter_length(toIntExact(outputStream.longSize() - offset));
+            }
+        }
+        for (ColumnChunkIndexes indexes : columnChunkIndexes) {
+            if (indexes.getColumnIndex().isPresent()) {
+                long offset = outputStream.longSize();
+                Util.writeColumnIndex(indexes.getColumnIndex().get(), outputStream);
+                indexes.getColumnChunk().setColumn_index_offset(offset);
+                indexes.getColumnChunk().setColumn_index_length(toIntExact(outputStream.longSize() - offset));
+            }
+        }
+        for (ColumnChunkIndexes indexes : columnChunkIndexes) {
+            if (indexes.getOffsetIndex().isPresent()) {
+                long offset = outputStream.longSize();
+                Util.writeOffsetIndex(indexes.getOffsetIndex().get(), outputStream);
+                indexes.getColumnChunk().setOffset_index_offset(offset);
+                indexes.getColumnChunk().setOffset_index_length(toIntExact(outputStream.longSize() - offset));
+            }
+        }
+        columnChunkIndexes.clear();
+    }
+
     private void writeFooter()
             throws IOException
     {
@@ -305,12 +368,13 @@ public class ParquetWriter
         return parquetMetaData.getSchema();
     }
 
-    private void updateRowGroups(List<ColumnMetaData> columnMetaData)
+    private List<org.apache.parquet.format.ColumnChunk> updateRowGroups(List<ColumnMetaData> columnMetaData)
     {
         // TODO Avoid writing empty row group
         long totalBytes = columnMetaData.stream().mapToLong(ColumnMetaData::getTotal_compressed_size).sum();
         ImmutableList<org.apache.parquet.format.ColumnChunk> columnChunks = columnMetaData.stream().map(ParquetWriter::toColumnChunk).collect(toImmutableList());
         rowGroupBuilder.add(new RowGroup(columnChunks, totalBytes, rows));
+        return columnChunks;
     }
 
     private static org.apache.parquet.format.ColumnChunk toColumnChunk(ColumnMetaData metaData)
@@ -365,4 +429,43 @@ public class ParquetWriter
     {
         return closed;
     }
+
+    private static class ColumnChunkIndexes
+    {
+        private final org.apache.parquet.format.ColumnChunk columnChunk;
+        private final Optional<ColumnIndex> columnIndex;
+        private final Optional<OffsetIndex> offsetIndex;
+        private final Optional<BloomFilter> bloomFilter;
+
+        public ColumnChunkIndexes(org.apache.parquet.format.ColumnChunk columnChunk, long columnChunkOffset, BufferData bufferData)
+        {
+            this.columnChunk = requireNonNull(columnChunk, "columnChunk is null");
+            this.columnIndex = bufferData.getColumnIndex();
+            // the page offsets of the column writer are relative to the start of the column chunk
+            this.offsetIndex = bufferData.getOffsetIndex().map(index -> new OffsetIndex(index.getPage_locations().stream()
+                    .map(location -> new PageLocation(location.getOffset() + columnChunkOffset, location.getCompressed_page_size(), location.getFirst_row_index()))
+                    .collect(toImmutableList())));
+            this.bloomFilter = bufferData.getBloomFilter();
+        }
+
+        public org.apache.parquet.format.ColumnChunk getColumnChunk()
+        {
+            return columnChunk;
+        }
+
+        public Optional<ColumnIndex> getColumnIndex()
+        {
+            return columnIndex;
+        }
+
+        public Optional<OffsetIndex> getOffsetIndex()
+        {
+            return offsetIndex;
+        }
+
+        public Optional<BloomFilter> getBloomFilter()
+        {
+            return bloomFilter;
+        }
+    }
 }
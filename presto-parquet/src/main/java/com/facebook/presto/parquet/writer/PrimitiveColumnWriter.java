@@ -30,12 +30,17 @@ import org.apache.parquet.column.statistics.Statistics;
 import org.apache.parquet.format.ColumnMetaData;
 import org.apache.parquet.format.converter.ParquetMetadataConverter;
 import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.internal.column.columnindex.ColumnIndex;
+import org.apache.parquet.internal.column.columnindex.ColumnIndexBuilder;
+import org.apache.parquet.internal.column.columnindex.OffsetIndex;
+import org.apache.parquet.internal.column.columnindex.OffsetIndexBuilder;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 import static com.facebook.presto.parquet.writer.ParquetCompressor.getCompressor;
@@ -62,6 +67,8 @@ public abstract class PrimitiveColumnWriter
 
     private final Type type;
     private final CompressionCodecName compressionCodec;
+    private final int columnIndexTruncateLength;
+    private final Optional<BloomFilterBuilder> bloomFilterBuilder;
 
     protected boolean closed;
     protected boolean getDataStreamsCalled;
@@ -69,6 +76,7 @@ public abstract class PrimitiveColumnWriter
     // current page stats
     protected int valueCount;
     protected int currentPageNullCounts;
+    protected int currentPageRowCount;
 
     // column meta data stats
     protected long totalCompressedSize;
@@ -76,7 +84,19 @@ public abstract class PrimitiveColumnWriter
     protected long totalValues;
     protected Statistics<?> columnStatistics;
 
-    public PrimitiveColumnWriter(Type type, ColumnDescriptor columnDescriptor, PrimitiveValueWriter primitiveValueWriter, CompressionCodecName compressionCodecName, int pageSizeThreshold)
+    // page indexes of the column chunk
+    private ColumnIndexBuilder columnIndexBuilder;
+    private OffsetIndexBuilder offsetIndexBuilder;
+    private long dictionaryPageSize;
+
+    public PrimitiveColumnWriter(
+            Type type,
+            ColumnDescriptor columnDescriptor,
+            PrimitiveValueWriter primitiveValueWriter,
+            CompressionCodecName compressionCodecName,
+            int pageSizeThreshold,
+            int columnIndexTruncateLength,
+            Optional<BloomFilterBuilder> bloomFilterBuilder)
     {
         this.type = requireNonNull(type, "type is null");
         this.columnDescriptor = requireNonNull(columnDescriptor, "columnDescriptor is null");
@@ -89,6 +109,10 @@ public abstract class PrimitiveColumnWriter
         this.pageSizeThreshold = pageSizeThreshold;
 
         this.columnStatistics = Statistics.createStats(columnDescriptor.getPrimitiveType());
+        this.columnIndexTruncateLength = columnIndexTruncateLength;
+        this.bloomFilterBuilder = requireNonNull(bloomFilterBuilder, "bloomFilterBuilder is null");
+        this.columnIndexBuilder = ColumnIndexBuilder.getBuilder(columnDescriptor.getPrimitiveType(), columnIndexTruncateLength);
+        this.offsetIndexBuilder = OffsetIndexBuilder.getBuilder();
     }
 
     @Override
@@ -128,7 +152,40 @@ public abstract class PrimitiveColumnWriter
             throws IOException
     {
         checkState(closed);
-        return ImmutableList.of(new BufferData(getDataStreams(), getColumnMetaData()));
+        List<ParquetDataOutput> dataStreams = getDataStreams();
+        return ImmutableList.of(new BufferData(
+                dataStreams,
+                getColumnMetaData(),
+                getColumnIndex(),
+                getOffsetIndex(),
+                bloomFilterBuilder.flatMap(BloomFilterBuilder::build)));
+    }
+
+    private Optional<org.apache.parquet.format.ColumnIndex> getColumnIndex()
+    {
+        // the builder returns null if the statistics of a page can't be used for the index
+        ColumnIndex columnIndex = columnIndexBuilder.build();
+        if (columnIndex == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(ParquetMetadataConverter.toParquetColumnIndex(columnDescriptor.getPrimitiveType(), columnIndex));
+    }
+
+    private Optional<org.apache.parquet.format.OffsetIndex> getOffsetIndex()
+    {
+        // the data pages follow the dictionary page
+        OffsetIndex offsetIndex = offsetIndexBuilder.build(dictionaryPageSize);
+        if (offsetIndex == null || offsetIndex.getPageCount() == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(ParquetMetadataConverter.toParquetOffsetIndex(offsetIndex));
+    }
+
+    // must be called for every data page, before the page stats are reset
+    protected void addPageToIndexes(Statistics<?> pageStatistics, long compressedPageSize)
+    {
+        columnIndexBuilder.add(pageStatistics);
+        offsetIndexBuilder.add(toIntExact(compressedPageSize), currentPageRowCount);
     }
 
     // Returns ColumnMetaData that offset is invalid
@@ -179,6 +236,7 @@ public abstract class PrimitiveColumnWriter
             dictPage.add(pageData);
             totalCompressedSize += pageHeader.size() + compressedSize;
             totalUnCompressedSize += pageHeader.size() + uncompressedSize;
+            dictionaryPageSize = pageHeader.size() + compressedSize;
 
             primitiveValueWriter.resetDictionary();
         }
@@ -195,7 +253,7 @@ public abstract class PrimitiveColumnWriter
     @Override
     public long getRetainedBytes()
     {
-        return 0;
+        return bloomFilterBuilder.map(BloomFilterBuilder::getRetainedBytes).orElse(0L);
     }
 
     @Override
@@ -210,6 +268,10 @@ public abstract class PrimitiveColumnWriter
         totalValues = 0;
         encodings.clear();
         this.columnStatistics = Statistics.createStats(columnDescriptor.getPrimitiveType());
+        columnIndexBuilder = ColumnIndexBuilder.getBuilder(columnDescriptor.getPrimitiveType(), columnIndexTruncateLength);
+        offsetIndexBuilder = OffsetIndexBuilder.getBuilder();
+        dictionaryPageSize = 0;
+        bloomFilterBuilder.ifPresent(BloomFilterBuilder::reset);
 
         getDataStreamsCalled = false;
     }
@@ -28,6 +28,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import static com.facebook.presto.parquet.writer.ParquetDataOutput.createDataOutput;
 import static com.facebook.presto.parquet.writer.levels.RepetitionLevelIterables.getIterator;
@@ -40,9 +41,18 @@ public class PrimitiveColumnWriterV1
     private final ValuesWriter definitionLevelWriter;
     private final ValuesWriter repetitionLevelWriter;
 
-    public PrimitiveColumnWriterV1(Type type, ColumnDescriptor columnDescriptor, PrimitiveValueWriter primitiveValueWriter, ValuesWriter definitionLevelWriter, ValuesWriter repetitionLevelWriter, CompressionCodecName compressionCodecName, int pageSizeThreshold)
+    public PrimitiveColumnWriterV1(
+            Type type,
+            ColumnDescriptor columnDescriptor,
+            PrimitiveValueWriter primitiveValueWriter,
+            ValuesWriter definitionLevelWriter,
+            ValuesWriter repetitionLevelWriter,
+            CompressionCodecName compressionCodecName,
+            int pageSizeThreshold,
+            int columnIndexTruncateLength,
+            Optional<BloomFilterBuilder> bloomFilterBuilder)
     {
-        super(type, columnDescriptor, primitiveValueWriter, compressionCodecName, pageSizeThreshold);
+        super(type, columnDescriptor, primitiveValueWriter, compressionCodecName, pageSizeThreshold, columnIndexTruncateLength, bloomFilterBuilder);
 
         this.definitionLevelWriter = requireNonNull(definitionLevelWriter, "definitionLevelWriter is null");
         this.repetitionLevelWriter = requireNonNull(repetitionLevelWriter, "repetitionLevelWriter is null");
@@ -66,6 +76,9 @@ public class PrimitiveColumnWriterV1
         while (repIterator.hasNext()) {
             int next = repIterator.next();
             repetitionLevelWriter.writeInteger(next);
+            if (next == 0) {
+                currentPageRowCount++;
+            }
         }
     }
 
@@ -106,6 +119,8 @@ public class PrimitiveColumnWriterV1
 
         List<ParquetDataOutput> dataOutputs = outputDataStreams.build();
 
+        addPageToIndexes(statistics, pageHeader.size() + compressedSize);
+
         // update total stats
         totalUnCompressedSize += pageHeader.size() + uncompressedSize;
         totalCompressedSize += pageHeader.size() + compressedSize;
@@ -121,6 +136,7 @@ public class PrimitiveColumnWriterV1
         // reset page stats
         valueCount = 0;
         currentPageNullCounts = 0;
+        currentPageRowCount = 0;
 
         repetitionLevelWriter.reset();
         definitionLevelWriter.reset();
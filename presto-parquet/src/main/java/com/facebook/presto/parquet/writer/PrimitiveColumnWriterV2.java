@@ -28,10 +28,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import static com.facebook.presto.parquet.writer.ParquetDataOutput.createDataOutput;
 import static com.facebook.presto.parquet.writer.levels.RepetitionLevelIterables.getIterator;
-import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 import static org.apache.parquet.bytes.BytesInput.copy;
 
@@ -41,12 +41,18 @@ public class PrimitiveColumnWriterV2
     private final RunLengthBitPackingHybridEncoder definitionLevelEncoder;
     private final RunLengthBitPackingHybridEncoder repetitionLevelEncoder;
 
-    // current page stats
-    private int currentPageRowCount;
-
-    public PrimitiveColumnWriterV2(Type type, ColumnDescriptor columnDescriptor, PrimitiveValueWriter primitiveValueWriter, RunLengthBitPackingHybridEncoder definitionLevelEncoder, RunLengthBitPackingHybridEncoder repetitionLevelEncoder, CompressionCodecName compressionCodecName, int pageSizeThreshold)
+    public PrimitiveColumnWriterV2(
+            Type type,
+            ColumnDescriptor columnDescriptor,
+            PrimitiveValueWriter primitiveValueWriter,
+            RunLengthBitPackingHybridEncoder definitionLevelEncoder,
+            RunLengthBitPackingHybridEncoder repetitionLevelEncoder,
+            CompressionCodecName compressionCodecName,
+            int pageSizeThreshold,
+            int columnIndexTruncateLength,
+            Optional<BloomFilterBuilder> bloomFilterBuilder)
     {
-        super(type, columnDescriptor, primitiveValueWriter, compressionCodecName, pageSizeThreshold);
+        super(type, columnDescriptor, primitiveValueWriter, compressionCodecName, pageSizeThreshold, columnIndexTruncateLength, bloomFilterBuilder);
 
         this.definitionLevelEncoder = requireNonNull(definitionLevelEncoder, "definitionLevelEncoder is null");
         this.repetitionLevelEncoder = requireNonNull(repetitionLevelEncoder, "repetitionLevelEncoder is null");
@@ -83,14 +89,6 @@ public class PrimitiveColumnWriterV2
         closed = true;
     }
 
-    @Override
-    public List<BufferData> getBuffer()
-            throws IOException
-    {
-        checkState(closed);
-        return ImmutableList.of(new BufferData(getDataStreams(), getColumnMetaData()));
-    }
-
     // page header
     // repetition levels
     // definition levels
@@ -146,6 +144,8 @@ public class PrimitiveColumnWriterV2
 
         List<ParquetDataOutput> dataOutputs = outputDataStreams.build();
 
+        addPageToIndexes(statistics, pageHeader.size() + compressedSize);
+
         // update total stats
         totalCompressedSize += pageHeader.size() + compressedSize;
         totalUnCompressedSize += pageHeader.size() + uncompressedSize;
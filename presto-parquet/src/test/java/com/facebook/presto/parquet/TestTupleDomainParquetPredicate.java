@@ -36,6 +36,9 @@ import org.apache.parquet.column.statistics.FloatStatistics;
 import org.apache.parquet.column.statistics.IntStatistics;
 import org.apache.parquet.column.statistics.LongStatistics;
 import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.io.api.Binary;
 import org.apache.parquet.schema.PrimitiveType;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -394,6 +397,50 @@ public class TestTupleDomainParquetPredicate
         assertTrue(parquetPredicate.matches(new DictionaryDescriptor(column, Optional.of(page))));
     }
 
+    @Test
+    public void testBigintMatchesWithBloomFilter()
+    {
+        RichColumnDescriptor column = new RichColumnDescriptor(
+                new ColumnDescriptor(new String[] {"path"}, INT64, 0, 0),
+                new PrimitiveType(OPTIONAL, INT64, "Test column"));
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(42L));
+        bloomFilter.insertHash(bloomFilter.hash(43L));
+
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 42L, 404L), false), bloomFilter));
+        assertFalse(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 44L, 404L), false), bloomFilter));
+        // ranges and nulls can't be checked against the bloom filter
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.ofRanges(range(BIGINT, 100L, true, 200L, true)), false), bloomFilter));
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 44L), true), bloomFilter));
+    }
+
+    @Test
+    public void testIntegerMatchesWithBloomFilter()
+    {
+        RichColumnDescriptor column = new RichColumnDescriptor(
+                new ColumnDescriptor(new String[] {"path"}, INT32, 0, 0),
+                new PrimitiveType(OPTIONAL, INT32, "Test column"));
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(42));
+
+        assertTrue(bloomFilterMatches(column, singleValue(INTEGER, 42L), bloomFilter));
+        assertFalse(bloomFilterMatches(column, singleValue(INTEGER, 43L), bloomFilter));
+        // a value outside of the int range is never stored in an INT32 column
+        assertFalse(bloomFilterMatches(column, singleValue(BIGINT, 0x1_0000_002AL), bloomFilter));
+    }
+
+    @Test
+    public void testVarcharMatchesWithBloomFilter()
+    {
+        ColumnDescriptor columnDescriptor = new ColumnDescriptor(new String[] {"path"}, new PrimitiveType(OPTIONAL, BINARY, 0, ""), 0, 0);
+        RichColumnDescriptor column = new RichColumnDescriptor(columnDescriptor, new PrimitiveType(OPTIONAL, BINARY, "Test column"));
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(Binary.fromString("apple")));
+
+        assertTrue(bloomFilterMatches(column, singleValue(createUnboundedVarcharType(), utf8Slice("apple")), bloomFilter));
+        assertFalse(bloomFilterMatches(column, singleValue(createUnboundedVarcharType(), utf8Slice("banana")), bloomFilter));
+    }
+
     @Test
     public void testGetRange()
     {
@@ -408,6 +455,12 @@ public class TestTupleDomainParquetPredicate
         assertEquals(range3.getHigh().getValue(), 2.0);
     }
 
+    private static boolean bloomFilterMatches(RichColumnDescriptor column, Domain domain, BloomFilter bloomFilter)
+    {
+        TupleDomainParquetPredicate parquetPredicate = new TupleDomainParquetPredicate(withColumnDomains(ImmutableMap.of(column, domain)), singletonList(column));
+        return parquetPredicate.matches(column, bloomFilter);
+    }
+
     private TupleDomain<ColumnDescriptor> getEffectivePredicate(RichColumnDescriptor column, VarcharType type, Slice value)
     {
         ColumnDescriptor predicateColumn = new ColumnDescriptor(column.getPath(), column.getType(), 0, 0);
@@ -18,6 +18,7 @@ import com.facebook.presto.parquet.ParquetDataSource;
 import com.facebook.presto.parquet.ParquetDataSourceId;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import org.apache.parquet.internal.column.columnindex.ColumnIndex;
 import org.apache.parquet.internal.column.columnindex.OffsetIndex;
@@ -110,6 +111,13 @@ public class MockParquetDataSource
         throw new NotSupportedException("Not supported");
     }
 
+    @Override
+    public Optional<BloomFilter> readBloomFilter(ColumnChunkMetaData column)
+            throws IOException
+    {
+        throw new NotSupportedException("Not supported");
+    }
+
     @VisibleForTesting
     public final List<Integer> getDataSourceBytesFetchedPerCall()
     {
@@ -26,10 +26,15 @@ import com.facebook.presto.parquet.FileParquetDataSource;
 import com.facebook.presto.parquet.cache.MetadataReader;
 import com.facebook.presto.parquet.reader.ParquetReader;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 import org.apache.parquet.hadoop.metadata.CompressionCodecName;
 import org.apache.parquet.hadoop.metadata.ParquetMetadata;
 import org.apache.parquet.io.ColumnIOConverter;
 import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.io.api.Binary;
 import org.apache.parquet.schema.LogicalTypeAnnotation;
 import org.apache.parquet.schema.MessageType;
 import org.apache.parquet.schema.PrimitiveType;
@@ -66,6 +71,7 @@ import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static java.util.UUID.randomUUID;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertThrows;
 import static org.testng.Assert.assertTrue;
@@ -179,6 +185,59 @@ public class TestParquetWriter
         }
     }
 
+    @Test
+    public void testWriteIndexesAndBloomFilters()
+            throws Exception
+    {
+        temporaryDirectory = createTempDir();
+        parquetFile = new File(temporaryDirectory, randomUUID().toString());
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, VARCHAR);
+        List<String> names = ImmutableList.of("col_1", "col_2", "col_3");
+        ParquetWriterOptions parquetWriterOptions = ParquetWriterOptions.builder()
+                .setMaxPageSize(DataSize.succinctBytes(1000))
+                .setMaxBlockSize(DataSize.succinctBytes(15000))
+                .setBloomFilterColumns(ImmutableSet.of("col_1", "col_2"))
+                .build();
+        try (ParquetWriter parquetWriter = createParquetWriter(parquetFile, types, names, parquetWriterOptions, CompressionCodecName.UNCOMPRESSED)) {
+            for (int pageIdx = 0; pageIdx < 10; pageIdx++) {
+                int pageRowCount = 100;
+                PageBuilder pageBuilder = new PageBuilder(pageRowCount, types);
+                for (int rowIdx = 0; rowIdx < pageRowCount; rowIdx++) {
+                    long value = pageIdx * pageRowCount + rowIdx;
+                    BIGINT.writeLong(pageBuilder.getBlockBuilder(0), value);
+                    VARCHAR.writeString(pageBuilder.getBlockBuilder(1), "value_" + value);
+                    VARCHAR.writeString(pageBuilder.getBlockBuilder(2), "value_" + value);
+                    pageBuilder.declarePosition();
+                }
+                parquetWriter.write(pageBuilder.build());
+            }
+        }
+
+        FileParquetDataSource dataSource = new FileParquetDataSource(parquetFile);
+        ParquetMetadata parquetMetadata = MetadataReader.readFooter(dataSource, parquetFile.length(), Optional.empty(), false).getParquetMetadata();
+        assertTrue(parquetMetadata.getBlocks().size() > 1);
+        long firstRowInBlock = 0;
+        for (BlockMetaData block : parquetMetadata.getBlocks()) {
+            for (ColumnChunkMetaData column : block.getColumns()) {
+                assertNotNull(column.getColumnIndexReference());
+                assertNotNull(column.getOffsetIndexReference());
+            }
+
+            ColumnChunkMetaData bigintColumn = block.getColumns().get(0);
+            BloomFilter bigintBloomFilter = dataSource.readBloomFilter(bigintColumn).get();
+            assertTrue(bigintBloomFilter.findHash(bigintBloomFilter.hash(firstRowInBlock)));
+            assertTrue(bigintBloomFilter.findHash(bigintBloomFilter.hash(firstRowInBlock + block.getRowCount() - 1)));
+
+            ColumnChunkMetaData varcharColumn = block.getColumns().get(1);
+            BloomFilter varcharBloomFilter = dataSource.readBloomFilter(varcharColumn).get();
+            assertTrue(varcharBloomFilter.findHash(varcharBloomFilter.hash(Binary.fromString("value_" + firstRowInBlock))));
+
+            assertFalse(dataSource.readBloomFilter(block.getColumns().get(2)).isPresent());
+            firstRowInBlock += block.getRowCount();
+        }
+        assertEquals(firstRowInBlock, 1000);
+    }
+
     @DataProvider(name = "testMetadataCreation")
     public static Object[][] types()
     {
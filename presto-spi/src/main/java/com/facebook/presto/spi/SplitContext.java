@@ -17,11 +17,16 @@ import com.facebook.drift.annotations.ThriftConstructor;
 import com.facebook.drift.annotations.ThriftField;
 import com.facebook.drift.annotations.ThriftStruct;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.unmodifiableMap;
 import static java.util.Objects.requireNonNull;
 
 // TODO: Use builder pattern for SplitContext if we are to add optional field
@@ -33,23 +38,31 @@ public class SplitContext
     private final boolean cacheable;
     // For local execution only; no need for serialization.
     private final Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate;
+    // For local execution only; no need for serialization.
+    private final Map<ColumnHandle, TupleDomainFilter> dynamicFilterColumnFilters;
 
     @JsonCreator
     @ThriftConstructor
     public SplitContext(@JsonProperty boolean cacheable)
     {
-        this(cacheable, Optional.empty());
+        this(cacheable, Optional.empty(), emptyMap());
     }
 
     public SplitContext(boolean cacheable, TupleDomain<ColumnHandle> dynamicFilterPredicate)
     {
-        this(cacheable, Optional.of(requireNonNull(dynamicFilterPredicate, "dynamicFilterPredicate is null")));
+        this(cacheable, dynamicFilterPredicate, emptyMap());
+    }
+
+    public SplitContext(boolean cacheable, TupleDomain<ColumnHandle> dynamicFilterPredicate, Map<ColumnHandle, TupleDomainFilter> dynamicFilterColumnFilters)
+    {
+        this(cacheable, Optional.of(requireNonNull(dynamicFilterPredicate, "dynamicFilterPredicate is null")), dynamicFilterColumnFilters);
     }
 
-    private SplitContext(boolean cacheable, Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate)
+    private SplitContext(boolean cacheable, Optional<TupleDomain<ColumnHandle>> dynamicFilterPredicate, Map<ColumnHandle, TupleDomainFilter> dynamicFilterColumnFilters)
     {
         this.cacheable = cacheable;
         this.dynamicFilterPredicate = dynamicFilterPredicate;
+        this.dynamicFilterColumnFilters = unmodifiableMap(new HashMap<>(requireNonNull(dynamicFilterColumnFilters, "dynamicFilterColumnFilters is null")));
     }
 
     @JsonProperty
@@ -63,4 +76,15 @@ public class SplitContext
     {
         return dynamicFilterPredicate;
     }
+
+    /**
+     * Returns the parts of the dynamic filters that cannot be expressed by {@link #getDynamicFilterPredicate()},
+     * such as Bloom filters of join keys with too many distinct values. The engine also applies them to the
+     * rows returned by the connector, so connectors may evaluate them while reading to skip rows early,
+     * but do not have to.
+     */
+    public Map<ColumnHandle, TupleDomainFilter> getDynamicFilterColumnFilters()
+    {
+        return dynamicFilterColumnFilters;
+    }
 }
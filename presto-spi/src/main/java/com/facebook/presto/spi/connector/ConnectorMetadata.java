@@ -1028,6 +1028,17 @@ public interface ConnectorMetadata
         return NOT_APPLICABLE;
     }
 
+    /**
+     * Returns an opaque version of the data read through the specified table handle and layout, such as a snapshot id.
+     * The layout is the one chosen by the optimizer, so connectors can version only the data it selects.
+     * The version must change whenever the data that can be read through the handle changes. Connectors that
+     * cannot guarantee this must return empty, which disables engine side caching of results derived from the table.
+     */
+    default Optional<String> getTableDataVersion(ConnectorSession session, ConnectorTableHandle tableHandle, Optional<ConnectorTableLayoutHandle> layoutHandle)
+    {
+        return Optional.empty();
+    }
+
     /**
      * Drop the specified branch
      */